@@ -249,6 +249,15 @@ public class AcceptHeaderFactory {
 
         }
         
+        /*
+         * The columnar binary format is opt-in (set the Accept header on the
+         * prepared query). It decodes xsd:dateTime in UTC rather than in the
+         * timezone of the database, so it is not a drop-in replacement for
+         * the other formats.
+         */
+        values.remove(TupleQueryResultFormat
+                .forMIMEType(IMimeTypes.MIME_SPARQL_RESULTS_COLUMNAR));
+
         final List<String> list2 = AcceptHeaderFactory.getAcceptParams(values,
                 TupleQueryResultFormat.BINARY);
 
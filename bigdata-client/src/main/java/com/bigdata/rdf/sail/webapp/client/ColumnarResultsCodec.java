@@ -0,0 +1,137 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sail.webapp.client;
+
+/**
+ * Constants for the columnar binary encoding of SPARQL result sets. This
+ * encoding is intended for bigdata aware Java clients. It is compact, it may be
+ * decoded as a stream, and it carries inline values (numbers, booleans and
+ * xsd:dateTime) in their native form so the server never formats them as text
+ * and the client never parses them.
+ * <p>
+ * All multi-byte values are written in network byte order using the
+ * conventions of {@link java.io.DataOutput}. A string is written as an
+ * <code>int</code> byte length followed by its UTF-8 bytes. The response is:
+ * 
+ * <pre>
+ * MAGIC:int VERSION:int ncols:int name[ncols]:string record* END:byte
+ * </pre>
+ * 
+ * where each record is a {@link #CHUNK}:
+ * 
+ * <pre>
+ * CHUNK:byte flags:byte nrows:int ndict:int string[ndict] column[ncols]
+ * </pre>
+ * 
+ * The strings of a chunk are appended to a dictionary which is maintained for
+ * the entire response. The dictionary is cleared first when the chunk has the
+ * {@link #FLAG_RESET_DICTIONARY} flag. Each column is <i>nrows</i> cells, and
+ * each cell is a one byte type code followed by its payload:
+ * 
+ * <dl>
+ * <dt>{@link #T_UNBOUND}</dt>
+ * <dd>(no payload).</dd>
+ * <dt>{@link #T_REPEAT}</dt>
+ * <dd>The same value as the previous row of the same column in the same chunk
+ * (no payload).</dd>
+ * <dt>{@link #T_URI}, {@link #T_BNODE}, {@link #T_LITERAL}</dt>
+ * <dd>dictionary index:int.</dd>
+ * <dt>{@link #T_LANG_LITERAL}</dt>
+ * <dd>label:int, language:int (dictionary indices).</dd>
+ * <dt>{@link #T_TYPED_LITERAL}</dt>
+ * <dd>label:int, datatype:int (dictionary indices).</dd>
+ * <dt>{@link #T_LONG}</dt>
+ * <dd>datatype:int (dictionary index), value:long.</dd>
+ * <dt>{@link #T_DOUBLE}</dt>
+ * <dd>datatype:int (dictionary index), value:double.</dd>
+ * <dt>{@link #T_BOOLEAN}</dt>
+ * <dd>value:byte.</dd>
+ * <dt>{@link #T_DATETIME}</dt>
+ * <dd>milliseconds since the epoch:long. The decoder reports the value as an
+ * xsd:dateTime in UTC.</dd>
+ * </dl>
+ * 
+ * @see IMimeTypes#MIME_SPARQL_RESULTS_COLUMNAR
+ * @see ColumnarResultsParser
+ */
+public interface ColumnarResultsCodec {
+
+    /**
+     * The magic value which begins the response (<code>BGCR</code>).
+     */
+    int MAGIC = 0x42474352;
+
+    /**
+     * The version of the encoding.
+     */
+    int VERSION = 1;
+
+    /*
+     * Record types.
+     */
+
+    /** The end of the result set. */
+    byte END = 0;
+
+    /** A chunk of solutions. */
+    byte CHUNK = 1;
+
+    /*
+     * Chunk flags.
+     */
+
+    /** The dictionary is cleared before the strings of the chunk are added. */
+    byte FLAG_RESET_DICTIONARY = 1 << 0;
+
+    /*
+     * Cell types.
+     */
+
+    byte T_UNBOUND = 0;
+
+    byte T_REPEAT = 1;
+
+    byte T_URI = 2;
+
+    byte T_BNODE = 3;
+
+    byte T_LITERAL = 4;
+
+    byte T_LANG_LITERAL = 5;
+
+    byte T_TYPED_LITERAL = 6;
+
+    byte T_LONG = 7;
+
+    byte T_DOUBLE = 8;
+
+    byte T_BOOLEAN = 9;
+
+    byte T_DATETIME = 10;
+
+}
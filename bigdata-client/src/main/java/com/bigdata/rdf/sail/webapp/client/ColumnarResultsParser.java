@@ -0,0 +1,379 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sail.webapp.client;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.vocabulary.XMLSchema;
+import org.openrdf.query.QueryResultHandlerException;
+import org.openrdf.query.TupleQueryResultHandlerException;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.query.resultio.QueryResultParseException;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.query.resultio.TupleQueryResultParserBase;
+
+import com.bigdata.rdf.ServiceProviderHook;
+
+/**
+ * Streaming decoder for the columnar binary SPARQL result set encoding. The
+ * solutions of each chunk are reported to the handler as soon as the chunk has
+ * been read, so a {@link BackgroundTupleResult} can begin to drain solutions
+ * while the rest of the response is still in flight.
+ * 
+ * @see ColumnarResultsCodec
+ */
+public class ColumnarResultsParser extends TupleQueryResultParserBase implements
+        ColumnarResultsCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /**
+     * The per-response dictionary.
+     */
+    private final List<String> dict = new ArrayList<String>();
+
+    /**
+     * {@link URI}s decoded from the dictionary, indexed by their dictionary
+     * index. This avoids creating the same {@link URI} over and over when the
+     * same resource appears in many solutions.
+     */
+    private final List<URI> uris = new ArrayList<URI>();
+
+    private DatatypeFactory datatypeFactory = null;
+
+    public ColumnarResultsParser() {
+        super();
+    }
+
+    public ColumnarResultsParser(final ValueFactory valueFactory) {
+        super(valueFactory);
+    }
+
+    @Override
+    public TupleQueryResultFormat getTupleQueryResultFormat() {
+        return ServiceProviderHook.COLUMNAR_RESULTS;
+    }
+
+    @Override
+    public void parseQueryResult(final InputStream in) throws IOException,
+            QueryResultParseException, QueryResultHandlerException {
+
+        parse(in);
+
+    }
+
+    @Override
+    public synchronized void parse(final InputStream in) throws IOException,
+            QueryResultParseException, TupleQueryResultHandlerException {
+
+        if (in == null)
+            throw new IllegalArgumentException();
+
+        final DataInputStream din = new DataInputStream(
+                in instanceof BufferedInputStream ? in
+                        : new BufferedInputStream(in));
+
+        dict.clear();
+
+        uris.clear();
+
+        try {
+
+            if (din.readInt() != MAGIC)
+                throw new QueryResultParseException(
+                        "Not a columnar result set");
+
+            final int version = din.readInt();
+
+            if (version != VERSION)
+                throw new QueryResultParseException(
+                        "Unsupported version: " + version);
+
+            final int ncols = din.readInt();
+
+            if (ncols < 0)
+                throw new QueryResultParseException("Bad column count: "
+                        + ncols);
+
+            final String[] names = new String[ncols];
+
+            for (int c = 0; c < ncols; c++) {
+
+                names[c] = readString(din);
+
+            }
+
+            final List<String> bindingNames = Arrays.asList(names);
+
+            if (handler != null)
+                handler.startQueryResult(bindingNames);
+
+            while (true) {
+
+                final byte type = din.readByte();
+
+                if (type == END)
+                    break;
+
+                if (type != CHUNK)
+                    throw new QueryResultParseException(
+                            "Unknown record type: " + type);
+
+                readChunk(din, bindingNames);
+
+            }
+
+            if (handler != null)
+                handler.endQueryResult();
+
+        } catch (EOFException ex) {
+
+            throw new QueryResultParseException("Truncated result set", ex);
+
+        } catch (TupleQueryResultHandlerException ex) {
+
+            throw ex;
+
+        } catch (QueryResultHandlerException ex) {
+
+            throw new TupleQueryResultHandlerException(ex);
+
+        }
+
+    }
+
+    /**
+     * Read a chunk and report its solutions to the handler.
+     */
+    private void readChunk(final DataInputStream din,
+            final List<String> bindingNames) throws IOException,
+            QueryResultParseException, QueryResultHandlerException {
+
+        final byte flags = din.readByte();
+
+        if ((flags & FLAG_RESET_DICTIONARY) != 0) {
+
+            dict.clear();
+
+            uris.clear();
+
+        }
+
+        final int nrows = din.readInt();
+
+        final int ndict = din.readInt();
+
+        if (nrows < 0 || ndict < 0)
+            throw new QueryResultParseException("Bad chunk header");
+
+        for (int i = 0; i < ndict; i++) {
+
+            dict.add(readString(din));
+
+            uris.add(null);
+
+        }
+
+        final int ncols = bindingNames.size();
+
+        final Value[][] cols = new Value[ncols][];
+
+        for (int c = 0; c < ncols; c++) {
+
+            final Value[] col = cols[c] = new Value[nrows];
+
+            for (int r = 0; r < nrows; r++) {
+
+                col[r] = readCell(din, r == 0 ? null : col[r - 1]);
+
+            }
+
+        }
+
+        if (handler == null)
+            return;
+
+        for (int r = 0; r < nrows; r++) {
+
+            final Value[] values = new Value[ncols];
+
+            for (int c = 0; c < ncols; c++) {
+
+                values[c] = cols[c][r];
+
+            }
+
+            handler.handleSolution(new ListBindingSet(bindingNames, values));
+
+        }
+
+    }
+
+    /**
+     * Read one cell.
+     * 
+     * @param prior
+     *            The value of the previous row in the same column of the same
+     *            chunk (may be <code>null</code>).
+     */
+    private Value readCell(final DataInputStream din, final Value prior)
+            throws IOException, QueryResultParseException {
+
+        final byte type = din.readByte();
+
+        switch (type) {
+        case T_UNBOUND:
+            return null;
+        case T_REPEAT:
+            if (prior == null)
+                throw new QueryResultParseException("Nothing to repeat");
+            return prior;
+        case T_URI:
+            return uri(din.readInt());
+        case T_BNODE:
+            return valueFactory.createBNode(string(din.readInt()));
+        case T_LITERAL:
+            return valueFactory.createLiteral(string(din.readInt()));
+        case T_LANG_LITERAL: {
+            final String label = string(din.readInt());
+            return valueFactory.createLiteral(label, string(din.readInt()));
+        }
+        case T_TYPED_LITERAL: {
+            final String label = string(din.readInt());
+            return valueFactory.createLiteral(label, uri(din.readInt()));
+        }
+        case T_LONG: {
+            final URI datatype = uri(din.readInt());
+            return valueFactory.createLiteral(Long.toString(din.readLong()),
+                    datatype);
+        }
+        case T_DOUBLE: {
+            final URI datatype = uri(din.readInt());
+            final double d = din.readDouble();
+            /*
+             * Note: Use the same label that the server would have used had it
+             * formatted the value as text.
+             */
+            final String label = XMLSchema.FLOAT.equals(datatype) ? Float
+                    .toString((float) d) : Double.toString(d);
+            return valueFactory.createLiteral(label, datatype);
+        }
+        case T_BOOLEAN:
+            return valueFactory.createLiteral(din.readByte() != 0);
+        case T_DATETIME: {
+            final GregorianCalendar c = new GregorianCalendar(UTC);
+            c.setGregorianChange(new Date(Long.MIN_VALUE));
+            c.setTimeInMillis(din.readLong());
+            return valueFactory.createLiteral(getDatatypeFactory()
+                    .newXMLGregorianCalendar(c));
+        }
+        default:
+            throw new QueryResultParseException("Unknown cell type: " + type);
+        }
+
+    }
+
+    private String string(final int index) throws QueryResultParseException {
+
+        if (index < 0 || index >= dict.size())
+            throw new QueryResultParseException("Bad dictionary index: "
+                    + index);
+
+        return dict.get(index);
+
+    }
+
+    private URI uri(final int index) throws QueryResultParseException {
+
+        final String s = string(index);
+
+        URI uri = uris.get(index);
+
+        if (uri == null) {
+
+            uris.set(index, uri = valueFactory.createURI(s));
+
+        }
+
+        return uri;
+
+    }
+
+    private static String readString(final DataInputStream din)
+            throws IOException, QueryResultParseException {
+
+        final int len = din.readInt();
+
+        if (len < 0)
+            throw new QueryResultParseException("Bad string length: " + len);
+
+        final byte[] b = new byte[len];
+
+        din.readFully(b);
+
+        return new String(b, UTF8);
+
+    }
+
+    private DatatypeFactory getDatatypeFactory()
+            throws QueryResultParseException {
+
+        if (datatypeFactory == null) {
+
+            try {
+                datatypeFactory = DatatypeFactory.newInstance();
+            } catch (DatatypeConfigurationException ex) {
+                throw new QueryResultParseException(ex);
+            }
+
+        }
+
+        return datatypeFactory;
+
+    }
+
+}
@@ -49,6 +49,14 @@ public interface IMimeTypes {
 	     */
 	    MIME_GRAPH_ML = "application/graphml+xml",        	    
         MIME_APPLICATION_JSON = "application/json",
+        /**
+         * The columnar binary SPARQL result set encoding. This is not part of
+         * the default <code>Accept</code> header. Clients opt in using
+         * {@link IPreparedOperation#setAcceptHeader(String)}.
+         * 
+         * @see ColumnarResultsCodec
+         */
+        MIME_SPARQL_RESULTS_COLUMNAR = "application/x-blazegraph-columnar-results",
         /**
          * The traditional encoding of URL query parameters within a POST
          * message body.
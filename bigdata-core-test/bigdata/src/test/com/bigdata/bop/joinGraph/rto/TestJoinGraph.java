@@ -88,6 +88,20 @@ public class TestJoinGraph extends TestCase2 {
                     joinGraph.getLimit());
             assertEquals("nedges", JoinGraph.Annotations.DEFAULT_NEDGES,
                     joinGraph.getNEdges());
+            assertEquals("maxOptimizerMillis",
+                    JoinGraph.Annotations.DEFAULT_MAX_OPTIMIZER_MILLIS,
+                    joinGraph.getMaxOptimizerMillis());
+            assertEquals("replanRatio",
+                    JoinGraph.Annotations.DEFAULT_REPLAN_RATIO,
+                    joinGraph.getReplanRatio());
+            assertEquals("parallelSampling",
+                    JoinGraph.Annotations.DEFAULT_PARALLEL_SAMPLING,
+                    joinGraph.isParallelSampling());
+            assertEquals("adaptiveThreshold",
+                    JoinGraph.Annotations.DEFAULT_ADAPTIVE_THRESHOLD,
+                    joinGraph.getAdaptiveThreshold());
+            assertNull("estimatedCardinalities",
+                    joinGraph.getEstimatedCardinalities());
         }
 
         // correct acceptance, different arguments.
@@ -285,6 +299,93 @@ public class TestJoinGraph extends TestCase2 {
             }
         }
 
+
+        // Correct rejection [maxOptimizerMillis].
+        {
+            try {
+                final IPredicate[] vertices = new IPredicate[] {
+                        new Predicate(new BOp[] { Var.var("x"), Var.var("y") }),//
+                        new Predicate(new BOp[] { Var.var("y"), Var.var("z") }),//
+                };
+                new JoinGraph(new BOp[0],//
+                        new NV(JoinGraph.Annotations.VERTICES, vertices),//
+                        new NV(JoinGraph.Annotations.MAX_OPTIMIZER_MILLIS, -1L),//
+                        new NV(JoinGraph.Annotations.CONTROLLER, true), //
+                        new NV(JoinGraph.Annotations.EVALUATION_CONTEXT,
+                                BOpEvaluationContext.CONTROLLER)//
+                );
+                fail("Expecting: " + IllegalArgumentException.class);
+            } catch (IllegalArgumentException ex) {
+                if (log.isInfoEnabled())
+                    log.info("Ignoring expected exception: " + ex);
+            }
+        }
+
+        // Correct rejection [replanRatio].
+        {
+            try {
+                final IPredicate[] vertices = new IPredicate[] {
+                        new Predicate(new BOp[] { Var.var("x"), Var.var("y") }),//
+                        new Predicate(new BOp[] { Var.var("y"), Var.var("z") }),//
+                };
+                new JoinGraph(new BOp[0],//
+                        new NV(JoinGraph.Annotations.VERTICES, vertices),//
+                        new NV(JoinGraph.Annotations.REPLAN_RATIO, 1.5d),//
+                        new NV(JoinGraph.Annotations.CONTROLLER, true), //
+                        new NV(JoinGraph.Annotations.EVALUATION_CONTEXT,
+                                BOpEvaluationContext.CONTROLLER)//
+                );
+                fail("Expecting: " + IllegalArgumentException.class);
+            } catch (IllegalArgumentException ex) {
+                if (log.isInfoEnabled())
+                    log.info("Ignoring expected exception: " + ex);
+            }
+        }
+
+        // Correct rejection [adaptiveThreshold].
+        {
+            try {
+                final IPredicate[] vertices = new IPredicate[] {
+                        new Predicate(new BOp[] { Var.var("x"), Var.var("y") }),//
+                        new Predicate(new BOp[] { Var.var("y"), Var.var("z") }),//
+                };
+                new JoinGraph(new BOp[0],//
+                        new NV(JoinGraph.Annotations.VERTICES, vertices),//
+                        new NV(JoinGraph.Annotations.ADAPTIVE_THRESHOLD, .5d),//
+                        new NV(JoinGraph.Annotations.CONTROLLER, true), //
+                        new NV(JoinGraph.Annotations.EVALUATION_CONTEXT,
+                                BOpEvaluationContext.CONTROLLER)//
+                );
+                fail("Expecting: " + IllegalArgumentException.class);
+            } catch (IllegalArgumentException ex) {
+                if (log.isInfoEnabled())
+                    log.info("Ignoring expected exception: " + ex);
+            }
+        }
+
+        // Correct rejection [estimatedCardinalities].
+        {
+            try {
+                final IPredicate[] vertices = new IPredicate[] {
+                        new Predicate(new BOp[] { Var.var("x"), Var.var("y") }),//
+                        new Predicate(new BOp[] { Var.var("y"), Var.var("z") }),//
+                };
+                new JoinGraph(new BOp[0],//
+                        new NV(JoinGraph.Annotations.VERTICES, vertices),//
+                        new NV(JoinGraph.Annotations.ADAPTIVE_THRESHOLD, 10d),//
+                        new NV(JoinGraph.Annotations.ESTIMATED_CARDINALITIES,
+                                new long[] { 10L }),//
+                        new NV(JoinGraph.Annotations.CONTROLLER, true), //
+                        new NV(JoinGraph.Annotations.EVALUATION_CONTEXT,
+                                BOpEvaluationContext.CONTROLLER)//
+                );
+                fail("Expecting: " + IllegalArgumentException.class);
+            } catch (IllegalArgumentException ex) {
+                if (log.isInfoEnabled())
+                    log.info("Ignoring expected exception: " + ex);
+            }
+        }
+
     }
 
 }
@@ -104,6 +104,18 @@ public class TestAll extends TestCase {
         // test of prefix search
         suite.addTestSuite(TestPrefixSearch.class);
         
+        // test of phrase and NEAR/k search
+        suite.addTestSuite(TestProximitySearch.class);
+        
+        // test of term statistics and BM25 relevance
+        suite.addTestSuite(TestBM25Search.class);
+        
+        // test of the bulk load of the full text index
+        suite.addTestSuite(TestBulkLoadSearch.class);
+        
+        // test of the hit cache
+        suite.addTestSuite(TestHitCache.class);
+        
         // test verifies search index is restart safe.
         suite.addTestSuite(TestSearchRestartSafe.class);
         
@@ -0,0 +1,199 @@
+/*
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.search;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+
+/**
+ * Unit tests for the term statistics and {@link ScoringModelEnum#BM25}
+ * relevance.
+ * 
+ * @see FullTextIndex.Options#STATISTICS_ENABLED
+ */
+public class TestBM25Search extends AbstractSearchTest {
+
+    public TestBM25Search() {
+    }
+
+    public TestBM25Search(String name) {
+        super(name);
+    }
+
+    /*
+     * Note: "fox" occurs in most documents, "zebra" in only one.
+     */
+    private final String[] docs = new String[] {//
+            "fox fox fox",// 1
+            "zebra cat dog",// 2
+            "fox cat",// 3
+            "fox dog",// 4
+            "fox bird",// 5
+    };
+
+    private void indexDocs() {
+
+        final TokenBuffer<Long> buffer = new TokenBuffer<Long>(2, getNdx());
+
+        long docId = 1;
+
+        for (String s : docs) {
+
+            getNdx().index(buffer, Long.valueOf(docId++), 0/* fieldId */,
+                    "EN", new StringReader(s));
+
+        }
+
+        buffer.flush();
+
+    }
+
+    private Hiterator<Hit<Long>> search(final String query,
+            final ScoringModelEnum scoringModel) {
+
+        return getNdx().search(
+                new FullTextQuery(query, "EN", false/* prefixMatch */,
+                        null/* regex */, false/* matchAllTerms */,
+                        false/* matchExact */, 0d/* minCosine */,
+                        1.0d/* maxCosine */, 1/* minRank */,
+                        Integer.MAX_VALUE/* maxRank */, 0L/* timeout */,
+                        TimeUnit.MILLISECONDS, false/* matchPhrase */,
+                        -1/* matchNear */, scoringModel));
+
+    }
+
+    /**
+     * The statistics index reports the #of fields and tokens across several
+     * flushes of the {@link TokenBuffer}.
+     */
+    public void test_statistics() {
+
+        init(FullTextIndex.Options.STATISTICS_ENABLED, "true");
+
+        assertNotNull(getNdx().getStatisticsIndex());
+
+        indexDocs();
+
+        final BM25 bm25 = getNdx().getBM25();
+
+        assertEquals(5L, bm25.getFieldCount());
+
+        final Map<Integer, long[]> stats = new HashMap<Integer, long[]>();
+
+        stats.put(0, new long[] { 5, 12 });
+
+        assertEquals(new BM25(1.2, 0.75, stats).toString(), bm25.toString());
+
+    }
+
+    /**
+     * The rare search term dominates the BM25 relevance while the frequent
+     * search term dominates the cosine.
+     */
+    public void test_bm25_ranking() {
+
+        init(FullTextIndex.Options.STATISTICS_ENABLED, "true");
+
+        indexDocs();
+
+        final Hiterator<Hit<Long>> cosine = search("fox zebra",
+                ScoringModelEnum.Cosine);
+
+        assertEquals(5, cosine.size());
+
+        assertEquals(Long.valueOf(1L), cosine.next().getDocId());
+
+        final Hiterator<Hit<Long>> bm25 = search("fox zebra",
+                ScoringModelEnum.BM25);
+
+        assertEquals(5, bm25.size());
+
+        assertEquals(Long.valueOf(2L), bm25.next().getDocId());
+
+    }
+
+    /**
+     * A BM25 query against an index without term statistics is an error.
+     */
+    public void test_statisticsNotEnabled() {
+
+        init();
+
+        assertNull(getNdx().getStatisticsIndex());
+
+        indexDocs();
+
+        try {
+            search("fox", ScoringModelEnum.BM25);
+            fail("Expecting: " + UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    public void test_termWeight() {
+
+        final Map<Integer, long[]> stats = new HashMap<Integer, long[]>();
+
+        // 10 fields averaging 4 tokens.
+        stats.put(0, new long[] { 10, 40 });
+
+        final BM25 bm25 = new BM25(1.2, 0.75, stats);
+
+        // tf=1 in a field of average length.
+        assertEquals(1d, bm25.getTermWeight(new ReadOnlyTermDocRecord<Long>(
+                null, 1L, 0, 1/* termFreq */, 4/* fieldLength */, 0d, null)),
+                1e-9);
+
+        // a longer field has less weight.
+        assertTrue(bm25.getTermWeight(new ReadOnlyTermDocRecord<Long>(null,
+                1L, 0, 1/* termFreq */, 8/* fieldLength */, 0d, null)) < 1d);
+
+        // idf decreases with the document frequency and is never negative.
+        assertTrue(bm25.idf(1) > bm25.idf(5));
+
+        assertTrue(bm25.idf(10) > 0d);
+
+        try {
+            bm25.getTermWeight(new ReadOnlyTermDocRecord<Long>(null, 1L, 0,
+                    0d, null));
+            fail("Expecting: " + UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.search;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+
+/**
+ * Unit tests for building the full text index in bulk load mode.
+ * 
+ * @see FullTextIndex#beginBulkLoad()
+ */
+public class TestBulkLoadSearch extends AbstractSearchTest {
+
+    public TestBulkLoadSearch() {
+    }
+
+    public TestBulkLoadSearch(String name) {
+        super(name);
+    }
+
+    /*
+     * Note: There are 10 distinct {token,docId,fieldId} tuples.
+     */
+    private final String[] docs = new String[] {//
+            "fox fox fox",// 1
+            "zebra cat dog",// 2
+            "fox cat",// 3
+            "fox dog",// 4
+            "fox bird",// 5
+    };
+
+    private void indexDocs() {
+
+        final TokenBuffer<Long> buffer = new TokenBuffer<Long>(2, getNdx());
+
+        long docId = 1;
+
+        for (String s : docs) {
+
+            getNdx().index(buffer, Long.valueOf(docId++), 0/* fieldId */,
+                    "EN", new StringReader(s));
+
+        }
+
+        buffer.flush();
+
+    }
+
+    private Hiterator<Hit<Long>> search(final String query) {
+
+        return getNdx().search(
+                new FullTextQuery(query, "EN", false/* prefixMatch */,
+                        null/* regex */, false/* matchAllTerms */,
+                        false/* matchExact */, 0d/* minCosine */,
+                        1.0d/* maxCosine */, 1/* minRank */,
+                        Integer.MAX_VALUE/* maxRank */, 0L/* timeout */,
+                        TimeUnit.MILLISECONDS, false/* matchPhrase */,
+                        -1/* matchNear */));
+
+    }
+
+    /**
+     * Nothing is written on the index until the bulk load is ended. The runs
+     * are spilled and then merged and the index has the same content as if
+     * the documents had been indexed normally.
+     */
+    public void test_bulkLoad() {
+
+        init(FullTextIndex.Options.BULK_LOAD_RUN_CAPACITY, "3",
+                FullTextIndex.Options.STATISTICS_ENABLED, "true");
+
+        assertFalse(getNdx().isBulkLoad());
+
+        getNdx().beginBulkLoad();
+
+        assertTrue(getNdx().isBulkLoad());
+
+        indexDocs();
+
+        assertEquals(0L, getNdx().getIndex().rangeCount());
+
+        assertNull(getNdx().getStatisticsIndex().lookup(
+                TextStatisticsWriteProc.encodeKey(0)));
+
+        assertTrue(getNdx().getBulkLoadBuffer().getRunCount() > 0);
+
+        assertEquals(10L, getNdx().endBulkLoad());
+
+        assertFalse(getNdx().isBulkLoad());
+
+        assertEquals(10L, getNdx().getIndex().rangeCount());
+
+        assertEquals(5L, getNdx().getBM25().getFieldCount());
+
+        assertEquals(4, search("fox").size());
+
+        assertEquals(2, search("cat").size());
+
+        assertEquals(1, search("zebra").size());
+
+    }
+
+    /**
+     * The same tuples generated more than once are written onto the index
+     * once, whether they are in the same run or in different runs.
+     */
+    public void test_duplicates() {
+
+        init(FullTextIndex.Options.BULK_LOAD_RUN_CAPACITY, "4");
+
+        getNdx().beginBulkLoad();
+
+        indexDocs();
+
+        indexDocs();
+
+        assertEquals(20L, getNdx().getBulkLoadBuffer().size());
+
+        assertEquals(10L, getNdx().flushBulkLoad());
+
+        // still in bulk load mode.
+        assertTrue(getNdx().isBulkLoad());
+
+        assertEquals(10L, getNdx().getIndex().rangeCount());
+
+        assertEquals(0L, getNdx().endBulkLoad());
+
+    }
+
+    /**
+     * Nothing is written on the index if the bulk load is aborted.
+     */
+    public void test_abort() {
+
+        init(FullTextIndex.Options.BULK_LOAD_RUN_CAPACITY, "3");
+
+        getNdx().beginBulkLoad();
+
+        try {
+            getNdx().beginBulkLoad();
+            fail("Expecting: " + IllegalStateException.class);
+        } catch (IllegalStateException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        indexDocs();
+
+        getNdx().abortBulkLoad();
+
+        assertFalse(getNdx().isBulkLoad());
+
+        assertEquals(0L, getNdx().getIndex().rangeCount());
+
+        assertEquals(0L, getNdx().endBulkLoad());
+
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.search;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import com.bigdata.journal.IJournal;
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+
+/**
+ * Unit tests for the {@link HitCache}.
+ */
+public class TestHitCache extends AbstractSearchTest {
+
+    public TestHitCache() {
+    }
+
+    public TestHitCache(String name) {
+        super(name);
+    }
+
+    private final String[] docs = new String[] {//
+            "fox cat",// 1
+            "foxes dog",// 2
+            "foxglove cat",// 3
+            "dog bird",// 4
+    };
+
+    private void indexDocs() {
+
+        final TokenBuffer<Long> buffer = new TokenBuffer<Long>(docs.length,
+                getNdx());
+
+        long docId = 1;
+
+        for (String s : docs) {
+
+            getNdx().index(buffer, Long.valueOf(docId++), 0/* fieldId */,
+                    "EN", new StringReader(s));
+
+        }
+
+        buffer.flush();
+
+    }
+
+    private static FullTextQuery query(final String query,
+            final boolean prefixMatch) {
+
+        return new FullTextQuery(query, "EN", prefixMatch, null/* regex */,
+                false/* matchAllTerms */, false/* matchExact */,
+                0d/* minCosine */, 1.0d/* maxCosine */, 1/* minRank */,
+                Integer.MAX_VALUE/* maxRank */, 0L/* timeout */,
+                TimeUnit.MILLISECONDS);
+
+    }
+
+    public void test_ctor_correctRejection() {
+
+        try {
+            new HitCache(0/* maxEntries */, 1000L, 1000L);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        try {
+            new HitCache(10, 0L/* maxBytes */, 1000L);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * Entries are evicted in LRU order when the memory budget would be
+     * exceeded and an entry larger than half of the budget is not cached.
+     */
+    public void test_memoryBudget() {
+
+        final HitCache cache = new HitCache(100/* maxEntries */,
+                1000L/* maxBytes */, 60000L/* timeoutMillis */);
+
+        assertTrue(cache.put("a", "A", 400L));
+
+        assertTrue(cache.put("b", "B", 400L));
+
+        // touch [a] so [b] is the LRU entry.
+        assertEquals("A", cache.get("a"));
+
+        assertTrue(cache.put("c", "C", 400L));
+
+        assertEquals(2, cache.size());
+
+        assertEquals(800L, cache.getBytes());
+
+        assertEquals(1L, cache.getEvictionCount());
+
+        assertNull(cache.get("b"));
+
+        assertEquals("C", cache.get("c"));
+
+        // too large.
+        assertFalse(cache.put("d", "D", 600L));
+
+        assertNull(cache.get("d"));
+
+        assertEquals(2L, cache.getHitCount());
+
+        assertEquals(2L, cache.getMissCount());
+
+    }
+
+    /**
+     * Entries are evicted in LRU order when the maximum #of entries would be
+     * exceeded.
+     */
+    public void test_maxEntries() {
+
+        final HitCache cache = new HitCache(2/* maxEntries */,
+                1000L/* maxBytes */, 60000L/* timeoutMillis */);
+
+        cache.put("a", "A", 1L);
+        cache.put("b", "B", 1L);
+        cache.put("c", "C", 1L);
+
+        assertEquals(2, cache.size());
+
+        assertFalse(cache.containsKey("a"));
+
+        assertTrue(cache.containsKey("b"));
+
+        assertTrue(cache.containsKey("c"));
+
+    }
+
+    /**
+     * An entry is not reused once it has expired.
+     */
+    public void test_timeout() throws InterruptedException {
+
+        final HitCache cache = new HitCache(10/* maxEntries */,
+                1000L/* maxBytes */, 1L/* timeoutMillis */);
+
+        cache.put("a", "A", 10L);
+
+        Thread.sleep(20/* ms */);
+
+        assertFalse(cache.containsKey("a"));
+
+        assertNull(cache.get("a"));
+
+        assertEquals(0, cache.size());
+
+        assertEquals(0L, cache.getBytes());
+
+    }
+
+    /**
+     * The unisolated view does not use the cache since its hits could become
+     * stale.
+     */
+    public void test_unisolatedNotCached() {
+
+        init();
+
+        assertNull(getNdx().getHitCacheCommitTime());
+
+        indexDocs();
+
+        assertEquals(2, getNdx().search(query("cat", false)).size());
+
+        // write another document with the search term.
+        {
+            final TokenBuffer<Long> buffer = new TokenBuffer<Long>(1,
+                    getNdx());
+
+            getNdx().index(buffer, Long.valueOf(5L), 0/* fieldId */, "EN",
+                    new StringReader("cat"));
+
+            buffer.flush();
+        }
+
+        assertEquals(3, getNdx().search(query("cat", false)).size());
+
+    }
+
+    /**
+     * A view reading from a commit point reuses the hits for the same query
+     * and the postings for a prefix search term shared with another query.
+     */
+    public void test_commitTime() {
+
+        init();
+
+        if (!(getIndexManager() instanceof IJournal)) {
+
+            // Note: only tested against a Journal.
+            return;
+
+        }
+
+        indexDocs();
+
+        final long commitTime = ((IJournal) getIndexManager()).commit();
+
+        final FullTextIndex<Long> view = new FullTextIndex<Long>(
+                getIndexManager(), getNamespace(), commitTime,
+                getSearchProperties());
+
+        assertEquals(Long.valueOf(commitTime), view.getHitCacheCommitTime());
+
+        final HitCache cache = view.getHitCache();
+
+        assertNotNull(cache);
+
+        final Hiterator<Hit<Long>> expected = getNdx().search(
+                query("fox dog", true/* prefixMatch */));
+
+        assertEquals(3, view.search(query("fox cat", true/* prefixMatch */))
+                .size());
+
+        final long hitCount = cache.getHitCount();
+
+        // the expansion of "fox*" is reused.
+        final Hiterator<Hit<Long>> actual = view.search(query("fox dog",
+                true/* prefixMatch */));
+
+        assertEquals(hitCount + 1, cache.getHitCount());
+
+        assertEquals(expected.size(), actual.size());
+
+        while (expected.hasNext()) {
+
+            final Hit<Long> e = expected.next();
+
+            final Hit<Long> a = actual.next();
+
+            assertEquals(e.getCosine(), a.getCosine(), 1e-9);
+
+        }
+
+        // the hits for the query are reused.
+        view.search(query("fox dog", true/* prefixMatch */));
+
+        assertEquals(hitCount + 2, cache.getHitCount());
+
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.search;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+
+/**
+ * Unit tests for phrase and NEAR/k queries evaluated against the positions
+ * stored in the full text index.
+ * 
+ * @see FullTextIndex.Options#POSITIONS_ENABLED
+ */
+public class TestProximitySearch extends AbstractSearchTest {
+
+    public TestProximitySearch() {
+    }
+
+    public TestProximitySearch(String name) {
+        super(name);
+    }
+
+    private final String[] docs = new String[] {//
+            "quick brown fox",// 1
+            "brown quick fox",// 2
+            "quick red brown fox",// 3
+            "quick brown dog jumps over lazy fox",// 4
+    };
+
+    private void indexDocs() {
+
+        final TokenBuffer<Long> buffer = new TokenBuffer<Long>(docs.length,
+                getNdx());
+
+        long docId = 1;
+
+        for (String s : docs) {
+
+            getNdx().index(buffer, Long.valueOf(docId++), 0/* fieldId */,
+                    "EN", new StringReader(s));
+
+        }
+
+        buffer.flush();
+
+    }
+
+    private Set<Long> search(final String query, final boolean matchPhrase,
+            final int matchNear) {
+
+        final Hiterator<Hit<Long>> itr = getNdx().search(
+                new FullTextQuery(query, "EN", false/* prefixMatch */,
+                        null/* regex */, false/* matchAllTerms */,
+                        false/* matchExact */, 0d/* minCosine */,
+                        1.0d/* maxCosine */, 1/* minRank */,
+                        Integer.MAX_VALUE/* maxRank */, 0L/* timeout */,
+                        TimeUnit.MILLISECONDS, matchPhrase, matchNear));
+
+        final Set<Long> docIds = new HashSet<Long>();
+
+        while (itr.hasNext()) {
+
+            docIds.add(itr.next().getDocId());
+
+        }
+
+        return docIds;
+
+    }
+
+    private static Set<Long> docIds(final Long... a) {
+
+        return new HashSet<Long>(Arrays.asList(a));
+
+    }
+
+    public void test_phrase() {
+
+        init(FullTextIndex.Options.POSITIONS_ENABLED, "true");
+
+        indexDocs();
+
+        // without any proximity constraint.
+        assertEquals(docIds(1L, 2L, 3L, 4L), search("quick brown",
+                false/* matchPhrase */, -1/* matchNear */));
+
+        assertEquals(docIds(1L, 4L), search("quick brown",
+                true/* matchPhrase */, -1/* matchNear */));
+
+        assertEquals(docIds(2L), search("brown quick fox",
+                true/* matchPhrase */, -1/* matchNear */));
+
+        // a single term is trivially a phrase.
+        assertEquals(docIds(1L, 2L, 3L, 4L), search("fox",
+                true/* matchPhrase */, -1/* matchNear */));
+
+    }
+
+    public void test_near() {
+
+        init(FullTextIndex.Options.POSITIONS_ENABLED, "true");
+
+        indexDocs();
+
+        // adjacent in either order.
+        assertEquals(docIds(1L, 2L, 4L), search("quick brown",
+                false/* matchPhrase */, 0/* matchNear */));
+
+        assertEquals(docIds(1L, 2L, 3L, 4L), search("quick brown",
+                false/* matchPhrase */, 1/* matchNear */));
+
+        assertEquals(docIds(2L), search("quick fox",
+                false/* matchPhrase */, 0/* matchNear */));
+
+        assertEquals(docIds(1L, 2L), search("quick fox",
+                false/* matchPhrase */, 1/* matchNear */));
+
+        // both constraints.
+        assertEquals(docIds(1L), search("quick brown fox",
+                true/* matchPhrase */, 0/* matchNear */));
+
+    }
+
+    /**
+     * A proximity query against an index without positions is an error.
+     */
+    public void test_positionsNotEnabled() {
+
+        init();
+
+        indexDocs();
+
+        try {
+            search("quick brown", true/* matchPhrase */, -1/* matchNear */);
+            fail("Expecting: " + UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    public void test_isPhrase() {
+
+        // query: "a b a"
+        final int[][] qpos = new int[][] { { 0, 2 }, { 1 } };
+
+        assertTrue(FullTextIndex.isPhrase(qpos, new int[][] { { 3, 7, 9 },
+                { 8 } }));
+
+        assertFalse(FullTextIndex.isPhrase(qpos, new int[][] { { 3, 7 },
+                { 8 } }));
+
+        assertFalse(FullTextIndex.isPhrase(qpos, new int[][] { { 3, 5 },
+                { 8 } }));
+
+    }
+
+    public void test_isNear() {
+
+        final int[][] dpos = new int[][] { { 0, 10 }, { 4, 13 }, { 12 } };
+
+        // best window is [10:13], which has one other position.
+        assertFalse(FullTextIndex.isNear(dpos, 0));
+
+        assertTrue(FullTextIndex.isNear(dpos, 1));
+
+        assertTrue(FullTextIndex.isNear(new int[][] { { 5 } }, 0));
+
+    }
+
+}
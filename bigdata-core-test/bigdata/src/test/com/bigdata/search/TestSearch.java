@@ -31,6 +31,7 @@ package com.bigdata.search;
 import java.io.StringReader;
 import java.util.Iterator;
 import java.util.Properties;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
 import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
@@ -157,6 +158,157 @@ public class TestSearch extends AbstractSearchTest {
 
     }
     
+    /**
+     * Variant of {@link #test_ChildProofing()} in which the maxRank is small
+     * enough for the query to be evaluated by a {@link TopKHitIterator}.
+     */
+    public void test_ChildProofing_topK() throws InterruptedException {
+
+        final String languageCode = "EN";
+
+        init(FullTextIndex.Options.TOP_K_MAX_RANK, "10");
+
+        {
+            long docId = 1;
+            final int fieldId = 0;
+            final TokenBuffer<Long> buffer = new TokenBuffer<Long>(docs.length, getNdx());
+            for (String s : docs) {
+
+                getNdx().index(buffer, Long.valueOf(docId++), fieldId,
+                        languageCode, new StringReader(s));
+
+            }
+            buffer.flush();
+        }
+
+        final FullTextQuery top3 = new FullTextQuery("child proofing",
+                languageCode, false/* prefixMatch */, null/* regex */,
+                false/* matchAllTerms */, false/* matchExact */,
+                0d/* minCosine */, 1.0d/* maxCosine */, 1/* minRank */,
+                3/* maxRank */, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        assertTrue(getNdx().isTopKQuery(top3));
+
+        assertSameHits(new IHit[] { //
+                new HT<Long>(5L, 0.44194173824159216d),//
+                new HT<Long>(6L, 0.44194173824159216d),//
+                new HT<Long>(2L, 0.35355339059327373d),//
+        }, getNdx().search(top3));
+
+        // a slice which does not start at the first rank.
+        assertSameHits(new IHit[] { //
+                new HT<Long>(6L, 0.44194173824159216d),//
+                new HT<Long>(2L, 0.35355339059327373d),//
+        }, getNdx().search(new FullTextQuery("child proofing",
+                languageCode, false/* prefixMatch */, null/* regex */,
+                false/* matchAllTerms */, false/* matchExact */,
+                0d/* minCosine */, 1.0d/* maxCosine */, 2/* minRank */,
+                3/* maxRank */, Long.MAX_VALUE, TimeUnit.MILLISECONDS)));
+
+        // the minCosine prunes the hits.
+        assertSameHits(new IHit[] { //
+                new HT<Long>(5L, 0.44194173824159216d),//
+                new HT<Long>(6L, 0.44194173824159216d),//
+        }, getNdx().search(new FullTextQuery("child proofing",
+                languageCode, false/* prefixMatch */, null/* regex */,
+                false/* matchAllTerms */, false/* matchExact */,
+                .4d/* minCosine */, 1.0d/* maxCosine */, 1/* minRank */,
+                10/* maxRank */, Long.MAX_VALUE, TimeUnit.MILLISECONDS)));
+
+    }
+
+    /**
+     * Verifies that the top-K evaluation visits the same hits as the full
+     * evaluation of the query for a randomly generated corpus.
+     */
+    public void test_topK_sameHits() throws InterruptedException {
+
+        final String languageCode = "EN";
+
+        final String[] vocab = new String[] { "apple", "banana", "cherry",
+                "grape", "lemon", "mango", "olive", "peach", "pear", "plum" };
+
+        final Random r = new Random(1234);
+
+        init(FullTextIndex.Options.TOP_K_MAX_RANK, "100");
+
+        {
+            final int ndocs = 500;
+            final TokenBuffer<Long> buffer = new TokenBuffer<Long>(ndocs, getNdx());
+            for (long docId = 1; docId <= ndocs; docId++) {
+
+                final StringBuilder sb = new StringBuilder();
+                final int nwords = 1 + r.nextInt(8);
+                for (int i = 0; i < nwords; i++) {
+                    // skewed toward the start of the vocabulary.
+                    sb.append(vocab[r.nextInt(1 + r.nextInt(vocab.length))]);
+                    sb.append(' ');
+                }
+
+                getNdx().index(buffer, Long.valueOf(docId), 0/* fieldId */,
+                        languageCode, new StringReader(sb.toString()));
+
+            }
+            buffer.flush();
+        }
+
+        for (String query : new String[] { "apple", "apple banana",
+                "banana mango plum", "cherry grape lemon olive pear" }) {
+
+            final int maxRank = 20;
+
+            final FullTextQuery q = new FullTextQuery(query, languageCode,
+                    false/* prefixMatch */, null/* regex */,
+                    false/* matchAllTerms */, false/* matchExact */,
+                    0d/* minCosine */, 1.0d/* maxCosine */, 1/* minRank */,
+                    maxRank, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            /*
+             * Note: The top-K evaluation is requested first since the full
+             * evaluation caches its hits.
+             */
+            assertTrue(getNdx().isTopKQuery(q));
+
+            final Hiterator<Hit<Long>> actual = getNdx().search(q);
+
+            // the full evaluation.
+            final Hiterator<Hit<Long>> expected = getNdx().search(
+                    new FullTextQuery(query, languageCode,
+                            false/* prefixMatch */, null/* regex */,
+                            false/* matchAllTerms */, false/* matchExact */,
+                            0d/* minCosine */, 1.0d/* maxCosine */,
+                            1/* minRank */, Integer.MAX_VALUE/* maxRank */,
+                            Long.MAX_VALUE, TimeUnit.MILLISECONDS));
+
+            /*
+             * Note: Only the cosines are compared since the cosines of tied
+             * documents may differ in the last bits depending on the order in
+             * which the terms were summed.
+             */
+            int n = 0;
+            while (expected.hasNext() && n < maxRank) {
+
+                final Hit<Long> e = expected.next();
+
+                assertTrue(actual.hasNext());
+
+                final Hit<Long> a = actual.next();
+
+                n++;
+
+                assertEquals("rank", n, a.getRank());
+
+                assertEquals("cosine: query=" + query + ", rank=" + n,
+                        e.getCosine(), a.getCosine(), 1e-9);
+
+            }
+
+            assertFalse(actual.hasNext());
+
+        }
+
+    }
+
     /**
      * Compares the hit list to the expected hit list.
      * <p>
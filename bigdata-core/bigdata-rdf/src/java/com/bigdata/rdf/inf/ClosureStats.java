@@ -24,6 +24,11 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 */
 package com.bigdata.rdf.inf;
 
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 import com.bigdata.counters.CAT;
 
 /**
@@ -48,6 +53,84 @@ public class ClosureStats {
      */
     public final CAT elapsed = new CAT();
 
+    /**
+     * Statistics for the rules, keyed by the rule name. This is only reported
+     * by closure operations which evaluate the rules themselves, such as the
+     * {@link StreamingTruthMaintenance}, and will otherwise be empty.
+     */
+    public final ConcurrentHashMap<String, RuleFiringStats> ruleStats = new ConcurrentHashMap<String, RuleFiringStats>();
+
+    /**
+     * Statistics for a single rule.
+     */
+    public static class RuleFiringStats {
+
+        /**
+         * The #of times the rule fired (the #of solutions for the rule).
+         */
+        public final CAT firingCount = new CAT();
+
+        /**
+         * The #of distinct entailments computed by the rule which were not
+         * already known (either in the database or previously computed).
+         */
+        public final CAT entailmentCount = new CAT();
+
+        /**
+         * The elapsed time evaluating the rule (nanoseconds).
+         */
+        public final CAT elapsedNanos = new CAT();
+
+        public void add(final RuleFiringStats o) {
+
+            firingCount.add(o.firingCount.get());
+
+            entailmentCount.add(o.entailmentCount.get());
+
+            elapsedNanos.add(o.elapsedNanos.get());
+
+        }
+
+        public String toString() {
+
+            return "{firingCount=" + firingCount.estimate_get()
+                    + ", entailmentCount=" + entailmentCount.estimate_get()
+                    + ", elapsed="
+                    + TimeUnit.NANOSECONDS.toMillis(elapsedNanos.estimate_get())
+                    + "ms}";
+
+        }
+
+    }
+
+    /**
+     * Return the statistics for the named rule, creating them if necessary.
+     * 
+     * @param ruleName
+     *            The name of the rule.
+     */
+    public RuleFiringStats getRuleStats(final String ruleName) {
+
+        RuleFiringStats t = ruleStats.get(ruleName);
+
+        if (t == null) {
+
+            final RuleFiringStats tmp = ruleStats.putIfAbsent(ruleName,
+                    t = new RuleFiringStats());
+
+            if (tmp != null) {
+
+                // Lost a race.
+                t = tmp;
+
+            }
+
+        }
+
+        return t;
+
+    }
+
     public ClosureStats() {
         
     }
@@ -71,6 +154,12 @@ public class ClosureStats {
         
         this.elapsed.add(o.elapsed.get());
         
+        for (Map.Entry<String, RuleFiringStats> e : o.ruleStats.entrySet()) {
+
+            getRuleStats(e.getKey()).add(e.getValue());
+
+        }
+
     }
     
     public long triplesPerSecond() {
@@ -82,7 +171,10 @@ public class ClosureStats {
     public String toString() {
 
         return getClass().getSimpleName() + "{mutationCount=" + mutationCount.estimate_get()
-                + ", elapsed=" + elapsed.estimate_get() + "ms, rate="+triplesPerSecond()+"}";
+                + ", elapsed=" + elapsed.estimate_get() + "ms, rate="+triplesPerSecond()
+                + (ruleStats.isEmpty() ? "" : ", rules="
+                        + new TreeMap<String, RuleFiringStats>(ruleStats))
+                + "}";
         
     }
     
@@ -0,0 +1,956 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.inf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IPredicate;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.model.StatementEnum;
+import com.bigdata.rdf.rules.FullClosure;
+import com.bigdata.rdf.rules.InferenceEngine;
+import com.bigdata.rdf.spo.ISPO;
+import com.bigdata.rdf.spo.SPO;
+import com.bigdata.rdf.spo.SPOKeyOrder;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.TempTripleStore;
+import com.bigdata.relation.accesspath.IElementFilter;
+import com.bigdata.relation.rule.IProgram;
+import com.bigdata.relation.rule.IRule;
+import com.bigdata.relation.rule.IStep;
+import com.bigdata.striterator.ChunkedArrayIterator;
+import com.bigdata.striterator.IChunkedOrderedIterator;
+
+/**
+ * Streaming truth maintenance for the incremental assertion of small batches
+ * of statements. Statements are buffered in memory across one or more updates
+ * and their closure against the database is then computed in a single pass
+ * using semi-naive evaluation over in-memory delta relations, rather than by
+ * writing the statements on a {@link TempTripleStore} and running the
+ * closure program mapped for truth maintenance over that store.
+ * <p>
+ * Each round of the fixed point joins one tail of each rule against the delta
+ * (the statements which were new in the previous round) and the other tails
+ * against the database plus the statements computed so far. The rules are
+ * those of the {@link FullClosure} program for the database. The new
+ * statements (explicit and inferred), and their {@link Justification}s when the
+ * database is configured for justifications, are written onto the database
+ * once the fixed point has been reached.
+ * <p>
+ * This is intended for continuous ingest where the cost of provisioning and
+ * closing B+Tree backed temporary stores dominates the cost of truth
+ * maintenance for each small update. Since the delta relations are held on the
+ * JVM heap, the #of statements buffered before their closure is computed
+ * should be bounded (see the <i>batchSize</i> constructor argument). For large
+ * loads, use {@link TruthMaintenance} or database-at-once closure instead.
+ * <p>
+ * Retraction is still handled by {@link TruthMaintenance#retractAll(TempTripleStore)}
+ * (using the justifications). Any buffered assertions are flushed before the
+ * retraction is performed.
+ * <p>
+ * Note: As with {@link TruthMaintenance}, updating the closure is not safe for
+ * concurrent writers on the database.
+ */
+public class StreamingTruthMaintenance {
+
+    private static final transient Logger log = Logger
+            .getLogger(StreamingTruthMaintenance.class);
+
+    /**
+     * The target database.
+     */
+    private final AbstractTripleStore database;
+
+    /**
+     * Used for retraction.
+     */
+    private final TruthMaintenance tm;
+
+    /**
+     * Entailments which do not pass this filter are not added to the
+     * database.
+     */
+    private final IElementFilter<ISPO> filter;
+
+    /**
+     * The rules whose closure is maintained.
+     */
+    private final IRule[] rules;
+
+    /**
+     * <code>true</code> iff {@link Justification}s are written.
+     */
+    private final boolean justify;
+
+    /**
+     * The #of buffered statements which triggers a {@link #flush()}.
+     */
+    private final int batchSize;
+
+    /**
+     * The explicit statements which have been buffered but whose closure has
+     * not yet been computed. The statements are (s,p,o) keys (the statement
+     * type is not set).
+     */
+    private final Set<SPO> pending = new HashSet<SPO>();
+
+    /**
+     * The #of updates buffered in {@link #pending}.
+     */
+    private int pendingUpdateCount = 0;
+
+    /**
+     * Statistics accumulated across all flushes.
+     */
+    private final ClosureStats totals = new ClosureStats();
+
+    /**
+     * @param inferenceEngine
+     *            The inference engine for the database.
+     * @param batchSize
+     *            The #of buffered statements which will cause the closure of
+     *            the buffered statements to be computed and written onto the
+     *            database.
+     */
+    @SuppressWarnings("unchecked")
+    public StreamingTruthMaintenance(final InferenceEngine inferenceEngine,
+            final int batchSize) {
+
+        if (inferenceEngine == null)
+            throw new IllegalArgumentException();
+
+        if (batchSize <= 0)
+            throw new IllegalArgumentException();
+
+        this.database = inferenceEngine.database;
+
+        if (database.isQuads()) {
+
+            // Inference is not supported for quads.
+            throw new UnsupportedOperationException();
+
+        }
+
+        this.tm = new TruthMaintenance(inferenceEngine);
+
+        this.filter = inferenceEngine.doNotAddFilter;
+
+        this.justify = database.isJustify();
+
+        this.batchSize = batchSize;
+
+        final List<IRule> tmp = new LinkedList<IRule>();
+
+        collectRules(new FullClosure(database).getProgram(database
+                .getSPORelation().getNamespace(), null/* focusStore */), tmp);
+
+        this.rules = tmp.toArray(new IRule[tmp.size()]);
+
+        if (log.isInfoEnabled())
+            log.info("#rules=" + rules.length + ", batchSize=" + batchSize);
+
+    }
+
+    /**
+     * Flatten the program into its rules.
+     */
+    private static void collectRules(final IStep step, final List<IRule> rules) {
+
+        if (step.isRule()) {
+
+            rules.add((IRule) step);
+
+            return;
+
+        }
+
+        final Iterator<IStep> itr = ((IProgram) step).steps();
+
+        while (itr.hasNext()) {
+
+            collectRules(itr.next(), rules);
+
+        }
+
+    }
+
+    /**
+     * The database whose closure will be updated.
+     */
+    public AbstractTripleStore getDatabase() {
+
+        return database;
+
+    }
+
+    /**
+     * The statistics accumulated across all closure operations performed by
+     * this instance.
+     */
+    public ClosureStats getStats() {
+
+        return totals;
+
+    }
+
+    /**
+     * The #of buffered statements whose closure has not yet been computed.
+     */
+    synchronized public int getPendingCount() {
+
+        return pending.size();
+
+    }
+
+    /**
+     * Buffer statements to be asserted. The closure of the buffered statements
+     * is computed and written onto the database once the #of buffered
+     * statements reaches the <i>batchSize</i>.
+     * 
+     * @param a
+     *            The statements. These must be fully bound (triples) and
+     *            their {@link IV}s must have been resolved against the lexicon
+     *            of the database.
+     * @param n
+     *            The #of statements in <i>a</i> to be asserted.
+     * 
+     * @return The statistics for the closure operation iff the closure was
+     *         computed and otherwise <code>null</code>.
+     */
+    synchronized public ClosureStats assertAll(final ISPO[] a, final int n) {
+
+        if (a == null)
+            throw new IllegalArgumentException();
+
+        if (n < 0 || n > a.length)
+            throw new IllegalArgumentException();
+
+        for (int i = 0; i < n; i++) {
+
+            final ISPO spo = a[i];
+
+            if (spo == null || !spo.isFullyBound())
+                throw new IllegalArgumentException("Not fully bound: " + spo);
+
+            pending.add(new SPO(spo.s(), spo.p(), spo.o()));
+
+        }
+
+        pendingUpdateCount++;
+
+        if (pending.size() >= batchSize) {
+
+            return flush();
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Assert the statements in the temporary store and update the closure.
+     * This is a drop in for {@link TruthMaintenance#assertAll(TempTripleStore)}
+     * for callers which buffer statements on a {@link TempTripleStore} (such as
+     * the {@link com.bigdata.rdf.store.DataLoader}). The closure is computed
+     * in memory each time <i>batchSize</i> statements have been read from the
+     * temporary store and once all statements have been read.
+     * 
+     * @param tempStore
+     *            A temporary store containing explicit statements to be
+     *            asserted. Their {@link IV}s must have been resolved against
+     *            the lexicon of the database. The tempStore will be closed as
+     *            a post-condition.
+     * 
+     * @return The statistics for the closure operation.
+     */
+    synchronized public ClosureStats assertAll(final TempTripleStore tempStore) {
+
+        if (tempStore == null)
+            throw new IllegalArgumentException();
+
+        final ClosureStats stats = new ClosureStats();
+
+        try {
+
+            final IChunkedOrderedIterator<ISPO> itr = tempStore
+                    .getAccessPath(SPOKeyOrder.SPO).iterator();
+
+            try {
+
+                while (itr.hasNext()) {
+
+                    final ISPO[] chunk = itr.nextChunk();
+
+                    final ClosureStats tmp = assertAll(chunk, chunk.length);
+
+                    if (tmp != null)
+                        stats.add(tmp);
+
+                }
+
+            } finally {
+
+                itr.close();
+
+            }
+
+            stats.add(flush());
+
+        } finally {
+
+            tempStore.close();
+
+        }
+
+        return stats;
+
+    }
+
+    /**
+     * Retract statements from the database and update the closure. Any
+     * buffered assertions are flushed first.
+     * 
+     * @param a
+     *            The explicit statements to be retracted.
+     * @param n
+     *            The #of statements in <i>a</i> to be retracted.
+     * 
+     * @return The statistics for the retraction.
+     */
+    synchronized public ClosureStats retractAll(final ISPO[] a, final int n) {
+
+        if (a == null)
+            throw new IllegalArgumentException();
+
+        if (n < 0 || n > a.length)
+            throw new IllegalArgumentException();
+
+        flush();
+
+        final ISPO[] b = new ISPO[n];
+
+        for (int i = 0; i < n; i++) {
+
+            b[i] = new SPO(a[i].s(), a[i].p(), a[i].o(), StatementEnum.Explicit);
+
+        }
+
+        final TempTripleStore tempStore = tm.newTempTripleStore();
+
+        tempStore.addStatements(b, n);
+
+        final ClosureStats stats = tm.retractAll(tempStore);
+
+        totals.add(stats);
+
+        return stats;
+
+    }
+
+    /**
+     * Compute the closure of the buffered statements and write the buffered
+     * statements and their entailments onto the database. This does not
+     * commit the database.
+     * 
+     * @return The statistics for the closure operation.
+     */
+    synchronized public ClosureStats flush() {
+
+        final ClosureStats stats = new ClosureStats();
+
+        if (pending.isEmpty()) {
+
+            return stats;
+
+        }
+
+        final long begin = System.currentTimeMillis();
+
+        final Closure closure = new Closure(stats);
+
+        /*
+         * The explicit statements which are not yet in the database are the
+         * initial delta. Statements already in the database are only written
+         * so they will be made explicit. Their consequences are already in
+         * the database since it is at fixed point.
+         */
+        DeltaRelation delta = new DeltaRelation();
+
+        for (SPO spo : pending) {
+
+            if (!database.hasStatement(spo.s(), spo.p(), spo.o())) {
+
+                closure.known.add(spo);
+
+                delta.add(spo);
+
+            }
+
+        }
+
+        int nrounds = 0;
+
+        while (!delta.isEmpty()) {
+
+            final DeltaRelation next = new DeltaRelation();
+
+            for (IRule rule : rules) {
+
+                closure.apply(rule, delta, next);
+
+            }
+
+            delta = next;
+
+            nrounds++;
+
+        }
+
+        /*
+         * Write the explicit statements and the new entailments.
+         */
+        final ISPO[] a = new ISPO[pending.size() + closure.known.size()];
+
+        int n = 0;
+
+        for (SPO spo : pending) {
+
+            a[n++] = new SPO(spo.s(), spo.p(), spo.o(), StatementEnum.Explicit);
+
+        }
+
+        for (SPO spo : closure.known.all) {
+
+            if (!pending.contains(spo)) {
+
+                a[n++] = new SPO(spo.s(), spo.p(), spo.o(),
+                        StatementEnum.Inferred);
+
+            }
+
+        }
+
+        stats.mutationCount.add(database.addStatements(a, n));
+
+        if (justify && !closure.justifications.isEmpty()) {
+
+            final Justification[] b = closure.justifications
+                    .toArray(new Justification[closure.justifications.size()]);
+
+            database.getSPORelation().addJustifications(
+                    new ChunkedArrayIterator<Justification>(b.length, b,
+                            null/* keyOrder */));
+
+        }
+
+        final long elapsed = System.currentTimeMillis() - begin;
+
+        stats.elapsed.add(elapsed);
+
+        if (log.isInfoEnabled())
+            log.info("Closed " + pending.size() + " statements from "
+                    + pendingUpdateCount + " updates in " + nrounds
+                    + " rounds: " + stats);
+
+        pending.clear();
+
+        pendingUpdateCount = 0;
+
+        totals.add(stats);
+
+        return stats;
+
+    }
+
+    /**
+     * Flush any buffered statements and then commit the database. Use this to
+     * batch several small updates into a single closure operation and a
+     * single commit.
+     * 
+     * @return The commit time.
+     */
+    synchronized public long commit() {
+
+        flush();
+
+        return database.commit();
+
+    }
+
+    /**
+     * The state for computing the closure of one batch.
+     */
+    private class Closure {
+
+        private final ClosureStats stats;
+
+        /**
+         * The statements which are not in the database but which are known to
+         * be in the closure (the new explicit statements and the entailments
+         * computed so far).
+         */
+        private final DeltaRelation known = new DeltaRelation();
+
+        /**
+         * Statements which were computed by the rules and found to be in the
+         * database already. This avoids redundant point tests on the
+         * statement indices.
+         */
+        private final Set<SPO> inDatabase = new HashSet<SPO>();
+
+        /**
+         * The justifications for the computed entailments.
+         */
+        private final List<Justification> justifications = new LinkedList<Justification>();
+
+        Closure(final ClosureStats stats) {
+
+            this.stats = stats;
+
+        }
+
+        /**
+         * Apply the rule, joining each of its tails in turn against the
+         * delta.
+         */
+        void apply(final IRule rule, final DeltaRelation delta,
+                final DeltaRelation next) {
+
+            final long begin = System.nanoTime();
+
+            final ClosureStats.RuleFiringStats ruleStats = stats
+                    .getRuleStats(rule.getName());
+
+            final int tailCount = rule.getTailCount();
+
+            final boolean[] used = new boolean[tailCount];
+
+            for (int i = 0; i < tailCount; i++) {
+
+                final IPredicate<?> tail = rule.getTail(i);
+
+                final IBindingSet bset = new ListBindingSet();
+
+                final List<SPO> matches = delta.match(ivOrNull(tail, 0, bset),
+                        ivOrNull(tail, 1, bset), ivOrNull(tail, 2, bset));
+
+                final int nmatches = matches.size();
+
+                for (int k = 0; k < nmatches; k++) {
+
+                    final IBindingSet tmp = bind(tail, matches.get(k), bset);
+
+                    if (tmp == null)
+                        continue;
+
+                    used[i] = true;
+
+                    join(rule, tmp, used, 1/* nused */, next, ruleStats);
+
+                    used[i] = false;
+
+                }
+
+            }
+
+            ruleStats.elapsedNanos.add(System.nanoTime() - begin);
+
+        }
+
+        /**
+         * Join the remaining tails against the database and the statements
+         * known to be in the closure. The next tail is always the one having
+         * the most bound positions given the current bindings.
+         */
+        private void join(final IRule rule, final IBindingSet bset,
+                final boolean[] used, final int nused,
+                final DeltaRelation next,
+                final ClosureStats.RuleFiringStats ruleStats) {
+
+            if (nused == used.length) {
+
+                emit(rule, bset, next, ruleStats);
+
+                return;
+
+            }
+
+            int best = -1;
+
+            int bestBound = -1;
+
+            for (int i = 0; i < used.length; i++) {
+
+                if (used[i])
+                    continue;
+
+                final IPredicate<?> tail = rule.getTail(i);
+
+                int nbound = 0;
+
+                for (int j = 0; j < 3; j++) {
+
+                    if (ivOrNull(tail, j, bset) != null)
+                        nbound++;
+
+                }
+
+                if (nbound > bestBound) {
+
+                    best = i;
+
+                    bestBound = nbound;
+
+                }
+
+            }
+
+            final IPredicate<?> tail = rule.getTail(best);
+
+            final IV s = ivOrNull(tail, 0, bset);
+
+            final IV p = ivOrNull(tail, 1, bset);
+
+            final IV o = ivOrNull(tail, 2, bset);
+
+            used[best] = true;
+
+            try {
+
+                // The database.
+                final IChunkedOrderedIterator<ISPO> itr = database
+                        .getAccessPath(s, p, o).iterator();
+
+                try {
+
+                    while (itr.hasNext()) {
+
+                        final IBindingSet tmp = bind(tail, itr.next(), bset);
+
+                        if (tmp != null)
+                            join(rule, tmp, used, nused + 1, next, ruleStats);
+
+                    }
+
+                } finally {
+
+                    itr.close();
+
+                }
+
+                /*
+                 * The statements computed so far. Statements added while
+                 * visiting the matches are not visited here, but they are in
+                 * the delta for the next round.
+                 */
+                final List<SPO> matches = known.match(s, p, o);
+
+                final int nmatches = matches.size();
+
+                for (int k = 0; k < nmatches; k++) {
+
+                    final IBindingSet tmp = bind(tail, matches.get(k), bset);
+
+                    if (tmp != null)
+                        join(rule, tmp, used, nused + 1, next, ruleStats);
+
+                }
+
+            } finally {
+
+                used[best] = false;
+
+            }
+
+        }
+
+        /**
+         * Handle a solution for the rule.
+         */
+        private void emit(final IRule rule, final IBindingSet bset,
+                final DeltaRelation next,
+                final ClosureStats.RuleFiringStats ruleStats) {
+
+            final int nconstraints = rule.getConstraintCount();
+
+            for (int i = 0; i < nconstraints; i++) {
+
+                if (!rule.getConstraint(i).accept(bset))
+                    return;
+
+            }
+
+            final IPredicate<?> head = rule.getHead();
+
+            final IV s = ivOrNull(head, 0, bset);
+
+            final IV p = ivOrNull(head, 1, bset);
+
+            final IV o = ivOrNull(head, 2, bset);
+
+            if (s == null || p == null || o == null) {
+
+                // Head is not fully bound.
+                return;
+
+            }
+
+            final SPO spo = new SPO(s, p, o, StatementEnum.Inferred);
+
+            if (!filter.isValid(spo))
+                return;
+
+            ruleStats.firingCount.increment();
+
+            if (justify) {
+
+                justifications.add(new Justification(rule, spo, bset));
+
+            }
+
+            final SPO key = new SPO(s, p, o);
+
+            if (known.contains(key) || inDatabase.contains(key))
+                return;
+
+            if (database.hasStatement(s, p, o)) {
+
+                inDatabase.add(key);
+
+                return;
+
+            }
+
+            known.add(key);
+
+            next.add(key);
+
+            ruleStats.entailmentCount.increment();
+
+        }
+
+    }
+
+    /**
+     * Return the {@link IV} for the position in the predicate given the
+     * bindings and <code>null</code> if the position is an unbound variable.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static IV ivOrNull(final IPredicate<?> pred, final int index,
+            final IBindingSet bset) {
+
+        final IVariableOrConstant<IV> t = (IVariableOrConstant<IV>) pred
+                .get(index);
+
+        if (t.isConstant())
+            return t.get();
+
+        final IConstant<IV> c = bset.get((IVariable) t);
+
+        return c == null ? null : c.get();
+
+    }
+
+    /**
+     * Bind the variables in the predicate from the statement.
+     * 
+     * @return The new bindings -or- <code>null</code> if the statement is not
+     *         consistent with the existing bindings and the constants in the
+     *         predicate.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static IBindingSet bind(final IPredicate<?> pred, final ISPO spo,
+            final IBindingSet bset) {
+
+        IBindingSet tmp = null;
+
+        for (int i = 0; i < 3; i++) {
+
+            final IVariableOrConstant<IV> t = (IVariableOrConstant<IV>) pred
+                    .get(i);
+
+            final IV iv = spo.get(i);
+
+            if (t.isConstant()) {
+
+                if (!t.get().equals(iv))
+                    return null;
+
+                continue;
+
+            }
+
+            final IVariable var = (IVariable) t;
+
+            final IConstant<IV> c = (tmp == null ? bset : tmp).get(var);
+
+            if (c != null) {
+
+                if (!c.get().equals(iv))
+                    return null;
+
+                continue;
+
+            }
+
+            if (tmp == null)
+                tmp = bset.clone();
+
+            tmp.set(var, new Constant<IV>(iv));
+
+        }
+
+        return tmp == null ? bset : tmp;
+
+    }
+
+    /**
+     * An in-memory relation of (s,p,o) keys indexed by each position. The
+     * relation is append only, so a caller can visit the matches for a pattern
+     * while the relation is being extended by indexing over the size of the
+     * list when the visit began.
+     */
+    private static class DeltaRelation {
+
+        private final Set<SPO> set = new HashSet<SPO>();
+
+        private final List<SPO> all = new ArrayList<SPO>();
+
+        private final Map<IV, List<SPO>> byS = new HashMap<IV, List<SPO>>();
+
+        private final Map<IV, List<SPO>> byP = new HashMap<IV, List<SPO>>();
+
+        private final Map<IV, List<SPO>> byO = new HashMap<IV, List<SPO>>();
+
+        boolean isEmpty() {
+
+            return all.isEmpty();
+
+        }
+
+        boolean contains(final SPO spo) {
+
+            return set.contains(spo);
+
+        }
+
+        void add(final SPO spo) {
+
+            if (!set.add(spo))
+                return;
+
+            all.add(spo);
+
+            index(byS, spo.s(), spo);
+
+            index(byP, spo.p(), spo);
+
+            index(byO, spo.o(), spo);
+
+        }
+
+        private static void index(final Map<IV, List<SPO>> map, final IV iv,
+                final SPO spo) {
+
+            List<SPO> list = map.get(iv);
+
+            if (list == null) {
+
+                map.put(iv, list = new ArrayList<SPO>());
+
+            }
+
+            list.add(spo);
+
+        }
+
+        /**
+         * Return the statements which could match the pattern. The caller is
+         * responsible for testing the bound positions. The returned list is
+         * backed by the relation and is NOT a copy, so the caller must not
+         * modify it and must not use an {@link Iterator} if the relation may
+         * be extended while it is visiting the matches.
+         */
+        List<SPO> match(final IV s, final IV p, final IV o) {
+
+            List<SPO> list = all;
+
+            if (s != null) {
+
+                list = shorter(list, byS.get(s));
+
+            }
+
+            if (p != null) {
+
+                list = shorter(list, byP.get(p));
+
+            }
+
+            if (o != null) {
+
+                list = shorter(list, byO.get(o));
+
+            }
+
+            if (list == null || list.isEmpty())
+                return Collections.emptyList();
+
+            return list;
+
+        }
+
+        private static List<SPO> shorter(final List<SPO> a, final List<SPO> b) {
+
+            if (a == null || b == null)
+                return null;
+
+            return b.size() < a.size() ? b : a;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,454 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.lexicon;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.util.concurrent.Haltable;
+
+/**
+ * Coalesces concurrent requests to resolve {@link IV}s against the ID2TERM and
+ * BLOBS indices of the same lexicon view. Each caller enqueues its request and
+ * then competes for the right to run a batch. The thread which wins drains the
+ * pending requests, forms the union of the distinct {@link IV}s, resolves that
+ * union in a single batch (the batch tasks sort the {@link IV}s into index
+ * order before probing the index) and then completes each drained request by
+ * copying the values it asked for into the caller's map. Threads which do not
+ * win simply wait until their request has been completed by another thread or
+ * until they are able to run a batch themselves.
+ * <p>
+ * This is the "group commit" pattern applied to reads. Concurrent queries which
+ * touch the same hot terms read each term once per batch rather than once per
+ * query, and the union is read in key order which gives better locality on
+ * the index than a series of small, independently ordered batches.
+ * <p>
+ * Note: An instance must only be shared by views reading from the same commit
+ * point since the batch is resolved against whichever view the winning thread
+ * happens to be using.
+ *
+ * @see LexiconRelation#getTerms(Collection, int, int)
+ * @see com.bigdata.rdf.store.AbstractTripleStore.Options#COALESCE_TERM_RESOLUTION
+ */
+public class BatchResolveCoalescer implements ICounterSetAccess {
+
+    private static final transient Logger log = Logger
+            .getLogger(BatchResolveCoalescer.class);
+
+    /**
+     * Interface for the operation which reads a batch of {@link IV}s on the
+     * backing index(s).
+     */
+    public interface IBatchResolver {
+
+        /**
+         * Resolve the {@link IV}s.
+         *
+         * @param ivs
+         *            The distinct {@link IV}s to be resolved.
+         * @param ret
+         *            The map onto which the resolved {@link BigdataValue}s
+         *            will be written. {@link IV}s which could not be resolved
+         *            will not have an entry in this map.
+         */
+        void resolve(Collection<IV<?, ?>> ivs,
+                ConcurrentHashMap<IV<?, ?>, BigdataValue> ret) throws Exception;
+
+    }
+
+    /**
+     * A request from a single caller.
+     */
+    private static class Request {
+
+        private final Collection<? extends IV<?, ?>> ivs;
+
+        private final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret;
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private volatile Throwable cause = null;
+
+        Request(final Collection<? extends IV<?, ?>> ivs,
+                final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret) {
+            this.ivs = ivs;
+            this.ret = ret;
+        }
+
+        boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        void done(final Throwable cause) {
+            this.cause = cause;
+            latch.countDown();
+        }
+
+    }
+
+    /**
+     * The maximum #of distinct {@link IV}s which will be drained into a single
+     * batch (a batch always includes at least one request).
+     */
+    private final int maxBatchSize;
+
+    /**
+     * The maximum time in nanoseconds that a thread will wait for another
+     * thread to complete its request before it tries to run a batch itself.
+     */
+    private final long pollNanos;
+
+    /**
+     * Requests which have not yet been drained into a batch.
+     */
+    private final ConcurrentLinkedQueue<Request> queue = new ConcurrentLinkedQueue<Request>();
+
+    /**
+     * Lock held by the thread which is running a batch.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The counters (shared by the coalescers of the same lexicon).
+     */
+    private final BatchResolveCoalescerCounters counters;
+
+    /**
+     * @param maxBatchSize
+     *            The maximum #of distinct {@link IV}s which will be drained
+     *            into a single batch.
+     * @param pollMillis
+     *            The maximum time in milliseconds that a thread will wait for
+     *            another thread to complete its request before it tries to
+     *            run a batch itself.
+     */
+    public BatchResolveCoalescer(final int maxBatchSize, final long pollMillis) {
+
+        this(maxBatchSize, pollMillis, new BatchResolveCoalescerCounters());
+
+    }
+
+    /**
+     * @param maxBatchSize
+     *            The maximum #of distinct {@link IV}s which will be drained
+     *            into a single batch.
+     * @param pollMillis
+     *            The maximum time in milliseconds that a thread will wait for
+     *            another thread to complete its request before it tries to
+     *            run a batch itself.
+     * @param counters
+     *            The counters on which the coalescer reports.
+     */
+    public BatchResolveCoalescer(final int maxBatchSize,
+            final long pollMillis, final BatchResolveCoalescerCounters counters) {
+
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException();
+
+        if (pollMillis <= 0)
+            throw new IllegalArgumentException();
+
+        if (counters == null)
+            throw new IllegalArgumentException();
+
+        this.maxBatchSize = maxBatchSize;
+
+        this.counters = counters;
+
+        this.pollNanos = TimeUnit.MILLISECONDS.toNanos(pollMillis);
+
+    }
+
+    /**
+     * Resolve the {@link IV}s, coalescing the request with any concurrent
+     * requests.
+     *
+     * @param ivs
+     *            The {@link IV}s to be resolved.
+     * @param ret
+     *            The caller's map. The resolved values are written onto this
+     *            map before this method returns.
+     * @param resolver
+     *            The caller's resolver. This is used iff the caller winds up
+     *            running a batch.
+     */
+    public void resolve(final Collection<? extends IV<?, ?>> ivs,
+            final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret,
+            final IBatchResolver resolver) {
+
+        if (ivs == null)
+            throw new IllegalArgumentException();
+
+        if (ret == null)
+            throw new IllegalArgumentException();
+
+        if (resolver == null)
+            throw new IllegalArgumentException();
+
+        if (ivs.isEmpty())
+            return;
+
+        final Request req = new Request(ivs, ret);
+
+        counters.requestCount.increment();
+
+        counters.requestedCount.add(ivs.size());
+
+        queue.add(req);
+
+        boolean ranBatch = false;
+
+        try {
+
+            while (!req.isDone()) {
+
+                if (lock.tryLock()) {
+
+                    try {
+
+                        if (!req.isDone()) {
+
+                            runBatch(req, resolver);
+
+                            ranBatch = true;
+
+                        }
+
+                    } finally {
+
+                        lock.unlock();
+
+                    }
+
+                } else {
+
+                    /*
+                     * Another thread is running a batch. Wait for it to
+                     * complete our request, but not forever since our request
+                     * might not have been drained into that batch.
+                     */
+                    req.latch.await(pollNanos, TimeUnit.NANOSECONDS);
+
+                }
+
+            }
+
+        } catch (InterruptedException ex) {
+
+            /*
+             * Withdraw the request. If it was already drained into a batch
+             * then that batch will still complete it, but nobody is waiting.
+             */
+            queue.remove(req);
+
+            // preserve the interrupt status so query cancellation is noticed.
+            Thread.currentThread().interrupt();
+
+            throw new RuntimeException(ex);
+
+        }
+
+        if (!ranBatch)
+            counters.coalescedCount.increment();
+
+        if (req.cause != null)
+            throw new RuntimeException(req.cause);
+
+    }
+
+    /**
+     * Drain requests from the queue and resolve them in a single batch. The
+     * caller MUST hold the {@link #lock}.
+     * <p>
+     * If the batch fails because the calling thread was interrupted (e.g., its
+     * query was cancelled), then only the caller's request is failed. The
+     * other requests in the batch are returned to the queue and will be
+     * resolved by their own threads. Any other failure is a failure of the
+     * resolver and is reported to every request in the batch.
+     * 
+     * @param self
+     *            The caller's request.
+     * @param resolver
+     *            The caller's resolver.
+     */
+    private void runBatch(final Request self, final IBatchResolver resolver) {
+
+        final List<Request> batch = new LinkedList<Request>();
+
+        final LinkedHashSet<IV<?, ?>> distinct = new LinkedHashSet<IV<?, ?>>();
+
+        Request r;
+
+        while ((r = queue.peek()) != null) {
+
+            if (!batch.isEmpty()
+                    && distinct.size() + r.ivs.size() > maxBatchSize) {
+
+                // Leave the rest for the next batch.
+                break;
+
+            }
+
+            queue.poll();
+
+            batch.add(r);
+
+            distinct.addAll(r.ivs);
+
+        }
+
+        if (batch.isEmpty()) {
+
+            // Drained by another thread.
+            return;
+
+        }
+
+        final long begin = System.nanoTime();
+
+        final ConcurrentHashMap<IV<?, ?>, BigdataValue> tmp = new ConcurrentHashMap<IV<?, ?>, BigdataValue>(
+                distinct.size());
+
+        Throwable cause = null;
+
+        try {
+
+            resolver.resolve(distinct, tmp);
+
+        } catch (Throwable t) {
+
+            cause = t;
+
+        }
+
+        final long elapsed = System.nanoTime() - begin;
+
+        counters.batchCount.increment();
+
+        counters.resolvedCount.add(distinct.size());
+
+        counters.batchNanos.add(elapsed);
+
+        if (log.isInfoEnabled())
+            log.info("Resolved " + distinct.size() + " IVs for "
+                    + batch.size() + " requests in "
+                    + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+
+        if (cause != null
+                && (Haltable.isTerminationByInterrupt(cause) || Thread
+                        .currentThread().isInterrupted())) {
+
+            /*
+             * The interrupt belongs to the caller, not to the other requests
+             * which happened to join its batch.
+             */
+            for (Request req : batch) {
+
+                if (req != self) {
+
+                    queue.add(req);
+
+                    counters.requeuedCount.increment();
+
+                }
+
+            }
+
+            // The caller's request might not have been drained.
+            queue.remove(self);
+
+            self.done(cause);
+
+            return;
+
+        }
+
+        for (Request req : batch) {
+
+            if (cause == null) {
+
+                for (IV<?, ?> iv : req.ivs) {
+
+                    final BigdataValue value = tmp.get(iv);
+
+                    if (value != null) {
+
+                        req.ret.put(iv, value);
+
+                    }
+
+                }
+
+            }
+
+            req.done(cause);
+
+        }
+
+    }
+
+    @Override
+    public CounterSet getCounters() {
+
+        return counters.getCounters();
+
+    }
+
+    /**
+     * The #of batches executed (exposed for the test suite).
+     */
+    long getBatchCount() {
+
+        return counters.batchCount.get();
+
+    }
+
+    /**
+     * The #of distinct {@link IV}s read on the index (exposed for the test
+     * suite).
+     */
+    long getResolvedCount() {
+
+        return counters.resolvedCount.get();
+
+    }
+
+}
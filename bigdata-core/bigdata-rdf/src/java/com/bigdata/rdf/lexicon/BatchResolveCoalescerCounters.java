@@ -0,0 +1,264 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.lexicon;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.bigdata.counters.CAT;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
+import com.bigdata.counters.Instrument;
+import com.bigdata.journal.IIndexManager;
+
+/**
+ * Counters for the {@link BatchResolveCoalescer}s of a {@link LexiconRelation}.
+ * <p>
+ * There is one {@link BatchResolveCoalescer} per commit point, so the counters
+ * are shared by all coalescers for the same lexicon on an index manager and
+ * are reported by {@link #getCounters(IIndexManager)}. Otherwise the history
+ * would be lost each time a coalescer for an older commit point was released.
+ */
+public class BatchResolveCoalescerCounters implements ICounterSetAccess {
+
+    /**
+     * The shared instances, by lexicon relation namespace.
+     */
+    static private final WeakHashMap<IIndexManager, Map<String, BatchResolveCoalescerCounters>> instances = new WeakHashMap<IIndexManager, Map<String, BatchResolveCoalescerCounters>>();
+
+    /**
+     * Return the instance shared by the views of the lexicon relation on the
+     * index manager, creating it if necessary.
+     * 
+     * @param indexManager
+     *            The index manager.
+     * @param namespace
+     *            The namespace of the {@link LexiconRelation}.
+     */
+    static public BatchResolveCoalescerCounters getInstance(
+            final IIndexManager indexManager, final String namespace) {
+
+        if (indexManager == null)
+            throw new IllegalArgumentException();
+
+        if (namespace == null)
+            throw new IllegalArgumentException();
+
+        synchronized (instances) {
+
+            Map<String, BatchResolveCoalescerCounters> map = instances
+                    .get(indexManager);
+
+            if (map == null) {
+
+                map = new TreeMap<String, BatchResolveCoalescerCounters>();
+
+                instances.put(indexManager, map);
+
+            }
+
+            BatchResolveCoalescerCounters t = map.get(namespace);
+
+            if (t == null) {
+
+                t = new BatchResolveCoalescerCounters();
+
+                map.put(namespace, t);
+
+            }
+
+            return t;
+
+        }
+
+    }
+
+    /**
+     * Discard the instance for the lexicon relation (if any). This is invoked
+     * when the relation is destroyed.
+     * 
+     * @param indexManager
+     *            The index manager.
+     * @param namespace
+     *            The namespace of the {@link LexiconRelation}.
+     */
+    static void remove(final IIndexManager indexManager,
+            final String namespace) {
+
+        synchronized (instances) {
+
+            final Map<String, BatchResolveCoalescerCounters> map = instances
+                    .get(indexManager);
+
+            if (map != null) {
+
+                map.remove(namespace);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Return the counters for the lexicon relations on the index manager, with
+     * one child per relation namespace.
+     * 
+     * @param indexManager
+     *            The index manager.
+     * 
+     * @return The counters -or- <code>null</code> if no lexicon relation on
+     *         that index manager has coalesced term resolution.
+     */
+    static public CounterSet getCounters(final IIndexManager indexManager) {
+
+        synchronized (instances) {
+
+            final Map<String, BatchResolveCoalescerCounters> map = instances
+                    .get(indexManager);
+
+            if (map == null || map.isEmpty()) {
+
+                return null;
+
+            }
+
+            final CounterSet root = new CounterSet();
+
+            for (Map.Entry<String, BatchResolveCoalescerCounters> e : map
+                    .entrySet()) {
+
+                root.makePath(e.getKey()).attach(e.getValue().getCounters());
+
+            }
+
+            return root;
+
+        }
+
+    }
+
+    /**
+     * The #of requests.
+     */
+    final CAT requestCount = new CAT();
+
+    /**
+     * The #of batches executed.
+     */
+    final CAT batchCount = new CAT();
+
+    /**
+     * The #of {@link com.bigdata.rdf.internal.IV}s requested, summed across
+     * all requests.
+     */
+    final CAT requestedCount = new CAT();
+
+    /**
+     * The #of distinct {@link com.bigdata.rdf.internal.IV}s read on the index,
+     * summed across all batches.
+     */
+    final CAT resolvedCount = new CAT();
+
+    /**
+     * The #of requests which were completed by a batch run by another thread.
+     */
+    final CAT coalescedCount = new CAT();
+
+    /**
+     * The #of requests returned to the queue because the thread running their
+     * batch was interrupted.
+     */
+    final CAT requeuedCount = new CAT();
+
+    /**
+     * The elapsed nanoseconds spent running batches.
+     */
+    final CAT batchNanos = new CAT();
+
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        root.addCounter("requestCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(requestCount.get());
+            }
+        });
+
+        root.addCounter("coalescedCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(coalescedCount.get());
+            }
+        });
+
+        root.addCounter("requeuedCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(requeuedCount.get());
+            }
+        });
+
+        root.addCounter("batchCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(batchCount.get());
+            }
+        });
+
+        root.addCounter("requestedCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(requestedCount.get());
+            }
+        });
+
+        root.addCounter("resolvedCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(resolvedCount.get());
+            }
+        });
+
+        root.addCounter("batchMillis", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(TimeUnit.NANOSECONDS.toMillis(batchNanos.get()));
+            }
+        });
+
+        return root;
+
+    }
+
+}
@@ -187,6 +187,20 @@ public class BigdataValueCentricFullTextIndex extends FullTextIndex implements
 //            if (log.isInfoEnabled())
 //                log.info(Options.DOUBLE_PRECISION + "=" + doublePrecision);
 
+            final boolean positionsEnabled = Boolean.parseBoolean(p
+                    .getProperty(Options.POSITIONS_ENABLED,
+                            Options.DEFAULT_POSITIONS_ENABLED));
+    
+            if (log.isInfoEnabled())
+                log.info(Options.POSITIONS_ENABLED + "=" + positionsEnabled);
+
+            final boolean statisticsEnabled = Boolean.parseBoolean(p
+                    .getProperty(Options.STATISTICS_ENABLED,
+                            Options.DEFAULT_STATISTICS_ENABLED));
+    
+            if (log.isInfoEnabled())
+                log.info(Options.STATISTICS_ENABLED + "=" + statisticsEnabled);
+
             /*
              * FIXME Optimize. SimpleRabaCoder will be faster, but can do better
              * with record aware coder.
@@ -196,7 +210,9 @@ public class BigdataValueCentricFullTextIndex extends FullTextIndex implements
                     DefaultTupleSerializer.getDefaultLeafKeysCoder(),//
 //                    DefaultTupleSerializer.getDefaultValuesCoder(),//
                     SimpleRabaCoder.INSTANCE,
-                    fieldsEnabled
+                    fieldsEnabled,
+                    positionsEnabled,
+                    statisticsEnabled
             ));
             
             indexManager.registerIndex(indexMetadata);
@@ -204,6 +220,9 @@ public class BigdataValueCentricFullTextIndex extends FullTextIndex implements
             if (log.isInfoEnabled())
                 log.info("Registered new text index: name=" + name);
 
+            if (statisticsEnabled)
+                createStatisticsIndex();
+
             /*
              * Note: defer resolution of the index.
              */
@@ -237,6 +256,13 @@ public class BigdataValueCentricFullTextIndex extends FullTextIndex implements
         
         getIndexManager().dropIndex(name);
 
+        if (getStatisticsIndex() != null) {
+
+            getIndexManager().dropIndex(
+                    getNamespace() + "." + NAME_SEARCH_STATISTICS);
+
+        }
+
     }
 
     public void index(final int capacity,
@@ -38,6 +38,7 @@ import com.bigdata.rdf.store.BDS;
 import com.bigdata.search.FullTextIndex;
 import com.bigdata.search.Hiterator;
 import com.bigdata.search.IHit;
+import com.bigdata.search.ScoringModelEnum;
 
 /**
  * Abstraction for the text indexer for RDF {@link Value}s allowing either the
@@ -122,6 +123,9 @@ public interface ITextIndexer<A extends IHit> {
         final long timeout; 
         final TimeUnit unit; 
         final String matchRegex;
+        final boolean matchPhrase;
+        final int matchNear;
+        final ScoringModelEnum scoringModel;
 		
         public FullTextQuery(final String query) {
         	this(
@@ -245,6 +249,68 @@ public interface ITextIndexer<A extends IHit> {
 	            final int minRank, final int maxRank, 
 	            long timeout, final TimeUnit unit) {
 			
+			this(query, languageCode, prefixMatch, matchRegex, matchAllTerms,
+					matchExact, minCosine, maxCosine, minRank, maxRank,
+					timeout, unit, BDS.DEFAULT_MATCH_PHRASE,
+					BDS.DEFAULT_MATCH_NEAR);
+			
+		}
+		
+		/**
+		 * Construct a full text query with proximity constraints. These are
+		 * evaluated using the positions recorded by the full text index.
+		 * 
+		 * @param matchPhrase
+		 *            if true, return only hits in which the search terms occur
+		 *            as a phrase (in order and at the same relative positions
+		 *            as in the search string).
+		 * @param matchNear
+		 *            if non-negative, return only hits in which all search
+		 *            terms occur (in any order) within a window having at most
+		 *            this many other positions between them. A negative value
+		 *            disables this constraint.
+		 * 
+		 * @see BDS#MATCH_PHRASE
+		 * @see BDS#MATCH_NEAR
+		 */
+		public FullTextQuery(final String query, final String languageCode,
+	            final boolean prefixMatch, final String matchRegex, 
+	            final boolean matchAllTerms, final boolean matchExact, 
+	            final double minCosine, final double maxCosine,
+	            final int minRank, final int maxRank, 
+	            long timeout, final TimeUnit unit,
+	            final boolean matchPhrase, final int matchNear) {
+			
+			this(query, languageCode, prefixMatch, matchRegex, matchAllTerms,
+					matchExact, minCosine, maxCosine, minRank, maxRank,
+					timeout, unit, matchPhrase, matchNear,
+					BDS.DEFAULT_SCORING_MODEL);
+			
+		}
+		
+		/**
+		 * Construct a full text query using the specified scoring model.
+		 * 
+		 * @param scoringModel
+		 *            The model used to compute the relevance of each hit.
+		 *            When this is not {@link ScoringModelEnum#Cosine}, the
+		 *            <i>minCosine</i> and <i>maxCosine</i> are compared
+		 *            against the relevance computed by that model.
+		 * 
+		 * @see BDS#SCORING_MODEL
+		 */
+		public FullTextQuery(final String query, final String languageCode,
+	            final boolean prefixMatch, final String matchRegex, 
+	            final boolean matchAllTerms, final boolean matchExact, 
+	            final double minCosine, final double maxCosine,
+	            final int minRank, final int maxRank, 
+	            long timeout, final TimeUnit unit,
+	            final boolean matchPhrase, final int matchNear,
+	            final ScoringModelEnum scoringModel) {
+			
+			if (scoringModel == null)
+				throw new IllegalArgumentException();
+			
 			this.query = query;
 			this.languageCode = languageCode;
 			this.prefixMatch = prefixMatch;
@@ -257,6 +323,9 @@ public interface ITextIndexer<A extends IHit> {
 			this.maxRank = maxRank;
 			this.timeout = timeout;
 			this.unit = unit;
+			this.matchPhrase = matchPhrase;
+			this.matchNear = matchNear;
+			this.scoringModel = scoringModel;
 			
 		}
 		
@@ -302,6 +371,36 @@ public interface ITextIndexer<A extends IHit> {
 			return matchExact;
 		}
 
+		/**
+		 * @return the matchPhrase
+		 */
+		public boolean isMatchPhrase() {
+			return matchPhrase;
+		}
+
+		/**
+		 * @return the matchNear -or- a negative value if there is no such
+		 *         constraint
+		 */
+		public int getMatchNear() {
+			return matchNear;
+		}
+
+		/**
+		 * @return <code>true</code> iff the query has a proximity constraint
+		 *         which requires the positions of the search terms
+		 */
+		public boolean isProximityQuery() {
+			return matchPhrase || matchNear >= 0;
+		}
+
+		/**
+		 * @return the scoringModel
+		 */
+		public ScoringModelEnum getScoringModel() {
+			return scoringModel;
+		}
+
 		/**
 		 * @return the minCosine
 		 */
@@ -355,6 +454,9 @@ public interface ITextIndexer<A extends IHit> {
 					+ ((languageCode == null) ? 0 : languageCode.hashCode());
 			result = prime * result + (matchAllTerms ? 1231 : 1237);
 			result = prime * result + (matchExact ? 1231 : 1237);
+			result = prime * result + (matchPhrase ? 1231 : 1237);
+			result = prime * result + matchNear;
+			result = prime * result + scoringModel.hashCode();
 			result = prime * result + (prefixMatch ? 1231 : 1237);
 			result = prime * result + ((query == null) ? 0 : query.hashCode());
 			result = prime * result + ((matchRegex == null) ? 0 : matchRegex.hashCode());
@@ -382,6 +484,12 @@ public interface ITextIndexer<A extends IHit> {
 				return false;
 			if (matchExact != other.matchExact)
 				return false;
+			if (matchPhrase != other.matchPhrase)
+				return false;
+			if (matchNear != other.matchNear)
+				return false;
+			if (scoringModel != other.scoringModel)
+				return false;
 			if (prefixMatch != other.prefixMatch)
 				return false;
 			if (query == null) {
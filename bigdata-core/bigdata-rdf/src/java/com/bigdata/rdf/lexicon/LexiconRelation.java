@@ -557,6 +557,41 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
             }
             
         }
+
+        {
+
+            final boolean coalesce = Boolean.parseBoolean(getProperty(
+                    AbstractTripleStore.Options.COALESCE_TERM_RESOLUTION,
+                    AbstractTripleStore.Options.DEFAULT_COALESCE_TERM_RESOLUTION));
+
+            final Long commitTime = getCommitTime();
+
+            if (coalesce && commitTime != null
+                    && TimestampUtility.isReadOnly(timestamp)) {
+
+                /*
+                 * Shared for read-only views from the same commit time. This
+                 * is what allows concurrent queries to coalesce their IV
+                 * resolution requests. Unisolated and read/write tx views are
+                 * not shared since they may observe different index states.
+                 */
+                final int maxBatchSize = Integer.parseInt(getProperty(
+                        AbstractTripleStore.Options.COALESCE_TERM_RESOLUTION_MAX_BATCH_SIZE,
+                        AbstractTripleStore.Options.DEFAULT_COALESCE_TERM_RESOLUTION_MAX_BATCH_SIZE));
+
+                resolveCoalescer = coalescerFactory.getInstance(new NT(
+                        namespace, commitTime.longValue()),
+                        new CoalescerState(maxBatchSize,
+                                BatchResolveCoalescerCounters.getInstance(
+                                        indexManager, namespace)));
+
+            } else {
+
+                resolveCoalescer = null;
+
+            }
+
+        }
         
         {
             
@@ -832,6 +867,8 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
             valueFactory.remove(/*getNamespace()*/);
 
             termCache.clear();
+
+            BatchResolveCoalescerCounters.remove(indexManager, getNamespace());
             
             super.destroy();
 
@@ -2180,9 +2217,39 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
      *            When <code>true</code> a new text index will be created
      *            for a namespace that had no it before.
      */
-    @SuppressWarnings("unchecked")
     public void rebuildTextIndex(final boolean forceCreate) {
 
+        rebuildTextIndex(forceCreate, 1/* nthreads */);
+
+    }
+
+    /**
+     * Utility method to (re-)build the full text index. This is a high latency
+     * operation for a database of any significant size. You must be using the
+     * unisolated view of the {@link AbstractTripleStore} for this operation.
+     * {@link AbstractTripleStore.Options#TEXT_INDEX} must be enabled. This
+     * operation is only supported when the {@link IValueCentricTextIndexer} uses the
+     * {@link FullTextIndex} class.
+     * <p>
+     * The literals are tokenized by <i>nthreads</i> concurrent tasks. The text
+     * index is built in bulk load mode, so the tuples are buffered in sorted
+     * runs and then merged and written onto the index in key order once all
+     * literals have been tokenized.
+     * 
+     * @param forceCreate
+     *            When <code>true</code> a new text index will be created
+     *            for a namespace that had no it before.
+     * @param nthreads
+     *            The #of threads which will tokenize the literals.
+     * 
+     * @see FullTextIndex#beginBulkLoad()
+     */
+    @SuppressWarnings("unchecked")
+    public void rebuildTextIndex(final boolean forceCreate, final int nthreads) {
+
+        if (nthreads <= 0)
+            throw new IllegalArgumentException();
+
         if (getTimestamp() != ITx.UNISOLATED)
             throw new UnsupportedOperationException("Unisolated connection required to rebuild full text index");
         
@@ -2226,110 +2293,137 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
         // create a new index.
         textIndexer.create();
 
-        // TermIVs
-        {
-            // The index to scan for the RDF Literals.
-            final IIndex terms = getId2TermIndex();
+        final FullTextIndex<?> bulkLoad = textIndexer instanceof FullTextIndex //
+                ? (FullTextIndex<?>) textIndexer
+                : null;
 
-            // used to decode the
-            @SuppressWarnings("rawtypes")
-            final ITupleSerializer tupSer = terms.getIndexMetadata()
-                    .getTupleSerializer();
+        if (bulkLoad != null) {
 
-            /*
-             * Visit all plain, language code, and datatype literals in the
-             * lexicon.
-             * 
-             * Note: This uses a filter on the ITupleIterator in order to filter
-             * out non-literal terms before they are shipped from a remote index
-             * shard.
-             */
-            final Iterator<BigdataValue> itr = new Striterator(
-                    terms.rangeIterator(null/* fromKey */, null/* toKey */,
-                            0/* capacity */, IRangeQuery.DEFAULT,
-                            new TupleFilter<BigdataValue>() {
-                                private static final long serialVersionUID = 1L;
+            // buffer the tuples and write them in key order.
+            bulkLoad.beginBulkLoad();
 
-                                protected boolean isValid(
-                                        final ITuple<BigdataValue> obj) {
-                                    @SuppressWarnings("rawtypes")
-                                    final IV iv = (IV) tupSer
-                                            .deserializeKey(obj);
-                                    if (iv != null && iv.isLiteral()) {
-                                        return true;
-                                    }
-                                    return false;
-                                }
-                            })).addFilter(new Resolver() {
-                private static final long serialVersionUID = 1L;
+        }
 
-                protected Object resolve(final Object obj) {
-                    final BigdataLiteral lit = (BigdataLiteral) tupSer
-                            .deserialize((ITuple<?>) obj);
-                    // System.err.println("lit: "+lit);
-                    return lit;
-                }
-            });
+        try {
 
-            final int capacity = 10000;
+            // TermIVs
+            {
+                // The index to scan for the RDF Literals.
+                final IIndex terms = getId2TermIndex();
 
-            textIndexer.index(capacity, itr);
+                // used to decode the
+                @SuppressWarnings("rawtypes")
+                final ITupleSerializer tupSer = terms.getIndexMetadata()
+                        .getTupleSerializer();
 
-        }
+                /*
+                 * Visit all plain, language code, and datatype literals in the
+                 * lexicon.
+                 * 
+                 * Note: This uses a filter on the ITupleIterator in order to filter
+                 * out non-literal terms before they are shipped from a remote index
+                 * shard.
+                 */
+                final Iterator<BigdataValue> itr = new Striterator(
+                        terms.rangeIterator(null/* fromKey */, null/* toKey */,
+                                0/* capacity */, IRangeQuery.DEFAULT,
+                                new TupleFilter<BigdataValue>() {
+                                    private static final long serialVersionUID = 1L;
+
+                                    protected boolean isValid(
+                                            final ITuple<BigdataValue> obj) {
+                                        @SuppressWarnings("rawtypes")
+                                        final IV iv = (IV) tupSer
+                                                .deserializeKey(obj);
+                                        if (iv != null && iv.isLiteral()) {
+                                            return true;
+                                        }
+                                        return false;
+                                    }
+                                })).addFilter(new Resolver() {
+                    private static final long serialVersionUID = 1L;
 
-        // BlobIVs
-        {
-            // the index to scan for the RDF Literals.
-            final IIndex terms = getBlobsIndex();
+                    protected Object resolve(final Object obj) {
+                        final BigdataLiteral lit = (BigdataLiteral) tupSer
+                                .deserialize((ITuple<?>) obj);
+                        // System.err.println("lit: "+lit);
+                        return lit;
+                    }
+                });
 
-            // used to decode the
-            @SuppressWarnings("rawtypes")
-            final ITupleSerializer tupSer = terms.getIndexMetadata()
-                    .getTupleSerializer();
+                final int capacity = 10000;
 
-            /*
-             * Visit all plain, language code, and datatype literals in the
-             * lexicon.
-             * 
-             * Note: This uses a filter on the ITupleIterator in order to filter
-             * out non-literal terms before they are shipped from a remote index
-             * shard.
-             */
-            final Iterator<BigdataValue> itr = new Striterator(
-                    terms.rangeIterator(null/* fromKey */, null/* toKey */,
-                            0/* capacity */, IRangeQuery.DEFAULT,
-                            new TupleFilter<BigdataValue>() {
-                                private static final long serialVersionUID = 1L;
+                indexLiterals(textIndexer, itr, capacity, bulkLoad == null ? 1
+                        : nthreads);
 
-                                protected boolean isValid(
-                                        final ITuple<BigdataValue> obj) {
-                                    @SuppressWarnings("rawtypes")
-                                    final IV iv = (IV) tupSer
-                                            .deserializeKey(obj);
-                                    if (iv != null && iv.isLiteral()) {
-                                        return true;
+            }
+
+            // BlobIVs
+            {
+                // the index to scan for the RDF Literals.
+                final IIndex terms = getBlobsIndex();
+
+                // used to decode the
+                @SuppressWarnings("rawtypes")
+                final ITupleSerializer tupSer = terms.getIndexMetadata()
+                        .getTupleSerializer();
+
+                /*
+                 * Visit all plain, language code, and datatype literals in the
+                 * lexicon.
+                 * 
+                 * Note: This uses a filter on the ITupleIterator in order to filter
+                 * out non-literal terms before they are shipped from a remote index
+                 * shard.
+                 */
+                final Iterator<BigdataValue> itr = new Striterator(
+                        terms.rangeIterator(null/* fromKey */, null/* toKey */,
+                                0/* capacity */, IRangeQuery.DEFAULT,
+                                new TupleFilter<BigdataValue>() {
+                                    private static final long serialVersionUID = 1L;
+
+                                    protected boolean isValid(
+                                            final ITuple<BigdataValue> obj) {
+                                        @SuppressWarnings("rawtypes")
+                                        final IV iv = (IV) tupSer
+                                                .deserializeKey(obj);
+                                        if (iv != null && iv.isLiteral()) {
+                                            return true;
+                                        }
+                                        return false;
                                     }
-                                    return false;
-                                }
-                            })).addFilter(new Resolver() {
-                private static final long serialVersionUID = 1L;
+                                })).addFilter(new Resolver() {
+                    private static final long serialVersionUID = 1L;
 
-                protected Object resolve(final Object obj) {
-                    final BigdataLiteral lit = (BigdataLiteral) tupSer
-                            .deserialize((ITuple<?>) obj);
-                    // System.err.println("lit: "+lit);
-                    return lit;
-                }
-            });
+                    protected Object resolve(final Object obj) {
+                        final BigdataLiteral lit = (BigdataLiteral) tupSer
+                                .deserialize((ITuple<?>) obj);
+                        // System.err.println("lit: "+lit);
+                        return lit;
+                    }
+                });
 
-            final int capacity = 10000;
+                final int capacity = 10000;
 
-            while (itr.hasNext()) {
+                indexLiterals(textIndexer, itr, capacity, bulkLoad == null ? 1
+                        : nthreads);
 
-                textIndexer.index(capacity, itr);
+            }
+
+            if (bulkLoad != null) {
+
+                // merge the runs and write them onto the text index.
+                bulkLoad.endBulkLoad();
 
             }
 
+        } catch (RuntimeException ex) {
+
+            if (bulkLoad != null)
+                bulkLoad.abortBulkLoad();
+
+            throw ex;
+
         }
 
         // We need to finally commit the changes to apply them
@@ -2343,6 +2437,135 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
     	
     }
 
+    /**
+     * Index the literals visited by the iterator.
+     * 
+     * @param textIndexer
+     *            The text index.
+     * @param itr
+     *            The literals.
+     * @param capacity
+     *            The #of literals tokenized by each call to
+     *            {@link IValueCentricTextIndexer#index(int, Iterator)}.
+     * @param nthreads
+     *            The #of threads. When GT ONE (1), the text index MUST be in
+     *            bulk load mode since the tasks do not otherwise coordinate
+     *            their writes on the index.
+     */
+    private void indexLiterals(final IValueCentricTextIndexer<?> textIndexer,
+            final Iterator<BigdataValue> itr, final int capacity,
+            final int nthreads) {
+
+        if (nthreads == 1) {
+
+            while (itr.hasNext()) {
+
+                textIndexer.index(capacity, itr);
+
+            }
+
+            return;
+
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+                nthreads);
+
+        for (int i = 0; i < nthreads; i++) {
+
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+
+                    while (true) {
+
+                        final List<BigdataValue> chunk = new ArrayList<BigdataValue>(
+                                capacity);
+
+                        // Note: The iterator is shared by the tasks.
+                        synchronized (itr) {
+
+                            while (chunk.size() < capacity && itr.hasNext()) {
+
+                                chunk.add(itr.next());
+
+                            }
+
+                        }
+
+                        if (chunk.isEmpty())
+                            return null;
+
+                        textIndexer.index(chunk.size(), chunk.iterator());
+
+                    }
+
+                }
+
+            });
+
+        }
+
+        try {
+
+            for (Future<Void> f : getExecutorService().invokeAll(tasks)) {
+
+                f.get();
+
+            }
+
+        } catch (Throwable t) {
+
+            throw new RuntimeException(t);
+
+        }
+
+    }
+
+    /**
+     * Merge any tuples buffered by a bulk load of the full text index and write
+     * them onto the index. The text index remains in bulk load mode. This is a
+     * NOP unless the text index is a {@link FullTextIndex} which is in bulk
+     * load mode.
+     * 
+     * @return The #of tuples written on the text index.
+     * 
+     * @see FullTextIndex#beginBulkLoad()
+     */
+    public long flushTextIndex() {
+
+        final IValueCentricTextIndexer<?> tmp = viewRef.get();
+
+        if (tmp instanceof FullTextIndex) {
+
+            return ((FullTextIndex<?>) tmp).flushBulkLoad();
+
+        }
+
+        return 0L;
+
+    }
+
+    /**
+     * Discard any tuples buffered by a bulk load of the full text index and end
+     * the bulk load. This is a NOP unless the text index is a
+     * {@link FullTextIndex} which is in bulk load mode.
+     * 
+     * @see FullTextIndex#beginBulkLoad()
+     */
+    public void abortTextIndex() {
+
+        final IValueCentricTextIndexer<?> tmp = viewRef.get();
+
+        if (tmp instanceof FullTextIndex) {
+
+            ((FullTextIndex<?>) tmp).abortBulkLoad();
+
+        }
+
+    }
+
     private void updateTextIndexConfiguration(final SparseRowStore global, final String namespace) {
 
         Map<String, Object> map = global.read(
@@ -2839,57 +3062,65 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
 
         if (numNotFound > 0) {
 
-        	// go to the indices
-        	
-	        /*
-	         * Setup and run task(s) to resolve IV(s).
-	         */
-	
-	        final ExecutorService service = getExecutorService();
-	        
-	        final List<Callable<Void>> tasks = new LinkedList<Callable<Void>>();
-	
-	        if (!termIVs.isEmpty()) {
-	
-	            tasks.add(new BatchResolveTermIVsTask(service, getId2TermIndex(),
-	                    termIVs, ret, termCache, valueFactory, termsChunksSize));
-	
-	        }
-	
-	        if (!blobIVs.isEmpty()) {
-	
-	            tasks.add(new BatchResolveBlobIVsTask(service, getBlobsIndex(),
-	                    blobIVs, ret, termCache, valueFactory, blobsChunkSize));
-	
-	        }
-	
-	        if (log.isInfoEnabled())
-	            log.info("nterms=" + n + ", numNotFound=" + numNotFound
-	                    + ", cacheSize=" + termCache.size());
-	
-	        try {
-	
-	            if (tasks.size() == 1) {
-	             
-	                tasks.get(0).call();
-	                
-	            } else {
-	
-	                // Co-thread tasks.
-	                final List<Future<Void>> futures = getExecutorService()
-	                        .invokeAll(tasks);
-	
-	                // Verify no errors.
-	                for (Future<Void> f : futures)
-	                    f.get();
-	            
-	            }
-	
-	        } catch (Exception ex) {
-	
-	            throw new RuntimeException(ex);
-	
-	        }
+            // go to the indices
+
+            if (log.isInfoEnabled())
+                log.info("nterms=" + n + ", numNotFound=" + numNotFound
+                        + ", cacheSize=" + termCache.size());
+
+            if (resolveCoalescer == null) {
+
+                resolveAgainstIndices(termIVs, blobIVs, ret, termsChunksSize,
+                        blobsChunkSize);
+
+            } else {
+
+                /*
+                 * Coalesce with concurrent requests against the same commit
+                 * point. If this thread winds up running the batch, then the
+                 * batch is resolved against this view.
+                 */
+
+                final Collection<IV<?, ?>> notFound = new ArrayList<IV<?, ?>>(
+                        numNotFound);
+
+                notFound.addAll(termIVs);
+
+                notFound.addAll(blobIVs);
+
+                resolveCoalescer.resolve(notFound, ret,
+                        new BatchResolveCoalescer.IBatchResolver() {
+
+                            @Override
+                            public void resolve(final Collection<IV<?, ?>> ivs,
+                                    final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret) {
+
+                                final Collection<TermId<?>> termIVs = new LinkedList<TermId<?>>();
+
+                                final Collection<BlobIV<?>> blobIVs = new LinkedList<BlobIV<?>>();
+
+                                for (IV<?, ?> iv : ivs) {
+
+                                    if (iv instanceof TermId<?>) {
+
+                                        termIVs.add((TermId<?>) iv);
+
+                                    } else {
+
+                                        blobIVs.add((BlobIV<?>) iv);
+
+                                    }
+
+                                }
+
+                                resolveAgainstIndices(termIVs, blobIVs, ret,
+                                        termsChunksSize, blobsChunkSize);
+
+                            }
+
+                        });
+
+            }
 
         }
         
@@ -2934,6 +3165,81 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
 
     }
     
+    /**
+     * Resolve {@link TermId}s and {@link BlobIV}s against the ID2TERM and
+     * BLOBS indices respectively. When both kinds of {@link IV}s are present
+     * the two index reads are co-threaded.
+     * 
+     * @param termIVs
+     *            The {@link TermId}s to be read on the ID2TERM index.
+     * @param blobIVs
+     *            The {@link BlobIV}s to be read on the BLOBS index.
+     * @param ret
+     *            The map onto which the resolved values are written.
+     * @param termsChunksSize
+     *            The chunk size for reads on the ID2TERM index.
+     * @param blobsChunkSize
+     *            The chunk size for reads on the BLOBS index.
+     */
+    private void resolveAgainstIndices(
+            final Collection<TermId<?>> termIVs,
+            final Collection<BlobIV<?>> blobIVs,
+            final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret,
+            final int termsChunksSize, final int blobsChunkSize) {
+
+        /*
+         * Setup and run task(s) to resolve IV(s).
+         */
+
+        final ExecutorService service = getExecutorService();
+
+        final List<Callable<Void>> tasks = new LinkedList<Callable<Void>>();
+
+        if (!termIVs.isEmpty()) {
+
+            tasks.add(new BatchResolveTermIVsTask(service, getId2TermIndex(),
+                    termIVs, ret, termCache, valueFactory, termsChunksSize));
+
+        }
+
+        if (!blobIVs.isEmpty()) {
+
+            tasks.add(new BatchResolveBlobIVsTask(service, getBlobsIndex(),
+                    blobIVs, ret, termCache, valueFactory, blobsChunkSize));
+
+        }
+
+        if (tasks.isEmpty()) {
+
+            return;
+
+        }
+
+        try {
+
+            if (tasks.size() == 1) {
+
+                tasks.get(0).call();
+
+            } else {
+
+                // Co-thread tasks.
+                final List<Future<Void>> futures = service.invokeAll(tasks);
+
+                // Verify no errors.
+                for (Future<Void> f : futures)
+                    f.get();
+
+            }
+
+        } catch (Exception ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+    }
+
     /**
      * Add the terms inside a SID to the collection of IVs to materialize if
      * they are not already there.
@@ -3064,6 +3370,50 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
         }
     };
     
+    /**
+     * Coalesces concurrent {@link IV} resolution requests for read-only views
+     * of the lexicon reading from the same commit point (optional).
+     * 
+     * @see AbstractTripleStore.Options#COALESCE_TERM_RESOLUTION
+     */
+    final private BatchResolveCoalescer resolveCoalescer;
+
+    /**
+     * Factory used for {@link #resolveCoalescer} for read-only views of the
+     * lexicon.
+     */
+    static private CanonicalFactory<NT/* key */, BatchResolveCoalescer, CoalescerState/* state */> coalescerFactory = new CanonicalFactory<NT, BatchResolveCoalescer, CoalescerState>(
+            1/* queueCapacity */) {
+        @Override
+        protected BatchResolveCoalescer newInstance(NT key,
+                CoalescerState state) {
+            return new BatchResolveCoalescer(state.maxBatchSize,
+                    1L/* pollMillis */, state.counters);
+        }
+    };
+
+    /**
+     * The state used by the {@link #coalescerFactory} to create a
+     * {@link BatchResolveCoalescer}.
+     */
+    private static class CoalescerState {
+
+        final int maxBatchSize;
+
+        /**
+         * The counters shared by the coalescers for all commit points of the
+         * lexicon.
+         */
+        final BatchResolveCoalescerCounters counters;
+
+        CoalescerState(final int maxBatchSize,
+                final BatchResolveCoalescerCounters counters) {
+            this.maxBatchSize = maxBatchSize;
+            this.counters = counters;
+        }
+
+    }
+
     /**
      * Clear all term caches for the supplied namespace.
      */
@@ -3078,6 +3428,14 @@ public class LexiconRelation extends AbstractRelation<BigdataValue>
             }
         }
         
+        final Iterator it2 = coalescerFactory.entryIterator();
+        while (it2.hasNext()) {
+            final NT nt = (NT) ((Entry) it2.next()).getKey();
+            if (nt.getName().equals(namespace)) {
+                it2.remove();
+            }
+        }
+        
     }
     
     /**
@@ -41,6 +41,7 @@ import com.bigdata.btree.keys.IKeyBuilder;
 import com.bigdata.btree.keys.IKeyBuilderFactory;
 import com.bigdata.btree.raba.codec.IRabaCoder;
 import com.bigdata.io.ByteArrayBuffer;
+import com.bigdata.io.DataInputBuffer;
 import com.bigdata.io.DataOutputBuffer;
 import com.bigdata.io.ShortPacker;
 import com.bigdata.rdf.internal.IV;
@@ -79,6 +80,32 @@ public class RDFFullTextIndexTupleSerializer extends
     
     static private final transient int NO_FIELD = -1;
 
+    private boolean positionsEnabled;
+
+    /**
+     * When <code>true</code> the delta encoded positions of the token within
+     * the literal follow the byte length of the document identifier in the
+     * value of each tuple.
+     * 
+     * @see com.bigdata.search.FullTextIndex.Options#POSITIONS_ENABLED
+     */
+    public boolean isPositionsEnabled() {
+        return positionsEnabled;
+    }
+
+    private boolean statisticsEnabled;
+
+    /**
+     * When <code>true</code> the term frequency and the #of tokens in the
+     * literal follow the byte length of the document identifier in the value
+     * of each tuple.
+     * 
+     * @see com.bigdata.search.FullTextIndex.Options#STATISTICS_ENABLED
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
 //    public boolean isDoublePrecision() {
 //        return doublePrecision;
 //    }
@@ -121,9 +148,48 @@ public class RDFFullTextIndexTupleSerializer extends
 //            final boolean doublePrecision//
     ) {
 
+        this(keyBuilderFactory, leafKeysCoder, leafValsCoder, fieldsEnabled,
+                false/* positionsEnabled */);
+
+    }
+
+    /**
+     * @param positionsEnabled
+     *            When <code>true</code> the positions of the token within the
+     *            literal will be stored in the value.
+     */
+    public RDFFullTextIndexTupleSerializer(//
+            final IKeyBuilderFactory keyBuilderFactory,//
+            final IRabaCoder leafKeysCoder, //
+            final IRabaCoder leafValsCoder,//
+            final boolean fieldsEnabled,//
+            final boolean positionsEnabled//
+    ) {
+
+        this(keyBuilderFactory, leafKeysCoder, leafValsCoder, fieldsEnabled,
+                positionsEnabled, false/* statisticsEnabled */);
+
+    }
+
+    /**
+     * @param statisticsEnabled
+     *            When <code>true</code> the term frequency and the #of tokens
+     *            in the literal will be stored in the value.
+     */
+    public RDFFullTextIndexTupleSerializer(//
+            final IKeyBuilderFactory keyBuilderFactory,//
+            final IRabaCoder leafKeysCoder, //
+            final IRabaCoder leafValsCoder,//
+            final boolean fieldsEnabled,//
+            final boolean positionsEnabled,//
+            final boolean statisticsEnabled//
+    ) {
+
         super(keyBuilderFactory, leafKeysCoder, leafValsCoder);
 
-//        this.doublePrecision = doublePrecision;
+        this.positionsEnabled = positionsEnabled;
+
+        this.statisticsEnabled = statisticsEnabled;
 
     }
 
@@ -197,6 +263,21 @@ public class RDFFullTextIndexTupleSerializer extends
         
         // The byte length of the document identifier IV.
         buf.packShort((short) byteLen);
+
+        if (statisticsEnabled) {
+
+            // The term frequency and the #of tokens in the literal.
+            FullTextIndexTupleSerializer.encodeStatistics(buf, val.termFreq(),
+                    val.getFieldLength());
+
+        }
+
+        if (positionsEnabled) {
+
+            // The positions of the token within the literal.
+            FullTextIndexTupleSerializer.encodePositions(buf, val.getPositions());
+
+        }
         
         // The term frequency
 //        buf.packLong(termFreq);
@@ -231,13 +312,14 @@ public class RDFFullTextIndexTupleSerializer extends
 
         final ByteArrayBuffer kbuf = tuple.getKeyBuffer();
 
+        final DataInputBuffer vbuf = tuple.getValueStream();
+
         // The byte length of the docId IV.
         final int byteLength;
         try {
 //            byteLength = LongPacker.unpackInt((DataInput) tuple
 //                    .getValueStream());
-            byteLength = ShortPacker.unpackShort((DataInput) tuple
-            		.getValueStream());
+            byteLength = ShortPacker.unpackShort((DataInput) vbuf);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -291,8 +373,18 @@ public class RDFFullTextIndexTupleSerializer extends
 //
 //        }
 
+        // The statistics (if recorded) follow the byte length of the IV.
+        final int[] stats = statisticsEnabled ? FullTextIndexTupleSerializer
+                .decodeStatistics(vbuf) : null;
+
+        // The positions (if recorded) follow the statistics.
+        final int[] positions = positionsEnabled ? FullTextIndexTupleSerializer
+                .decodePositions(vbuf) : null;
+
         return new ReadOnlyTermDocRecord(null/* token */, docId, NO_FIELD,
-                /* termFreq, */ termWeight);
+                stats == null ? -1 : stats[0]/* termFreq */,
+                stats == null ? -1 : stats[1]/* fieldLength */, termWeight,
+                positions);
 
     }
 
@@ -301,7 +393,17 @@ public class RDFFullTextIndexTupleSerializer extends
      */
     private static final transient byte VERSION0 = 0;
 
-    private static final transient byte VERSION = VERSION0;
+    /**
+     * Adds {@link #positionsEnabled}.
+     */
+    private static final transient byte VERSION1 = 1;
+
+    /**
+     * Adds {@link #statisticsEnabled}.
+     */
+    private static final transient byte VERSION2 = 2;
+
+    private static final transient byte VERSION = VERSION2;
 
     public void readExternal(final ObjectInput in) throws IOException,
             ClassNotFoundException {
@@ -309,11 +411,15 @@ public class RDFFullTextIndexTupleSerializer extends
         final byte version = in.readByte();
         switch (version) {
         case VERSION0:
+        case VERSION1:
+        case VERSION2:
             break;
         default:
             throw new IOException("unknown version=" + version);
         }
 //        this.doublePrecision = in.readBoolean();
+        this.positionsEnabled = version >= VERSION1 ? in.readBoolean() : false;
+        this.statisticsEnabled = version >= VERSION2 ? in.readBoolean() : false;
 
     }
 
@@ -321,6 +427,8 @@ public class RDFFullTextIndexTupleSerializer extends
         super.writeExternal(out);
         out.writeByte(VERSION);
 //        out.writeBoolean(doublePrecision);
+        out.writeBoolean(positionsEnabled);
+        out.writeBoolean(statisticsEnabled);
     }
 
 }
@@ -0,0 +1,683 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.rio.columnar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryResultHandlerException;
+import org.openrdf.query.TupleQueryResultHandlerException;
+import org.openrdf.query.resultio.QueryResultWriterBase;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.query.resultio.TupleQueryResultWriter;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.Var;
+import com.bigdata.rdf.ServiceProviderHook;
+import com.bigdata.rdf.internal.DTE;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.XSD;
+import com.bigdata.rdf.internal.impl.literal.LiteralExtensionIV;
+import com.bigdata.rdf.internal.impl.literal.XSDBooleanIV;
+import com.bigdata.rdf.internal.impl.literal.XSDIntegerIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.lexicon.LexiconRelation;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.rdf.sail.webapp.client.ColumnarResultsCodec;
+
+/**
+ * Writer for the columnar binary SPARQL result set encoding (see
+ * {@link ColumnarResultsCodec}). Solutions are buffered into chunks and each
+ * chunk is written column by column.
+ * <p>
+ * Inline {@link IV}s for the fixed width numeric datatypes, xsd:integer values
+ * which fit in a <code>long</code>, xsd:boolean and xsd:dateTime are written in
+ * their native form. This works either from openrdf solutions whose
+ * {@link Value}s are {@link BigdataValue}s with their {@link IV}s set or, for
+ * bigdata aware callers, directly from {@link IBindingSet}s using
+ * {@link #handleSolutions(IBindingSet[])}. In the latter case inline
+ * {@link IV}s are never materialized unless they have no native encoding, and
+ * only the non-inline {@link IV}s need to have been materialized (their
+ * {@link com.bigdata.rdf.internal.IVCache} set) by the query.
+ * <p>
+ * Note: xsd:dateTime values are transmitted as milliseconds since the epoch,
+ * so the decoder reports the same point in time but in UTC rather than in the
+ * time zone of the original lexical form.
+ */
+public class ColumnarResultsWriter extends QueryResultWriterBase implements
+        TupleQueryResultWriter, ColumnarResultsCodec {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The default #of solutions in a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * The default #of distinct strings in the dictionary before it is reset.
+     */
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 100000;
+
+    private final DataOutputStream out;
+
+    /**
+     * Used to materialize inline {@link IV}s which do not have a native
+     * encoding (optional).
+     */
+    private final LexiconRelation lex;
+
+    private final int chunkSize;
+
+    private final int maxDictionarySize;
+
+    /**
+     * The projected variables (set by {@link #startQueryResult(List)}).
+     */
+    private String[] names = null;
+
+    private IVariable<?>[] vars = null;
+
+    /**
+     * The buffered chunk, indexed by [column][row]. Each cell is either a
+     * {@link Value}, an {@link IV} or <code>null</code> if the variable is not
+     * bound.
+     */
+    private Object[][] cols = null;
+
+    /**
+     * The #of rows in the buffered chunk.
+     */
+    private int nrows = 0;
+
+    /**
+     * The per-response dictionary.
+     */
+    private final Map<String, Integer> dict = new HashMap<String, Integer>();
+
+    /**
+     * The strings added to the dictionary by the current chunk.
+     */
+    private final List<String> added = new ArrayList<String>();
+
+    /**
+     * The column data for the current chunk. This is buffered so the new
+     * dictionary entries can be written before the data which uses them.
+     */
+    private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream body = new DataOutputStream(bodyBytes);
+
+    public ColumnarResultsWriter(final OutputStream out) {
+
+        this(out, null/* lex */);
+
+    }
+
+    /**
+     * @param out
+     *            Where to write the result set.
+     * @param lex
+     *            Used to materialize inline {@link IV}s which do not have a
+     *            native encoding (optional, but required if
+     *            {@link #handleSolutions(IBindingSet[])} will be used).
+     */
+    public ColumnarResultsWriter(final OutputStream out,
+            final LexiconRelation lex) {
+
+        this(out, lex, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_DICTIONARY_SIZE);
+
+    }
+
+    public ColumnarResultsWriter(final OutputStream out,
+            final LexiconRelation lex, final int chunkSize,
+            final int maxDictionarySize) {
+
+        if (out == null)
+            throw new IllegalArgumentException();
+
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException();
+
+        if (maxDictionarySize <= 0)
+            throw new IllegalArgumentException();
+
+        this.out = new DataOutputStream(out);
+
+        this.lex = lex;
+
+        this.chunkSize = chunkSize;
+
+        this.maxDictionarySize = maxDictionarySize;
+
+    }
+
+    @Override
+    public TupleQueryResultFormat getTupleQueryResultFormat() {
+        return ServiceProviderHook.COLUMNAR_RESULTS;
+    }
+
+    @Override
+    public TupleQueryResultFormat getQueryResultFormat() {
+        return getTupleQueryResultFormat();
+    }
+
+    @Override
+    public void startDocument() throws QueryResultHandlerException {
+        // NOP
+    }
+
+    @Override
+    public void handleStylesheet(final String stylesheetUrl)
+            throws QueryResultHandlerException {
+        // NOP
+    }
+
+    @Override
+    public void startHeader() throws QueryResultHandlerException {
+        // NOP
+    }
+
+    @Override
+    public void endHeader() throws QueryResultHandlerException {
+        // NOP
+    }
+
+    @Override
+    public void handleNamespace(final String prefix, final String uri)
+            throws QueryResultHandlerException {
+        // NOP
+    }
+
+    @Override
+    public void handleLinks(final List<String> linkUrls)
+            throws QueryResultHandlerException {
+        // NOP
+    }
+
+    @Override
+    public void handleBoolean(final boolean value)
+            throws QueryResultHandlerException {
+
+        throw new UnsupportedOperationException("Cannot handle boolean results");
+
+    }
+
+    @Override
+    public void startQueryResult(final List<String> bindingNames)
+            throws TupleQueryResultHandlerException {
+
+        if (bindingNames == null)
+            throw new IllegalArgumentException();
+
+        if (names != null)
+            throw new IllegalStateException();
+
+        final int ncols = bindingNames.size();
+
+        names = bindingNames.toArray(new String[ncols]);
+
+        vars = new IVariable[ncols];
+
+        cols = new Object[ncols][chunkSize];
+
+        try {
+
+            out.writeInt(MAGIC);
+
+            out.writeInt(VERSION);
+
+            out.writeInt(ncols);
+
+            for (int c = 0; c < ncols; c++) {
+
+                vars[c] = Var.var(names[c]);
+
+                writeString(out, names[c]);
+
+            }
+
+        } catch (IOException ex) {
+
+            throw new TupleQueryResultHandlerException(ex);
+
+        }
+
+    }
+
+    @Override
+    public void handleSolution(final BindingSet bindingSet)
+            throws TupleQueryResultHandlerException {
+
+        if (names == null)
+            throw new IllegalStateException();
+
+        for (int c = 0; c < names.length; c++) {
+
+            cols[c][nrows] = bindingSet.getValue(names[c]);
+
+        }
+
+        if (++nrows == chunkSize)
+            flushChunk();
+
+    }
+
+    /**
+     * Write a chunk of native solutions. Inline {@link IV}s are written
+     * without being materialized. Non-inline {@link IV}s must have been
+     * materialized.
+     * 
+     * @param chunk
+     *            The solutions.
+     */
+    public void handleSolutions(final IBindingSet[] chunk)
+            throws TupleQueryResultHandlerException {
+
+        if (names == null)
+            throw new IllegalStateException();
+
+        for (IBindingSet bset : chunk) {
+
+            for (int c = 0; c < vars.length; c++) {
+
+                final IConstant<?> val = bset.get(vars[c]);
+
+                cols[c][nrows] = val == null ? null : val.get();
+
+            }
+
+            if (++nrows == chunkSize)
+                flushChunk();
+
+        }
+
+    }
+
+    @Override
+    public void endQueryResult() throws TupleQueryResultHandlerException {
+
+        if (names == null)
+            throw new IllegalStateException();
+
+        if (nrows > 0)
+            flushChunk();
+
+        try {
+
+            out.writeByte(END);
+
+            out.flush();
+
+        } catch (IOException ex) {
+
+            throw new TupleQueryResultHandlerException(ex);
+
+        }
+
+    }
+
+    /**
+     * Encode and write the buffered chunk.
+     */
+    private void flushChunk() throws TupleQueryResultHandlerException {
+
+        try {
+
+            final boolean reset = dict.size() >= maxDictionarySize;
+
+            if (reset)
+                dict.clear();
+
+            added.clear();
+
+            bodyBytes.reset();
+
+            for (int c = 0; c < cols.length; c++) {
+
+                final Object[] col = cols[c];
+
+                Object prior = null;
+
+                for (int r = 0; r < nrows; r++) {
+
+                    final Object cell = col[r];
+
+                    if (cell == null) {
+
+                        body.writeByte(T_UNBOUND);
+
+                    } else if (cell.equals(prior)) {
+
+                        body.writeByte(T_REPEAT);
+
+                    } else if (cell instanceof IV) {
+
+                        writeIV((IV<?, ?>) cell);
+
+                    } else {
+
+                        writeValue((Value) cell);
+
+                    }
+
+                    prior = cell;
+
+                    col[r] = null;
+
+                }
+
+            }
+
+            body.flush();
+
+            out.writeByte(CHUNK);
+
+            out.writeByte(reset ? FLAG_RESET_DICTIONARY : 0);
+
+            out.writeInt(nrows);
+
+            out.writeInt(added.size());
+
+            for (String s : added) {
+
+                writeString(out, s);
+
+            }
+
+            bodyBytes.writeTo(out);
+
+            nrows = 0;
+
+        } catch (IOException ex) {
+
+            throw new TupleQueryResultHandlerException(ex);
+
+        }
+
+    }
+
+    private void writeValue(final Value v) throws IOException {
+
+        if (v instanceof BigdataValue) {
+
+            final IV<?, ?> iv = ((BigdataValue) v).getIV();
+
+            if (iv != null
+                    && iv.isInline()
+                    && writeInline(iv, v instanceof Literal ? ((Literal) v)
+                            .getDatatype() : null)) {
+
+                return;
+
+            }
+
+        }
+
+        writeTerm(v);
+
+    }
+
+    private void writeIV(final IV<?, ?> iv) throws IOException {
+
+        if (iv.isInline() && writeInline(iv, null/* datatype */))
+            return;
+
+        final Value v;
+
+        if (iv.hasValue()) {
+
+            v = iv.getValue();
+
+        } else if (lex != null) {
+
+            v = iv.asValue(lex);
+
+        } else {
+
+            throw new IllegalStateException("Not materialized: " + iv);
+
+        }
+
+        writeTerm(v);
+
+    }
+
+    /**
+     * Write an inline {@link IV} using its native encoding.
+     * 
+     * @param iv
+     *            The {@link IV}.
+     * @param datatype
+     *            The datatype of the {@link Value} for that {@link IV} when it
+     *            is known (optional).
+     * 
+     * @return <code>false</code> if there is no native encoding for the
+     *         {@link IV}, in which case nothing was written.
+     */
+    private boolean writeInline(final IV<?, ?> iv, final URI datatype)
+            throws IOException {
+
+        if (iv instanceof XSDBooleanIV) {
+
+            body.writeByte(T_BOOLEAN);
+
+            body.writeByte(((XSDBooleanIV<?>) iv).booleanValue() ? 1 : 0);
+
+            return true;
+
+        }
+
+        if (iv instanceof XSDNumericIV) {
+
+            final XSDNumericIV<?> n = (XSDNumericIV<?>) iv;
+
+            switch (iv.getDTE()) {
+            case XSDByte:
+            case XSDShort:
+            case XSDInt:
+            case XSDLong:
+                body.writeByte(T_LONG);
+                body.writeInt(index(iv.getDTE().getDatatypeURI().stringValue()));
+                body.writeLong(n.longValue());
+                return true;
+            case XSDFloat:
+            case XSDDouble:
+                body.writeByte(T_DOUBLE);
+                body.writeInt(index(iv.getDTE().getDatatypeURI().stringValue()));
+                body.writeDouble(n.doubleValue());
+                return true;
+            default:
+                return false;
+            }
+
+        }
+
+        if (iv instanceof XSDIntegerIV) {
+
+            final BigInteger b = ((XSDIntegerIV<?>) iv).integerValue();
+
+            if (b.bitLength() >= 64)
+                return false;
+
+            body.writeByte(T_LONG);
+
+            body.writeInt(index(XSD.INTEGER.stringValue()));
+
+            body.writeLong(b.longValue());
+
+            return true;
+
+        }
+
+        if (iv instanceof LiteralExtensionIV) {
+
+            /*
+             * xsd:dateTime is inlined as the milliseconds since the epoch in
+             * an xsd:long delegate.
+             */
+
+            final LiteralExtensionIV<?> x = (LiteralExtensionIV<?>) iv;
+
+            if (x.getDelegate().getDTE() != DTE.XSDLong)
+                return false;
+
+            URI dt = datatype;
+
+            if (dt == null) {
+
+                final IV<?, ?> dtIV = x.getExtensionIV();
+
+                if (dtIV.hasValue()) {
+
+                    dt = (URI) dtIV.getValue();
+
+                } else if (lex != null) {
+
+                    // Note: The datatype IVs are declared by the vocabulary.
+                    dt = (URI) lex.getLexiconConfiguration().asValueFromVocab(
+                            dtIV);
+
+                }
+
+            }
+
+            if (!XSD.DATETIME.equals(dt))
+                return false;
+
+            body.writeByte(T_DATETIME);
+
+            body.writeLong(x.getDelegate().longValue());
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    private void writeTerm(final Value v) throws IOException {
+
+        if (v instanceof URI) {
+
+            body.writeByte(T_URI);
+
+            body.writeInt(index(v.stringValue()));
+
+        } else if (v instanceof BNode) {
+
+            body.writeByte(T_BNODE);
+
+            body.writeInt(index(((BNode) v).getID()));
+
+        } else if (v instanceof Literal) {
+
+            final Literal lit = (Literal) v;
+
+            if (lit.getLanguage() != null) {
+
+                body.writeByte(T_LANG_LITERAL);
+
+                body.writeInt(index(lit.getLabel()));
+
+                body.writeInt(index(lit.getLanguage()));
+
+            } else if (lit.getDatatype() != null) {
+
+                body.writeByte(T_TYPED_LITERAL);
+
+                body.writeInt(index(lit.getLabel()));
+
+                body.writeInt(index(lit.getDatatype().stringValue()));
+
+            } else {
+
+                body.writeByte(T_LITERAL);
+
+                body.writeInt(index(lit.getLabel()));
+
+            }
+
+        } else {
+
+            throw new IllegalArgumentException("Unknown value type: " + v);
+
+        }
+
+    }
+
+    /**
+     * Return the dictionary index of the string, adding it to the dictionary
+     * if necessary.
+     */
+    private int index(final String s) {
+
+        Integer i = dict.get(s);
+
+        if (i == null) {
+
+            i = dict.size();
+
+            dict.put(s, i);
+
+            added.add(s);
+
+        }
+
+        return i;
+
+    }
+
+    private static void writeString(final DataOutputStream out, final String s)
+            throws IOException {
+
+        final byte[] b = s.getBytes(UTF8);
+
+        out.writeInt(b.length);
+
+        out.write(b);
+
+    }
+
+}
@@ -59,6 +59,11 @@ public class ASTContainer extends ASTBase {
          */
         String QUERY_STRING = "queryString";
 
+        /**
+         * The base URI against which the query string was parsed (optional).
+         */
+        String BASE_URI = "baseURI";
+
         /**
          * The parse tree generated from the query string (optional). For the
          * default integration, this is the parse tree assembled by the Sesame
@@ -110,6 +115,14 @@ public class ASTContainer extends ASTBase {
 		 * Used to prevent running resolution again on consequent calls to query.evaluate
 		 */
         String RESOLVED = "resolved";
+
+        /**
+         * The key for the query in the
+         * {@link com.bigdata.rdf.sparql.ast.cache.QueryPlanCache} (optional).
+         * This is only present if the query was obtained from or prepared
+         * for that cache.
+         */
+        String PLAN_CACHE_KEY = "planCacheKey";
     }
 
     /**
@@ -171,6 +184,30 @@ public class ASTContainer extends ASTBase {
 
     }
 
+    /**
+     * Return the base URI against which the query string was parsed.
+     * 
+     * @return The base URI -or- <code>null</code> if none was given or the
+     *         AST was not generated by the parser.
+     */
+    public String getBaseURI() {
+
+        return (String) getProperty(Annotations.BASE_URI);
+
+    }
+
+    /**
+     * Set the base URI against which the query string was parsed.
+     * 
+     * @param baseURI
+     *            The base URI (may be <code>null</code>).
+     */
+    public void setBaseURI(final String baseURI) {
+
+        setProperty(Annotations.BASE_URI, baseURI);
+
+    }
+
     /**
      * Return the parse tree generated from the query string. 
      */
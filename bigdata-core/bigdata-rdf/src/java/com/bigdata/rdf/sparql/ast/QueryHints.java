@@ -38,11 +38,13 @@ import com.bigdata.bop.engine.QueryEngine;
 import com.bigdata.bop.fed.QueryEngineFactory;
 import com.bigdata.bop.join.HashJoinAnnotations;
 import com.bigdata.bop.join.JoinAnnotations;
+import com.bigdata.bop.joinGraph.rto.JoinGraph;
 import com.bigdata.htree.HTree;
 import com.bigdata.io.DirectBufferPool;
 import com.bigdata.rdf.sparql.ast.cache.CacheConnectionFactory;
 import com.bigdata.rdf.sparql.ast.hints.QueryHintRegistry;
 import com.bigdata.rdf.sparql.ast.hints.QueryHintScope;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTCommonSubexpressionOptimizer;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTDistinctTermScanOptimizer;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTFastRangeCountOptimizer;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTJoinGroupOrderOptimizer;
@@ -152,6 +154,49 @@ public interface QueryHints {
 
     int DEFAULT_RTO_NEDGES = 1;
 
+    /**
+     * The time budget in milliseconds for the RTO before the best join path
+     * found so far is executed (default
+     * {@value #DEFAULT_RTO_MAX_OPTIMIZER_MILLIS}). When ZERO (0L), the RTO runs
+     * to completion before any solutions are produced. Otherwise the RTO
+     * resumes its search as more upstream solutions arrive and the query plan
+     * is replaced if a much cheaper join path is found.
+     * 
+     * @see JoinGraph.Annotations#MAX_OPTIMIZER_MILLIS
+     */
+    String RTO_MAX_OPTIMIZER_MILLIS = "RTO-maxOptimizerMillis";
+
+    long DEFAULT_RTO_MAX_OPTIMIZER_MILLIS = JoinGraph.Annotations.DEFAULT_MAX_OPTIMIZER_MILLIS;
+
+    /**
+     * When <code>true</code>, the RTO re-samples the join paths in parallel
+     * in each round (default {@value #DEFAULT_RTO_PARALLEL_SAMPLING}).
+     * Otherwise they are re-sampled serially. This does not change the join
+     * path selected by the RTO.
+     * 
+     * @see JoinGraph.Annotations#PARALLEL_SAMPLING
+     */
+    String RTO_PARALLEL_SAMPLING = "RTO-parallelSampling";
+
+    boolean DEFAULT_RTO_PARALLEL_SAMPLING = JoinGraph.Annotations.DEFAULT_PARALLEL_SAMPLING;
+
+    /**
+     * When positive, the required joins of a join group that were ordered by
+     * the static optimizer are monitored as the query runs (default
+     * {@value #DEFAULT_ADAPTIVE_JOIN_THRESHOLD}, which disables this feature).
+     * After each chunk of upstream solutions has been pushed through the
+     * joins, the observed cardinality of each join is compared with the
+     * static optimizer's estimate. If any of them differs from its estimate by
+     * more than this factor, then the RTO is used to re-plan those joins for
+     * the remaining upstream solutions. The value must be ZERO or greater
+     * than ONE.
+     * 
+     * @see JoinGraph.Annotations#ADAPTIVE_THRESHOLD
+     */
+    String ADAPTIVE_JOIN_THRESHOLD = "adaptiveJoinThreshold";
+
+    double DEFAULT_ADAPTIVE_JOIN_THRESHOLD = JoinGraph.Annotations.DEFAULT_ADAPTIVE_THRESHOLD;
+
     /**
      * Query hint sets the optimistic threshold for the static join order
      * optimizer.
@@ -333,6 +378,25 @@ public interface QueryHints {
 
     boolean DEFAULT_MERGE_JOIN = true;
 
+    /**
+     * When <code>true</code>, SPARQL 1.1 subqueries which appear more than
+     * once in the query and join group prefixes which are shared by all
+     * branches of a UNION are computed once into a named solution set and
+     * then INCLUDEd wherever they appear (default
+     * {@value #DEFAULT_COMMON_SUBEXPRESSION_ELIMINATION}).
+     * <p>
+     * Note: This query hint MUST be applied in the {@link QueryHintScope#Query}.
+     * 
+     * <pre>
+     * hint:Query hint:commonSubexpressionElimination "true".
+     * </pre>
+     * 
+     * @see ASTCommonSubexpressionOptimizer
+     */
+    String COMMON_SUBEXPRESSION_ELIMINATION = "commonSubexpressionElimination";
+
+    boolean DEFAULT_COMMON_SUBEXPRESSION_ELIMINATION = false;
+
     /**
      * Query hint for disabling the DISTINCT SPO behavior for a CONSTRUCT QUERY
      * (default {@value #DEFAULT_CONSTRUCT_DISTINCT_SPO}). When disabled, the
@@ -754,6 +818,73 @@ public interface QueryHints {
 
    boolean DEFAULT_PIPELINED_HASH_JOIN = Boolean.valueOf(System.getProperty(
            QueryHints.class.getName() + "." + PIPELINED_HASH_JOIN, "false"));
+
+   /**
+    * When <code>true</code>, the projection of the top-level query is never
+    * materialized inside of the query plan. Instead, the solutions flow
+    * through ORDER BY, DISTINCT and the PROJECTION as IVs and the
+    * projected variables are materialized in chunks by the consumer as the
+    * solutions are drained (for example, immediately before the results are
+    * written onto the response by the REST API). Solutions which are never
+    * drained are never materialized.
+    * <p>
+    * Note: ORDER BY still materializes the sort keys which are not inline.
+    * Inline values (numerics, xsd:dateTime, etc.) are compared directly by the
+    * {@link com.bigdata.bop.solutions.IVComparator} since their ordering is
+    * value-equivalent, so they are never materialized for the sort.
+    * <p>
+    * Note: When this hint is <code>false</code>, the projection is only
+    * materialized within the query plan if the query does not use a SLICE.
+    * Queries with a SLICE are always materialized by the consumer.
+    * 
+    * @see com.bigdata.rdf.sparql.ast.eval.AST2BOpContext#isMaterializeProjectionInQuery(QueryRoot)
+    */
+   String LATE_MATERIALIZATION = "lateMaterialization";
+
+   boolean DEFAULT_LATE_MATERIALIZATION = Boolean.valueOf(System.getProperty(
+           QueryHints.class.getName() + "." + LATE_MATERIALIZATION, "false"));
+
+   /**
+    * The maximum #of queries in the query plan cache (default
+    * {@value #DEFAULT_QUERY_PLAN_CACHE_CAPACITY}). The cache allows a query
+    * which is presented again through the REST API to skip the SPARQL parser,
+    * the resolution of its RDF Values against the lexicon and, in the same
+    * evaluation context, the AST optimizers. The cache is disabled if the
+    * capacity is ZERO (0). This may only be specified as a system property.
+    * 
+    * @see com.bigdata.rdf.sparql.ast.cache.QueryPlanCache
+    */
+   String QUERY_PLAN_CACHE_CAPACITY = "queryPlanCacheCapacity";
+
+   int DEFAULT_QUERY_PLAN_CACHE_CAPACITY = Integer.valueOf(System.getProperty(
+           QueryHints.class.getName() + "." + QUERY_PLAN_CACHE_CAPACITY, "0"));
+
+   /**
+    * The maximum #of bytes for the encoded solutions in the SPARQL result
+    * cache for SELECT, ASK and CONSTRUCT queries (default
+    * {@value #DEFAULT_RESULT_CACHE_MAX_BYTES}). The cache is disabled if this
+    * is ZERO (0). This may only be specified as a system property.
+    * 
+    * @see com.bigdata.rdf.sparql.ast.cache.SparqlResultCache
+    */
+   String RESULT_CACHE_MAX_BYTES = "resultCacheMaxBytes";
+
+   long DEFAULT_RESULT_CACHE_MAX_BYTES = Long.valueOf(System.getProperty(
+           QueryHints.class.getName() + "." + RESULT_CACHE_MAX_BYTES, "0"));
+
+   /**
+    * The maximum #of solutions for a query whose solutions will be entered
+    * into the SPARQL result cache (default
+    * {@value #DEFAULT_RESULT_CACHE_MAX_SOLUTIONS}). This may only be specified
+    * as a system property.
+    * 
+    * @see #RESULT_CACHE_MAX_BYTES
+    */
+   String RESULT_CACHE_MAX_SOLUTIONS = "resultCacheMaxSolutions";
+
+   int DEFAULT_RESULT_CACHE_MAX_SOLUTIONS = Integer.valueOf(System.getProperty(
+           QueryHints.class.getName() + "." + RESULT_CACHE_MAX_SOLUTIONS,
+           "10000"));
    
    /**
     * By default, a DISTINCT filter is applied when evaluating access paths
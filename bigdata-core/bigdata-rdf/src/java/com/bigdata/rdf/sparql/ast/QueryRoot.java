@@ -57,6 +57,16 @@ public class QueryRoot extends QueryBase implements IPrefixDecls, IDataSetNode {
          */
         String NAMED_SUBQUERIES = "namedSubqueries";
 
+        /**
+         * The names of the materialized views read by the optimized AST
+         * (optional). This is set by the
+         * {@link com.bigdata.rdf.sparql.ast.optimizers.ASTMaterializedViewOptimizer}
+         * when it rewrites the query or a sub-select to read a view. The
+         * solutions of such a query depend on the state of the view, so
+         * neither its optimized AST nor its solutions may be cached.
+         */
+        String MATERIALIZED_VIEWS = "materializedViews";
+
     }
 
     /**
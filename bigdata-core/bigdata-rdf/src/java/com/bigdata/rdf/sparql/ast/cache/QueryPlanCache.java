@@ -0,0 +1,912 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.counters.CAT;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
+import com.bigdata.counters.Instrument;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryNodeWithBindingSet;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTMaterializedViewOptimizer;
+
+/**
+ * A cache of parsed, resolved and optimized SPARQL queries keyed on the
+ * namespace, the base URI and the normalized query string. A hit allows the
+ * caller to skip the SPARQL parser and the deferred resolution of the RDF
+ * {@link org.openrdf.model.Value}s in the query against the lexicon (the cached
+ * original AST is already resolved) and, if the query is evaluated in the
+ * same context as the cached entry (includeInferred, timeout, query hints and
+ * KB configuration), the AST optimizer pipeline as well. The query plan is
+ * always generated from the (cached) optimized AST since the
+ * {@link com.bigdata.bop.PipelineOp}s are specific to the queryId.
+ * <p>
+ * The entries do not depend on the commit point. A query is only cached if
+ * every RDF {@link org.openrdf.model.Value} in the query is known to the
+ * lexicon (unknown terms could be added by a later commit), if the query was
+ * not evaluated against a protocol specified dataset and if there are no
+ * exogenous bindings (the optimizers inline exogenous bindings into the
+ * optimized AST). Constants given in the query text (including VALUES) are
+ * part of the key. The cached optimized AST reflects the cardinality
+ * estimates at the time that it was optimized. The entries for a namespace
+ * are dropped when the namespace is destroyed and an entry is not reused if
+ * the configuration of the KB has changed.
+ * <p>
+ * The cache is disabled unless {@link QueryHints#QUERY_PLAN_CACHE_CAPACITY}
+ * is positive.
+ * 
+ * @see QueryHints#QUERY_PLAN_CACHE_CAPACITY
+ */
+public class QueryPlanCache implements ICounterSetAccess {
+
+    private static final transient Logger log = Logger
+            .getLogger(QueryPlanCache.class);
+
+    /**
+     * Weak key cache to enforce the singleton pattern.
+     * 
+     * @see CacheConnectionFactory
+     */
+    private static final WeakHashMap<QueryEngine, QueryPlanCache> instanceCache = new WeakHashMap<QueryEngine, QueryPlanCache>();
+
+    /**
+     * Singleton factory.
+     * 
+     * @param queryEngine
+     *            The {@link QueryEngine}.
+     * 
+     * @return The cache -or- <code>null</code> if the cache is disabled.
+     */
+    static public QueryPlanCache getInstance(final QueryEngine queryEngine) {
+
+        if (queryEngine == null)
+            throw new IllegalArgumentException();
+
+        if (QueryHints.DEFAULT_QUERY_PLAN_CACHE_CAPACITY <= 0) {
+
+            // Feature is disabled.
+            return null;
+
+        }
+
+        synchronized (instanceCache) {
+
+            QueryPlanCache cache = instanceCache.get(queryEngine);
+
+            if (cache == null) {
+
+                cache = new QueryPlanCache(
+                        QueryHints.DEFAULT_QUERY_PLAN_CACHE_CAPACITY);
+
+                instanceCache.put(queryEngine, cache);
+
+            }
+
+            return cache;
+
+        }
+
+    }
+
+    /**
+     * Singleton factory test (does not create the cache).
+     * 
+     * @param queryEngine
+     *            The {@link QueryEngine}.
+     * 
+     * @return The cache iff one has been obtained from the factory and its
+     *         weak reference has not been cleared.
+     */
+    static public QueryPlanCache getExistingInstance(
+            final QueryEngine queryEngine) {
+
+        synchronized (instanceCache) {
+
+            return instanceCache.get(queryEngine);
+
+        }
+
+    }
+
+    /**
+     * Install a cache for the {@link QueryEngine} regardless of
+     * {@link QueryHints#QUERY_PLAN_CACHE_CAPACITY} (unit tests).
+     * 
+     * @param queryEngine
+     *            The {@link QueryEngine}.
+     * @param cache
+     *            The cache.
+     */
+    static void setInstance(final QueryEngine queryEngine,
+            final QueryPlanCache cache) {
+
+        synchronized (instanceCache) {
+
+            instanceCache.put(queryEngine, cache);
+
+        }
+
+    }
+
+    /**
+     * Drop any entries for the namespace from all caches. This is invoked
+     * when a KB instance is destroyed.
+     * 
+     * @param namespace
+     *            The namespace of the KB.
+     */
+    static public void invalidate(final String namespace) {
+
+        synchronized (instanceCache) {
+
+            for (QueryPlanCache cache : instanceCache.values()) {
+
+                cache.clear(namespace);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static class Entry {
+
+        /** The namespace of the KB. */
+        final String namespace;
+
+        /** The query string as given. */
+        final String queryString;
+
+        /** The parse tree (read-only). */
+        final Object parseTree;
+
+        /** The query hints on the {@link ASTContainer} after the parse. */
+        final Properties parseQueryHints;
+
+        /** The resolved original AST. */
+        final QueryRoot originalAST;
+
+        /** The parse and resolve time (nanoseconds). */
+        final long prepareNanos;
+
+        /** The optimized AST (optional). */
+        volatile QueryRoot optimizedAST;
+
+        /** The binding sets for the optimized AST. */
+        volatile IBindingSet[] optimizedBindingSets;
+
+        /** The context in which the optimized AST was generated. */
+        volatile String optimizedContext;
+
+        /** The time to optimize the AST (nanoseconds). */
+        volatile long optimizeNanos;
+
+        Entry(final String namespace, final ASTContainer astContainer,
+                final Properties parseQueryHints) {
+
+            this.namespace = namespace;
+
+            this.queryString = astContainer.getQueryString();
+
+            this.parseTree = astContainer.getParseTree();
+
+            this.parseQueryHints = parseQueryHints;
+
+            this.originalAST = BOpUtility.deepCopy(astContainer
+                    .getOriginalAST());
+
+            this.prepareNanos = nanos(astContainer.getQueryParseTime())
+                    + nanos(astContainer.getResolveValuesTime());
+
+        }
+
+        private static long nanos(final Long t) {
+
+            return t == null ? 0L : t.longValue();
+
+        }
+
+    }
+
+    /**
+     * The cache (LRU). The key is formed from the namespace, the base URI and
+     * the normalized query string.
+     */
+    private final LinkedHashMap<String, Entry> map;
+
+    private final CAT hitCount = new CAT();
+
+    private final CAT missCount = new CAT();
+
+    private final CAT planHitCount = new CAT();
+
+    private final CAT planMissCount = new CAT();
+
+    private final CAT notCacheableCount = new CAT();
+
+    private final CAT evictionCount = new CAT();
+
+    private final CAT savedNanos = new CAT();
+
+    /**
+     * @param capacity
+     *            The maximum #of entries in the cache.
+     */
+    public QueryPlanCache(final int capacity) {
+
+        if (capacity <= 0)
+            throw new IllegalArgumentException();
+
+        this.map = new LinkedHashMap<String, Entry>(capacity, .75f, true/* accessOrder */) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Entry> eldest) {
+
+                if (size() > capacity) {
+
+                    evictionCount.increment();
+
+                    return true;
+
+                }
+
+                return false;
+
+            }
+
+        };
+
+    }
+
+    /**
+     * Return the cache key for a query.
+     */
+    static String getKey(final String namespace, final String baseURI,
+            final String queryStr) {
+
+        return namespace + "\n" + baseURI + "\n" + normalize(queryStr);
+
+    }
+
+    /**
+     * Normalize the query string by trimming it and collapsing each run of
+     * whitespace outside of a quoted literal or a comment into a single
+     * character. A run which contains a line break is collapsed to a line
+     * break in order to preserve the extent of a comment.
+     */
+    static String normalize(final String s) {
+
+        final int len = s.length();
+
+        final StringBuilder sb = new StringBuilder(len);
+
+        // The quote character for the current literal and its length (1 or 3).
+        char quote = 0;
+
+        int quoteLength = 0;
+
+        int i = 0;
+
+        while (i < len) {
+
+            final char c = s.charAt(i);
+
+            if (quote != 0) {
+
+                sb.append(c);
+
+                if (c == '\\' && i + 1 < len) {
+
+                    // Escape sequence.
+                    sb.append(s.charAt(++i));
+
+                } else if (c == quote
+                        && (quoteLength == 1 || s.startsWith(
+                                quote == '"' ? "\"\"\"" : "'''", i))) {
+
+                    if (quoteLength == 3) {
+
+                        sb.append(quote).append(quote);
+
+                        i += 2;
+
+                    }
+
+                    quote = 0;
+
+                }
+
+                i++;
+
+                continue;
+
+            }
+
+            if (c == '#') {
+
+                // Comment (copied through the end of the line).
+                while (i < len && s.charAt(i) != '\n' && s.charAt(i) != '\r') {
+
+                    sb.append(s.charAt(i++));
+
+                }
+
+                continue;
+
+            }
+
+            if (c == '"' || c == '\'') {
+
+                quote = c;
+
+                quoteLength = s.startsWith(c == '"' ? "\"\"\"" : "'''", i) ? 3
+                        : 1;
+
+                sb.append(s, i, i + quoteLength);
+
+                i += quoteLength;
+
+                continue;
+
+            }
+
+            if (Character.isWhitespace(c)) {
+
+                boolean lineBreak = false;
+
+                while (i < len && Character.isWhitespace(s.charAt(i))) {
+
+                    final char d = s.charAt(i++);
+
+                    if (d == '\n' || d == '\r')
+                        lineBreak = true;
+
+                }
+
+                if (sb.length() > 0 && i < len) {
+
+                    sb.append(lineBreak ? '\n' : ' ');
+
+                }
+
+                continue;
+
+            }
+
+            sb.append(c);
+
+            i++;
+
+        }
+
+        return sb.toString();
+
+    }
+
+    /**
+     * Return a new {@link ASTContainer} for the query iff it is in the cache.
+     * The returned {@link ASTContainer} has a copy of the resolved original AST
+     * and is marked with its cache key so the optimized AST may be reused when
+     * the query is evaluated.
+     * 
+     * @param namespace
+     *            The namespace of the KB.
+     * @param queryStr
+     *            The query.
+     * @param baseURI
+     *            The base URI.
+     * 
+     * @return The {@link ASTContainer} -or- <code>null</code> if the query
+     *         is not in the cache.
+     */
+    public ASTContainer get(final String namespace, final String queryStr,
+            final String baseURI) {
+
+        final String key = getKey(namespace, baseURI, queryStr);
+
+        final Entry e;
+
+        synchronized (map) {
+
+            e = map.get(key);
+
+        }
+
+        if (e == null) {
+
+            missCount.increment();
+
+            return null;
+
+        }
+
+        hitCount.increment();
+
+        savedNanos.add(e.prepareNanos);
+
+        final ASTContainer astContainer = new ASTContainer(
+                BOpUtility.deepCopy(e.originalAST));
+
+        astContainer.setQueryString(e.queryString);
+
+        astContainer.setParseTree(e.parseTree);
+
+        if (e.parseQueryHints != null) {
+
+            final Properties tmp = new Properties();
+
+            tmp.putAll(e.parseQueryHints);
+
+            astContainer.setQueryHints(tmp);
+
+        }
+
+        // The cached original AST is already resolved.
+        astContainer.setProperty(ASTContainer.Annotations.RESOLVED,
+                Boolean.TRUE);
+
+        astContainer.setQueryParseTime(0L);
+
+        astContainer.setProperty(ASTContainer.Annotations.PLAN_CACHE_KEY, key);
+
+        return astContainer;
+
+    }
+
+    /**
+     * Mark a newly parsed query with its cache key. The query will be entered
+     * into the cache once it has been resolved and optimized (if it is
+     * cacheable).
+     * 
+     * @param namespace
+     *            The namespace of the KB.
+     * @param baseURI
+     *            The base URI.
+     * @param astContainer
+     *            The newly parsed query.
+     */
+    public void prepare(final String namespace, final String baseURI,
+            final ASTContainer astContainer) {
+
+        if (astContainer.isUpdate())
+            throw new IllegalArgumentException();
+
+        astContainer.setProperty(ASTContainer.Annotations.PLAN_CACHE_KEY,
+                getKey(namespace, baseURI, astContainer.getQueryString()));
+
+        final Properties queryHints = astContainer.getQueryHints();
+
+        if (queryHints != null) {
+
+            /*
+             * Save the query hints from the parse. Hints added later (e.g.,
+             * the queryId assigned by the REST API) must not be cached.
+             */
+            final Properties tmp = new Properties();
+
+            tmp.putAll(queryHints);
+
+            astContainer.setProperty(PARSE_QUERY_HINTS, tmp);
+
+        }
+
+    }
+
+    /**
+     * Annotation used to pass the query hints from the parse to the
+     * {@link Entry}.
+     */
+    private static final String PARSE_QUERY_HINTS = QueryPlanCache.class
+            .getName() + ".parseQueryHints";
+
+    /**
+     * Return a copy of the cached optimized AST and its binding sets iff the
+     * query was obtained from the cache (or prepared for the cache) and the
+     * optimized AST was generated in the same context.
+     * 
+     * @param ctx
+     *            The evaluation context.
+     * @param globallyScopedBindings
+     *            The exogenous bindings.
+     * 
+     * @return The optimized AST and binding sets -or- <code>null</code>.
+     */
+    public QueryNodeWithBindingSet getOptimizedQuery(final AST2BOpContext ctx,
+            final IBindingSet[] globallyScopedBindings) {
+
+        final String key = (String) ctx.astContainer
+                .getProperty(ASTContainer.Annotations.PLAN_CACHE_KEY);
+
+        if (key == null)
+            return null;
+
+        final Entry e;
+
+        synchronized (map) {
+
+            e = map.get(key);
+
+        }
+
+        if (e == null || e.optimizedAST == null
+                || !isCacheable(ctx, globallyScopedBindings)) {
+
+            planMissCount.increment();
+
+            return null;
+
+        }
+
+        final QueryRoot optimizedAST;
+        final IBindingSet[] bindingSets;
+        final long optimizeNanos;
+
+        synchronized (e) {
+
+            if (!getContext(ctx).equals(e.optimizedContext)) {
+
+                planMissCount.increment();
+
+                return null;
+
+            }
+
+            optimizedAST = BOpUtility.deepCopy(e.optimizedAST);
+
+            bindingSets = copy(e.optimizedBindingSets);
+
+            optimizeNanos = e.optimizeNanos;
+
+        }
+
+        planHitCount.increment();
+
+        savedNanos.add(optimizeNanos);
+
+        return new QueryNodeWithBindingSet(optimizedAST, bindingSets);
+
+    }
+
+    /**
+     * Enter the query into the cache together with its optimized AST iff the
+     * query was prepared for the cache and is cacheable.
+     * 
+     * @param ctx
+     *            The evaluation context.
+     * @param globallyScopedBindings
+     *            The exogenous bindings.
+     * @param optimized
+     *            The optimized AST and binding sets.
+     * @param optimizeNanos
+     *            The time required to optimize the AST.
+     */
+    public void putOptimizedQuery(final AST2BOpContext ctx,
+            final IBindingSet[] globallyScopedBindings,
+            final QueryNodeWithBindingSet optimized, final long optimizeNanos) {
+
+        final ASTContainer astContainer = ctx.astContainer;
+
+        final String key = (String) astContainer
+                .getProperty(ASTContainer.Annotations.PLAN_CACHE_KEY);
+
+        if (key == null)
+            return;
+
+        /*
+         * Note: The optimizers fold constant expressions, including NOW() and
+         * RAND(), so the optimized AST of a non-deterministic query must not
+         * be reused. Likewise, an optimized AST which reads a materialized
+         * view is only valid while that view is maintained.
+         */
+        if (!isCacheable(ctx, globallyScopedBindings)
+                || hasUnknownTerms(astContainer.getOriginalAST())
+                || !SparqlResultCache.isDeterministic(astContainer
+                        .getOriginalAST())
+                || ASTMaterializedViewOptimizer
+                        .usesViews((QueryRoot) optimized.getQueryNode())) {
+
+            notCacheableCount.increment();
+
+            return;
+
+        }
+
+        Entry e;
+
+        synchronized (map) {
+
+            e = map.get(key);
+
+            if (e == null) {
+
+                e = new Entry(ctx.getNamespace(), astContainer,
+                        (Properties) astContainer
+                                .getProperty(PARSE_QUERY_HINTS));
+
+                map.put(key, e);
+
+            }
+
+        }
+
+        synchronized (e) {
+
+            e.optimizedAST = BOpUtility.deepCopy((QueryRoot) optimized
+                    .getQueryNode());
+
+            e.optimizedBindingSets = copy(optimized.getBindingSets());
+
+            e.optimizedContext = getContext(ctx);
+
+            e.optimizeNanos = optimizeNanos;
+
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("Cached: " + key);
+
+    }
+
+    /**
+     * Only queries without exogenous bindings and without a protocol specified
+     * dataset are cached.
+     */
+    private static boolean isCacheable(final AST2BOpContext ctx,
+            final IBindingSet[] globallyScopedBindings) {
+
+        if (globallyScopedBindings != null) {
+
+            for (IBindingSet bset : globallyScopedBindings) {
+
+                if (bset != null && !bset.isEmpty())
+                    return false;
+
+            }
+
+        }
+
+        return ctx.astContainer.getOriginalAST().getDataset() == null;
+
+    }
+
+    /**
+     * Return <code>true</code> if the AST contains an {@link IV} for a term
+     * which is not in the lexicon.
+     */
+    @SuppressWarnings("rawtypes")
+    private static boolean hasUnknownTerms(final QueryRoot queryRoot) {
+
+        final Iterator<BOp> itr = BOpUtility
+                .preOrderIteratorWithAnnotations(queryRoot);
+
+        while (itr.hasNext()) {
+
+            final BOp op = itr.next();
+
+            if (op instanceof IConstant) {
+
+                final Object v = ((IConstant) op).get();
+
+                if (v instanceof IV && ((IV) v).isNullIV())
+                    return true;
+
+            }
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * The context in which a query is optimized. This captures the
+     * includeInferred and timeout annotations which are set on the original
+     * AST by the caller, the query hints on the {@link ASTContainer} (other
+     * than the queryId) and the configuration of the KB.
+     */
+    private static String getContext(final AST2BOpContext ctx) {
+
+        final QueryRoot originalAST = ctx.astContainer.getOriginalAST();
+
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append("includeInferred=").append(originalAST.getIncludeInferred());
+
+        sb.append(",timeout=").append(originalAST.getTimeout());
+
+        final Properties queryHints = ctx.astContainer.getQueryHints();
+
+        if (queryHints != null) {
+
+            final TreeMap<Object, Object> tmp = new TreeMap<Object, Object>(
+                    queryHints);
+
+            tmp.remove(QueryHints.QUERYID);
+
+            sb.append(",queryHints=").append(tmp);
+
+        }
+
+        sb.append(",config=").append(
+                new TreeMap<Object, Object>(ctx.getAbstractTripleStore()
+                        .getProperties()).hashCode());
+
+        return sb.toString();
+
+    }
+
+    private static IBindingSet[] copy(final IBindingSet[] a) {
+
+        if (a == null)
+            return null;
+
+        final IBindingSet[] b = new IBindingSet[a.length];
+
+        for (int i = 0; i < a.length; i++) {
+
+            b[i] = a[i] == null ? null : a[i].clone();
+
+        }
+
+        return b;
+
+    }
+
+    /**
+     * Drop all entries for the namespace.
+     */
+    public void clear(final String namespace) {
+
+        synchronized (map) {
+
+            final Iterator<Entry> itr = map.values().iterator();
+
+            while (itr.hasNext()) {
+
+                if (itr.next().namespace.equals(namespace))
+                    itr.remove();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * The #of entries in the cache.
+     */
+    public int size() {
+
+        synchronized (map) {
+
+            return map.size();
+
+        }
+
+    }
+
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        root.addCounter("size", new Instrument<Integer>() {
+            @Override
+            public void sample() {
+                setValue(size());
+            }
+        });
+
+        root.addCounter("hitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(hitCount.get());
+            }
+        });
+
+        root.addCounter("missCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(missCount.get());
+            }
+        });
+
+        root.addCounter("hitRate", new Instrument<Double>() {
+            @Override
+            public void sample() {
+                final long hits = hitCount.get();
+                final long total = hits + missCount.get();
+                setValue(total == 0L ? 0d : hits / (double) total);
+            }
+        });
+
+        root.addCounter("planHitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(planHitCount.get());
+            }
+        });
+
+        root.addCounter("planMissCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(planMissCount.get());
+            }
+        });
+
+        root.addCounter("notCacheableCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(notCacheableCount.get());
+            }
+        });
+
+        root.addCounter("evictionCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(evictionCount.get());
+            }
+        });
+
+        root.addCounter("savedCompileMillis", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(TimeUnit.NANOSECONDS.toMillis(savedNanos.get()));
+            }
+        });
+
+        return root;
+
+    }
+
+}
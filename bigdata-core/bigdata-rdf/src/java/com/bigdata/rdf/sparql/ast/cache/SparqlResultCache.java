@@ -0,0 +1,1263 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.apache.log4j.Logger;
+import org.openrdf.model.URI;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.counters.CAT;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
+import com.bigdata.counters.Instrument;
+import com.bigdata.io.DataOutputBuffer;
+import com.bigdata.io.DirectBufferPool;
+import com.bigdata.journal.IAtomicStore;
+import com.bigdata.journal.ICommitRecord;
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.journal.TimestampUtility;
+import com.bigdata.rdf.changesets.IChangeLog;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.encoder.SolutionSetStreamDecoder;
+import com.bigdata.rdf.internal.encoder.SolutionSetStreamEncoder;
+import com.bigdata.rdf.sparql.ast.FunctionNode;
+import com.bigdata.rdf.sparql.ast.FunctionRegistry;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryInclude;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.TermNode;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTMaterializedViewOptimizer;
+import com.bigdata.rdf.sparql.ast.service.ServiceNode;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rwstore.sector.IMemoryManager;
+import com.bigdata.rwstore.sector.MemoryManager;
+import com.bigdata.striterator.Dechunkerator;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * A cache for the solutions of SELECT, ASK and CONSTRUCT queries. The cache is
+ * keyed on the namespace, the normalized query string, the base URI, the
+ * exogenous bindings, the dataset, the includeInferred flag and the query
+ * hints. The solutions are cached after the projection has been materialized
+ * (for CONSTRUCT, these are the solutions to the WHERE clause, so the template
+ * is applied again for each hit). The solutions are encoded using a
+ * {@link SolutionSetStreamEncoder} and stored on a {@link MemoryManager}.
+ * Entries are evicted in LRU order once the total size of the encoded
+ * solutions exceeds the byte budget.
+ * <p>
+ * Each entry is valid for a range of commit points. An entry is created for
+ * the commit point against which the query was evaluated. When a commit is
+ * observed for a KB instance through the {@link IChangeLog} (see
+ * {@link SparqlResultCacheServiceFactory}), the entries which were valid for
+ * the previous commit point and whose predicates were not touched by that
+ * commit have their range extended through the new commit point. Entries for
+ * other KB instances on the same journal are extended as well. Entries whose
+ * predicates were touched remain valid for historical reads only. Thus a query
+ * against the most recent commit point (whether read-committed or through a
+ * read-only transaction) is a hit as long as no statement using a predicate
+ * which appears in the query has been added, removed or updated since the
+ * entry was created. Commits which are not observed through the
+ * {@link IChangeLog} can not extend an entry, so they lead to cache misses
+ * rather than stale results.
+ * <p>
+ * Queries are not cached if they are not evaluated against a commit point
+ * (unisolated or read/write transaction views), if they were not given as a
+ * query string, if they use a non-deterministic function (RAND, NOW, UUID,
+ * STRUUID, BNODE), a SERVICE, or a named solution set which is not defined by
+ * the query, including a materialized view which the query was rewritten to
+ * read by the {@link ASTMaterializedViewOptimizer}. A query whose predicate is a variable or a term which is not in
+ * the lexicon is invalidated by any commit on its KB instance, as is a query
+ * against inferred <code>rdf:type</code> or <code>owl:sameAs</code> statements
+ * (these can be entailed by statements using other predicates). DESCRIBE is
+ * handled by the {@link IDescribeCache}.
+ * <p>
+ * The cache is disabled unless {@link QueryHints#RESULT_CACHE_MAX_BYTES} is
+ * positive.
+ * 
+ * @see QueryHints#RESULT_CACHE_MAX_BYTES
+ * @see QueryHints#RESULT_CACHE_MAX_SOLUTIONS
+ */
+public class SparqlResultCache implements ICounterSetAccess {
+
+    private static final transient Logger log = Logger
+            .getLogger(SparqlResultCache.class);
+
+    /**
+     * Weak key cache to enforce the singleton pattern.
+     * 
+     * @see CacheConnectionFactory
+     */
+    private static final WeakHashMap<QueryEngine, SparqlResultCache> instanceCache = new WeakHashMap<QueryEngine, SparqlResultCache>();
+
+    /**
+     * Singleton factory.
+     * 
+     * @param queryEngine
+     *            The {@link QueryEngine}.
+     * 
+     * @return The cache -or- <code>null</code> if the cache is disabled.
+     */
+    static public SparqlResultCache getInstance(final QueryEngine queryEngine) {
+
+        if (queryEngine == null)
+            throw new IllegalArgumentException();
+
+        if (QueryHints.DEFAULT_RESULT_CACHE_MAX_BYTES <= 0L) {
+
+            // Feature is disabled.
+            return null;
+
+        }
+
+        synchronized (instanceCache) {
+
+            SparqlResultCache cache = instanceCache.get(queryEngine);
+
+            if (cache == null) {
+
+                cache = new SparqlResultCache(
+                        QueryHints.DEFAULT_RESULT_CACHE_MAX_BYTES,
+                        QueryHints.DEFAULT_RESULT_CACHE_MAX_SOLUTIONS);
+
+                instanceCache.put(queryEngine, cache);
+
+            }
+
+            return cache;
+
+        }
+
+    }
+
+    /**
+     * Singleton factory test (does not create the cache).
+     * 
+     * @param queryEngine
+     *            The {@link QueryEngine}.
+     * 
+     * @return The cache iff one has been obtained from the factory and its
+     *         weak reference has not been cleared.
+     */
+    static public SparqlResultCache getExistingInstance(
+            final QueryEngine queryEngine) {
+
+        synchronized (instanceCache) {
+
+            return instanceCache.get(queryEngine);
+
+        }
+
+    }
+
+    /**
+     * Drop any entries for the namespace from all caches. This is invoked
+     * when a KB instance is destroyed.
+     * 
+     * @param namespace
+     *            The namespace of the KB.
+     */
+    static public void invalidate(final String namespace) {
+
+        synchronized (instanceCache) {
+
+            for (SparqlResultCache cache : instanceCache.values()) {
+
+                cache.clear(namespace);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * The key for a query together with the commit point against which it is
+     * being evaluated.
+     */
+    public static class CacheKey {
+
+        /** The cache. */
+        private final SparqlResultCache cache;
+
+        /** The namespace of the KB. */
+        private final String namespace;
+
+        /** The key for the cache entry. */
+        private final String key;
+
+        /** The commit point against which the query is evaluated. */
+        private final long commitTime;
+
+        /**
+         * The view against which the query is evaluated iff it is a
+         * read-committed view (the commit point must not change while the
+         * query is running).
+         */
+        private final AbstractTripleStore readCommittedView;
+
+        CacheKey(final SparqlResultCache cache, final String namespace,
+                final String key, final long commitTime,
+                final AbstractTripleStore readCommittedView) {
+
+            this.cache = cache;
+
+            this.namespace = namespace;
+
+            this.key = key;
+
+            this.commitTime = commitTime;
+
+            this.readCommittedView = readCommittedView;
+
+        }
+
+        /**
+         * The cache for which the key was generated.
+         */
+        public SparqlResultCache getCache() {
+
+            return cache;
+
+        }
+
+        @Override
+        public String toString() {
+
+            return getClass().getSimpleName() + "{namespace=" + namespace
+                    + ",commitTime=" + commitTime + ",key=" + key + "}";
+
+        }
+
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static class Entry {
+
+        /** The namespace of the KB. */
+        final String namespace;
+
+        /** The address of the encoded solutions (0L if there are none). */
+        final long addr;
+
+        /** The #of bytes in the encoded solutions. */
+        final int nbytes;
+
+        /** The #of solutions. */
+        final long solutionCount;
+
+        /** The first commit point for which the entry is valid. */
+        final long fromCommitTime;
+
+        /**
+         * The last commit point for which the entry is valid (guarded by the
+         * cache's monitor).
+         */
+        long toCommitTime;
+
+        /**
+         * The predicates used by the query -or- <code>null</code> if the entry
+         * is invalidated by any update on the KB.
+         */
+        final Set<IV<?, ?>> predicates;
+
+        Entry(final String namespace, final long addr, final int nbytes,
+                final long solutionCount, final long commitTime,
+                final Set<IV<?, ?>> predicates) {
+
+            this.namespace = namespace;
+
+            this.addr = addr;
+
+            this.nbytes = nbytes;
+
+            this.solutionCount = solutionCount;
+
+            this.fromCommitTime = commitTime;
+
+            this.toCommitTime = commitTime;
+
+            this.predicates = predicates;
+
+        }
+
+        /**
+         * Return <code>true</code> iff the entry is affected by a commit on
+         * the namespace which touched the given predicates (<code>null</code>
+         * if any predicate could have been touched).
+         */
+        boolean isAffected(final String namespace, final Set<IV<?, ?>> touched) {
+
+            if (!this.namespace.equals(namespace))
+                return false;
+
+            if (touched == null || predicates == null)
+                return true;
+
+            for (IV<?, ?> p : predicates) {
+
+                if (touched.contains(p))
+                    return true;
+
+            }
+
+            return false;
+
+        }
+
+    }
+
+    /** The maximum #of bytes for the encoded solutions. */
+    private final long maxBytes;
+
+    /** The maximum #of solutions that will be buffered for a single query. */
+    private final int maxSolutions;
+
+    /** The backing store for the encoded solutions. */
+    private final IMemoryManager mmgr;
+
+    /** The cache entries in LRU order (guarded by its own monitor). */
+    private final LinkedHashMap<String, Entry> map;
+
+    /** The #of bytes for the encoded solutions (guarded by the map). */
+    private long bytesInUse = 0L;
+
+    private final CAT hitCount = new CAT();
+
+    private final CAT missCount = new CAT();
+
+    private final CAT notCacheableCount = new CAT();
+
+    private final CAT tooLargeCount = new CAT();
+
+    private final CAT insertCount = new CAT();
+
+    private final CAT evictionCount = new CAT();
+
+    private final CAT extendCount = new CAT();
+
+    private final CAT invalidateCount = new CAT();
+
+    /**
+     * @param maxBytes
+     *            The maximum #of bytes for the encoded solutions.
+     * @param maxSolutions
+     *            The maximum #of solutions that will be buffered for a single
+     *            query.
+     */
+    public SparqlResultCache(final long maxBytes, final int maxSolutions) {
+
+        if (maxBytes <= 0L)
+            throw new IllegalArgumentException();
+
+        if (maxSolutions <= 0)
+            throw new IllegalArgumentException();
+
+        this.maxBytes = maxBytes;
+
+        this.maxSolutions = maxSolutions;
+
+        this.mmgr = new MemoryManager(DirectBufferPool.INSTANCE);
+
+        this.map = new LinkedHashMap<String, Entry>(16, .75f, true/* accessOrder */);
+
+    }
+
+    /**
+     * Return the commit point against which a view reads.
+     * 
+     * @param db
+     *            The view.
+     * 
+     * @return The commit time -or- <code>-1L</code> if the view does not read
+     *         on a commit point.
+     */
+    public static long getCommitTime(final AbstractTripleStore db) {
+
+        final long timestamp = db.getTimestamp();
+
+        final IIndexManager indexManager = db.getIndexManager();
+
+        if (TimestampUtility.isReadCommitted(timestamp)) {
+
+            return indexManager.getLastCommitTime();
+
+        }
+
+        if (TimestampUtility.isReadOnly(timestamp)
+                && indexManager instanceof IAtomicStore) {
+
+            // Historical read or read-only tx.
+            final ICommitRecord commitRecord = ((IAtomicStore) indexManager)
+                    .getCommitRecord(timestamp);
+
+            if (commitRecord != null)
+                return commitRecord.getTimestamp();
+
+        }
+
+        // Unisolated or read/write tx.
+        return -1L;
+
+    }
+
+    /**
+     * Return the key for the query iff it may be cached. This must be invoked
+     * after the query has been optimized.
+     * 
+     * @param ctx
+     *            The evaluation context.
+     * @param globallyScopedBS
+     *            The exogenous bindings (optional).
+     * 
+     * @return The key -or- <code>null</code> if the query can not be cached.
+     */
+    public CacheKey getKey(final AST2BOpContext ctx,
+            final BindingSet globallyScopedBS) {
+
+        final QueryRoot originalAST = ctx.astContainer.getOriginalAST();
+
+        final String queryStr = ctx.astContainer.getQueryString();
+
+        final AbstractTripleStore db = ctx.getAbstractTripleStore();
+
+        final long commitTime = getCommitTime(db);
+
+        if (queryStr == null || originalAST == null
+                || originalAST.getQueryType() == QueryType.DESCRIBE
+                || commitTime == -1L || !isDeterministic(originalAST)
+                || ASTMaterializedViewOptimizer.usesViews(ctx.astContainer
+                        .getOptimizedAST())) {
+
+            notCacheableCount.increment();
+
+            return null;
+
+        }
+
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(QueryPlanCache.normalize(queryStr));
+
+        /*
+         * Relative IRIs in the query are resolved against the base URI, so
+         * the same query string can have different solutions for different
+         * base URIs.
+         */
+        sb.append("\nbaseURI=").append(ctx.astContainer.getBaseURI());
+
+        sb.append("\nincludeInferred=").append(
+                originalAST.getIncludeInferred());
+
+        if (originalAST.getDataset() != null) {
+
+            sb.append("\ndataset=").append(originalAST.getDataset());
+
+        }
+
+        if (globallyScopedBS != null && globallyScopedBS.size() > 0) {
+
+            final TreeMap<String, String> tmp = new TreeMap<String, String>();
+
+            for (Binding b : globallyScopedBS) {
+
+                tmp.put(b.getName(), b.getValue().toString());
+
+            }
+
+            sb.append("\nbindings=").append(tmp);
+
+        }
+
+        final Properties queryHints = ctx.astContainer.getQueryHints();
+
+        if (queryHints != null) {
+
+            final TreeMap<Object, Object> tmp = new TreeMap<Object, Object>(
+                    queryHints);
+
+            tmp.remove(QueryHints.QUERYID);
+
+            sb.append("\nqueryHints=").append(tmp);
+
+        }
+
+        final String namespace = ctx.getNamespace();
+
+        return new CacheKey(this, namespace, namespace + "\n" + sb.toString(),
+                commitTime,
+                TimestampUtility.isReadCommitted(db.getTimestamp()) ? db
+                        : null);
+
+    }
+
+    /**
+     * The functions whose value is not determined by their arguments.
+     */
+    private static final Set<URI> nonDeterministicFunctions;
+    static {
+
+        final Set<URI> tmp = new HashSet<URI>();
+
+        tmp.add(FunctionRegistry.RAND);
+        tmp.add(FunctionRegistry.NOW);
+        tmp.add(FunctionRegistry.UUID);
+        tmp.add(FunctionRegistry.STRUUID);
+        tmp.add(FunctionRegistry.BNODE);
+
+        nonDeterministicFunctions = Collections.unmodifiableSet(tmp);
+
+    }
+
+    /**
+     * Return <code>true</code> iff the solutions are determined by the query
+     * and the data in the KB. This is also used by the {@link QueryPlanCache}
+     * since the optimizers fold non-deterministic functions into constants.
+     */
+    static boolean isDeterministic(final QueryRoot queryRoot) {
+
+        final Set<String> namedSubqueries = new HashSet<String>();
+
+        final Iterator<NamedSubqueryRoot> itr = BOpUtility.visitAll(queryRoot,
+                NamedSubqueryRoot.class);
+
+        while (itr.hasNext()) {
+
+            namedSubqueries.add(itr.next().getName());
+
+        }
+
+        final Iterator<BOp> itr2 = BOpUtility
+                .preOrderIteratorWithAnnotations(queryRoot);
+
+        while (itr2.hasNext()) {
+
+            final BOp op = itr2.next();
+
+            if (op instanceof ServiceNode) {
+
+                return false;
+
+            } else if (op instanceof FunctionNode) {
+
+                if (nonDeterministicFunctions.contains(((FunctionNode) op)
+                        .getFunctionURI()))
+                    return false;
+
+            } else if (op instanceof NamedSubqueryInclude) {
+
+                if (!namedSubqueries.contains(((NamedSubqueryInclude) op)
+                        .getName()))
+                    return false;
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Return the predicates used by the optimized query -or- <code>null</code>
+     * if the query could be affected by an update using any predicate.
+     */
+    @SuppressWarnings("rawtypes")
+    private static Set<IV<?, ?>> getPredicates(final AST2BOpContext ctx) {
+
+        final QueryRoot optimizedAST = ctx.astContainer.getOptimizedAST();
+
+        if (optimizedAST == null)
+            return null;
+
+        final boolean includeInferred = ctx.astContainer.getOriginalAST()
+                .getIncludeInferred();
+
+        final Set<IV<?, ?>> predicates = new LinkedHashSet<IV<?, ?>>();
+
+        final Iterator<BOp> itr = BOpUtility
+                .preOrderIteratorWithAnnotations(optimizedAST);
+
+        while (itr.hasNext()) {
+
+            final BOp op = itr.next();
+
+            if (op instanceof IConstant) {
+
+                final Object v = ((IConstant) op).get();
+
+                if (v instanceof IV && ((IV) v).isNullIV()) {
+
+                    // A term which is not in the lexicon.
+                    return null;
+
+                }
+
+            } else if (op instanceof StatementPatternNode) {
+
+                final TermNode p = ((StatementPatternNode) op).p();
+
+                if (!p.isConstant()) {
+
+                    // Variable predicate.
+                    return null;
+
+                }
+
+                if (includeInferred
+                        && (RDF.TYPE.equals(p.getValue()) || OWL.SAMEAS
+                                .equals(p.getValue()))) {
+
+                    // Can be entailed by statements using other predicates.
+                    return null;
+
+                }
+
+                predicates.add((IV<?, ?>) p.getValueExpression().get());
+
+            }
+
+        }
+
+        return predicates;
+
+    }
+
+    /**
+     * Return the cached solutions for the query.
+     * 
+     * @param key
+     *            The key.
+     * 
+     * @return The solutions -or- <code>null</code> if there is no entry for
+     *         the query which is valid for its commit point.
+     */
+    public ICloseableIterator<IBindingSet> get(final CacheKey key) {
+
+        final byte[] data;
+        final long solutionCount;
+
+        synchronized (map) {
+
+            final Entry e = map.get(key.key);
+
+            if (e == null || key.commitTime < e.fromCommitTime
+                    || key.commitTime > e.toCommitTime) {
+
+                missCount.increment();
+
+                return null;
+
+            }
+
+            // Copy the data while the allocation can not be freed.
+            data = e.addr == 0L ? new byte[0] : mmgr.read(e.addr);
+
+            solutionCount = e.solutionCount;
+
+        }
+
+        hitCount.increment();
+
+        if (log.isDebugEnabled())
+            log.debug("hit: " + key);
+
+        final SolutionSetStreamDecoder decoder = new SolutionSetStreamDecoder(
+                key.namespace, new DataInputStream(new ByteArrayInputStream(
+                        data)), solutionCount);
+
+        return new Dechunkerator<IBindingSet>(decoder);
+
+    }
+
+    /**
+     * Wrap the solutions for a query. The solutions will be entered into the
+     * cache when the iterator is exhausted unless there are too many of them.
+     * 
+     * @param key
+     *            The key.
+     * @param ctx
+     *            The evaluation context.
+     * @param src
+     *            The materialized solutions.
+     * 
+     * @return An iterator which passes through the solutions.
+     */
+    public ICloseableIterator<IBindingSet> cache(final CacheKey key,
+            final AST2BOpContext ctx, final ICloseableIterator<IBindingSet> src) {
+
+        return new CachingIterator(key, ctx, src);
+
+    }
+
+    /**
+     * Enter the solutions for a query into the cache.
+     * 
+     * @param key
+     *            The key.
+     * @param ctx
+     *            The evaluation context.
+     * @param solutions
+     *            The materialized solutions.
+     */
+    public void put(final CacheKey key, final AST2BOpContext ctx,
+            final IBindingSet[] solutions) {
+
+        if (key.readCommittedView != null
+                && getCommitTime(key.readCommittedView) != key.commitTime) {
+
+            // The query may have read on more than one commit point.
+            return;
+
+        }
+
+        put(key, getPredicates(ctx), solutions);
+
+    }
+
+    /**
+     * Enter the solutions for a query into the cache.
+     * 
+     * @param key
+     *            The key.
+     * @param predicates
+     *            The predicates used by the query -or- <code>null</code> if
+     *            the entry is invalidated by any update on the KB.
+     * @param solutions
+     *            The materialized solutions.
+     */
+    void put(final CacheKey key, final Set<IV<?, ?>> predicates,
+            final IBindingSet[] solutions) {
+
+        final DataOutputBuffer buf = new DataOutputBuffer();
+
+        try {
+
+            new SolutionSetStreamEncoder(key.namespace).encode(
+                    new DataOutputStream(buf),
+                    new SingleChunkIterator(solutions));
+
+        } catch (IOException e) {
+
+            throw new RuntimeException(e);
+
+        }
+
+        final int nbytes = buf.limit();
+
+        if (nbytes > maxBytes) {
+
+            tooLargeCount.increment();
+
+            return;
+
+        }
+
+        synchronized (map) {
+
+            final long addr = nbytes == 0 ? 0L : mmgr.allocate(ByteBuffer
+                    .wrap(buf.array(), 0, nbytes));
+
+            final Entry old = map.put(key.key, new Entry(key.namespace, addr,
+                    nbytes, solutions.length, key.commitTime, predicates));
+
+            if (old != null) {
+
+                free(old);
+
+            }
+
+            bytesInUse += nbytes;
+
+            insertCount.increment();
+
+            // Evict in LRU order.
+            final Iterator<Entry> itr = map.values().iterator();
+
+            while (bytesInUse > maxBytes && itr.hasNext()) {
+
+                final Entry e = itr.next();
+
+                itr.remove();
+
+                free(e);
+
+                evictionCount.increment();
+
+            }
+
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("put: " + key + ", nsolutions=" + solutions.length
+                    + ", nbytes=" + nbytes + ", predicates=" + predicates);
+
+    }
+
+    /**
+     * Release the encoded solutions for an entry which has been removed from
+     * the map. The caller must hold the monitor for the map.
+     */
+    private void free(final Entry e) {
+
+        if (e.addr != 0L)
+            mmgr.free(e.addr);
+
+        bytesInUse -= e.nbytes;
+
+    }
+
+    /**
+     * Notice of a commit. Entries which were valid for the previous commit
+     * point are extended through the new commit point unless they are
+     * affected by the changes to the namespace. Note that a commit point can
+     * be shared by several connections (group commit). Therefore entries which
+     * were already extended through this commit point by a notice for another
+     * namespace are rolled back to the previous commit point if they are
+     * affected by the changes to the namespace.
+     * 
+     * @param indexManager
+     *            The backing store.
+     * @param namespace
+     *            The namespace of the KB instance that was updated.
+     * @param commitTime
+     *            The commit time.
+     * @param touched
+     *            The predicates for the statements that were added, removed
+     *            or updated -or- <code>null</code> if any predicate may have
+     *            been touched.
+     */
+    public void commit(final IIndexManager indexManager,
+            final String namespace, final long commitTime,
+            final Set<IV<?, ?>> touched) {
+
+        long priorCommitTime = -1L;
+
+        if (indexManager instanceof IAtomicStore) {
+
+            final ICommitRecord commitRecord = ((IAtomicStore) indexManager)
+                    .getCommitRecord(commitTime - 1);
+
+            priorCommitTime = commitRecord == null ? 0L : commitRecord
+                    .getTimestamp();
+
+        }
+
+        commit(namespace, priorCommitTime, commitTime, touched);
+
+    }
+
+    /**
+     * Notice of a commit.
+     * 
+     * @param namespace
+     *            The namespace of the KB instance that was updated.
+     * @param priorCommitTime
+     *            The previous commit point on the backing store -or-
+     *            <code>-1L</code> if it is not known.
+     * @param commitTime
+     *            The commit time.
+     * @param touched
+     *            The predicates for the statements that were added, removed
+     *            or updated -or- <code>null</code> if any predicate may have
+     *            been touched.
+     */
+    void commit(final String namespace, final long priorCommitTime,
+            final long commitTime, final Set<IV<?, ?>> touched) {
+
+        synchronized (map) {
+
+            for (Entry e : map.values()) {
+
+                final boolean affected = e.isAffected(namespace, touched);
+
+                if (affected)
+                    invalidateCount.increment();
+
+                if (!affected && priorCommitTime != -1L
+                        && e.toCommitTime == priorCommitTime) {
+
+                    e.toCommitTime = commitTime;
+
+                    extendCount.increment();
+
+                } else if (affected && e.toCommitTime == commitTime
+                        && e.fromCommitTime < commitTime) {
+
+                    e.toCommitTime = priorCommitTime;
+
+                }
+
+            }
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info("namespace=" + namespace + ", commitTime=" + commitTime
+                    + ", priorCommitTime=" + priorCommitTime + ", touched="
+                    + touched);
+
+    }
+
+    /**
+     * Drop all entries for the namespace.
+     */
+    public void clear(final String namespace) {
+
+        synchronized (map) {
+
+            final Iterator<Entry> itr = map.values().iterator();
+
+            while (itr.hasNext()) {
+
+                final Entry e = itr.next();
+
+                if (e.namespace.equals(namespace)) {
+
+                    itr.remove();
+
+                    free(e);
+
+                }
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Drop all entries and release the memory backing the cache.
+     */
+    public void clear() {
+
+        synchronized (map) {
+
+            map.clear();
+
+            bytesInUse = 0L;
+
+            mmgr.clear();
+
+        }
+
+    }
+
+    /**
+     * The #of entries in the cache.
+     */
+    public int size() {
+
+        synchronized (map) {
+
+            return map.size();
+
+        }
+
+    }
+
+    /**
+     * The #of bytes for the encoded solutions in the cache.
+     */
+    public long getBytesInUse() {
+
+        synchronized (map) {
+
+            return bytesInUse;
+
+        }
+
+    }
+
+    /**
+     * Passes through the solutions while buffering them. The solutions are
+     * entered into the cache iff the iterator is exhausted.
+     */
+    private class CachingIterator implements ICloseableIterator<IBindingSet> {
+
+        private final CacheKey key;
+
+        private final AST2BOpContext ctx;
+
+        private final ICloseableIterator<IBindingSet> src;
+
+        /** The buffered solutions (<code>null</code> once abandoned). */
+        private List<IBindingSet> buffer = new ArrayList<IBindingSet>();
+
+        CachingIterator(final CacheKey key, final AST2BOpContext ctx,
+                final ICloseableIterator<IBindingSet> src) {
+
+            this.key = key;
+
+            this.ctx = ctx;
+
+            this.src = src;
+
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            if (src.hasNext())
+                return true;
+
+            if (buffer != null) {
+
+                final IBindingSet[] solutions = buffer
+                        .toArray(new IBindingSet[buffer.size()]);
+
+                buffer = null;
+
+                put(key, ctx, solutions);
+
+            }
+
+            return false;
+
+        }
+
+        @Override
+        public IBindingSet next() {
+
+            if (!src.hasNext())
+                throw new NoSuchElementException();
+
+            final IBindingSet bset = src.next();
+
+            if (buffer != null) {
+
+                if (buffer.size() >= maxSolutions) {
+
+                    // Too many solutions.
+                    buffer = null;
+
+                    tooLargeCount.increment();
+
+                } else {
+
+                    buffer.add(bset);
+
+                }
+
+            }
+
+            return bset;
+
+        }
+
+        @Override
+        public void remove() {
+
+            throw new UnsupportedOperationException();
+
+        }
+
+        @Override
+        public void close() {
+
+            // Not exhausted (or failed), so the solutions are not cached.
+            buffer = null;
+
+            src.close();
+
+        }
+
+    }
+
+    /**
+     * Visits a single chunk of solutions.
+     */
+    private static class SingleChunkIterator implements
+            ICloseableIterator<IBindingSet[]> {
+
+        private IBindingSet[] chunk;
+
+        SingleChunkIterator(final IBindingSet[] chunk) {
+
+            this.chunk = chunk.length == 0 ? null : chunk;
+
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return chunk != null;
+
+        }
+
+        @Override
+        public IBindingSet[] next() {
+
+            if (chunk == null)
+                throw new NoSuchElementException();
+
+            final IBindingSet[] tmp = chunk;
+
+            chunk = null;
+
+            return tmp;
+
+        }
+
+        @Override
+        public void remove() {
+
+            throw new UnsupportedOperationException();
+
+        }
+
+        @Override
+        public void close() {
+
+            chunk = null;
+
+        }
+
+    }
+
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        root.addCounter("size", new Instrument<Integer>() {
+            @Override
+            public void sample() {
+                setValue(size());
+            }
+        });
+
+        root.addCounter("bytesInUse", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(getBytesInUse());
+            }
+        });
+
+        root.addCounter("maxBytes", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(maxBytes);
+            }
+        });
+
+        root.addCounter("hitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(hitCount.get());
+            }
+        });
+
+        root.addCounter("missCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(missCount.get());
+            }
+        });
+
+        root.addCounter("notCacheableCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(notCacheableCount.get());
+            }
+        });
+
+        root.addCounter("tooLargeCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(tooLargeCount.get());
+            }
+        });
+
+        root.addCounter("insertCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(insertCount.get());
+            }
+        });
+
+        root.addCounter("evictionCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(evictionCount.get());
+            }
+        });
+
+        root.addCounter("extendCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(extendCount.get());
+            }
+        });
+
+        root.addCounter("invalidateCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(invalidateCount.get());
+            }
+        });
+
+        root.makePath("memoryManager").attach(mmgr.getCounters());
+
+        return root;
+
+    }
+
+}
@@ -0,0 +1,233 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.rdf.changesets.IChangeLog;
+import com.bigdata.rdf.changesets.IChangeRecord;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sail.BigdataSail.BigdataSailConnection;
+import com.bigdata.rdf.sparql.ast.eval.CustomServiceFactoryBase;
+import com.bigdata.rdf.sparql.ast.service.BigdataNativeServiceOptions;
+import com.bigdata.rdf.sparql.ast.service.IServiceOptions;
+import com.bigdata.rdf.sparql.ast.service.ServiceCall;
+import com.bigdata.rdf.sparql.ast.service.ServiceCallCreateParams;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+/**
+ * This service tracks KB updates via an {@link IChangeLog} and is responsible
+ * for the maintenance of the {@link SparqlResultCache}. The service is not
+ * invoked from queries.
+ * 
+ * @see SparqlResultCache
+ * @see DescribeServiceFactory
+ */
+public class SparqlResultCacheServiceFactory extends CustomServiceFactoryBase {
+
+    static private transient final Logger log = Logger
+            .getLogger(SparqlResultCacheServiceFactory.class);
+
+    private final IServiceOptions serviceOptions;
+
+    public SparqlResultCacheServiceFactory() {
+
+        this.serviceOptions = new BigdataNativeServiceOptions();
+
+    }
+
+    @Override
+    public IServiceOptions getServiceOptions() {
+
+        return serviceOptions;
+
+    }
+
+    @Override
+    public ServiceCall<?> create(final ServiceCallCreateParams params) {
+
+        throw new UnsupportedOperationException();
+
+    }
+
+    /**
+     * Register an {@link IChangeLog} listener that will report the commits on
+     * the connection to the {@link SparqlResultCache}.
+     */
+    @Override
+    public void startConnection(final BigdataSailConnection conn) {
+
+        final SparqlResultCache cache = SparqlResultCache.getInstance(conn
+                .getBigdataSail().getQueryEngine());
+
+        if (cache == null) {
+
+            // Cache is not enabled.
+            return;
+
+        }
+
+        final AbstractTripleStore tripleStore = conn.getTripleStore();
+
+        conn.addChangeLog(new SparqlResultCacheChangeLogListener(cache,
+                tripleStore.getIndexManager(), tripleStore.getNamespace()));
+
+    }
+
+    /**
+     * Collects the predicates of the statements that were added, removed or
+     * updated and reports them to the cache when the transaction commits.
+     */
+    static private class SparqlResultCacheChangeLogListener implements
+            IChangeLog {
+
+        /**
+         * The #of distinct predicates above which we report that any
+         * predicate may have been touched.
+         */
+        private static final int threshold = 10000;
+
+        private final SparqlResultCache cache;
+
+        private final IIndexManager indexManager;
+
+        private final String namespace;
+
+        /**
+         * The predicates that were touched (lazily instantiated). This is
+         * <code>null</code> if there have been no changes and also if there
+         * were too many distinct predicates to track.
+         */
+        private Set<IV<?, ?>> touched;
+
+        /** <code>true</code> iff there have been any changes. */
+        private boolean dirty = false;
+
+        SparqlResultCacheChangeLogListener(final SparqlResultCache cache,
+                final IIndexManager indexManager, final String namespace) {
+
+            if (cache == null)
+                throw new IllegalArgumentException();
+
+            this.cache = cache;
+
+            this.indexManager = indexManager;
+
+            this.namespace = namespace;
+
+        }
+
+        @Override
+        public void changeEvent(final IChangeRecord record) {
+
+            if (!dirty) {
+
+                // Lazy instantiation.
+                touched = new HashSet<IV<?, ?>>();
+
+                dirty = true;
+
+            }
+
+            if (touched != null) {
+
+                touched.add(record.getStatement().p());
+
+                if (touched.size() > threshold) {
+
+                    // Any predicate.
+                    touched = null;
+
+                }
+
+            }
+
+        }
+
+        @Override
+        public void transactionBegin() {
+
+        }
+
+        @Override
+        public void transactionPrepare() {
+
+        }
+
+        @Override
+        public void transactionCommited(final long commitTime) {
+
+            /*
+             * Note: The commit is reported even when there were no changes on
+             * this connection so that the cache entries for the namespace can
+             * be extended through the new commit point.
+             */
+            if (log.isDebugEnabled())
+                log.debug("namespace=" + namespace + ", commitTime="
+                        + commitTime + ", dirty=" + dirty);
+
+            cache.commit(indexManager, namespace, commitTime,
+                    dirty ? touched : new HashSet<IV<?, ?>>());
+
+            reset();
+
+        }
+
+        @Override
+        public void transactionAborted() {
+
+            reset();
+
+        }
+
+        /**
+         * See {@link IChangeLog#close()}.
+         */
+        @Override
+        public void close() {
+
+            reset();
+
+        }
+
+        /** Reset the buffer. */
+        private void reset() {
+
+            touched = null;
+
+            dirty = false;
+
+        }
+
+    } // class SparqlResultCacheChangeLogListener
+
+} // class SparqlResultCacheServiceFactory
@@ -63,6 +63,7 @@ import com.bigdata.rdf.sparql.ast.FunctionRegistry;
 import com.bigdata.rdf.sparql.ast.ISolutionSetStats;
 import com.bigdata.rdf.sparql.ast.ProjectionNode;
 import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
 import com.bigdata.rdf.sparql.ast.StaticAnalysis;
 import com.bigdata.rdf.sparql.ast.cache.CacheConnectionFactory;
 import com.bigdata.rdf.sparql.ast.cache.ICacheConnection;
@@ -227,6 +228,15 @@ public class AST2BOpContext implements IdFactory, IEvaluationContext {
      * @see QueryHints#MERGE_JOIN
      */
     public boolean mergeJoin = QueryHints.DEFAULT_MERGE_JOIN;
+
+    /**
+     * When <code>true</code>, common subexpressions (repeated subqueries and
+     * the shared prefix of UNION branches) are evaluated once into a named
+     * solution set.
+     * 
+     * @see QueryHints#COMMON_SUBEXPRESSION_ELIMINATION
+     */
+    public boolean commonSubexpressionElimination = QueryHints.DEFAULT_COMMON_SUBEXPRESSION_ELIMINATION;
     
     /**
      * The maximum parallelism for a solution set hash join when the join is
@@ -284,6 +294,16 @@ public class AST2BOpContext implements IdFactory, IEvaluationContext {
      */
     public boolean constructDistinctSPO = QueryHints.DEFAULT_CONSTRUCT_DISTINCT_SPO;
 
+    /**
+     * Set by the {@link LateMaterializationHint}. When <code>true</code>, the
+     * projection of the top-level query is never materialized within the query
+     * plan.
+     * 
+     * @see QueryHints#LATE_MATERIALIZATION
+     * @see #isMaterializeProjectionInQuery(QueryRoot)
+     */
+    public boolean lateMaterialization = QueryHints.DEFAULT_LATE_MATERIALIZATION;
+
     /**
      * When <code>true</code>, force the use of REMOTE access paths in scale-out
      * joins.
@@ -771,6 +791,27 @@ public class AST2BOpContext implements IdFactory, IEvaluationContext {
 
     }
 
+    /**
+     * Return <code>true</code> iff the projection of the top-level query
+     * should be materialized within the query plan. When this returns
+     * <code>false</code> the consumer is responsible for materializing the
+     * projected variables as it drains the solutions.
+     * <p>
+     * Note: Materialization within the query plan must occur before the SLICE
+     * operator (which interrupts the query once it is satisfied), so queries
+     * with a SLICE are always materialized by the consumer. This is also true
+     * when {@link #lateMaterialization} is requested.
+     * 
+     * @param optimizedQuery
+     *            The optimized AST for the top-level query.
+     */
+    public boolean isMaterializeProjectionInQuery(final QueryRoot optimizedQuery) {
+
+        return materializeProjectionInQuery && !lateMaterialization
+                && !optimizedQuery.hasSlice();
+
+    }
+
     /**
      * Return the effective {@link DescribeModeEnum}.
      * 
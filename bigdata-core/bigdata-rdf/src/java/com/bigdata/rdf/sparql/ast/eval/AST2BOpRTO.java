@@ -82,7 +82,9 @@ import com.bigdata.rdf.sparql.ast.ASTContainer;
 import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
 import com.bigdata.rdf.sparql.ast.JoinGroupNode;
 import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryOptimizerEnum;
 import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTStaticJoinOptimizer;
 import com.bigdata.rdf.store.AbstractTripleStore;
 import com.bigdata.striterator.Dechunkerator;
 import com.bigdata.util.NT;
@@ -408,6 +410,34 @@ public class AST2BOpRTO extends AST2BOpJoins {
         final int nedges = joinGroup.getProperty(QueryHints.RTO_NEDGES,
                 QueryHints.DEFAULT_RTO_NEDGES);
         
+        final long maxOptimizerMillis = joinGroup.getProperty(
+                QueryHints.RTO_MAX_OPTIMIZER_MILLIS,
+                QueryHints.DEFAULT_RTO_MAX_OPTIMIZER_MILLIS);
+
+        final boolean parallelSampling = joinGroup.getProperty(
+                QueryHints.RTO_PARALLEL_SAMPLING,
+                QueryHints.DEFAULT_RTO_PARALLEL_SAMPLING);
+
+        /*
+         * When the joins were ordered by the static optimizer, the RTO is only
+         * used if the observed cardinalities diverge from the estimates.
+         */
+        final double adaptiveThreshold = QueryOptimizerEnum.Runtime
+                .equals(joinGroup.getQueryOptimizer()) ? 0d : joinGroup
+                .getProperty(QueryHints.ADAPTIVE_JOIN_THRESHOLD,
+                        QueryHints.DEFAULT_ADAPTIVE_JOIN_THRESHOLD);
+
+        // The static optimizer's estimates for the join path prefixes.
+        final long[] estimates = new long[naccepted];
+        {
+            int i = 0;
+            for (IGroupMemberNode child : rtoJoinGroup) {
+                estimates[i++] = ((StatementPatternNode) child).getProperty(
+                        ASTStaticJoinOptimizer.Annotations.ESTIMATED_JOIN_CARDINALITY,
+                        -1L);
+            }
+        }
+        
         left = new JoinGraph(leftOrEmpty(left),//
                 new NV(BOp.Annotations.BOP_ID, ctx.nextId()),//
                 new NV(BOp.Annotations.EVALUATION_CONTEXT,
@@ -424,6 +454,14 @@ public class AST2BOpRTO extends AST2BOpJoins {
                 new NV(JoinGraph.Annotations.JOIN_GROUP, rtoJoinGroup),//
                 new NV(JoinGraph.Annotations.LIMIT, limit),//
                 new NV(JoinGraph.Annotations.NEDGES, nedges),//
+                new NV(JoinGraph.Annotations.MAX_OPTIMIZER_MILLIS,
+                        maxOptimizerMillis),//
+                new NV(JoinGraph.Annotations.PARALLEL_SAMPLING,
+                        parallelSampling),//
+                new NV(JoinGraph.Annotations.ADAPTIVE_THRESHOLD,
+                        adaptiveThreshold),//
+                new NV(JoinGraph.Annotations.ESTIMATED_CARDINALITIES,
+                        estimates),//
                 new NV(JoinGraph.Annotations.SAMPLE_TYPE, sampleType.name()),//
                 new NV(JoinGraph.Annotations.DONE_SET, doneSetIn),//
                 new NV(JoinGraph.Annotations.NT, new NT(ctx.getNamespace(),
@@ -462,19 +500,44 @@ public class AST2BOpRTO extends AST2BOpJoins {
     public static PipelineOp compileJoinGraph(final QueryEngine queryEngine,
             final JoinGraph joinGraph, final Path path) {
 
+        if (path == null)
+            throw new IllegalArgumentException();
+
+        return compileJoinGraph(queryEngine, joinGraph, path.getPredicates());
+
+    }
+
+    /**
+     * Compile a join graph into a query plan which evaluates the vertices in
+     * the given order.
+     * 
+     * @param queryEngine
+     *            The {@link QueryEngine} on which the returned query plan may be
+     *            executed.
+     * @param joinGraph
+     *            The operator for the join graph.
+     * @param predicates
+     *            The vertices of the join graph in the desired evaluation
+     *            order.
+     * 
+     * @return The query plan to fully execute that join graph.
+     * 
+     * @see #compileJoinGraph(QueryEngine, JoinGraph, Path)
+     */
+    public static PipelineOp compileJoinGraph(final QueryEngine queryEngine,
+            final JoinGraph joinGraph, final IPredicate<?>[] predicates) {
+
         if (queryEngine == null)
             throw new IllegalArgumentException();
         
         if (joinGraph == null)
             throw new IllegalArgumentException();
 
-        if (path == null)
+        if (predicates == null)
             throw new IllegalArgumentException();
 
 //        final IVariable<?>[] selected = joinGraph.getSelected();
 
-        final IPredicate<?>[] predicates = path.getPredicates();
-
         final IConstraint[] constraints = joinGraph.getConstraints();
 
         final Set<IVariable<?>> doneSet = new LinkedHashSet<IVariable<?>>(
@@ -160,9 +160,11 @@ import com.bigdata.rdf.sparql.ast.UnionNode;
 import com.bigdata.rdf.sparql.ast.ValueExpressionNode;
 import com.bigdata.rdf.sparql.ast.VarNode;
 import com.bigdata.rdf.sparql.ast.ZeroLengthPathNode;
+import com.bigdata.rdf.sparql.ast.cache.QueryPlanCache;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTExistsOptimizer;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTJoinOrderByTypeOptimizer;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTNamedSubqueryOptimizer;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTQueryHintOptimizer;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTSetValueExpressionsOptimizer;
 import com.bigdata.rdf.sparql.ast.service.MockIVReturningServiceCall;
 import com.bigdata.rdf.sparql.ast.service.ServiceCall;
@@ -264,10 +266,44 @@ public class AST2BOpUtility extends AST2BOpRTO {
          */
         ctx.setGloballyScopedVariables(ctx.getSolutionSetStats().getAlwaysBound());
         
-        // Run the AST query rewrites / query optimizers.
-        final QueryNodeWithBindingSet optRes = 
-           ctx.optimizers.optimize(ctx, 
-                 new QueryNodeWithBindingSet(originalQuery, globallyScopedBindings));
+        /*
+         * Reuse the optimized AST from the query plan cache if possible.
+         * Otherwise, run the AST query rewrites / query optimizers.
+         */
+        final QueryPlanCache planCache = ctx.queryEngine == null ? null
+                : QueryPlanCache.getExistingInstance(ctx.queryEngine);
+
+        QueryNodeWithBindingSet optRes = planCache == null ? null : planCache
+                .getOptimizedQuery(ctx, globallyScopedBindings);
+
+        if (optRes != null) {
+
+            /*
+             * Replay the side effects of the query hints and the static
+             * bindings on the evaluation context.
+             */
+            new ASTQueryHintOptimizer().optimize(ctx,
+                    new QueryNodeWithBindingSet(BOpUtility
+                            .deepCopy(originalQuery), globallyScopedBindings));
+
+            ctx.setSolutionSetStats(SolutionSetStatserator.get(optRes
+                    .getBindingSets()));
+
+        } else {
+
+            final long beginOptimize = System.nanoTime();
+
+            optRes = ctx.optimizers.optimize(ctx, new QueryNodeWithBindingSet(
+                    originalQuery, globallyScopedBindings));
+
+            if (planCache != null) {
+
+                planCache.putOptimizedQuery(ctx, globallyScopedBindings,
+                        optRes, System.nanoTime() - beginOptimize);
+
+            }
+
+        }
         
         // Set the optimized AST model on the container.
         final QueryRoot optimizedQuery = (QueryRoot)optRes.getQueryNode();
@@ -280,8 +316,8 @@ public class AST2BOpUtility extends AST2BOpRTO {
         final LinkedHashSet<IVariable<?>> doneSet = new LinkedHashSet<IVariable<?>>();
 
         // true IFF the query plan should handle materialize the projection.
-        final boolean materializeProjection = ctx.materializeProjectionInQuery
-                && !optimizedQuery.hasSlice();
+        final boolean materializeProjection = ctx
+                .isMaterializeProjectionInQuery(optimizedQuery);
 
         // The executable query plan.
         PipelineOp left = convertQueryBaseWithScopedVars(null/* left */,
@@ -2940,6 +2976,7 @@ public class AST2BOpUtility extends AST2BOpRTO {
                  new NV(ArbitraryLengthPathOp.Annotations.UPPER_BOUND, alpNode.upperBound()),
                      new NV(ArbitraryLengthPathOp.Annotations.PROJECT_IN_VARS, projectInVarsArr),
                      new NV(ArbitraryLengthPathOp.Annotations.DROP_VARS, dropVars),
+                     new NV(ArbitraryLengthPathOp.Annotations.NATIVE_VISITED_SET, ctx.nativeDistinctSolutions),
                  new NV(Predicate.Annotations.BOP_ID, ctx.nextId()),//
                  new NV(BOp.Annotations.EVALUATION_CONTEXT,
                         BOpEvaluationContext.CONTROLLER)//
@@ -2971,6 +3008,7 @@ public class AST2BOpUtility extends AST2BOpRTO {
                  new NV(ArbitraryLengthPathOp.Annotations.UPPER_BOUND, alpNode.upperBound()),
                      new NV(ArbitraryLengthPathOp.Annotations.PROJECT_IN_VARS, projectInVarsArr),
                      new NV(ArbitraryLengthPathOp.Annotations.DROP_VARS, dropVars),
+                     new NV(ArbitraryLengthPathOp.Annotations.NATIVE_VISITED_SET, ctx.nativeDistinctSolutions),
                  new NV(Predicate.Annotations.BOP_ID, ctx.nextId()),//
                  new NV(BOp.Annotations.EVALUATION_CONTEXT,
                         BOpEvaluationContext.CONTROLLER)//
@@ -3204,7 +3242,9 @@ public class AST2BOpUtility extends AST2BOpRTO {
             
         }
 
-        if (QueryOptimizerEnum.Runtime.equals(joinGroup.getQueryOptimizer())) {
+        if (QueryOptimizerEnum.Runtime.equals(joinGroup.getQueryOptimizer())
+                || joinGroup.getProperty(QueryHints.ADAPTIVE_JOIN_THRESHOLD,
+                        QueryHints.DEFAULT_ADAPTIVE_JOIN_THRESHOLD) > 0d) {
 
             /*
              * Inspect the remainder of the join group. If we can isolate a join
@@ -3212,6 +3252,10 @@ public class AST2BOpUtility extends AST2BOpRTO {
              * JoinGroup. Since the joins have already been ordered by the
              * static optimizer, we can accept them in sequence along with any
              * attachable filters.
+             * 
+             * Note: For the adaptive case, the JoinGraph starts with the order
+             * chosen by the static optimizer and only runs the RTO if the
+             * observed cardinalities diverge from the estimates.
              */
             
             left = convertRTOJoinGraph(left, joinGroup, doneSet, ctx, start);
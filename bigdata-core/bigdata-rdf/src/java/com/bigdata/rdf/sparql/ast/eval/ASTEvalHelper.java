@@ -84,6 +84,7 @@ import com.bigdata.rdf.sparql.ast.UpdateRoot;
 import com.bigdata.rdf.sparql.ast.cache.DescribeBindingsCollector;
 import com.bigdata.rdf.sparql.ast.cache.DescribeCacheUpdater;
 import com.bigdata.rdf.sparql.ast.cache.IDescribeCache;
+import com.bigdata.rdf.sparql.ast.cache.SparqlResultCache;
 import com.bigdata.rdf.sparql.ast.eval.ASTDeferredIVResolution.DeferredResolutionResult;
 import com.bigdata.rdf.store.AbstractTripleStore;
 import com.bigdata.rdf.store.BigdataBindingSetResolverator;
@@ -159,8 +160,29 @@ public class ASTEvalHelper {
         final QueryRoot optimizedQuery = astContainer.getOptimizedAST();
 
         // Note: We do not need to materialize anything for ASK.
-        final boolean materializeProjectionInQuery = context.materializeProjectionInQuery
-                && !optimizedQuery.hasSlice();
+        final boolean materializeProjectionInQuery = context
+                .isMaterializeProjectionInQuery(optimizedQuery);
+
+        // The key for the SPARQL result cache (iff enabled and cacheable).
+        final SparqlResultCache.CacheKey cacheKey = getResultCacheKey(context,
+                globallyScopedBS);
+
+        if (cacheKey != null) {
+
+            final ICloseableIterator<IBindingSet> cached = cacheKey.getCache()
+                    .get(cacheKey);
+
+            if (cached != null) {
+
+                try {
+                    return cached.hasNext();
+                } finally {
+                    cached.close();
+                }
+
+            }
+
+        }
 
         CloseableIteration<BindingSet, QueryEvaluationException> itr = null;
         try {
@@ -170,7 +192,16 @@ public class ASTEvalHelper {
                     materializeProjectionInQuery,
                     new IVariable[0]// required
                     );
-            return itr.hasNext();
+            final boolean ret = itr.hasNext();
+            if (cacheKey != null) {
+                // Cache the outcome as zero or one empty solution.
+                cacheKey.getCache().put(
+                        cacheKey,
+                        context,
+                        ret ? new IBindingSet[] { new ListBindingSet() }
+                                : new IBindingSet[0]);
+            }
+            return ret;
         } finally {
             if (itr != null) {
                 /**
@@ -220,12 +251,13 @@ public class ASTEvalHelper {
         for (IVariable<?> var : projected)
             projectedSet.add(var.getName());
 
-        final boolean materializeProjectionInQuery = context.materializeProjectionInQuery
-                && !optimizedQuery.hasSlice();
+        final boolean materializeProjectionInQuery = context
+                .isMaterializeProjectionInQuery(optimizedQuery);
 
         final CloseableIteration<BindingSet, QueryEvaluationException> itr = ASTEvalHelper
                 .evaluateQuery(astContainer, context, 
-                        materializeProjectionInQuery, projected);
+                        materializeProjectionInQuery, projected,
+                        getResultCacheKey(context, globallyScopedBS));
 
         TupleQueryResult r = null;
         try {
@@ -290,8 +322,8 @@ public class ASTEvalHelper {
         final QueryRoot optimizedQuery = astContainer.getOptimizedAST();
         
         // true iff we can materialize the projection inside of the query plan.
-        final boolean materializeProjectionInQuery = materialize && context.materializeProjectionInQuery
-                && !optimizedQuery.hasSlice();
+        final boolean materializeProjectionInQuery = materialize
+                && context.isMaterializeProjectionInQuery(optimizedQuery);
 
         final List<String> projectedSet;
 
@@ -380,6 +412,84 @@ public class ASTEvalHelper {
 
     }
     
+    /**
+     * Evaluate a SELECT query for a bigdata aware consumer which can use inline
+     * {@link IV}s directly. The projected variables which are bound to
+     * non-inline {@link IV}s are materialized in chunks (their {@link IVCache}
+     * association is set) outside of the query plan, but inline {@link IV}s
+     * are not materialized (unless materialization is required by the query
+     * itself, for example for a FILTER).
+     * <p>
+     * The projected variables may be obtained from the optimized AST once this
+     * method returns.
+     * 
+     * @param store
+     *            The {@link AbstractTripleStore} having the data.
+     * @param astContainer
+     *            The {@link ASTContainer}.
+     * @param globallyScopedBS
+     *            The initial solution to kick things off.
+     * @param dataset
+     *            The {@link Dataset} (optional).
+     * 
+     * @return An object from which the solutions may be drained.
+     * 
+     * @throws QueryEvaluationException
+     * 
+     * @see com.bigdata.rdf.rio.columnar.ColumnarResultsWriter
+     */
+    static public ICloseableIterator<IBindingSet[]> evaluateTupleQueryWithInlineIVs(
+            final AbstractTripleStore store,
+            final ASTContainer astContainer,
+            final QueryBindingSet globallyScopedBS,
+            final Dataset dataset) throws QueryEvaluationException {
+
+        final AST2BOpContext context = new AST2BOpContext(astContainer, store);
+
+        // Do not materialize the projection inside of the query plan.
+        context.lateMaterialization = true;
+
+        optimizeQuery(astContainer, context, globallyScopedBS, dataset);
+
+        // Get the projection for the query.
+        final IVariable<?>[] projected = astContainer.getOptimizedAST()
+                .getProjection().getProjectionVars();
+
+        doSparqlLogging(context);
+
+        final PipelineOp queryPlan = astContainer.getQueryPlan();
+
+        IRunningQuery runningQuery = null;
+        try {
+
+            // Submit query for evaluation.
+            runningQuery = context.queryEngine.eval(queryPlan,
+                    astContainer.getOptimizedASTBindingSets(),
+                    context.getQueryAttributes());
+            runningQuery.setStaticAnalysisStats(context.getStaticAnalysisStats());
+
+            // The iterator draining the query solutions.
+            final ICloseableIterator<IBindingSet[]> it1 = runningQuery
+                    .iterator();
+
+            if (projected.length == 0)
+                return it1;
+
+            // Materialize the non-inline IVs only.
+            return new ChunkedMaterializationIterator(projected,
+                    context.db.getLexiconRelation(),
+                    false/* materializeInlineIVs */, it1);
+
+        } catch (Throwable t) {
+            if (runningQuery != null) {
+                // ensure query is halted.
+                runningQuery.cancel(true/* mayInterruptIfRunning */);
+            }
+            throw new QueryEvaluationException(t);
+        }
+
+    }
+
     /**
      * Optimize a SELECT query.
      * 
@@ -498,8 +608,8 @@ public class ASTEvalHelper {
         final QueryRoot optimizedQuery = 
                 optimizeQuery(astContainer, context, globallyScopedBS, dataset);
         
-        final boolean materializeProjectionInQuery = context.materializeProjectionInQuery
-                && !optimizedQuery.hasSlice();
+        final boolean materializeProjectionInQuery = context
+                .isMaterializeProjectionInQuery(optimizedQuery);
 
         // The effective DescribeMode.
 //      final DescribeModeEnum describeMode = optimizedQuery.getProjection()
@@ -521,6 +631,8 @@ public class ASTEvalHelper {
         final CloseableIteration<BindingSet, QueryEvaluationException> solutions = ASTEvalHelper
                 .evaluateQuery(astContainer, context, materializeProjectionInQuery//
                         , optimizedQuery.getProjection().getProjectionVars()//
+                        , isDescribe ? null : getResultCacheKey(context,
+                                globallyScopedBS)//
                 );
 
         try {
@@ -739,6 +851,45 @@ public class ASTEvalHelper {
             final boolean materializeProjectionInQuery,
             final IVariable<?>[] required) throws QueryEvaluationException {
 
+        return evaluateQuery(astContainer, ctx, materializeProjectionInQuery,
+                required, null/* cacheKey */);
+
+    }
+
+    /**
+     * Evaluate a query plan, reading the solutions from the
+     * {@link SparqlResultCache} when possible.
+     * 
+     * @param cacheKey
+     *            The key for the solutions in the {@link SparqlResultCache}
+     *            (optional). When given, the materialized solutions are read
+     *            from the cache if there is a valid entry and are otherwise
+     *            entered into the cache once the query is exhausted.
+     * 
+     * @see #evaluateQuery(ASTContainer, AST2BOpContext, boolean, IVariable[])
+     */
+    private static CloseableIteration<BindingSet, QueryEvaluationException> evaluateQuery(
+            final ASTContainer astContainer,
+            final AST2BOpContext ctx,            
+            final boolean materializeProjectionInQuery,
+            final IVariable<?>[] required,
+            final SparqlResultCache.CacheKey cacheKey)
+            throws QueryEvaluationException {
+
+        if (cacheKey != null) {
+
+            final ICloseableIterator<IBindingSet> cached = cacheKey.getCache()
+                    .get(cacheKey);
+
+            if (cached != null) {
+
+                // Note: The projection was materialized before it was cached.
+                return new Bigdata2Sesame2BindingSetIterator(cached);
+
+            }
+
+        }
+
         doSparqlLogging(ctx);
         
         final PipelineOp queryPlan = astContainer.getQueryPlan();
@@ -759,8 +910,8 @@ public class ASTEvalHelper {
              * Wrap up the native bigdata query solution iterator as Sesame
              * compatible iteration with materialized RDF Values.
              */
-            return iterator(runningQuery, ctx.db,
-                    materializeProjectionInQuery, required);
+            return iterator(runningQuery, ctx,
+                    materializeProjectionInQuery, required, cacheKey);
 
         } catch (Throwable t) {
             if (runningQuery != null) {
@@ -819,23 +970,30 @@ public class ASTEvalHelper {
      * 
      * @param runningQuery
      *            The {@link IRunningQuery}.
-     * @param db
-     *            The view of the {@link AbstractTripleStore} against which the
-     *            query is running.
+     * @param ctx
+     *            The evaluation context (this provides the view of the
+     *            {@link AbstractTripleStore} against which the query is
+     *            running).
      * @param materializeProjectionInQuery
      *            When <code>true</code>, the projection was materialized within
      *            query plan. When <code>false</code>, this method will take
      *            responsibility for that materialization step.
      * @param required
      *            The variables which must be materialized (optional).
+     * @param cacheKey
+     *            The key under which the materialized solutions will be
+     *            entered into the {@link SparqlResultCache} (optional).
      * 
      * @return A Sesame {@link CloseableIteration} which will drain
      *         {@link BindingSet}s of materialized RDF {@link Value}s.
      */
     private static CloseableIteration<BindingSet, QueryEvaluationException> iterator(
-            final IRunningQuery runningQuery, final AbstractTripleStore db,
+            final IRunningQuery runningQuery, final AST2BOpContext ctx,
             final boolean materializeProjectionInQuery,
-            final IVariable<?>[] required) {
+            final IVariable<?>[] required,
+            final SparqlResultCache.CacheKey cacheKey) {
+
+        final AbstractTripleStore db = ctx.db;
     
         /*
          * FIXME We should not dechunk just to rechunk here. This is not very
@@ -888,7 +1046,8 @@ public class ASTEvalHelper {
              */
             
             // Convert IVs in IBindingSets to Sesame BindingSets with Values.
-            it3 = new Bigdata2Sesame2BindingSetIterator(it2);
+            it3 = new Bigdata2Sesame2BindingSetIterator(cache(ctx, cacheKey,
+                    it2));
 
         } else {
         
@@ -950,13 +1109,13 @@ public class ASTEvalHelper {
             final int blobsChunkSize = chunkCapacity;
             
             // Convert bigdata binding sets to Sesame binding sets.
-            it3 = new Bigdata2Sesame2BindingSetIterator(
+            it3 = new Bigdata2Sesame2BindingSetIterator(cache(ctx, cacheKey,
                     // Materialize IVs as RDF Values.
                     new BigdataBindingSetResolverator(db, it2,
                             runningQuery.getQueryId(), required, chunkCapacity,
                             chunkOfChunksCapacity, chunkTimeout,
                             termsChunkSize, blobsChunkSize).start(db
-                            .getExecutorService()));
+                            .getExecutorService())));
 
         }
      
@@ -964,6 +1123,50 @@ public class ASTEvalHelper {
         
     }
 
+    /**
+     * Return the key for the query in the {@link SparqlResultCache}.
+     * 
+     * @param ctx
+     *            The evaluation context (the query must have been optimized).
+     * @param globallyScopedBS
+     *            The exogenous bindings (optional).
+     * 
+     * @return The key -or- <code>null</code> if the cache is disabled or the
+     *         query can not be cached.
+     */
+    private static SparqlResultCache.CacheKey getResultCacheKey(
+            final AST2BOpContext ctx, final BindingSet globallyScopedBS) {
+
+        final SparqlResultCache resultCache = SparqlResultCache
+                .getInstance(ctx.queryEngine);
+
+        if (resultCache == null) {
+
+            // Cache is not enabled.
+            return null;
+
+        }
+
+        return resultCache.getKey(ctx, globallyScopedBS);
+
+    }
+
+    /**
+     * Wrap the materialized solutions such that they will be entered into the
+     * {@link SparqlResultCache} iff a key was given.
+     */
+    private static ICloseableIterator<IBindingSet> cache(
+            final AST2BOpContext ctx,
+            final SparqlResultCache.CacheKey cacheKey,
+            final ICloseableIterator<IBindingSet> src) {
+
+        if (cacheKey == null)
+            return src;
+
+        return cacheKey.getCache().cache(cacheKey, ctx, src);
+
+    }
+
     /**
      * Dechunkify the running query and monitor the Sesame iterator.
      * 
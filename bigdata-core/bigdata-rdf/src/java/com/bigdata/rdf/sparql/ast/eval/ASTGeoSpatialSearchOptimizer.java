@@ -58,8 +58,10 @@ public class ASTGeoSpatialSearchOptimizer extends ASTSearchOptimizerBase {
         set.add(GeoSpatial.CONTEXT);
         set.add(GeoSpatial.SPATIAL_CIRCLE_CENTER);
         set.add(GeoSpatial.SPATIAL_CIRCLE_RADIUS);
+        set.add(GeoSpatial.NUM_NEIGHBORS);
         set.add(GeoSpatial.SPATIAL_RECTANGLE_SOUTH_WEST);
         set.add(GeoSpatial.SPATIAL_RECTANGLE_NORTH_EAST);
+        set.add(GeoSpatial.SPATIAL_POLYGON);
         set.add(GeoSpatial.SPATIAL_UNIT);        
         set.add(GeoSpatial.DISTANCE_VALUE);
         set.add(GeoSpatial.TIME_START);
@@ -68,6 +70,9 @@ public class ASTGeoSpatialSearchOptimizer extends ASTSearchOptimizerBase {
         set.add(GeoSpatial.CUSTOM_FIELDS);
         set.add(GeoSpatial.CUSTOM_FIELDS_LOWER_BOUNDS);
         set.add(GeoSpatial.CUSTOM_FIELDS_UPPER_BOUNDS);        
+        set.add(GeoSpatial.GRID_CELL_SIZE);
+        set.add(GeoSpatial.TIME_BUCKET_SIZE);
+        set.add(GeoSpatial.AGGREGATE_FIELD);
         set.add(GeoSpatial.LOCATION_VALUE);        
         set.add(GeoSpatial.TIME_VALUE);
         set.add(GeoSpatial.LITERAL_VALUE);
@@ -76,6 +81,9 @@ public class ASTGeoSpatialSearchOptimizer extends ASTSearchOptimizerBase {
         set.add(GeoSpatial.COORD_SYSTEM_VALUE);
         set.add(GeoSpatial.CUSTOM_FIELDS_VALUES);
         set.add(GeoSpatial.LOCATION_AND_TIME_VALUE);
+        set.add(GeoSpatial.COUNT_VALUE);
+        set.add(GeoSpatial.MIN_VALUE);
+        set.add(GeoSpatial.MAX_VALUE);
         
         searchUris = Collections.unmodifiableSet(set);
     }
@@ -75,6 +75,9 @@ public class ASTSearchOptimizer extends ASTSearchOptimizerBase {
         set.add(BDS.MIN_RELEVANCE);
         set.add(BDS.MATCH_ALL_TERMS);
         set.add(BDS.MATCH_EXACT);
+        set.add(BDS.MATCH_PHRASE);
+        set.add(BDS.MATCH_NEAR);
+        set.add(BDS.SCORING_MODEL);
         set.add(BDS.SUBJECT_SEARCH);
         set.add(BDS.SEARCH_TIMEOUT);
         set.add(BDS.MATCH_REGEX);
@@ -481,8 +481,8 @@ public class CBD {
             log.debug("OptimizedAST: " + optimizedQuery);
         }
 
-        final boolean materializeProjectionInQuery = context.materializeProjectionInQuery
-                && !optimizedQuery.hasSlice();
+        final boolean materializeProjectionInQuery = context
+                .isMaterializeProjectionInQuery(optimizedQuery);
 
         // Solutions to the WHERE clause (as projected).
         final CloseableIteration<BindingSet, QueryEvaluationException> solutions = ASTEvalHelper
@@ -28,8 +28,12 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 package com.bigdata.rdf.sparql.ast.eval;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -37,6 +41,7 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -76,6 +81,7 @@ import com.bigdata.rdf.internal.gis.ICoordinate.UNITS;
 import com.bigdata.rdf.internal.impl.TermId;
 import com.bigdata.rdf.internal.impl.extensions.GeoSpatialLiteralExtension;
 import com.bigdata.rdf.internal.impl.literal.LiteralExtensionIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
 import com.bigdata.rdf.model.BigdataURI;
 import com.bigdata.rdf.model.BigdataValue;
 import com.bigdata.rdf.model.BigdataValueFactory;
@@ -111,10 +117,17 @@ import com.bigdata.service.geospatial.GeoSpatialConfig;
 import com.bigdata.service.geospatial.GeoSpatialCounters;
 import com.bigdata.service.geospatial.GeoSpatialDatatypeConfiguration;
 import com.bigdata.service.geospatial.GeoSpatialDatatypeFieldConfiguration;
+import com.bigdata.service.geospatial.GeoSpatialPolygon;
 import com.bigdata.service.geospatial.GeoSpatialSearchException;
+import com.bigdata.service.geospatial.GeoSpatialSearchRings;
 import com.bigdata.service.geospatial.IGeoSpatialLiteralSerializer;
 import com.bigdata.service.geospatial.IGeoSpatialQuery;
+import com.bigdata.service.geospatial.IGeoSpatialQuery.Aggregation;
 import com.bigdata.service.geospatial.ZOrderIndexBigMinAdvancer;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.Classification;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.IRegionClassifier;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.ZOrderRange;
 import com.bigdata.service.geospatial.impl.GeoSpatialQuery;
 import com.bigdata.service.geospatial.impl.GeoSpatialUtility.PointLatLon;
 import com.bigdata.util.concurrent.Haltable;
@@ -138,6 +151,31 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
    final protected static boolean INFO = log.isInfoEnabled();
    final protected static boolean DEBUG = log.isDebugEnabled();
    
+   /**
+    * The maximum number of coverings retained in {@link #polygonCoverings}.
+    */
+   private static final int POLYGON_COVERING_CACHE_CAPACITY = 1000;
+   
+   /**
+    * The zOrder coverings computed for {@link GeoFunction#IN_POLYGON} queries,
+    * shared across queries such that recurring (e.g., named) polygons are
+    * decomposed only once. The key identifies the namespace, the datatype,
+    * the polygon, the search range, and the cap on the number of ranges.
+    * Access must be synchronized on the map.
+    */
+   private static final Map<String, List<ZOrderRange>> polygonCoverings =
+      new LinkedHashMap<String, List<ZOrderRange>>(16, .75f, true/* accessOrder */) {
+      
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(
+            final Map.Entry<String, List<ZOrderRange>> eldest) {
+            
+            return size() > POLYGON_COVERING_CACHE_CAPACITY;
+         }
+      };
+   
    /*
     * Note: This could extend the base class to allow for search service
     * configuration options.
@@ -222,6 +260,10 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
          serviceNode.getQueryHintAsInteger(
             Annotations.NUM_TASKS_PER_THREAD, 
             Annotations.DEFAULT_NUM_TASKS_PER_THREAD);
+      final Integer maxZOrderRanges = 
+         serviceNode.getQueryHintAsInteger(
+            Annotations.MAX_ZORDER_RANGES, 
+            Annotations.DEFAULT_MAX_ZORDER_RANGES);
       final Integer threadLocalBufferCapacity = 
          serviceNode.getQueryHintAsInteger(
             BufferAnnotations.CHUNK_CAPACITY, 
@@ -234,6 +276,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
       if (DEBUG) {
          log.debug("maxParallel=" + maxParallel);
          log.debug("numTasksPerThread=" + numTasksPerThread);
+         log.debug("maxZOrderRanges=" + maxZOrderRanges);
          log.debug("threadLocalBufferCapacity=" + threadLocalBufferCapacity);
          log.debug("globalBufferChunkOfChunksCapacity=" + globalBufferChunkOfChunksCapacity);
       }
@@ -250,7 +293,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
       return new GeoSpatialServiceCall(searchVar, statementPatterns,
             getServiceOptions(), dflts, store, maxParallel, 
             numTasksPerThread*maxParallel /* max num tasks to generate */, 
-            minDatapointsPerTask, threadLocalBufferCapacity, 
+            minDatapointsPerTask, maxZOrderRanges, threadLocalBufferCapacity, 
             globalBufferChunkOfChunksCapacity, createParams.getStats());
 
    }
@@ -369,7 +412,9 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                   || uri.equals(GeoSpatial.LAT_VALUE) || uri.equals(GeoSpatial.LON_VALUE)
                   || uri.equals(GeoSpatial.LITERAL_VALUE) || uri.equals(GeoSpatial.COORD_SYSTEM_VALUE)
                   || uri.equals(GeoSpatial.CUSTOM_FIELDS_VALUES)
-                  || uri.equals(GeoSpatial.LOCATION_AND_TIME_VALUE)) {
+                  || uri.equals(GeoSpatial.LOCATION_AND_TIME_VALUE)
+                  || uri.equals(GeoSpatial.COUNT_VALUE) || uri.equals(GeoSpatial.MIN_VALUE)
+                  || uri.equals(GeoSpatial.MAX_VALUE)) {
             
             assertObjectIsVariable(sp);
             
@@ -460,6 +505,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
       
       private final int numTasks;
       private final int minDatapointsPerTask;      
+      private final int maxZOrderRanges;
       private final int threadLocalBufferCapacity;
       private final int globalBufferChunkOfChunksCapacity;
       
@@ -478,7 +524,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
             final IServiceOptions serviceOptions,
             final GeoSpatialDefaults dflts, final AbstractTripleStore kb,
             final int maxParallel, final int numTasks,
-            final int minDatapointsPerTask,
+            final int minDatapointsPerTask, final int maxZOrderRanges,
             final int threadLocalBufferCapacity, 
             final int globalBufferChunkOfChunksCapacity,
             final BaseJoinStats stats) {
@@ -512,6 +558,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
             
          this.numTasks = numTasks;
          this.minDatapointsPerTask = minDatapointsPerTask;         
+         this.maxZOrderRanges = maxZOrderRanges;
          this.threadLocalBufferCapacity = threadLocalBufferCapacity;
          this.globalBufferChunkOfChunksCapacity = globalBufferChunkOfChunksCapacity;
          
@@ -574,7 +621,8 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
          final FutureTask<Void> ft = 
             new FutureTask<Void>(new GeoSpatialServiceCallTask(
                buffer, query.normalize(), kb, vars, context, globals, vf, geoSpatialCounters, 
-               executor, numTasks, minDatapointsPerTask, threadLocalBufferCapacity, stats));
+               executor, numTasks, minDatapointsPerTask, maxZOrderRanges, 
+               threadLocalBufferCapacity, stats));
          
          buffer.setFuture(ft); // set the future on the buffer
          kb.getIndexManager().getExecutorService().submit(ft);
@@ -615,6 +663,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
          
          private final int numTasks;
          private final int minDatapointsPerTask;
+         private final int maxZOrderRanges;
          private final int threadLocalBufferCapacity;
          
          private final BaseJoinStats stats;
@@ -624,7 +673,13 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
           * in parallel if an executor with parallel execution configuration turned
           * on is provided. Otherwise, the tasks are processed one by one
           */
-         final private List<GeoSpatialServiceCallSubRangeTask> tasks;
+         final private List<Callable<Void>> tasks;
+         
+         /**
+          * The aggregator collecting the results of the subtasks for aggregating
+          * queries, see {@link IGeoSpatialQuery#getAggregation()}; null otherwise.
+          */
+         final private GeoSpatialServiceCallAggregator aggregator;
          
          /**
           * Constructor creating a {@link GeoSpatialServiceCallTask}. Expects
@@ -638,7 +693,8 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
             final GlobalAnnotations globals, final BigdataValueFactory vf,
             final GeoSpatialCounters geoSpatialCounters, final Executor executor,
             final int numTasks, final int minDatapointsPerTask, 
-            final int threadLocalBufferCapacity, final BaseJoinStats stats) {
+            final int maxZOrderRanges, final int threadLocalBufferCapacity, 
+            final BaseJoinStats stats) {
             
             this.buffer = buffer;
             this.queries = queries;
@@ -653,12 +709,19 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
 
             this.numTasks = numTasks;
             this.minDatapointsPerTask = minDatapointsPerTask;
+            this.maxZOrderRanges = maxZOrderRanges;
             this.threadLocalBufferCapacity = threadLocalBufferCapacity;
             
             this.stats = stats;
             this.geoSpatialConfig = 
                 kb.getLexiconRelation().getLexiconConfiguration().getGeoSpatialConfig();
             
+            // the normalized queries derive from the same query, so they share the aggregation
+            final IGeoSpatialQuery firstQuery = queries.isEmpty() ? null : queries.get(0);
+            aggregator = firstQuery==null || firstQuery.getAggregation()==null ?
+               null : new GeoSpatialServiceCallAggregator(firstQuery, 
+                  new GeoSpatialLiteralExtension<BigdataValue>(kb.getLexiconRelation(), firstQuery.getDatatypeConfig()), vf);
+            
             tasks = getSubTasks();
             
             // set stats
@@ -670,12 +733,12 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
          
          /**
           * Decomposes the context path into subtasks according to the configuration.
-          * Each subtasks is a range scan backed by the buffer.
+          * Each subtasks is a range scan backed by the buffer, except for nearest
+          * neighbor queries, which are answered by a single subtask each.
           */
-         protected List<GeoSpatialServiceCallSubRangeTask> getSubTasks() {
+         protected List<Callable<Void>> getSubTasks() {
                           
-            final List<GeoSpatialServiceCallSubRangeTask> subTasks =
-               new LinkedList<GeoSpatialServiceCallSubRangeTask>();
+            final List<Callable<Void>> subTasks = new LinkedList<Callable<Void>>();
 
             for (IGeoSpatialQuery query : queries) {
 
@@ -684,6 +747,16 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                     throw new IllegalArgumentException("Expected list of normalized query as input.");
                 }
                 
+                if (query.getSearchFunction()==GeoFunction.NEAREST) {
+                   
+                   final Callable<Void> subTask = getNearestNeighborTask(query);
+                   
+                   if (subTask!=null) { // if satisfiable
+                      subTasks.add(subTask);
+                   }
+                   continue;
+                }
+                
                 /**
                  * Get the bounding boxes for the subsequent scan
                  */
@@ -740,20 +813,53 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                 final GeoSpatialSearchRange searchRange =
                     new GeoSpatialSearchRange(datatypeConfig, litExt, southWestComponents, northEastComponents);
                 final GeoSpatialSearchRangePartitioner partitioner = new GeoSpatialSearchRangePartitioner(searchRange);
-                for (GeoSpatialSearchRange partition : partitioner.partition(numTasks, totalPointsInRange, minDatapointsPerTask)) {
+                final List<GeoSpatialSearchRange> partitions = 
+                   query.getSearchFunction()==GeoFunction.IN_POLYGON ?
+                   Collections.singletonList(searchRange) : // polygon coverings are computed (and cached) as a whole
+                   partitioner.partition(numTasks, totalPointsInRange, minDatapointsPerTask);
+                
+                // the cap on the number of zOrder ranges is shared among the partitions
+                final int maxZOrderRangesPerPartition = Math.max(1, maxZOrderRanges / partitions.size());
+                
+                for (GeoSpatialSearchRange partition : partitions) {
                    
                    final Object[] lowerBorder = partition.getLowerBorderComponents();
                    final Object[] upperBorder = partition.getUpperBorderComponents();
                    
-
-                   // set up a subtask for the partition
-                   final GeoSpatialServiceCallSubRangeTask subTask = 
-                      getSubTask(query, lowerBorder, upperBorder,  keyOrder, subjectPos, objectPos, stats);
+                   // decompose the partition into tight zOrder ranges, each scanned by its own subtask
+                   final List<ZOrderRange> ranges;
+                   if (query.getSearchFunction()==GeoFunction.IN_POLYGON) {
+                      
+                      ranges = getPolygonCovering(
+                         query, litExt, lowerBorder, upperBorder, maxZOrderRangesPerPartition);
+                      
+                   } else {
+                      
+                      final ZOrderRangeDecomposer decomposer = new ZOrderRangeDecomposer(
+                         litExt.unpadLeadingZero(litExt.toZOrderByteArray(lowerBorder)),
+                         litExt.unpadLeadingZero(litExt.toZOrderByteArray(upperBorder)),
+                         litExt.getNumDimensions());
+                      ranges = decomposer.decompose(maxZOrderRangesPerPartition);
+                   }
                    
-                   if (subTask!=null) { // if satisfiable
-                      subTasks.add(subTask);
+                   int numExactRanges = 0;
+                   for (ZOrderRange range : ranges) {
+                      
+                      if (range.isExact()) {
+                         numExactRanges++;
+                      }
+                      
+                      // set up a subtask for the range
+                      final Callable<Void> subTask = 
+                         getSubTask(query, lowerBorder, upperBorder, range, keyOrder, subjectPos, objectPos, stats);
+                      
+                      if (subTask!=null) { // if satisfiable
+                         subTasks.add(subTask);
+                      }
                    }
                    
+                   geoSpatialCounters.registerZOrderRanges(ranges.size(), numExactRanges);
+                   
                    // note: this is old debugging code, which is broken
                    //       -> might be fixed once we need debugging here...
 //                   if (log.isDebugEnabled()) {
@@ -776,6 +882,45 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
             return subTasks;
          }
 
+         /**
+          * Returns the zOrder ranges covering the polygon of a {@link GeoFunction#IN_POLYGON}
+          * query within the given borders. Exact ranges lie fully inside the polygon, so
+          * their values need not be tested against the polygon. Coverings are cached
+          * across queries, see {@link GeoSpatialServiceFactory#polygonCoverings}.
+          */
+         protected List<ZOrderRange> getPolygonCovering(
+            final IGeoSpatialQuery query, final GeoSpatialLiteralExtension<BigdataValue> litExt,
+            final Object[] lowerBorder, final Object[] upperBorder, final int maxRanges) {
+            
+            final GeoSpatialPolygon polygon = query.getSpatialPolygon();
+            
+            final String key = kb.getNamespace() + " " + query.getSearchDatatype() + " " + polygon
+               + " " + Arrays.toString(lowerBorder) + " " + Arrays.toString(upperBorder) + " " + maxRanges;
+            
+            synchronized (polygonCoverings) {
+               
+               final List<ZOrderRange> covering = polygonCoverings.get(key);
+               if (covering!=null) {
+                  geoSpatialCounters.registerPolygonCoveringCacheHit();
+                  return covering;
+               }
+            }
+            
+            final ZOrderRangeDecomposer decomposer = new ZOrderRangeDecomposer(
+               litExt.unpadLeadingZero(litExt.toZOrderByteArray(lowerBorder)),
+               litExt.unpadLeadingZero(litExt.toZOrderByteArray(upperBorder)),
+               litExt.getNumDimensions(), new GeoSpatialPolygonClassifier(polygon, litExt));
+            final List<ZOrderRange> covering = 
+               Collections.unmodifiableList(decomposer.decompose(maxRanges));
+            
+            geoSpatialCounters.registerPolygonCoveringCacheMiss();
+            
+            synchronized (polygonCoverings) {
+               polygonCoverings.put(key, covering);
+            }
+            
+            return covering;
+         }
          
 
          /**
@@ -790,15 +935,18 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
           * @param outerRangeLowerRightWithTime the lower right geospatial+time point of the outer range 
           * @param subRangeUpperLeftWithTime the upper left geospatial+time point of sub range covered by the task
           * @param subRangeLowerRightWithTime the lower right geospatial+time point of sub range covered by the task
+          * @param range the zOrder range scanned by the task; for exact ranges, the scan does not
+          *        require a {@link ZOrderIndexBigMinAdvancer}
           * @param keyOrder the key order of the underlying access path
           * @param subjectPos the position of the subject in the key
           * @param objectPos the position of the object in the key
           * 
           * @return the subtask or null 
           */
-         protected GeoSpatialServiceCallSubRangeTask getSubTask(
+         protected Callable<Void> getSubTask(
             final IGeoSpatialQuery query,
             final Object[] lowerBorder, final Object[] upperBorder,
+            final ZOrderRange range,
             final SPOKeyOrder keyOrder, final int subjectPos, 
             final int objectPos, final BaseJoinStats stats) {
             
@@ -827,6 +975,16 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                break;
 
                
+            case IN_POLYGON:
+               {
+                  // values in exact ranges are known to lie inside the polygon, so the
+                  // point-in-polygon test is required for the other ranges only
+                  filter = range.isExact() ?
+                     new AcceptAllSolutionsFilter(litExt, geoSpatialCounters) :
+                     new GeoSpatialInPolygonFilter(query.getSpatialPolygon(), litExt, geoSpatialCounters);
+               }
+               break;
+               
             case IN_RECTANGLE: 
             case UNDEFINED:
                {
@@ -845,16 +1003,63 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
 
             filter.setObjectPos(objectPos); // position of the object in the index
 
-            /**
-             * If the context is provided, we would need a key order such as
-             * PCOS or CPOS, but unfortunately these key order are not available.
-             * As a "workaround", we do not pass in the context into the predicate,
-             * but instead set an additional context check in the filter. 
-             * 
-             * This is, of course, not a good strategy when the context is very
-             * selective and the index access is not. We could do more sophisticated
-             * stuff here, but for now let's try with this solution.
-             */
+            addContextCheck(filter, query, keyOrder);
+
+            // get the access path for the zOrder range
+            final AccessPath<ISPO> accessPath = getAccessPath(
+               litExt.createIVFromZOrderByteArray(range.getFromZOrder()),
+               litExt.createIVFromZOrderByteArray(range.getToZOrder()), query);
+            
+            if (accessPath==null) {
+               return null;
+            }
+
+            // set up a big min advancer for efficient extraction of relevant values from access path,
+            // unless all values in the range are known to be in the search range
+            final Advancer<SPO> bigMinAdvancer;
+            if (range.isExact()) {
+               
+               bigMinAdvancer = null;
+               
+            } else {
+               
+               final byte[] lowerZOrderKey = litExt.toZOrderByteArray(lowerBorder);
+               final byte[] upperZOrderKey = litExt.toZOrderByteArray(upperBorder);
+               
+               bigMinAdvancer = 
+                  new ZOrderIndexBigMinAdvancer(
+                     lowerZOrderKey, upperZOrderKey, litExt, objectPos, geoSpatialCounters);
+            }
+
+            
+            // aggregating queries fold the values into the aggregator instead of resolving them
+            if (aggregator!=null) {
+               return new GeoSpatialServiceCallAggregationTask(
+                  accessPath, bigMinAdvancer, filter, aggregator, litExt, objectPos, stats);
+            }
+            
+            // set up a value resolver
+            final GeoSpatialServiceCallResolver resolver = 
+               getResolver(query, subjectPos, objectPos);
+            
+            // and construct the sub range task
+            return new GeoSpatialServiceCallSubRangeTask(
+               buffer, accessPath, bigMinAdvancer, filter, resolver, threadLocalBufferCapacity, stats);
+         }
+         
+         /**
+          * If the context is provided, we would need a key order such as
+          * PCOS or CPOS, but unfortunately these key order are not available.
+          * As a "workaround", we do not pass in the context into the predicate,
+          * but instead set an additional context check in the filter. 
+          * 
+          * This is, of course, not a good strategy when the context is very
+          * selective and the index access is not. We could do more sophisticated
+          * stuff here, but for now let's try with this solution.
+          */
+         protected void addContextCheck(final GeoSpatialFilterBase filter,
+            final IGeoSpatialQuery query, final SPOKeyOrder keyOrder) {
+            
             final TermNode ctxTermNode = query.getContext(); 
             if (ctxTermNode!=null) {
                
@@ -870,24 +1075,17 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                   keyOrder.getPositionInIndex(SPOKeyOrder.C), (BigdataURI)ctx);
                
             }
-
-            // get the access path for the sub range
-            final AccessPath<ISPO> accessPath = getAccessPath(lowerBorder, upperBorder, query);
-            
-            if (accessPath==null) {
-               return null;
-            }
-
-            // set up a big min advancer for efficient extraction of relevant values from access path
-            final byte[] lowerZOrderKey = litExt.toZOrderByteArray(lowerBorder);
-            final byte[] upperZOrderKey = litExt.toZOrderByteArray(upperBorder);
+         }
+         
+         /**
+          * Sets up the resolver converting the tuples visited for the given
+          * query into binding sets.
+          */
+         protected GeoSpatialServiceCallResolver getResolver(
+            final IGeoSpatialQuery query, final int subjectPos, final int objectPos) {
             
-            final Advancer<SPO> bigMinAdvancer = 
-               new ZOrderIndexBigMinAdvancer(
-                  lowerZOrderKey, upperZOrderKey, litExt, objectPos, geoSpatialCounters);
-
+            final GeoSpatialDatatypeConfiguration datatypeConfig = query.getDatatypeConfig();
             
-            // set up a value resolver
             final Var<?> locationVar = varFromIVar(query.getLocationVar());
             final Var<?> timeVar = varFromIVar(query.getTimeVar());
             final Var<?> latVar = varFromIVar(query.getLatVar());
@@ -907,16 +1105,35 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                 centerPoint==null ? null : new CoordinateDD(centerPoint.getLat(), centerPoint.getLon());
                    
 
-            final GeoSpatialServiceCallResolver resolver = 
-                new GeoSpatialServiceCallResolver(var, incomingBindingSet, locationVar,
-                    timeVar, locationAndTimeVar, latVar, lonVar, coordSystemVar, 
-                    customFieldsVar, literalVar, distanceVar, subjectPos, objectPos, vf, 
-                    new GeoSpatialLiteralExtension<BigdataValue>(kb.getLexiconRelation(), datatypeConfig),
-                    query.getCustomFieldsConstraints().keySet(), centerPointDD, query.getSpatialUnit());
+            return new GeoSpatialServiceCallResolver(var, incomingBindingSet, locationVar,
+                timeVar, locationAndTimeVar, latVar, lonVar, coordSystemVar, 
+                customFieldsVar, literalVar, distanceVar, subjectPos, objectPos, vf, 
+                new GeoSpatialLiteralExtension<BigdataValue>(kb.getLexiconRelation(), datatypeConfig),
+                query.getCustomFieldsConstraints().keySet(), centerPointDD, query.getSpatialUnit());
+         }
+         
+         /**
+          * Sets up the task answering a {@link GeoFunction#NEAREST} query. The method
+          * returns null if it can be statically shown that the query has no result.
+          */
+         protected Callable<Void> getNearestNeighborTask(final IGeoSpatialQuery query) {
             
-            // and construct the sub range task
-            return new GeoSpatialServiceCallSubRangeTask(
-               buffer, accessPath, bigMinAdvancer, filter, resolver, threadLocalBufferCapacity, stats);
+            final Object[] lowerBound = query.getLowerAndUpperBound().getLowerBound();
+            final Object[] upperBound = query.getLowerAndUpperBound().getUpperBound();
+            
+            final AccessPath<ISPO> accessPath = getAccessPath(lowerBound, upperBound, query);
+            
+            if (accessPath==null) // known unsatisfiable, e.g. if predicate unknown
+               return null;
+            
+            // estimate the total number of points, used to choose the radius of the first ring
+            final long totalPointsInRange = accessPath.rangeCount(false/* exact */);
+            
+            stats.accessPathRangeCount.add(totalPointsInRange);
+            
+            return new GeoSpatialServiceCallNearestNeighborTask(
+               query, lowerBound, upperBound, totalPointsInRange,
+               (SPOKeyOrder)accessPath.getKeyOrder() /* will be the same for all rings */);
          }
 
 
@@ -930,11 +1147,24 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
              final GeoSpatialLiteralExtension litExt = 
                  new GeoSpatialLiteralExtension<BigdataValue>(kb.getLexiconRelation(), datatypeConfig);
              
+             return getAccessPath(
+                litExt.createIV(lowerBorderComponents), litExt.createIV(upperBorderComponents), query);
+         }
+         
+         /**
+          * Returns the access path for the range of (inclusive) lower and upper
+          * border literals, or null if the access path is known to be empty.
+          */
+         @SuppressWarnings({ "unchecked", "rawtypes" })
+         protected AccessPath<ISPO> getAccessPath(
+            final IV lowerBorderIV, final IV upperBorderIV,
+            final IGeoSpatialQuery query) {
+
             // set up range scan
             final Var oVar = Var.var(); // object position variable
             final RangeNode range = new RangeNode(new VarNode(oVar),
-                  new ConstantNode(litExt.createIV(lowerBorderComponents)),
-                  new ConstantNode(litExt.createIV(upperBorderComponents)));
+                  new ConstantNode(lowerBorderIV),
+                  new ConstantNode(upperBorderIV));
 
             final RangeBOp rangeBop = ASTRangeOptimizer.toRangeBOp(context, range, globals);
             
@@ -994,12 +1224,16 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                 * No Executor, so run each task in the caller's thread.
                 */
 
-               for (GeoSpatialServiceCallSubRangeTask task : tasks) {
+               for (Callable<Void> task : tasks) {
 
                   task.call();
                   
                }
 
+               if (aggregator!=null) {
+                  aggregator.emit(buffer, threadLocalBufferCapacity);
+               }
+               
                buffer.flush();
                buffer.close();
                return null;
@@ -1014,7 +1248,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
              */
             final List<FutureTask<Void>> futureTasks = new LinkedList<FutureTask<Void>>();
 
-            for (GeoSpatialServiceCallSubRangeTask task : tasks) {
+            for (Callable<Void> task : tasks) {
 
                final FutureTask<Void> ft =  new FutureTask<Void>(task);
 
@@ -1065,6 +1299,10 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
 
             }
 
+            if (aggregator!=null) {
+               aggregator.emit(buffer, threadLocalBufferCapacity);
+            }
+            
             buffer.flush();
             buffer.close();
             return null;
@@ -1077,6 +1315,7 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
             
             final private AccessPath<ISPO> accessPath;
             
+            // null if all values in the access path are in the search range
             final private Advancer<SPO> bigMinAdvancer;
             
             final private GeoSpatialFilterBase filter;
@@ -1129,6 +1368,328 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
             
          }
          
+         /**
+          * Scans a zOrder range for an aggregating query. Rather than resolving the
+          * visited tuples into binding sets, the task decodes the object of each key
+          * and folds its components into a {@link GeoSpatialServiceCallAggregator}.
+          */
+         private static class GeoSpatialServiceCallAggregationTask implements Callable<Void> {
+
+            final private AccessPath<ISPO> accessPath;
+            
+            // null if all values in the access path are in the search range
+            final private Advancer<SPO> bigMinAdvancer;
+            
+            final private GeoSpatialFilterBase filter;
+            
+            final private GeoSpatialServiceCallAggregator aggregator;
+            
+            final private GeoSpatialLiteralExtension<BigdataValue> litExt;
+            
+            final private int objectPos;
+            
+            final private BaseJoinStats stats;
+            
+            public GeoSpatialServiceCallAggregationTask(
+               final AccessPath<ISPO> accessPath, Advancer<SPO> bigMinAdvancer,
+               final GeoSpatialFilterBase filter, final GeoSpatialServiceCallAggregator aggregator,
+               final GeoSpatialLiteralExtension<BigdataValue> litExt, final int objectPos,
+               final BaseJoinStats stats) {
+
+               this.accessPath = accessPath;
+               this.bigMinAdvancer = bigMinAdvancer;
+               this.filter = filter;
+               this.aggregator = aggregator;
+               this.litExt = litExt;
+               this.objectPos = objectPos;
+               this.stats = stats;
+            }
+
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            @Override
+            public Void call() throws Exception {
+               
+               final Iterator<ITuple<?>> itr = 
+                     new Striterator(accessPath.getIndex().rangeIterator(
+                        accessPath.getFromKey(), accessPath.getToKey(), 0/* capacity */, 
+                        IRangeQuery.KEYS | IRangeQuery.CURSOR, bigMinAdvancer))
+                           .addFilter(filter);
+
+               stats.accessPathCount.increment();
+
+               // aggregate locally, and merge into the shared result once done
+               final GeoSpatialServiceCallAggregator.PartialAggregate partial = 
+                  aggregator.newPartialAggregate();
+               
+               while (itr.hasNext()) {
+                  stats.accessPathUnitsIn.increment();
+                  
+                  final IV[] ivs = IVUtility.decode(itr.next().getKey(), objectPos + 1);
+                  partial.add(litExt.asLongArray((LiteralExtensionIV)ivs[objectPos]));
+               }
+               
+               aggregator.merge(partial);
+               
+               return null;
+            }
+            
+         }
+         
+         /**
+          * Answers a {@link GeoFunction#NEAREST} query. The task scans rings of growing
+          * radius around the center point (see {@link GeoSpatialSearchRings}), where each
+          * ring is decomposed into zOrder ranges, and keeps the k closest points seen so far
+          * in a bounded priority queue. It stops as soon as the distance of the kth-best
+          * point does not exceed the minimum distance of the area not yet scanned, and then
+          * reports the neighbors ordered by their distance.
+          */
+         private class GeoSpatialServiceCallNearestNeighborTask implements Callable<Void> {
+            
+            // the smallest radius of the first ring
+            private static final double MIN_INITIAL_RADIUS_IN_METERS = 1.0;
+            
+            final private IGeoSpatialQuery query;
+            
+            // lower and upper bound of the query, covering the whole globe
+            final private Object[] lowerBound;
+            final private Object[] upperBound;
+            
+            // estimated number of points within the bounds
+            final private long totalPointsInRange;
+            
+            final private SPOKeyOrder keyOrder;
+            final private int objectPos;
+            
+            final private GeoSpatialLiteralExtension<BigdataValue> litExt;
+            final private int latIdx;
+            final private int lonIdx;
+            
+            public GeoSpatialServiceCallNearestNeighborTask(
+               final IGeoSpatialQuery query, final Object[] lowerBound, 
+               final Object[] upperBound, final long totalPointsInRange,
+               final SPOKeyOrder keyOrder) {
+               
+               this.query = query;
+               this.lowerBound = lowerBound;
+               this.upperBound = upperBound;
+               this.totalPointsInRange = totalPointsInRange;
+               this.keyOrder = keyOrder;
+               this.objectPos = keyOrder.getPositionInIndex(SPOKeyOrder.O);
+               
+               final GeoSpatialDatatypeConfiguration datatypeConfig = query.getDatatypeConfig();
+               litExt = new GeoSpatialLiteralExtension<BigdataValue>(kb.getLexiconRelation(), datatypeConfig);
+               latIdx = datatypeConfig.idxOfField(ServiceMapping.LATITUDE);
+               lonIdx = datatypeConfig.idxOfField(ServiceMapping.LONGITUDE);
+            }
+            
+            @Override
+            public Void call() throws Exception {
+               
+               final int numNeighbors = query.getNumNeighbors();
+               final PointLatLon center = query.getSpatialCircleCenter();
+               final double maxRadiusInMeters = query.getSpatialCircleRadius()==null ?
+                  Double.POSITIVE_INFINITY : 
+                  CoordinateUtility.unitsToMeters(query.getSpatialCircleRadius(), query.getSpatialUnit());
+               
+               final GeoSpatialSearchRings rings = new GeoSpatialSearchRings(
+                  center.getLat(), center.getLon(), getInitialRadiusInMeters(numNeighbors), maxRadiusInMeters);
+
+               // the advancer restricts the scans to the rectangles of the rings,
+               // so the filter only needs to check the context (if any)
+               final GeoSpatialFilterBase filter = new AcceptAllSolutionsFilter(litExt, geoSpatialCounters);
+               filter.setObjectPos(objectPos);
+               addContextCheck(filter, query, keyOrder);
+               
+               // the best candidates seen so far, the farthest one at the head of the queue
+               final PriorityQueue<Neighbor> neighbors = 
+                  new PriorityQueue<Neighbor>(numNeighbors, Collections.reverseOrder());
+               
+               // the keys of the candidates in the queue (the rings may overlap at their borders)
+               final Set<ByteBuffer> keys = new HashSet<ByteBuffer>();
+               
+               while (rings.hasNext()) {
+                  
+                  for (double[] rectangle : rings.next()) {
+                     scan(rectangle, filter, center, maxRadiusInMeters, numNeighbors, neighbors, keys);
+                  }
+                  
+                  if (neighbors.size()==numNeighbors 
+                        && neighbors.peek().distanceInMeters<=rings.getMinDistanceOutsideInMeters()) {
+                     break; // there are no closer points outside of the rings scanned so far
+                  }
+               }
+               
+               if (DEBUG) {
+                  log.debug("Found " + neighbors.size() + " neighbors within radius of " 
+                        + rings.getRadiusInMeters() + "m");
+               }
+               
+               // report the neighbors ordered by distance
+               final List<Neighbor> sorted = new ArrayList<Neighbor>(neighbors);
+               Collections.sort(sorted);
+               
+               final GeoSpatialServiceCallResolver resolver = getResolver(
+                  query, keyOrder.getPositionInIndex(SPOKeyOrder.S), objectPos);
+               
+               final UnsynchronizedArrayBuffer<IBindingSet> localBuffer = 
+                  new UnsynchronizedArrayBuffer<IBindingSet>(
+                     buffer, IBindingSet.class, threadLocalBufferCapacity);
+
+               for (Neighbor neighbor : sorted) {
+                  localBuffer.add(resolver.resolveKey(neighbor.key));
+               }
+               localBuffer.flush();
+               
+               return null;
+            }
+            
+            /**
+             * Scans the given rectangle {south, west, north, east}, offering all points 
+             * visited to the queue of neighbors.
+             */
+            @SuppressWarnings("unchecked")
+            private void scan(final double[] rectangle, final GeoSpatialFilterBase filter,
+               final PointLatLon center, final double maxRadiusInMeters, final int numNeighbors,
+               final PriorityQueue<Neighbor> neighbors, final Set<ByteBuffer> keys) {
+               
+               final Object[] lowerBorder = lowerBound.clone();
+               lowerBorder[latIdx] = rectangle[0];
+               lowerBorder[lonIdx] = rectangle[1];
+               
+               final Object[] upperBorder = upperBound.clone();
+               upperBorder[latIdx] = rectangle[2];
+               upperBorder[lonIdx] = rectangle[3];
+               
+               final byte[] lowerZOrderKey = litExt.toZOrderByteArray(lowerBorder);
+               final byte[] upperZOrderKey = litExt.toZOrderByteArray(upperBorder);
+
+               final List<ZOrderRange> ranges = new ZOrderRangeDecomposer(
+                  litExt.unpadLeadingZero(lowerZOrderKey), litExt.unpadLeadingZero(upperZOrderKey),
+                  litExt.getNumDimensions()).decompose(maxZOrderRanges);
+               
+               int numExactRanges = 0;
+               for (ZOrderRange range : ranges) {
+                  
+                  final AccessPath<ISPO> accessPath = getAccessPath(
+                     litExt.createIVFromZOrderByteArray(range.getFromZOrder()),
+                     litExt.createIVFromZOrderByteArray(range.getToZOrder()), query);
+                  
+                  if (accessPath==null) {
+                     continue;
+                  }
+                  
+                  final Advancer<SPO> bigMinAdvancer;
+                  if (range.isExact()) {
+                     
+                     numExactRanges++;
+                     bigMinAdvancer = null;
+                     
+                  } else {
+                     
+                     bigMinAdvancer = new ZOrderIndexBigMinAdvancer(
+                        lowerZOrderKey, upperZOrderKey, litExt, objectPos, geoSpatialCounters);
+                  }
+                  
+                  final Iterator<ITuple<?>> itr = 
+                     new Striterator(accessPath.getIndex().rangeIterator(
+                        accessPath.getFromKey(), accessPath.getToKey(), 0/* capacity */, 
+                        IRangeQuery.KEYS | IRangeQuery.CURSOR, bigMinAdvancer))
+                           .addFilter(filter);
+                  
+                  stats.accessPathCount.increment();
+
+                  while (itr.hasNext()) {
+                     
+                     stats.accessPathUnitsIn.increment();
+                     
+                     final byte[] key = itr.next().getKey();
+                     
+                     final double distanceInMeters = getDistanceInMeters(key, center);
+                     
+                     if (distanceInMeters>maxRadiusInMeters) {
+                        continue;
+                     }
+                     
+                     if (neighbors.size()==numNeighbors 
+                           && !(distanceInMeters<neighbors.peek().distanceInMeters)) {
+                        continue; // not better than the kth-best candidate
+                     }
+                     
+                     if (!keys.add(ByteBuffer.wrap(key))) {
+                        continue; // visited before (at the border of two rectangles)
+                     }
+                     
+                     neighbors.add(new Neighbor(key, distanceInMeters));
+                     
+                     if (neighbors.size()>numNeighbors) {
+                        keys.remove(ByteBuffer.wrap(neighbors.poll().key));
+                     }
+                  }
+               }
+               
+               geoSpatialCounters.registerZOrderRanges(ranges.size(), numExactRanges);
+            }
+            
+            /**
+             * Returns the distance between the point encoded in the object of the key
+             * and the given center point.
+             */
+            @SuppressWarnings("rawtypes")
+            private double getDistanceInMeters(final byte[] key, final PointLatLon center) {
+               
+               final IV[] ivs = IVUtility.decode(key, objectPos + 1);
+               
+               final Object[] components = 
+                  litExt.longArrAsComponentArr(litExt.asLongArray((LiteralExtensionIV)ivs[objectPos]));
+               
+               final double distanceInMeters = CoordinateUtility.distanceInMeters(
+                  (double)components[latIdx], center.getLat(), 
+                  (double)components[lonIdx], center.getLon());
+               
+               // the cosine may slightly exceed 1 due to rounding errors for identical points 
+               return Double.isNaN(distanceInMeters) ? 0.0 : distanceInMeters;
+            }
+            
+            /**
+             * Estimates the radius of the circle containing k points, assuming that
+             * the points are uniformly distributed over the globe. If the points are
+             * clustered around the center, the first ring already contains the neighbors;
+             * otherwise, the rings grow until they do.
+             */
+            private double getInitialRadiusInMeters(final int k) {
+               
+               final double earthRadiusInMeters = 
+                  180.0 / Math.PI * GeoSpatialSearchRings.METERS_PER_DEGREE;
+               
+               final double fraction = 
+                  totalPointsInRange<=k ? 1.0 : (double)k / totalPointsInRange;
+               
+               return Math.max(
+                  MIN_INITIAL_RADIUS_IN_METERS, 2 * earthRadiusInMeters * Math.sqrt(fraction));
+            }
+            
+         }
+         
+         /**
+          * A candidate of a nearest neighbor search, ordered by distance.
+          */
+         private static class Neighbor implements Comparable<Neighbor> {
+            
+            final private byte[] key;
+            
+            final private double distanceInMeters;
+            
+            public Neighbor(final byte[] key, final double distanceInMeters) {
+               this.key = key;
+               this.distanceInMeters = distanceInMeters;
+            }
+            
+            @Override
+            public int compareTo(final Neighbor o) {
+               return Double.compare(distanceInMeters, o.distanceInMeters);
+            }
+         }
+         
          
          /**
           * Builds a number of partitions over a given geospatial search range, effectively 
@@ -1335,45 +1896,336 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
          }
          
          
-         public static class GeoSpatialSearchRange {
-             
-             final GeoSpatialDatatypeConfiguration datatypeConfig;
-             final GeoSpatialLiteralExtension<BigdataValue> litExt;
-             
-             private final Object[] lowerBorderComponents;
-             private final Object[] upperBorderComponents;
-             
-             public GeoSpatialSearchRange(
-                 final GeoSpatialDatatypeConfiguration datatypeConfig,
-                 final GeoSpatialLiteralExtension<BigdataValue> litExt,
-                 final Object[] lowerBorderComponents, final Object[] upperBorderComponents) {
-                 
-                 this.datatypeConfig = datatypeConfig;
-                 this.litExt = litExt;
-                 
-                 this.lowerBorderComponents = lowerBorderComponents;
-                 this.upperBorderComponents = upperBorderComponents;
-                 
-             }
-             
-             public GeoSpatialLiteralExtension<BigdataValue> getLitExt() {
-                 return litExt;
-             }
-             
-             public GeoSpatialDatatypeConfiguration getDatatypeConfig() {
-                 return datatypeConfig;
-             }
-             
-             public Object[] getLowerBorderComponents() {
-                 return lowerBorderComponents;
-             }
-
-             public Object[] getUpperBorderComponents() {
-                 return upperBorderComponents;
-             }
-
+         public static class GeoSpatialSearchRange {
+             
+             final GeoSpatialDatatypeConfiguration datatypeConfig;
+             final GeoSpatialLiteralExtension<BigdataValue> litExt;
+             
+             private final Object[] lowerBorderComponents;
+             private final Object[] upperBorderComponents;
+             
+             public GeoSpatialSearchRange(
+                 final GeoSpatialDatatypeConfiguration datatypeConfig,
+                 final GeoSpatialLiteralExtension<BigdataValue> litExt,
+                 final Object[] lowerBorderComponents, final Object[] upperBorderComponents) {
+                 
+                 this.datatypeConfig = datatypeConfig;
+                 this.litExt = litExt;
+                 
+                 this.lowerBorderComponents = lowerBorderComponents;
+                 this.upperBorderComponents = upperBorderComponents;
+                 
+             }
+             
+             public GeoSpatialLiteralExtension<BigdataValue> getLitExt() {
+                 return litExt;
+             }
+             
+             public GeoSpatialDatatypeConfiguration getDatatypeConfig() {
+                 return datatypeConfig;
+             }
+             
+             public Object[] getLowerBorderComponents() {
+                 return lowerBorderComponents;
+             }
+
+             public Object[] getUpperBorderComponents() {
+                 return upperBorderComponents;
+             }
+
+         }
+         
+      }
+      
+      /**
+       * Computes the aggregates of an aggregating query, i.e. the number of points
+       * (and optionally the minimum and maximum value of a field) per grid cell and/or
+       * time bucket, see {@link IGeoSpatialQuery#getAggregation()}. The aggregator works
+       * on the components of the index keys in their long encoding, so the grid is
+       * computed by integer division and individual points are never materialized.
+       * Each subtask aggregates into its own {@link PartialAggregate}, which is merged
+       * into the shared result when the subtask is done.
+       */
+      private static class GeoSpatialServiceCallAggregator {
+         
+         final private IBindingSet incomingBindingSet;
+         final private Var<?> latVar;
+         final private Var<?> lonVar;
+         final private Var<?> timeVar;
+         final private Var<?> countVar;
+         final private Var<?> minVar;
+         final private Var<?> maxVar;
+         
+         final private int numDimensions;
+         final private int latIdx;
+         final private int lonIdx;
+         final private int timeIdx;
+         final private int aggregateIdx; // -1 if no aggregate field
+         
+         // the cell sizes in the long encoding of the respective field, 0 if not grouping by the field
+         final private long latCellSize;
+         final private long lonCellSize;
+         final private long timeBucketSize;
+         
+         final private BigdataValueFactory vf;
+         final private GeoSpatialLiteralExtension<BigdataValue> litExt;
+         final private IGeoSpatialLiteralSerializer literalSerializer;
+         
+         // the merged aggregates, guarded by synchronization on the map
+         final private Map<GridCell, GridCell> cells = new HashMap<GridCell, GridCell>();
+         
+         public GeoSpatialServiceCallAggregator(final IGeoSpatialQuery query, 
+            final GeoSpatialLiteralExtension<BigdataValue> litExt, final BigdataValueFactory vf) {
+            
+            final Aggregation aggregation = query.getAggregation();
+            final GeoSpatialDatatypeConfiguration datatypeConfig = litExt.getDatatypeConfig();
+            
+            this.incomingBindingSet = query.getIncomingBindings();
+            this.latVar = varFromIVar(query.getLatVar());
+            this.lonVar = varFromIVar(query.getLonVar());
+            this.timeVar = varFromIVar(query.getTimeVar());
+            this.countVar = varFromIVar(aggregation.getCountVar());
+            this.minVar = varFromIVar(aggregation.getMinVar());
+            this.maxVar = varFromIVar(aggregation.getMaxVar());
+            this.vf = vf;
+            this.litExt = litExt;
+            this.literalSerializer = datatypeConfig.getLiteralSerializer();
+            
+            numDimensions = datatypeConfig.getNumDimensions();
+            latIdx = datatypeConfig.idxOfField(ServiceMapping.LATITUDE);
+            lonIdx = datatypeConfig.idxOfField(ServiceMapping.LONGITUDE);
+            timeIdx = datatypeConfig.idxOfField(ServiceMapping.TIME);
+            
+            final String aggregateField = aggregation.getAggregateField();
+            if (aggregateField==null) {
+               aggregateIdx = -1;
+            } else if (GeoSpatial.AGGREGATE_FIELD_TIME.equals(aggregateField)) {
+               aggregateIdx = timeIdx;
+            } else {
+               aggregateIdx = datatypeConfig.getCustomFieldIdx(aggregateField);
+            }
+            
+            final Double gridCellSize = aggregation.getGridCellSize();
+            if (gridCellSize==null) {
+               latCellSize = 0;
+               lonCellSize = 0;
+            } else {
+               latCellSize = toEncodedSize(gridCellSize, datatypeConfig, latIdx);
+               lonCellSize = toEncodedSize(gridCellSize, datatypeConfig, lonIdx);
+            }
+            
+            final Long timeBucket = aggregation.getTimeBucketSize();
+            timeBucketSize = timeBucket==null ? 
+               0 : toEncodedSize(timeBucket, datatypeConfig, timeIdx);
+         }
+         
+         /**
+          * Converts a cell size into the long encoding of the given field.
+          */
+         private static long toEncodedSize(
+            final double size, final GeoSpatialDatatypeConfiguration datatypeConfig, final int idx) {
+            
+            final long encodedSize = Math.round(size * datatypeConfig.getFields().get(idx).getMultiplier());
+            if (encodedSize<1) {
+               throw new GeoSpatialSearchException(
+                  "Aggregation cell size " + size + " is smaller than the precision of the datatype.");
+            }
+            
+            return encodedSize;
+         }
+         
+         /**
+          * Returns the index of the cell containing the value (rounding towards negative infinity).
+          */
+         private static long cellOf(final long value, final long cellSize) {
+            
+            final long cell = value / cellSize;
+            return value<0 && cell * cellSize!=value ? cell - 1 : cell;
+         }
+         
+         public PartialAggregate newPartialAggregate() {
+            return new PartialAggregate();
+         }
+         
+         /**
+          * Merges the aggregates of a subtask into the result.
+          */
+         public void merge(final PartialAggregate partial) {
+            
+            synchronized (cells) {
+               
+               for (GridCell cell : partial.cells.values()) {
+                  
+                  final GridCell existing = cells.get(cell);
+                  if (existing==null) {
+                     cells.put(cell, cell);
+                  } else {
+                     existing.merge(cell);
+                  }
+               }
+            }
+         }
+         
+         /**
+          * Writes one binding set per non-empty cell to the buffer.
+          */
+         @SuppressWarnings("rawtypes")
+         public void emit(final BlockingBuffer<IBindingSet[]> buffer, final int threadLocalBufferCapacity) {
+            
+            final UnsynchronizedArrayBuffer<IBindingSet> localBuffer = 
+               new UnsynchronizedArrayBuffer<IBindingSet>(
+                  buffer, IBindingSet.class, threadLocalBufferCapacity);
+            
+            synchronized (cells) {
+               
+               for (GridCell cell : cells.values()) {
+                  
+                  // the lower corner of the cell, decoded into its components
+                  final long[] corner = new long[numDimensions];
+                  if (latCellSize>0) {
+                     corner[latIdx] = cell.latCell * latCellSize;
+                     corner[lonIdx] = cell.lonCell * lonCellSize;
+                  }
+                  if (timeBucketSize>0) {
+                     corner[timeIdx] = cell.timeBucket * timeBucketSize;
+                  }
+                  final Object[] componentArr = litExt.longArrAsComponentArr(corner);
+                  
+                  final IBindingSet bs = incomingBindingSet.clone();
+                  
+                  if (latVar!=null) {
+                     bs.set(latVar, 
+                        new Constant<IV>(literalSerializer.serializeLatitude(vf, componentArr[latIdx])));
+                  }
+                  
+                  if (lonVar!=null) {
+                     bs.set(lonVar, 
+                        new Constant<IV>(literalSerializer.serializeLongitude(vf, componentArr[lonIdx])));
+                  }
+                  
+                  if (timeVar!=null) {
+                     bs.set(timeVar, 
+                        new Constant<IV>(literalSerializer.serializeTime(vf, componentArr[timeIdx])));
+                  }
+                  
+                  if (countVar!=null) {
+                     bs.set(countVar, new Constant<IV>(new XSDNumericIV(cell.count)));
+                  }
+                  
+                  if (minVar!=null) {
+                     bs.set(minVar, new Constant<IV>(toAggregateIV(cell.min)));
+                  }
+                  
+                  if (maxVar!=null) {
+                     bs.set(maxVar, new Constant<IV>(toAggregateIV(cell.max)));
+                  }
+                  
+                  localBuffer.add(bs);
+               }
+            }
+            
+            localBuffer.flush();
+         }
+         
+         /**
+          * Converts a value of the aggregate field from its long encoding into an IV.
+          */
+         @SuppressWarnings("rawtypes")
+         private IV toAggregateIV(final long encodedValue) {
+            
+            final long[] arr = new long[numDimensions];
+            arr[aggregateIdx] = encodedValue;
+            final Object value = litExt.longArrAsComponentArr(arr)[aggregateIdx];
+            
+            if (aggregateIdx==timeIdx) {
+               return literalSerializer.serializeTime(vf, value);
+            }
+            
+            return value instanceof Double ? 
+               new XSDNumericIV((Double)value) : new XSDNumericIV((Long)value);
+         }
+         
+         /**
+          * The aggregates computed by a single subtask. Not thread safe.
+          */
+         private class PartialAggregate {
+            
+            final private Map<GridCell, GridCell> cells = new HashMap<GridCell, GridCell>();
+            
+            // lookup key, reused to avoid allocations for cells that have been seen before
+            final private GridCell probe = new GridCell();
+            
+            /**
+             * Adds a point, given as the long encoding of its components.
+             */
+            public void add(final long[] components) {
+               
+               if (latCellSize>0) {
+                  probe.latCell = cellOf(components[latIdx], latCellSize);
+                  probe.lonCell = cellOf(components[lonIdx], lonCellSize);
+               }
+               if (timeBucketSize>0) {
+                  probe.timeBucket = cellOf(components[timeIdx], timeBucketSize);
+               }
+               
+               GridCell cell = cells.get(probe);
+               if (cell==null) {
+                  cell = new GridCell();
+                  cell.latCell = probe.latCell;
+                  cell.lonCell = probe.lonCell;
+                  cell.timeBucket = probe.timeBucket;
+                  cells.put(cell, cell);
+               }
+               
+               cell.add(aggregateIdx<0 ? 0 : components[aggregateIdx]);
+            }
+         }
+      }
+      
+      /**
+       * A grid cell and/or time bucket along with its aggregates, as used by the
+       * {@link GeoSpatialServiceCallAggregator}. Equality is defined over the cell.
+       */
+      private static class GridCell {
+         
+         long latCell;
+         long lonCell;
+         long timeBucket;
+         
+         long count = 0;
+         long min = Long.MAX_VALUE;
+         long max = Long.MIN_VALUE;
+         
+         void add(final long value) {
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+         }
+         
+         void merge(final GridCell other) {
+            count += other.count;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+         }
+         
+         @Override
+         public boolean equals(final Object o) {
+            
+            if (!(o instanceof GridCell))
+               return false;
+            
+            final GridCell other = (GridCell)o;
+            return latCell==other.latCell && lonCell==other.lonCell && timeBucket==other.timeBucket;
          }
          
+         @Override
+         public int hashCode() {
+            
+            long h = latCell;
+            h = 31 * h + lonCell;
+            h = 31 * h + timeBucket;
+            return (int)(h ^ (h >>> 32));
+         }
       }
       
       private static class GeoSpatialServiceCallResolver extends Resolver {
@@ -1464,11 +2316,18 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
          /**
            * Resolve tuple to IV.
            */
-         @SuppressWarnings("rawtypes")
          @Override
          protected IBindingSet resolve(final Object obj) {
 
-            final byte[] key = ((ITuple<?>) obj).getKey();
+            return resolveKey(((ITuple<?>) obj).getKey());
+            
+         }
+         
+         /**
+          * Resolve the key of a tuple to IV.
+          */
+         @SuppressWarnings("rawtypes")
+         protected IBindingSet resolveKey(final byte[] key) {
 
 
             // if results are reported, we need to decode up to subject + object,
@@ -1939,6 +2798,112 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
    
    }
 
+   /**
+    * Filter asserting that a given point lies within a polygon. The advancer
+    * delivers the points within the polygon's bounding box (plus time frame
+    * and further dimensions), so the filter performs the point-in-polygon test only.
+    */
+   public static class GeoSpatialInPolygonFilter extends GeoSpatialFilterBase {
+
+      private static final long serialVersionUID = 4583516730364951728L;
+
+      final private GeoSpatialPolygon polygon;
+      
+      final private int idxOfLat;
+      final private int idxOfLon;
+      
+      final boolean latLonIndicesValid;
+
+      public GeoSpatialInPolygonFilter(
+         final GeoSpatialPolygon polygon,
+         final GeoSpatialLiteralExtension<BigdataValue> litExt,
+         final GeoSpatialCounters geoSpatialCounters) {
+         
+         super(litExt, geoSpatialCounters);
+
+         this.polygon = polygon;
+
+         this.idxOfLat = datatypeConfig.idxOfField(ServiceMapping.LATITUDE);
+         this.idxOfLon = datatypeConfig.idxOfField(ServiceMapping.LONGITUDE);
+
+         latLonIndicesValid = idxOfLat>=0 && idxOfLon>=0;
+      }
+
+      @Override
+      @SuppressWarnings("rawtypes")      
+      protected boolean isValidInternal(final ITuple tuple) {
+          
+          if (!latLonIndicesValid)
+              return false; // something's wrong here, reject all tuples
+
+         try {
+             
+            final byte[] key = ((ITuple<?>) tuple).getKey();
+            final IV[] ivs = IVUtility.decode(key, objectPos + 1);
+
+            final IV oIV = ivs[objectPos];
+
+            if (!(oIV instanceof LiteralExtensionIV)) {
+                throw new IllegalArgumentException("Invalid IV cannot be cast to LiteralExtensionIV");
+            }
+
+            final Object[] components = 
+               litExt.longArrAsComponentArr(litExt.asLongArray((LiteralExtensionIV) oIV));
+
+            return polygon.contains((double)components[idxOfLat], (double)components[idxOfLon]);
+                    
+         } catch (Exception e) {
+         
+             if (INFO) {
+                log.info(
+                   "Something went wrong extracting the object: " + e.getMessage() +
+                   "Rejecting unprocessable value.");
+             }
+             
+         }
+         
+         return false; // exception code path -> reject value
+
+      }
+   
+   }
+
+   /**
+    * Classifies zOrder cells against the polygon of a {@link GeoFunction#IN_POLYGON}
+    * query, decoding the corners of the cells into latitude and longitude.
+    */
+   public static class GeoSpatialPolygonClassifier implements IRegionClassifier {
+
+      final private GeoSpatialPolygon polygon;
+      
+      final private GeoSpatialLiteralExtension<BigdataValue> litExt;
+
+      final private int idxOfLat;
+      final private int idxOfLon;
+      
+      public GeoSpatialPolygonClassifier(
+         final GeoSpatialPolygon polygon, final GeoSpatialLiteralExtension<BigdataValue> litExt) {
+         
+         this.polygon = polygon;
+         this.litExt = litExt;
+         
+         final GeoSpatialDatatypeConfiguration datatypeConfig = litExt.getDatatypeConfig();
+         this.idxOfLat = datatypeConfig.idxOfField(ServiceMapping.LATITUDE);
+         this.idxOfLon = datatypeConfig.idxOfField(ServiceMapping.LONGITUDE);
+      }
+      
+      @Override
+      public Classification classify(final byte[] cellMinZOrder, final byte[] cellMaxZOrder) {
+         
+         final Object[] min = litExt.longArrAsComponentArr(litExt.fromZOrderByteArray(cellMinZOrder));
+         final Object[] max = litExt.longArrAsComponentArr(litExt.fromZOrderByteArray(cellMaxZOrder));
+         
+         return polygon.classify(
+            ((Number)min[idxOfLat]).doubleValue(), ((Number)min[idxOfLon]).doubleValue(),
+            ((Number)max[idxOfLat]).doubleValue(), ((Number)max[idxOfLon]).doubleValue());
+      }
+   }
+
    /**
     * Dummy filter asserting that a point delivered by the advancer lies into
     * a given rectangle. Given the current advancer implementation, there's
@@ -2014,15 +2979,20 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                || predicate.equals(GeoSpatial.CONTEXT)
                || predicate.equals(GeoSpatial.SPATIAL_CIRCLE_CENTER)
                || predicate.equals(GeoSpatial.SPATIAL_CIRCLE_RADIUS)
+               || predicate.equals(GeoSpatial.NUM_NEIGHBORS)
                || predicate.equals(GeoSpatial.SPATIAL_RECTANGLE_NORTH_EAST) 
                || predicate.equals(GeoSpatial.SPATIAL_RECTANGLE_SOUTH_WEST)
+               || predicate.equals(GeoSpatial.SPATIAL_POLYGON)
                || predicate.equals(GeoSpatial.SPATIAL_UNIT)
                || predicate.equals(GeoSpatial.TIME_START)
                || predicate.equals(GeoSpatial.TIME_END)
                || predicate.equals(GeoSpatial.COORD_SYSTEM)
                || predicate.equals(GeoSpatial.CUSTOM_FIELDS)
                || predicate.equals(GeoSpatial.CUSTOM_FIELDS_LOWER_BOUNDS)
-               || predicate.equals(GeoSpatial.CUSTOM_FIELDS_UPPER_BOUNDS)) {
+               || predicate.equals(GeoSpatial.CUSTOM_FIELDS_UPPER_BOUNDS)
+               || predicate.equals(GeoSpatial.GRID_CELL_SIZE)
+               || predicate.equals(GeoSpatial.TIME_BUCKET_SIZE)
+               || predicate.equals(GeoSpatial.AGGREGATE_FIELD)) {
                 
                requiredBound.add((IVariable<?>)object); // the subject var is what we return                  
             }
@@ -2048,8 +3018,10 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
        private TermNode context = null;
        private TermNode spatialCircleCenter = null;
        private TermNode spatialCircleRadius = null;
+       private TermNode numNeighbors = null;
        private TermNode spatialRectangleSouthWest = null;
        private TermNode spatialRectangleNorthEast = null;
+       private TermNode spatialPolygon = null;
        private TermNode spatialUnit = null;
        private TermNode timeStart = null;
        private TermNode timeEnd = null;
@@ -2057,6 +3029,9 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
        private TermNode customFields = null;
        private TermNode customFieldsLowerBounds = null;
        private TermNode customFieldsUpperBounds = null;
+       private TermNode gridCellSize = null;
+       private TermNode timeBucketSize = null;
+       private TermNode aggregateField = null;
 
        private IVariable<?> searchVar = null;
        private IVariable<?> locationVar = null;
@@ -2068,6 +3043,9 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
        private IVariable<?> customFieldsVar = null;
        private IVariable<?> literalVar = null;
        private IVariable<?> distanceVar = null;
+       private IVariable<?> countVar = null;
+       private IVariable<?> minVar = null;
+       private IVariable<?> maxVar = null;
        
        public GeoSpatialServiceCallConfiguration(
            final GeoSpatialDefaults defaults, final GeoSpatialConfig geoSpatialConfig,
@@ -2101,6 +3079,10 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                this.spatialCircleRadius = sps.get(GeoSpatial.SPATIAL_CIRCLE_RADIUS).o();
            }
 
+           if (sps.containsKey(GeoSpatial.NUM_NEIGHBORS)) {
+               this.numNeighbors = sps.get(GeoSpatial.NUM_NEIGHBORS).o();
+           }
+
            if (sps.containsKey(GeoSpatial.SPATIAL_RECTANGLE_SOUTH_WEST)) {
                this.spatialRectangleSouthWest = 
                    sps.get(GeoSpatial.SPATIAL_RECTANGLE_SOUTH_WEST).o();
@@ -2111,6 +3093,10 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                    sps.get(GeoSpatial.SPATIAL_RECTANGLE_NORTH_EAST).o();
            }
 
+           if (sps.containsKey(GeoSpatial.SPATIAL_POLYGON)) {
+               this.spatialPolygon = sps.get(GeoSpatial.SPATIAL_POLYGON).o();
+           }
+
            if (sps.containsKey(GeoSpatial.SPATIAL_UNIT)) {
                this.spatialUnit = sps.get(GeoSpatial.SPATIAL_UNIT).o();
            }
@@ -2141,6 +3127,18 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                    sps.get(GeoSpatial.CUSTOM_FIELDS_UPPER_BOUNDS).o();
            }
 
+           if (sps.containsKey(GeoSpatial.GRID_CELL_SIZE)) {
+               this.gridCellSize = sps.get(GeoSpatial.GRID_CELL_SIZE).o();
+           }
+
+           if (sps.containsKey(GeoSpatial.TIME_BUCKET_SIZE)) {
+               this.timeBucketSize = sps.get(GeoSpatial.TIME_BUCKET_SIZE).o();
+           }
+
+           if (sps.containsKey(GeoSpatial.AGGREGATE_FIELD)) {
+               this.aggregateField = sps.get(GeoSpatial.AGGREGATE_FIELD).o();
+           }
+
            if (sps.containsKey(GeoSpatial.LOCATION_VALUE)) {
                
                final StatementPatternNode sp = sps.get(GeoSpatial.LOCATION_VALUE);
@@ -2242,6 +3240,42 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                this.distanceVar = (IVariable<?>) sp.o().getValueExpression();
 
            }
+           
+           if (sps.containsKey(GeoSpatial.COUNT_VALUE)) {
+
+               final StatementPatternNode sp = sps.get(GeoSpatial.COUNT_VALUE);
+               if (!sp.o().isVariable()) {
+                   throw new GeoSpatialSearchException(
+                       "countValue property must point to a variable");
+               }
+
+               this.countVar = (IVariable<?>) sp.o().getValueExpression();
+
+           }
+           
+           if (sps.containsKey(GeoSpatial.MIN_VALUE)) {
+
+               final StatementPatternNode sp = sps.get(GeoSpatial.MIN_VALUE);
+               if (!sp.o().isVariable()) {
+                   throw new GeoSpatialSearchException(
+                       "minValue property must point to a variable");
+               }
+
+               this.minVar = (IVariable<?>) sp.o().getValueExpression();
+
+           }
+           
+           if (sps.containsKey(GeoSpatial.MAX_VALUE)) {
+
+               final StatementPatternNode sp = sps.get(GeoSpatial.MAX_VALUE);
+               if (!sp.o().isVariable()) {
+                   throw new GeoSpatialSearchException(
+                       "maxValue property must point to a variable");
+               }
+
+               this.maxVar = (IVariable<?>) sp.o().getValueExpression();
+
+           }
        }
 
        /**
@@ -2258,10 +3292,14 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                    this.spatialCircleCenter, bs);
              final Double spatialCircleRadius = resolveAsDouble(
                    this.spatialCircleRadius, bs);
+             final Integer numNeighbors = resolveAsInteger(
+                   this.numNeighbors, bs);
              final PointLatLon spatialRectangleUpperLeft = resolveAsPoint(
                    this.spatialRectangleSouthWest, bs);
              final PointLatLon spatialRectangleLowerRight = resolveAsPoint(
                    this.spatialRectangleNorthEast, bs);
+             final GeoSpatialPolygon spatialPolygon = resolveAsPolygon(
+                   this.spatialPolygon, bs);
              final UNITS spatialUnit = resolveAsSpatialDistanceUnit(
                    this.spatialUnit, bs);
              final Long coordSystem = resolveAsLong(this.coordSystem, bs);
@@ -2295,16 +3333,31 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
                  resolveAsLongDoubleArr(this.customFieldsLowerBounds, customFieldsVTs, bs);
              final Object[] customFieldsUpperBounds = 
                  resolveAsLongDoubleArr(this.customFieldsUpperBounds, customFieldsVTs, bs);
+             
+             // aggregation, if any of the aggregation predicates is given
+             final Aggregation aggregation;
+             if (gridCellSize!=null || timeBucketSize!=null || aggregateField!=null 
+                 || countVar!=null || minVar!=null || maxVar!=null) {
+                 
+                 aggregation = new Aggregation(
+                     resolveAsDouble(this.gridCellSize, bs), resolveAsLong(this.timeBucketSize, bs),
+                     resolveAsString(this.aggregateField, bs), countVar, minVar, maxVar);
+                 
+             } else {
+                 
+                 aggregation = null;
+                 
+             }
 
              final GeoSpatialQuery sq = 
                  new GeoSpatialQuery(geoSpatialConfig, searchFunction, searchDatatypeUri,
                      bs.get(searchVar), predicate, context, spatialCircleCenter, 
-                     spatialCircleRadius, spatialRectangleUpperLeft, 
-                     spatialRectangleLowerRight, spatialUnit, timeStart, timeEnd, coordSystem, 
+                     spatialCircleRadius, numNeighbors, spatialRectangleUpperLeft, 
+                     spatialRectangleLowerRight, spatialPolygon, spatialUnit, timeStart, timeEnd, coordSystem, 
                      GeoSpatialQuery.toValidatedCustomFieldsConstraints(
                          customFields, customFieldsLowerBounds, customFieldsUpperBounds), 
                      locationVar, timeVar, locationAndTimeVar, latVar, lonVar,
-                     coordSystemVar, customFieldsVar, literalVar, distanceVar, bs);
+                     coordSystemVar, customFieldsVar, literalVar, distanceVar, aggregation, bs);
 
              return sq;
        }
@@ -2380,6 +3433,25 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
            
         }
 
+        Integer resolveAsInteger(final TermNode termNode, final IBindingSet bs) {
+
+           String s = resolveAsString(termNode, bs);
+           if (s == null || s.isEmpty()) {
+              return null;
+           }
+
+           try {
+               
+              return Integer.valueOf(s);
+              
+           } catch (NumberFormatException e) {
+
+               throw new GeoSpatialSearchException("Input could not be resolved as integer value: '" + s + "'.");
+
+           }
+           
+        }
+
         Long resolveAsLong(final TermNode termNode, final IBindingSet bs) {
 
            String s = resolveAsString(termNode, bs);
@@ -2488,6 +3560,24 @@ public class GeoSpatialServiceFactory extends AbstractServiceFactoryBase {
             }
         }
 
+        GeoSpatialPolygon resolveAsPolygon(final TermNode termNode, final IBindingSet bs) {
+
+            final String s = resolveAsString(termNode, bs);
+            if (s == null || s.isEmpty()) {
+                return null;
+            }
+
+            try {
+
+                return GeoSpatialPolygon.parseWKT(s);
+
+            } catch (IllegalArgumentException e) {
+
+                throw new GeoSpatialSearchException(
+                    "Input could not be resolved as polygon: '" + s + "' (" + e.getMessage() + ").");
+            }
+        }
+
         String resolveAsString(final TermNode termNode, final IBindingSet bs) {
 
            if (termNode == null) { // term node not set explicitly
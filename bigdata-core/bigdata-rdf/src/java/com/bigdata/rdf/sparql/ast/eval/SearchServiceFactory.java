@@ -69,6 +69,7 @@ import com.bigdata.rdf.store.BD;
 import com.bigdata.rdf.store.BDS;
 import com.bigdata.search.Hiterator;
 import com.bigdata.search.IHit;
+import com.bigdata.search.ScoringModelEnum;
 import com.bigdata.striterator.ChunkedWrappedIterator;
 import com.bigdata.striterator.SingleValueChunkedIterator;
 
@@ -296,6 +297,18 @@ public class SearchServiceFactory extends AbstractServiceFactoryBase {
                 
                 assertObjectIsLiteral(sp);
                 
+            } else if(uri.equals(BDS.MATCH_PHRASE)) {
+                
+                assertObjectIsLiteral(sp);
+                
+            } else if(uri.equals(BDS.MATCH_NEAR)) {
+                
+                assertObjectIsLiteral(sp);
+                
+            } else if(uri.equals(BDS.SCORING_MODEL)) {
+                
+                assertObjectIsLiteral(sp);
+                
             } else if(uri.equals(BDS.SUBJECT_SEARCH)) {
                 
                 assertObjectIsLiteral(sp);
@@ -372,6 +385,9 @@ public class SearchServiceFactory extends AbstractServiceFactoryBase {
         private final Literal maxRelevance;
         private final boolean matchAllTerms;
         private final boolean matchExact;
+        private final boolean matchPhrase;
+        private final int matchNear;
+        private final ScoringModelEnum scoringModel;
         /**
 		 * @deprecated Feature was never completed due to scalability issues.
 		 * See BZLG-1548, BLZG-563.
@@ -436,6 +452,9 @@ public class SearchServiceFactory extends AbstractServiceFactoryBase {
             Literal maxRelevance = null;
             boolean matchAllTerms = false;
             boolean matchExact = false;
+            boolean matchPhrase = BDS.DEFAULT_MATCH_PHRASE;
+            int matchNear = BDS.DEFAULT_MATCH_NEAR;
+            ScoringModelEnum scoringModel = BDS.DEFAULT_SCORING_MODEL;
             boolean subjectSearch = false;
             Literal searchTimeout = null;
             Literal matchRegex = null;
@@ -468,6 +487,12 @@ public class SearchServiceFactory extends AbstractServiceFactoryBase {
                     matchAllTerms = ((Literal) oVal).booleanValue();
                 } else if (BDS.MATCH_EXACT.equals(p)) {
                     matchExact = ((Literal) oVal).booleanValue();
+                } else if (BDS.MATCH_PHRASE.equals(p)) {
+                    matchPhrase = ((Literal) oVal).booleanValue();
+                } else if (BDS.MATCH_NEAR.equals(p)) {
+                    matchNear = ((Literal) oVal).intValue();
+                } else if (BDS.SCORING_MODEL.equals(p)) {
+                    scoringModel = ScoringModelEnum.valueOf(oVal.stringValue());
                 } else if (BDS.SUBJECT_SEARCH.equals(p)) {
                     subjectSearch = ((Literal) oVal).booleanValue();
                 } else if (BDS.SEARCH_TIMEOUT.equals(p)) {
@@ -498,6 +523,9 @@ public class SearchServiceFactory extends AbstractServiceFactoryBase {
             this.maxRelevance = maxRelevance;
             this.matchAllTerms = matchAllTerms;
             this.matchExact = matchExact;
+            this.matchPhrase = matchPhrase;
+            this.matchNear = matchNear;
+            this.scoringModel = scoringModel;
             this.subjectSearch = subjectSearch;
             this.searchTimeout = searchTimeout;
             this.matchRegex = matchRegex;
@@ -540,7 +568,10 @@ public class SearchServiceFactory extends AbstractServiceFactoryBase {
                 minRank == null ? BDS.DEFAULT_MIN_RANK/*1*/ : minRank.intValue()/* minRank */,
                 maxRank == null ? BDS.DEFAULT_MAX_RANK/*Integer.MAX_VALUE*/ : maxRank.intValue()/* maxRank */,
                 searchTimeout == null ? BDS.DEFAULT_TIMEOUT/*0L*/ : searchTimeout.longValue()/* timeout */,
-                TimeUnit.MILLISECONDS
+                TimeUnit.MILLISECONDS,
+                matchPhrase,
+                matchNear,
+                scoringModel
                 ));
         
         }
@@ -580,7 +611,10 @@ public class SearchServiceFactory extends AbstractServiceFactoryBase {
                 minRank == null ? BDS.DEFAULT_MIN_RANK/*1*/ : minRank.intValue()/* minRank */,
                 maxRank == null ? BDS.DEFAULT_MAX_RANK/*Integer.MAX_VALUE*/ : maxRank.intValue()/* maxRank */,
                 searchTimeout == null ? BDS.DEFAULT_TIMEOUT/*0L*/ : searchTimeout.longValue()/* timeout */,
-                TimeUnit.MILLISECONDS
+                TimeUnit.MILLISECONDS,
+                matchPhrase,
+                matchNear,
+                scoringModel
                 ));
         
         }
@@ -0,0 +1,437 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.GroupNodeBase;
+import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.TermNode;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTPropertyPathOptimizer;
+import com.bigdata.rdf.sparql.ast.service.BigdataNativeServiceOptions;
+import com.bigdata.rdf.sparql.ast.service.BigdataServiceCall;
+import com.bigdata.rdf.sparql.ast.service.IServiceOptions;
+import com.bigdata.rdf.sparql.ast.service.ServiceCallCreateParams;
+import com.bigdata.rdf.sparql.ast.service.ServiceNode;
+import com.bigdata.rdf.spo.TransitiveClosureIndex;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.BD;
+import com.bigdata.relation.accesspath.ThickCloseableIterator;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * A factory for a service which answers an arbitrary length path over a
+ * single predicate using the {@link TransitiveClosureIndex}. It accepts a
+ * group with a single triple pattern in it:
+ * 
+ * <pre>
+ * service bd:closure {
+ *   ?s rdfs:subClassOf ?o .
+ *   
+ *   # optional service param: the minimum path length (0 or 1).
+ *     bd:serviceParam bd:closure.minLength 0 .
+ * }
+ * </pre>
+ * 
+ * The predicate must be a constant which was declared as a closure
+ * predicate for the knowledge base. The pattern is answered as
+ * <code>?s rdfs:subClassOf+ ?o</code> when the minimum length is ONE (1) (the
+ * default) and as <code>?s rdfs:subClassOf* ?o</code> when the minimum length
+ * is ZERO (0). As for the arbitrary length path operator, the zero length
+ * paths for a pattern with two unbound variables are the nodes which appear
+ * in the closure.
+ * <p>
+ * The closure is maintained over both the explicit and the inferred
+ * statements, so this service must not be used for queries which exclude the
+ * inferred statements.
+ * <p>
+ * The {@link ASTPropertyPathOptimizer} rewrites property paths over closure
+ * predicates into this service, so it is not normally used directly. It does
+ * not do so when the query does not include the inferred statements.
+ * 
+ * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+ */
+public class TransitiveClosureServiceFactory extends AbstractServiceFactory {
+
+    private static final Logger log = Logger
+            .getLogger(TransitiveClosureServiceFactory.class);
+
+    /**
+     * The URI service key.
+     */
+    public static final URI SERVICE_KEY = new URIImpl(BD.NAMESPACE+"closure");
+
+    /**
+     * The service params for this service.
+     */
+    public static interface ClosureParams {
+
+        /**
+         * The minimum length of the path (0 or 1).
+         */
+        URI MIN_LENGTH = new URIImpl(SERVICE_KEY.stringValue() + ".minLength");
+
+        /**
+         * Default = 1.
+         */
+        int DEFAULT_MIN_LENGTH = 1;
+
+    }
+
+    private final BigdataNativeServiceOptions serviceOptions;
+
+    public TransitiveClosureServiceFactory() {
+
+        serviceOptions = new BigdataNativeServiceOptions();
+
+    }
+
+    @Override
+    public BigdataNativeServiceOptions getServiceOptions() {
+
+        return serviceOptions;
+
+    }
+
+    @Override
+    public BigdataServiceCall create(final ServiceCallCreateParams params,
+            final ServiceParams serviceParams) {
+
+        final AbstractTripleStore store = params.getTripleStore();
+
+        final ServiceNode serviceNode = params.getServiceNode();
+
+        final StatementPatternNode sp = verifyGraphPattern(store,
+                serviceNode.getGraphPattern(), serviceParams);
+
+        final int minLength = serviceParams.getAsInt(ClosureParams.MIN_LENGTH,
+                ClosureParams.DEFAULT_MIN_LENGTH);
+
+        if (minLength != 0 && minLength != 1)
+            throw new RuntimeException("illegal value for "
+                    + ClosureParams.MIN_LENGTH + ": " + minLength);
+
+        return new ClosureCall(store, sp, minLength, serviceOptions);
+
+    }
+
+    /**
+     * Verify that there is only a single statement pattern node, that its
+     * predicate is a closure predicate and that the service parameters are
+     * valid.
+     */
+    private StatementPatternNode verifyGraphPattern(
+            final AbstractTripleStore database,
+            final GroupNodeBase<IGroupMemberNode> group,
+            final ServiceParams params) {
+
+        final Iterator<Map.Entry<URI, List<TermNode>>> it = params.iterator();
+
+        while (it.hasNext()) {
+
+            final URI param = it.next().getKey();
+
+            if (!ClosureParams.MIN_LENGTH.equals(param)) {
+
+                throw new RuntimeException("unrecognized param: " + param);
+
+            }
+
+        }
+
+        StatementPatternNode sp = null;
+
+        for (IGroupMemberNode node : group) {
+
+            if (!(node instanceof StatementPatternNode)) {
+
+                throw new RuntimeException("only statement patterns allowed");
+
+            }
+
+            final StatementPatternNode tmp = (StatementPatternNode) node;
+
+            if (tmp.s().isConstant()
+                    && BD.SERVICE_PARAM.equals(tmp.s().getValue())) {
+
+                continue;
+
+            }
+
+            if (sp != null) {
+
+                throw new RuntimeException(
+                        "group must contain a single statement pattern");
+
+            }
+
+            sp = tmp;
+
+        }
+
+        if (sp == null) {
+
+            throw new RuntimeException(
+                    "group must contain a single statement pattern");
+
+        }
+
+        if (!sp.p().isConstant()
+                || !database.getSPORelation().isClosurePredicate(
+                        sp.p().getValueExpression().get())) {
+
+            throw new RuntimeException("not a closure predicate: " + sp.p());
+
+        }
+
+        return sp;
+
+    }
+
+    /**
+     * Note: This has the {@link AbstractTripleStore} reference attached. This
+     * is not a {@link Serializable} object. It MUST run on the query
+     * controller.
+     */
+    @SuppressWarnings("rawtypes")
+    private static class ClosureCall implements BigdataServiceCall {
+
+        private final AbstractTripleStore db;
+        private final StatementPatternNode sp;
+        private final int minLength;
+        private final IServiceOptions serviceOptions;
+
+        public ClosureCall(final AbstractTripleStore db,
+                final StatementPatternNode sp, final int minLength,
+                final IServiceOptions serviceOptions) {
+
+            if (db == null)
+                throw new IllegalArgumentException();
+
+            if (sp == null)
+                throw new IllegalArgumentException();
+
+            if (serviceOptions == null)
+                throw new IllegalArgumentException();
+
+            this.db = db;
+            this.sp = sp;
+            this.minLength = minLength;
+            this.serviceOptions = serviceOptions;
+
+        }
+
+        /**
+         * Return the value of the term for the solution -or- <code>null</code>
+         * if the term is a variable which is not bound by the solution.
+         */
+        private static IV get(final TermNode term, final IBindingSet bs) {
+
+            if (term.isConstant())
+                return term.getValueExpression().get();
+
+            final IConstant<?> c = bs == null ? null : bs.get((IVariable) term
+                    .getValueExpression());
+
+            return c == null ? null : (IV) c.get();
+
+        }
+
+        /**
+         * Run the closure lookup for each distinct combination of the bound
+         * endpoints in the incoming solutions.
+         */
+        @Override
+        public ICloseableIterator<IBindingSet> call(final IBindingSet[] bc) {
+
+            final TransitiveClosureIndex ndx = db.getSPORelation()
+                    .getTransitiveClosureIndex();
+
+            final IV p = sp.p().getValueExpression().get();
+
+            final TermNode st = sp.s(), ot = sp.o();
+
+            // The endpoints which have already been looked up.
+            final Set<List<IV>> seen = new HashSet<List<IV>>();
+
+            final Set<List<IV>> pairs = new LinkedHashSet<List<IV>>();
+
+            final int n = bc == null || bc.length == 0 ? 1 : bc.length;
+
+            for (int i = 0; i < n; i++) {
+
+                final IBindingSet bs = bc == null || bc.length == 0 ? null
+                        : bc[i];
+
+                final IV s = get(st, bs), o = get(ot, bs);
+
+                final List<IV> key = new ArrayList<IV>(2);
+                key.add(s);
+                key.add(o);
+
+                if (!seen.add(key))
+                    continue;
+
+                if (s != null && o != null) {
+
+                    if ((minLength == 0 && s.equals(o)) || ndx.contains(p, s, o))
+                        pairs.add(key);
+
+                } else if (s != null) {
+
+                    if (minLength == 0)
+                        pairs.add(pair(s, s));
+
+                    final Iterator<IV> itr = ndx.getSuccessors(p, s);
+
+                    while (itr.hasNext())
+                        pairs.add(pair(s, itr.next()));
+
+                } else if (o != null) {
+
+                    if (minLength == 0)
+                        pairs.add(pair(o, o));
+
+                    final Iterator<IV> itr = ndx.getPredecessors(p, o);
+
+                    while (itr.hasNext())
+                        pairs.add(pair(itr.next(), o));
+
+                } else {
+
+                    final Iterator<IV[]> itr = ndx.getPairs(p);
+
+                    final Set<IV> nodes = new LinkedHashSet<IV>();
+
+                    while (itr.hasNext()) {
+
+                        final IV[] a = itr.next();
+
+                        pairs.add(pair(a[0], a[1]));
+
+                        if (minLength == 0) {
+                            nodes.add(a[0]);
+                            nodes.add(a[1]);
+                        }
+
+                    }
+
+                    for (IV x : nodes)
+                        pairs.add(pair(x, x));
+
+                }
+
+            }
+
+            final List<IBindingSet> out = new ArrayList<IBindingSet>(
+                    pairs.size());
+
+            for (List<IV> pair : pairs) {
+
+                final IBindingSet bs = new ListBindingSet();
+
+                if (!bind(bs, st, pair.get(0)) || !bind(bs, ot, pair.get(1)))
+                    continue;
+
+                out.add(bs);
+
+            }
+
+            if (log.isDebugEnabled())
+                log.debug("p=" + p + ", nin=" + n + ", lookups=" + seen.size()
+                        + ", nout=" + out.size());
+
+            return new ThickCloseableIterator<IBindingSet>(
+                    out.toArray(new IBindingSet[out.size()]), out.size());
+
+        }
+
+        private static List<IV> pair(final IV s, final IV o) {
+
+            final List<IV> pair = new ArrayList<IV>(2);
+            pair.add(s);
+            pair.add(o);
+            return pair;
+
+        }
+
+        /**
+         * Bind the variable (if the term is a variable).
+         * 
+         * @return <code>false</code> iff the variable is already bound to a
+         *         different value (e.g., <code>?x p+ ?x</code>).
+         */
+        @SuppressWarnings("unchecked")
+        private static boolean bind(final IBindingSet bs, final TermNode term,
+                final IV val) {
+
+            if (term.isConstant())
+                return true;
+
+            final IVariable var = (IVariable) term.getValueExpression();
+
+            final IConstant<?> old = bs.get(var);
+
+            if (old != null)
+                return old.get().equals(val);
+
+            bs.set(var, new Constant<IV>(val));
+
+            return true;
+
+        }
+
+        @Override
+        public IServiceOptions getServiceOptions() {
+
+            return serviceOptions;
+
+        }
+
+    }
+
+}
@@ -101,6 +101,9 @@ public class QueryHintRegistry {
         add(new RTOSampleTypeQueryHint());
         add(new RTOLimitQueryHint());
         add(new RTONEdgesQueryHint());
+        add(new RTOMaxOptimizerMillisQueryHint());
+        add(new RTOParallelSamplingQueryHint());
+        add(new AdaptiveJoinThresholdQueryHint());
         add(new OptimisticQueryHint());
         add(new NormalizeFilterExpressionHint());
 
@@ -114,6 +117,7 @@ public class QueryHintRegistry {
         
         // JOIN hints.
         add(new MergeJoinHint());
+        add(new CommonSubexpressionEliminationHint());
         add(new HashJoinHint());
         add(new KeyOrderHint());
         add(new RemoteAPHint());
@@ -129,6 +133,9 @@ public class QueryHintRegistry {
 
         // CONSTRUCT
         add(new ConstructDistinctSPOHint());
+
+        // Top-level projection materialization.
+        add(new LateMaterializationHint());
         
         /*
          * BufferAnnotations
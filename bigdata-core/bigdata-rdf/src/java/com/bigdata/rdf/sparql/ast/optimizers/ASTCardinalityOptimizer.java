@@ -24,19 +24,31 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.rdf.sparql.ast.optimizers;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 
 import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IVariable;
+import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.sparql.ast.ArbitraryLengthPathNode;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
 import com.bigdata.rdf.sparql.ast.IBindingProducerNode;
 import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
 import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
 import com.bigdata.rdf.sparql.ast.StaticAnalysis;
+import com.bigdata.rdf.sparql.ast.TermNode;
 import com.bigdata.rdf.sparql.ast.UnionNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTStaticJoinOptimizer.Annotations;
+import com.bigdata.rdf.spo.CardinalitySketches;
+import com.bigdata.rdf.store.AbstractTripleStore;
 
 /**
  * Calculate the estimated cardinality of a join group.
@@ -158,10 +170,255 @@ public class ASTCardinalityOptimizer extends AbstractJoinGroupOptimizer
 		     * ASTStaticJoinOptimizer.
 		     */
 		    
+		    /*
+		     * If the group is a star pattern then we can estimate its
+		     * cardinality from the characteristic sets (if available).
+		     */
+		    final List<StatementPatternNode> sps = group.getStatementPatterns();
+		    
+		    if (sps.size() == nodes.size()) {
+		        
+		        final long cardinality = StaticOptimizer.estimateStarCardinality(
+		                StaticOptimizer.getStatistics(ctx), sps, null/* boundVars */);
+		        
+		        if (cardinality >= 0L) {
+		            
+		            if (log.isDebugEnabled()) {
+		                log.debug("setting cardinality on a star pattern: " + cardinality);
+		            }
+		            
+		            group.setProperty(Annotations.ESTIMATED_CARDINALITY, cardinality);
+		            
+		        } else {
+		            
+		            /*
+		             * Otherwise we can estimate the cardinality of the joins
+		             * from the distinct counts of the join variables (if the
+		             * cardinality sketches are available).
+		             */
+		            final long joinCardinality = estimateJoinCardinality(ctx, sps);
+		            
+		            if (joinCardinality >= 0L) {
+		                
+		                if (log.isDebugEnabled()) {
+		                    log.debug("setting cardinality on a join: " + joinCardinality);
+		                }
+		                
+		                group.setProperty(Annotations.ESTIMATED_CARDINALITY, joinCardinality);
+		                
+		            }
+		            
+		        }
+		        
+		    }
+		    
 		}
 		
 //		group.setProperty(Annotations.ESTIMATED_CARDINALITY, cardinality);
         
     }
+
+	/**
+	 * Estimate the cardinality of the join of a set of statement patterns from
+	 * the distinct counts of their join variables. The patterns are joined
+	 * greedily, always choosing a pattern which shares a variable with the
+	 * patterns already joined. Each join is estimated as
+	 * 
+	 * <pre>
+	 * |A join B| = |A| * |B| / max(V(A,x), V(B,x))
+	 * </pre>
+	 * 
+	 * where <code>V(A,x)</code> is the #of distinct values of the join variable
+	 * <code>x</code> in <code>A</code>. The distinct counts for the statement
+	 * patterns are taken from the {@link CardinalitySketches}.
+	 * 
+	 * @param ctx
+	 *            The evaluation context.
+	 * @param sps
+	 *            The statement patterns, each of which must have an
+	 *            {@link Annotations#ESTIMATED_CARDINALITY}.
+	 * 
+	 * @return The estimated cardinality -or- <code>-1L</code> if it can not be
+	 *         estimated (sketches not available, optional patterns, or a
+	 *         pattern which does not share a variable with the others).
+	 */
+	static long estimateJoinCardinality(final AST2BOpContext ctx,
+			final List<StatementPatternNode> sps) {
+
+		if (sps.isEmpty())
+			return -1L;
+
+		for (StatementPatternNode sp : sps) {
+
+			if (sp.isOptional()
+					|| sp.getProperty(Annotations.ESTIMATED_CARDINALITY) == null)
+				return -1L;
+
+		}
+
+		final List<StatementPatternNode> remaining = new LinkedList<StatementPatternNode>(
+				sps);
+
+		// The estimated #of distinct values for each joined variable.
+		final Map<IVariable<?>, Long> distinct = new LinkedHashMap<IVariable<?>, Long>();
+
+		double cardinality = -1d;
+
+		while (!remaining.isEmpty()) {
+
+			StatementPatternNode next = null;
+
+			IVariable<?> joinVar = null;
+
+			if (cardinality < 0d) {
+
+				next = remaining.get(0);
+
+			} else {
+
+				for (StatementPatternNode sp : remaining) {
+
+					for (IVariable<?> var : sp.getProducedBindings()) {
+
+						if (distinct.containsKey(var)) {
+							next = sp;
+							joinVar = var;
+							break;
+						}
+
+					}
+
+					if (next != null)
+						break;
+
+				}
+
+				if (next == null) {
+					// Cross product (or no distinct counts).
+					return -1L;
+				}
+
+			}
+
+			remaining.remove(next);
+
+			final long card = (Long) next
+					.getProperty(Annotations.ESTIMATED_CARDINALITY);
+
+			if (cardinality < 0d) {
+
+				cardinality = card;
+
+			} else {
+
+				final long v = estimateDistinctCount(ctx, next, joinVar);
+
+				if (v < 0L)
+					return -1L;
+
+				final long u = distinct.get(joinVar);
+
+				cardinality = cardinality * card / Math.max(1L, Math.max(u, v));
+
+				distinct.put(joinVar, Math.min(u, v));
+
+			}
+
+			for (IVariable<?> var : next.getProducedBindings()) {
+
+				if (var.equals(joinVar))
+					continue;
+
+				final long v = estimateDistinctCount(ctx, next, var);
+
+				if (v < 0L)
+					continue;
+
+				final Long u = distinct.get(var);
+
+				distinct.put(var, u == null ? v : Math.min(u, v));
+
+			}
+
+			// A variable can not have more distinct values than solutions.
+			for (Map.Entry<IVariable<?>, Long> e : distinct.entrySet()) {
+
+				e.setValue(Math.min(e.getValue(), (long) Math.ceil(cardinality)));
+
+			}
+
+		}
+
+		return Math.round(cardinality);
+
+	}
+
+	/**
+	 * Return the estimated #of distinct values of a variable in the solutions
+	 * of a statement pattern. This is an O(1) lookup against the
+	 * {@link CardinalitySketches} (similar to the fast range count used for
+	 * the estimated cardinality of the statement pattern). Variables in the
+	 * other positions are treated as unbound.
+	 * 
+	 * @param ctx
+	 *            The evaluation context.
+	 * @param sp
+	 *            The statement pattern.
+	 * @param var
+	 *            The variable.
+	 * 
+	 * @return The estimated distinct count -or- <code>-1L</code> if it is not
+	 *         available (sketches not enabled or not maintained for the
+	 *         constants in the statement pattern, a range constraint, or the
+	 *         variable does not appear exactly once in the statement pattern).
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static long estimateDistinctCount(final AST2BOpContext ctx,
+			final StatementPatternNode sp, final IVariable<?> var) {
+
+		final AbstractTripleStore db = ctx == null ? null : ctx
+				.getAbstractTripleStore();
+
+		if (db == null || sp.getRange() != null)
+			return -1L;
+
+		final boolean quads = db.isQuads();
+
+		final TermNode[] terms = new TermNode[] { sp.s(), sp.p(), sp.o(),
+				quads ? sp.c() : null };
+
+		final IV[] spoc = new IV[4];
+
+		int target = -1;
+
+		for (int i = 0; i < terms.length; i++) {
+
+			final TermNode t = terms[i];
+
+			if (t instanceof ConstantNode) {
+
+				spoc[i] = ((IConstant<IV>) t.getValueExpression()).get();
+
+			} else if (t instanceof VarNode
+					&& ((VarNode) t).getValueExpression().equals(var)) {
+
+				if (target != -1) {
+					// The variable appears more than once.
+					return -1L;
+				}
+
+				target = i;
+
+			}
+
+		}
+
+		if (target == -1)
+			return -1L;
+
+		return db.getSPORelation().estimateDistinctCount(spoc[0], spoc[1],
+				spoc[2], spoc[3], target);
+
+	}
 	
 }
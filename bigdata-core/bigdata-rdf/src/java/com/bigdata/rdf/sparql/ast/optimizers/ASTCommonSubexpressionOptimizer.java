@@ -0,0 +1,504 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.optimizers;
+
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IVariable;
+import com.bigdata.rdf.sparql.ast.ASTBase;
+import com.bigdata.rdf.sparql.ast.FilterNode;
+import com.bigdata.rdf.sparql.ast.GraphPatternGroup;
+import com.bigdata.rdf.sparql.ast.GroupNodeBase;
+import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
+import com.bigdata.rdf.sparql.ast.IQueryNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.NamedSubqueriesNode;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryInclude;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryRoot;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.QueryNodeWithBindingSet;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.SubqueryRoot;
+import com.bigdata.rdf.sparql.ast.UnionNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.sparql.ast.service.ServiceNode;
+
+/**
+ * Common subexpression elimination. Identifies parts of the query which would
+ * otherwise be evaluated more than once and rewrites them such that they are
+ * evaluated once into a named solution set which is then INCLUDEd wherever
+ * the subexpression appeared. Two kinds of common subexpressions are
+ * recognized:
+ * <dl>
+ * <dt>Repeated subqueries</dt>
+ * <dd>SPARQL 1.1 SELECT subqueries which are structurally identical (same
+ * projection, WHERE clause, solution modifiers and query hints). All such
+ * subqueries are replaced by an INCLUDE of a single
+ * {@link NamedSubqueryRoot}.</dd>
+ * <dt>UNION prefixes</dt>
+ * <dd>Required statement patterns which appear at the start of every branch
+ * of a UNION (the patterns may appear in any order within each branch). Since
+ * <code>UNION(A.B, A.C) := A.UNION(B,C)</code>, those statement patterns are
+ * lifted into a {@link NamedSubqueryRoot} and each branch joins against the
+ * shared solution set rather than re-evaluating the shared patterns.</dd>
+ * </dl>
+ * The named solution set is materialized using either an <code>HTree</code> or a
+ * JVM hash index depending on {@link AST2BOpContext#nativeHashJoins}. The
+ * dependencies among the named subqueries and the join variables for the
+ * INCLUDEs are determined later by the {@link ASTNamedSubqueryOptimizer}.
+ * <p>
+ * Note: This optimizer is disabled by default since a pipelined evaluation
+ * of a subexpression can be more selective than its bottom-up evaluation
+ * when the incoming solutions bind variables used by that subexpression. It
+ * is enabled using {@link QueryHints#COMMON_SUBEXPRESSION_ELIMINATION}.
+ * <p>
+ * Note: UNIONs whose statement patterns have a GRAPH context are not
+ * rewritten since the shared statement patterns would lose that context when
+ * they are lifted out of the GRAPH group.
+ * 
+ * @see QueryHints#COMMON_SUBEXPRESSION_ELIMINATION
+ * @see ASTSparql11SubqueryOptimizer
+ */
+public class ASTCommonSubexpressionOptimizer implements IASTOptimizer {
+
+    private static final Logger log = Logger
+            .getLogger(ASTCommonSubexpressionOptimizer.class);
+
+    /**
+     * The minimum #of statement patterns which must be shared by all branches
+     * of a UNION before they will be lifted into a named subquery. A single
+     * shared statement pattern is just an access path, which is cheaper to
+     * re-read than to materialize.
+     */
+    static final int MIN_SHARED_PATTERNS = 2;
+
+    @Override
+    public QueryNodeWithBindingSet optimize(
+            final AST2BOpContext context, final QueryNodeWithBindingSet input) {
+
+        final IQueryNode queryNode = input.getQueryNode();
+        final IBindingSet[] bindingSets = input.getBindingSets();
+
+        if (!context.commonSubexpressionElimination)
+            return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+        if (!(queryNode instanceof QueryRoot))
+            return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+        final QueryRoot queryRoot = (QueryRoot) queryNode;
+
+        /*
+         * Repeated subqueries.
+         */
+        {
+
+            final List<SubqueryRoot> subqueries = new LinkedList<SubqueryRoot>();
+
+            for (GraphPatternGroup<IGroupMemberNode> whereClause : getWhereClauses(queryRoot)) {
+
+                collectSubqueries(whereClause, subqueries);
+
+            }
+
+            for (List<SubqueryRoot> occurrences : groupEquals(subqueries)) {
+
+                if (occurrences.size() < 2)
+                    continue;
+
+                final String name = "-cse-" + context.nextId();
+
+                for (SubqueryRoot subqueryRoot : occurrences) {
+
+                    ASTSparql11SubqueryOptimizer.replaceWithInclude(
+                            subqueryRoot, name);
+
+                }
+
+                queryRoot.getNamedSubqueriesNotNull().add(
+                        ASTSparql11SubqueryOptimizer.newNamedSubqueryRoot(
+                                occurrences.get(0), name));
+
+                if (log.isInfoEnabled())
+                    log.info("Shared " + occurrences.size()
+                            + " occurrences of subquery as " + name);
+
+            }
+
+        }
+
+        /*
+         * Statement patterns shared by all branches of a UNION.
+         */
+        {
+
+            /*
+             * Note: The WHERE clauses are collected again since the shared
+             * subqueries are now WHERE clauses of named subqueries.
+             */
+            final List<UnionNode> unions = new LinkedList<UnionNode>();
+
+            for (GraphPatternGroup<IGroupMemberNode> whereClause : getWhereClauses(queryRoot)) {
+
+                collectUnions(whereClause, unions);
+
+            }
+
+            for (UnionNode union : unions) {
+
+                liftSharedPrefix(context, queryRoot, union);
+
+            }
+
+        }
+
+        return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+    }
+
+    /**
+     * Return the WHERE clauses of the query and its named subqueries.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<GraphPatternGroup<IGroupMemberNode>> getWhereClauses(
+            final QueryRoot queryRoot) {
+
+        final List<GraphPatternGroup<IGroupMemberNode>> whereClauses = new LinkedList<GraphPatternGroup<IGroupMemberNode>>();
+
+        if (queryRoot.getWhereClause() != null) {
+
+            whereClauses.add(queryRoot.getWhereClause());
+
+        }
+
+        if (queryRoot.getNamedSubqueries() != null) {
+
+            final NamedSubqueriesNode namedSubqueries = queryRoot
+                    .getNamedSubqueries();
+
+            for (int i = 0; i < namedSubqueries.size(); i++) {
+
+                final NamedSubqueryRoot namedSubquery = (NamedSubqueryRoot) namedSubqueries
+                        .get(i);
+
+                if (namedSubquery.getWhereClause() != null) {
+
+                    whereClauses.add(namedSubquery.getWhereClause());
+
+                }
+
+            }
+
+        }
+
+        return whereClauses;
+
+    }
+
+    /**
+     * Collect the SELECT subqueries within the group. This does not recurse
+     * into subqueries (a subquery which is shared carries its own subqueries
+     * along with it) or into {@link ServiceNode}s (which are evaluated
+     * remotely).
+     */
+    private static void collectSubqueries(final GroupNodeBase<?> group,
+            final List<SubqueryRoot> subqueries) {
+
+        for (int i = 0; i < group.arity(); i++) {
+
+            final BOp child = group.get(i);
+
+            if (child instanceof SubqueryRoot) {
+
+                if (((SubqueryRoot) child).getQueryType() == QueryType.SELECT) {
+
+                    subqueries.add((SubqueryRoot) child);
+
+                }
+
+            } else if (child instanceof GroupNodeBase<?>) {
+
+                collectSubqueries((GroupNodeBase<?>) child, subqueries);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Collect the UNIONs within the group, including those within SPARQL 1.1
+     * subqueries but not those within {@link ServiceNode}s. The UNIONs are reported
+     * in post-order so a nested UNION is rewritten before the UNION which
+     * contains it.
+     */
+    private static void collectUnions(final GroupNodeBase<?> group,
+            final List<UnionNode> unions) {
+
+        for (int i = 0; i < group.arity(); i++) {
+
+            final BOp child = group.get(i);
+
+            if (child instanceof GroupNodeBase<?>) {
+
+                collectUnions((GroupNodeBase<?>) child, unions);
+
+            } else if (child instanceof SubqueryRoot) {
+
+                final GroupNodeBase<?> whereClause = ((SubqueryRoot) child)
+                        .getWhereClause();
+
+                if (whereClause != null)
+                    collectUnions(whereClause, unions);
+
+            }
+
+        }
+
+        if (group instanceof UnionNode)
+            unions.add((UnionNode) group);
+
+    }
+
+    /**
+     * Partition the nodes into lists of structurally equal nodes, preserving
+     * the order in which the nodes were first encountered.
+     * <p>
+     * Note: AST nodes cache their hash code, so they can not be used as keys
+     * in a hash map once they have been modified by an optimizer. The nodes
+     * are compared using {@link Object#equals(Object)} instead.
+     */
+    private static <T> List<List<T>> groupEquals(final List<T> nodes) {
+
+        final List<List<T>> groups = new LinkedList<List<T>>();
+
+        for (T node : nodes) {
+
+            List<T> group = null;
+
+            for (List<T> t : groups) {
+
+                if (t.get(0).equals(node)) {
+
+                    group = t;
+
+                    break;
+
+                }
+
+            }
+
+            if (group == null) {
+
+                group = new LinkedList<T>();
+
+                groups.add(group);
+
+            }
+
+            group.add(node);
+
+        }
+
+        return groups;
+
+    }
+
+    /**
+     * Return the required statement patterns at the start of the join group,
+     * skipping over any FILTERs and stopping at the first node of any other
+     * type.
+     */
+    private static List<StatementPatternNode> getRequiredPrefix(
+            final JoinGroupNode group) {
+
+        final List<StatementPatternNode> prefix = new LinkedList<StatementPatternNode>();
+
+        for (IGroupMemberNode child : group) {
+
+            if (child instanceof FilterNode)
+                continue;
+
+            if (!(child instanceof StatementPatternNode))
+                break;
+
+            final StatementPatternNode sp = (StatementPatternNode) child;
+
+            if (sp.isOptional() || sp.isMinus())
+                break;
+
+            prefix.add(sp);
+
+        }
+
+        return prefix;
+
+    }
+
+    /**
+     * If each branch of the UNION begins with the same required statement
+     * patterns, then lift those statement patterns into a named subquery and
+     * replace them in each branch with an INCLUDE of that named subquery.
+     */
+    private static void liftSharedPrefix(final AST2BOpContext context,
+            final QueryRoot queryRoot, final UnionNode union) {
+
+        if (union.arity() < 2)
+            return;
+
+        final List<List<StatementPatternNode>> prefixes = new LinkedList<List<StatementPatternNode>>();
+
+        for (IGroupMemberNode child : union) {
+
+            if (!(child instanceof JoinGroupNode))
+                return;
+
+            final JoinGroupNode branch = (JoinGroupNode) child;
+
+            if (branch.getContext() != null) {
+                // Do not lift statement patterns out of a GRAPH group.
+                return;
+            }
+
+            prefixes.add(getRequiredPrefix(branch));
+
+        }
+
+        /*
+         * The statement patterns in the prefix of the first branch which also
+         * appear in the prefix of every other branch.
+         */
+        final List<StatementPatternNode> shared = new LinkedList<StatementPatternNode>();
+
+        for (StatementPatternNode sp : prefixes.get(0)) {
+
+            boolean found = true;
+
+            for (List<StatementPatternNode> prefix : prefixes) {
+
+                if (!prefix.contains(sp)) {
+
+                    found = false;
+
+                    break;
+
+                }
+
+            }
+
+            if (found && !shared.contains(sp))
+                shared.add(sp);
+
+        }
+
+        if (shared.size() < MIN_SHARED_PATTERNS)
+            return;
+
+        final String name = "-cse-" + context.nextId();
+
+        for (IGroupMemberNode child : union) {
+
+            final JoinGroupNode branch = (JoinGroupNode) child;
+
+            for (StatementPatternNode sp : shared) {
+
+                // Remove the first occurrence within the prefix.
+                for (StatementPatternNode t : getRequiredPrefix(branch)) {
+
+                    if (t.equals(sp)) {
+
+                        branch.removeChild(t);
+
+                        break;
+
+                    }
+
+                }
+
+            }
+
+            final NamedSubqueryInclude include = new NamedSubqueryInclude(name);
+
+            include.setQueryHints((Properties) branch
+                    .getProperty(ASTBase.Annotations.QUERY_HINTS));
+
+            branch.addArg(0, include);
+
+        }
+
+        /*
+         * Note: The shared statement patterns were removed from the first
+         * branch above, so they may now be attached to the named subquery.
+         */
+        final JoinGroupNode whereClause = new JoinGroupNode();
+
+        final Set<IVariable<?>> vars = new LinkedHashSet<IVariable<?>>();
+
+        for (StatementPatternNode sp : shared) {
+
+            whereClause.addChild(sp);
+
+            vars.addAll(sp.getProducedBindings());
+
+        }
+
+        final ProjectionNode projection = new ProjectionNode();
+
+        for (IVariable<?> var : vars) {
+
+            projection.addProjectionVar(new VarNode(var.getName()));
+
+        }
+
+        final NamedSubqueryRoot nsr = new NamedSubqueryRoot(QueryType.SELECT,
+                name);
+
+        nsr.setProjection(projection);
+
+        nsr.setWhereClause(whereClause);
+
+        queryRoot.getNamedSubqueriesNotNull().add(nsr);
+
+        if (log.isInfoEnabled())
+            log.info("Shared " + shared.size() + " statement patterns across "
+                    + union.arity() + " UNION branches as " + name);
+
+    }
+
+}
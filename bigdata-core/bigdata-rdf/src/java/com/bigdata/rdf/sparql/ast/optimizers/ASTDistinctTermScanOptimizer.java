@@ -362,7 +362,9 @@ public class ASTDistinctTermScanOptimizer implements IASTOptimizer {
       /**
        * Change the estimated cardinality.
        * 
-       * The new cardinality is:
+       * The new cardinality is the estimated #of distinct values of the
+       * projected variable from the cardinality sketches (if available).
+       * Otherwise it is:
        * 
        * <pre>
        * newCard = oldCard * 1.0 / arity(context, sp)
@@ -377,8 +379,11 @@ public class ASTDistinctTermScanOptimizer implements IASTOptimizer {
          throw new AssertionError(
                "Expecting estimated-cardinality to be bound: sp=" + sp);
       }
+      final long distinctCount = ASTCardinalityOptimizer
+            .estimateDistinctCount(context, sp, projectedVar);
       final int arity = context.isQuads() ? 4 : 3;
-      final long newCard = (long) (oldCard * 1.0 / arity);
+      final long newCard = distinctCount >= 0L ? distinctCount
+            : (long) (oldCard * 1.0 / arity);
 
       sp.setProperty(AST2BOpBase.Annotations.ESTIMATED_CARDINALITY, newCard);
 
@@ -0,0 +1,398 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.optimizers;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IVariable;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.IQueryNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.NamedSubqueriesNode;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryInclude;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryRoot;
+import com.bigdata.rdf.sparql.ast.OrderByExpr;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryBase;
+import com.bigdata.rdf.sparql.ast.QueryNodeWithBindingSet;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.SubqueryRoot;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.sparql.ast.service.CustomServiceFactory;
+import com.bigdata.rdf.sparql.ast.service.ServiceRegistry;
+import com.bigdata.rdf.sparql.ast.service.storedquery.MaterializedViewService;
+import com.bigdata.rdf.sparql.ast.service.storedquery.MaterializedViewService.ViewDefinition;
+import com.bigdata.rdf.store.AbstractTripleStore;
+
+import cutthecrap.utils.striterators.Striterator;
+
+/**
+ * Rewrites a query (or sub-select) which computes the same solutions as a
+ * {@link MaterializedViewService} such that it reads the named solution set
+ * in which the view is materialized:
+ * 
+ * <pre>
+ * SELECT ?type (COUNT(*) AS ?n) { ?s a ?type } GROUP BY ?type ORDER BY DESC(?n)
+ * </pre>
+ * 
+ * becomes
+ * 
+ * <pre>
+ * SELECT ?type ?n { INCLUDE %typeCounts } ORDER BY DESC(?n)
+ * </pre>
+ * 
+ * The query and the view definition are compared structurally (after parsing
+ * and {@link IV} resolution), so they match regardless of differences in
+ * white space, PREFIX declarations, etc. A view is only used if it has been
+ * maintained for the commit point against which the query reads, the query
+ * does not have exogenous bindings (which would change the solutions of the
+ * query) and the query includes inferred statements iff the view does.
+ * <p>
+ * The views used by the query are recorded on the optimized AST (see
+ * {@link QueryRoot.Annotations#MATERIALIZED_VIEWS}). Such a query is not
+ * entered into the query plan cache or the SPARQL result cache since its
+ * solutions depend on the state of the view rather than on the statements
+ * which it reads.
+ * <p>
+ * Note: This optimizer runs first since it must see the query as it was
+ * parsed. It does not introduce any aggregates.
+ * 
+ * @see MaterializedViewService
+ */
+public class ASTMaterializedViewOptimizer implements IASTOptimizer {
+
+    private static final Logger log = Logger
+            .getLogger(ASTMaterializedViewOptimizer.class);
+
+    @Override
+    public QueryNodeWithBindingSet optimize(
+            final AST2BOpContext context, final QueryNodeWithBindingSet input) {
+
+        final IQueryNode queryNode = input.getQueryNode();
+        final IBindingSet[] bindingSets = input.getBindingSets();
+
+        if (!(queryNode instanceof QueryRoot))
+            return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+        if (context.solutionSetManager == null)
+            return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+        if (bindingSets != null) {
+
+            for (IBindingSet bset : bindingSets) {
+
+                if (!bset.isEmpty()) {
+
+                    // Exogenous bindings.
+                    return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+                }
+
+            }
+
+        }
+
+        final List<ViewDefinition> views = getViews(context);
+
+        if (views.isEmpty())
+            return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+        final QueryRoot queryRoot = (QueryRoot) queryNode;
+
+        // Sub-selects read the same access paths as the top-level query.
+        final boolean includeInferred = queryRoot.getIncludeInferred();
+
+        // The top-level query.
+        for (ViewDefinition view : views) {
+
+            if (view.matches(queryRoot, includeInferred)
+                    && isOrderByProjectedVars(queryRoot)) {
+
+                rewriteQuery(queryRoot, view);
+
+                addView(queryRoot, view.getViewName());
+
+                return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+            }
+
+        }
+
+        // Sub-selects.
+        final List<SubqueryRoot> subqueries = new LinkedList<SubqueryRoot>();
+
+        collectSubqueries(queryRoot, subqueries);
+
+        if (queryRoot.getNamedSubqueries() != null) {
+
+            final NamedSubqueriesNode namedSubqueries = queryRoot
+                    .getNamedSubqueries();
+
+            for (int i = 0; i < namedSubqueries.size(); i++) {
+
+                collectSubqueries((NamedSubqueryRoot) namedSubqueries.get(i),
+                        subqueries);
+
+            }
+
+        }
+
+        for (SubqueryRoot subqueryRoot : subqueries) {
+
+            for (ViewDefinition view : views) {
+
+                /*
+                 * Note: The solution modifiers of the sub-select must be the
+                 * same as those of the view.
+                 */
+                if (view.matches(subqueryRoot, includeInferred)
+                        && equals(view.getQueryRoot().getOrderBy(),
+                                subqueryRoot.getOrderBy())
+                        && equals(view.getQueryRoot().getSlice(),
+                                subqueryRoot.getSlice())) {
+
+                    ASTSparql11SubqueryOptimizer.replaceWithInclude(
+                            subqueryRoot, view.getViewName());
+
+                    addView(queryRoot, view.getViewName());
+
+                    if (log.isInfoEnabled())
+                        log.info("Using view: " + view.getViewName());
+
+                    break;
+
+                }
+
+            }
+
+        }
+
+        return new QueryNodeWithBindingSet(queryNode, bindingSets);
+
+    }
+
+    /**
+     * Return the views which may be used by the query.
+     */
+    private static List<ViewDefinition> getViews(final AST2BOpContext context) {
+
+        final List<ViewDefinition> views = new LinkedList<ViewDefinition>();
+
+        final AbstractTripleStore tripleStore = context
+                .getAbstractTripleStore();
+
+        final Iterator<CustomServiceFactory> itr = ServiceRegistry
+                .getInstance().customServices();
+
+        while (itr.hasNext()) {
+
+            final CustomServiceFactory f = itr.next();
+
+            if (!(f instanceof MaterializedViewService))
+                continue;
+
+            final MaterializedViewService s = (MaterializedViewService) f;
+
+            if (!s.isMaintained(tripleStore))
+                continue;
+
+            if (!context.solutionSetManager.existsSolutions(s.getViewName()))
+                continue;
+
+            final ViewDefinition view = s.getDefinition(tripleStore);
+
+            if (view != null)
+                views.add(view);
+
+        }
+
+        return views;
+
+    }
+
+    /**
+     * Collect the SELECT sub-selects within the query, including those nested
+     * within other sub-selects.
+     */
+    @SuppressWarnings("unchecked")
+    private static void collectSubqueries(final QueryBase q,
+            final List<SubqueryRoot> subqueries) {
+
+        if (q.getWhereClause() == null)
+            return;
+
+        final Striterator itr = new Striterator(
+                BOpUtility.postOrderIterator((BOp) q.getWhereClause()));
+
+        itr.addTypeFilter(SubqueryRoot.class);
+
+        while (itr.hasNext()) {
+
+            final SubqueryRoot subqueryRoot = (SubqueryRoot) itr.next();
+
+            if (subqueryRoot.getQueryType() == QueryType.SELECT)
+                subqueries.add(subqueryRoot);
+
+        }
+
+    }
+
+    /**
+     * Return <code>true</code> unless the query has an ORDER BY which uses
+     * something other than the projected variables (those are the only
+     * variables which are bound by the view).
+     */
+    private static boolean isOrderByProjectedVars(final QueryBase q) {
+
+        if (q.getOrderBy() == null)
+            return true;
+
+        final Set<IVariable<?>> vars = q.getProjection().getProjectionVars(
+                new LinkedHashSet<IVariable<?>>());
+
+        for (OrderByExpr expr : q.getOrderBy()) {
+
+            if (!(expr.getValueExpressionNode() instanceof VarNode))
+                return false;
+
+            if (!vars.contains(((VarNode) expr.getValueExpressionNode())
+                    .getValueExpression()))
+                return false;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Replace the WHERE clause and aggregation of the query with an INCLUDE
+     * of the view.
+     */
+    private static void rewriteQuery(final QueryRoot queryRoot,
+            final ViewDefinition view) {
+
+        final ProjectionNode oldProjection = queryRoot.getProjection();
+
+        final ProjectionNode projection = new ProjectionNode();
+
+        projection.setDistinct(oldProjection.isDistinct());
+
+        projection.setReduced(oldProjection.isReduced());
+
+        for (IVariable<?> var : oldProjection.getProjectionVars()) {
+
+            projection.addProjectionVar(new VarNode(var.getName()));
+
+        }
+
+        queryRoot.setProjection(projection);
+
+        queryRoot.setWhereClause(new JoinGroupNode(new NamedSubqueryInclude(
+                view.getViewName())));
+
+        queryRoot.setGroupBy(null);
+
+        queryRoot.setHaving(null);
+
+        queryRoot.setBindingsClause(null);
+
+        if (view.getQueryRoot().getSlice() != null) {
+
+            // The slice was already applied by the view.
+            queryRoot.setSlice(null);
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info("Using view: " + view.getViewName());
+
+    }
+
+    /**
+     * Record that the query reads the view.
+     * 
+     * @see QueryRoot.Annotations#MATERIALIZED_VIEWS
+     */
+    private static void addView(final QueryRoot queryRoot,
+            final String viewName) {
+
+        final String[] views = (String[]) queryRoot
+                .getProperty(QueryRoot.Annotations.MATERIALIZED_VIEWS);
+
+        final String[] tmp;
+
+        if (views == null) {
+
+            tmp = new String[] { viewName };
+
+        } else {
+
+            tmp = Arrays.copyOf(views, views.length + 1);
+
+            tmp[views.length] = viewName;
+
+        }
+
+        queryRoot.setProperty(QueryRoot.Annotations.MATERIALIZED_VIEWS, tmp);
+
+    }
+
+    /**
+     * Return <code>true</code> iff the optimized AST reads a materialized
+     * view.
+     * 
+     * @see QueryRoot.Annotations#MATERIALIZED_VIEWS
+     */
+    public static boolean usesViews(final QueryRoot optimizedAST) {
+
+        return optimizedAST != null
+                && optimizedAST
+                        .getProperty(QueryRoot.Annotations.MATERIALIZED_VIEWS) != null;
+
+    }
+
+    private static boolean equals(final Object a, final Object b) {
+
+        return a == null ? b == null : a.equals(b);
+
+    }
+
+}
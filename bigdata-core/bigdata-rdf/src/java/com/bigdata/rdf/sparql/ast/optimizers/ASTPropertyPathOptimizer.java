@@ -37,6 +37,12 @@ import org.openrdf.query.algebra.StatementPattern.Scope;
 
 import com.bigdata.bop.BOp;
 import com.bigdata.bop.IBindingSet;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.model.BigdataURI;
+import com.bigdata.rdf.model.BigdataValueFactory;
 import com.bigdata.rdf.sparql.ast.ArbitraryLengthPathNode;
 import com.bigdata.rdf.sparql.ast.ConstantNode;
 import com.bigdata.rdf.sparql.ast.FilterNode;
@@ -53,6 +59,7 @@ import com.bigdata.rdf.sparql.ast.PathNode.PathOneInPropertySet;
 import com.bigdata.rdf.sparql.ast.PathNode.PathSequence;
 import com.bigdata.rdf.sparql.ast.PropertyPathNode;
 import com.bigdata.rdf.sparql.ast.PropertyPathUnionNode;
+import com.bigdata.rdf.sparql.ast.QueryBase;
 import com.bigdata.rdf.sparql.ast.QueryHints;
 import com.bigdata.rdf.sparql.ast.StatementPatternNode;
 import com.bigdata.rdf.sparql.ast.StaticAnalysis;
@@ -61,6 +68,10 @@ import com.bigdata.rdf.sparql.ast.UnionNode;
 import com.bigdata.rdf.sparql.ast.VarNode;
 import com.bigdata.rdf.sparql.ast.ZeroLengthPathNode;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.sparql.ast.eval.TransitiveClosureServiceFactory;
+import com.bigdata.rdf.sparql.ast.service.ServiceNode;
+import com.bigdata.rdf.spo.TransitiveClosureIndex;
+import com.bigdata.rdf.store.BD;
 
 public class ASTPropertyPathOptimizer extends AbstractJoinGroupOptimizer
 		implements IASTOptimizer {
@@ -377,6 +388,19 @@ public class ASTPropertyPathOptimizer extends AbstractJoinGroupOptimizer
     	
 		final PathMod mod = pathElt.getMod();
 		
+		/*
+		 * Answer p+ and p* using the transitive closure index when the
+		 * closure of p is materialized.
+		 */
+		if (alpNode == null && canUseClosureIndex(ctx, sa, ppInfo, pathElt)) {
+
+			group.addArg(getPositionOfNodeInGroup(ppNode, group),
+					newClosureServiceNode(ctx, ppInfo, pathElt));
+
+			return;
+
+		}
+
 		/*
 		 * Push expressions with an path length modifier down into a 
 		 * ArbitraryLengthPathNode group.
@@ -440,6 +464,99 @@ public class ASTPropertyPathOptimizer extends AbstractJoinGroupOptimizer
     	
     }
     
+	/**
+	 * Return <code>true</code> iff the path element is <code>p+</code> or
+	 * <code>p*</code> for a predicate whose transitive closure is maintained
+	 * by the {@link TransitiveClosureIndex}. In quads mode this is only
+	 * possible for the default graph of a query without a dataset since the
+	 * closure is taken over all named graphs. The closure is also taken over
+	 * the inferred statements, so queries which exclude them (see
+	 * {@link QueryBase#getIncludeInferred()}) are evaluated using an ALP.
+	 */
+	protected boolean canUseClosureIndex(final AST2BOpContext ctx,
+			final StaticAnalysis sa, final PropertyPathInfo ppInfo,
+			final PathElt pathElt) {
+
+		final PathMod mod = pathElt.getMod();
+
+		if (mod != PathMod.ONE_OR_MORE && mod != PathMod.ZERO_OR_MORE)
+			return false;
+
+		if (pathElt.isNestedPath() || pathElt.isNegatedPropertySet()
+				|| pathElt.isZeroLengthPath())
+			return false;
+
+		if (!sa.getQueryRoot().getIncludeInferred())
+			return false;
+
+		if (ctx.isQuads()) {
+
+			if (ppInfo.c != null || ppInfo.scope == Scope.NAMED_CONTEXTS)
+				return false;
+
+			if (sa.getQueryRoot().getDataset() != null)
+				return false;
+
+		}
+
+		@SuppressWarnings("rawtypes")
+		final IV p = ((ConstantNode) pathElt.get(0)).getValueExpression().get();
+
+		if (p == null || p.isNullIV())
+			return false;
+
+		return ctx.getAbstractTripleStore().getSPORelation()
+				.isClosurePredicate(p);
+
+	}
+
+	/**
+	 * Return a {@link ServiceNode} for the
+	 * {@link TransitiveClosureServiceFactory} which answers the path element.
+	 */
+	@SuppressWarnings("unchecked")
+	protected ServiceNode newClosureServiceNode(final AST2BOpContext ctx,
+			final PropertyPathInfo ppInfo, final PathElt pathElt) {
+
+		final BigdataValueFactory vf = ctx.getAbstractTripleStore()
+				.getValueFactory();
+
+		final JoinGroupNode groupNode = new JoinGroupNode();
+
+		groupNode.addChild(new StatementPatternNode(ppInfo.s,
+				(ConstantNode) pathElt.get(0), ppInfo.o));
+
+		final TermId<BigdataURI> paramIV = (TermId<BigdataURI>) TermId
+				.mockIV(VTE.URI);
+
+		paramIV.setValue(vf.asValue(BD.SERVICE_PARAM));
+
+		final TermId<BigdataURI> minLengthIV = (TermId<BigdataURI>) TermId
+				.mockIV(VTE.URI);
+
+		minLengthIV.setValue(vf
+				.asValue(TransitiveClosureServiceFactory.ClosureParams.MIN_LENGTH));
+
+		final TermId<BigdataLiteral> valueIV = (TermId<BigdataLiteral>) TermId
+				.mockIV(VTE.LITERAL);
+
+		final int minLength = pathElt.getMod() == PathMod.ZERO_OR_MORE ? 0 : 1;
+
+		valueIV.setValue(vf.createLiteral(minLength));
+
+		groupNode.addChild(new StatementPatternNode(new ConstantNode(paramIV),
+				new ConstantNode(minLengthIV), new ConstantNode(valueIV)));
+
+		final TermId<BigdataURI> serviceIV = (TermId<BigdataURI>) TermId
+				.mockIV(VTE.URI);
+
+		serviceIV.setValue(vf
+				.asValue(TransitiveClosureServiceFactory.SERVICE_KEY));
+
+		return new ServiceNode(new ConstantNode(serviceIV), groupNode);
+
+	}
+
 	/**
 	 * Optimize a TermNode (add a statement pattern to the group).
 	 */
@@ -324,11 +324,31 @@ public class ASTSparql11SubqueryOptimizer implements IASTOptimizer {
     private void liftSparql11Subquery(final AST2BOpContext context,
             final StaticAnalysis sa, final SubqueryRoot subqueryRoot) {
 
-        final IGroupNode<?> parent = subqueryRoot.getParent();
-
         final String newName = "-subSelect-" + context.nextId();
 
-        final NamedSubqueryInclude include = new NamedSubqueryInclude(newName);
+        replaceWithInclude(subqueryRoot, newName);
+
+        sa.getQueryRoot().getNamedSubqueriesNotNull().add(
+                newNamedSubqueryRoot(subqueryRoot, newName));
+
+    }
+
+    /**
+     * Replace the {@link SubqueryRoot} in its parent with an INCLUDE of the
+     * named solution set.
+     * 
+     * @param subqueryRoot
+     *            The subquery.
+     * @param name
+     *            The name of the solution set which will be produced by the
+     *            lifted subquery.
+     */
+    static void replaceWithInclude(final SubqueryRoot subqueryRoot,
+            final String name) {
+
+        final IGroupNode<?> parent = subqueryRoot.getParent();
+
+        final NamedSubqueryInclude include = new NamedSubqueryInclude(name);
 
         /**
          * Set query hints from the parent join group.
@@ -387,8 +407,22 @@ public class ASTSparql11SubqueryOptimizer implements IASTOptimizer {
             
         }
 
+    }
+
+    /**
+     * Return a {@link NamedSubqueryRoot} which will produce the named solution
+     * set for the {@link SubqueryRoot}.
+     * 
+     * @param subqueryRoot
+     *            The subquery.
+     * @param name
+     *            The name of the solution set.
+     */
+    static NamedSubqueryRoot newNamedSubqueryRoot(
+            final SubqueryRoot subqueryRoot, final String name) {
+
         final NamedSubqueryRoot nsr = new NamedSubqueryRoot(
-                subqueryRoot.getQueryType(), newName);
+                subqueryRoot.getQueryType(), name);
 
         /**
          * Copy across query hints from the original subquery.
@@ -407,7 +441,7 @@ public class ASTSparql11SubqueryOptimizer implements IASTOptimizer {
         nsr.setWhereClause(subqueryRoot.getWhereClause());
         nsr.setBindingsClause(subqueryRoot.getBindingsClause());
 
-        sa.getQueryRoot().getNamedSubqueriesNotNull().add(nsr);
+        return nsr;
 
     }
 
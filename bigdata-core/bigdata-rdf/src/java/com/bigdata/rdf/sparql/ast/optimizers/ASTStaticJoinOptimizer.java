@@ -107,6 +107,18 @@ public class ASTStaticJoinOptimizer implements IASTOptimizer {
     	 * See {@link #OPTIMISTIC}.
     	 */
     	Double DEFAULT_OPTIMISTIC = 1.0d;
+
+        /**
+         * The estimated cardinality of the join of the nodes in the join group
+         * up to and including the annotated node, in the evaluation order
+         * chosen by the static optimizer (output). This is <code>-1L</code> if
+         * there is no meaningful estimate. It is used to detect when the
+         * observed cardinality of a join diverges from the estimate.
+         * 
+         * @see QueryHints#ADAPTIVE_JOIN_THRESHOLD
+         */
+        String ESTIMATED_JOIN_CARDINALITY = ASTStaticJoinOptimizer.class
+                .getName() + ".estimatedJoinCardinality";
     	
     }
     
@@ -568,6 +580,15 @@ public class ASTStaticJoinOptimizer implements IASTOptimizer {
 
 		    final int[] order = opt.getOrder();
 
+		    /*
+		     * The estimates are only recorded when they will be monitored
+		     * against the observed cardinalities.
+		     */
+		    final long[] joinCardinality = joinGroup.getProperty(
+		            QueryHints.ADAPTIVE_JOIN_THRESHOLD,
+		            QueryHints.DEFAULT_ADAPTIVE_JOIN_THRESHOLD) > 0d ? opt
+		            .getJoinCardinalities() : null;
+
 		    /*
 		     * Reorder the statement pattern nodes within the join
 		     * group.
@@ -577,6 +598,11 @@ public class ASTStaticJoinOptimizer implements IASTOptimizer {
 
 		        final IReorderableNode sp = required.get(order[j]);
 
+		        if (joinCardinality != null) {
+		            sp.setProperty(Annotations.ESTIMATED_JOIN_CARDINALITY,
+		                    joinCardinality[j]);
+		        }
+
 		        joinGroup.setArg(slots[i++], sp);
 
 		    }
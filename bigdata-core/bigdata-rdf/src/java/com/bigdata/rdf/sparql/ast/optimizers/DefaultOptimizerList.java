@@ -41,6 +41,7 @@ import com.bigdata.rdf.sparql.ast.eval.ASTFulltextSearchOptimizer;
 import com.bigdata.rdf.sparql.ast.eval.ASTGeoSpatialSearchOptimizer;
 import com.bigdata.rdf.sparql.ast.eval.ASTSearchInSearchOptimizer;
 import com.bigdata.rdf.sparql.ast.eval.ASTSearchOptimizer;
+import com.bigdata.rdf.sparql.ast.service.storedquery.MaterializedViewService;
 import com.bigdata.util.ClassPathUtil;
 
 /**
@@ -150,6 +151,16 @@ public class DefaultOptimizerList extends ASTOptimizerList {
        // AFTER ASTOrderByAggregateFlatteningOptimizer THAT MAY
        // INTRODUCE ANONYMOUS AGGREGATES IN 'ORDER BY'.
         
+       /**
+        * Replaces a query (or sub-select) which matches a materialized view
+        * with an INCLUDE of that view. This must see the query as parsed and
+        * only ever removes aggregates, so it may run before the
+        * ASTOrderByAggregateFlatteningOptimizer.
+        * 
+        * @see MaterializedViewService
+        */
+       add(new ASTMaterializedViewOptimizer());
+
        /** Flattens ORDER BY arguments by introducing auxiliary aliases 
         *  in the corresponding SELECTs.
         *  This is not a real optimizer as it is not optional -- 
@@ -468,6 +479,15 @@ public class DefaultOptimizerList extends ASTOptimizerList {
          */
         add(new ASTFlattenJoinGroupsOptimizer());
 
+        /**
+         * Computes repeated SPARQL 1.1 subqueries and the statement patterns
+         * shared by all branches of a UNION once, into a named solution set
+         * which is then INCLUDEd in their place. This is disabled by default.
+         * 
+         * @see QueryHints#COMMON_SUBEXPRESSION_ELIMINATION
+         */
+        add(new ASTCommonSubexpressionOptimizer());
+
         /**
          * Rewrites the WHERE clause of each query by lifting out any
          * {@link ServiceNode}s into a named subquery. Rewrites the WHERE clause
@@ -1,17 +1,23 @@
 package com.bigdata.rdf.sparql.ast.optimizers;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
+import com.bigdata.bop.IConstant;
 import com.bigdata.bop.IVariable;
 import com.bigdata.bop.joinGraph.fast.DefaultEvaluationPlan2;
 import com.bigdata.journal.ITx;
+import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.sparql.ast.IBindingProducerNode;
 import com.bigdata.rdf.sparql.ast.IReorderableNode;
 import com.bigdata.rdf.sparql.ast.QueryHints;
@@ -21,6 +27,9 @@ import com.bigdata.rdf.sparql.ast.StaticAnalysis;
 import com.bigdata.rdf.sparql.ast.VarNode;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTStaticJoinOptimizer.Annotations;
+import com.bigdata.rdf.spo.PredicateStatistics;
+import com.bigdata.rdf.spo.PredicateStatistics.PredicateStat;
+import com.bigdata.rdf.store.AbstractTripleStore;
 
 /**
  * This is the old static optimizer code, taken directly from
@@ -75,6 +84,37 @@ public final class StaticOptimizer {
 
 	}
 
+	/**
+	 * The estimated cardinality of the join of the first <code>i+1</code>
+	 * tails in the computed evaluation order. The element is <code>-1L</code>
+	 * if no meaningful estimate is available, e.g., for a cross product.
+	 */
+	private long[/* order */] joinCardinality;
+
+	/**
+	 * Return the estimated cardinality of the join of the first
+	 * <code>i+1</code> tails in the computed evaluation order, indexed by the
+	 * position in the evaluation order. An element is <code>-1L</code> if no
+	 * meaningful estimate is available.
+	 */
+	public long[] getJoinCardinalities() {
+
+		if (joinCardinality == null)
+			throw new IllegalStateException();
+
+		return joinCardinality;
+
+	}
+
+	/**
+	 * Record the estimated cardinality for a position in the evaluation order.
+	 */
+	private void setJoinCardinality(final int i, final long card) {
+
+		joinCardinality[i] = card < 0 || card >= NO_SHARED_VARS ? -1L : card;
+
+	}
+
 	/**
 	 * Cache of the computed range counts for the predicates in the tail. The
 	 * elements of this array are initialized to -1L, which indicates that the
@@ -103,20 +143,38 @@ public final class StaticOptimizer {
 	 */
 	private final double optimistic;
 
+	/**
+	 * The predicate and characteristic set statistics for the database
+	 * (optional). When available, these are used to estimate the cardinality
+	 * of joins which form a star pattern.
+	 */
+	private final PredicateStatistics statistics;
+
+	/**
+	 * Cache of the star pattern estimates. The key is the set of tails
+	 * spanned by the join. The value is <code>-1L</code> if those tails do
+	 * not form a star pattern which can be estimated from the
+	 * {@link #statistics}.
+	 */
+	private final Map<BitSet, Long> starCardinality = new HashMap<BitSet, Long>();
+
 	public StaticOptimizer(StaticOptimizer parent, List<IReorderableNode> nodes) {
-		this(parent.sa, parent.ancestry, nodes, parent.optimistic);
+		this(parent.sa, parent.ancestry, nodes, parent.optimistic,
+				parent.statistics);
 	}
 
 	StaticOptimizer(final QueryRoot queryRoot, final AST2BOpContext context,
 			final IBindingProducerNode[] ancestry,
 			final List<IReorderableNode> nodes, final double optimistic) {
 		this(new StaticAnalysis(queryRoot, context), ancestry, nodes,
-				optimistic);
+				optimistic, nodes != null && nodes.size() > 1 ? getStatistics(context)
+						: null);
 	}
 
 	private StaticOptimizer(final StaticAnalysis sa,
 			final IBindingProducerNode[] ancestry,
-			final List<IReorderableNode> nodes, final double optimistic) {
+			final List<IReorderableNode> nodes, final double optimistic,
+			final PredicateStatistics statistics) {
 
 		if (ancestry == null)
 			throw new IllegalArgumentException();
@@ -149,6 +207,8 @@ public final class StaticOptimizer {
 
 		this.optimistic = optimistic;
 
+		this.statistics = statistics;
+
 		this.cardinality = calc();
 
 		if (ASTStaticJoinOptimizer.log.isDebugEnabled()) {
@@ -170,6 +230,7 @@ public final class StaticOptimizer {
 					"calc should only be called from the constructor");
 
 		order = new int[arity];
+		joinCardinality = new long[arity];
 		rangeCount = new long[arity];
 		used = new boolean[arity];
 		tail = new Tail[arity];
@@ -187,6 +248,7 @@ public final class StaticOptimizer {
 
 		if (arity == 1) {
 			order[0] = 0;
+			setJoinCardinality(0, cardinality(0));
 			return cardinality(0);
 		}
 
@@ -271,7 +333,10 @@ public final class StaticOptimizer {
 					order[1] = cardinality(0) <= cardinality(1) ? 1 : 0;
 				}
 			}
-			return computeJoinCardinality(getTail(0), getTail(1));
+			final long card = computeJoinCardinality(getTail(0), getTail(1));
+			setJoinCardinality(0, cardinality(order[0]));
+			setJoinCardinality(1, card);
+			return card;
 		}
 
 		/*
@@ -297,10 +362,13 @@ public final class StaticOptimizer {
 		}
 		used[order[0]] = true;
 		used[order[1]] = true;
+		setJoinCardinality(0, cardinality(order[0]));
+		setJoinCardinality(1, join.cardinality);
 		for (int i = 2; i < arity; i++) {
 			join = getNextJoin(join);
 			order[i] = ((Tail) join.getD2()).getTailIndex();
 			used[order[i]] = true;
+			setJoinCardinality(i, join.cardinality);
 		}
 		return cardinality;
 	}
@@ -608,7 +676,15 @@ public final class StaticOptimizer {
 			// different approach - give preference to shared variables
 			joinCardinality = NO_SHARED_VARS;
 		} else {
-			if (unsharedVars == false) {
+			final long starCardinality = getStarCardinality(d1, d2);
+			if (starCardinality >= 0L) {
+				/*
+				 * The join is a star pattern which could be estimated from the
+				 * characteristic sets. Unlike the heuristics below, this does
+				 * not assume that the triple patterns are independent.
+				 */
+				joinCardinality = starCardinality;
+			} else if (unsharedVars == false) {
 				// shared vars and no unshared vars - take the min
 				joinCardinality = Math.min(d1.getCardinality(),
 						d2.getCardinality());
@@ -671,6 +747,173 @@ public final class StaticOptimizer {
 		return joinCardinality;
 	}
 
+	/**
+	 * Return the statistics for the database against which the query will be
+	 * evaluated -or- <code>null</code> if there are none.
+	 */
+	static PredicateStatistics getStatistics(
+			final AST2BOpContext context) {
+
+		if (context == null)
+			return null;
+
+		final AbstractTripleStore db = context.getAbstractTripleStore();
+
+		if (db == null)
+			return null;
+
+		return db.getSPORelation().getStatistics();
+
+	}
+
+	/**
+	 * Return the estimated cardinality of the join of two join dimensions if
+	 * together they span a star pattern which can be estimated from the
+	 * {@link #statistics}.
+	 * 
+	 * @return The estimated cardinality -or- <code>-1L</code> if the
+	 *		 statistics can not be used for this join.
+	 */
+	private long getStarCardinality(final IJoinDimension d1,
+			final IJoinDimension d2) {
+
+		if (statistics == null)
+			return -1L;
+
+		final BitSet tails = (BitSet) d1.getTails().clone();
+		tails.or(d2.getTails());
+
+		Long ret = starCardinality.get(tails);
+
+		if (ret == null) {
+
+			final List<StatementPatternNode> sps = new LinkedList<StatementPatternNode>();
+
+			for (int i = tails.nextSetBit(0); i >= 0; i = tails
+					.nextSetBit(i + 1)) {
+
+				final IReorderableNode node = nodes.get(i);
+
+				if (!(node instanceof StatementPatternNode)) {
+					ret = -1L;
+					break;
+				}
+
+				sps.add((StatementPatternNode) node);
+
+			}
+
+			if (ret == null)
+				ret = estimateStarCardinality(statistics, sps, ancestryVars);
+
+			if (ASTStaticJoinOptimizer.log.isDebugEnabled())
+				ASTStaticJoinOptimizer.log.debug("star cardinality: tails="
+						+ tails + ", cardinality=" + ret);
+
+			starCardinality.put(tails, ret);
+
+		}
+
+		return ret;
+
+	}
+
+	/**
+	 * Estimate the cardinality of a star pattern using the characteristic
+	 * sets. The statement patterns must be required (not optional), must
+	 * share the same subject variable, must have constant predicates and
+	 * their objects must be either constants or distinct variables which are
+	 * not already bound.
+	 * 
+	 * @param statistics
+	 *			The statistics.
+	 * @param sps
+	 *			The statement patterns (at least two).
+	 * @param boundVars
+	 *			The variables which are already bound (optional).
+	 * 
+	 * @return The estimated cardinality -or- <code>-1L</code> if the
+	 *		 statement patterns are not such a star pattern or if the star
+	 *		 can not be estimated from the statistics.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static long estimateStarCardinality(
+			final PredicateStatistics statistics,
+			final List<StatementPatternNode> sps,
+			final Set<IVariable<?>> boundVars) {
+
+		if (statistics == null || sps.size() < 2)
+			return -1L;
+
+		final IV[] preds = new IV[sps.size()];
+
+		final double[] selectivity = new double[sps.size()];
+
+		final Set<IVariable<?>> objectVars = new HashSet<IVariable<?>>();
+
+		IVariable<?> subjectVar = null;
+
+		int i = 0;
+
+		for (StatementPatternNode sp : sps) {
+
+			if (sp.isOptional() || sp.getRange() != null)
+				return -1L;
+
+			if (sp.c() != null && sp.c().isConstant()) {
+				// The statistics are not broken down by named graph.
+				return -1L;
+			}
+
+			if (!sp.s().isVariable() || !sp.p().isConstant())
+				return -1L;
+
+			final IVariable<?> s = ((VarNode) sp.s()).getValueExpression();
+
+			if (subjectVar == null) {
+				subjectVar = s;
+			} else if (!subjectVar.equals(s)) {
+				return -1L;
+			}
+
+			final IV p = ((IConstant<IV>) sp.p().getValueExpression()).get();
+
+			if (p == null || p.isNullIV())
+				return -1L;
+
+			if (sp.o().isConstant()) {
+
+				final PredicateStat stat = statistics.getPredicateStat(p);
+
+				if (stat == null)
+					return -1L;
+
+				selectivity[i] = 1d / Math.max(1L,
+						stat.getDistinctObjectCount());
+
+			} else {
+
+				final IVariable<?> o = ((VarNode) sp.o()).getValueExpression();
+
+				if (o.equals(s) || !objectVars.add(o)
+						|| (boundVars != null && boundVars.contains(o)))
+					return -1L;
+
+				selectivity[i] = 1d;
+
+			}
+
+			preds[i++] = p;
+
+		}
+
+		if (boundVars != null && boundVars.contains(subjectVar))
+			return -1L;
+
+		return statistics.estimateStarCardinality(preds, selectivity);
+
+	}
+
 	/**
 	 * Get the named variables for a given tail. Is there a better way to do
 	 * this?
@@ -810,6 +1053,11 @@ public final class StaticOptimizer {
 
 		Set<String> getVars();
 
+		/**
+		 * The indices of the tails spanned by this join dimension.
+		 */
+		BitSet getTails();
+
 		String toJoinString();
 		// boolean isOptional();
 	}
@@ -824,6 +1072,7 @@ public final class StaticOptimizer {
 		private final IJoinDimension d1, d2;
 		private final long cardinality;
 		private final Set<String> vars;
+		private final BitSet tails;
 
 		public Join(IJoinDimension d1, IJoinDimension d2, long cardinality,
 				Set<String> vars) {
@@ -831,6 +1080,8 @@ public final class StaticOptimizer {
 			this.d2 = d2;
 			this.cardinality = cardinality;
 			this.vars = vars;
+			this.tails = (BitSet) d1.getTails().clone();
+			this.tails.or(d2.getTails());
 		}
 
 		public IJoinDimension getD1() {
@@ -849,6 +1100,10 @@ public final class StaticOptimizer {
 			return cardinality;
 		}
 
+		public BitSet getTails() {
+			return tails;
+		}
+
 		public String toJoinString() {
 			return d1.toJoinString() + " X " + d2.toJoinString();
 		}
@@ -863,11 +1118,14 @@ public final class StaticOptimizer {
 		private final int tailIndex;
 		private final long cardinality;
 		private final Set<String> vars;
+		private final BitSet tails;
 
 		public Tail(int tail, long cardinality, Set<String> vars) {
 			this.tailIndex = tail;
 			this.cardinality = cardinality;
 			this.vars = vars;
+			this.tails = new BitSet();
+			this.tails.set(tail);
 		}
 
 		public int getTailIndex() {
@@ -882,6 +1140,10 @@ public final class StaticOptimizer {
 			return vars;
 		}
 
+		public BitSet getTails() {
+			return tails;
+		}
+
 		// public boolean isOptional() {
 		// return nodes.get(tail).isOptional();
 		// }
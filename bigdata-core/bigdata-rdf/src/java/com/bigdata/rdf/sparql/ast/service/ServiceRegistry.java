@@ -41,11 +41,13 @@ import com.bigdata.rdf.graph.impl.bd.GASService;
 import com.bigdata.rdf.sail.RDRHistoryServiceFactory;
 import com.bigdata.rdf.sparql.ast.QueryHints;
 import com.bigdata.rdf.sparql.ast.cache.DescribeServiceFactory;
+import com.bigdata.rdf.sparql.ast.cache.SparqlResultCacheServiceFactory;
 import com.bigdata.rdf.sparql.ast.eval.GeoSpatialServiceFactory;
 import com.bigdata.rdf.sparql.ast.eval.SampleServiceFactory;
 import com.bigdata.rdf.sparql.ast.eval.SearchInSearchServiceFactory;
 import com.bigdata.rdf.sparql.ast.eval.SearchServiceFactory;
 import com.bigdata.rdf.sparql.ast.eval.SliceServiceFactory;
+import com.bigdata.rdf.sparql.ast.eval.TransitiveClosureServiceFactory;
 import com.bigdata.rdf.sparql.ast.eval.ValuesServiceFactory;
 import com.bigdata.rdf.sparql.ast.service.history.HistoryServiceFactory;
 import com.bigdata.rdf.store.AbstractTripleStore;
@@ -143,6 +145,10 @@ public class ServiceRegistry {
         // Add the slice index service.
         add(SliceServiceFactory.SERVICE_KEY, new SliceServiceFactory());
 
+        // Add the transitive closure index service.
+        add(TransitiveClosureServiceFactory.SERVICE_KEY,
+                new TransitiveClosureServiceFactory());
+
         // Add the values service.
         add(ValuesServiceFactory.SERVICE_KEY, new ValuesServiceFactory());
 
@@ -153,6 +159,14 @@ public class ServiceRegistry {
 
         }
 
+        if (QueryHints.DEFAULT_RESULT_CACHE_MAX_BYTES > 0L) {
+
+            // Maintenance of the SPARQL result cache.
+            add(new URIImpl(BD.NAMESPACE + "resultCache"),
+                    new SparqlResultCacheServiceFactory());
+
+        }
+
         if (true) {
 
             /**
@@ -0,0 +1,1162 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.service.storedquery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+import org.openrdf.query.algebra.evaluation.QueryBindingSet;
+
+import com.bigdata.bop.BOp;
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IConstant;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.IVariableOrConstant;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.journal.IBTreeManager;
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.journal.ITx;
+import com.bigdata.rdf.changesets.ChangeAction;
+import com.bigdata.rdf.changesets.IChangeLog;
+import com.bigdata.rdf.changesets.IChangeRecord;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sail.BigdataSail.BigdataSailConnection;
+import com.bigdata.rdf.sail.sparql.Bigdata2ASTSPARQLParser;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.AssignmentNode;
+import com.bigdata.rdf.sparql.ast.BindingsClause;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
+import com.bigdata.rdf.sparql.ast.FunctionNode;
+import com.bigdata.rdf.sparql.ast.FunctionRegistry;
+import com.bigdata.rdf.sparql.ast.GroupByNode;
+import com.bigdata.rdf.sparql.ast.IGroupMemberNode;
+import com.bigdata.rdf.sparql.ast.IValueExpressionNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryBase;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.TermNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.cache.SparqlResultCache;
+import com.bigdata.rdf.sparql.ast.eval.ASTDeferredIVResolution;
+import com.bigdata.rdf.sparql.ast.eval.ASTEvalHelper;
+import com.bigdata.rdf.sparql.ast.eval.ServiceParams;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTMaterializedViewOptimizer;
+import com.bigdata.rdf.sparql.ast.service.CustomServiceFactory;
+import com.bigdata.rdf.sparql.ast.service.ServiceCallCreateParams;
+import com.bigdata.rdf.sparql.ast.service.ServiceRegistry;
+import com.bigdata.rdf.sparql.ast.ssets.ISolutionSetManager;
+import com.bigdata.rdf.sparql.ast.ssets.SolutionSetManager;
+import com.bigdata.rdf.spo.ISPO;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.striterator.CloseableIteratorWrapper;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * A materialized view. The view is declared by a SPARQL SELECT query whose
+ * solutions are kept as a persistent named solution set on the journal. The
+ * named solution set is maintained within the same commit as the updates
+ * which affect it, so it may be read using
+ * 
+ * <pre>
+ * SELECT * { INCLUDE %viewName }
+ * </pre>
+ * 
+ * and queries (and sub-selects) which are structurally identical to the view
+ * definition are transparently rewritten by the
+ * {@link ASTMaterializedViewOptimizer} to read the view rather than
+ * re-evaluate the query. Like any other {@link StoredQueryService}, the view
+ * definition may also be evaluated on demand using its SERVICE URI.
+ * <p>
+ * The view is registered against the {@link ServiceRegistry}. For example:
+ * 
+ * <pre>
+ * ServiceRegistry.getInstance().add(
+ *         new URIImpl(&quot;http://www.example.org/view#typeCounts&quot;),
+ *         new MaterializedViewService(&quot;typeCounts&quot;,
+ *                 &quot;SELECT ?type (COUNT(*) AS ?n) { ?s a ?type } GROUP BY ?type&quot;));
+ * </pre>
+ * 
+ * The view is (re-)materialized by the first commit in each KB instance on a
+ * {@link BigdataSailConnection} once it has been registered and is then
+ * maintained by each commit on such connections. Views whose WHERE clause is
+ * a basic graph pattern and which aggregate using only <code>COUNT</code> and
+ * <code>SUM</code> over simple <code>GROUP BY</code> variables are maintained
+ * incrementally: the statements added and removed by the commit are unified
+ * with each statement pattern of the view to identify the groups which they
+ * could affect, and only those groups are re-aggregated. All other views are
+ * recomputed by each commit which changes the KB.
+ * <p>
+ * Note: Only updates made through a {@link BigdataSailConnection} are visible
+ * to the view (see {@link CustomServiceFactory}). The view is not used by the
+ * {@link ASTMaterializedViewOptimizer} unless it was maintained through the
+ * commit point against which a query reads. A commit which does not go
+ * through a {@link BigdataSailConnection} (e.g., the DataLoader or a commit
+ * on another KB instance on the same journal) is not observed, so the query
+ * is evaluated against the statements until the view is recomputed by the
+ * next commit on such a connection. If the view can not be maintained, then
+ * its named solution set is dropped.
+ * <p>
+ * Note: The definition of the view is not persistent. It must be registered
+ * again after a restart, and it will be re-materialized by the next commit.
+ * 
+ * @see ASTMaterializedViewOptimizer
+ * @see SolutionSetManager
+ */
+public class MaterializedViewService extends SimpleStoredQueryService
+        implements CustomServiceFactory {
+
+    /**
+     * Options understood by the {@link MaterializedViewService}. These are
+     * read from the properties of the KB instance for which the view is
+     * maintained.
+     */
+    public interface Options extends StoredQueryService.Options {
+
+        /**
+         * The #of statements changed by a commit above which the view is
+         * recomputed rather than maintained incrementally (default
+         * {@value #DEFAULT_MAX_INCREMENTAL_CHANGES}). The statements changed
+         * by a commit are buffered on the heap until this limit is reached.
+         */
+        String MAX_INCREMENTAL_CHANGES = MaterializedViewService.class
+                .getName() + ".maxIncrementalChanges";
+
+        String DEFAULT_MAX_INCREMENTAL_CHANGES = "10000";
+
+    }
+
+    static private transient final Logger log = Logger
+            .getLogger(MaterializedViewService.class);
+
+    /**
+     * The name of the view (this is the local name of the named solution
+     * set).
+     */
+    private final String viewName;
+
+    /**
+     * The SPARQL SELECT query which defines the view.
+     */
+    private final String query;
+
+    /**
+     * The namespace of the KB instance for which the view is maintained -or-
+     * <code>null</code> if it is maintained for all KB instances.
+     */
+    private final String namespace;
+
+    /**
+     * The commit time of the last commit through which the view was
+     * maintained for each KB instance (by namespace).
+     */
+    private final ConcurrentHashMap<String, Long> maintainedThrough = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * The parsed view definition for each KB instance (by namespace). These
+     * are discarded whenever the view is recomputed since the {@link IV}s for
+     * the constants in the query may have been resolved in the meantime.
+     */
+    private final ConcurrentHashMap<String, ViewDefinition> definitions = new ConcurrentHashMap<String, ViewDefinition>();
+
+    /**
+     * Declare a view which is maintained for all KB instances.
+     * 
+     * @param viewName
+     *            The name of the view.
+     * @param query
+     *            The SPARQL SELECT query which defines the view.
+     */
+    public MaterializedViewService(final String viewName, final String query) {
+
+        this(viewName, query, null/* namespace */);
+
+    }
+
+    /**
+     * Declare a view.
+     * 
+     * @param viewName
+     *            The name of the view.
+     * @param query
+     *            The SPARQL SELECT query which defines the view.
+     * @param namespace
+     *            The namespace of the KB instance for which the view will be
+     *            maintained -or- <code>null</code> to maintain the view for
+     *            all KB instances.
+     */
+    public MaterializedViewService(final String viewName, final String query,
+            final String namespace) {
+
+        if (viewName == null)
+            throw new IllegalArgumentException();
+
+        if (query == null)
+            throw new IllegalArgumentException();
+
+        this.viewName = viewName;
+
+        this.query = query;
+
+        this.namespace = namespace;
+
+    }
+
+    /**
+     * The name of the view.
+     */
+    public String getViewName() {
+
+        return viewName;
+
+    }
+
+    /**
+     * The SPARQL query which defines the view.
+     */
+    public String getQuery() {
+
+        return query;
+
+    }
+
+    @Override
+    protected String getQuery(final ServiceCallCreateParams createParams,
+            final ServiceParams serviceParams) {
+
+        return query;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the view is maintained for the KB instance
+     * and the commit point against which that KB view reads is the last
+     * commit through which the view was maintained. Any commit which was not
+     * observed by the view (and any later commit) is read using the original
+     * query.
+     * 
+     * @param tripleStore
+     *            A view of a KB instance.
+     */
+    public boolean isMaintained(final AbstractTripleStore tripleStore) {
+
+        final Long through = maintainedThrough.get(tripleStore.getNamespace());
+
+        if (through == null)
+            return false;
+
+        // Note: -1L for unisolated and read/write tx views.
+        final long commitTime = SparqlResultCache.getCommitTime(tripleStore);
+
+        return commitTime != -1L && commitTime == through.longValue();
+
+    }
+
+    /**
+     * Return the parsed view definition for the KB instance.
+     * 
+     * @param tripleStore
+     *            A view of the KB instance.
+     * 
+     * @return The view definition -or- <code>null</code> if the query could
+     *         not be parsed.
+     */
+    public ViewDefinition getDefinition(final AbstractTripleStore tripleStore) {
+
+        final String ns = tripleStore.getNamespace();
+
+        ViewDefinition def = definitions.get(ns);
+
+        if (def == null) {
+
+            try {
+
+                def = new ViewDefinition(tripleStore, viewName, query);
+
+            } catch (Exception ex) {
+
+                log.error("view=" + viewName + ": " + ex, ex);
+
+                return null;
+
+            }
+
+            if (def.isResolved()) {
+
+                definitions.put(ns, def);
+
+            }
+
+        }
+
+        return def;
+
+    }
+
+    /**
+     * Register an {@link IChangeLog} listener which will maintain the view.
+     */
+    @Override
+    public void startConnection(final BigdataSailConnection conn) {
+
+        final AbstractTripleStore tripleStore = conn.getTripleStore();
+
+        if (namespace != null && !namespace.equals(tripleStore.getNamespace())) {
+
+            // Not maintained for this KB instance.
+            return;
+
+        }
+
+        if (!(tripleStore.getIndexManager() instanceof IBTreeManager)) {
+
+            // Named solution sets are not supported.
+            return;
+
+        }
+
+        conn.addChangeLog(new ViewMaintenanceChangeLog(tripleStore));
+
+    }
+
+    /**
+     * A parsed view definition for a specific KB instance.
+     */
+    public static class ViewDefinition {
+
+        /**
+         * The name of the view.
+         */
+        private final String viewName;
+
+        /**
+         * The original AST for the view definition (with resolved
+         * {@link IV}s).
+         */
+        private final QueryRoot queryRoot;
+
+        /**
+         * The GROUP BY variables iff the view can be maintained
+         * incrementally and otherwise <code>null</code>.
+         */
+        private final IVariable<?>[] groupByVars;
+
+        /**
+         * <code>true</code> iff all constants in the view definition are
+         * known to the lexicon.
+         */
+        private final boolean resolved;
+
+        ViewDefinition(final AbstractTripleStore tripleStore,
+                final String viewName, final String query) throws Exception {
+
+            final ASTContainer astContainer = new Bigdata2ASTSPARQLParser()
+                    .parseQuery2(query, null/* baseURI */);
+
+            ASTDeferredIVResolution.resolveQuery(tripleStore, astContainer);
+
+            final QueryRoot queryRoot = astContainer.getOriginalAST();
+
+            if (queryRoot.getQueryType() != QueryType.SELECT)
+                throw new IllegalArgumentException("Not a SELECT query: "
+                        + query);
+
+            this.viewName = viewName;
+
+            this.queryRoot = queryRoot;
+
+            this.groupByVars = getIncrementalGroupByVars(queryRoot);
+
+            this.resolved = isResolved(queryRoot);
+
+        }
+
+        /**
+         * Return <code>false</code> if the view definition uses a constant
+         * which was not in the lexicon when the view definition was parsed.
+         * Such a view definition can not be cached and the view must be
+         * recomputed rather than maintained incrementally since a statement
+         * using that constant will not unify with the view definition.
+         */
+        public boolean isResolved() {
+
+            return resolved;
+
+        }
+
+        @SuppressWarnings("rawtypes")
+        private static boolean isResolved(final QueryRoot queryRoot) {
+
+            final Iterator<BOp> itr = BOpUtility
+                    .preOrderIteratorWithAnnotations(queryRoot);
+
+            while (itr.hasNext()) {
+
+                final BOp op = itr.next();
+
+                if (op instanceof ConstantNode) {
+
+                    final IV iv = ((ConstantNode) op).getValueExpression()
+                            .get();
+
+                    if (iv == null || iv.isNullIV())
+                        return false;
+
+                }
+
+            }
+
+            return true;
+
+        }
+
+        /**
+         * The name of the view.
+         */
+        public String getViewName() {
+
+            return viewName;
+
+        }
+
+        /**
+         * The original AST for the view definition. The caller MUST NOT
+         * modify this AST.
+         */
+        public QueryRoot getQueryRoot() {
+
+            return queryRoot;
+
+        }
+
+        /**
+         * Return <code>true</code> iff the view can be maintained
+         * incrementally.
+         */
+        public boolean isIncremental() {
+
+            return groupByVars != null;
+
+        }
+
+        /**
+         * Return <code>true</code> iff the query (or sub-select) computes the
+         * same solutions as the view. The ORDER BY and LIMIT/OFFSET of the
+         * query are not considered since they may be applied to the view.
+         * 
+         * @param q
+         *            The query (or sub-select).
+         * @param includeInferred
+         *            Whether the top-level query includes inferred statements.
+         *            The view is materialized with inferred statements, so it
+         *            only matches a query which includes them.
+         */
+        public boolean matches(final QueryBase q, final boolean includeInferred) {
+
+            if (q.getQueryType() != QueryType.SELECT)
+                return false;
+
+            if (includeInferred != queryRoot.getIncludeInferred())
+                return false;
+
+            if (!equals(queryRoot.getProjection(), q.getProjection()))
+                return false;
+
+            if (!equals(queryRoot.getWhereClause(), q.getWhereClause()))
+                return false;
+
+            if (!equals(queryRoot.getGroupBy(), q.getGroupBy()))
+                return false;
+
+            if (!equals(queryRoot.getHaving(), q.getHaving()))
+                return false;
+
+            if (!equals(queryRoot.getBindingsClause(), q.getBindingsClause()))
+                return false;
+
+            if (queryRoot.getOrderBy() != null || queryRoot.getSlice() != null) {
+
+                // The view has solution modifiers of its own.
+                if (!equals(queryRoot.getOrderBy(), q.getOrderBy()))
+                    return false;
+
+                if (!equals(queryRoot.getSlice(), q.getSlice()))
+                    return false;
+
+            }
+
+            if (q instanceof QueryRoot) {
+
+                final QueryRoot r = (QueryRoot) q;
+
+                if (r.getDataset() != null || queryRoot.getDataset() != null)
+                    return false;
+
+                if (r.getNamedSubqueries() != null
+                        || queryRoot.getNamedSubqueries() != null)
+                    return false;
+
+            }
+
+            return true;
+
+        }
+
+        private static boolean equals(final Object a, final Object b) {
+
+            if (a == b)
+                return true;
+
+            if (a == null || b == null)
+                return false;
+
+            return a.equals(b);
+
+        }
+
+    }
+
+    /**
+     * Return the GROUP BY variables if the view can be maintained
+     * incrementally and otherwise <code>null</code>. This is the case when the
+     * WHERE clause is a basic graph pattern (required statement patterns
+     * only), the GROUP BY consists of simple variables which appear in those
+     * statement patterns and the projection consists of those variables and
+     * <code>COUNT</code> or <code>SUM</code> aggregates.
+     */
+    @SuppressWarnings("rawtypes")
+    static IVariable<?>[] getIncrementalGroupByVars(final QueryBase q) {
+
+        if (q.getWhereClause() == null || q.getGroupBy() == null
+                || q.getProjection() == null)
+            return null;
+
+        if (q.getBindingsClause() != null || q.getOrderBy() != null
+                || q.getSlice() != null)
+            return null;
+
+        if (q instanceof QueryRoot
+                && (((QueryRoot) q).getDataset() != null || ((QueryRoot) q)
+                        .getNamedSubqueries() != null))
+            return null;
+
+        if (!(q.getWhereClause() instanceof JoinGroupNode))
+            return null;
+
+        final Set<IVariable<?>> bgpVars = new LinkedHashSet<IVariable<?>>();
+
+        for (IGroupMemberNode child : (JoinGroupNode) q.getWhereClause()) {
+
+            if (!(child instanceof StatementPatternNode))
+                return null;
+
+            final StatementPatternNode sp = (StatementPatternNode) child;
+
+            if (sp.isOptional() || sp.isMinus())
+                return null;
+
+            bgpVars.addAll(sp.getProducedBindings());
+
+        }
+
+        final List<IVariable<?>> groupByVars = new ArrayList<IVariable<?>>();
+
+        for (AssignmentNode a : q.getGroupBy()) {
+
+            if (!(a.getValueExpressionNode() instanceof VarNode))
+                return null;
+
+            final IVariable<?> var = ((VarNode) a.getValueExpressionNode())
+                    .getValueExpression();
+
+            if (!var.equals(a.getVar()) || !bgpVars.contains(var))
+                return null;
+
+            groupByVars.add(var);
+
+        }
+
+        if (groupByVars.isEmpty())
+            return null;
+
+        final ProjectionNode projection = q.getProjection();
+
+        if (projection.isWildcard() || projection.isDistinct()
+                || projection.isReduced())
+            return null;
+
+        for (AssignmentNode a : projection) {
+
+            final IValueExpressionNode ve = a.getValueExpressionNode();
+
+            if (ve instanceof VarNode) {
+
+                if (!groupByVars.contains(((VarNode) ve).getValueExpression()))
+                    return null;
+
+                continue;
+
+            }
+
+            if (!(ve instanceof FunctionNode))
+                return null;
+
+            final FunctionNode f = (FunctionNode) ve;
+
+            if (!FunctionRegistry.COUNT.equals(f.getFunctionURI())
+                    && !FunctionRegistry.SUM.equals(f.getFunctionURI()))
+                return null;
+
+        }
+
+        return groupByVars.toArray(new IVariable[groupByVars.size()]);
+
+    }
+
+    /**
+     * Unify a statement pattern with a statement.
+     * 
+     * @return The bindings for the variables of the statement pattern -or-
+     *         <code>null</code> if the statement does not match the statement
+     *         pattern.
+     */
+    static IBindingSet unify(final StatementPatternNode sp, final ISPO spo) {
+
+        final IBindingSet bset = new ListBindingSet();
+
+        if (!unify(bset, sp.s(), spo.s()))
+            return null;
+
+        if (!unify(bset, sp.p(), spo.p()))
+            return null;
+
+        if (!unify(bset, sp.o(), spo.o()))
+            return null;
+
+        if (sp.c() != null && !unify(bset, sp.c(), spo.c()))
+            return null;
+
+        return bset;
+
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static boolean unify(final IBindingSet bset, final TermNode t,
+            final IV iv) {
+
+        final IVariableOrConstant<IV> ve = t.getValueExpression();
+
+        if (!ve.isVar())
+            return ve.get().equals(iv);
+
+        final IVariable<IV> var = (IVariable<IV>) ve;
+
+        final IConstant<?> c = bset.get(var);
+
+        if (c != null)
+            return c.get().equals(iv);
+
+        bset.set(var, new Constant<IV>(iv));
+
+        return true;
+
+    }
+
+    /**
+     * Maintains the view for a {@link BigdataSailConnection}. The view is
+     * written onto the unisolated named solution set when the transaction is
+     * prepared so it becomes visible atomically with the commit.
+     */
+    private class ViewMaintenanceChangeLog implements IChangeLog {
+
+        private final AbstractTripleStore tripleStore;
+
+        /**
+         * The #of statements changed by a commit above which the view is
+         * recomputed.
+         * 
+         * @see Options#MAX_INCREMENTAL_CHANGES
+         */
+        private final int maxIncrementalChanges;
+
+        /**
+         * The statements added by the transaction -or- <code>null</code> if
+         * there were too many to track.
+         */
+        private List<ISPO> added = new LinkedList<ISPO>();
+
+        /**
+         * The statements removed by the transaction -or- <code>null</code> if
+         * there were too many to track.
+         */
+        private List<ISPO> removed = new LinkedList<ISPO>();
+
+        /**
+         * <code>true</code> iff the view was written by the current
+         * transaction.
+         */
+        private boolean refreshed = false;
+
+        /**
+         * <code>true</code> iff the view could not be maintained by the
+         * current transaction.
+         */
+        private boolean failed = false;
+
+        ViewMaintenanceChangeLog(final AbstractTripleStore tripleStore) {
+
+            this.tripleStore = tripleStore;
+
+            this.maxIncrementalChanges = Integer.parseInt(tripleStore
+                    .getProperty(Options.MAX_INCREMENTAL_CHANGES,
+                            Options.DEFAULT_MAX_INCREMENTAL_CHANGES));
+
+        }
+
+        @Override
+        public void changeEvent(final IChangeRecord record) {
+
+            if (added == null)
+                return;
+
+            final ChangeAction action = record.getChangeAction();
+
+            if (action == ChangeAction.INSERTED) {
+
+                added.add(record.getStatement());
+
+            } else if (action == ChangeAction.REMOVED) {
+
+                removed.add(record.getStatement());
+
+            } else {
+
+                // The statement type changed, but not its existence.
+                return;
+
+            }
+
+            if (added.size() + removed.size() > maxIncrementalChanges) {
+
+                // Recompute the view.
+                added = removed = null;
+
+            }
+
+        }
+
+        @Override
+        public void transactionBegin() {
+
+        }
+
+        @Override
+        public void transactionPrepare() {
+
+            final String ns = tripleStore.getNamespace();
+
+            /*
+             * The changes are only a delta against the view if the view was
+             * maintained through the commit point on which this transaction
+             * builds. Otherwise there was a commit which the view did not
+             * observe and it must be recomputed.
+             */
+            final Long through = maintainedThrough.get(ns);
+
+            final boolean maintained = through != null
+                    && through.longValue() == tripleStore.getIndexManager()
+                            .getLastCommitTime();
+
+            if (maintained && added != null && added.isEmpty()
+                    && removed.isEmpty()) {
+
+                // Nothing changed, so the view is still valid.
+                refreshed = true;
+
+                return;
+
+            }
+
+            final ISolutionSetManager ssm = new SolutionSetManager(
+                    (IBTreeManager) tripleStore.getIndexManager(), ns,
+                    ITx.UNISOLATED);
+
+            try {
+
+                if (!maintained || added == null
+                        || !ssm.existsSolutions(viewName)) {
+
+                    // Discard the parsed definition (IVs may have changed).
+                    definitions.remove(ns);
+
+                    recompute(ssm);
+
+                } else {
+
+                    final ViewDefinition def = getDefinition(tripleStore);
+
+                    if (def == null)
+                        throw new RuntimeException("Could not parse view: "
+                                + viewName);
+
+                    if (def.isIncremental() && def.isResolved()) {
+
+                        refreshGroups(ssm, def);
+
+                    } else {
+
+                        recompute(ssm);
+
+                    }
+
+                }
+
+                refreshed = true;
+
+            } catch (Throwable t) {
+
+                /*
+                 * Do not fail the commit. Drop the view instead so it will not
+                 * be read with stale solutions.
+                 */
+                log.error("Could not maintain view: " + viewName + ", cause="
+                        + t, t);
+
+                failed = true;
+
+                maintainedThrough.remove(ns);
+
+                ssm.clearSolutions(viewName);
+
+            }
+
+        }
+
+        /**
+         * Recompute the view.
+         */
+        private void recompute(final ISolutionSetManager ssm) throws Exception {
+
+            final ViewDefinition def = getDefinition(tripleStore);
+
+            if (def == null)
+                throw new RuntimeException("Could not parse view: " + viewName);
+
+            final ICloseableIterator<IBindingSet[]> itr = evaluate(tripleStore,
+                    (QueryRoot) BOpUtility.deepCopy(def.getQueryRoot()));
+
+            try {
+
+                ssm.putSolutions(viewName, itr);
+
+            } finally {
+
+                itr.close();
+
+            }
+
+            if (log.isInfoEnabled())
+                log.info("Recomputed view: " + viewName + " for " + tripleStore.getNamespace());
+
+        }
+
+        /**
+         * Re-aggregate only those groups of the view which could have been
+         * affected by the statements which were added or removed.
+         */
+        private void refreshGroups(final ISolutionSetManager ssm,
+                final ViewDefinition def) throws Exception {
+
+            final IVariable<?>[] groupByVars = def.groupByVars;
+
+            final Set<IBindingSet> affected = new LinkedHashSet<IBindingSet>();
+
+            // Groups having solutions which use an added statement.
+            findGroups(tripleStore, def, added, affected);
+
+            if (!removed.isEmpty()) {
+
+                /*
+                 * Groups which had solutions using a removed statement. Those
+                 * solutions are found by reading on the last commit point.
+                 */
+                final IIndexManager indexManager = tripleStore
+                        .getIndexManager();
+
+                final long lastCommitTime = indexManager.getLastCommitTime();
+
+                final AbstractTripleStore before = lastCommitTime == 0L ? null
+                        : (AbstractTripleStore) indexManager
+                                .getResourceLocator().locate(
+                                        tripleStore.getNamespace(),
+                                        lastCommitTime);
+
+                if (before != null) {
+
+                    findGroups(before, def, removed, affected);
+
+                }
+
+            }
+
+            if (affected.isEmpty()) {
+
+                // No group was affected.
+                return;
+
+            }
+
+            // Re-aggregate the affected groups.
+            final QueryRoot q = (QueryRoot) BOpUtility.deepCopy(def
+                    .getQueryRoot());
+
+            q.setBindingsClause(new BindingsClause(
+                    new LinkedHashSet<IVariable<?>>(Arrays.asList(groupByVars)),
+                    new ArrayList<IBindingSet>(affected)));
+
+            final List<IBindingSet[]> solutions = new LinkedList<IBindingSet[]>();
+
+            // The unaffected groups.
+            {
+
+                final List<IBindingSet> keep = new LinkedList<IBindingSet>();
+
+                final ICloseableIterator<IBindingSet[]> itr = ssm
+                        .getSolutions(viewName);
+
+                try {
+
+                    while (itr.hasNext()) {
+
+                        for (IBindingSet bset : itr.next()) {
+
+                            if (!affected.contains(bset.copy(groupByVars)))
+                                keep.add(bset);
+
+                        }
+
+                    }
+
+                } finally {
+
+                    itr.close();
+
+                }
+
+                solutions.add(keep.toArray(new IBindingSet[keep.size()]));
+
+            }
+
+            // The re-aggregated groups.
+            {
+
+                final ICloseableIterator<IBindingSet[]> itr = evaluate(
+                        tripleStore, q);
+
+                try {
+
+                    while (itr.hasNext()) {
+
+                        solutions.add(itr.next());
+
+                    }
+
+                } finally {
+
+                    itr.close();
+
+                }
+
+            }
+
+            ssm.putSolutions(viewName,
+                    new CloseableIteratorWrapper<IBindingSet[]>(solutions
+                            .iterator()));
+
+            if (log.isInfoEnabled())
+                log.info("Refreshed view: " + viewName + ", ngroups="
+                        + affected.size());
+
+        }
+
+        @Override
+        public void transactionCommited(final long commitTime) {
+
+            if (refreshed && !failed && commitTime != 0L) {
+
+                maintainedThrough.put(tripleStore.getNamespace(), commitTime);
+
+            }
+
+            reset();
+
+        }
+
+        @Override
+        public void transactionAborted() {
+
+            reset();
+
+        }
+
+        /**
+         * See {@link IChangeLog#close()}.
+         */
+        @Override
+        public void close() {
+
+            reset();
+
+        }
+
+        /** Reset the buffers. */
+        private void reset() {
+
+            added = new LinkedList<ISPO>();
+
+            removed = new LinkedList<ISPO>();
+
+            refreshed = failed = false;
+
+        }
+
+    }
+
+    /**
+     * Add the group keys of the view's solutions which use any of the given
+     * statements (as read on the given view of the KB) to the set of
+     * affected groups.
+     */
+    static private void findGroups(final AbstractTripleStore tripleStore,
+            final ViewDefinition def, final List<ISPO> stmts,
+            final Set<IBindingSet> affected) throws Exception {
+
+        if (stmts.isEmpty())
+            return;
+
+        final IVariable<?>[] groupByVars = def.groupByVars;
+
+        final JoinGroupNode whereClause = (JoinGroupNode) def.getQueryRoot()
+                .getWhereClause();
+
+        // Bind each statement pattern in turn to each statement.
+        final Set<IBindingSet> bindings = new LinkedHashSet<IBindingSet>();
+
+        final LinkedHashSet<IVariable<?>> declaredVars = new LinkedHashSet<IVariable<?>>();
+
+        for (IGroupMemberNode child : whereClause) {
+
+            final StatementPatternNode sp = (StatementPatternNode) child;
+
+            for (ISPO spo : stmts) {
+
+                final IBindingSet bset = unify(sp, spo);
+
+                if (bset != null) {
+
+                    bindings.add(bset);
+
+                    declaredVars.addAll(sp.getProducedBindings());
+
+                }
+
+            }
+
+        }
+
+        if (bindings.isEmpty())
+            return;
+
+        // SELECT DISTINCT groupByVars { BGP } VALUES ...
+        final QueryRoot q = new QueryRoot(QueryType.SELECT);
+
+        final ProjectionNode projection = new ProjectionNode();
+
+        projection.setDistinct(true);
+
+        for (IVariable<?> var : groupByVars) {
+
+            projection.addProjectionVar(new VarNode(var.getName()));
+
+        }
+
+        q.setProjection(projection);
+
+        q.setWhereClause((JoinGroupNode) BOpUtility.deepCopy(whereClause));
+
+        q.setBindingsClause(new BindingsClause(declaredVars,
+                new ArrayList<IBindingSet>(bindings)));
+
+        final ICloseableIterator<IBindingSet[]> itr = evaluate(tripleStore, q);
+
+        try {
+
+            while (itr.hasNext()) {
+
+                for (IBindingSet bset : itr.next()) {
+
+                    affected.add(bset.copy(groupByVars));
+
+                }
+
+            }
+
+        } finally {
+
+            itr.close();
+
+        }
+
+    }
+
+    /**
+     * Evaluate a query against a view of the KB without materializing the
+     * solutions.
+     */
+    static private ICloseableIterator<IBindingSet[]> evaluate(
+            final AbstractTripleStore tripleStore, final QueryRoot q)
+            throws Exception {
+
+        return ASTEvalHelper.evaluateTupleQuery2(tripleStore,
+                new ASTContainer(q), new QueryBindingSet(), false/* materialize */);
+
+    }
+
+}
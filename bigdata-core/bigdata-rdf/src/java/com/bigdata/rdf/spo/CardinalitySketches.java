@@ -0,0 +1,465 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.util.BytesUtil.UnsignedByteArrayComparator;
+
+/**
+ * Mergeable {@link HyperLogLog} sketches of the #of distinct values in each
+ * position of the statements for each key prefix of the statement indices.
+ * For a prefix of <code>k</code> key components, there is one sketch for each
+ * distinct prefix and each of the remaining key positions. For example, with
+ * a prefix length of ONE (1) in a triple store, the POS index contributes a
+ * sketch of the distinct objects and a sketch of the distinct subjects for
+ * each predicate, and every index contributes a sketch of the distinct values
+ * in each position for the empty prefix.
+ * <p>
+ * The sketches are keyed by the bound positions of the prefix (in SPOC order)
+ * rather than by the index, so the statement indices which share the same
+ * leading components write on the same sketches. Since offering the same
+ * value to a sketch more than once is a NOP, the sketches may be updated with
+ * each statement which is written on an index without regard to whether or
+ * not the statement was already present. Statements which are retracted are
+ * not removed from the sketches, so the estimates become upper bounds once
+ * statements have been retracted.
+ * <p>
+ * The key of a sketch is:
+ * 
+ * <pre>
+ * [k][bound positions...][target position][bound IVs...]
+ * </pre>
+ * 
+ * where <code>k</code> is the #of bound positions, the positions are the
+ * {@link ISPO} slots (0:s, 1:p, 2:o, 3:c) in ascending order, and the bound
+ * {@link IV}s are encoded in the same order. The value is the serialized
+ * {@link HyperLogLog}.
+ * 
+ * @see com.bigdata.rdf.store.AbstractTripleStore.Options#CARDINALITY_SKETCHES
+ * @see SPORelation#getCardinalitySketches()
+ */
+public class CardinalitySketches {
+
+    private static final transient Logger log = Logger
+            .getLogger(CardinalitySketches.class);
+
+    /**
+     * The index on which the sketches are stored.
+     */
+    private final IIndex ndx;
+
+    /**
+     * The statement indices which are maintained for the relation. A sketch
+     * for a set of bound positions exists only if one of these indices has
+     * those positions as the leading components of its key.
+     */
+    private final List<SPOKeyOrder> keyOrders;
+
+    /**
+     * The maximum #of leading key components for which sketches are
+     * maintained.
+     */
+    private final int prefixLength;
+
+    /**
+     * The precision of the sketches.
+     */
+    private final int precision;
+
+    /**
+     * @param ndx
+     *            The index on which the sketches are stored.
+     * @param keyOrders
+     *            The statement indices which are maintained for the relation.
+     * @param prefixLength
+     *            The maximum #of leading key components for which sketches
+     *            are maintained.
+     * @param precision
+     *            The precision of the sketches.
+     */
+    public CardinalitySketches(final IIndex ndx,
+            final Iterator<SPOKeyOrder> keyOrders, final int prefixLength,
+            final int precision) {
+
+        if (ndx == null)
+            throw new IllegalArgumentException();
+
+        if (keyOrders == null)
+            throw new IllegalArgumentException();
+
+        if (prefixLength < 0)
+            throw new IllegalArgumentException();
+
+        if (precision < HyperLogLog.MIN_PRECISION
+                || precision > HyperLogLog.MAX_PRECISION)
+            throw new IllegalArgumentException();
+
+        this.ndx = ndx;
+
+        final List<SPOKeyOrder> tmp = new ArrayList<SPOKeyOrder>();
+
+        while (keyOrders.hasNext()) {
+
+            tmp.add(keyOrders.next());
+
+        }
+
+        this.keyOrders = Collections.unmodifiableList(tmp);
+
+        this.prefixLength = prefixLength;
+
+        this.precision = precision;
+
+    }
+
+    /**
+     * The maximum #of leading key components for which sketches are
+     * maintained.
+     */
+    public int getPrefixLength() {
+
+        return prefixLength;
+
+    }
+
+    /**
+     * The precision of the sketches.
+     */
+    public int getPrecision() {
+
+        return precision;
+
+    }
+
+    /**
+     * Update the sketches for keys which were written on a statement index.
+     * The sketches are accumulated for the keys and then merged into the
+     * sketches on the index. The caller's keys SHOULD be in index order so
+     * that the sketches for a given prefix are accumulated together.
+     * 
+     * @param keyOrder
+     *            The statement index on which the keys were written.
+     * @param keys
+     *            The keys.
+     * @param fromIndex
+     *            The index of the first key to be offered.
+     * @param toIndex
+     *            The index of the first key which will not be offered.
+     */
+    public void update(final SPOKeyOrder keyOrder, final byte[][] keys,
+            final int fromIndex, final int toIndex) {
+
+        if (keyOrder == null)
+            throw new IllegalArgumentException();
+
+        if (keys == null)
+            throw new IllegalArgumentException();
+
+        if (fromIndex < 0 || toIndex > keys.length || fromIndex > toIndex)
+            throw new IllegalArgumentException();
+
+        if (fromIndex == toIndex)
+            return;
+
+        final int arity = keyOrder.getKeyArity();
+
+        final int maxPrefix = Math.min(prefixLength, arity - 1);
+
+        /*
+         * The offset of each key component. The last entry is the length of
+         * the key.
+         */
+        final int[] offsets = new int[arity + 1];
+
+        final Map<byte[], HyperLogLog> tmp = new TreeMap<byte[], HyperLogLog>(
+                UnsignedByteArrayComparator.INSTANCE);
+
+        for (int i = fromIndex; i < toIndex; i++) {
+
+            final byte[] key = keys[i];
+
+            for (int j = 0; j < arity; j++) {
+
+                final IV<?, ?> iv = IVUtility.decodeFromOffset(key, offsets[j]);
+
+                offsets[j + 1] = offsets[j]
+                        + (iv == null ? TermId.NullIV.byteLength() : iv
+                                .byteLength());
+
+            }
+
+            for (int k = 0; k <= maxPrefix; k++) {
+
+                for (int pos = k; pos < arity; pos++) {
+
+                    final byte[] sketchKey = getSketchKey(keyOrder, k, pos,
+                            key, offsets);
+
+                    HyperLogLog hll = tmp.get(sketchKey);
+
+                    if (hll == null) {
+
+                        hll = new HyperLogLog(precision);
+
+                        tmp.put(sketchKey, hll);
+
+                    }
+
+                    hll.offer(key, offsets[pos], offsets[pos + 1]
+                            - offsets[pos]);
+
+                }
+
+            }
+
+        }
+
+        final int nmodified = merge(tmp);
+
+        if (log.isDebugEnabled())
+            log.debug("keyOrder=" + keyOrder + ", nkeys="
+                    + (toIndex - fromIndex) + ", nsketches=" + tmp.size()
+                    + ", nmodified=" + nmodified);
+
+    }
+
+    /**
+     * Merge the sketches into the sketches on the index.
+     * <p>
+     * Note: The statement indices are written concurrently, so this is
+     * synchronized on the index.
+     * 
+     * @return The #of sketches which were modified.
+     */
+    private int merge(final Map<byte[], HyperLogLog> sketches) {
+
+        int nmodified = 0;
+
+        synchronized (ndx) {
+
+            for (Map.Entry<byte[], HyperLogLog> e : sketches.entrySet()) {
+
+                final byte[] key = e.getKey();
+
+                final byte[] val = ndx.lookup(key);
+
+                final HyperLogLog hll;
+
+                if (val == null) {
+
+                    hll = e.getValue();
+
+                } else {
+
+                    hll = HyperLogLog.fromByteArray(val);
+
+                    if (!hll.merge(e.getValue())) {
+
+                        // Nothing new.
+                        continue;
+
+                    }
+
+                }
+
+                ndx.insert(key, hll.toByteArray());
+
+                nmodified++;
+
+            }
+
+        }
+
+        return nmodified;
+
+    }
+
+    /**
+     * Form the key of the sketch for the distinct values at the given key
+     * position of a statement key given its first <i>k</i> components.
+     */
+    private static byte[] getSketchKey(final SPOKeyOrder keyOrder,
+            final int k, final int pos, final byte[] key, final int[] offsets) {
+
+        // The slots of the prefix in SPOC order.
+        final int[] slots = new int[k];
+
+        for (int j = 0; j < k; j++) {
+
+            slots[j] = keyOrder.getKeyOrder(j);
+
+        }
+
+        Arrays.sort(slots);
+
+        final byte[] a = new byte[2 + k + offsets[k]];
+
+        int off = 0;
+
+        a[off++] = (byte) k;
+
+        for (int j = 0; j < k; j++) {
+
+            a[off++] = (byte) slots[j];
+
+        }
+
+        a[off++] = (byte) keyOrder.getKeyOrder(pos);
+
+        for (int j = 0; j < k; j++) {
+
+            final int keyPos = keyOrder.getPositionInIndex(slots[j]);
+
+            final int len = offsets[keyPos + 1] - offsets[keyPos];
+
+            System.arraycopy(key, offsets[keyPos], a, off, len);
+
+            off += len;
+
+        }
+
+        return a;
+
+    }
+
+    /**
+     * Return the estimated #of distinct values in the <i>target</i> position
+     * of the statements matching the bound positions.
+     * 
+     * @param spoc
+     *            The {@link IV}s for each {@link ISPO} slot (s,p,o[,c]). A
+     *            <code>null</code> indicates an unbound position.
+     * @param target
+     *            The slot whose distinct values will be estimated. This
+     *            position must be unbound.
+     * 
+     * @return The estimated #of distinct values -or- <code>-1L</code> if no
+     *         sketch is maintained for the bound positions (too many bound
+     *         positions or no statement index having those positions as the
+     *         leading components of its key).
+     */
+    public long estimateDistinctCount(final IV<?, ?>[] spoc, final int target) {
+
+        if (spoc == null)
+            throw new IllegalArgumentException();
+
+        if (target < 0 || target >= spoc.length || spoc[target] != null)
+            throw new IllegalArgumentException();
+
+        int k = 0;
+
+        for (IV<?, ?> iv : spoc) {
+
+            if (iv != null)
+                k++;
+
+        }
+
+        if (k > prefixLength)
+            return -1L;
+
+        if (!isCovered(spoc, k))
+            return -1L;
+
+        final IKeyBuilder keyBuilder = KeyBuilder.newInstance();
+
+        keyBuilder.append((byte) k);
+
+        for (int i = 0; i < spoc.length; i++) {
+
+            if (spoc[i] != null)
+                keyBuilder.append((byte) i);
+
+        }
+
+        keyBuilder.append((byte) target);
+
+        for (int i = 0; i < spoc.length; i++) {
+
+            if (spoc[i] != null)
+                IVUtility.encode(keyBuilder, spoc[i]);
+
+        }
+
+        final byte[] val = ndx.lookup(keyBuilder.getKey());
+
+        if (val == null) {
+
+            // Nothing was ever written for that prefix.
+            return 0L;
+
+        }
+
+        return HyperLogLog.fromByteArray(val).cardinality();
+
+    }
+
+    /**
+     * Return <code>true</code> iff some statement index has the bound
+     * positions as the leading components of its key.
+     */
+    private boolean isCovered(final IV<?, ?>[] spoc, final int k) {
+
+        for (SPOKeyOrder keyOrder : keyOrders) {
+
+            if (keyOrder.getKeyArity() != spoc.length)
+                continue;
+
+            boolean covered = true;
+
+            for (int j = 0; j < k && covered; j++) {
+
+                covered = spoc[keyOrder.getKeyOrder(j)] != null;
+
+            }
+
+            if (covered)
+                return true;
+
+        }
+
+        return false;
+
+    }
+
+}
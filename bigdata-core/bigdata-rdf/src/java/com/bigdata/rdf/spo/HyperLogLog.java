@@ -0,0 +1,411 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable HyperLogLog sketch of the #of distinct elements in a multiset
+ * (see Flajolet, Fusy, Gandouet and Meunier, "HyperLogLog: the analysis of a
+ * near-optimal cardinality estimation algorithm", AofA 2007). The sketch has
+ * <code>m = 2^p</code> registers. Each element is hashed onto 64 bits. The
+ * first <code>p</code> bits select a register and the register retains the
+ * maximum rank (the position of the leftmost one bit) seen in the remaining
+ * bits. Offering the same element more than once does not change the sketch
+ * and the union of two multisets is estimated by taking the register-wise
+ * maximum of their sketches (see {@link #merge(HyperLogLog)}).
+ * <p>
+ * Since a 64-bit hash is used, the large range correction of the original
+ * algorithm is not required. The small range correction (linear counting) is
+ * applied when the raw estimate is small and some registers are still zero.
+ * <p>
+ * The serialized form (see {@link #toByteArray()}) is sparse when few
+ * registers are non-zero, which keeps the sketches for rare key prefixes
+ * small.
+ * <p>
+ * Note: This class is not thread-safe.
+ * 
+ * @see CardinalitySketches
+ */
+public class HyperLogLog {
+
+    /**
+     * The minimum precision.
+     */
+    public static final int MIN_PRECISION = 4;
+
+    /**
+     * The maximum precision. The register index must fit within an unsigned
+     * short for the sparse serialization.
+     */
+    public static final int MAX_PRECISION = 16;
+
+    private static final byte VERSION0 = 0x00;
+
+    private static final byte DENSE = 0x00;
+
+    private static final byte SPARSE = 0x01;
+
+    /**
+     * The precision (log2 of the #of registers).
+     */
+    private final int p;
+
+    /**
+     * The registers.
+     */
+    private final byte[] registers;
+
+    /**
+     * @param p
+     *            The precision (log2 of the #of registers).
+     * 
+     * @throws IllegalArgumentException
+     *             unless <i>p</i> is in
+     *             [{@link #MIN_PRECISION}:{@link #MAX_PRECISION}].
+     */
+    public HyperLogLog(final int p) {
+
+        if (p < MIN_PRECISION || p > MAX_PRECISION)
+            throw new IllegalArgumentException();
+
+        this.p = p;
+
+        this.registers = new byte[1 << p];
+
+    }
+
+    /**
+     * The precision (log2 of the #of registers).
+     */
+    public int getPrecision() {
+
+        return p;
+
+    }
+
+    /**
+     * Offer an element to the sketch.
+     * 
+     * @param hash
+     *            A 64-bit hash of the element (see
+     *            {@link #hash(byte[], int, int)}).
+     * 
+     * @return <code>true</code> iff the sketch was changed.
+     */
+    public boolean offer(final long hash) {
+
+        final int index = (int) (hash >>> (64 - p));
+
+        final long w = hash << p;
+
+        final int rank = w == 0L ? (64 - p + 1) : Long
+                .numberOfLeadingZeros(w) + 1;
+
+        if (rank > registers[index]) {
+
+            registers[index] = (byte) rank;
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Offer an element to the sketch.
+     * 
+     * @param a
+     *            A byte[] containing the element.
+     * @param off
+     *            The offset of the element in the byte[].
+     * @param len
+     *            The length of the element.
+     * 
+     * @return <code>true</code> iff the sketch was changed.
+     */
+    public boolean offer(final byte[] a, final int off, final int len) {
+
+        return offer(hash(a, off, len));
+
+    }
+
+    /**
+     * Merge another sketch into this sketch. Afterwards this sketch estimates
+     * the #of distinct elements in the union of the two multisets.
+     * 
+     * @param o
+     *            The other sketch.
+     * 
+     * @return <code>true</code> iff this sketch was changed.
+     * 
+     * @throws IllegalArgumentException
+     *             if the sketches do not have the same precision.
+     */
+    public boolean merge(final HyperLogLog o) {
+
+        if (o == null)
+            throw new IllegalArgumentException();
+
+        if (o.p != p)
+            throw new IllegalArgumentException("precision: " + p + " != "
+                    + o.p);
+
+        boolean modified = false;
+
+        for (int i = 0; i < registers.length; i++) {
+
+            if (o.registers[i] > registers[i]) {
+
+                registers[i] = o.registers[i];
+
+                modified = true;
+
+            }
+
+        }
+
+        return modified;
+
+    }
+
+    /**
+     * Return the estimated #of distinct elements offered to the sketch.
+     */
+    public long cardinality() {
+
+        final int m = registers.length;
+
+        double sum = 0d;
+
+        int zeros = 0;
+
+        for (int i = 0; i < m; i++) {
+
+            sum += 1d / (1L << registers[i]);
+
+            if (registers[i] == 0)
+                zeros++;
+
+        }
+
+        final double estimate = alpha(m) * m * m / sum;
+
+        if (estimate <= 2.5d * m && zeros != 0) {
+
+            // small range correction (linear counting).
+            return Math.round(m * Math.log((double) m / zeros));
+
+        }
+
+        return Math.round(estimate);
+
+    }
+
+    private static double alpha(final int m) {
+
+        switch (m) {
+        case 16:
+            return 0.673d;
+        case 32:
+            return 0.697d;
+        case 64:
+            return 0.709d;
+        default:
+            return 0.7213d / (1d + 1.079d / m);
+        }
+
+    }
+
+    /**
+     * Return <code>true</code> iff nothing has been offered to the sketch.
+     */
+    public boolean isEmpty() {
+
+        for (byte b : registers) {
+
+            if (b != 0)
+                return false;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Serialize the sketch. The sparse form is used when fewer than one
+     * third of the registers are non-zero.
+     */
+    public byte[] toByteArray() {
+
+        int nonZero = 0;
+
+        for (byte b : registers) {
+
+            if (b != 0)
+                nonZero++;
+
+        }
+
+        if (nonZero * 3 < registers.length) {
+
+            // sparse: [index:unsigned short][rank:byte] for non-zero registers.
+            final byte[] a = new byte[3 + nonZero * 3];
+
+            a[0] = VERSION0;
+            a[1] = (byte) p;
+            a[2] = SPARSE;
+
+            int off = 3;
+
+            for (int i = 0; i < registers.length; i++) {
+
+                if (registers[i] == 0)
+                    continue;
+
+                a[off++] = (byte) (i >>> 8);
+                a[off++] = (byte) i;
+                a[off++] = registers[i];
+
+            }
+
+            return a;
+
+        }
+
+        final byte[] a = new byte[3 + registers.length];
+
+        a[0] = VERSION0;
+        a[1] = (byte) p;
+        a[2] = DENSE;
+
+        System.arraycopy(registers, 0, a, 3, registers.length);
+
+        return a;
+
+    }
+
+    /**
+     * De-serialize a sketch.
+     * 
+     * @param a
+     *            The serialized sketch (see {@link #toByteArray()}).
+     * 
+     * @return The sketch.
+     */
+    public static HyperLogLog fromByteArray(final byte[] a) {
+
+        if (a == null || a.length < 3)
+            throw new IllegalArgumentException();
+
+        if (a[0] != VERSION0)
+            throw new UnsupportedOperationException("Unknown version: "
+                    + a[0]);
+
+        final HyperLogLog hll = new HyperLogLog(a[1]);
+
+        switch (a[2]) {
+        case DENSE:
+            if (a.length != 3 + hll.registers.length)
+                throw new IllegalArgumentException();
+            System.arraycopy(a, 3, hll.registers, 0, hll.registers.length);
+            break;
+        case SPARSE:
+            for (int off = 3; off + 2 < a.length; off += 3) {
+                final int index = ((a[off] & 0xff) << 8) | (a[off + 1] & 0xff);
+                hll.registers[index] = a[off + 2];
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("format: " + a[2]);
+        }
+
+        return hll;
+
+    }
+
+    /**
+     * A 64-bit hash of a slice of a byte[] (FNV-1a followed by the MurmurHash3
+     * finalizer to spread the bits over the register index and rank).
+     */
+    public static long hash(final byte[] a, final int off, final int len) {
+
+        long h = 0xcbf29ce484222325L;
+
+        for (int i = off; i < off + len; i++) {
+
+            h ^= (a[i] & 0xff);
+
+            h *= 0x100000001b3L;
+
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53fe1a85ec3L;
+        h ^= h >>> 33;
+
+        return h;
+
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+
+        if (this == o)
+            return true;
+
+        if (!(o instanceof HyperLogLog))
+            return false;
+
+        final HyperLogLog t = (HyperLogLog) o;
+
+        return p == t.p && Arrays.equals(registers, t.registers);
+
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Arrays.hashCode(registers);
+
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getSimpleName() + "{p=" + p + ",cardinality="
+                + cardinality() + "}";
+
+    }
+
+}
@@ -0,0 +1,1026 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.IRangeQuery;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.io.DataInputBuffer;
+import com.bigdata.io.DataOutputBuffer;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+
+/**
+ * Per-predicate and characteristic set statistics for the statements in an
+ * {@link SPORelation}. The per-predicate statistics are the #of statements,
+ * the #of distinct subjects and the #of distinct objects for each predicate.
+ * A characteristic set is the set of predicates used by some subject. For each
+ * characteristic set we record the #of distinct subjects having exactly that
+ * set of predicates and, for each predicate in the set, the #of statements
+ * using that predicate for those subjects.
+ * <p>
+ * Together these allow a star pattern (a set of triple patterns sharing the
+ * same subject variable) to be estimated without assuming that the patterns
+ * are independent. The cardinality of a star over predicates
+ * <code>{p1..pn}</code> is the sum over each characteristic set containing
+ * those predicates of the #of distinct subjects for that set times the mean
+ * multiplicity of each predicate within the set (see Neumann and Moerkotte,
+ * "Characteristic Sets: Accurate Cardinality Estimation for RDF Queries with
+ * Multiple Joins", ICDE 2011).
+ * <p>
+ * The statistics are computed by a scan of the statement indices (see
+ * {@link #build(SPORelation, int)}) and are stored in a small index of the
+ * {@link SPORelation} (see {@link #write(IIndex)}). They describe the data as
+ * of the last rebuild and are only used to estimate cardinalities, so a stale
+ * rebuild degrades the join order but never the correctness of the query.
+ * 
+ * @see SPORelation#getStatistics()
+ * @see SPORelation#rebuildStatistics()
+ * @see com.bigdata.rdf.store.AbstractTripleStore.Options#STATISTICS
+ */
+public class PredicateStatistics {
+
+    private static final transient Logger log = Logger
+            .getLogger(PredicateStatistics.class);
+
+    /**
+     * The first byte of the key for the header record.
+     */
+    private static final byte HEADER = 0;
+
+    /**
+     * The first byte of the key for a per-predicate record.
+     */
+    private static final byte PREDICATE = 1;
+
+    /**
+     * The first byte of the key for a characteristic set record.
+     */
+    private static final byte CHARACTERISTIC_SET = 2;
+
+    /**
+     * The key for the header record.
+     */
+    private static final byte[] HEADER_KEY = new byte[] { HEADER };
+
+    /**
+     * Statistics for a single predicate.
+     */
+    public static class PredicateStat {
+
+        private final IV<?, ?> p;
+
+        private final long statementCount;
+
+        private final long distinctSubjects;
+
+        private final long distinctObjects;
+
+        PredicateStat(final IV<?, ?> p, final long statementCount,
+                final long distinctSubjects, final long distinctObjects) {
+
+            this.p = p;
+            this.statementCount = statementCount;
+            this.distinctSubjects = distinctSubjects;
+            this.distinctObjects = distinctObjects;
+
+        }
+
+        /**
+         * The predicate.
+         */
+        public IV<?, ?> getPredicate() {
+            return p;
+        }
+
+        /**
+         * The #of statements using the predicate.
+         */
+        public long getStatementCount() {
+            return statementCount;
+        }
+
+        /**
+         * The #of distinct subjects for the predicate.
+         */
+        public long getDistinctSubjectCount() {
+            return distinctSubjects;
+        }
+
+        /**
+         * The #of distinct objects for the predicate.
+         */
+        public long getDistinctObjectCount() {
+            return distinctObjects;
+        }
+
+        @Override
+        public String toString() {
+            return "PredicateStat{p=" + p + ",statementCount=" + statementCount
+                    + ",distinctSubjects=" + distinctSubjects
+                    + ",distinctObjects=" + distinctObjects + "}";
+        }
+
+    }
+
+    /**
+     * A characteristic set: the distinct predicates used by some set of
+     * subjects.
+     */
+    public static class CharacteristicSet {
+
+        /**
+         * The predicates in index order.
+         */
+        private final IV<?, ?>[] predicates;
+
+        /**
+         * The #of distinct subjects having exactly this set of predicates.
+         */
+        private final long distinctSubjects;
+
+        /**
+         * The #of statements for each predicate, summed over those subjects.
+         * The index into the array is the index into {@link #predicates}.
+         */
+        private final long[] occurrences;
+
+        CharacteristicSet(final IV<?, ?>[] predicates,
+                final long distinctSubjects, final long[] occurrences) {
+
+            this.predicates = predicates;
+            this.distinctSubjects = distinctSubjects;
+            this.occurrences = occurrences;
+
+        }
+
+        /**
+         * The #of predicates in the set.
+         */
+        public int size() {
+            return predicates.length;
+        }
+
+        /**
+         * The #of distinct subjects having exactly this set of predicates.
+         */
+        public long getDistinctSubjectCount() {
+            return distinctSubjects;
+        }
+
+        /**
+         * Return the #of statements using the predicate for the subjects in
+         * this set -or- <code>0L</code> if the predicate is not in this set.
+         */
+        public long getOccurrences(final IV<?, ?> p) {
+
+            for (int i = 0; i < predicates.length; i++) {
+
+                if (predicates[i].equals(p))
+                    return occurrences[i];
+
+            }
+
+            return 0L;
+
+        }
+
+        @Override
+        public String toString() {
+            return "CharacteristicSet{predicates="
+                    + Arrays.toString(predicates) + ",distinctSubjects="
+                    + distinctSubjects + ",occurrences="
+                    + Arrays.toString(occurrences) + "}";
+        }
+
+    }
+
+    /**
+     * The serialized header record. This includes a unique identifier for
+     * the rebuild, which is used to decide whether a previously read instance
+     * is still current.
+     */
+    private final byte[] header;
+
+    /**
+     * The time (milliseconds) at which the statistics were built.
+     */
+    private final long timestamp;
+
+    /**
+     * The #of statements scanned by the rebuild.
+     */
+    private final long statementCount;
+
+    /**
+     * The #of distinct subjects scanned by the rebuild.
+     */
+    private final long subjectCount;
+
+    /**
+     * <code>true</code> iff some characteristic sets were discarded because
+     * there were more than the configured maximum.
+     */
+    private final boolean truncated;
+
+    private final Map<IV<?, ?>, PredicateStat> predicates;
+
+    /**
+     * The retained characteristic sets in descending order by the #of
+     * distinct subjects.
+     */
+    private final List<CharacteristicSet> sets;
+
+    private PredicateStatistics(final byte[] header, final long timestamp,
+            final long statementCount, final long subjectCount,
+            final boolean truncated,
+            final Map<IV<?, ?>, PredicateStat> predicates,
+            final List<CharacteristicSet> sets) {
+
+        this.header = header;
+        this.timestamp = timestamp;
+        this.statementCount = statementCount;
+        this.subjectCount = subjectCount;
+        this.truncated = truncated;
+        this.predicates = predicates;
+        this.sets = sets;
+
+    }
+
+    /**
+     * The time (milliseconds) at which the statistics were built.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * The age of the statistics (milliseconds). Writes since then are not
+     * reflected in the statistics.
+     */
+    public long getAge() {
+        return System.currentTimeMillis() - timestamp;
+    }
+
+    /**
+     * The #of statements scanned by the rebuild.
+     */
+    public long getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * The #of distinct subjects scanned by the rebuild.
+     */
+    public long getSubjectCount() {
+        return subjectCount;
+    }
+
+    /**
+     * <code>true</code> iff the least frequent characteristic sets were
+     * discarded by the rebuild.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Return the statistics for the predicate -or- <code>null</code> if the
+     * predicate was not used by any statement when the statistics were
+     * rebuilt.
+     */
+    public PredicateStat getPredicateStat(final IV<?, ?> p) {
+
+        return predicates.get(p);
+
+    }
+
+    /**
+     * The #of distinct predicates.
+     */
+    public int getPredicateCount() {
+
+        return predicates.size();
+
+    }
+
+    /**
+     * The retained characteristic sets, in descending order by the #of
+     * distinct subjects.
+     */
+    public List<CharacteristicSet> getCharacteristicSets() {
+
+        return Collections.unmodifiableList(sets);
+
+    }
+
+    /**
+     * Estimate the #of solutions for a star pattern: a set of triple patterns
+     * sharing the same subject variable with constant predicates and whose
+     * objects are either constants or distinct variables.
+     * 
+     * @param preds
+     *            The predicate of each triple pattern. The same predicate may
+     *            appear more than once.
+     * @param selectivity
+     *            The selectivity of each triple pattern with respect to its
+     *            predicate. This is <code>1.0</code> if the object is a
+     *            variable and the estimated fraction of the statements for
+     *            that predicate which are matched if the object is bound.
+     * 
+     * @return The estimated cardinality -or- <code>-1L</code> if the star can
+     *         not be estimated from these statistics (a predicate is unknown
+     *         or no retained characteristic set contains all of the
+     *         predicates).
+     */
+    public long estimateStarCardinality(final IV<?, ?>[] preds,
+            final double[] selectivity) {
+
+        if (preds == null)
+            throw new IllegalArgumentException();
+
+        if (selectivity == null || selectivity.length != preds.length)
+            throw new IllegalArgumentException();
+
+        if (preds.length == 0)
+            return -1L;
+
+        for (IV<?, ?> p : preds) {
+
+            if (!predicates.containsKey(p)) {
+
+                // Predicate was not known to the last rebuild.
+                return -1L;
+
+            }
+
+        }
+
+        final int npreds = distinctCount(preds);
+
+        boolean found = false;
+
+        double cardinality = 0d;
+
+        for (CharacteristicSet cs : sets) {
+
+            if (cs.size() < npreds)
+                continue;
+
+            double c = cs.distinctSubjects;
+
+            for (int i = 0; i < preds.length && c > 0d; i++) {
+
+                final long occurrences = cs.getOccurrences(preds[i]);
+
+                /*
+                 * Note: The mean multiplicity of the predicate for the
+                 * subjects in this set, scaled by the selectivity of the
+                 * object (if bound).
+                 */
+                c *= ((double) occurrences / cs.distinctSubjects)
+                        * selectivity[i];
+
+            }
+
+            if (c > 0d) {
+
+                found = true;
+
+                cardinality += c;
+
+            }
+
+        }
+
+        if (!found)
+            return -1L;
+
+        return Math.max(1L, Math.round(cardinality));
+
+    }
+
+    /**
+     * The #of distinct predicates in the array.
+     */
+    private static int distinctCount(final IV<?, ?>[] preds) {
+
+        int n = 0;
+
+        for (int i = 0; i < preds.length; i++) {
+
+            boolean dup = false;
+
+            for (int j = 0; j < i && !dup; j++) {
+
+                dup = preds[i].equals(preds[j]);
+
+            }
+
+            if (!dup)
+                n++;
+
+        }
+
+        return n;
+
+    }
+
+    /**
+     * Compute the statistics by scanning the statement indices of the
+     * relation. The primary index (SPO or SPOC) is scanned to collect the
+     * per-predicate statement and distinct subject counts and the
+     * characteristic sets. When the relation maintains a POS (or POCS) index,
+     * that index is scanned to count the distinct objects for each
+     * predicate. Otherwise the #of statements is used as an upper bound on
+     * the #of distinct objects.
+     * 
+     * @param rel
+     *            The relation.
+     * @param maxCharacteristicSets
+     *            The maximum #of characteristic sets which will be retained.
+     *            The sets having the fewest distinct subjects are discarded
+     *            first.
+     * 
+     * @return The statistics.
+     */
+    public static PredicateStatistics build(final SPORelation rel,
+            final int maxCharacteristicSets) {
+
+        if (rel == null)
+            throw new IllegalArgumentException();
+
+        if (maxCharacteristicSets <= 0)
+            throw new IllegalArgumentException();
+
+        final long begin = System.currentTimeMillis();
+
+        final Map<IV<?, ?>, long[/* statements, subjects, objects */]> pstats = new LinkedHashMap<IV<?, ?>, long[]>();
+
+        final Map<List<IV<?, ?>>, long[/* subjects, occurrences... */]> csets = new HashMap<List<IV<?, ?>>, long[]>();
+
+        boolean truncated = false;
+
+        long statementCount = 0L;
+
+        long subjectCount = 0L;
+
+        {
+
+            final SPOKeyOrder keyOrder = rel.getPrimaryKeyOrder();
+
+            final ITupleIterator<?> itr = rel.getIndex(keyOrder).rangeIterator(
+                    null/* fromKey */, null/* toKey */, 0/* capacity */,
+                    IRangeQuery.KEYS, null/* filter */);
+
+            // The predicates (in index order) and their counts for the
+            // current subject.
+            final List<IV<?, ?>> preds = new ArrayList<IV<?, ?>>();
+            final List<long[]> counts = new ArrayList<long[]>();
+
+            IV<?, ?> lastS = null;
+
+            while (itr.hasNext()) {
+
+                final SPO spo = keyOrder.decodeKey(itr.next().getKey());
+
+                statementCount++;
+
+                long[] pstat = pstats.get(spo.p());
+
+                if (pstat == null) {
+
+                    pstats.put(spo.p(), pstat = new long[3]);
+
+                }
+
+                pstat[0]++;
+
+                if (lastS == null || !lastS.equals(spo.s())) {
+
+                    if (lastS != null) {
+
+                        if (addSubject(preds, counts, pstats, csets,
+                                maxCharacteristicSets)) {
+
+                            truncated = true;
+
+                        }
+
+                    }
+
+                    subjectCount++;
+
+                    lastS = spo.s();
+
+                }
+
+                final int n = preds.size();
+
+                if (n > 0 && preds.get(n - 1).equals(spo.p())) {
+
+                    // Same (s,p). Note: SPOC visits (s,p) once per (o,c).
+                    counts.get(n - 1)[0]++;
+
+                } else {
+
+                    preds.add(spo.p());
+
+                    counts.add(new long[] { 1L });
+
+                }
+
+            }
+
+            if (lastS != null) {
+
+                if (addSubject(preds, counts, pstats, csets,
+                        maxCharacteristicSets)) {
+
+                    truncated = true;
+
+                }
+
+            }
+
+        }
+
+        /*
+         * Distinct objects per predicate.
+         */
+        final SPOKeyOrder posKeyOrder = rel.getKeyArity() == 3 ? SPOKeyOrder.POS
+                : SPOKeyOrder.POCS;
+
+        if (!rel.oneAccessPath) {
+
+            final ITupleIterator<?> itr = rel.getIndex(posKeyOrder)
+                    .rangeIterator(null/* fromKey */, null/* toKey */,
+                            0/* capacity */, IRangeQuery.KEYS, null/* filter */);
+
+            IV<?, ?> lastP = null, lastO = null;
+
+            while (itr.hasNext()) {
+
+                final SPO spo = posKeyOrder.decodeKey(itr.next().getKey());
+
+                if (lastP == null || !lastP.equals(spo.p())
+                        || !lastO.equals(spo.o())) {
+
+                    final long[] pstat = pstats.get(spo.p());
+
+                    if (pstat != null) {
+
+                        pstat[2]++;
+
+                    }
+
+                    lastP = spo.p();
+
+                    lastO = spo.o();
+
+                }
+
+            }
+
+        } else {
+
+            for (long[] pstat : pstats.values()) {
+
+                // Upper bound.
+                pstat[2] = pstat[0];
+
+            }
+
+        }
+
+        /*
+         * Retain the most frequent characteristic sets.
+         */
+        final List<CharacteristicSet> sets = new ArrayList<CharacteristicSet>(
+                csets.size());
+
+        for (Map.Entry<List<IV<?, ?>>, long[]> e : csets.entrySet()) {
+
+            final long[] a = e.getValue();
+
+            sets.add(new CharacteristicSet(e.getKey().toArray(
+                    new IV<?, ?>[e.getKey().size()]), a[0], Arrays.copyOfRange(
+                    a, 1, a.length)));
+
+        }
+
+        Collections.sort(sets, BY_DISTINCT_SUBJECTS);
+
+        if (sets.size() > maxCharacteristicSets) {
+
+            sets.subList(maxCharacteristicSets, sets.size()).clear();
+
+            truncated = true;
+
+        }
+
+        final Map<IV<?, ?>, PredicateStat> predicates = new HashMap<IV<?, ?>, PredicateStat>(
+                pstats.size());
+
+        for (Map.Entry<IV<?, ?>, long[]> e : pstats.entrySet()) {
+
+            final long[] a = e.getValue();
+
+            predicates.put(e.getKey(), new PredicateStat(e.getKey(), a[0],
+                    a[1], a[2]));
+
+        }
+
+        final long timestamp = System.currentTimeMillis();
+
+        final byte[] header = newHeader(timestamp, statementCount,
+                subjectCount, truncated);
+
+        if (log.isInfoEnabled())
+            log.info("namespace=" + rel.getNamespace() + ", statements="
+                    + statementCount + ", subjects=" + subjectCount
+                    + ", predicates=" + predicates.size()
+                    + ", characteristicSets=" + sets.size() + ", truncated="
+                    + truncated + ", elapsed="
+                    + (System.currentTimeMillis() - begin) + "ms");
+
+        return new PredicateStatistics(header, timestamp, statementCount,
+                subjectCount, truncated, predicates, sets);
+
+    }
+
+    /**
+     * Orders characteristic sets by descending #of distinct subjects.
+     */
+    private static final Comparator<CharacteristicSet> BY_DISTINCT_SUBJECTS = new Comparator<CharacteristicSet>() {
+
+        @Override
+        public int compare(final CharacteristicSet o1,
+                final CharacteristicSet o2) {
+
+            return o1.distinctSubjects < o2.distinctSubjects ? 1
+                    : o1.distinctSubjects > o2.distinctSubjects ? -1 : 0;
+
+        }
+
+    };
+
+    /**
+     * Fold the predicates of the last subject into the per-predicate distinct
+     * subject counts and the characteristic sets and then clear the
+     * predicates for the next subject.
+     * <p>
+     * Note: The #of distinct characteristic sets is not bounded by the data,
+     * so sets seen for only a single subject are discarded if the #of sets
+     * grows beyond a small multiple of the #of sets to be retained.
+     * 
+     * @return <code>true</code> iff characteristic sets were discarded.
+     */
+    private static boolean addSubject(final List<IV<?, ?>> preds,
+            final List<long[]> counts,
+            final Map<IV<?, ?>, long[]> pstats,
+            final Map<List<IV<?, ?>>, long[]> csets,
+            final int maxCharacteristicSets) {
+
+        for (IV<?, ?> p : preds) {
+
+            pstats.get(p)[1]++;
+
+        }
+
+        final List<IV<?, ?>> key = new ArrayList<IV<?, ?>>(preds);
+
+        long[] a = csets.get(key);
+
+        if (a == null) {
+
+            csets.put(key, a = new long[preds.size() + 1]);
+
+        }
+
+        a[0]++;
+
+        for (int i = 0; i < preds.size(); i++) {
+
+            a[i + 1] += counts.get(i)[0];
+
+        }
+
+        preds.clear();
+
+        counts.clear();
+
+        if (csets.size() > 4 * maxCharacteristicSets) {
+
+            final Iterator<long[]> itr = csets.values().iterator();
+
+            while (itr.hasNext()) {
+
+                if (itr.next()[0] == 1L)
+                    itr.remove();
+
+            }
+
+            return true;
+
+        }
+
+        return false;
+
+    }
+
+    private static byte[] newHeader(final long timestamp,
+            final long statementCount, final long subjectCount,
+            final boolean truncated) {
+
+        final UUID uuid = UUID.randomUUID();
+
+        final DataOutputBuffer out = new DataOutputBuffer();
+
+        try {
+
+            out.writeLong(uuid.getMostSignificantBits());
+
+            out.writeLong(uuid.getLeastSignificantBits());
+
+            out.writeLong(timestamp);
+
+            out.writeLong(statementCount);
+
+            out.writeLong(subjectCount);
+
+            out.writeBoolean(truncated);
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+        return out.toByteArray();
+
+    }
+
+    /**
+     * Replace the contents of the statistics index with these statistics.
+     * 
+     * @param ndx
+     *            The statistics index.
+     */
+    public void write(final IIndex ndx) {
+
+        if (ndx == null)
+            throw new IllegalArgumentException();
+
+        // Remove the statistics from the previous rebuild.
+        {
+
+            final ITupleIterator<?> itr = ndx.rangeIterator(null/* fromKey */,
+                    null/* toKey */, 0/* capacity */,
+                    IRangeQuery.REMOVEALL/* flags */, null/* filter */);
+
+            while (itr.hasNext()) {
+
+                itr.next();
+
+            }
+
+        }
+
+        final IKeyBuilder keyBuilder = KeyBuilder.newInstance();
+
+        final DataOutputBuffer out = new DataOutputBuffer();
+
+        for (PredicateStat stat : predicates.values()) {
+
+            keyBuilder.reset().append(PREDICATE);
+
+            IVUtility.encode(keyBuilder, stat.p);
+
+            out.reset();
+
+            out.packLong(stat.statementCount);
+
+            out.packLong(stat.distinctSubjects);
+
+            out.packLong(stat.distinctObjects);
+
+            ndx.insert(keyBuilder.getKey(), out.toByteArray());
+
+        }
+
+        for (CharacteristicSet cs : sets) {
+
+            keyBuilder.reset().append(CHARACTERISTIC_SET);
+
+            for (IV<?, ?> p : cs.predicates) {
+
+                IVUtility.encode(keyBuilder, p);
+
+            }
+
+            out.reset();
+
+            out.packLong(cs.distinctSubjects);
+
+            for (long n : cs.occurrences) {
+
+                out.packLong(n);
+
+            }
+
+            ndx.insert(keyBuilder.getKey(), out.toByteArray());
+
+        }
+
+        // Note: The header is written last.
+        ndx.insert(HEADER_KEY, header);
+
+    }
+
+    /**
+     * Read the statistics from the statistics index.
+     * 
+     * @param ndx
+     *            The statistics index.
+     * @param cached
+     *            A previously read instance (optional). This is returned if
+     *            the index still holds the statistics from the same rebuild.
+     * 
+     * @return The statistics -or- <code>null</code> if the statistics have
+     *         never been built.
+     */
+    @SuppressWarnings("rawtypes")
+    public static PredicateStatistics read(final IIndex ndx,
+            final PredicateStatistics cached) {
+
+        if (ndx == null)
+            throw new IllegalArgumentException();
+
+        final byte[] header = ndx.lookup(HEADER_KEY);
+
+        if (header == null) {
+
+            // Never built.
+            return null;
+
+        }
+
+        if (cached != null && Arrays.equals(header, cached.header)) {
+
+            // Same rebuild.
+            return cached;
+
+        }
+
+        final Map<IV<?, ?>, PredicateStat> predicates = new HashMap<IV<?, ?>, PredicateStat>();
+
+        final List<CharacteristicSet> sets = new ArrayList<CharacteristicSet>();
+
+        final long timestamp, statementCount, subjectCount;
+
+        final boolean truncated;
+
+        try {
+
+            {
+
+                final DataInputBuffer in = new DataInputBuffer(header);
+
+                in.readLong(); // uuid (msb)
+                in.readLong(); // uuid (lsb)
+                timestamp = in.readLong();
+
+                statementCount = in.readLong();
+
+                subjectCount = in.readLong();
+
+                truncated = in.readBoolean();
+
+            }
+
+            final ITupleIterator<?> itr = ndx.rangeIterator(null/* fromKey */,
+                    null/* toKey */, 0/* capacity */, IRangeQuery.KEYS
+                            | IRangeQuery.VALS, null/* filter */);
+
+            while (itr.hasNext()) {
+
+                final ITuple<?> tuple = itr.next();
+
+                final byte[] key = tuple.getKey();
+
+                switch (key[0]) {
+
+                case HEADER:
+                    continue;
+
+                case PREDICATE: {
+
+                    final IV p = IVUtility.decodeFromOffset(key, 1);
+
+                    final DataInputBuffer in = tuple.getValueStream();
+
+                    predicates.put(p, new PredicateStat(p, in.unpackLong(),
+                            in.unpackLong(), in.unpackLong()));
+
+                    break;
+
+                }
+
+                case CHARACTERISTIC_SET: {
+
+                    final IV[] preds = IVUtility.decodeAll(key, 1,
+                            key.length - 1);
+
+                    final DataInputBuffer in = tuple.getValueStream();
+
+                    final long distinctSubjects = in.unpackLong();
+
+                    final long[] occurrences = new long[preds.length];
+
+                    for (int i = 0; i < preds.length; i++) {
+
+                        occurrences[i] = in.unpackLong();
+
+                    }
+
+                    sets.add(new CharacteristicSet(preds, distinctSubjects,
+                            occurrences));
+
+                    break;
+
+                }
+
+                default:
+                    throw new AssertionError("Unknown record type: " + key[0]);
+
+                }
+
+            }
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+        Collections.sort(sets, BY_DISTINCT_SUBJECTS);
+
+        return new PredicateStatistics(header, timestamp, statementCount,
+                subjectCount, truncated, predicates, sets);
+
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getSimpleName() + "{statements=" + statementCount
+                + ",subjects=" + subjectCount + ",predicates="
+                + predicates.size() + ",characteristicSets=" + sets.size()
+                + ",truncated=" + truncated + ",age=" + getAge() + "ms}";
+
+    }
+
+}
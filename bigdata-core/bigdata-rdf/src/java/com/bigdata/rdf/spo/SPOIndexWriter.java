@@ -58,6 +58,7 @@ import com.bigdata.btree.proc.AbstractKeyArrayIndexProcedure.ResultBitBufferHand
 import com.bigdata.btree.proc.LongAggregator;
 import com.bigdata.rdf.spo.SPOIndexWriteProc.IndexWriteProcConstructor;
 import com.bigdata.relation.accesspath.IElementFilter;
+import com.bigdata.util.BytesUtil;
 
 /**
  * Helper class writes an {@link ISPO}[] on one of the statement indices.
@@ -81,11 +82,14 @@ public class SPOIndexWriter implements Callable<Long> {
     
     private final AtomicLong numWritten;
     
-    private final Comparator<ISPO> comparator;
-
     private final IIndex ndx;
 
-//    private final SPOKeyOrder keyOrder;
+    private final SPOKeyOrder keyOrder;
+
+    /**
+     * The counters for the index (optional).
+     */
+    private final SPOIndexWriterCounters.IndexCounters counters;
     
     private final boolean reportMutation;
 
@@ -96,6 +100,11 @@ public class SPOIndexWriter implements Callable<Long> {
 	
 	/** <code>true</code> iff this is a SIDs mode index. */
 	private final boolean sids;
+
+    /**
+     * The cardinality sketches to be updated for the written keys (optional).
+     */
+    private final CardinalitySketches sketches;
 	
     /**
      * Writes statements on a statement index (batch api).
@@ -141,13 +150,36 @@ public class SPOIndexWriter implements Callable<Long> {
             final AtomicLong numWritten,
             final boolean reportMutations) {
 
+        this(spoRelation, a, numStmts, clone, keyOrder, primaryIndex, filter,
+                sortTime, insertTime, numWritten, reportMutations, null/* counters */);
+
+    }
+
+    /**
+     * Variant which also reports the work performed for the index onto the
+     * given counters.
+     * 
+     * @param counters
+     *            The per-index counters (optional).
+     * 
+     * @see SPORelation#getIndexWriterCounters()
+     */
+    public SPOIndexWriter(final SPORelation spoRelation, final ISPO[] a,
+            final int numStmts, final boolean clone,
+            final SPOKeyOrder keyOrder, final boolean primaryIndex,
+            final IElementFilter<ISPO> filter,
+            final AtomicLong sortTime, final AtomicLong insertTime,
+            final AtomicLong numWritten,
+            final boolean reportMutations,
+            final SPOIndexWriterCounters counters) {
+
         if (spoRelation == null)
             throw new IllegalArgumentException();
         
         if (keyOrder == null)
             throw new IllegalArgumentException();
 
-//        this.keyOrder = keyOrder;
+        this.keyOrder = keyOrder;
 		this.primaryIndex = primaryIndex;
         this.filter = filter;
         
@@ -175,7 +207,7 @@ public class SPOIndexWriter implements Callable<Long> {
 
         this.numWritten = numWritten;
         
-        this.comparator = keyOrder.getComparator();
+        this.counters = counters == null ? null : counters.get(keyOrder);
 
         this.reportMutation = reportMutations;
         
@@ -190,6 +222,8 @@ public class SPOIndexWriter implements Callable<Long> {
         
         sids = spoRelation.getStatementIdentifiers();
 
+        sketches = spoRelation.getCardinalitySketches();
+
     }
 
     /**
@@ -206,28 +240,64 @@ public class SPOIndexWriter implements Callable<Long> {
 
         final long begin = System.currentTimeMillis();
 
-        { // sort
+        final long beginNanos = System.nanoTime();
+
+        /*
+         * Generate the keys for the statements and sort them into the order
+         * of the index.
+         * 
+         * Note: The sort is on the unsigned byte[] keys rather than on the
+         * ISPOs. Since the keys must be generated anyway, this replaces the
+         * IV comparisons for each probe of the sort with a byte[] comparison
+         * and avoids generating the keys a second time. The sort is stable
+         * and the resulting order is the same as the key order of the index.
+         */
+        final KeyAndStatement[] sorted = new KeyAndStatement[numStmts];
+        {
+
+            final SPOSortKeyBuilder sortKeyBuilder = new SPOSortKeyBuilder(
+                    keyOrder);
+
+            for (int i = 0; i < numStmts; i++) {
+
+                final ISPO spo = stmts[i];
+
+                assertValid(spo, i);
+
+                sorted[i] = new KeyAndStatement(
+                        sortKeyBuilder.getSortKey(spo), spo);
+
+            }
+
+            Arrays.sort(sorted, KeyComparator.INSTANCE);
+
+            /*
+             * Note: Callers rely on the array (which is the caller's array for
+             * the primary index) being left in the sort order of the index.
+             */
+            for (int i = 0; i < numStmts; i++) {
+
+                stmts[i] = sorted[i].spo;
 
-            Arrays.sort(stmts, 0, numStmts, comparator);
+            }
 
             sortTime.addAndGet(System.currentTimeMillis() - begin);
 
         }
 
+        final long sortNanos = System.nanoTime() - beginNanos;
+
         /*
-         * Generate keys for the statements to be added.
+         * Form the keys and values for the statements to be added.
          * 
          * Note: This also filters out duplicate statements (since the data are
-         * sorted duplicates will be grouped together) and, if a filter has been
-         * specified, that filter is used to filter out any matching statements.
+         * sorted duplicates will be grouped together and will have the same
+         * key) and, if a filter has been specified, that filter is used to
+         * filter out any matching statements.
          * 
          * The outcome is that both keys[] and vals[] are dense and encode only
          * the statements to be written on the index. Only the 1st [numToAdd]
          * entries in those arrays contain valid data.
-         * 
-         * @todo write a unit test in which we verify: (a) the correct
-         * elimination of duplicate statements; (b) the correct filtering of
-         * statements; and (c) the correct application of the override flag.
          */
         
         final SPOTupleSerializer tupleSer = (SPOTupleSerializer) ndx
@@ -235,7 +305,7 @@ public class SPOIndexWriter implements Callable<Long> {
         
         int numToAdd = 0;
 
-        ISPO last = null;
+        byte[] lastKey = null;
 
         // dense array of keys.
         final byte[][] keys = new byte[numStmts][];
@@ -248,52 +318,19 @@ public class SPOIndexWriter implements Callable<Long> {
 
         for (int i = 0; i < numStmts; i++) {
 
-            final ISPO spo = stmts[i];
+            final ISPO spo = sorted[i].spo;
 
-            if (spo == null)
-                throw new IllegalArgumentException("null @ index=" + i);
-            
-            if (!spo.isFullyBound())
-                throw new IllegalArgumentException("Not fully bound: "
-                        + spo.toString());
+            final byte[] key = sorted[i].key;
 
-            if (quads) {
-                if (spo.c() == null) {
-                    /*
-                     * Do not permit an ISPO to be written onto a quads mode
-                     * index without the [c] position bound.
-                     */
-                    throw new IllegalArgumentException("context not bound: "
-                            + spo);
-                }
-            } else if (!sids) {
-                if (spo.c() != null) {
-                    /*
-                     * Do not permit an ISPO to be written onto the index in
-                     * triples mode if its context position is not bound. 
-                     */
-                    throw new IllegalArgumentException(
-                            "context bound, but not quads or sids: " + spo);
-                }
-            }
-            
             // skip statements that match the filter.
             if (filter != null && filter.isValid(spo))
                 continue;
 
             // skip duplicate records.
-            if (last != null && last.equals(spo)) {
-                if (quads) {
-                    // must also compare context for quads.
-                    if (last.c().equals(spo.c()))
-                        continue;
-
-                } else
-                    continue;
-            }
+            if (lastKey != null && BytesUtil.bytesEqual(lastKey, key))
+                continue;
 
-            // generate key for the index.
-            keys[numToAdd] = tupleSer.serializeKey(spo);
+            keys[numToAdd] = key;
             
             // generate value for the index.
             vals[numToAdd] = tupleSer.serializeVal(spo);
@@ -301,7 +338,7 @@ public class SPOIndexWriter implements Callable<Long> {
             if(reportMutation)
                 denseStmts[numToAdd] = spo;
             
-            last = spo;
+            lastKey = key;
 
             numToAdd++;
 
@@ -311,6 +348,8 @@ public class SPOIndexWriter implements Callable<Long> {
          * Run the batch insert/update logic as a procedure.
          */
         final long _begin = System.currentTimeMillis();
+
+        final long _beginNanos = System.nanoTime();
         
         long writeCount = 0;
         if (reportMutation) {
@@ -366,9 +405,40 @@ public class SPOIndexWriter implements Callable<Long> {
             writeCount = aggregator.getResult();
 
         }
+
+        if (sketches != null && writeCount > 0) {
+
+            /*
+             * Offer the keys to the cardinality sketches. Keys which were
+             * already present in the index were offered when they were first
+             * written, but offering them again does not change the sketches.
+             * If nothing was written then there is nothing new to offer.
+             */
+
+            sketches.update(keyOrder, keys, 0/* fromIndex */, numToAdd/* toIndex */);
+
+        }
         
         insertTime.addAndGet(System.currentTimeMillis() - _begin);
 
+        if (counters != null) {
+
+            final long now = System.nanoTime();
+
+            counters.batchCount.increment();
+
+            counters.statementCount.add(numStmts);
+
+            counters.mutationCount.add(writeCount);
+
+            counters.sortNanos.add(sortNanos);
+
+            counters.insertNanos.add(now - _beginNanos);
+
+            counters.batchDone(now - beginNanos);
+
+        }
+
 		if (primaryIndex) {
 
             /*
@@ -385,4 +455,75 @@ public class SPOIndexWriter implements Callable<Long> {
 
     }
 
+    /**
+     * Verify that the statement may be written on the index.
+     * 
+     * @param spo
+     *            The statement.
+     * @param i
+     *            The index of the statement in the caller's array.
+     */
+    private void assertValid(final ISPO spo, final int i) {
+
+        if (spo == null)
+            throw new IllegalArgumentException("null @ index=" + i);
+
+        if (!spo.isFullyBound())
+            throw new IllegalArgumentException("Not fully bound: "
+                    + spo.toString());
+
+        if (quads) {
+            if (spo.c() == null) {
+                /*
+                 * Do not permit an ISPO to be written onto a quads mode
+                 * index without the [c] position bound.
+                 */
+                throw new IllegalArgumentException("context not bound: "
+                        + spo);
+            }
+        } else if (!sids) {
+            if (spo.c() != null) {
+                /*
+                 * Do not permit an ISPO to be written onto the index in
+                 * triples mode if its context position is not bound. 
+                 */
+                throw new IllegalArgumentException(
+                        "context bound, but not quads or sids: " + spo);
+            }
+        }
+
+    }
+
+    /**
+     * A statement paired with its key for the index.
+     */
+    private static class KeyAndStatement {
+
+        final byte[] key;
+
+        final ISPO spo;
+
+        KeyAndStatement(final byte[] key, final ISPO spo) {
+            this.key = key;
+            this.spo = spo;
+        }
+
+    }
+
+    /**
+     * Places {@link KeyAndStatement}s into unsigned byte[] key order.
+     */
+    private static class KeyComparator implements Comparator<KeyAndStatement> {
+
+        static final transient KeyComparator INSTANCE = new KeyComparator();
+
+        @Override
+        public int compare(final KeyAndStatement o1, final KeyAndStatement o2) {
+
+            return BytesUtil.compareBytes(o1.key, o2.key);
+
+        }
+
+    }
+
 }
@@ -0,0 +1,301 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.bigdata.counters.CAT;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
+import com.bigdata.counters.Instrument;
+import com.bigdata.journal.IIndexManager;
+
+/**
+ * Per-index counters for the {@link SPOIndexWriter}s run by
+ * {@link SPORelation#insert(ISPO[], int, com.bigdata.relation.accesspath.IElementFilter)}
+ * . Since the statement indices are written concurrently, the latency of a
+ * batch is determined by the slowest index and these counters make it
+ * possible to see which index that is.
+ * <p>
+ * The {@link SPORelation} views are transient, so the counters are shared by
+ * all views of the same relation on an index manager and are reported by
+ * {@link #getCounters(IIndexManager)}.
+ */
+public class SPOIndexWriterCounters implements ICounterSetAccess {
+
+    /**
+     * The shared instances, by relation namespace.
+     */
+    static private final WeakHashMap<IIndexManager, Map<String, SPOIndexWriterCounters>> instances = new WeakHashMap<IIndexManager, Map<String, SPOIndexWriterCounters>>();
+
+    /**
+     * Return the instance shared by the views of the statement relation on the
+     * index manager, creating it if necessary.
+     * 
+     * @param indexManager
+     *            The index manager.
+     * @param namespace
+     *            The namespace of the {@link SPORelation}.
+     */
+    static public SPOIndexWriterCounters getInstance(
+            final IIndexManager indexManager, final String namespace) {
+
+        if (indexManager == null)
+            throw new IllegalArgumentException();
+
+        if (namespace == null)
+            throw new IllegalArgumentException();
+
+        synchronized (instances) {
+
+            Map<String, SPOIndexWriterCounters> map = instances
+                    .get(indexManager);
+
+            if (map == null) {
+
+                map = new TreeMap<String, SPOIndexWriterCounters>();
+
+                instances.put(indexManager, map);
+
+            }
+
+            SPOIndexWriterCounters t = map.get(namespace);
+
+            if (t == null) {
+
+                t = new SPOIndexWriterCounters();
+
+                map.put(namespace, t);
+
+            }
+
+            return t;
+
+        }
+
+    }
+
+    /**
+     * Discard the instance for the statement relation (if any). This is
+     * invoked when the relation is destroyed.
+     * 
+     * @param indexManager
+     *            The index manager.
+     * @param namespace
+     *            The namespace of the {@link SPORelation}.
+     */
+    static void remove(final IIndexManager indexManager,
+            final String namespace) {
+
+        synchronized (instances) {
+
+            final Map<String, SPOIndexWriterCounters> map = instances
+                    .get(indexManager);
+
+            if (map != null) {
+
+                map.remove(namespace);
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Return the counters for the statement relations on the index manager,
+     * with one child per relation namespace.
+     * 
+     * @param indexManager
+     *            The index manager.
+     * 
+     * @return The counters -or- <code>null</code> if no statement relation on
+     *         that index manager has been written.
+     */
+    static public CounterSet getCounters(final IIndexManager indexManager) {
+
+        synchronized (instances) {
+
+            final Map<String, SPOIndexWriterCounters> map = instances
+                    .get(indexManager);
+
+            if (map == null || map.isEmpty()) {
+
+                return null;
+
+            }
+
+            final CounterSet root = new CounterSet();
+
+            for (Map.Entry<String, SPOIndexWriterCounters> e : map.entrySet()) {
+
+                root.makePath(e.getKey()).attach(e.getValue().getCounters());
+
+            }
+
+            return root;
+
+        }
+
+    }
+
+    /**
+     * The counters for one statement index.
+     */
+    static class IndexCounters {
+
+        /** The #of batches written on the index. */
+        final CAT batchCount = new CAT();
+
+        /** The #of statements presented to the index writer. */
+        final CAT statementCount = new CAT();
+
+        /** The #of statements whose tuples were written on the index. */
+        final CAT mutationCount = new CAT();
+
+        /** The elapsed nanoseconds spent generating and sorting the keys. */
+        final CAT sortNanos = new CAT();
+
+        /** The elapsed nanoseconds spent writing on the index. */
+        final CAT insertNanos = new CAT();
+
+        /** The maximum elapsed nanoseconds for a batch. */
+        private long maxBatchNanos = 0L;
+
+        synchronized void batchDone(final long elapsedNanos) {
+
+            if (elapsedNanos > maxBatchNanos)
+                maxBatchNanos = elapsedNanos;
+
+        }
+
+        synchronized long getMaxBatchNanos() {
+
+            return maxBatchNanos;
+
+        }
+
+    }
+
+    /**
+     * The counters, indexed by {@link SPOKeyOrder#index()}.
+     */
+    private final IndexCounters[] a;
+
+    public SPOIndexWriterCounters() {
+
+        a = new IndexCounters[SPOKeyOrder.MAX_INDEX_COUNT];
+
+        for (int i = 0; i < a.length; i++) {
+
+            a[i] = new IndexCounters();
+
+        }
+
+    }
+
+    /**
+     * Return the counters for the statement index having that key order.
+     */
+    IndexCounters get(final SPOKeyOrder keyOrder) {
+
+        return a[keyOrder.index()];
+
+    }
+
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        for (int i = 0; i < a.length; i++) {
+
+            final IndexCounters t = a[i];
+
+            if (t.batchCount.get() == 0L) {
+
+                // Index was never written.
+                continue;
+
+            }
+
+            final CounterSet tmp = root.makePath(SPOKeyOrder.valueOf(i)
+                    .getIndexName());
+
+            tmp.addCounter("batchCount", new Instrument<Long>() {
+                @Override
+                public void sample() {
+                    setValue(t.batchCount.get());
+                }
+            });
+
+            tmp.addCounter("statementCount", new Instrument<Long>() {
+                @Override
+                public void sample() {
+                    setValue(t.statementCount.get());
+                }
+            });
+
+            tmp.addCounter("mutationCount", new Instrument<Long>() {
+                @Override
+                public void sample() {
+                    setValue(t.mutationCount.get());
+                }
+            });
+
+            tmp.addCounter("sortMillis", new Instrument<Long>() {
+                @Override
+                public void sample() {
+                    setValue(TimeUnit.NANOSECONDS.toMillis(t.sortNanos.get()));
+                }
+            });
+
+            tmp.addCounter("insertMillis", new Instrument<Long>() {
+                @Override
+                public void sample() {
+                    setValue(TimeUnit.NANOSECONDS.toMillis(t.insertNanos.get()));
+                }
+            });
+
+            tmp.addCounter("maxBatchMillis", new Instrument<Long>() {
+                @Override
+                public void sample() {
+                    setValue(TimeUnit.NANOSECONDS.toMillis(t.getMaxBatchNanos()));
+                }
+            });
+
+        }
+
+        return root;
+
+    }
+
+}
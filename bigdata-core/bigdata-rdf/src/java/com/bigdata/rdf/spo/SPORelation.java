@@ -30,6 +30,7 @@ package com.bigdata.rdf.spo;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -72,6 +73,7 @@ import com.bigdata.btree.raba.codec.FixedLengthValueRabaCoder;
 import com.bigdata.btree.raba.codec.IRabaCoder;
 import com.bigdata.journal.AbstractTask;
 import com.bigdata.journal.IIndexManager;
+import com.bigdata.journal.IJournal;
 import com.bigdata.journal.IResourceLock;
 import com.bigdata.journal.ITx;
 import com.bigdata.journal.TemporaryStore;
@@ -85,6 +87,8 @@ import com.bigdata.rdf.internal.constraints.RangeBOp;
 import com.bigdata.rdf.internal.impl.bnode.SidIV;
 import com.bigdata.rdf.lexicon.ITermIVFilter;
 import com.bigdata.rdf.lexicon.LexiconRelation;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.rdf.model.BigdataValueFactory;
 import com.bigdata.rdf.model.StatementEnum;
 import com.bigdata.rdf.sparql.ast.QuadsOperationInTriplesModeException;
 import com.bigdata.rdf.sparql.ast.service.history.HistoryIndexTupleSerializer;
@@ -158,6 +162,97 @@ public class SPORelation extends AbstractRelation<ISPO> {
     /** Hard reference to the justifications index iff used. */
     private volatile IIndex just;
 
+    /** Hard reference to the statistics index iff used. */
+    private volatile IIndex stats;
+
+    /**
+     * The most recently read or rebuilt statistics (if any).
+     * 
+     * @see #getStatistics()
+     */
+    private volatile PredicateStatistics statisticsRef;
+
+    /**
+     * The #of commits through this view of the relation since the statistics
+     * were last rebuilt.
+     * 
+     * @see #rebuildStatisticsIfStale()
+     */
+    private final AtomicLong commitsSinceStatistics = new AtomicLong();
+
+    /**
+     * The cardinality sketches iff used.
+     * 
+     * @see #getCardinalitySketches()
+     */
+    private volatile CardinalitySketches sketches;
+
+    /**
+     * The transitive closure index iff used.
+     * 
+     * @see #getTransitiveClosureIndex()
+     */
+    private volatile TransitiveClosureIndex closureIndex;
+
+    /**
+     * The {@link IV}s of the {@link #closurePredicates} once they have all
+     * been resolved against the lexicon.
+     * 
+     * @see #getClosurePredicateIVs(Collection)
+     */
+    @SuppressWarnings("rawtypes")
+    private volatile Set<IV> closurePredicateIVs;
+
+    /**
+     * The {@link IV}s of the {@link #closurePredicates} which have been
+     * resolved so far (guarded by {@link #unresolvedClosurePredicates}).
+     */
+    @SuppressWarnings("rawtypes")
+    private final Set<IV> resolvedClosurePredicateIVs = new HashSet<IV>();
+
+    /**
+     * The {@link #closurePredicates} which were not in the lexicon when they
+     * were last looked up.
+     */
+    private final List<String> unresolvedClosurePredicates = new ArrayList<String>();
+
+    /**
+     * Predicate {@link IV}s which are known not to be closure predicates
+     * (guarded by {@link #unresolvedClosurePredicates}). An {@link IV} which
+     * was already assigned when a predicate was not in the lexicon can not be
+     * the {@link IV} of that predicate, so statements using those predicates
+     * do not cause the unresolved predicates to be looked up again.
+     */
+    @SuppressWarnings("rawtypes")
+    private final Set<IV> nonClosurePredicateIVs = new HashSet<IV>();
+
+    /**
+     * The maximum size of {@link #nonClosurePredicateIVs}. This bounds the
+     * heap used while some closure predicates are not in the lexicon. Beyond
+     * that, statements using new predicates will cause another lookup.
+     */
+    private static final int MAX_NON_CLOSURE_PREDICATE_IVS = 10000;
+
+    /**
+     * Counters for the {@link SPOIndexWriter}s run by
+     * {@link #insert(ISPO[], int, IElementFilter)}. This instance is shared by
+     * all views of this relation on the index manager.
+     */
+    private final SPOIndexWriterCounters indexWriterCounters;
+
+    /**
+     * Return the per-index counters for the statement index writes performed
+     * by {@link #insert(ISPO[], int, IElementFilter)}. The statement indices
+     * are written concurrently, so the counters show which index dominates
+     * the latency of a batch. These counters are reported by the
+     * {@link com.bigdata.journal.Journal}'s counter set.
+     */
+    public SPOIndexWriterCounters getIndexWriterCounters() {
+
+        return indexWriterCounters;
+
+    }
+
     /**
      * Constant for the {@link SPORelation} namespace component.
      * <p>
@@ -170,6 +265,12 @@ public class SPORelation extends AbstractRelation<ISPO> {
     public static final String NAME_SPO_RELATION = "spo";
     
     private static final transient String NAME_JUST = "JUST";
+
+    private static final transient String NAME_STATS = "STATS";
+
+    private static final transient String NAME_SKETCHES = "HLL";
+
+    private static final transient String NAME_CLOSURE = "CLOSURE";
     
     /**
      * This is used to conditionally enable the logic to retract justifications
@@ -195,6 +296,53 @@ public class SPORelation extends AbstractRelation<ISPO> {
      */
     final private boolean historyService;
 
+    /**
+     * This is used to conditionally maintain the {@link PredicateStatistics}.
+     * 
+     * @see AbstractTripleStore.Options#STATISTICS
+     */
+    final private boolean statistics;
+
+    /**
+     * @see AbstractTripleStore.Options#STATISTICS_MAX_CHARACTERISTIC_SETS
+     */
+    final private int maxCharacteristicSets;
+
+    /**
+     * @see AbstractTripleStore.Options#STATISTICS_REBUILD_COMMITS
+     */
+    final private long statisticsRebuildCommits;
+
+    /**
+     * @see AbstractTripleStore.Options#STATISTICS_REBUILD_MAX_AGE
+     */
+    final private long statisticsRebuildMaxAge;
+
+    /**
+     * This is used to conditionally maintain the {@link CardinalitySketches}.
+     * 
+     * @see AbstractTripleStore.Options#CARDINALITY_SKETCHES
+     */
+    final private boolean cardinalitySketches;
+
+    /**
+     * @see AbstractTripleStore.Options#CARDINALITY_SKETCH_PREFIX_LENGTH
+     */
+    final private int sketchPrefixLength;
+
+    /**
+     * @see AbstractTripleStore.Options#CARDINALITY_SKETCH_PRECISION
+     */
+    final private int sketchPrecision;
+
+    /**
+     * The URIs of the predicates whose transitive closure is maintained (may
+     * be empty).
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    final private String[] closurePredicates;
+
     /**
      * When true, SPOs will never be removed from the indices, only downgraded
      * to {@link StatementEnum#History}.
@@ -246,6 +394,9 @@ public class SPORelation extends AbstractRelation<ISPO> {
             final Long timestamp, final Properties properties) {
 
         super(container, indexManager, namespace, timestamp, properties);
+
+        this.indexWriterCounters = SPOIndexWriterCounters.getInstance(
+                indexManager, namespace);
         
         /*
          * Reads off the property for the inference engine that tells us whether
@@ -270,6 +421,75 @@ public class SPORelation extends AbstractRelation<ISPO> {
                 AbstractTripleStore.Options.HISTORY_SERVICE,
                 AbstractTripleStore.Options.DEFAULT_HISTORY_SERVICE));
 
+        this.statistics = Boolean.parseBoolean(getProperty(
+                AbstractTripleStore.Options.STATISTICS,
+                AbstractTripleStore.Options.DEFAULT_STATISTICS));
+
+        this.maxCharacteristicSets = Integer.parseInt(getProperty(
+                AbstractTripleStore.Options.STATISTICS_MAX_CHARACTERISTIC_SETS,
+                AbstractTripleStore.Options.DEFAULT_STATISTICS_MAX_CHARACTERISTIC_SETS));
+
+        this.statisticsRebuildCommits = Long.parseLong(getProperty(
+                AbstractTripleStore.Options.STATISTICS_REBUILD_COMMITS,
+                AbstractTripleStore.Options.DEFAULT_STATISTICS_REBUILD_COMMITS));
+
+        this.statisticsRebuildMaxAge = Long.parseLong(getProperty(
+                AbstractTripleStore.Options.STATISTICS_REBUILD_MAX_AGE,
+                AbstractTripleStore.Options.DEFAULT_STATISTICS_REBUILD_MAX_AGE));
+
+        this.cardinalitySketches = Boolean.parseBoolean(getProperty(
+                AbstractTripleStore.Options.CARDINALITY_SKETCHES,
+                AbstractTripleStore.Options.DEFAULT_CARDINALITY_SKETCHES));
+
+        this.sketchPrefixLength = Integer.parseInt(getProperty(
+                AbstractTripleStore.Options.CARDINALITY_SKETCH_PREFIX_LENGTH,
+                AbstractTripleStore.Options.DEFAULT_CARDINALITY_SKETCH_PREFIX_LENGTH));
+
+        this.sketchPrecision = Integer.parseInt(getProperty(
+                AbstractTripleStore.Options.CARDINALITY_SKETCH_PRECISION,
+                AbstractTripleStore.Options.DEFAULT_CARDINALITY_SKETCH_PRECISION));
+
+        {
+
+            final String s = getProperty(
+                    AbstractTripleStore.Options.CLOSURE_PREDICATES,
+                    AbstractTripleStore.Options.DEFAULT_CLOSURE_PREDICATES)
+                    .trim();
+
+            /*
+             * Note: The closure predicates are resolved against the lexicon,
+             * so they are ignored for a knowledge base without a lexicon such
+             * as the temporary stores used for truth maintenance.
+             */
+            final boolean lexicon = Boolean.parseBoolean(getProperty(
+                    AbstractTripleStore.Options.LEXICON,
+                    AbstractTripleStore.Options.DEFAULT_LEXICON));
+
+            this.closurePredicates = s.length() == 0 || !lexicon ? new String[0]
+                    : s.split("\\s*,\\s*");
+
+            this.unresolvedClosurePredicates.addAll(Arrays
+                    .asList(closurePredicates));
+
+        }
+
+        if (sketchPrefixLength < 0) {
+
+            throw new IllegalArgumentException(
+                    AbstractTripleStore.Options.CARDINALITY_SKETCH_PREFIX_LENGTH
+                            + "=" + sketchPrefixLength);
+
+        }
+
+        if (sketchPrecision < HyperLogLog.MIN_PRECISION
+                || sketchPrecision > HyperLogLog.MAX_PRECISION) {
+
+            throw new IllegalArgumentException(
+                    AbstractTripleStore.Options.CARDINALITY_SKETCH_PRECISION
+                            + "=" + sketchPrecision);
+
+        }
+
         this.keyArity = Boolean.valueOf(getProperty(
                 AbstractTripleStore.Options.QUADS,
                 AbstractTripleStore.Options.DEFAULT_QUADS)) ? 4 : 3;
@@ -365,6 +585,24 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
             }
 
+            if (statistics) {
+
+                set.add(getNamespace() + "." + NAME_STATS);
+
+            }
+
+            if (cardinalitySketches) {
+
+                set.add(getNamespace() + "." + NAME_SKETCHES);
+
+            }
+
+            if (closurePredicates.length > 0) {
+
+                set.add(getNamespace() + "." + NAME_CLOSURE);
+
+            }
+
             this.indexNames = Collections.unmodifiableSet(set);
 
         }
@@ -477,6 +715,30 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
             }
 
+            if (statistics) {
+
+                final String fqn = getNamespace() + "." + NAME_STATS;
+
+                indexManager.registerIndex(getStatisticsIndexMetadata(fqn));
+
+            }
+
+            if (cardinalitySketches) {
+
+                final String fqn = getNamespace() + "." + NAME_SKETCHES;
+
+                indexManager.registerIndex(getCardinalitySketchIndexMetadata(fqn));
+
+            }
+
+            if (closurePredicates.length > 0) {
+
+                final String fqn = getNamespace() + "." + NAME_CLOSURE;
+
+                indexManager.registerIndex(getClosureIndexMetadata(fqn));
+
+            }
+
             if (historyService) {
 
                 final SPOKeyOrder keyOrder = triples //
@@ -532,6 +794,18 @@ public class SPORelation extends AbstractRelation<ISPO> {
 //
 //            }
 
+            stats = null;
+
+            statisticsRef = null;
+
+            sketches = null;
+
+            closureIndex = null;
+
+            closurePredicateIVs = null;
+
+            SPOIndexWriterCounters.remove(indexManager, getNamespace());
+
             // destroy the relation declaration metadata.
             super.destroy();
 
@@ -626,6 +900,465 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
     }
 
+    /**
+     * The optional index on which the {@link PredicateStatistics} are stored.
+     * 
+     * @return The index -or- <code>null</code> if the statistics are not
+     *         enabled.
+     * 
+     * @see AbstractTripleStore.Options#STATISTICS
+     */
+    final public IIndex getStatisticsIndex() {
+
+        if (!statistics)
+            return null;
+
+        if (stats == null) {
+
+            synchronized (this) {
+
+                // attempt to resolve the index and set the index reference.
+                if ((stats = super.getIndex(getNamespace() + "." + NAME_STATS)) == null) {
+
+                    throw new IllegalStateException();
+
+                }
+
+            }
+
+        }
+
+        return stats;
+
+    }
+
+    /**
+     * Return the {@link PredicateStatistics} for this view of the relation.
+     * The statistics are read once per rebuild and then reused.
+     * 
+     * @return The statistics -or- <code>null</code> if the statistics are not
+     *         enabled or have not yet been built.
+     * 
+     * @see #rebuildStatistics()
+     */
+    public PredicateStatistics getStatistics() {
+
+        if (!statistics)
+            return null;
+
+        final PredicateStatistics tmp = PredicateStatistics.read(
+                getStatisticsIndex(), statisticsRef);
+
+        statisticsRef = tmp;
+
+        return tmp;
+
+    }
+
+    /**
+     * Rebuild the {@link PredicateStatistics} from a scan of the statement
+     * indices and commit the rebuilt statistics. The statistics are not
+     * maintained incrementally, so this should be run after a bulk load or
+     * once a significant fraction of the data has changed unless they are
+     * rebuilt automatically.
+     * 
+     * @see AbstractTripleStore.Options#STATISTICS_REBUILD_COMMITS
+     * @see AbstractTripleStore.Options#STATISTICS_REBUILD_MAX_AGE
+     * 
+     * @return The rebuilt statistics.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the statistics are not enabled or if this is not the
+     *             {@link ITx#UNISOLATED} view of the relation.
+     */
+    public PredicateStatistics rebuildStatistics() {
+
+        if (!statistics)
+            throw new UnsupportedOperationException(
+                    "Could not rebuild statistics, because they are not enabled: "
+                            + AbstractTripleStore.Options.STATISTICS);
+
+        if (getTimestamp() != ITx.UNISOLATED)
+            throw new UnsupportedOperationException(
+                    "Unisolated connection required to rebuild statistics");
+
+        final PredicateStatistics tmp = writeStatistics();
+
+        if (getIndexManager() instanceof IJournal) {
+
+            // make the changes restart safe (not required for federation).
+            ((IJournal) getIndexManager()).commit();
+
+        }
+
+        return tmp;
+
+    }
+
+    /**
+     * Rebuild the {@link PredicateStatistics} if they are due under
+     * {@link AbstractTripleStore.Options#STATISTICS_REBUILD_COMMITS} or
+     * {@link AbstractTripleStore.Options#STATISTICS_REBUILD_MAX_AGE}. This is
+     * invoked by {@link AbstractTripleStore#commit()} before the commit and
+     * does not commit itself, so the rebuilt statistics are made durable by
+     * that commit. This is a NOP unless this is the {@link ITx#UNISOLATED}
+     * view of the relation and the statistics are enabled.
+     * 
+     * @return <code>true</code> iff the statistics were rebuilt.
+     */
+    public boolean rebuildStatisticsIfStale() {
+
+        if (!statistics || getTimestamp() != ITx.UNISOLATED)
+            return false;
+
+        if (statisticsRebuildCommits <= 0L && statisticsRebuildMaxAge <= 0L)
+            return false;
+
+        boolean stale = statisticsRebuildCommits > 0L
+                && commitsSinceStatistics.incrementAndGet() >= statisticsRebuildCommits;
+
+        if (!stale && statisticsRebuildMaxAge > 0L) {
+
+            final PredicateStatistics tmp = getStatistics();
+
+            stale = tmp == null || tmp.getAge() > statisticsRebuildMaxAge;
+
+        }
+
+        if (!stale)
+            return false;
+
+        final PredicateStatistics tmp = writeStatistics();
+
+        if (log.isInfoEnabled())
+            log.info("Rebuilt statistics: " + tmp);
+
+        return true;
+
+    }
+
+    /**
+     * Rebuild the statistics and write them on the statistics index without
+     * committing.
+     */
+    private PredicateStatistics writeStatistics() {
+
+        final PredicateStatistics tmp = PredicateStatistics.build(this,
+                maxCharacteristicSets);
+
+        tmp.write(getStatisticsIndex());
+
+        statisticsRef = tmp;
+
+        commitsSinceStatistics.set(0L);
+
+        return tmp;
+
+    }
+
+    /**
+     * The {@link CardinalitySketches} for this view of the relation.
+     * 
+     * @return The sketches -or- <code>null</code> if the sketches are not
+     *         enabled.
+     * 
+     * @see AbstractTripleStore.Options#CARDINALITY_SKETCHES
+     */
+    final public CardinalitySketches getCardinalitySketches() {
+
+        if (!cardinalitySketches)
+            return null;
+
+        if (sketches == null) {
+
+            synchronized (this) {
+
+                if (sketches == null) {
+
+                    final IIndex ndx = super.getIndex(getNamespace() + "."
+                            + NAME_SKETCHES);
+
+                    if (ndx == null)
+                        throw new IllegalStateException();
+
+                    sketches = new CardinalitySketches(ndx,
+                            statementKeyOrderIterator(), sketchPrefixLength,
+                            sketchPrecision);
+
+                }
+
+            }
+
+        }
+
+        return sketches;
+
+    }
+
+    /**
+     * The {@link TransitiveClosureIndex} for this view of the relation.
+     * 
+     * @return The index -or- <code>null</code> if no closure predicates were
+     *         declared.
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    final public TransitiveClosureIndex getTransitiveClosureIndex() {
+
+        if (closurePredicates.length == 0)
+            return null;
+
+        if (closureIndex == null) {
+
+            synchronized (this) {
+
+                if (closureIndex == null) {
+
+                    final IIndex ndx = super.getIndex(getNamespace() + "."
+                            + NAME_CLOSURE);
+
+                    if (ndx == null)
+                        throw new IllegalStateException();
+
+                    closureIndex = new TransitiveClosureIndex(ndx);
+
+                }
+
+            }
+
+        }
+
+        return closureIndex;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the transitive closure of the predicate is
+     * maintained by the {@link TransitiveClosureIndex}.
+     * 
+     * @param p
+     *            The {@link IV} of the predicate.
+     * 
+     * @see AbstractTripleStore.Options#CLOSURE_PREDICATES
+     */
+    @SuppressWarnings("rawtypes")
+    public boolean isClosurePredicate(final IV p) {
+
+        if (closurePredicates.length == 0 || p == null)
+            return false;
+
+        return getClosurePredicateIVs(Collections.singleton(p)).contains(p);
+
+    }
+
+    /**
+     * Return the {@link IV}s of the closure predicates which are in the
+     * lexicon. The declared predicates are resolved against the lexicon once
+     * and cached. While some of them have not been used yet, they are looked
+     * up again only when one of the given predicates is neither a known
+     * closure predicate nor known not to be one, since a predicate which has
+     * not been used yet will be assigned an {@link IV} when it is first
+     * written.
+     * 
+     * @param preds
+     *            The {@link IV}s of the predicates to be tested.
+     */
+    @SuppressWarnings("rawtypes")
+    private Set<IV> getClosurePredicateIVs(final Collection<IV> preds) {
+
+        final Set<IV> ivs = closurePredicateIVs;
+
+        if (ivs != null)
+            return ivs;
+
+        synchronized (unresolvedClosurePredicates) {
+
+            if (closurePredicateIVs != null)
+                return closurePredicateIVs;
+
+            boolean lookup = false;
+
+            for (IV p : preds) {
+
+                if (!resolvedClosurePredicateIVs.contains(p)
+                        && !nonClosurePredicateIVs.contains(p)) {
+
+                    lookup = true;
+
+                    break;
+
+                }
+
+            }
+
+            if (lookup) {
+
+                final BigdataValueFactory vf = getContainer()
+                        .getValueFactory();
+
+                final BigdataValue[] a = new BigdataValue[unresolvedClosurePredicates
+                        .size()];
+
+                for (int i = 0; i < a.length; i++) {
+
+                    a[i] = vf.createURI(unresolvedClosurePredicates.get(i));
+
+                }
+
+                getContainer().getLexiconRelation().addTerms(a, a.length,
+                        true/* readOnly */);
+
+                for (BigdataValue v : a) {
+
+                    if (v.getIV() != null) {
+
+                        resolvedClosurePredicateIVs.add(v.getIV());
+
+                        unresolvedClosurePredicates.remove(v.stringValue());
+
+                    }
+
+                }
+
+                if (unresolvedClosurePredicates.isEmpty()) {
+
+                    nonClosurePredicateIVs.clear();
+
+                    return closurePredicateIVs = Collections
+                            .unmodifiableSet(new HashSet<IV>(
+                                    resolvedClosurePredicateIVs));
+
+                }
+
+                for (IV p : preds) {
+
+                    if (nonClosurePredicateIVs.size() >= MAX_NON_CLOSURE_PREDICATE_IVS)
+                        break;
+
+                    if (!resolvedClosurePredicateIVs.contains(p))
+                        nonClosurePredicateIVs.add(p);
+
+                }
+
+            }
+
+            return new HashSet<IV>(resolvedClosurePredicateIVs);
+
+        }
+
+    }
+
+    /**
+     * Apply the statements which were modified by an insert or delete to the
+     * {@link TransitiveClosureIndex}.
+     * 
+     * @param a
+     *            The statements.
+     * @param numStmts
+     *            The #of statements in that array.
+     * @param removed
+     *            <code>true</code> iff the statements were removed from the
+     *            statement indices.
+     */
+    @SuppressWarnings("rawtypes")
+    private void updateTransitiveClosure(final ISPO[] a, final int numStmts,
+            final boolean removed) {
+
+        if (closurePredicates.length == 0)
+            return;
+
+        /*
+         * Resolve the closure predicates once for the distinct predicates of
+         * the modified statements rather than once per statement.
+         */
+        final Set<IV> preds = new HashSet<IV>();
+
+        for (int i = 0; i < numStmts; i++) {
+
+            if (a[i].isModified())
+                preds.add(a[i].p());
+
+        }
+
+        if (preds.isEmpty())
+            return;
+
+        final Set<IV> closureIVs = getClosurePredicateIVs(preds);
+
+        final Map<IV, List<IV[]>> added = new LinkedHashMap<IV, List<IV[]>>();
+
+        final Map<IV, List<IV[]>> retracted = new LinkedHashMap<IV, List<IV[]>>();
+
+        for (int i = 0; i < numStmts; i++) {
+
+            final ISPO spo = a[i];
+
+            if (!spo.isModified() || !closureIVs.contains(spo.p()))
+                continue;
+
+            /*
+             * Note: A statement downgraded to History is no longer an edge.
+             */
+            final Map<IV, List<IV[]>> map = removed
+                    || spo.getStatementType() == StatementEnum.History ? retracted
+                    : added;
+
+            List<IV[]> edges = map.get(spo.p());
+
+            if (edges == null) {
+
+                map.put(spo.p(), edges = new ArrayList<IV[]>());
+
+            }
+
+            edges.add(new IV[] { spo.s(), spo.o() });
+
+        }
+
+        if (added.isEmpty() && retracted.isEmpty())
+            return;
+
+        getTransitiveClosureIndex().update(this, added, retracted);
+
+    }
+
+    /**
+     * Return the estimated #of distinct values in the <i>target</i> position
+     * of the statements matching the given {@link IV}s. This is an O(1)
+     * lookup against the {@link CardinalitySketches}.
+     * 
+     * @param s
+     *            The subject (optional).
+     * @param p
+     *            The predicate (optional).
+     * @param o
+     *            The object (optional).
+     * @param c
+     *            The context (optional, ignored unless quads).
+     * @param target
+     *            The {@link ISPO} slot (0:s, 1:p, 2:o, 3:c) whose distinct
+     *            values will be estimated. That slot must be unbound.
+     * 
+     * @return The estimated #of distinct values -or- <code>-1L</code> if the
+     *         sketches are not enabled or do not cover the bound positions.
+     * 
+     * @see CardinalitySketches#estimateDistinctCount(IV[], int)
+     */
+    public long estimateDistinctCount(final IV s, final IV p, final IV o,
+            final IV c, final int target) {
+
+        final CardinalitySketches tmp = getCardinalitySketches();
+
+        if (tmp == null)
+            return -1L;
+
+        final IV<?, ?>[] spoc = keyArity == 4 ? new IV[] { s, p, o, c }
+                : new IV[] { s, p, o };
+
+        return tmp.estimateDistinctCount(spoc, target);
+
+    }
+
     /**
      * Return an iterator that will visit the distinct (s,p,o) tuples in the
      * source iterator. The context and statement type information will be
@@ -1009,6 +1742,39 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
     }
 
+    /**
+     * Overrides for the {@link PredicateStatistics} index.
+     */
+    protected IndexMetadata getStatisticsIndexMetadata(final String name) {
+
+        final IndexMetadata metadata = newIndexMetadata(name);
+
+        return metadata;
+
+    }
+
+    /**
+     * Overrides for the {@link CardinalitySketches} index.
+     */
+    protected IndexMetadata getCardinalitySketchIndexMetadata(final String name) {
+
+        final IndexMetadata metadata = newIndexMetadata(name);
+
+        return metadata;
+
+    }
+
+    /**
+     * Overrides for the {@link TransitiveClosureIndex}.
+     */
+    protected IndexMetadata getClosureIndexMetadata(final String name) {
+
+        final IndexMetadata metadata = newIndexMetadata(name);
+
+        return metadata;
+
+    }
+
     @Override
     public Set<String> getIndexNames() {
 
@@ -2172,19 +2938,19 @@ public class SPORelation extends AbstractRelation<ISPO> {
             tasks.add(new SPOIndexWriter(this, a, numStmts, false/* clone */,
                     SPOKeyOrder.SPO, SPOKeyOrder.SPO.isPrimaryIndex(),
                     filter, sortTime, insertTime, mutationCount,
-                    reportMutation));
+                    reportMutation, indexWriterCounters));
     
             if (!oneAccessPath) {
     
                 tasks.add(new SPOIndexWriter(this, a, numStmts, true/* clone */,
                         SPOKeyOrder.POS, SPOKeyOrder.POS.isPrimaryIndex(),
                         filter, sortTime, insertTime, mutationCount,
-                        false/*reportMutation*/));
+                        false/*reportMutation*/, indexWriterCounters));
     
                 tasks.add(new SPOIndexWriter(this, a, numStmts, true/* clone */,
                         SPOKeyOrder.OSP, SPOKeyOrder.OSP.isPrimaryIndex(),
                         filter, sortTime, insertTime, mutationCount,
-                        false/*reportMutation*/));
+                        false/*reportMutation*/, indexWriterCounters));
     
             }
 
@@ -2193,7 +2959,7 @@ public class SPORelation extends AbstractRelation<ISPO> {
             tasks.add(new SPOIndexWriter(this, a, numStmts, false/* clone */,
                     SPOKeyOrder.SPOC, SPOKeyOrder.SPOC.isPrimaryIndex(),
                     filter, sortTime, insertTime,
-                    mutationCount, reportMutation));
+                    mutationCount, reportMutation, indexWriterCounters));
 
             if (!oneAccessPath) {
 
@@ -2201,31 +2967,36 @@ public class SPORelation extends AbstractRelation<ISPO> {
                         true/* clone */, SPOKeyOrder.POCS,
                         SPOKeyOrder.POCS.isPrimaryIndex(),
                         filter, sortTime,
-                        insertTime, mutationCount, false/* reportMutation */));
+                        insertTime, mutationCount, false/* reportMutation */,
+                        indexWriterCounters));
 
                 tasks.add(new SPOIndexWriter(this, a, numStmts,
                         true/* clone */, SPOKeyOrder.OCSP, 
                         SPOKeyOrder.OCSP.isPrimaryIndex(),
                         filter, sortTime,
-                        insertTime, mutationCount, false/* reportMutation */));
+                        insertTime, mutationCount, false/* reportMutation */,
+                        indexWriterCounters));
 
                 tasks.add(new SPOIndexWriter(this, a, numStmts,
                         true/* clone */, SPOKeyOrder.CSPO,
                         SPOKeyOrder.CSPO.isPrimaryIndex(),
                         filter, sortTime,
-                        insertTime, mutationCount, false/* reportMutation */));
+                        insertTime, mutationCount, false/* reportMutation */,
+                        indexWriterCounters));
 
                 tasks.add(new SPOIndexWriter(this, a, numStmts,
                         true/* clone */, SPOKeyOrder.PCSO, 
                         SPOKeyOrder.PCSO.isPrimaryIndex(),
                         filter, sortTime,
-                        insertTime, mutationCount, false/* reportMutation */));
+                        insertTime, mutationCount, false/* reportMutation */,
+                        indexWriterCounters));
 
                 tasks.add(new SPOIndexWriter(this, a, numStmts,
                         true/* clone */, SPOKeyOrder.SOPC,
                         SPOKeyOrder.SOPC.isPrimaryIndex(),
                         filter, sortTime,
-                        insertTime, mutationCount, false/* reportMutation */));
+                        insertTime, mutationCount, false/* reportMutation */,
+                        indexWriterCounters));
 
             }
             
@@ -2273,6 +3044,8 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
         }
 
+        updateTransitiveClosure(a, numStmts, false/* removed */);
+
         final long elapsed = System.currentTimeMillis() - begin;
 
         if (log.isInfoEnabled() && numStmts > 1000) {
@@ -2497,6 +3270,8 @@ public class SPORelation extends AbstractRelation<ISPO> {
 
         }
 
+        updateTransitiveClosure(stmts, numStmts, true/* removed */);
+
         final long elapsed = System.currentTimeMillis() - begin;
 
         if (log.isInfoEnabled() && numStmts > 1000) {
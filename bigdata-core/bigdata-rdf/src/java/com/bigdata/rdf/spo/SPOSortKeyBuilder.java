@@ -16,19 +16,42 @@ import com.bigdata.util.Bytes;
 public class SPOSortKeyBuilder implements ISortKeyBuilder<ISPO> {
 
     final private int arity;
+    final private SPOKeyOrder keyOrder;
     final private IKeyBuilder keyBuilder;
 
     public SPOSortKeyBuilder(final int arity) {
         assert arity == 3 || arity == 4;
         this.arity = arity;
+        this.keyOrder = null;
         this.keyBuilder = new KeyBuilder(Bytes.SIZEOF_LONG * arity);
     }
 
     /**
-     * Distinct iff the {s:p:o} are distinct.
+     * Variant produces sort keys in the given {@link SPOKeyOrder}. These are
+     * the same keys that are used by the statement index for that key order.
+     * 
+     * @param keyOrder
+     *            The key order.
+     */
+    public SPOSortKeyBuilder(final SPOKeyOrder keyOrder) {
+        if (keyOrder == null)
+            throw new IllegalArgumentException();
+        this.arity = keyOrder.getKeyArity();
+        this.keyOrder = keyOrder;
+        this.keyBuilder = new KeyBuilder(Bytes.SIZEOF_LONG * arity);
+    }
+
+    /**
+     * Distinct iff the {s:p:o} are distinct (or the {s:p:o:c} for arity 4).
      */
     public byte[] getSortKey(final ISPO spo) {
 
+        if (keyOrder != null) {
+
+            return keyOrder.encodeKey(keyBuilder, spo);
+
+        }
+
         keyBuilder.reset();
         
         spo.s().encode(keyBuilder);
@@ -0,0 +1,565 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.IRangeQuery;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.btree.keys.SuccessorUtil;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rdf.model.StatementEnum;
+import com.bigdata.relation.accesspath.IAccessPath;
+import com.bigdata.striterator.IChunkedOrderedIterator;
+
+/**
+ * The materialized transitive closure of designated predicates (for example
+ * <code>rdfs:subClassOf</code> or <code>skos:broader</code>). For each such
+ * predicate <code>p</code>, the index contains the pair <code>(s,o)</code>
+ * iff there is a path of one or more <code>p</code> edges from
+ * <code>s</code> to <code>o</code>, which is the answer to
+ * <code>s p+ o</code>. Each pair is written twice so the closure may be read
+ * from either end:
+ * 
+ * <pre>
+ * [FORWARD][p][s][o]
+ * [REVERSE][p][o][s]
+ * </pre>
+ * 
+ * The index is maintained incrementally by the {@link SPORelation} as edges
+ * are added and removed. Adding an edge <code>(a,b)</code> adds the pairs
+ * <code>(x,y)</code> for each <code>x</code> in <code>{a} + p+^-1(a)</code>
+ * and each <code>y</code> in <code>{b} + p+(b)</code>. Removing edges first
+ * removes every pair which might have depended on one of those edges and
+ * then recomputes the closure for the affected sources from the statement
+ * indices.
+ * <p>
+ * Note: The closure ignores the context position. In quads mode it is the
+ * closure over the union of the named graphs.
+ * 
+ * @see com.bigdata.rdf.store.AbstractTripleStore.Options#CLOSURE_PREDICATES
+ * @see SPORelation#getTransitiveClosureIndex()
+ */
+public class TransitiveClosureIndex {
+
+    private static final transient Logger log = Logger
+            .getLogger(TransitiveClosureIndex.class);
+
+    private static final byte FORWARD = 0;
+
+    private static final byte REVERSE = 1;
+
+    /**
+     * The index on which the closure is stored.
+     */
+    private final IIndex ndx;
+
+    /**
+     * @param ndx
+     *            The index on which the closure is stored.
+     */
+    public TransitiveClosureIndex(final IIndex ndx) {
+
+        if (ndx == null)
+            throw new IllegalArgumentException();
+
+        this.ndx = ndx;
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static byte[] getKey(final IKeyBuilder keyBuilder,
+            final byte direction, final IV p, final IV a, final IV b) {
+
+        keyBuilder.reset().append(direction);
+
+        IVUtility.encode(keyBuilder, p);
+
+        if (a != null)
+            IVUtility.encode(keyBuilder, a);
+
+        if (b != null)
+            IVUtility.encode(keyBuilder, b);
+
+        return keyBuilder.getKey();
+
+    }
+
+    /**
+     * Return <code>true</code> iff there is a path of one or more
+     * <code>p</code> edges from <code>s</code> to <code>o</code>.
+     */
+    @SuppressWarnings("rawtypes")
+    public boolean contains(final IV p, final IV s, final IV o) {
+
+        if (p == null || s == null || o == null)
+            throw new IllegalArgumentException();
+
+        return ndx.contains(getKey(KeyBuilder.newInstance(), FORWARD, p, s, o));
+
+    }
+
+    /**
+     * Visit each <code>o</code> such that <code>s p+ o</code>.
+     */
+    @SuppressWarnings("rawtypes")
+    public Iterator<IV> getSuccessors(final IV p, final IV s) {
+
+        if (p == null || s == null)
+            throw new IllegalArgumentException();
+
+        return new EndIterator(scan(FORWARD, p, s));
+
+    }
+
+    /**
+     * Visit each <code>s</code> such that <code>s p+ o</code>.
+     */
+    @SuppressWarnings("rawtypes")
+    public Iterator<IV> getPredecessors(final IV p, final IV o) {
+
+        if (p == null || o == null)
+            throw new IllegalArgumentException();
+
+        return new EndIterator(scan(REVERSE, p, o));
+
+    }
+
+    /**
+     * Visit each pair <code>[s,o]</code> such that <code>s p+ o</code>.
+     */
+    @SuppressWarnings("rawtypes")
+    public Iterator<IV[]> getPairs(final IV p) {
+
+        if (p == null)
+            throw new IllegalArgumentException();
+
+        final ITupleIterator<?> itr = scan(FORWARD, p, null/* a */);
+
+        return new Iterator<IV[]>() {
+
+            @Override
+            public boolean hasNext() {
+                return itr.hasNext();
+            }
+
+            @Override
+            public IV[] next() {
+                final IV[] ivs = decode(itr.next());
+                return new IV[] { ivs[1], ivs[2] };
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+        };
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    private ITupleIterator<?> scan(final byte direction, final IV p,
+            final IV a) {
+
+        final byte[] fromKey = getKey(KeyBuilder.newInstance(), direction, p,
+                a, null/* b */);
+
+        final byte[] toKey = SuccessorUtil.successor(fromKey.clone());
+
+        return ndx.rangeIterator(fromKey, toKey, 0/* capacity */,
+                IRangeQuery.KEYS, null/* filter */);
+
+    }
+
+    /**
+     * Decode <code>[p,a,b]</code> from the key of a tuple.
+     */
+    @SuppressWarnings("rawtypes")
+    private static IV[] decode(final ITuple<?> tuple) {
+
+        return IVUtility.decode(tuple.getKey(), 1/* offset */, 3/* numTerms */);
+
+    }
+
+    /**
+     * Visits the last component of the keys.
+     */
+    @SuppressWarnings("rawtypes")
+    private static class EndIterator implements Iterator<IV> {
+
+        private final ITupleIterator<?> itr;
+
+        EndIterator(final ITupleIterator<?> itr) {
+            this.itr = itr;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return itr.hasNext();
+        }
+
+        @Override
+        public IV next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return decode(itr.next())[2];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Add the pair <code>(s,o)</code> to the closure for <code>p</code>.
+     * 
+     * @return <code>true</code> iff the pair was not already present.
+     */
+    @SuppressWarnings("rawtypes")
+    private boolean add(final IKeyBuilder keyBuilder, final IV p, final IV s,
+            final IV o) {
+
+        final byte[] fkey = getKey(keyBuilder, FORWARD, p, s, o);
+
+        if (ndx.contains(fkey))
+            return false;
+
+        ndx.insert(fkey, null/* val */);
+
+        ndx.insert(getKey(keyBuilder, REVERSE, p, o, s), null/* val */);
+
+        return true;
+
+    }
+
+    /**
+     * Remove the pair <code>(s,o)</code> from the closure for <code>p</code>.
+     */
+    @SuppressWarnings("rawtypes")
+    private void remove(final IKeyBuilder keyBuilder, final IV p, final IV s,
+            final IV o) {
+
+        ndx.remove(getKey(keyBuilder, FORWARD, p, s, o));
+
+        ndx.remove(getKey(keyBuilder, REVERSE, p, o, s));
+
+    }
+
+    private static <T> Set<T> toSet(final T first, final Iterator<T> itr) {
+
+        final Set<T> set = new LinkedHashSet<T>();
+
+        set.add(first);
+
+        while (itr.hasNext())
+            set.add(itr.next());
+
+        return set;
+
+    }
+
+    /**
+     * Update the closure for edges which were added to the statement indices.
+     * 
+     * @param p
+     *            The predicate.
+     * @param edges
+     *            The <code>[s,o]</code> pairs of the new edges.
+     * 
+     * @return The #of pairs added to the closure.
+     */
+    @SuppressWarnings("rawtypes")
+    public long addEdges(final IV p, final Collection<IV[]> edges) {
+
+        final IKeyBuilder keyBuilder = KeyBuilder.newInstance();
+
+        long n = 0;
+
+        for (IV[] edge : edges) {
+
+            if (contains(p, edge[0], edge[1])) {
+
+                /*
+                 * Already in the closure. Since the closure is transitive,
+                 * the pairs implied by this edge are also present.
+                 */
+                continue;
+
+            }
+
+            final Set<IV> sources = toSet(edge[0], getPredecessors(p, edge[0]));
+
+            final Set<IV> targets = toSet(edge[1], getSuccessors(p, edge[1]));
+
+            for (IV x : sources) {
+
+                for (IV y : targets) {
+
+                    if (add(keyBuilder, p, x, y))
+                        n++;
+
+                }
+
+            }
+
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("p=" + p + ", edges=" + edges.size() + ", added=" + n);
+
+        return n;
+
+    }
+
+    /**
+     * Update the closure for edges which were removed from the statement
+     * indices. The pairs which could have depended on those edges are
+     * identified from the closure before it is modified, so all edges for the
+     * predicate removed by the same operation must be given together.
+     * 
+     * @param rel
+     *            The relation whose statement indices no longer contain the
+     *            removed edges. The closure is recomputed from these indices
+     *            for each affected source.
+     * @param p
+     *            The predicate.
+     * @param edges
+     *            The <code>[s,o]</code> pairs of the removed edges.
+     * 
+     * @return The net change in the #of pairs in the closure (zero or
+     *         negative).
+     */
+    @SuppressWarnings("rawtypes")
+    public long removeEdges(final SPORelation rel, final IV p,
+            final Collection<IV[]> edges) {
+
+        final IKeyBuilder keyBuilder = KeyBuilder.newInstance();
+
+        // Each source which might have lost a target.
+        final Set<IV> sources = new LinkedHashSet<IV>();
+
+        // Each target which might have been lost.
+        final Set<IV> targets = new LinkedHashSet<IV>();
+
+        for (IV[] edge : edges) {
+
+            if (hasEdge(rel, p, edge[0], edge[1])) {
+
+                // Still present (e.g., in another named graph).
+                continue;
+
+            }
+
+            sources.addAll(toSet(edge[0], getPredecessors(p, edge[0])));
+
+            targets.addAll(toSet(edge[1], getSuccessors(p, edge[1])));
+
+        }
+
+        if (sources.isEmpty())
+            return 0L;
+
+        long n = 0;
+
+        for (IV x : sources) {
+
+            // The pairs which might have been lost for this source.
+            final List<IV> lost = new LinkedList<IV>();
+
+            final Iterator<IV> itr = getSuccessors(p, x);
+
+            while (itr.hasNext()) {
+
+                final IV y = itr.next();
+
+                if (targets.contains(y))
+                    lost.add(y);
+
+            }
+
+            for (IV y : lost) {
+
+                remove(keyBuilder, p, x, y);
+
+                n--;
+
+            }
+
+            // Restore the pairs which are still reachable.
+            for (IV y : reachable(rel, p, x)) {
+
+                if (add(keyBuilder, p, x, y))
+                    n++;
+
+            }
+
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("p=" + p + ", edges=" + edges.size() + ", sources="
+                    + sources.size() + ", targets=" + targets.size()
+                    + ", delta=" + n);
+
+        return n;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the statement indices contain the edge
+     * <code>(s,p,o)</code> in any context.
+     */
+    @SuppressWarnings("rawtypes")
+    private static boolean hasEdge(final SPORelation rel, final IV p,
+            final IV s, final IV o) {
+
+        return !getEdges(rel, s, p, o, 1/* limit */).isEmpty();
+
+    }
+
+    /**
+     * Return the targets reachable from <code>s</code> over one or more
+     * <code>p</code> edges in the statement indices (breadth first).
+     */
+    @SuppressWarnings("rawtypes")
+    private static Set<IV> reachable(final SPORelation rel, final IV p,
+            final IV s) {
+
+        final Set<IV> visited = new LinkedHashSet<IV>();
+
+        List<IV> frontier = new ArrayList<IV>();
+
+        frontier.add(s);
+
+        while (!frontier.isEmpty()) {
+
+            final List<IV> next = new ArrayList<IV>();
+
+            for (IV x : frontier) {
+
+                for (IV y : getEdges(rel, x, p, null/* o */, Long.MAX_VALUE)) {
+
+                    if (visited.add(y))
+                        next.add(y);
+
+                }
+
+            }
+
+            frontier = next;
+
+        }
+
+        return visited;
+
+    }
+
+    /**
+     * Return the distinct objects of the statements <code>(s,p,o?)</code>
+     * which are not {@link StatementEnum#History} statements.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static Set<IV> getEdges(final SPORelation rel, final IV s,
+            final IV p, final IV o, final long limit) {
+
+        final Set<IV> objects = new LinkedHashSet<IV>();
+
+        final IAccessPath<ISPO> ap = rel.getAccessPath(s, p, o);
+
+        final IChunkedOrderedIterator<ISPO> itr = ap.iterator();
+
+        try {
+
+            while (itr.hasNext() && objects.size() < limit) {
+
+                final ISPO spo = itr.next();
+
+                if (spo.getStatementType() == StatementEnum.History)
+                    continue;
+
+                objects.add(spo.o());
+
+            }
+
+        } finally {
+
+            itr.close();
+
+        }
+
+        return objects;
+
+    }
+
+    /**
+     * Apply the edges which were added to and removed from the statement
+     * indices to the closure.
+     * 
+     * @param rel
+     *            The relation.
+     * @param added
+     *            The new edges for each predicate.
+     * @param removed
+     *            The removed edges for each predicate.
+     */
+    @SuppressWarnings("rawtypes")
+    void update(final SPORelation rel, final Map<IV, List<IV[]>> added,
+            final Map<IV, List<IV[]>> removed) {
+
+        for (Map.Entry<IV, List<IV[]>> e : removed.entrySet()) {
+
+            removeEdges(rel, e.getKey(), e.getValue());
+
+        }
+
+        for (Map.Entry<IV, List<IV[]>> e : added.entrySet()) {
+
+            addEdges(e.getKey(), e.getValue());
+
+        }
+
+    }
+
+}
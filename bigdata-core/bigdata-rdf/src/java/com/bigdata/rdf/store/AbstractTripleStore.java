@@ -102,6 +102,7 @@ import com.bigdata.rdf.internal.VTE;
 import com.bigdata.rdf.internal.constraints.RangeBOp;
 import com.bigdata.rdf.internal.impl.BlobIV;
 import com.bigdata.rdf.internal.impl.extensions.XSDStringExtension;
+import com.bigdata.rdf.lexicon.BatchResolveCoalescer;
 import com.bigdata.rdf.lexicon.BigdataSubjectCentricFullTextIndex;
 import com.bigdata.rdf.lexicon.BigdataValueCentricFullTextIndex;
 import com.bigdata.rdf.lexicon.ITermIndexCodes;
@@ -126,18 +127,24 @@ import com.bigdata.rdf.rules.MatchRule;
 import com.bigdata.rdf.rules.RDFJoinNexusFactory;
 import com.bigdata.rdf.rules.RuleContextEnum;
 import com.bigdata.rdf.sail.RDRHistory;
+import com.bigdata.rdf.sparql.ast.cache.QueryPlanCache;
+import com.bigdata.rdf.sparql.ast.cache.SparqlResultCache;
 import com.bigdata.rdf.sparql.ast.optimizers.ASTBottomUpOptimizer;
 import com.bigdata.rdf.spo.BulkCompleteConverter;
 import com.bigdata.rdf.spo.BulkFilterConverter;
+import com.bigdata.rdf.spo.CardinalitySketches;
 import com.bigdata.rdf.spo.ExplicitSPOFilter;
+import com.bigdata.rdf.spo.HyperLogLog;
 import com.bigdata.rdf.spo.ISPO;
 import com.bigdata.rdf.spo.JustificationWriter;
+import com.bigdata.rdf.spo.PredicateStatistics;
 import com.bigdata.rdf.spo.SPO;
 import com.bigdata.rdf.spo.SPOKeyOrder;
 import com.bigdata.rdf.spo.SPOPredicate;
 import com.bigdata.rdf.spo.SPORelation;
 import com.bigdata.rdf.spo.SPOTupleSerializer;
 import com.bigdata.rdf.spo.StatementWriter;
+import com.bigdata.rdf.spo.TransitiveClosureIndex;
 import com.bigdata.rdf.spo.XXXCShardSplitHandler;
 import com.bigdata.rdf.vocab.BaseVocabulary;
 import com.bigdata.rdf.vocab.NoVocabulary;
@@ -649,6 +656,33 @@ abstract public class AbstractTripleStore extends
         
         String DEFAULT_TERM_CACHE_CAPACITY = "10000";//"50000";
 
+        /**
+         * Boolean option (default {@value #DEFAULT_COALESCE_TERM_RESOLUTION})
+         * enables the coalescing of concurrent {@link IV} resolution requests
+         * against the ID2TERM and BLOBS indices. When enabled, read-only views
+         * of the lexicon for the same commit point share a
+         * {@link BatchResolveCoalescer} and concurrent queries which need to
+         * materialize the same terms will read them in a single batch.
+         * 
+         * @see BatchResolveCoalescer
+         */
+        String COALESCE_TERM_RESOLUTION = AbstractTripleStore.class.getName()
+                + ".coalesceTermResolution";
+
+        String DEFAULT_COALESCE_TERM_RESOLUTION = "false";
+
+        /**
+         * Integer option specifies the maximum #of distinct {@link IV}s which
+         * will be coalesced into a single batch (default
+         * {@value #DEFAULT_COALESCE_TERM_RESOLUTION_MAX_BATCH_SIZE}).
+         * 
+         * @see #COALESCE_TERM_RESOLUTION
+         */
+        String COALESCE_TERM_RESOLUTION_MAX_BATCH_SIZE = AbstractTripleStore.class
+                .getName() + ".coalesceTermResolution.maxBatchSize";
+
+        String DEFAULT_COALESCE_TERM_RESOLUTION_MAX_BATCH_SIZE = "20000";
+
         /**
          * The name of the class that will establish the pre-defined
          * {@link Vocabulary} for the database (default
@@ -1335,6 +1369,135 @@ abstract public class AbstractTripleStore extends
                 .getName() + ".enableRawRecordsSupport";
 
         public static String DEFAULT_ENABLE_RAW_RECORDS_SUPPORT = "true";
+
+        /**
+         * When <code>true</code>, the {@link SPORelation} will maintain an
+         * index of per-predicate and characteristic set statistics which are
+         * used by the static join optimizer to estimate the cardinality of
+         * star patterns (default {@value #DEFAULT_STATISTICS}). The statistics
+         * are computed by {@link SPORelation#rebuildStatistics()} and are not
+         * used until they have been built. They are not maintained
+         * incrementally. Unless {@link #STATISTICS_REBUILD_COMMITS} or
+         * {@link #STATISTICS_REBUILD_MAX_AGE} is set, they are only rebuilt on
+         * demand (e.g., by <code>POST .../namespace/NS/statistics</code>).
+         * 
+         * @see PredicateStatistics
+         */
+        String STATISTICS = AbstractTripleStore.class.getName()
+                + ".statistics";
+
+        String DEFAULT_STATISTICS = "false";
+
+        /**
+         * The maximum #of characteristic sets retained by the
+         * {@link #STATISTICS} (default
+         * {@value #DEFAULT_STATISTICS_MAX_CHARACTERISTIC_SETS}). The sets
+         * having the fewest distinct subjects are discarded first.
+         */
+        String STATISTICS_MAX_CHARACTERISTIC_SETS = AbstractTripleStore.class
+                .getName() + ".statistics.maxCharacteristicSets";
+
+        String DEFAULT_STATISTICS_MAX_CHARACTERISTIC_SETS = "10000";
+
+        /**
+         * When positive, the {@link #STATISTICS} are rebuilt as part of the
+         * commit once this many commits have been made through the
+         * unisolated view of the {@link SPORelation} since they were last
+         * rebuilt (default {@value #DEFAULT_STATISTICS_REBUILD_COMMITS}). The
+         * rebuild scans the statement indices while the commit is being
+         * made, so this should be large for a frequently updated store. The
+         * count is not restart safe. ZERO (0) disables this trigger.
+         */
+        String STATISTICS_REBUILD_COMMITS = AbstractTripleStore.class
+                .getName() + ".statistics.rebuildCommits";
+
+        String DEFAULT_STATISTICS_REBUILD_COMMITS = "0";
+
+        /**
+         * When positive, the {@link #STATISTICS} are rebuilt as part of the
+         * next commit once they are older than this many milliseconds or if
+         * they have never been built (default
+         * {@value #DEFAULT_STATISTICS_REBUILD_MAX_AGE}). ZERO (0) disables
+         * this trigger.
+         * 
+         * @see PredicateStatistics#getTimestamp()
+         */
+        String STATISTICS_REBUILD_MAX_AGE = AbstractTripleStore.class
+                .getName() + ".statistics.rebuildMaxAge";
+
+        String DEFAULT_STATISTICS_REBUILD_MAX_AGE = "0";
+
+        /**
+         * When <code>true</code>, the {@link SPORelation} will maintain
+         * mergeable {@link HyperLogLog} sketches of the #of distinct values
+         * in each key position of the statement indices for each key prefix
+         * of up to {@link #CARDINALITY_SKETCH_PREFIX_LENGTH} components
+         * (default {@value #DEFAULT_CARDINALITY_SKETCHES}). The sketches are
+         * updated as statements are written on the statement indices and are
+         * used by the query optimizers to estimate distinct counts without
+         * scanning the statement indices. Statements which are retracted are
+         * not removed from the sketches, so the estimates are upper bounds
+         * once statements have been retracted.
+         * 
+         * @see CardinalitySketches
+         */
+        String CARDINALITY_SKETCHES = AbstractTripleStore.class.getName()
+                + ".cardinalitySketches";
+
+        String DEFAULT_CARDINALITY_SKETCHES = "false";
+
+        /**
+         * The maximum #of leading key components for which the
+         * {@link #CARDINALITY_SKETCHES} are maintained (default
+         * {@value #DEFAULT_CARDINALITY_SKETCH_PREFIX_LENGTH}). For example, a
+         * prefix length of ONE (1) maintains sketches for the distinct values
+         * in each key position of each index (the empty prefix) plus sketches
+         * for the distinct values in the remaining key positions for each
+         * distinct value of the first key component (e.g., the distinct
+         * objects and subjects for each predicate on the POS index). Each
+         * additional component multiplies the #of sketches.
+         */
+        String CARDINALITY_SKETCH_PREFIX_LENGTH = AbstractTripleStore.class
+                .getName() + ".cardinalitySketches.prefixLength";
+
+        String DEFAULT_CARDINALITY_SKETCH_PREFIX_LENGTH = "1";
+
+        /**
+         * The precision of the {@link #CARDINALITY_SKETCHES} expressed as the
+         * log2 of the #of registers in each sketch (default
+         * {@value #DEFAULT_CARDINALITY_SKETCH_PRECISION}). The standard error
+         * of the estimates is approximately <code>1.04/sqrt(2^p)</code>.
+         * 
+         * @see HyperLogLog#MIN_PRECISION
+         * @see HyperLogLog#MAX_PRECISION
+         */
+        String CARDINALITY_SKETCH_PRECISION = AbstractTripleStore.class
+                .getName() + ".cardinalitySketches.precision";
+
+        String DEFAULT_CARDINALITY_SKETCH_PRECISION = "10";
+
+        /**
+         * A comma separated list of the URIs of predicates whose transitive
+         * closure will be materialized by the {@link SPORelation} (default
+         * <code>""</code>, which disables the feature). This is intended for
+         * hierarchical predicates such as <code>rdfs:subClassOf</code> or
+         * <code>skos:broader</code>. The closure is maintained incrementally
+         * as statements using those predicates are added and removed, and
+         * property paths <code>p+</code> and <code>p*</code> over those
+         * predicates are answered by a lookup against the closure rather than
+         * by an iterative expansion of the path.
+         * <p>
+         * This option is ignored when the {@link #LEXICON} is disabled, which
+         * is the case for the temporary stores used by truth maintenance. The
+         * closure of the knowledge base still covers the inferred statements
+         * since those are written on its statement indices.
+         * 
+         * @see TransitiveClosureIndex
+         */
+        String CLOSURE_PREDICATES = AbstractTripleStore.class.getName()
+                + ".closurePredicates";
+
+        String DEFAULT_CLOSURE_PREDICATES = "";
         
 
     }
@@ -2081,6 +2244,11 @@ abstract public class AbstractTripleStore extends
             if(lexicon && tmp != null)
                tmp.remove();
 
+            // Discard any cached queries for this namespace.
+            QueryPlanCache.invalidate(getNamespace());
+
+            SparqlResultCache.invalidate(getNamespace());
+
         } finally {
 
             unlock(resourceLock);
@@ -2489,6 +2657,9 @@ abstract public class AbstractTripleStore extends
 
         if (lexiconRelation != null) {
 
+            // discard anything buffered by a bulk load of the text index.
+            lexiconRelation.abortTextIndex();
+
             locator.discard(lexiconRelation, false/*destroyed*/);
 
             lexiconRelation = null;
@@ -2520,6 +2691,28 @@ abstract public class AbstractTripleStore extends
         if (isReadOnly())
             throw new IllegalStateException();
 
+        if (lexiconRelation != null) {
+
+            /*
+             * Write anything buffered by a bulk load of the text index onto
+             * the text index in key order.
+             */
+            lexiconRelation.flushTextIndex();
+
+        }
+
+        final SPORelation spoRelation = spoRelationRef.get();
+
+        if (spoRelation != null) {
+
+            /*
+             * Rebuild the statistics if they are due so they are made durable
+             * by this commit.
+             */
+            spoRelation.rebuildStatisticsIfStale();
+
+        }
+
         return 0L;
 
     }
@@ -32,6 +32,7 @@ import org.openrdf.model.URI;
 import org.openrdf.model.impl.URIImpl;
 
 import com.bigdata.rdf.sparql.ast.eval.SliceServiceFactory;
+import com.bigdata.search.ScoringModelEnum;
 
 
 /**
@@ -296,6 +297,87 @@ public interface BDS {
 
     final boolean DEFAULT_MATCH_EXACT = false;
     
+    /**
+     * Magic predicate used to query for free text search metadata indicates
+     * that only literals in which the search terms occur as a phrase will be
+     * reported. Use in conjunction with {@link #SEARCH} as follows:
+     * <p>
+     * 
+     * <pre>
+     * 
+     * select ?s
+     * where {
+     *   ?s bds:search &quot;scale-out RDF triplestore&quot; .
+     *   ?s bds:matchPhrase "true" .
+     * }
+     * 
+     * </pre>
+     * <p>
+     * Unlike {@link #MATCH_EXACT}, this is evaluated against the positions
+     * stored in the full text index and does not materialize the hits. The
+     * full text index must have been created with
+     * {@link com.bigdata.search.FullTextIndex.Options#POSITIONS_ENABLED}.
+     */
+    final URI MATCH_PHRASE = new URIImpl(NAMESPACE + "matchPhrase");
+
+    final boolean DEFAULT_MATCH_PHRASE = false;
+    
+    /**
+     * Magic predicate used to query for free text search metadata indicates
+     * that only literals in which all search terms occur (in any order) within
+     * a window having at most the given number of other positions between
+     * them will be reported (NEAR/k). Use in conjunction with {@link #SEARCH}
+     * as follows:
+     * <p>
+     * 
+     * <pre>
+     * 
+     * select ?s
+     * where {
+     *   ?s bds:search &quot;scale-out triplestore&quot; .
+     *   ?s bds:matchNear "3" .
+     * }
+     * 
+     * </pre>
+     * <p>
+     * This is evaluated against the positions stored in the full text index.
+     * The full text index must have been created with
+     * {@link com.bigdata.search.FullTextIndex.Options#POSITIONS_ENABLED}.
+     */
+    final URI MATCH_NEAR = new URIImpl(NAMESPACE + "matchNear");
+
+    /**
+     * The default disables the NEAR/k constraint.
+     */
+    final int DEFAULT_MATCH_NEAR = -1;
+    
+    /**
+     * Magic predicate used to query for free text search metadata specifies
+     * the model used to compute the relevance of each hit (one of the
+     * {@link ScoringModelEnum} names). Use in conjunction with {@link #SEARCH}
+     * as follows:
+     * <p>
+     * 
+     * <pre>
+     * 
+     * select ?s ?relevance
+     * where {
+     *   ?s bds:search &quot;scale-out RDF triplestore&quot; .
+     *   ?s bds:scoringModel "BM25" .
+     *   ?s bds:relevance ?relevance .
+     * }
+     * 
+     * </pre>
+     * <p>
+     * The {@link ScoringModelEnum#BM25} relevance is not bounded, so
+     * {@link #MIN_RELEVANCE} and {@link #MAX_RELEVANCE} are compared against
+     * the BM25 score. The full text index must have been created with
+     * {@link com.bigdata.search.FullTextIndex.Options#STATISTICS_ENABLED}.
+     */
+    final URI SCORING_MODEL = new URIImpl(NAMESPACE + "scoringModel");
+
+    final ScoringModelEnum DEFAULT_SCORING_MODEL = ScoringModelEnum.Cosine;
+    
     /**
      * Magic predicate used to query for free text search metadata indicates
      * that only search results that also pass the specified REGEX filter will
@@ -62,6 +62,7 @@ import com.bigdata.journal.Journal;
 import com.bigdata.journal.RWStrategy;
 import com.bigdata.rdf.ServiceProviderHook;
 import com.bigdata.rdf.inf.ClosureStats;
+import com.bigdata.rdf.inf.StreamingTruthMaintenance;
 import com.bigdata.rdf.inf.TruthMaintenance;
 import com.bigdata.rdf.lexicon.LexiconRelation;
 import com.bigdata.rdf.load.IStatementBufferFactory;
@@ -73,6 +74,7 @@ import com.bigdata.rdf.rio.RioLoaderListener;
 import com.bigdata.rdf.rio.StatementBuffer;
 import com.bigdata.rdf.rules.InferenceEngine;
 import com.bigdata.rdf.spo.SPO;
+import com.bigdata.search.FullTextIndex;
 
 /**
  * A utility class to load RDF data into an {@link AbstractTripleStore}. This
@@ -246,6 +248,26 @@ public class DataLoader {
 	 *      cause rio to throw a fatal exception)
 	 */
     private final boolean ignoreInvalidFiles;
+
+    /**
+     * When true, the full text index is built in bulk load mode.
+     * 
+     * @see Options#BULK_TEXT_INDEX
+     */
+    private final boolean bulkTextIndex;
+
+    /**
+     * The text index iff this {@link DataLoader} put it into bulk load mode
+     * and has not yet ended the bulk load.
+     */
+    private FullTextIndex<?> bulkTextIndexer = null;
+
+    /**
+     * When true, closure is computed by the {@link StreamingTruthMaintenance}.
+     * 
+     * @see Options#STREAMING_TRUTH_MAINTENANCE
+     */
+    private final boolean streamingTruthMaintenance;
     
 //    public boolean setFlush(boolean newValue) {
 //        
@@ -304,6 +326,70 @@ public class DataLoader {
             
         }
         
+        endBulkTextIndex();
+        
+    }
+    
+    /**
+     * Put the text index into bulk load mode if requested and not yet done.
+     * 
+     * @see Options#BULK_TEXT_INDEX
+     */
+    private void beginBulkTextIndex() {
+
+        if (!bulkTextIndex || bulkTextIndexer != null || database.isReadOnly()
+                || !database.getLexiconRelation().isTextIndex())
+            return;
+
+        final Object textIndexer = database.getLexiconRelation()
+                .getSearchEngine();
+
+        if (textIndexer instanceof FullTextIndex
+                && !((FullTextIndex<?>) textIndexer).isBulkLoad()) {
+
+            ((FullTextIndex<?>) textIndexer).beginBulkLoad();
+
+            bulkTextIndexer = (FullTextIndex<?>) textIndexer;
+
+        }
+
+    }
+
+    /**
+     * Write any tuples buffered by the bulk load onto the text index and end
+     * bulk load mode. Otherwise the text index would remain in bulk load mode
+     * after the load and later writes would not be visible to search until
+     * the next commit.
+     */
+    private void endBulkTextIndex() {
+
+        final FullTextIndex<?> tmp = bulkTextIndexer;
+
+        if (tmp != null) {
+
+            bulkTextIndexer = null;
+
+            tmp.endBulkLoad();
+
+        }
+
+    }
+
+    /**
+     * Discard any tuples buffered by the bulk load and end bulk load mode.
+     */
+    private void abortBulkTextIndex() {
+
+        final FullTextIndex<?> tmp = bulkTextIndexer;
+
+        if (tmp != null) {
+
+            bulkTextIndexer = null;
+
+            tmp.abortBulkLoad();
+
+        }
+
     }
     
     /**
@@ -591,6 +677,47 @@ public class DataLoader {
 		 */
 		static final String DEFAULT_VERBOSE = "0";
 
+		/**
+		 * When <code>true</code> and the database maintains a full text index
+		 * using the {@link FullTextIndex}, the text index is built in bulk
+		 * load mode. The tuples for the text index are buffered in sorted runs
+		 * (spilling onto temporary files as necessary) rather than being
+		 * inserted into the text index as each batch of new literals is
+		 * written on the lexicon. The runs are merged and written onto the
+		 * text index in key order when the load ends (see
+		 * {@link DataLoader#endSource()}), so new literals are not visible to
+		 * search until then. Bulk load mode ends with the load, so writes made
+		 * after the load are indexed as usual.
+		 * 
+		 * @see FullTextIndex#beginBulkLoad()
+		 * @see FullTextIndex.Options#BULK_LOAD_RUN_CAPACITY
+		 */
+		static final String BULK_TEXT_INDEX = DataLoader.class.getName() + ".bulkTextIndex";
+
+		/**
+		 * The default value (<code>false</code>) for {@link #BULK_TEXT_INDEX)
+		 */
+		static final String DEFAULT_BULK_TEXT_INDEX = "false";
+
+		/**
+		 * When <code>true</code> and closure is being maintained (see
+		 * {@link #CLOSURE}), the closure of the buffered statements is
+		 * computed by the {@link StreamingTruthMaintenance} using in-memory
+		 * delta relations rather than by {@link TruthMaintenance} over the
+		 * {@link TempTripleStore}. The closure is computed each time
+		 * {@link #BUFFER_CAPACITY} statements have been read from the
+		 * {@link TempTripleStore}, which bounds the heap demand. This is
+		 * intended for a stream of small documents loaded with
+		 * {@link ClosureEnum#Incremental}.
+		 */
+		static final String STREAMING_TRUTH_MAINTENANCE = DataLoader.class.getName() + ".streamingTruthMaintenance";
+
+		/**
+		 * The default value (<code>false</code>) for
+		 * {@link #STREAMING_TRUTH_MAINTENANCE}.
+		 */
+		static final String DEFAULT_STREAMING_TRUTH_MAINTENANCE = "false";
+
     }
 
     /**
@@ -766,6 +893,26 @@ public class DataLoader {
 				log.info(Options.DUMP_JOURNAL + "=" + dumpJournal);
 		}
 
+		{ // bulkTextIndex.
+
+			bulkTextIndex = Boolean
+					.parseBoolean(properties.getProperty(Options.BULK_TEXT_INDEX, Options.DEFAULT_BULK_TEXT_INDEX));
+
+			if (log.isInfoEnabled())
+				log.info(Options.BULK_TEXT_INDEX + "=" + bulkTextIndex);
+
+		}
+
+		{ // streamingTruthMaintenance.
+
+			streamingTruthMaintenance = Boolean.parseBoolean(properties.getProperty(
+					Options.STREAMING_TRUTH_MAINTENANCE, Options.DEFAULT_STREAMING_TRUTH_MAINTENANCE));
+
+			if (log.isInfoEnabled())
+				log.info(Options.STREAMING_TRUTH_MAINTENANCE + "=" + streamingTruthMaintenance);
+
+		}
+
     }
 
     public class MyLoadStats extends LoadStats {
@@ -969,6 +1116,8 @@ public class DataLoader {
 
 		}
 
+		endBulkTextIndex();
+
 		if (commitEnum == CommitEnum.Batch) {
 
 			if (log.isInfoEnabled())
@@ -1587,6 +1736,9 @@ public class DataLoader {
 
         try {
 
+			// Note: ended by endSource() or when the top-level load commits.
+			beginBulkTextIndex();
+
 			boolean ok = false;
 			try {
 				
@@ -1720,6 +1872,9 @@ public class DataLoader {
                 
             }
 
+			// discard anything buffered for the text index.
+			abortBulkTextIndex();
+
 			if (t instanceof RuntimeException)
 				throw (RuntimeException) t;
 
@@ -1835,8 +1990,18 @@ public class DataLoader {
             // flush anything in the buffer.
             buffer.flush();
             
-            stats = new TruthMaintenance(inferenceEngine)
-                    .assertAll((TempTripleStore) buffer.getStatementStore());
+            if (streamingTruthMaintenance) {
+
+                stats = new StreamingTruthMaintenance(inferenceEngine,
+                        bufferCapacity).assertAll((TempTripleStore) buffer
+                        .getStatementStore());
+
+            } else {
+
+                stats = new TruthMaintenance(inferenceEngine)
+                        .assertAll((TempTripleStore) buffer.getStatementStore());
+
+            }
             
             /*
              * Discard the buffer since the backing tempStore was closed when
@@ -49,7 +49,7 @@ public class RebuildTextIndex {
      * Utility method to rebuid text index in a local journal.
      * 
      * @param args
-     *            <code>[-namespace <i>namespace</i>] [-forceCreate] propertyFile</code>
+     *            <code>[-namespace <i>namespace</i>] [-forceCreate] [-threads <i>n</i>] propertyFile</code>
      *            where
      *            <dl>
      *            <dt>-namespace</dt>
@@ -57,6 +57,9 @@ public class RebuildTextIndex {
      *            <dt>-forceCreate</dt>
      *            <dd>When <code>true</code> a new text index will be created
      *            if does not exist, <code>false</code> is default</dd>
+     *            <dt>-threads</dt>
+     *            <dd>The #of threads which will tokenize the literals (default
+     *            is the #of available processors).</dd>
      *            <dt>propertyFile</dt>
      *            <dd>The configuration file for the database instance.</dd>
      *            </dl>
@@ -69,6 +72,8 @@ public class RebuildTextIndex {
         
         boolean forceCreate = false;
         
+        int nthreads = Runtime.getRuntime().availableProcessors();
+        
         int i = 0;
         
         while (i < args.length) {
@@ -85,6 +90,18 @@ public class RebuildTextIndex {
                     
                     forceCreate = true;
                     
+                } else if (arg.equals("-threads")) {
+                    
+                    nthreads = Integer.parseInt(args[++i]);
+                    
+                    if (nthreads <= 0) {
+                        
+                        System.err.println("-threads must be positive: " + nthreads);
+                        
+                        usage();
+                        
+                    }
+                    
                 } else {
                     
                     System.err.println("Unknown argument: " + arg);
@@ -144,7 +161,7 @@ public class RebuildTextIndex {
                         if (kb.getLexiconRelation().isTextIndex()) {
                         
                         
-                            kb.getLexiconRelation().rebuildTextIndex(false /*forceCreate*/);
+                            kb.getLexiconRelation().rebuildTextIndex(false /*forceCreate*/, nthreads);
                             
                             System.out.println(nm + " - completed");
                             
@@ -164,7 +181,7 @@ public class RebuildTextIndex {
                         
                         if (kb != null) {
                             
-                            kb.getLexiconRelation().rebuildTextIndex(forceCreate);
+                            kb.getLexiconRelation().rebuildTextIndex(forceCreate, nthreads);
                             
                             System.out.println(namespace + " - completed");
                         
@@ -217,7 +234,7 @@ public class RebuildTextIndex {
     
     private static void usage() {
         
-        System.err.println("usage: [-namespace namespace] [-forceCreate] propertyFile");
+        System.err.println("usage: [-namespace namespace] [-forceCreate] [-threads n] propertyFile");
         
         System.exit(1);
         
@@ -187,6 +187,18 @@ public interface FTS {
       
       final String DEFAULT_SNIPPET_FIELD = null; // no system default
       
+      
+      /**
+       * Option that may be set to specify the maximum number of searches
+       * (one per incoming binding set) that are submitted to the external
+       * service as a single batch. Up to two batches are kept in flight, so
+       * that the searches run asynchronously while earlier results are
+       * consumed by the query.
+       */
+      String FTS_BATCH_SIZE = FTS.class.getName() + ".batchSize";
+      
+      final int DEFAULT_BATCH_SIZE = 100;
+      
    }
    
    /**
@@ -195,10 +207,14 @@ public interface FTS {
    final String NAMESPACE = "http://www.bigdata.com/rdf/fts#";
 
    /**
-    * The type of the FTS. For now, only Solr is implemented/supported.
+    * The type of the FTS. Besides an external Solr index, there is an
+    * embedded, in-process implementation running against the store's
+    * built-in fulltext index, which does not require an {@link FTS#ENDPOINT}
+    * and is useful for testing and benchmarking without a Solr server.
     */
    public static enum EndpointType {
-      SOLR
+      SOLR,
+      EMBEDDED
    }
 
    /**
@@ -26,6 +26,7 @@ package com.bigdata.service.fts;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -36,6 +37,11 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.log4j.Logger;
 import org.openrdf.model.Literal;
@@ -76,6 +82,7 @@ import com.bigdata.search.IHit;
 import com.bigdata.service.fts.FTS.EndpointType;
 import com.bigdata.service.fts.FTS.SearchResultType;
 import com.bigdata.service.fts.IFulltextSearch.FulltextSearchQuery;
+import com.bigdata.service.fts.impl.EmbeddedFulltextSearchImpl;
 import com.bigdata.service.fts.impl.SolrFulltextSearchImpl;
 
 import cutthecrap.utils.striterators.ICloseableIterator;
@@ -503,10 +510,10 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
 
          }
 
-         /** TODO: closing logics */
          public void close() {
             if (open) {
                open = false;
+               src.close();
             }
          }
 
@@ -645,7 +652,11 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
 
    /**
     * Wrapper around {@link FulltextSearchHiterator}, delegating requests for
-    * multiple binding sets to the latter one.
+    * multiple binding sets to the latter one. The searches for the binding
+    * sets are submitted in batches of {@link FTS.Options#FTS_BATCH_SIZE}
+    * queries (using {@link IAsyncFulltextSearch#submit} where supported),
+    * with up to two batches being in flight while the results of earlier
+    * searches are consumed.
     */
    public static class FulltextSearchMultiHiterator<A extends IFulltextSearchHit> {
 
@@ -663,7 +674,22 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
       
       final FulltextSearchDefaults defaults;
       
-      int nextBindingSetItr = 0;
+      final int batchSize;
+      
+      // the queries along with their implementations, one per binding set
+      final List<FulltextSearchQuery> queries = 
+         new ArrayList<FulltextSearchQuery>();
+      final List<IFulltextSearch> searchImpls = new ArrayList<IFulltextSearch>();
+      
+      // search implementations, by class name (null for the default)
+      final Map<String, IFulltextSearch> searchImplCache = 
+         new HashMap<String, IFulltextSearch>();
+      
+      // the submitted searches whose results have not yet been consumed
+      final LinkedList<Future<FulltextSearchHiterator<IFulltextSearchHit>>> pending =
+         new LinkedList<Future<FulltextSearchHiterator<IFulltextSearchHit>>>();
+      
+      int nextQueryItr = 0;
 
       FulltextSearchHiterator<IFulltextSearchHit> curDelegate;
 
@@ -688,6 +714,7 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
          
          this.defaults = defaults;
          this.serviceCallParams = serviceCallParams;
+         this.batchSize = resolveBatchSize();
 
          init();
 
@@ -754,41 +781,121 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
 
       }
 
+      /**
+       * Cancels the searches that have not yet been consumed.
+       */
+      public void close() {
+         
+         for (Future<?> future : pending) {
+            future.cancel(true);
+         }
+         pending.clear();
+         
+         nextQueryItr = queries.size();
+         curDelegate = null;
+         
+      }
+      
       /**
        * @return true if a new delegate has been set successfully, false
        *         otherwise
        */
       private boolean nextDelegate() {
 
-         if (bindingSet == null || nextBindingSetItr >= bindingSet.length) {
+         if (pending.isEmpty()) {
             curDelegate = null;
             return false;
          }
 
-         final IBindingSet bs = bindingSet[nextBindingSetItr++];
-         final String query = resolveQuery(bs);
-         final String endpoint = resolveEndpoint(bs);
-         final String endpointType = resolveEndpointType(bs);
-         final String params = resolveParams(bs);
-         final SearchResultType searchResultType = resolveSearchResultType(bs);
-         final Integer searchTimeout = resolveSearchTimeout(bs);
-         final String searchField = resolveSearchField(bs);
-         final String scoreField = resolveScoreField(bs);
-         final String snippetField = resolveSnippetField(bs);
+         final Future<FulltextSearchHiterator<IFulltextSearchHit>> future = 
+            pending.removeFirst();
+         
+         // keep the pipeline filled while waiting for the result
+         submitBatches();
+         
+         try {
+            
+            curDelegate = future.get();
+            
+         } catch (InterruptedException e) {
+            
+            close();
+            Thread.currentThread().interrupt();
+            throw new FulltextSearchException(
+                  "Interrupted while waiting for fulltext search: " + e);
+            
+         } catch (ExecutionException e) {
+            
+            close();
+            if (e.getCause() instanceof FulltextSearchException) {
+               throw (FulltextSearchException) e.getCause();
+            }
+            throw new FulltextSearchException(
+                  "Error execution fulltext search: " + e.getCause());
+            
+         }
 
-         /*
-          * Though we currently, we only support Solr, here we might easily hook
-          * in other implementations based on the magic predicate
-          */
-         final IFulltextSearch ftSearch = getSearchClass(endpointType);
+         return true;
+      }
 
-         FulltextSearchQuery sq = new FulltextSearchQuery(
-               query, params, endpoint, searchTimeout, searchField,
-               scoreField, snippetField, bs, searchResultType);
-         curDelegate = (FulltextSearchHiterator) 
-               ftSearch.search(sq, serviceCallParams.getClientConnectionManager());
+      /**
+       * Submits batches of queries until the number of pending searches
+       * exceeds the batch size or all queries have been submitted.
+       */
+      private void submitBatches() {
+         
+         while (nextQueryItr < queries.size() && pending.size() <= batchSize) {
+            submitBatch();
+         }
+      }
+      
+      /**
+       * Submits the next batch, consisting of up to {@link #batchSize}
+       * consecutive queries sharing the same search implementation.
+       */
+      @SuppressWarnings("unchecked")
+      private void submitBatch() {
+         
+         final IFulltextSearch ftSearch = searchImpls.get(nextQueryItr);
+         
+         final List<FulltextSearchQuery> batch = 
+            new ArrayList<FulltextSearchQuery>(batchSize);
+         while (nextQueryItr < queries.size() && batch.size() < batchSize
+               && searchImpls.get(nextQueryItr) == ftSearch) {
+            batch.add(queries.get(nextQueryItr++));
+         }
+         
+         final ExecutorService executor = 
+            serviceCallParams.getTripleStore().getExecutorService();
+         
+         if (ftSearch instanceof IAsyncFulltextSearch) {
 
-         return true;
+            pending.addAll(((IAsyncFulltextSearch) ftSearch).submit(
+               batch, serviceCallParams.getClientConnectionManager(), executor));
+            
+         } else {
+         
+            /*
+             * Implementations not supporting batches are invoked through
+             * the executor, one query at a time.
+             */
+            for (final FulltextSearchQuery sq : batch) {
+               
+               final FutureTask<FulltextSearchHiterator<IFulltextSearchHit>> ft =
+                  new FutureTask<FulltextSearchHiterator<IFulltextSearchHit>>(
+                     new Callable<FulltextSearchHiterator<IFulltextSearchHit>>() {
+                        
+                        @Override
+                        public FulltextSearchHiterator<IFulltextSearchHit> call() {
+                           return ftSearch.search(
+                              sq, serviceCallParams.getClientConnectionManager());
+                        }
+                     });
+               
+               executor.execute(ft);
+               pending.add(ft);
+            }
+         }
       }
 
       private IFulltextSearch getDefaultSearchImpl() {
@@ -796,20 +903,42 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
       }
 
       /**
-       * Resolve search class to implementation.
-       * If no suitable one is found, return SolrFulltextSearchImpl
+       * Resolve search class to implementation, reusing the instance
+       * for subsequent binding sets.
+       * 
        * @param className
        * @return
        */
       private IFulltextSearch getSearchClass(String className) {
+         
+          IFulltextSearch ftSearch = searchImplCache.get(className);
+          if (ftSearch == null) {
+             ftSearch = createSearchClass(className);
+             searchImplCache.put(className, ftSearch);
+          }
+          
+          return ftSearch;
+      }
+      
+      /**
+       * Create search class implementation.
+       * If no suitable one is found, return SolrFulltextSearchImpl
+       * @param className
+       * @return
+       */
+      private IFulltextSearch createSearchClass(String className) {
           final Class endpointClass;
 
           if(className == null) {
               return getDefaultSearchImpl();
           }
+          if (className.equals(EmbeddedFulltextSearchImpl.class.getName())) {
+              return new EmbeddedFulltextSearchImpl(
+                    serviceCallParams.getTripleStore());
+          }
           try {
               endpointClass = Class.forName(className);
-              if (!(endpointClass.isInstance(IFulltextSearch.class))) {
+              if (!IFulltextSearch.class.isAssignableFrom(endpointClass)) {
                  if (log.isDebugEnabled()) {
                       log.warn("Endpoint class: " + endpointType +
                            " does not implement IFulltextSearch ->" +
@@ -829,11 +958,73 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
           return getDefaultSearchImpl();
       }
 
+      /**
+       * Resolves the queries for all binding sets up front, such that
+       * invalid queries are rejected before any search is submitted, and
+       * starts submitting the searches.
+       */
       private void init() {
 
+         if (bindingSet != null) {
+            
+            for (IBindingSet bs : bindingSet) {
+               
+               final String query = resolveQuery(bs);
+               final String endpointType = resolveEndpointType(bs);
+               
+               /*
+                * Other implementations may be hooked in based on the
+                * endpoint type magic predicate.
+                */
+               final IFulltextSearch ftSearch = getSearchClass(endpointType);
+               
+               // the embedded implementation does not require an endpoint
+               final String endpoint = resolveEndpoint(bs, 
+                  !(ftSearch instanceof EmbeddedFulltextSearchImpl));
+               final String params = resolveParams(bs);
+               final SearchResultType searchResultType = resolveSearchResultType(bs);
+               final Integer searchTimeout = resolveSearchTimeout(bs);
+               final String searchField = resolveSearchField(bs);
+               final String scoreField = resolveScoreField(bs);
+               final String snippetField = resolveSnippetField(bs);
+
+               queries.add(new FulltextSearchQuery(
+                     query, params, endpoint, searchTimeout, searchField,
+                     scoreField, snippetField, bs, searchResultType));
+               searchImpls.add(ftSearch);
+            }
+         }
+         
+         submitBatches();
          nextDelegate();
 
       }
+      
+      private int resolveBatchSize() {
+         
+         final String batchSizeStr = defaults.getDefaultBatchSize();
+         
+         if (batchSizeStr != null && !batchSizeStr.isEmpty()) {
+            try {
+
+               final int batchSize = Integer.valueOf(batchSizeStr);
+               if (batchSize > 0) {
+                  return batchSize;
+               }
+
+            } catch (NumberFormatException e) {
+
+               // illegal, ignore and proceed
+            }
+            
+            if (log.isInfoEnabled()) {
+               log.info("Illegal batch size: " + batchSizeStr +
+                     " -> will be ignored, using default.");
+            }
+         }
+         
+         return FTS.Options.DEFAULT_BATCH_SIZE; // fallback
+      }
 
       private String resolveQuery(IBindingSet bs) {
 
@@ -941,12 +1132,14 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
               final String endpointName = FTS.FTS_CUSTOM_TYPE + endpointTypeStr;
               final Properties props = getStoreProps(serviceCallParams);
               try {
-                  if (props.contains(endpointName)) {
+                  if (props!=null && props.containsKey(endpointName)) {
                      return props.getProperty(endpointName);
                   }
                   switch(EndpointType.valueOf(endpointTypeStr)) {
                       case SOLR:
                           return SolrFulltextSearchImpl.class.getName();
+                      case EMBEDDED:
+                          return EmbeddedFulltextSearchImpl.class.getName();
                   }
             } catch (Exception e) {
 
@@ -965,8 +1158,11 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
       /**
        * Resolves the endpoint, which is either a constant or a variable to be
        * looked up in the binding set.
+       * 
+       * @param required whether to throw an exception if no endpoint is
+       *        specified (otherwise, null is returned)
        */
-      private String resolveEndpoint(IBindingSet bs) {
+      private String resolveEndpoint(IBindingSet bs, boolean required) {
 
          String endpointStr = resolveAsString(endpoint, bs);
          
@@ -980,6 +1176,10 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
 
             return endpointStr;
 
+         } else if (!required) {
+            
+            return null;
+            
          } else {
 
             throw new FulltextSearchException(
@@ -1096,6 +1296,7 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
       final String defaultSearchField;
       final String defaultScoreField;
       final String defaultSnippetField;
+      final String defaultBatchSize;
 
       public FulltextSearchDefaults(final Properties p) {
          
@@ -1122,6 +1323,9 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
          
          this.defaultSnippetField =
                p.getProperty(FTS.Options.FTS_SNIPPET_FIELD);
+         
+         this.defaultBatchSize =
+               p.getProperty(FTS.Options.FTS_BATCH_SIZE);
       }
       
       
@@ -1156,6 +1360,10 @@ public class FulltextSearchServiceFactory extends AbstractServiceFactoryBase {
       public String getDefaultSnippetField() {
          return defaultSnippetField;
       }
+
+      public String getDefaultBatchSize() {
+         return defaultBatchSize;
+      }
    }
 
    @Override
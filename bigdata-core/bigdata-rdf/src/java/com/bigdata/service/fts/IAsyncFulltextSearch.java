@@ -0,0 +1,67 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.service.fts;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.eclipse.jetty.client.HttpClient;
+
+/**
+ * Extension of {@link IFulltextSearch} for implementations that are able to
+ * process batches of queries asynchronously. Rather than blocking on one
+ * query at a time, all queries of a batch are submitted at once and the
+ * results are collected through {@link Future}s, which allows the caller to
+ * consume the results of earlier queries while later ones are still being
+ * processed by the fulltext service.
+ */
+public interface IAsyncFulltextSearch<A extends IFulltextSearchHit> extends
+      IFulltextSearch<A> {
+
+   /**
+    * Submit a batch of search queries. The method does not wait for the
+    * queries to complete. Errors are reported as the cause of an
+    * {@link java.util.concurrent.ExecutionException} when calling
+    * {@link Future#get()} on the future of the failing query.
+    * 
+    * @param queries
+    *           The queries.
+    * @param client
+    *           The HTTP client to be used for remote requests.
+    * @param executor
+    *           The executor service that may be used for processing the
+    *           queries locally.
+    * 
+    * @return One future per query, in the order of the queries.
+    */
+   public List<Future<FulltextSearchHiterator<A>>> submit(
+         final List<FulltextSearchQuery> queries, HttpClient client,
+         ExecutorService executor);
+
+}
@@ -0,0 +1,238 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ */
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.service.fts.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.eclipse.jetty.client.HttpClient;
+
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.lexicon.ITextIndexer;
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.BDS;
+import com.bigdata.search.Hiterator;
+import com.bigdata.search.IHit;
+import com.bigdata.service.fts.FTS;
+import com.bigdata.service.fts.FulltextSearchException;
+import com.bigdata.service.fts.FulltextSearchHit;
+import com.bigdata.service.fts.FulltextSearchHiterator;
+import com.bigdata.service.fts.IAsyncFulltextSearch;
+
+/**
+ * Embedded, in-process implementation running against the fulltext index of
+ * the triple store (the same index that is used by the {@link BDS} search).
+ * The hits are the labels of the matching literals, the score is the cosine
+ * reported by the index. In the spirit of {@link BDS#SEARCH}, a '*' in the
+ * query string enables prefix matching. The parameter <code>rows</code> (as
+ * known from Solr) may be used to limit the number of hits; all other
+ * parameters, the endpoint, as well as the search, score, and snippet fields
+ * are ignored.
+ * <p>
+ * This implementation does not require an external service and is meant
+ * for testing and benchmarking the fulltext search service.
+ */
+public class EmbeddedFulltextSearchImpl implements
+      IAsyncFulltextSearch<FulltextSearchHit> {
+
+   final private static transient Logger log = Logger
+         .getLogger(EmbeddedFulltextSearchImpl.class);
+
+   private static final String ROWS_PARAM = "rows";
+   
+   private final AbstractTripleStore store;
+   
+   /**
+    * Constructor
+    * 
+    * @param store the triple store whose fulltext index is queried
+    */
+   public EmbeddedFulltextSearchImpl(final AbstractTripleStore store) {
+      
+      this.store = store;
+      
+   }
+   
+   @Override
+   public FulltextSearchHiterator<FulltextSearchHit> search(
+         FulltextSearchQuery query, HttpClient client) {
+
+      if (query != null) {
+
+         try {
+            
+            return new FulltextSearchHiterator<FulltextSearchHit>(
+                  queryIndex(query));
+
+         } catch (FulltextSearchException e) {
+            
+            throw e;
+            
+         } catch (Exception e) {
+
+            throw new FulltextSearchException(
+                  "Error execution fulltext search: " + e);
+         }
+      }
+
+      return new FulltextSearchHiterator<FulltextSearchHit>(
+            new FulltextSearchHit[] {});
+
+   }
+
+   @Override
+   public List<Future<FulltextSearchHiterator<FulltextSearchHit>>> submit(
+         final List<FulltextSearchQuery> queries, final HttpClient client,
+         final ExecutorService executor) {
+
+      final List<Future<FulltextSearchHiterator<FulltextSearchHit>>> futures =
+         new ArrayList<Future<FulltextSearchHiterator<FulltextSearchHit>>>(
+               queries.size());
+      
+      for (final FulltextSearchQuery query : queries) {
+         
+         final FutureTask<FulltextSearchHiterator<FulltextSearchHit>> ft =
+            new FutureTask<FulltextSearchHiterator<FulltextSearchHit>>(
+               new Callable<FulltextSearchHiterator<FulltextSearchHit>>() {
+                  
+                  @Override
+                  public FulltextSearchHiterator<FulltextSearchHit> call() {
+                     return search(query, client);
+                  }
+               });
+         
+         executor.execute(ft);
+         futures.add(ft);
+      }
+      
+      return futures;
+   }
+   
+   @SuppressWarnings({ "rawtypes", "unchecked" })
+   private FulltextSearchHit[] queryIndex(final FulltextSearchQuery query) {
+
+      final ITextIndexer<IHit> textIndex = (ITextIndexer) 
+            store.getLexiconRelation().getSearchEngine();
+      
+      if (textIndex == null)
+         throw new FulltextSearchException("No free text index?");
+
+      String s = query.getQuery();
+      final boolean prefixMatch;
+      if (s.indexOf('*') >= 0) {
+         prefixMatch = true;
+         s = s.replaceAll("\\*", "");
+      } else {
+         prefixMatch = false;
+      }
+
+      final Integer timeout = query.getSearchTimeout();
+      final Hiterator<IHit> itr = textIndex.search(new FullTextQuery(
+            s,//
+            null,// languageCode
+            prefixMatch,//
+            null,// matchRegex
+            BDS.DEFAULT_MATCH_ALL_TERMS,//
+            BDS.DEFAULT_MATCH_EXACT,//
+            BDS.DEFAULT_MIN_RELEVANCE,//
+            BDS.DEFAULT_MAX_RELEVANCE,//
+            BDS.DEFAULT_MIN_RANK,//
+            resolveMaxRank(query.getParams()),//
+            timeout == null || timeout == FTS.Options.DEFAULT_TIMEOUT ? 
+               BDS.DEFAULT_TIMEOUT : timeout.longValue(),//
+            TimeUnit.MILLISECONDS
+            ));
+      
+      /*
+       * Collect the hits and resolve the literals in a single batch.
+       */
+      final List<IHit> hits = new ArrayList<IHit>();
+      final Collection<IV<?, ?>> ivs = new ArrayList<IV<?, ?>>();
+      while (itr.hasNext()) {
+         final IHit hit = itr.next();
+         hits.add(hit);
+         ivs.add((IV<?, ?>) hit.getDocId());
+      }
+      
+      final Map<IV<?, ?>, BigdataValue> terms = ivs.isEmpty() ?
+            null : store.getLexiconRelation().getTerms(ivs);
+
+      final List<FulltextSearchHit> searchHits =
+            new ArrayList<FulltextSearchHit>(hits.size());
+      for (IHit hit : hits) {
+         
+         final BigdataValue value = terms.get(hit.getDocId());
+         if (value != null) {
+            
+            searchHits.add(new FulltextSearchHit(value.stringValue(),
+                  hit.getCosine(), null /* snippet */,
+                  query.getIncomingBindings(), query.getSearchResultType()));
+            
+         }
+      }
+      
+      return searchHits.toArray(new FulltextSearchHit[searchHits.size()]);
+   }
+   
+   /**
+    * Extracts the maximum rank from the <code>rows</code> parameter, if any.
+    */
+   private int resolveMaxRank(final String searchParams) {
+      
+      if (searchParams!=null && !searchParams.isEmpty()) {
+         
+         for (String param : searchParams.split("&")) {
+            
+            final String[] kv = param.split("=");
+            if (kv.length==2 && ROWS_PARAM.equals(kv[0])) {
+               
+               try {
+                  return Integer.parseInt(kv[1].trim());
+               } catch (NumberFormatException e) {
+                  if (log.isInfoEnabled()) {
+                     log.info("Invalid rows param: '" + param + "'" +
+                           " -> will be ignored...");
+                  }
+               }
+            }
+         }
+      }
+      
+      return BDS.DEFAULT_MAX_RANK;
+   }
+
+}
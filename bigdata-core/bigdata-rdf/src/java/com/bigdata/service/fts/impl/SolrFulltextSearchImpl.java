@@ -26,7 +26,11 @@ package com.bigdata.service.fts.impl;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.log4j.Logger;
 import org.codehaus.jettison.json.JSONArray;
@@ -41,16 +45,18 @@ import com.bigdata.service.fts.FTS;
 import com.bigdata.service.fts.FulltextSearchException;
 import com.bigdata.service.fts.FulltextSearchHit;
 import com.bigdata.service.fts.FulltextSearchHiterator;
-import com.bigdata.service.fts.IFulltextSearch;
+import com.bigdata.service.fts.IAsyncFulltextSearch;
 
 /**
  * Implementation based on the built-in keyword search capabilities for bigdata.
+ * Batches of queries are sent to Solr without blocking, so that the requests
+ * of a batch are processed concurrently by the server.
  * 
  * @author <a href="mailto:ms@metaphacts.com">Michael Schmidt</a>
  * @version $Id$
  */
 public class SolrFulltextSearchImpl implements
-      IFulltextSearch<FulltextSearchHit> {
+      IAsyncFulltextSearch<FulltextSearchHit> {
 
    final private static transient Logger log = Logger
          .getLogger(SolrFulltextSearchImpl.class);
@@ -63,9 +69,12 @@ public class SolrFulltextSearchImpl implements
       if (query != null) {
 
          try {
-            FulltextSearchHit[] hits = queryIndex(query, client);
+            return sendRequest(query, client).get();
 
-            return new FulltextSearchHiterator<FulltextSearchHit>(hits);
+         } catch (ExecutionException e) {
+
+            throw new FulltextSearchException(
+                  "Error execution fulltext search: " + e.getCause());
 
          } catch (Exception e) {
 
@@ -79,11 +88,42 @@ public class SolrFulltextSearchImpl implements
 
    }
 
+   @Override
+   public List<Future<FulltextSearchHiterator<FulltextSearchHit>>> submit(
+         final List<FulltextSearchQuery> queries, HttpClient client,
+         ExecutorService executor) {
+
+      final List<Future<FulltextSearchHiterator<FulltextSearchHit>>> futures =
+         new ArrayList<Future<FulltextSearchHiterator<FulltextSearchHit>>>(
+               queries.size());
+      
+      try {
+         
+         for (FulltextSearchQuery query : queries) {
+            futures.add(sendRequest(query, client));
+         }
+         
+      } catch (RuntimeException e) {
+         
+         for (Future<?> future : futures) {
+            future.cancel(true);
+         }
+         
+         throw e;
+      }
+      
+      return futures;
+   }
    
+   /**
+    * Sends the request for the given query to the Solr endpoint, without
+    * waiting for the response.
+    * 
+    * @return the future for the parsed response
+    */
    @SuppressWarnings("deprecation")
-   private FulltextSearchHit[] queryIndex(
-         FulltextSearchQuery query, HttpClient httpClient)
-         throws Exception {
+   private SolrResponseFuture sendRequest(
+         FulltextSearchQuery query, HttpClient httpClient) {
 
       if (httpClient.isStopped()) {
          throw new FulltextSearchException("The client has been stopped");
@@ -128,27 +168,91 @@ public class SolrFulltextSearchImpl implements
          }
       }
       
-      final Integer queryTimeoutSpecified = query.getSearchTimeout();
-      final Integer queryTimeoutUsed = 
-            queryTimeoutSpecified==null ?
-            FTS.Options.DEFAULT_TIMEOUT : queryTimeoutSpecified;
-      
       request.send(listener);
-      ContentResponse resp = listener.get(queryTimeoutUsed, TimeUnit.MILLISECONDS);
+      
+      return new SolrResponseFuture(query, listener);
 
-      final int statusCode = resp.getStatus();
-      if (statusCode != 200) {
+   }
+   
+   /**
+    * Future for the result of a Solr request, parsing the response once it
+    * is requested. The query's timeout applies to the waiting time, counted
+    * from the moment where the result is requested for the first time.
+    */
+   private class SolrResponseFuture implements
+         Future<FulltextSearchHiterator<FulltextSearchHit>> {
+      
+      private final FulltextSearchQuery query;
+      private final FutureResponseListener listener;
+      
+      public SolrResponseFuture(
+         final FulltextSearchQuery query, final FutureResponseListener listener) {
+         
+         this.query = query;
+         this.listener = listener;
+      }
+
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+         return listener.cancel(mayInterruptIfRunning);
+      }
+
+      @Override
+      public boolean isCancelled() {
+         return listener.isCancelled();
+      }
 
-         throw new FulltextSearchException("Status code != 200 received from "
-               + "external fulltext service: " + statusCode);
+      @Override
+      public boolean isDone() {
+         return listener.isDone();
+      }
+
+      @Override
+      public FulltextSearchHiterator<FulltextSearchHit> get()
+            throws InterruptedException, ExecutionException {
+
+         final Integer queryTimeoutSpecified = query.getSearchTimeout();
+         final Integer queryTimeoutUsed = 
+               queryTimeoutSpecified==null ?
+               FTS.Options.DEFAULT_TIMEOUT : queryTimeoutSpecified;
 
+         try {
+            return get(queryTimeoutUsed, TimeUnit.MILLISECONDS);
+         } catch (TimeoutException e) {
+            throw new ExecutionException(e);
+         }
       }
 
-      final String jsonStr = resp.getContentAsString();
-      final JSONObject json = new JSONObject(jsonStr);
+      @Override
+      public FulltextSearchHiterator<FulltextSearchHit> get(
+            long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+
+         final ContentResponse resp = listener.get(timeout, unit);
 
-      return constructFulltextSearchList(json, query);
+         final int statusCode = resp.getStatus();
+         if (statusCode != 200) {
 
+            throw new ExecutionException(new FulltextSearchException(
+                  "Status code != 200 received from "
+                  + "external fulltext service: " + statusCode));
+
+         }
+
+         try {
+
+            final String jsonStr = resp.getContentAsString();
+            final JSONObject json = new JSONObject(jsonStr);
+
+            return new FulltextSearchHiterator<FulltextSearchHit>(
+                  constructFulltextSearchList(json, query));
+
+         } catch (Exception e) {
+
+            throw new ExecutionException(e);
+
+         }
+      }
    }
 
    /**
@@ -83,6 +83,8 @@ public interface GeoSpatial {
    public static enum GeoFunction {
       IN_CIRCLE("inCircle"),
       IN_RECTANGLE("inRectangle"),
+      IN_POLYGON("inPolygon"),
+      NEAREST("nearest"),
       UNDEFINED("undefined");
       
       GeoFunction(final String name) {
@@ -179,16 +181,24 @@ public interface GeoSpatial {
    final URI CONTEXT = new URIImpl(NAMESPACE + "context");
    
    /**
-    * In case of a {@link GeoFunction#IN_CIRCLE} query only: center point of the bounding circle.
+    * In case of a {@link GeoFunction#IN_CIRCLE} query: center point of the bounding circle.
+    * In case of a {@link GeoFunction#NEAREST} query: the point whose nearest neighbors are searched.
     */
    final URI SPATIAL_CIRCLE_CENTER = new URIImpl(NAMESPACE + "spatialCircleCenter");
    
    /**
-    * In case of a {@link GeoFunction#IN_CIRCLE} query only: radius of the bounding circle,
-    * specified in SPATIAL_UNIT.
+    * In case of a {@link GeoFunction#IN_CIRCLE} query: radius of the bounding circle,
+    * specified in SPATIAL_UNIT. In case of a {@link GeoFunction#NEAREST} query (optional):
+    * the maximum distance of the reported neighbors, specified in SPATIAL_UNIT.
     */   
    final URI SPATIAL_CIRCLE_RADIUS = new URIImpl(NAMESPACE + "spatialCircleRadius");
    
+   /**
+    * In case of a {@link GeoFunction#NEAREST} query only: the number of nearest neighbors
+    * of the {@link #SPATIAL_CIRCLE_CENTER} to be reported.
+    */
+   final URI NUM_NEIGHBORS = new URIImpl(NAMESPACE + "numNeighbors");
+   
    /**
     * In case of a {@link GeoFunction#IN_RECTANGLE} query only: south west border point of the bounding rectangle.
     */
@@ -199,14 +209,21 @@ public interface GeoSpatial {
     */   
    final URI SPATIAL_RECTANGLE_NORTH_EAST = new URIImpl(NAMESPACE + "spatialRectangleNorthEast");
    
+   /**
+    * In case of a {@link GeoFunction#IN_POLYGON} query only: the polygon, given as WKT string
+    * such as "POLYGON((13.0 52.3, 13.8 52.3, 13.8 52.7, 13.0 52.7, 13.0 52.3))" (i.e., using
+    * longitude/latitude order), see {@link GeoSpatialPolygon}.
+    */   
+   final URI SPATIAL_POLYGON = new URIImpl(NAMESPACE + "spatialPolygon");
+   
    /**
     * The spatial unit used for distances specified in the geospatial search request.
     */
    final URI SPATIAL_UNIT = new URIImpl(NAMESPACE + "spatialUnit");
 
    /**
-    * Output variable, supported for "inCircle" query type only. If specified, the variable will, 
-    * for each solution, be bound to its distance towards the geospatial circle center.
+    * Output variable, supported for "inCircle" and "nearest" query types only. If specified, the
+    * variable will, for each solution, be bound to its distance towards the geospatial circle center.
     */
    final URI DISTANCE_VALUE = new URIImpl(NAMESPACE + "distanceValue");
    
@@ -241,6 +258,56 @@ public interface GeoSpatial {
     */
    final URI CUSTOM_FIELDS_UPPER_BOUNDS = new URIImpl(NAMESPACE + "customFieldsUpperBounds");
 
+   /**
+    * Size of the (square) grid cells in degrees latitude/longitude. If specified, the search
+    * is an aggregation: instead of the individual points, one solution is reported per
+    * non-empty grid cell, containing the number of points in the cell (see {@link #COUNT_VALUE})
+    * and, if requested, the minimum and maximum of a field (see {@link #AGGREGATE_FIELD}).
+    * The aggregates are computed from the index keys, without resolving the individual points.
+    * In an aggregation, the search variable is not bound, whereas {@link #LAT_VALUE} and
+    * {@link #LON_VALUE} are bound to the south-western corner of the grid cell. Grid cells
+    * are aligned at latitude and longitude zero.
+    */
+   final URI GRID_CELL_SIZE = new URIImpl(NAMESPACE + "gridCellSize");
+   
+   /**
+    * Length of the time buckets. If specified, the search is an aggregation (see
+    * {@link #GRID_CELL_SIZE}), reporting one solution per non-empty time bucket (and grid
+    * cell, if specified as well). {@link #TIME_VALUE} is bound to the start of the time
+    * bucket. Time buckets are aligned at time zero.
+    */
+   final URI TIME_BUCKET_SIZE = new URIImpl(NAMESPACE + "timeBucketSize");
+   
+   /**
+    * The field whose minimum and maximum is reported per grid cell and/or time bucket
+    * in an aggregation, see {@link #MIN_VALUE} and {@link #MAX_VALUE}: either "time" or
+    * the name of a custom field.
+    */
+   final URI AGGREGATE_FIELD = new URIImpl(NAMESPACE + "aggregateField");
+   
+   /**
+    * Value of {@link #AGGREGATE_FIELD} denoting the time component.
+    */
+   final String AGGREGATE_FIELD_TIME = "time";
+   
+   /**
+    * Output variable for aggregations; if set, this variable is bound to the number of
+    * points in the grid cell and/or time bucket.
+    */
+   final URI COUNT_VALUE = new URIImpl(NAMESPACE + "countValue");
+   
+   /**
+    * Output variable for aggregations; if set, this variable is bound to the minimum
+    * value of the {@link #AGGREGATE_FIELD} in the grid cell and/or time bucket.
+    */
+   final URI MIN_VALUE = new URIImpl(NAMESPACE + "minValue");
+   
+   /**
+    * Output variable for aggregations; if set, this variable is bound to the maximum
+    * value of the {@link #AGGREGATE_FIELD} in the grid cell and/or time bucket.
+    */
+   final URI MAX_VALUE = new URIImpl(NAMESPACE + "maxValue");
+
    /**
     * Output variable; if set, this variable is bound to the locations component of the search result.
     */
@@ -90,6 +90,27 @@ public class GeoSpatialCounters implements ICounterSetAccess {
      */
     protected final CAT geoSpatialServiceCallSubRangeTasks = new CAT();
 
+    /**
+     * The #of zOrder ranges into which search ranges were decomposed.
+     */
+    protected final CAT zOrderRanges = new CAT();
+
+    /**
+     * The #of zOrder ranges which lie fully within the search range, i.e.
+     * which were scanned without range checks.
+     */
+    protected final CAT zOrderExactRanges = new CAT();
+
+    /**
+     * The #of polygon coverings that were taken from the cache.
+     */
+    protected final CAT polygonCoveringCacheHits = new CAT();
+
+    /**
+     * The #of polygon coverings that had to be computed.
+     */
+    protected final CAT polygonCoveringCacheMisses = new CAT();
+
 
     public void registerGeoSpatialSearchRequest() {
        geoSpatialSearchRequests.increment();
@@ -125,6 +146,19 @@ public class GeoSpatialCounters implements ICounterSetAccess {
        geoSpatialServiceCallSubRangeTasks.add(numSubtasks);
     }
     
+    public void registerZOrderRanges(long numRanges, long numExactRanges) {
+       zOrderRanges.add(numRanges);
+       zOrderExactRanges.add(numExactRanges);
+    }
+    
+    public void registerPolygonCoveringCacheHit() {
+       polygonCoveringCacheHits.increment();
+    }
+    
+    public void registerPolygonCoveringCacheMiss() {
+       polygonCoveringCacheMisses.increment();
+    }
+    
     @Override
     public CounterSet getCounters() {
 
@@ -151,6 +185,34 @@ public class GeoSpatialCounters implements ICounterSetAccess {
            }
         });
 
+        root.addCounter("zOrderRanges", new Instrument<Long>() {
+           @Override
+           public void sample() {
+               setValue(zOrderRanges.get());
+           }
+        });
+
+        root.addCounter("zOrderExactRanges", new Instrument<Long>() {
+           @Override
+           public void sample() {
+               setValue(zOrderExactRanges.get());
+           }
+        });
+
+        root.addCounter("polygonCoveringCacheHits", new Instrument<Long>() {
+           @Override
+           public void sample() {
+               setValue(polygonCoveringCacheHits.get());
+           }
+        });
+
+        root.addCounter("polygonCoveringCacheMisses", new Instrument<Long>() {
+           @Override
+           public void sample() {
+               setValue(polygonCoveringCacheMisses.get());
+           }
+        });
+
         root.addCounter("zOrderIndexScannedValues", new Instrument<Long>() {
             @Override
             public void sample() {
@@ -0,0 +1,298 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.service.geospatial;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.Classification;
+
+/**
+ * A polygon as used by the {@link GeoSpatial.GeoFunction#IN_POLYGON} search,
+ * given as a WKT string such as
+ * <code>POLYGON((13.0 52.3, 13.8 52.3, 13.8 52.7, 13.0 52.7, 13.0 52.3))</code>.
+ * Following WKT conventions, coordinates are specified as longitude/latitude
+ * pairs. The first ring is the outer boundary of the polygon, further rings
+ * describe holes. An optional coordinate reference system IRI preceding the
+ * polygon (as in GeoSPARQL WKT literals) is ignored.
+ * <p>
+ * Edges are interpreted as straight lines in the latitude/longitude plane,
+ * and polygons must not cross the date line.
+ */
+public class GeoSpatialPolygon {
+
+   private static final String POLYGON = "POLYGON";
+
+   // the rings, each as array {lat0, lon0, lat1, lon1, ...} with the first point repeated at the end
+   private final List<double[]> rings;
+
+   // the bounding box of the polygon
+   private final double south, west, north, east;
+
+   /**
+    * Constructor for the {@link GeoSpatialPolygon}.
+    *
+    * @param rings the rings of the polygon, each as array {lat0, lon0, lat1, lon1, ...};
+    *        the first ring is the outer boundary, further rings are holes
+    */
+   public GeoSpatialPolygon(final List<double[]> rings) {
+
+      if (rings.isEmpty())
+         throw new IllegalArgumentException("Polygon has no rings");
+
+      double south = Double.POSITIVE_INFINITY, west = Double.POSITIVE_INFINITY;
+      double north = Double.NEGATIVE_INFINITY, east = Double.NEGATIVE_INFINITY;
+
+      this.rings = new ArrayList<double[]>(rings.size());
+      for (double[] ring : rings) {
+
+         if (ring.length%2!=0)
+            throw new IllegalArgumentException("Odd number of coordinates in polygon ring");
+
+         int n = ring.length;
+         if (n>=2 && ring[0]==ring[n-2] && ring[1]==ring[n-1]) {
+            n -= 2; // ring explicitly closed
+         }
+
+         if (n<6)
+            throw new IllegalArgumentException("Polygon ring must have at least three distinct points");
+
+         final double[] closed = new double[n+2];
+         System.arraycopy(ring, 0, closed, 0, n);
+         closed[n] = ring[0];
+         closed[n+1] = ring[1];
+
+         for (int i=0; i<n; i+=2) {
+
+            final double lat = closed[i];
+            final double lon = closed[i+1];
+            if (!(lat>=-90.0 && lat<=90.0 && lon>=-180.0 && lon<=180.0))
+               throw new IllegalArgumentException("Polygon point out of range: " + lat + "#" + lon);
+
+            south = Math.min(south, lat);
+            north = Math.max(north, lat);
+            west = Math.min(west, lon);
+            east = Math.max(east, lon);
+         }
+
+         this.rings.add(closed);
+      }
+
+      this.south = south;
+      this.west = west;
+      this.north = north;
+      this.east = east;
+   }
+
+   /**
+    * Parses a polygon from its WKT representation.
+    *
+    * @param wkt the WKT string
+    *
+    * @return the polygon
+    *
+    * @throws IllegalArgumentException if the string is not a valid WKT polygon
+    */
+   public static GeoSpatialPolygon parseWKT(final String wkt) {
+
+      String s = wkt.trim();
+
+      // skip coordinate reference system, if any
+      if (s.startsWith("<")) {
+
+         final int end = s.indexOf('>');
+         if (end<0)
+            throw new IllegalArgumentException("Invalid WKT polygon: " + wkt);
+
+         s = s.substring(end+1).trim();
+      }
+
+      if (!s.regionMatches(true, 0, POLYGON, 0, POLYGON.length()))
+         throw new IllegalArgumentException("Not a WKT polygon: " + wkt);
+
+      s = s.substring(POLYGON.length()).trim();
+      if (!s.startsWith("(") || !s.endsWith(")"))
+         throw new IllegalArgumentException("Invalid WKT polygon: " + wkt);
+
+      s = s.substring(1, s.length()-1).trim();
+
+      final List<double[]> rings = new ArrayList<double[]>();
+      int pos = 0;
+      while (pos<s.length()) {
+
+         final int open = s.indexOf('(', pos);
+         final int close = s.indexOf(')', pos);
+         if (open<0 || close<open || !s.substring(pos, open).replace(',', ' ').trim().isEmpty())
+            throw new IllegalArgumentException("Invalid WKT polygon: " + wkt);
+
+         final String[] points = s.substring(open+1, close).split(",");
+         final double[] ring = new double[2*points.length];
+         for (int i=0; i<points.length; i++) {
+
+            final String[] coords = points[i].trim().split("\\s+");
+            if (coords.length!=2)
+               throw new IllegalArgumentException("Invalid point in WKT polygon: " + points[i]);
+
+            try {
+               ring[2*i] = Double.parseDouble(coords[1]); // latitude
+               ring[2*i+1] = Double.parseDouble(coords[0]); // longitude
+            } catch (NumberFormatException e) {
+               throw new IllegalArgumentException("Invalid point in WKT polygon: " + points[i]);
+            }
+         }
+
+         rings.add(ring);
+         pos = close+1;
+      }
+
+      return new GeoSpatialPolygon(rings);
+   }
+
+   /**
+    * @return true if the point lies within the polygon (and not in one of
+    *         its holes); the result for points on the boundary is undefined
+    */
+   public boolean contains(final double lat, final double lon) {
+
+      if (lat<south || lat>north || lon<west || lon>east)
+         return false;
+
+      // even-odd rule: count the crossings of a ray pointing east
+      boolean inside = false;
+      for (double[] ring : rings) {
+
+         for (int i=0; i+2<ring.length; i+=2) {
+
+            final double lat1 = ring[i], lon1 = ring[i+1];
+            final double lat2 = ring[i+2], lon2 = ring[i+3];
+
+            if ((lat1>lat)!=(lat2>lat)
+                  && lon<lon1 + (lat-lat1) * (lon2-lon1) / (lat2-lat1)) {
+               inside = !inside;
+            }
+         }
+      }
+
+      return inside;
+   }
+
+   /**
+    * Classifies the closed rectangle with the given borders against the
+    * polygon. Rectangles are reported as {@link Classification#CONTAINED}
+    * (resp. {@link Classification#DISJOINT}) only if all of their points lie
+    * inside (resp. outside) the polygon.
+    */
+   public Classification classify(
+      final double south, final double west, final double north, final double east) {
+
+      if (south>this.north || north<this.south || west>this.east || east<this.west)
+         return Classification.DISJOINT;
+
+      for (double[] ring : rings) {
+         for (int i=0; i+2<ring.length; i+=2) {
+            if (intersects(ring[i], ring[i+1], ring[i+2], ring[i+3], south, west, north, east))
+               return Classification.PARTIAL;
+         }
+      }
+
+      // no edge touches the rectangle, so it is either fully inside or fully outside
+      return contains((south + north) / 2, (west + east) / 2) ?
+         Classification.CONTAINED : Classification.DISJOINT;
+   }
+
+   /**
+    * Returns true if the segment from (lat1, lon1) to (lat2, lon2) intersects
+    * the closed rectangle (Liang-Barsky clipping).
+    */
+   private static boolean intersects(
+      final double lat1, final double lon1, final double lat2, final double lon2,
+      final double south, final double west, final double north, final double east) {
+
+      final double dLon = lon2 - lon1;
+      final double dLat = lat2 - lat1;
+
+      final double[] p = { -dLon, dLon, -dLat, dLat };
+      final double[] q = { lon1 - west, east - lon1, lat1 - south, north - lat1 };
+
+      double t0 = 0.0, t1 = 1.0;
+      for (int i=0; i<4; i++) {
+
+         if (p[i]==0) {
+
+            if (q[i]<0)
+               return false; // parallel to and outside of the border
+
+         } else {
+
+            final double t = q[i] / p[i];
+            if (p[i]<0) {
+               if (t>t1)
+                  return false;
+               t0 = Math.max(t0, t);
+            } else {
+               if (t<t0)
+                  return false;
+               t1 = Math.min(t1, t);
+            }
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * @return the south-western corner of the bounding box as {lat, lon}
+    */
+   public double[] getSouthWest() {
+      return new double[] { south, west };
+   }
+
+   /**
+    * @return the north-eastern corner of the bounding box as {lat, lon}
+    */
+   public double[] getNorthEast() {
+      return new double[] { north, east };
+   }
+
+   @Override
+   public String toString() {
+
+      final StringBuilder sb = new StringBuilder(POLYGON).append('(');
+      for (int r=0; r<rings.size(); r++) {
+
+         final double[] ring = rings.get(r);
+         sb.append(r>0 ? ",(" : "(");
+         for (int i=0; i<ring.length; i+=2) {
+            sb.append(i>0 ? "," : "").append(ring[i+1]).append(' ').append(ring[i]);
+         }
+         sb.append(')');
+      }
+
+      return sb.append(')').toString();
+   }
+
+}
@@ -0,0 +1,243 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.service.geospatial;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bigdata.rdf.internal.gis.CoordinateUtility;
+
+/**
+ * Grows rings outward from a center point, as used by the
+ * {@link GeoSpatial.GeoFunction#NEAREST} search. The i-th ring covers the
+ * latitude/longitude bounding box of the circle with radius
+ * initialRadius*2^i around the center, minus the bounding box of the
+ * previous ring. The area of a ring is returned as a list of rectangles
+ * that do not cross the date line, each of which can be scanned through
+ * the z-order index.
+ * <p>
+ * After having scanned a ring, all points whose distance to the center is
+ * smaller than {@link #getMinDistanceOutsideInMeters()} have been visited,
+ * so a nearest neighbor search can stop as soon as its kth-best distance
+ * does not exceed this value.
+ * <p>
+ * Distances are computed on a sphere, consistently with
+ * {@link CoordinateUtility#distanceInMeters(double, double, double, double)}.
+ */
+public class GeoSpatialSearchRings {
+
+   /**
+    * The length of an arc of one degree, in meters.
+    */
+   public static final double METERS_PER_DEGREE = 60 * 1.1515 * 1609.344;
+
+   // the center point
+   private final double centerLat;
+   private final double centerLon;
+
+   // the radius of the first ring and the maximum radius, in meters
+   private final double initialRadiusInMeters;
+   private final double maxRadiusInMeters;
+
+   // the radius of the current ring, NaN if not yet started
+   private double radiusInMeters = Double.NaN;
+
+   // the bounding box of the current ring, longitudes not normalized
+   private double south, west, north, east;
+
+   // true once the bounding box covers the whole globe
+   private boolean coversGlobe = false;
+
+   /**
+    * Constructor for the {@link GeoSpatialSearchRings}.
+    *
+    * @param centerLat latitude of the center point
+    * @param centerLon longitude of the center point
+    * @param initialRadiusInMeters the radius of the first ring (must be positive)
+    * @param maxRadiusInMeters the maximum radius, {@link Double#POSITIVE_INFINITY}
+    *        if the rings may grow until they cover the whole globe
+    */
+   public GeoSpatialSearchRings(
+      final double centerLat, final double centerLon,
+      final double initialRadiusInMeters, final double maxRadiusInMeters) {
+
+      if (!(initialRadiusInMeters>0) || !(maxRadiusInMeters>=0))
+         throw new IllegalArgumentException();
+
+      if (centerLat<-90.0 || centerLat>90.0 || centerLon<-180.0 || centerLon>180.0)
+         throw new IllegalArgumentException("Center point out of range");
+
+      this.centerLat = centerLat;
+      this.centerLon = centerLon;
+      this.initialRadiusInMeters = Math.min(initialRadiusInMeters, maxRadiusInMeters);
+      this.maxRadiusInMeters = maxRadiusInMeters;
+   }
+
+   /**
+    * @return true if there is another ring, false if the current ring
+    *         already reached the maximum radius or covers the whole globe
+    */
+   public boolean hasNext() {
+
+      return Double.isNaN(radiusInMeters)
+         || (!coversGlobe && radiusInMeters<maxRadiusInMeters);
+   }
+
+   /**
+    * Advances to the next ring.
+    *
+    * @return the rectangles covering the ring, as arrays
+    *         {south, west, north, east} in degrees with west<=east
+    */
+   public List<double[]> next() {
+
+      if (!hasNext())
+         throw new IllegalStateException();
+
+      final boolean first = Double.isNaN(radiusInMeters);
+      final double prevSouth = south, prevWest = west, prevNorth = north, prevEast = east;
+
+      radiusInMeters = first ?
+         initialRadiusInMeters : Math.min(2 * radiusInMeters, maxRadiusInMeters);
+
+      // the angular radius and the extent of the circle in longitude
+      final double d = radiusInMeters / METERS_PER_DEGREE;
+      final double deltaLon;
+      if (d>=180.0 || d>=90.0 - Math.abs(centerLat)) {
+
+         deltaLon = 180.0; // the circle contains a pole
+
+      } else {
+
+         deltaLon = Math.toDegrees(Math.asin(
+            Math.sin(Math.toRadians(d)) / Math.cos(Math.toRadians(centerLat))));
+      }
+
+      south = Math.max(-90.0, centerLat - d);
+      north = Math.min(90.0, centerLat + d);
+      west = centerLon - deltaLon;
+      east = centerLon + deltaLon;
+      coversGlobe = south==-90.0 && north==90.0 && deltaLon==180.0;
+
+      final List<double[]> rectangles = new ArrayList<double[]>();
+      if (first) {
+
+         addNormalized(rectangles, south, west, north, east);
+
+      } else {
+
+         if (south<prevSouth)
+            addNormalized(rectangles, south, west, prevSouth, east);
+
+         if (north>prevNorth)
+            addNormalized(rectangles, prevNorth, west, north, east);
+
+         if (west<prevWest)
+            addNormalized(rectangles, prevSouth, west, prevNorth, prevWest);
+
+         if (east>prevEast)
+            addNormalized(rectangles, prevSouth, prevEast, prevNorth, east);
+      }
+
+      return rectangles;
+   }
+
+   /**
+    * @return the radius of the current ring in meters
+    */
+   public double getRadiusInMeters() {
+      return radiusInMeters;
+   }
+
+   /**
+    * Returns a lower bound for the distance between the center and any
+    * point that has not been covered by the rings so far.
+    *
+    * @return the distance in meters, {@link Double#POSITIVE_INFINITY} if
+    *         the rings cover the whole globe
+    */
+   public double getMinDistanceOutsideInMeters() {
+
+      if (Double.isNaN(radiusInMeters))
+         return 0.0;
+
+      if (coversGlobe)
+         return Double.POSITIVE_INFINITY;
+
+      double minDist = Double.POSITIVE_INFINITY;
+
+      if (north<90.0)
+         minDist = Math.min(minDist, north - centerLat);
+
+      if (south>-90.0)
+         minDist = Math.min(minDist, centerLat - south);
+
+      final double deltaLon = east - centerLon;
+      if (deltaLon<180.0) {
+
+         // the distance to the closest meridian bounding the box
+         minDist = Math.min(minDist, deltaLon>=90.0 ?
+            90.0 - Math.abs(centerLat) :
+            Math.toDegrees(Math.asin(
+               Math.cos(Math.toRadians(centerLat)) * Math.sin(Math.toRadians(deltaLon)))));
+      }
+
+      return minDist * METERS_PER_DEGREE;
+   }
+
+   /**
+    * Adds the given rectangle, splitting it at the date line if required.
+    */
+   private static void addNormalized(
+      final List<double[]> rectangles, final double south,
+      double west, final double north, double east) {
+
+      if (east - west>=360.0) {
+         rectangles.add(new double[] { south, -180.0, north, 180.0 });
+         return;
+      }
+
+      if (west<-180.0) {
+         west += 360.0;
+         east += 360.0;
+      } else if (west>180.0) {
+         west -= 360.0;
+         east -= 360.0;
+      }
+
+      if (east<=180.0) {
+
+         rectangles.add(new double[] { south, west, north, east });
+
+      } else {
+
+         rectangles.add(new double[] { south, west, north, 180.0 });
+         rectangles.add(new double[] { south, -180.0, north, east - 360.0 });
+      }
+   }
+
+}
@@ -87,6 +87,12 @@ public interface IGeoSpatialQuery {
      */
     public Double getSpatialCircleRadius();
 
+    /**
+     * @return the number of nearest neighbors, in case this
+     *          is a {@link GeoFunction#NEAREST} query
+     */
+    public Integer getNumNeighbors();
+
     /**
      * @return the boundary box'es south-west border point.
      */
@@ -97,6 +103,11 @@ public interface IGeoSpatialQuery {
      */
     public PointLatLon getSpatialRectangleNorthEast();
 
+    /**
+     * @return the polygon, in case this is a {@link GeoFunction#IN_POLYGON} query
+     */
+    public GeoSpatialPolygon getSpatialPolygon();
+
     /**
      * @return the spatial unit underlying the query
      */
@@ -169,6 +180,11 @@ public interface IGeoSpatialQuery {
      */
     public IVariable<?> getDistanceVar();
     
+    /**
+     * @return the aggregation to be computed, null if the query reports the individual points
+     */
+    public Aggregation getAggregation();
+    
     /**
      * @return the incoming bindings to join with
      */
@@ -232,6 +248,64 @@ public interface IGeoSpatialQuery {
         
     }
 
+    /**
+     * Helper class describing an aggregation over grid cells and/or time buckets,
+     * see {@link GeoSpatial#GRID_CELL_SIZE} and {@link GeoSpatial#TIME_BUCKET_SIZE}.
+     */
+    public static class Aggregation {
+        private final Double gridCellSize;
+        private final Long timeBucketSize;
+        private final String aggregateField;
+        private final IVariable<?> countVar;
+        private final IVariable<?> minVar;
+        private final IVariable<?> maxVar;
+        
+        public Aggregation(
+            final Double gridCellSize, final Long timeBucketSize, final String aggregateField,
+            final IVariable<?> countVar, final IVariable<?> minVar, final IVariable<?> maxVar) {
+            
+            this.gridCellSize = gridCellSize;
+            this.timeBucketSize = timeBucketSize;
+            this.aggregateField = aggregateField;
+            this.countVar = countVar;
+            this.minVar = minVar;
+            this.maxVar = maxVar;
+        }
+
+        /**
+         * @return the size of the grid cells in degrees, null if not grouping by location
+         */
+        public Double getGridCellSize() {
+            return gridCellSize;
+        }
+
+        /**
+         * @return the length of the time buckets, null if not grouping by time
+         */
+        public Long getTimeBucketSize() {
+            return timeBucketSize;
+        }
+
+        /**
+         * @return the field whose minimum and maximum are computed, may be null
+         */
+        public String getAggregateField() {
+            return aggregateField;
+        }
+
+        public IVariable<?> getCountVar() {
+            return countVar;
+        }
+
+        public IVariable<?> getMinVar() {
+            return minVar;
+        }
+
+        public IVariable<?> getMaxVar() {
+            return maxVar;
+        }
+    }
+
     public static class LowerAndUpperValue {
         final public Object lowerValue;
         final public Object upperValue;
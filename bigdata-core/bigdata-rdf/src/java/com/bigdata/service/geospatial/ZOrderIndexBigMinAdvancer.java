@@ -27,6 +27,7 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.service.geospatial;
 
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import org.apache.log4j.Logger;
@@ -40,7 +41,6 @@ import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.internal.IVUtility;
 import com.bigdata.rdf.internal.impl.extensions.GeoSpatialLiteralExtension;
 import com.bigdata.rdf.internal.impl.literal.LiteralExtensionIV;
-import com.bigdata.rdf.model.BigdataLiteral;
 import com.bigdata.rdf.model.BigdataValue;
 import com.bigdata.rdf.spo.SPO;
 
@@ -48,6 +48,12 @@ import com.bigdata.rdf.spo.SPO;
  * Advances the cursor to the next zOrderKey that is greater or equal than the
  * first point in the next region. Note that this next key is not necessarily a
  * hit (but, depending on the data) this might be a miss again.
+ * <p>
+ * All keys visited by the advancer share the components preceding the zOrder
+ * literal (these are bound in the key range being scanned), so the offset of
+ * the zOrder string within the key is determined once from the first visited
+ * key. Subsequent keys are range checked by copying the zOrder string into a
+ * reusable buffer, without decoding the {@link IV}s of the key.
  * 
  * @author <a href="mailto:thompsonbry@users.sourceforge.net">Bryan Thompson</a>
  */
@@ -78,6 +84,15 @@ public class ZOrderIndexBigMinAdvancer extends Advancer<SPO> {
    private final GeoSpatialCounters geoSpatialCounters;
    
    private transient IKeyBuilder keyBuilder;
+   
+   // length of the key prefix preceding the zOrder literal
+   private transient int prefixLength;
+   
+   // offset of the (variable length) zOrder integer within the key
+   private transient int zOrderOffset;
+   
+   // reusable buffer for the dividing record (lazily initialized)
+   private transient byte[] dividingRecord;
 
    public ZOrderIndexBigMinAdvancer(
       final byte[] searchMinZOrder, /* the minimum search key (top left) */
@@ -123,24 +138,12 @@ public class ZOrderIndexBigMinAdvancer extends Advancer<SPO> {
          
          final byte[] key = curTuple.getKey();
    
-         keyBuilder.reset();
-   
-         // decode components up to (and including) the z-order string
-         final IV[] ivs = IVUtility.decode(key,zOrderComponentPos+1);
-         
-         // encode everything up to (and excluding) the z-order component "as is"
-         for (int i=0; i<ivs.length-1; i++) {
-            IVUtility.encode(keyBuilder, ivs[i]);
+         if (dividingRecord == null) {
+            init(key);
          }
-   
-         // this is the z-order literal
-         @SuppressWarnings("unchecked")
-         final LiteralExtensionIV<BigdataLiteral> zOrderIv = 
-            (LiteralExtensionIV<BigdataLiteral>)ivs[ivs.length-1];
          
          // current record (aka dividing record) as unsigned
-         final byte[] dividingRecord = 
-            litExt.toZOrderByteArray(zOrderIv.getDelegate());
+         copyZOrderString(key);
 
          final boolean inRange = rangeScanUtil.isInSearchRange(dividingRecord);
 
@@ -161,6 +164,10 @@ public class ZOrderIndexBigMinAdvancer extends Advancer<SPO> {
             // calculate bigmin over the z-order component
             final byte[] bigMin = rangeScanUtil.calculateBigMin(dividingRecord);
             
+            // copy the components preceding the z-order component "as is"
+            keyBuilder.reset();
+            keyBuilder.append(key, 0, prefixLength);
+            
             // pad a zero
             final LiteralExtensionIV bigMinIv = litExt.createIVFromZOrderByteArray(bigMin);
             IVUtility.encode(keyBuilder, bigMinIv);
@@ -199,6 +206,54 @@ public class ZOrderIndexBigMinAdvancer extends Advancer<SPO> {
 
    }
    
-
+   /**
+    * Determines the offset of the zOrder string in the keys visited by the
+    * advancer by decoding the components of the first key.
+    */
+   @SuppressWarnings("rawtypes")
+   private void init(final byte[] key) {
+      
+      // decode components up to (and including) the z-order string
+      final IV[] ivs = IVUtility.decode(key,zOrderComponentPos+1);
+      
+      int len = 0;
+      for (int i=0; i<ivs.length-1; i++) {
+         len += ivs[i].byteLength();
+      }
+      
+      // this is the z-order literal
+      final LiteralExtensionIV zOrderIv = (LiteralExtensionIV)ivs[ivs.length-1];
+      
+      prefixLength = len;
+      
+      // skip the flags byte and the datatype of the literal
+      zOrderOffset = len + 1 + zOrderIv.getExtensionIV().byteLength();
+      
+      dividingRecord = new byte[litExt.getNumDimensions() * Long.SIZE / Byte.SIZE];
+   }
    
-}
+   /**
+    * Copies the zOrder string (as unsigned, no leading zero) of the key into
+    * the dividing record buffer. The zOrder string is encoded as an integer,
+    * i.e. by its run length followed by its minimal two's complement bytes.
+    */
+   private void copyZOrderString(final byte[] key) {
+      
+      final int runLength = Math.abs(KeyBuilder.decodeShort(key, zOrderOffset));
+      
+      final int len = dividingRecord.length;
+      
+      if (runLength >= len) {
+         
+         // skip leading zero (sign) byte, if any
+         System.arraycopy(key, zOrderOffset + 2 + runLength - len, dividingRecord, 0, len);
+         
+      } else {
+         
+         Arrays.fill(dividingRecord, 0, len - runLength, (byte) 0);
+         System.arraycopy(key, zOrderOffset + 2, dividingRecord, len - runLength, runLength);
+         
+      }
+   }
+
+}
\ No newline at end of file
@@ -0,0 +1,424 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.service.geospatial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.bigdata.util.BytesUtil;
+
+/**
+ * Decomposes a multi-dimensional search range into a list of non-overlapping
+ * zOrder key ranges that tightly cover the search range. The decomposition
+ * recursively splits the zOrder space along its bits (n consecutive splits
+ * correspond to one level of a quad-tree in the two-dimensional case):
+ * cells that are fully contained in the search range become exact ranges,
+ * cells that do not intersect the search range are dropped, and cells that
+ * partially intersect the search range are split further. Once the cap on
+ * the number of ranges would be exceeded, the remaining partial cells are
+ * emitted as inexact ranges, which need to be scanned using the
+ * {@link ZOrderIndexBigMinAdvancer}.
+ * <p>
+ * Each range can be scanned by an independent cursor, whereas the values in
+ * exact ranges do not need to be range checked at all.
+ * <p>
+ * Optionally, the search range can be further restricted by an
+ * {@link IRegionClassifier}, such as a polygon: cells are then exact only
+ * if they lie fully within both the search range and the region.
+ */
+public class ZOrderRangeDecomposer {
+
+   // Search min (upper left) byte array as z-order string (no leading zero)
+   private final byte[] searchMinZOrder;
+
+   // Search max (lower right) byte array as z-order string (no leading zero)
+   private final byte[] searchMaxZOrder;
+
+   // number of dimensions
+   private final int numDimensions;
+
+   // number of bits in the z-order string
+   private final int numBits;
+
+   // de-interleaved search min and max (one unsigned long per dimension)
+   private final long[] minLanes;
+   private final long[] maxLanes;
+
+   // number of bits per lane
+   private final int[] laneWidths;
+
+   // optional region restricting the search range, may be null
+   private final IRegionClassifier regionClassifier;
+
+   /**
+    * Constructor for the {@link ZOrderRangeDecomposer}.
+    *
+    * @param searchMinZOrder the top-left (minimum) value (no leading zero)
+    * @param searchMaxZOrder the bottom-right (maximum) value (no leading zero)
+    * @param numDimensions the number of dimensions
+    */
+   public ZOrderRangeDecomposer(
+      final byte[] searchMinZOrder, final byte[] searchMaxZOrder, final int numDimensions) {
+
+      this(searchMinZOrder, searchMaxZOrder, numDimensions, null);
+   }
+
+   /**
+    * Constructor for the {@link ZOrderRangeDecomposer}, restricting the search
+    * range to the given region.
+    *
+    * @param searchMinZOrder the top-left (minimum) value (no leading zero)
+    * @param searchMaxZOrder the bottom-right (maximum) value (no leading zero)
+    * @param numDimensions the number of dimensions
+    * @param regionClassifier the classifier for the region, or null
+    */
+   public ZOrderRangeDecomposer(
+      final byte[] searchMinZOrder, final byte[] searchMaxZOrder, final int numDimensions,
+      final IRegionClassifier regionClassifier) {
+
+      if (searchMinZOrder.length!=searchMaxZOrder.length)
+         throw new IllegalArgumentException("Key dimensions differ");
+
+      if (numDimensions<1)
+         throw new IllegalArgumentException();
+
+      this.searchMinZOrder = searchMinZOrder;
+      this.searchMaxZOrder = searchMaxZOrder;
+      this.numDimensions = numDimensions;
+      this.numBits = searchMinZOrder.length * Byte.SIZE;
+      this.regionClassifier = regionClassifier;
+
+      minLanes = ZOrderRangeScanUtil.deinterleave(
+         searchMinZOrder, numDimensions, new long[numDimensions]);
+      maxLanes = ZOrderRangeScanUtil.deinterleave(
+         searchMaxZOrder, numDimensions, new long[numDimensions]);
+
+      laneWidths = new int[numDimensions];
+      for (int i=0; i<numDimensions; i++) {
+         laneWidths[i] = ZOrderRangeScanUtil.laneWidth(numBits, numDimensions, i);
+      }
+
+   }
+
+   /**
+    * Decomposes the search range into at most maxRanges zOrder ranges. The
+    * ranges are returned in zOrder, they do not overlap, and together they
+    * cover all points in the search range. An empty list is returned if the
+    * search range is empty (i.e., if min>max in some dimension).
+    *
+    * @param maxRanges the maximum number of ranges (must be positive)
+    *
+    * @return the list of ranges
+    */
+   public List<ZOrderRange> decompose(final int maxRanges) {
+
+      if (maxRanges<1)
+         throw new IllegalArgumentException();
+
+      final List<ZOrderRange> ranges = new ArrayList<ZOrderRange>();
+
+      // cells which partially intersect the search range at the current depth
+      List<long[]> partial = new ArrayList<long[]>();
+
+      final long[] root = new long[numDimensions];
+      switch (classify(root, 0)) {
+      case CONTAINED:
+         ranges.add(toRange(root, 0, true /* exact */));
+         return ranges;
+      case DISJOINT:
+         return ranges;
+      default:
+         partial.add(root);
+      }
+
+      int depth = 0;
+      while (!partial.isEmpty()) {
+
+         if (depth==numBits || ranges.size() + 2 * partial.size() > maxRanges) {
+
+            // cap reached: emit the remaining cells as inexact ranges
+            for (long[] cell : partial) {
+               ranges.add(toRange(cell, depth, false /* exact */));
+            }
+            break;
+         }
+
+         // split all partial cells on the next bit of the zOrder string
+         final int lane = depth%numDimensions;
+         final long bit = 1L << (laneWidths[lane] - 1 - depth/numDimensions);
+
+         final List<long[]> next = new ArrayList<long[]>(2 * partial.size());
+         for (long[] cell : partial) {
+
+            final long[] upper = cell.clone();
+            upper[lane] |= bit;
+
+            for (long[] child : new long[][] { cell, upper }) {
+
+               switch (classify(child, depth+1)) {
+               case CONTAINED:
+                  ranges.add(toRange(child, depth+1, true /* exact */));
+                  break;
+               case PARTIAL:
+                  next.add(child);
+                  break;
+               default:
+                  break; // disjoint: drop
+               }
+            }
+         }
+
+         partial = next;
+         depth++;
+      }
+
+      return merge(ranges);
+   }
+
+   /**
+    * Sorts the ranges in zOrder and merges adjacent ranges of same exactness.
+    */
+   private List<ZOrderRange> merge(final List<ZOrderRange> ranges) {
+
+      Collections.sort(ranges, new Comparator<ZOrderRange>() {
+         @Override
+         public int compare(final ZOrderRange o1, final ZOrderRange o2) {
+            return BytesUtil.compareBytes(o1.fromZOrder, o2.fromZOrder);
+         }
+      });
+
+      final List<ZOrderRange> merged = new ArrayList<ZOrderRange>(ranges.size());
+      for (ZOrderRange range : ranges) {
+
+         if (!merged.isEmpty()) {
+
+            final ZOrderRange last = merged.get(merged.size()-1);
+            if (last.exact==range.exact && isSuccessor(last.toZOrder, range.fromZOrder)) {
+               merged.set(merged.size()-1,
+                  new ZOrderRange(last.fromZOrder, range.toZOrder, last.exact));
+               continue;
+            }
+         }
+
+         merged.add(range);
+      }
+
+      return merged;
+   }
+
+   /**
+    * Returns true iff b is a+1 (interpreting both as unsigned values).
+    */
+   private static boolean isSuccessor(final byte[] a, final byte[] b) {
+
+      int i = a.length-1;
+
+      // trailing bits: a must be 1...1, b must be 0...0
+      for (; i>=0 && a[i]==(byte)0xff; i--) {
+         if (b[i]!=0)
+            return false;
+      }
+
+      if (i<0 || ((a[i] & 0xff) + 1)!=(b[i] & 0xff))
+         return false;
+
+      for (i--; i>=0; i--) {
+         if (a[i]!=b[i])
+            return false;
+      }
+
+      return true;
+   }
+
+   /**
+    * The classification of a cell against a search range or region.
+    */
+   public static enum Classification {
+      CONTAINED, DISJOINT, PARTIAL;
+   }
+
+   /**
+    * Classifies cells against a region within the search range.
+    */
+   public static interface IRegionClassifier {
+
+      /**
+       * Classifies the cell spanned by the given zOrder strings, which are
+       * obtained by interleaving the minimum resp. maximum value of the cell
+       * in each dimension, clipped against the search range of the
+       * decomposer. A cell may only be classified as
+       * {@link Classification#CONTAINED} if all of its points lie within the
+       * region, and only as {@link Classification#DISJOINT} if none of them
+       * does.
+       *
+       * @param cellMinZOrder the minimum of the cell (no leading zero)
+       * @param cellMaxZOrder the maximum of the cell (no leading zero)
+       *
+       * @return the classification of the cell
+       */
+      public Classification classify(byte[] cellMinZOrder, byte[] cellMaxZOrder);
+   }
+
+   /**
+    * Classifies the cell with the given lane prefixes at the given depth
+    * against the search range and the region, if any.
+    */
+   private Classification classify(final long[] cell, final int depth) {
+
+      boolean contained = true;
+      for (int i=0; i<numDimensions; i++) {
+
+         final long lo = cell[i];
+         final long hi = lo | freeBitsMask(i, depth);
+
+         if (ZOrderRangeScanUtil.compareUnsigned(hi, minLanes[i])<0
+               || ZOrderRangeScanUtil.compareUnsigned(lo, maxLanes[i])>0) {
+            return Classification.DISJOINT;
+         }
+
+         if (ZOrderRangeScanUtil.compareUnsigned(lo, minLanes[i])<0
+               || ZOrderRangeScanUtil.compareUnsigned(hi, maxLanes[i])>0) {
+            contained = false;
+         }
+      }
+
+      if (regionClassifier!=null) {
+
+         // clip the cell against the search range
+         final long[] loLanes = new long[numDimensions];
+         final long[] hiLanes = new long[numDimensions];
+         for (int i=0; i<numDimensions; i++) {
+
+            final long lo = cell[i];
+            final long hi = lo | freeBitsMask(i, depth);
+
+            loLanes[i] = ZOrderRangeScanUtil.compareUnsigned(lo, minLanes[i])<0 ? minLanes[i] : lo;
+            hiLanes[i] = ZOrderRangeScanUtil.compareUnsigned(hi, maxLanes[i])>0 ? maxLanes[i] : hi;
+         }
+
+         final Classification region = regionClassifier.classify(
+            ZOrderRangeScanUtil.interleave(loLanes, numDimensions, new byte[searchMinZOrder.length]),
+            ZOrderRangeScanUtil.interleave(hiLanes, numDimensions, new byte[searchMinZOrder.length]));
+
+         if (region!=Classification.CONTAINED)
+            return region;
+      }
+
+      return contained ? Classification.CONTAINED : Classification.PARTIAL;
+   }
+
+   /**
+    * Returns the mask of the bits of the given lane that are not yet fixed
+    * by a cell at the given depth.
+    */
+   private long freeBitsMask(final int lane, final int depth) {
+
+      final int fixed = depth>lane ? (depth - lane + numDimensions - 1) / numDimensions : 0;
+      final int free = laneWidths[lane] - fixed;
+
+      return free>=Long.SIZE ? -1L : (1L << free) - 1;
+   }
+
+   /**
+    * Converts a cell into a zOrder range. The range of inexact cells is
+    * clipped against the zOrder range of the search.
+    */
+   private ZOrderRange toRange(final long[] cell, final int depth, final boolean exact) {
+
+      final long[] hiLanes = new long[numDimensions];
+      for (int i=0; i<numDimensions; i++) {
+         hiLanes[i] = cell[i] | freeBitsMask(i, depth);
+      }
+
+      byte[] from = ZOrderRangeScanUtil.interleave(
+         cell, numDimensions, new byte[searchMinZOrder.length]);
+      byte[] to = ZOrderRangeScanUtil.interleave(
+         hiLanes, numDimensions, new byte[searchMinZOrder.length]);
+
+      if (!exact) {
+
+         if (BytesUtil.compareBytes(from, searchMinZOrder)<0)
+            from = searchMinZOrder.clone();
+
+         if (BytesUtil.compareBytes(to, searchMaxZOrder)>0)
+            to = searchMaxZOrder.clone();
+      }
+
+      return new ZOrderRange(from, to, exact);
+   }
+
+   /**
+    * A range over the zOrder strings, with inclusive lower and upper bound.
+    */
+   public static class ZOrderRange {
+
+      private final byte[] fromZOrder;
+
+      private final byte[] toZOrder;
+
+      private final boolean exact;
+
+      public ZOrderRange(
+         final byte[] fromZOrder, final byte[] toZOrder, final boolean exact) {
+
+         this.fromZOrder = fromZOrder;
+         this.toZOrder = toZOrder;
+         this.exact = exact;
+      }
+
+      /**
+       * @return the smallest zOrder string in the range (no leading zero)
+       */
+      public byte[] getFromZOrder() {
+         return fromZOrder;
+      }
+
+      /**
+       * @return the largest zOrder string in the range (no leading zero)
+       */
+      public byte[] getToZOrder() {
+         return toZOrder;
+      }
+
+      /**
+       * @return true if all values in the range lie within the search range,
+       *         false if the values need to be range checked
+       */
+      public boolean isExact() {
+         return exact;
+      }
+
+      @Override
+      public String toString() {
+         return "ZOrderRange{from=" + BytesUtil.toString(fromZOrder)
+               + ",to=" + BytesUtil.toString(toZOrder) + ",exact=" + exact + "}";
+      }
+   }
+
+}
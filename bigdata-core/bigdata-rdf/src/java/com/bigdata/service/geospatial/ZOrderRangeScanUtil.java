@@ -35,6 +35,10 @@ import com.bigdata.util.BytesUtil;
  * The latter follows the logics defined in the BIGMIN decision table as provided in
  * http://www.vision-tools.com/h-tropf/multidimensionalrangequery.pdf, page 76.
  * 
+ * Range checks are performed over the de-interleaved components of the
+ * zOrder string, which are held in reusable long[]s (one long per dimension),
+ * so the check does not allocate per visited record.
+ * 
  * This class is not thread-safe.
  * 
  * @author <a href="mailto:ms@metaphacts.com">Michael Schmidt</a>
@@ -54,11 +58,18 @@ public class ZOrderRangeScanUtil {
    // number of dimensions
    private final int numDimensions;
    
+   // de-interleaved search min and max (one unsigned long per dimension)
+   private final long[] searchMinLanes;
+   private final long[] searchMaxLanes;
+
    // reusable byte arrays for calculation.
    final byte[] min;
    final byte[] max;
    byte[] bigmin;
    
+   // reusable array for de-interleaving the dividing record
+   private final long[] lanes;
+   
    
    /**
     * Constructor for the {@link ZOrderRangeScanUtil}.
@@ -78,6 +89,10 @@ public class ZOrderRangeScanUtil {
       min = new byte[zOrderArrayLength];
       max = new byte[zOrderArrayLength];
       bigmin = new byte[zOrderArrayLength];
+      
+      searchMinLanes = deinterleave(searchMinZOrder, numDimensions, new long[numDimensions]);
+      searchMaxLanes = deinterleave(searchMaxZOrder, numDimensions, new long[numDimensions]);
+      lanes = new long[numDimensions];
    }
    
    /**
@@ -86,74 +101,177 @@ public class ZOrderRangeScanUtil {
     */
    public boolean isInSearchRange(final byte[] dividingRecord) {
       
-      final boolean dimShownToBeLargerThanMin[] = new boolean[numDimensions]; 
-      final boolean dimShownToBeSmallerThanMax[] = new boolean[numDimensions]; 
+      deinterleave(dividingRecord, numDimensions, lanes);
       
-      // get first byte in which the values differ
-      int firstDifferingByte=0;
-      for (;firstDifferingByte<dividingRecord.length; firstDifferingByte++) {
-         if (dividingRecord[firstDifferingByte]!=searchMinZOrder[firstDifferingByte] ||
-             dividingRecord[firstDifferingByte]!=searchMaxZOrder[firstDifferingByte]) {
-            break;
+      for (int i=0; i<numDimensions; i++) {
+         
+         if (compareUnsigned(lanes[i], searchMinLanes[i])<0 
+               || compareUnsigned(lanes[i], searchMaxLanes[i])>0) {
+            return false;
          }
       }
-               
-      /**
-       * We now scan sequentially over the bit array, starting with firstDifferingByte.
-       * Thereby, we notice whenever we detect a smaller or greater situation (and
-       * make sure that, for the dimension under investigation, we do not check again
-       * in future). Note that this operation operates on top of the zOrder string, in
-       * which bits are interleaved.
-       * 
-       * The unsatisfiedConstraintsCtr is for performance optimizations. It is initialized
-       * with numDimensions*2, and when its count reaches zero we know that all
-       * dimensions have to be shown larger than min and smaller than max, i.e. that all 
-       * constraints have been satisfied.
-       */
-      int unsatisfiedConstraintsCtr = numDimensions*2; 
-      for (int i=firstDifferingByte*Byte.SIZE; 
-            i<dividingRecord.length*Byte.SIZE && unsatisfiedConstraintsCtr>0; i++) {
-         
-         final int dimension = i%numDimensions;
-         final boolean divRecordBitSet = BytesUtil.getBit(dividingRecord, i);
-
-         if (!dimShownToBeLargerThanMin[dimension]) {
-            
-            final boolean searchMinBitSet = BytesUtil.getBit(searchMinZOrder, i);
+      
+      return true; // all is good
+   }
+   
+   /**
+    * De-interleaves a zOrder string into its components. Bit i of the zOrder
+    * string (counted from the most significant bit) belongs to lane 
+    * i%numDimensions; the bits of each lane are collected in order into the 
+    * least significant bits of the long at the respective index of the lanes
+    * array, such that the lanes can be compared as unsigned values. The zOrder
+    * string may hold at most 64 bits per dimension.
+    * 
+    * @param zOrder the zOrder string (no leading zero)
+    * @param numDimensions the number of dimensions
+    * @param lanes the array receiving the components (is overwritten)
+    * 
+    * @return the lanes array
+    */
+   public static long[] deinterleave(
+      final byte[] zOrder, final int numDimensions, final long[] lanes) {
+      
+      java.util.Arrays.fill(lanes, 0, numDimensions, 0L);
+      
+      if (numDimensions==2 && zOrder.length%(Long.SIZE/Byte.SIZE)==0) {
 
-            if (divRecordBitSet && !searchMinBitSet) {
-               
-               dimShownToBeLargerThanMin[dimension] = true;
-               unsatisfiedConstraintsCtr--;
-               
-            } else if (!divRecordBitSet && searchMinBitSet) {
-               
-               return false; // conflict
-               
-            } // else: skip
+         // fast path: process 64 interleaved bits (32 per lane) at a time
+         for (int off=0; off<zOrder.length; off+=Long.SIZE/Byte.SIZE) {
             
+            final long word = decodeWord(zOrder, off);
+            lanes[0] = (lanes[0] << 32) | compact(word >>> 1);
+            lanes[1] = (lanes[1] << 32) | compact(word);
          }
          
-         if (!dimShownToBeSmallerThanMax[dimension]) {
-            
-            final boolean searchMaxBitSet = BytesUtil.getBit(searchMaxZOrder, i);
+         return lanes;
+      }
+      
+      int lane = 0;
+      for (int i=0; i<zOrder.length; i++) {
+         
+         final int b = zOrder[i] & 0xff;
+         for (int j=Byte.SIZE-1; j>=0; j--) {
             
-            if (!divRecordBitSet && searchMaxBitSet) {
-               
-               dimShownToBeSmallerThanMax[dimension] = true;
-               unsatisfiedConstraintsCtr--;
-               
-            } else if (divRecordBitSet && !searchMaxBitSet) {
-               
-               return false;
-               
-            } // else: skip
+            lanes[lane] = (lanes[lane] << 1) | ((b >>> j) & 1);
+            if (++lane==numDimensions)
+               lane = 0;
+         }
+      }
+      
+      return lanes;
+   }
+   
+   /**
+    * Inverse of {@link #deinterleave(byte[], int, long[])}: interleaves the
+    * components given by the lanes array into the zOrder string.
+    * 
+    * @param lanes the components (one per dimension)
+    * @param numDimensions the number of dimensions
+    * @param zOrder the array receiving the zOrder string (is overwritten)
+    * 
+    * @return the zOrder array
+    */
+   public static byte[] interleave(
+      final long[] lanes, final int numDimensions, final byte[] zOrder) {
+
+      if (numDimensions==2 && zOrder.length%(Long.SIZE/Byte.SIZE)==0) {
+         
+         // fast path: produce 64 interleaved bits (32 per lane) at a time
+         final int numWords = zOrder.length/(Long.SIZE/Byte.SIZE);
+         for (int w=0; w<numWords; w++) {
             
+            final int shift = 32 * (numWords-1-w);
+            final long word = 
+               (spread(lanes[0] >>> shift) << 1) | spread(lanes[1] >>> shift);
+            encodeWord(word, zOrder, w*(Long.SIZE/Byte.SIZE));
          }
          
+         return zOrder;
       }
       
-      return true; // all is good
+      final int numBits = zOrder.length * Byte.SIZE;
+      for (int i=0; i<zOrder.length; i++) {
+         
+         int b = 0;
+         for (int j=0; j<Byte.SIZE; j++) {
+            
+            final int pos = i*Byte.SIZE + j;
+            final int lane = pos%numDimensions;
+            final int shift = laneWidth(numBits, numDimensions, lane) - 1 - pos/numDimensions;
+            b = (b << 1) | (int)((lanes[lane] >>> shift) & 1);
+         }
+         zOrder[i] = (byte)b;
+      }
+      
+      return zOrder;
+   }
+   
+   /**
+    * Returns the number of bits of a zOrder string of the given length
+    * (in bits) that belong to the given lane.
+    */
+   static int laneWidth(final int numBits, final int numDimensions, final int lane) {
+      
+      return (numBits - lane + numDimensions - 1) / numDimensions;
+   }
+   
+   /**
+    * Compares two longs as unsigned values.
+    */
+   static int compareUnsigned(final long a, final long b) {
+      
+      final long x = a ^ Long.MIN_VALUE;
+      final long y = b ^ Long.MIN_VALUE;
+      
+      return x < y ? -1 : (x == y ? 0 : 1);
+   }
+   
+   /**
+    * Collects the bits at even positions of x into the lower 32 bits.
+    */
+   private static long compact(long x) {
+      
+      x &= 0x5555555555555555L;
+      x = (x | (x >>> 1)) & 0x3333333333333333L;
+      x = (x | (x >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+      x = (x | (x >>> 4)) & 0x00FF00FF00FF00FFL;
+      x = (x | (x >>> 8)) & 0x0000FFFF0000FFFFL;
+      x = (x | (x >>> 16)) & 0x00000000FFFFFFFFL;
+      
+      return x;
+   }
+   
+   /**
+    * Spreads the lower 32 bits of x over the even positions of the result.
+    */
+   private static long spread(long x) {
+      
+      x &= 0x00000000FFFFFFFFL;
+      x = (x | (x << 16)) & 0x0000FFFF0000FFFFL;
+      x = (x | (x << 8)) & 0x00FF00FF00FF00FFL;
+      x = (x | (x << 4)) & 0x0F0F0F0F0F0F0F0FL;
+      x = (x | (x << 2)) & 0x3333333333333333L;
+      x = (x | (x << 1)) & 0x5555555555555555L;
+      
+      return x;
+   }
+   
+   private static long decodeWord(final byte[] arr, final int off) {
+      
+      long word = 0;
+      for (int i=0; i<Long.SIZE/Byte.SIZE; i++) {
+         word = (word << Byte.SIZE) | (arr[off+i] & 0xffL);
+      }
+      
+      return word;
+   }
+   
+   private static void encodeWord(long word, final byte[] arr, final int off) {
+      
+      for (int i=Long.SIZE/Byte.SIZE-1; i>=0; i--) {
+         arr[off+i] = (byte)word;
+         word >>>= Byte.SIZE;
+      }
    }
    
    /** 
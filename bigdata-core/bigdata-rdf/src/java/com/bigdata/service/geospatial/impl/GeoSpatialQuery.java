@@ -48,6 +48,7 @@ import com.bigdata.service.geospatial.GeoSpatial.GeoFunction;
 import com.bigdata.service.geospatial.GeoSpatialConfig;
 import com.bigdata.service.geospatial.GeoSpatialDatatypeConfiguration;
 import com.bigdata.service.geospatial.GeoSpatialDatatypeFieldConfiguration;
+import com.bigdata.service.geospatial.GeoSpatialPolygon;
 import com.bigdata.service.geospatial.GeoSpatialSearchException;
 import com.bigdata.service.geospatial.IGeoSpatialQuery;
 import com.bigdata.service.geospatial.impl.GeoSpatialUtility.PointLatLon;
@@ -73,8 +74,10 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
     private final TermNode context;
     private final PointLatLon spatialCircleCenter;
     private final Double spatialCircleRadius;
+    private final Integer numNeighbors;
     private final PointLatLon spatialRectangleSouthWest;
     private final PointLatLon spatialRectangleNorthEast;
+    private final GeoSpatialPolygon spatialPolygon;
     private final UNITS spatialUnit;
     private final Long timeStart;
     private final Long timeEnd;
@@ -89,6 +92,7 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
     private final IVariable<?> customFieldsVar;
     private final IVariable<?> literalVar;
     private final IVariable<?> distanceVar;
+    private final Aggregation aggregation;
     private final IBindingSet incomingBindings;
 
     // derived parameters
@@ -106,9 +110,10 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
             final GeoFunction searchFunction, final URI searchDatatype,
             final IConstant<?> subject, final TermNode predicate,
             final TermNode context, final PointLatLon spatialCircleCenter,
-            final Double spatialCircleRadius,
+            final Double spatialCircleRadius, final Integer numNeighbors,
             final PointLatLon spatialRectangleSouthWest,
             final PointLatLon spatialRectangleNorthEast, 
+            final GeoSpatialPolygon spatialPolygon,
             final UNITS spatialUnit, final Long timeStart, 
             final Long timeEnd, final Long coordSystem,
             final Map<String, LowerAndUpperValue> customFieldsConstraints,
@@ -116,7 +121,8 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
             final IVariable<?> locationAndTimeVar, final IVariable<?> latVar, 
             final IVariable<?> lonVar, final IVariable<?> coordSystemVar, 
             final IVariable<?> customFieldsVar, final IVariable<?> literalVar,
-            final IVariable<?> distanceVar, final IBindingSet incomingBindings) {
+            final IVariable<?> distanceVar, final Aggregation aggregation,
+            final IBindingSet incomingBindings) {
 
         this.geoSpatialConfig = geoSpatialConfig;
         this.searchFunction = searchFunction;
@@ -126,8 +132,10 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
         this.context = context;
         this.spatialCircleCenter = spatialCircleCenter;
         this.spatialCircleRadius = spatialCircleRadius;
+        this.numNeighbors = numNeighbors;
         this.spatialRectangleSouthWest = spatialRectangleSouthWest;
         this.spatialRectangleNorthEast = spatialRectangleNorthEast;
+        this.spatialPolygon = spatialPolygon;
         this.spatialUnit = spatialUnit;
         this.timeStart = timeStart;
         this.timeEnd = timeEnd;
@@ -143,6 +151,7 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
         this.incomingBindings = incomingBindings;
         this.literalVar = literalVar;
         this.distanceVar = distanceVar;
+        this.aggregation = aggregation;
         
         this.datatypeConfig = 
             geoSpatialConfig.getConfigurationForDatatype(searchDatatype);
@@ -170,9 +179,10 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
             final URI searchDatatype,
             final IConstant<?> subject, final TermNode predicate,
             final TermNode context, final PointLatLon spatialCircleCenter,
-            final Double spatialCircleRadius,
+            final Double spatialCircleRadius, final Integer numNeighbors,
             final PointLatLon spatialRectangleSouthWest,
             final PointLatLon spatialRectangleNorthEast, 
+            final GeoSpatialPolygon spatialPolygon,
             final UNITS spatialUnit,
             final Long timeStart, final Long timeEnd,
             final Long coordSystem, 
@@ -186,14 +196,15 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
             final IVariable<?> customFieldsVar,
             final IVariable<?> literalVar,
             final IVariable<?> distanceVar,
+            final Aggregation aggregation,
             final IBindingSet incomingBindings,
             final CoordinateDD lowerBoundingBox,
             final CoordinateDD upperBoundingBox) {
 
         this(geoSpatialConfig, searchFunction, searchDatatype, subject, predicate, context, spatialCircleCenter,
-             spatialCircleRadius, spatialRectangleSouthWest, spatialRectangleNorthEast,  spatialUnit,
+             spatialCircleRadius, numNeighbors, spatialRectangleSouthWest, spatialRectangleNorthEast, spatialPolygon, spatialUnit,
              timeStart, timeEnd, coordSystem, customFieldsConstraints, locationVar, timeVar, locationAndTimeVar, 
-             latVar, lonVar, coordSystemVar, customFieldsVar, literalVar, distanceVar, incomingBindings);
+             latVar, lonVar, coordSystemVar, customFieldsVar, literalVar, distanceVar, aggregation, incomingBindings);
         
         this.lowerBoundingBox = lowerBoundingBox;
         this.upperBoundingBox = upperBoundingBox;
@@ -271,6 +282,11 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
         return spatialCircleRadius;
     }
 
+    @Override
+    public Integer getNumNeighbors() {
+        return numNeighbors;
+    }
+
     @Override
     public PointLatLon getSpatialRectangleSouthWest() {
         return spatialRectangleSouthWest;
@@ -281,6 +297,11 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
         return spatialRectangleNorthEast;
     }
 
+    @Override
+    public GeoSpatialPolygon getSpatialPolygon() {
+        return spatialPolygon;
+    }
+
     @Override
     public UNITS getSpatialUnit() {
         return spatialUnit;
@@ -352,6 +373,11 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
         return distanceVar;
     }
 
+    @Override
+    public Aggregation getAggregation() {
+        return aggregation;
+    }
+
 
     @Override
     public IBindingSet getIncomingBindings() {
@@ -489,10 +515,10 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
            final GeoSpatialQuery query1 = 
                new GeoSpatialQuery(
                    geoSpatialConfig, searchFunction, searchDatatype, subject, predicate, context, 
-                   spatialCircleCenter, spatialCircleRadius, spatialRectangleSouthWest, 
-                   spatialRectangleNorthEast, spatialUnit, timeStart, timeEnd, coordSystem,
+                   spatialCircleCenter, spatialCircleRadius, numNeighbors, spatialRectangleSouthWest, 
+                   spatialRectangleNorthEast, spatialPolygon, spatialUnit, timeStart, timeEnd, coordSystem,
                    customFieldsConstraints, locationVar, timeVar, locationAndTimeVar, latVar, 
-                   lonVar, coordSystemVar, customFieldsVar, literalVar, distanceVar, incomingBindings,
+                   lonVar, coordSystemVar, customFieldsVar, literalVar, distanceVar, aggregation, incomingBindings,
                    new CoordinateDD(lowerBoundingBox.northSouth, Math.nextAfter(-180.0,0) /** -179.999... */), 
                    new CoordinateDD(upperBoundingBox.northSouth, upperBoundingBox.eastWest));
             normalizedQueries.add(query1);
@@ -500,10 +526,10 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
             final GeoSpatialQuery query2 = 
                 new GeoSpatialQuery(
                     geoSpatialConfig, searchFunction, searchDatatype, subject, predicate, context, 
-                    spatialCircleCenter, spatialCircleRadius, spatialRectangleSouthWest, 
-                    spatialRectangleNorthEast, spatialUnit, timeStart, timeEnd, coordSystem,
+                    spatialCircleCenter, spatialCircleRadius, numNeighbors, spatialRectangleSouthWest, 
+                    spatialRectangleNorthEast, spatialPolygon, spatialUnit, timeStart, timeEnd, coordSystem,
                     customFieldsConstraints, locationVar, timeVar, locationAndTimeVar, latVar, 
-                    lonVar, coordSystemVar, customFieldsVar, literalVar, distanceVar, incomingBindings, 
+                    lonVar, coordSystemVar, customFieldsVar, literalVar, distanceVar, aggregation, incomingBindings, 
                     new CoordinateDD(lowerBoundingBox.northSouth, lowerBoundingBox.eastWest), 
                     new CoordinateDD(upperBoundingBox.northSouth, 180.0));
             normalizedQueries.add(query2);
@@ -700,6 +726,84 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
             
             break;
         }
+        case IN_POLYGON:
+        {
+            if (!(datatypeConfig.hasLat() && datatypeConfig.hasLon())) {
+                throw new GeoSpatialSearchException(
+                    "Search function inPolygon used for datatype having no geospatial components.");
+            }
+            
+            if (spatialPolygon==null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_POLYGON + " must be provided for search function inPolygon.");
+            }
+            
+            if (spatialCircleCenter!=null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_CIRCLE_CENTER + " not supported for search function inPolygon.");
+            }
+            
+            if (spatialCircleRadius!=null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_CIRCLE_RADIUS + " not supported for search function inPolygon.");                
+            }
+            
+            if (spatialRectangleSouthWest!=null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_RECTANGLE_SOUTH_WEST + " not supported for search function inPolygon.");                                
+            }
+            
+            if (spatialRectangleNorthEast!=null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_RECTANGLE_NORTH_EAST + " not supported for search function inPolygon.");                                                
+            }
+            
+            if (distanceVar!=null) {
+                throw new GeoSpatialSearchException(
+                        "Predicate " + GeoSpatial.DISTANCE_VALUE + " not supported for search function inPolygon.");                                
+            }
+            
+            break;
+        }
+        case NEAREST:
+        {
+            if (!(datatypeConfig.hasLat() && datatypeConfig.hasLon())) {
+                throw new GeoSpatialSearchException(
+                    "Search function nearest used for datatype having no geospatial components.");
+            }
+                
+            if (spatialCircleCenter==null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_CIRCLE_CENTER + " must be provided for search function nearest.");
+            }
+            
+            if (numNeighbors==null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.NUM_NEIGHBORS + " must be provided for search function nearest.");
+            }
+            
+            if (numNeighbors<=0) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.NUM_NEIGHBORS + " must be a positive number.");
+            }
+            
+            if (spatialCircleRadius!=null && spatialCircleRadius<0) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_CIRCLE_RADIUS + " must not be negative.");
+            }
+            
+            if (spatialRectangleSouthWest!=null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_RECTANGLE_SOUTH_WEST + " not supported for search function nearest.");                                
+            }
+            
+            if (spatialRectangleNorthEast!=null) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.SPATIAL_RECTANGLE_NORTH_EAST + " not supported for search function nearest.");                                                
+            }
+                
+            break;
+        }
         case UNDEFINED:
         {
             if (datatypeConfig.hasLat() || datatypeConfig.hasLon()) {
@@ -737,6 +841,22 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
             throw new GeoSpatialSearchException("Unhandled search function: " + searchFunction);
         }
         
+        // polygon given for a search function other than inPolygon
+        if (spatialPolygon!=null && searchFunction!=GeoFunction.IN_POLYGON) {
+            throw new GeoSpatialSearchException(
+                "Predicate " + GeoSpatial.SPATIAL_POLYGON + " is supported for search function inPolygon only.");
+        }
+        
+        // number of neighbors given for a search function other than nearest
+        if (numNeighbors!=null && searchFunction!=GeoFunction.NEAREST) {
+            throw new GeoSpatialSearchException(
+                "Predicate " + GeoSpatial.NUM_NEIGHBORS + " is supported for search function nearest only.");
+        }
+        
+        if (aggregation!=null) {
+            assertAggregationConsistency();
+        }
+        
         
         // datatype has time but time not given in query
         if (datatypeConfig.hasTime()) {
@@ -777,6 +897,86 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
         return datatypeConfig;
     }
     
+    /**
+     * Checks the consistency of the aggregation with the remaining query parameters.
+     */
+    private void assertAggregationConsistency() {
+        
+        final Double gridCellSize = aggregation.getGridCellSize();
+        final Long timeBucketSize = aggregation.getTimeBucketSize();
+        final String aggregateField = aggregation.getAggregateField();
+        
+        if (gridCellSize==null && timeBucketSize==null) {
+            throw new GeoSpatialSearchException(
+                "Predicates " + GeoSpatial.AGGREGATE_FIELD + ", " + GeoSpatial.COUNT_VALUE + ", " 
+                + GeoSpatial.MIN_VALUE + ", and " + GeoSpatial.MAX_VALUE + " require " 
+                + GeoSpatial.GRID_CELL_SIZE + " or " + GeoSpatial.TIME_BUCKET_SIZE + " to be given.");
+        }
+        
+        if (searchFunction==GeoFunction.NEAREST) {
+            throw new GeoSpatialSearchException(
+                "Aggregation is not supported for search function nearest.");
+        }
+        
+        if (gridCellSize!=null) {
+            
+            if (!(datatypeConfig.hasLat() && datatypeConfig.hasLon())) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.GRID_CELL_SIZE + " used for datatype having no geospatial components.");
+            }
+            
+            if (!(gridCellSize>0)) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.GRID_CELL_SIZE + " must be a positive number.");
+            }
+            
+        } else if (latVar!=null || lonVar!=null) {
+            throw new GeoSpatialSearchException(
+                "Predicates " + GeoSpatial.LAT_VALUE + " and " + GeoSpatial.LON_VALUE 
+                + " require " + GeoSpatial.GRID_CELL_SIZE + " when aggregating.");
+        }
+        
+        if (timeBucketSize!=null) {
+            
+            if (!datatypeConfig.hasTime()) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.TIME_BUCKET_SIZE + " used for datatype having no time component.");
+            }
+            
+            if (timeBucketSize<=0) {
+                throw new GeoSpatialSearchException(
+                    "Predicate " + GeoSpatial.TIME_BUCKET_SIZE + " must be a positive number.");
+            }
+            
+        } else if (timeVar!=null) {
+            throw new GeoSpatialSearchException(
+                "Predicate " + GeoSpatial.TIME_VALUE + " requires " + GeoSpatial.TIME_BUCKET_SIZE + " when aggregating.");
+        }
+        
+        // the individual points are not materialized when aggregating
+        if (locationVar!=null || locationAndTimeVar!=null || literalVar!=null || distanceVar!=null
+            || coordSystemVar!=null || customFieldsVar!=null) {
+            throw new GeoSpatialSearchException(
+                "Predicates " + GeoSpatial.LOCATION_VALUE + ", " + GeoSpatial.LOCATION_AND_TIME_VALUE + ", "
+                + GeoSpatial.LITERAL_VALUE + ", " + GeoSpatial.DISTANCE_VALUE + ", " + GeoSpatial.COORD_SYSTEM_VALUE
+                + ", and " + GeoSpatial.CUSTOM_FIELDS_VALUES + " are not supported when aggregating.");
+        }
+        
+        if (aggregateField!=null) {
+            
+            final boolean isTime = GeoSpatial.AGGREGATE_FIELD_TIME.equals(aggregateField);
+            if (isTime ? !datatypeConfig.hasTime() : !datatypeConfig.hasCustomField(aggregateField)) {
+                throw new GeoSpatialSearchException(
+                    "Aggregate field " + aggregateField + " is neither the time component nor a custom field of the datatype.");
+            }
+            
+        } else if (aggregation.getMinVar()!=null || aggregation.getMaxVar()!=null) {
+            throw new GeoSpatialSearchException(
+                "Predicates " + GeoSpatial.MIN_VALUE + " and " + GeoSpatial.MAX_VALUE 
+                + " require " + GeoSpatial.AGGREGATE_FIELD + " to be given.");
+        }
+    }
+    
     /**
      * Set the query's internal bounding box, if required. The bounding box
      * that we compute does not necessarily represent a valid query, i.e.
@@ -844,6 +1044,26 @@ public class GeoSpatialQuery implements IGeoSpatialQuery {
                 
                 break;
             }
+            case IN_POLYGON:
+            {
+                // the bounding box of the polygon; note that polygons do not cross the date line
+                final double[] southWest = spatialPolygon.getSouthWest();
+                final double[] northEast = spatialPolygon.getNorthEast();
+                
+                lowerBoundingBox = new CoordinateDD(southWest[0], southWest[1]);
+                upperBoundingBox = new CoordinateDD(northEast[0], northEast[1]);
+                
+                break;
+            }
+            case NEAREST:
+            {
+                // the neighbors may be anywhere: the search itself restricts the
+                // scanned area, growing rings around the center point
+                lowerBoundingBox = new CoordinateDD(-90.0, -180.0);
+                upperBoundingBox = new CoordinateDD(90.0, 180.0);
+                
+                break;
+            }
             default:
                 throw new IllegalArgumentException("Search function (geo:search) must be defined.");
                 
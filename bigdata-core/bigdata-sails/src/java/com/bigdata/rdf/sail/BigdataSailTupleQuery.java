@@ -8,6 +8,8 @@ import org.openrdf.query.TupleQueryResult;
 import org.openrdf.query.algebra.evaluation.QueryBindingSet;
 import org.openrdf.repository.sail.SailTupleQuery;
 
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.sparql.ast.ASTContainer;
 import com.bigdata.rdf.sparql.ast.BindingsClause;
 import com.bigdata.rdf.sparql.ast.DatasetNode;
@@ -16,6 +18,8 @@ import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.eval.ASTEvalHelper;
 import com.bigdata.rdf.store.AbstractTripleStore;
 
+import cutthecrap.utils.striterators.ICloseableIterator;
+
 public class BigdataSailTupleQuery extends SailTupleQuery 
         implements BigdataSailQuery {
 
@@ -84,6 +88,30 @@ public class BigdataSailTupleQuery extends SailTupleQuery
 
     }
     
+    /**
+     * Evaluate the query for a bigdata aware consumer. Inline {@link IV}s in
+     * the solutions are not materialized. The projected variables may be
+     * obtained from the optimized AST once this method returns.
+     * 
+     * @see ASTEvalHelper#evaluateTupleQueryWithInlineIVs(AbstractTripleStore,
+     *      ASTContainer, QueryBindingSet, Dataset)
+     */
+    public ICloseableIterator<IBindingSet[]> evaluateWithInlineIVs()
+            throws QueryEvaluationException {
+
+        final QueryRoot originalQuery = astContainer.getOriginalAST();
+
+        if (getMaxQueryTime() > 0)
+            originalQuery.setTimeout(TimeUnit.SECONDS
+                    .toMillis(getMaxQueryTime()));
+
+        originalQuery.setIncludeInferred(getIncludeInferred());
+
+        return ASTEvalHelper.evaluateTupleQueryWithInlineIVs(getTripleStore(),
+                astContainer, new QueryBindingSet(getBindings()), getDataset());
+
+    }
+
     public QueryRoot optimize() throws QueryEvaluationException {
 
         return optimize((BindingsClause) null);
@@ -363,6 +363,9 @@ public class Bigdata2ASTSPARQLParser implements QueryParser {
             // Set the query string on the AST.
             ast.setQueryString(queryStr);
 
+            // Set the base URI on the AST.
+            ast.setBaseURI(baseURI);
+
             // Set the parse tree on the AST.
             ast.setParseTree(qc);
 
@@ -76,6 +76,8 @@ import org.openrdf.rio.RDFWriter;
 import org.openrdf.rio.RDFWriterRegistry;
 
 import com.bigdata.BigdataStatics;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IVariable;
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
 import com.bigdata.bop.fed.QueryEngineFactory;
@@ -87,8 +89,10 @@ import com.bigdata.journal.ITransactionService;
 import com.bigdata.journal.ITx;
 import com.bigdata.journal.Journal;
 import com.bigdata.journal.TimestampUtility;
+import com.bigdata.rdf.ServiceProviderHook;
 import com.bigdata.rdf.changesets.IChangeLog;
 import com.bigdata.rdf.changesets.IChangeRecord;
+import com.bigdata.rdf.rio.columnar.ColumnarResultsWriter;
 import com.bigdata.rdf.sail.BigdataSail.BigdataSailConnection;
 import com.bigdata.rdf.sail.BigdataBaseContext;
 import com.bigdata.rdf.sail.BigdataSail.BigdataSailConnection;
@@ -118,6 +122,8 @@ import com.bigdata.sparse.SparseRowStore;
 import com.bigdata.util.DaemonThreadFactory;
 import com.bigdata.util.concurrent.ThreadPoolExecutorBaseStatisticsTask;
 
+import cutthecrap.utils.striterators.ICloseableIterator;
+
 import info.aduna.xml.XMLWriter;
 
 /**
@@ -1699,6 +1705,49 @@ public class BigdataRDFContext extends BigdataBaseContext {
                 
                 w = new SPARQLResultsXMLWriter(xmlWriter);
                 
+            } else if (ServiceProviderHook.COLUMNAR_RESULTS.hasMIMEType(mimeType)) {
+
+                /*
+                 * The columnar encoding is written directly from the native
+                 * solutions so inline IVs are never materialized.
+                 */
+
+                final ColumnarResultsWriter cw = new ColumnarResultsWriter(os,
+                        cxn.getTripleStore().getLexiconRelation());
+
+                final ICloseableIterator<IBindingSet[]> itr = query
+                        .evaluateWithInlineIVs();
+
+                try {
+
+                    final List<String> names = new LinkedList<String>();
+
+                    for (IVariable<?> var : query.getASTContainer()
+                            .getOptimizedAST().getProjection()
+                            .getProjectionVars()) {
+
+                        names.add(var.getName());
+
+                    }
+
+                    cw.startQueryResult(names);
+
+                    while (itr.hasNext()) {
+
+                        cw.handleSolutions(itr.next());
+
+                    }
+
+                    cw.endQueryResult();
+
+                } finally {
+
+                    itr.close();
+
+                }
+
+                return;
+
             } else {
 
                 // Note: getQueryTask() verifies that format will be non-null.
@@ -127,6 +127,13 @@ abstract public class BigdataRDFServlet extends BigdataServlet {
 	
 	public static final String OUTPUT_FORMAT_XML_SHORT = "xml";
 	
+	/**
+	 * The columnar binary SPARQL result set encoding.
+	 * 
+	 * @see #MIME_SPARQL_RESULTS_COLUMNAR
+	 */
+	public static final String OUTPUT_FORMAT_COLUMNAR = "columnar";
+	
 	
 	
 	/*
@@ -107,7 +107,7 @@ public class ConnegUtil {
 	 * 
 	 * Checks if a query parameter "out" has been passed to set the response
 	 * type. If found, it maps to the requested Accept Header. It currently
-	 * supports json, sparql-results+json, xml, and sparql-results+xml.
+	 * supports json, sparql-results+json, xml, sparql-results+xml and columnar.
 	 * 
 	 * 
 	 * @param req
@@ -134,6 +134,9 @@ public class ConnegUtil {
 			case BigdataRDFServlet.OUTPUT_FORMAT_XML:
 				acceptHeaderValue = BigdataRDFServlet.MIME_SPARQL_RESULTS_XML;
 				break;
+			case BigdataRDFServlet.OUTPUT_FORMAT_COLUMNAR:
+				acceptHeaderValue = BigdataRDFServlet.MIME_SPARQL_RESULTS_COLUMNAR;
+				break;
 			default:
 				acceptHeaderValue = BigdataRDFServlet.MIME_SPARQL_RESULTS_XML;
 				log.warn("Unknown value for QUERY PARAMETER: "
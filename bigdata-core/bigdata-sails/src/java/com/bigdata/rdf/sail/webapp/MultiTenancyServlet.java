@@ -60,6 +60,8 @@ import com.bigdata.rdf.properties.PropertiesParserRegistry;
 import com.bigdata.rdf.sail.BigdataSail;
 import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
 import com.bigdata.rdf.sail.webapp.client.ConnectOptions;
+import com.bigdata.rdf.spo.PredicateStatistics;
+import com.bigdata.rdf.spo.SPORelation;
 import com.bigdata.rdf.store.AbstractTripleStore;
 import com.bigdata.relation.RelationSchema;
 import com.bigdata.service.AbstractFederation;
@@ -185,6 +187,15 @@ public class MultiTenancyServlet extends BigdataRDFServlet {
             
         }
         
+        if (req.getRequestURI().endsWith(ConnectOptions.urlEncode(namespace) + "/statistics")) {
+
+            // REBUILD STATISTICS.
+            doRebuildStatistics(req, resp, namespace);
+
+            return;
+            
+        }
+        
         
 
         /*
@@ -267,6 +278,14 @@ public class MultiTenancyServlet extends BigdataRDFServlet {
 
             return;
             
+        } else if (req.getRequestURI().endsWith("/statistics")) {
+
+            // Show statistics (including their age).
+
+            doShowStatistics(req, resp, getNamespace(req));
+
+            return;
+            
         }
         
         // Pass through to the SPARQL end point REST API.
@@ -844,4 +863,79 @@ public class MultiTenancyServlet extends BigdataRDFServlet {
 		
 	}
 
+	/**
+	 * Report the predicate and characteristic set statistics, including their
+	 * age, so a client can decide whether they should be rebuilt.
+	 * 
+	 * @see SPORelation#getStatistics()
+	 */
+	private void doShowStatistics(HttpServletRequest req,
+			HttpServletResponse resp, String namespace) throws IOException {
+
+		final AbstractTripleStore store = getBigdataRDFContext()
+				.getTripleStore(namespace, getTimestamp(req));
+
+		if (store == null) {
+
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND,
+					"Not found: namespace=" + namespace);
+
+			return;
+
+		}
+
+		final PredicateStatistics stats = store.getSPORelation()
+				.getStatistics();
+
+		resp.setContentType(BigdataServlet.MIME_TEXT_PLAIN);
+
+		final PrintWriter writer = resp.getWriter();
+
+		if (stats == null) {
+
+			writer.append("Statistics not available: namespace=" + namespace);
+
+		} else {
+
+			writer.append("Statistics: " + stats);
+
+		}
+
+		writer.flush();
+
+	}
+
+	/**
+	 * Rebuild the predicate and characteristic set statistics used by the
+	 * static join optimizer. This is the only way to refresh them unless they
+	 * are rebuilt on commit.
+	 * 
+	 * @see AbstractTripleStore.Options#STATISTICS_REBUILD_COMMITS
+	 * @see AbstractTripleStore.Options#STATISTICS_REBUILD_MAX_AGE
+	 * 
+	 * @see SPORelation#rebuildStatistics()
+	 */
+	private void doRebuildStatistics(HttpServletRequest req,
+			HttpServletResponse resp, String namespace) throws IOException {
+
+		PrintWriter writer = resp.getWriter();
+
+		try {
+
+			AbstractTripleStore store = getBigdataRDFContext().getTripleStore(namespace, Tx.UNISOLATED);
+
+			final PredicateStatistics stats = store.getSPORelation().rebuildStatistics();
+
+			writer.append("Statistics rebuild completed: " + stats);
+
+		} catch (UnsupportedOperationException e) {
+
+			writer.append(e.getMessage());
+
+			resp.sendError(HTTP_INTERNALERROR, e.getMessage());
+
+		}
+
+	}
+
 }
@@ -88,6 +88,7 @@ import com.bigdata.rdf.sail.webapp.client.EncodeDecodeValue;
 import com.bigdata.rdf.sparql.ast.ASTBase.Annotations;
 import com.bigdata.rdf.sparql.ast.ASTContainer;
 import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.cache.QueryPlanCache;
 import com.bigdata.rdf.sparql.ast.explainhints.ExplainHints;
 import com.bigdata.rdf.sparql.ast.explainhints.IExplainHint;
 import com.bigdata.rdf.store.AbstractTripleStore;
@@ -737,8 +738,29 @@ public class QueryServlet extends BigdataRDFServlet {
             // Setup the baseURI for this request. 
             final String baseURI = BigdataRDFContext.getBaseURI(req, resp);
 
-            // Parse the query.
-            final ASTContainer astContainer = new Bigdata2ASTSPARQLParser().parseQuery2(queryStr, baseURI);
+            /*
+             * Parse the query (unless it is in the query plan cache).
+             */
+            final QueryPlanCache planCache = QueryPlanCache
+                    .getInstance(QueryEngineFactory.getInstance()
+                            .getQueryController(getIndexManager()));
+
+            ASTContainer astContainer = planCache == null ? null : planCache
+                    .get(namespace, queryStr, baseURI);
+
+            if (astContainer == null) {
+
+                astContainer = new Bigdata2ASTSPARQLParser().parseQuery2(
+                        queryStr, baseURI);
+
+                if (planCache != null) {
+
+                    // Mark the query so it will be entered into the cache.
+                    planCache.prepare(namespace, baseURI, astContainer);
+
+                }
+
+            }
 
 			BigdataSailRepositoryConnection conn = null;
 			try {
@@ -84,6 +84,8 @@ import com.bigdata.rdf.sparql.ast.ASTContainer;
 import com.bigdata.rdf.sparql.ast.QueryHints;
 import com.bigdata.rdf.sparql.ast.QueryRoot;
 import com.bigdata.rdf.sparql.ast.UpdateRoot;
+import com.bigdata.rdf.sparql.ast.cache.QueryPlanCache;
+import com.bigdata.rdf.sparql.ast.cache.SparqlResultCache;
 import com.bigdata.rdf.store.AbstractTripleStore;
 import com.bigdata.util.ClassPathUtil;
 import com.bigdata.util.InnerCause;
@@ -828,6 +830,28 @@ public class StatusServlet extends BigdataRDFServlet {
 
                 }
 
+                final QueryPlanCache planCache = QueryPlanCache
+                        .getExistingInstance(queryEngine);
+
+                if (planCache != null) {
+
+                    // Performance counters for the query plan cache.
+                    counterSet.makePath("queryPlanCache").attach(
+                            planCache.getCounters());
+
+                }
+
+                final SparqlResultCache resultCache = SparqlResultCache
+                        .getExistingInstance(queryEngine);
+
+                if (resultCache != null) {
+
+                    // Performance counters for the SPARQL result cache.
+                    counterSet.makePath("resultCache").attach(
+                            resultCache.getCounters());
+
+                }
+
                 // @SuppressWarnings("rawtypes")
                 // final Iterator<ICounter> itr = counterSet
                 // .getCounters(null/* filter */);
@@ -523,6 +523,12 @@ public class QueryLog {
             sb.append(cdata("sampleType=" + t.getSampleType()));
             sb.append(cdata(", limit=" + t.getLimit()));
             sb.append(cdata(", nedges=" + t.getNEdges()));
+            if (t.getMaxOptimizerMillis() != 0L)
+                sb.append(cdata(", maxOptimizerMillis="
+                        + t.getMaxOptimizerMillis()));
+            if (t.getAdaptiveThreshold() != 0d)
+                sb.append(cdata(", adaptiveThreshold="
+                        + t.getAdaptiveThreshold()));
 //            if (p != null && samples != null) { // Note: breaks table formatting.
 //                // Show the RTO discovered join path.
 //                w.write("<pre>");
@@ -1257,12 +1263,25 @@ public class QueryLog {
                 w.write(cdata("sampleType=" + t.getSampleType()));
                 w.write(cdata(", limit=" + t.getLimit()));
                 w.write(cdata(", nedges=" + t.getNEdges()));
+                if (t.getMaxOptimizerMillis() != 0L)
+                    w.write(cdata(", maxOptimizerMillis="
+                            + t.getMaxOptimizerMillis()));
+                if (t.getAdaptiveThreshold() != 0d)
+                    w.write(cdata(", adaptiveThreshold="
+                            + t.getAdaptiveThreshold()));
                 if (p != null && samples != null) {
                     // Show the RTO discovered join path.
                     w.write("<pre>");
                     w.write(cdata(JGraph.showPath(p, samples)));
                     w.write("</pre>");
                 }
+                final String trace = t.getTrace(q);
+                if (trace != null) {
+                    // Show the RTO decisions and timings.
+                    w.write("<pre>");
+                    w.write(cdata(trace));
+                    w.write("</pre>");
+                }
             }
             if (bop instanceof ProjectionOp) {
                 w.write(cdata(Arrays.toString(((ProjectionOp) bop)
@@ -259,6 +259,23 @@ public class PipelineJoin<E> extends PipelineOp implements
         
         public int DEFAULT_NUM_TASKS_PER_THREAD = 1;
         
+        /**
+         * The maximum number of zOrder key ranges into which a search range is
+         * decomposed. Ranges lying fully inside the search range are scanned
+         * without range checks, the remaining ranges are scanned using BIGMIN
+         * based advancement; each range is scanned by its own task. A value of
+         * 1 scans each search range (or partition thereof, see
+         * {@link #NUM_TASKS_PER_THREAD}) as a single range.
+         * 
+         * Currently only implemented for the geospatial feature.
+         * 
+         * Must be a value >= 1.
+         */
+        public String MAX_ZORDER_RANGES = 
+           (PipelineJoin.class.getName() + ".maxZOrderRanges").intern();
+        
+        public int DEFAULT_MAX_ZORDER_RANGES = 16;
+        
 
 	}
 
@@ -38,8 +38,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
@@ -246,6 +249,60 @@ public class JGraph {
      * The kind of samples that will be taken when we sample a {@link Vertex}.
      */
     private final SampleType sampleType;
+
+    /*
+     * State for progressive optimization.
+     */
+
+    /**
+     * The estimated cardinality of each vertex as of {@link #round0}. The
+     * samples for the vertices which are not the starting vertex of some
+     * join path are discarded once the starting paths have been chosen, but
+     * the estimates are retained to order the vertices when a partial join
+     * path is completed.
+     * 
+     * @see #completePath(QueryEngine, Path, Map)
+     */
+    private final Map<Vertex, Long> vertexCard = new LinkedHashMap<Vertex, Long>();
+
+    /**
+     * The surviving join paths from the last completed round -or-
+     * <code>null</code> until {@link #round0} has been run.
+     */
+    private Path[] paths = null;
+
+    /**
+     * The next round of the search.
+     */
+    private int round = 1;
+
+    /**
+     * The #of paths with a cardinality estimate underflow in the last round.
+     */
+    private int nunderflow = 0;
+
+    /**
+     * <code>true</code> once the search has generated paths which include all
+     * vertices (or proven that there are no solutions).
+     */
+    private boolean done = false;
+
+    /**
+     * The elapsed nanoseconds spent in the search.
+     */
+    private long elapsedNanos = 0L;
+
+    /**
+     * The time at which this instance was created.
+     */
+    private final long beginNanos = System.nanoTime();
+
+    /**
+     * A trace of the decisions and timings of the runtime optimizer.
+     * 
+     * @see #getTrace()
+     */
+    private final StringBuilder trace = new StringBuilder();
     
     public List<Vertex> getVertices() {
         return Collections.unmodifiableList(Arrays.asList(V));
@@ -480,92 +537,280 @@ public class JGraph {
         if (edgeSamples == null)
             throw new IllegalArgumentException();
 
-        // Setup the join graph.
-        Path[] paths = round0(queryEngine, limit, nedges);
+        // Run the search to completion.
+        optimize(queryEngine, edgeSamples, 0L/* maxNanos */);
 
-        /*
-         * The initial paths all have one edge, and hence two vertices. Each
-         * round adds one more vertex to each path. We are done once we have
-         * generated paths which include all vertices.
-         * 
-         * This occurs at round := nvertices - 1
-         * 
-         * Note: There are a few edge cases, such as when sampling can not
-         * find any solutions, even with an increased sampling limit.
-         * Eventually we wind up proving that there are no solutions for the
-         * query.
-         */
+        return getSelectedPath(edgeSamples);
+
+    }
+
+    /**
+     * Run the runtime optimizer until it is done or until the time budget has
+     * been consumed. The search state is retained by this {@link JGraph} so
+     * the optimizer may be resumed by a subsequent invocation. The budget is
+     * only checked between rounds, so a round which is in progress always
+     * runs to completion. {@link #round0(QueryEngine, int, int)} is always
+     * run by the first invocation.
+     * 
+     * @param queryEngine
+     *            The query engine.
+     * @param edgeSamples
+     *            A map that will be populated with the samples associated with
+     *            each non-pruned join path. This map is used to associate join
+     *            path segments (expressed as an ordered array of bopIds) with
+     *            edge sample to avoid redundant effort.
+     * @param maxNanos
+     *            The time budget for this invocation in nanoseconds. When
+     *            ZERO (0L), the search is run to completion.
+     * 
+     * @return <code>true</code> iff the search is done.
+     * 
+     * @throws Exception
+     * 
+     * @see #isDone()
+     * @see #getSelectedPath(Map)
+     * @see #getBestPath(QueryEngine, Map)
+     */
+    public boolean optimize(final QueryEngine queryEngine,
+            final Map<PathIds, EdgeSample> edgeSamples, final long maxNanos)
+            throws Exception {
 
-        final int nvertices = V.length;
+        if (queryEngine == null)
+            throw new IllegalArgumentException();
 
-        int round = 1; // #of rounds.
-        int nunderflow = 0; // #of paths with card. underflow (no solutions).
+        if (edgeSamples == null)
+            throw new IllegalArgumentException();
+
+        if (maxNanos < 0L)
+            throw new IllegalArgumentException();
+
+        if (done)
+            return true;
+
+        final int limit = joinGraph.getLimit();
 
-        while (paths.length > 0 && round < nvertices - 1) {
+        if (limit <= 0)
+            throw new IllegalArgumentException();
+
+        final int nedges = joinGraph.getNEdges();
+        
+        if (nedges <= 0)
+            throw new IllegalArgumentException();
+
+        final long begin = System.nanoTime();
+
+        try {
+
+            if (paths == null) {
+
+                // Setup the join graph.
+                paths = round0(queryEngine, limit, nedges);
+
+                trace("round0: nvertices=" + V.length + ", limit=" + limit
+                        + ", nedges=" + nedges + ", npaths=" + paths.length);
+
+            }
 
             /*
-             * Resample the paths.
-             * 
-             * Note: Since the vertex samples are random, it is possible for the
-             * #of paths with cardinality estimate underflow to jump up and down
-             * due to the sample which is making its way through each path in
-             * each round.
-             * 
-             * Note: The RTO needs an escape hatch here. Otherwise, it is
-             * possible for it to spin in a loop while resampling.
+             * The initial paths all have one edge, and hence two vertices.
+             * Each round adds one more vertex to each path. We are done once
+             * we have generated paths which include all vertices.
              * 
-             * TODO For example, if the sum of the expected IOs for some path(s)
-             * strongly dominates all other paths sharing the same vertices,
-             * then we should prune those paths even if there is a cardinality
-             * estimate underflow in those paths. This will allow us to focus
-             * our efforts on those paths having less IO cost while we seek
-             * cardinality estimates which do not underflow.
+             * This occurs at round := nvertices - 1
              * 
-             * TODO We should be examining the actual sampling limit that is
-             * currently in place on each vertex and for each path. This is
-             * available by inspection of the VertexSamples and EdgeSamples, but
-             * it is not passed back out of the resamplePaths() method as a
-             * side-effect. We should limit how much we are willing to raise the
-             * limit, e.g., by specifying a MAX_LIMIT annotation on the
-             * JoinGraph operator.
+             * Note: There are a few edge cases, such as when sampling can not
+             * find any solutions, even with an increased sampling limit.
+             * Eventually we wind up proving that there are no solutions for
+             * the query.
              */
-            for (int i = 0; i < 3; i++) {
 
-                nunderflow = resamplePaths(queryEngine, limit, round, paths,
-                        edgeSamples);
+            final int nvertices = V.length;
 
-                if (nunderflow == 0) {
+            while (paths.length > 0 && round < nvertices - 1) {
 
-                    // No paths have cardinality estimate underflow.
-                    break;
+                if (maxNanos != 0L
+                        && System.nanoTime() - begin >= maxNanos) {
+
+                    trace("budget: suspended before round=" + round
+                            + ", npaths=" + paths.length);
+
+                    return false;
 
                 }
 
                 /*
-                 * Show information about the paths and the paths that are
-                 * experiencing cardinality underflow.
+                 * Resample the paths.
+                 * 
+                 * Note: Since the vertex samples are random, it is possible
+                 * for the #of paths with cardinality estimate underflow to
+                 * jump up and down due to the sample which is making its way
+                 * through each path in each round.
+                 * 
+                 * Note: The RTO needs an escape hatch here. Otherwise, it is
+                 * possible for it to spin in a loop while resampling.
+                 * 
+                 * TODO For example, if the sum of the expected IOs for some
+                 * path(s) strongly dominates all other paths sharing the same
+                 * vertices, then we should prune those paths even if there is
+                 * a cardinality estimate underflow in those paths. This will
+                 * allow us to focus our efforts on those paths having less IO
+                 * cost while we seek cardinality estimates which do not
+                 * underflow.
+                 * 
+                 * TODO We should be examining the actual sampling limit that
+                 * is currently in place on each vertex and for each path. This
+                 * is available by inspection of the VertexSamples and
+                 * EdgeSamples, but it is not passed back out of the
+                 * resamplePaths() method as a side-effect. We should limit how
+                 * much we are willing to raise the limit, e.g., by specifying
+                 * a MAX_LIMIT annotation on the JoinGraph operator.
                  */
+                for (int i = 0; i < 3; i++) {
 
-                log.warn("Cardinality estimate underflow - resampling: round="
-                        + round + ", npaths=" + paths.length + ", nunderflow="
-                        + nunderflow + ", limit=" + limit + "\n"
-                        + showTable(paths, null/* pruned */, edgeSamples));
+                    nunderflow = resamplePaths(queryEngine, limit, round,
+                            paths, edgeSamples);
 
-            }
-            
-            if (nunderflow > 0) {
+                    if (nunderflow == 0) {
+
+                        // No paths have cardinality estimate underflow.
+                        break;
+
+                    }
+
+                    /*
+                     * Show information about the paths and the paths that are
+                     * experiencing cardinality underflow.
+                     */
+
+                    log.warn("Cardinality estimate underflow - resampling: round="
+                            + round + ", npaths=" + paths.length
+                            + ", nunderflow=" + nunderflow + ", limit="
+                            + limit + "\n"
+                            + showTable(paths, null/* pruned */, edgeSamples));
 
-                log.warn("Continuing: some paths have cardinality underflow!");
+                }
+
+                if (nunderflow > 0) {
+
+                    log.warn("Continuing: some paths have cardinality underflow!");
+
+                }
+
+                /*
+                 * Extend the paths by one vertex.
+                 */
+                final int npathsIn = paths.length;
+
+                paths = expand(queryEngine, limit, round++, paths,
+                        edgeSamples);
+
+                trace("round=" + (round - 1) + ": paths{in=" + npathsIn
+                        + ",out=" + paths.length + "}, nunderflow="
+                        + nunderflow);
 
             }
 
-            /*
-             * Extend the paths by one vertex.
-             */
-            paths = expand(queryEngine, limit, round++, paths, edgeSamples);
+            done = true;
+
+            trace("done: npaths=" + paths.length);
+
+            return true;
+
+        } finally {
+
+            elapsedNanos += System.nanoTime() - begin;
 
         }
 
+    }
+
+    /**
+     * Return <code>true</code> iff the search has been started.
+     * 
+     * @see #optimize(QueryEngine, Map, long)
+     */
+    public boolean isStarted() {
+
+        return paths != null;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the search is done.
+     * 
+     * @see #optimize(QueryEngine, Map, long)
+     */
+    public boolean isDone() {
+
+        return done;
+
+    }
+
+    /**
+     * Return the elapsed time spent in the search in milliseconds.
+     */
+    public long getElapsedMillis() {
+
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+
+    }
+
+    /**
+     * Return the trace of the decisions and timings of the runtime optimizer.
+     * Each line is prefixed by the elapsed time since this {@link JGraph} was
+     * created.
+     */
+    public String getTrace() {
+
+        synchronized (trace) {
+
+            return trace.toString();
+
+        }
+
+    }
+
+    /**
+     * Append a line to the trace.
+     * 
+     * @param msg
+     *            The message.
+     */
+    void trace(final String msg) {
+
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+                - beginNanos);
+
+        synchronized (trace) {
+
+            trace.append("[+" + elapsed + "ms] " + msg + "\n");
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info(msg);
+
+    }
+
+    /**
+     * Return the join path selected by the search.
+     * 
+     * @param edgeSamples
+     *            The edge samples (used for logging).
+     * 
+     * @return The selected join path.
+     * 
+     * @throws IllegalStateException
+     *             if the search is not done.
+     * @throws NoSolutionsException
+     *             If there are no solutions for the join graph in the data.
+     */
+    public Path getSelectedPath(final Map<PathIds, EdgeSample> edgeSamples)
+            throws NoSolutionsException {
+
+        if (!done)
+            throw new IllegalStateException();
+        
         if (paths.length == 0) {
 
             // There are no solutions for the join graph in the data.
@@ -653,6 +898,141 @@ public class JGraph {
 
     }
 
+    /**
+     * Return the best complete join path which is known right now. If the
+     * search is done, this is the {@link #getSelectedPath(Map) selected path}.
+     * Otherwise the partial join path having the least estimated cost is
+     * chosen from the surviving paths and is greedily completed using
+     * {@link #completePath(QueryEngine, Path, Map)}. This allows a plan to be
+     * executed before the search has finished.
+     * 
+     * @param queryEngine
+     *            The query engine.
+     * @param edgeSamples
+     *            The map onto which the samples for the completed path will be
+     *            written. This should not be the map used by the search since
+     *            the completed path segments would collide with the segments
+     *            generated by the search in the next round.
+     * 
+     * @return The best join path.
+     * 
+     * @throws IllegalStateException
+     *             if the search has not been started.
+     * @throws NoSolutionsException
+     *             If there are no solutions for the join graph in the data.
+     */
+    public Path getBestPath(final QueryEngine queryEngine,
+            final Map<PathIds, EdgeSample> edgeSamples) throws Exception {
+
+        if (queryEngine == null)
+            throw new IllegalArgumentException();
+
+        if (edgeSamples == null)
+            throw new IllegalArgumentException();
+
+        if (done)
+            return getSelectedPath(edgeSamples);
+
+        if (paths == null)
+            throw new IllegalStateException();
+
+        if (paths.length == 0)
+            throw new NoSolutionsException();
+
+        // Least cost partial path without cardinality underflow.
+        Path t = null;
+
+        for (Path p : paths) {
+
+            if (p.edgeSample == null || p.edgeSample.isUnderflow())
+                continue;
+
+            if (t == null || p.sumEstCost < t.sumEstCost)
+                t = p;
+
+        }
+
+        if (t == null) {
+
+            // Arbitrary choice if all paths underflow.
+            t = paths[0];
+
+        }
+
+        return completePath(queryEngine, t, edgeSamples);
+
+    }
+
+    /**
+     * Greedily extend a partial join path until it covers all vertices. In
+     * each step, the path is extended by the remaining vertex having the least
+     * estimated cardinality (as of {@link #round0(QueryEngine, int, int)})
+     * among those which share variables with the path (either directly or via
+     * a constraint). If no such vertex exists then the path is extended by an
+     * unconstrained join. Each extension is a single cutoff join, so the
+     * resulting estimates are available for the completed path but the
+     * ordering of the completed suffix has not been explored.
+     * 
+     * @param queryEngine
+     *            The query engine.
+     * @param p
+     *            The partial join path.
+     * @param edgeSamples
+     *            The map onto which the samples for the completed path will be
+     *            written.
+     * 
+     * @return The completed join path.
+     */
+    protected Path completePath(final QueryEngine queryEngine, Path p,
+            final Map<PathIds, EdgeSample> edgeSamples) throws Exception {
+
+        while (p.getVertexCount() < V.length) {
+
+            Vertex best = null;
+            boolean bestConstrained = false;
+            long bestCard = Long.MAX_VALUE;
+
+            for (Vertex v : V) {
+
+                if (p.contains(v))
+                    continue;
+
+                final boolean constrained = PartitionedJoinGroup
+                        .canJoinUsingConstraints(p.getPredicates(), v.pred, C);
+
+                final Long card = vertexCard.get(v);
+
+                final long estCard = card == null ? Long.MAX_VALUE : card
+                        .longValue();
+
+                if (best == null || (constrained && !bestConstrained)
+                        || (constrained == bestConstrained && estCard < bestCard)) {
+
+                    best = v;
+                    bestConstrained = constrained;
+                    bestCard = estCard;
+
+                }
+
+            }
+
+            p = p.addEdge(//
+                    queryEngine, //
+                    joinGraph, //
+                    p.edgeSample.limit,//
+                    best,//
+                    C, //
+                    p.getVertexCount() + 1 == V.length// pathIsComplete
+                    );
+
+            edgeSamples.put(new PathIds(p.getVertexIds()), p.edgeSample);
+
+        }
+
+        return p;
+
+    }
+
     /**
      * Return a permutation vector which may be used to reorder the given
      * {@link IPredicate}[] into the evaluation order selected by the
@@ -819,6 +1199,17 @@ public class JGraph {
 
             final Set<Vertex> initialVertexSet = new LinkedHashSet<Vertex>();
 
+            for (Vertex v : V) {
+
+                if (v.sample != null) {
+
+                    // Retained for completing partial join paths.
+                    vertexCard.put(v, v.sample.estCard);
+
+                }
+
+            }
+
             for (Path x : paths_t0) {
 
                 initialVertexSet.add(x.vertices[0]);
@@ -939,37 +1330,88 @@ public class JGraph {
          * surviving paths to share a join path prefix, so do not re-sample a
          * given path prefix more than once per round.
          * 
-         * FIXME PARALLELIZE: Parallelize the re-sampling for the active paths.
-         * This step is responsible for deepening the samples on the non-pruned
-         * paths. There is a data race that can occur since the [edgeSamples]
-         * map can contain samples for the same sequence of edges in different
-         * paths. This is because two paths can shared a common prefix sequence
-         * of edges, e.g., [2, 4, 6, 7] and [2, 4, 6, 9] share the path prefix
-         * [2, 4, 6]. Therefore both inspection and update of the [edgeSamples]
-         * map MUST be synchronized. This code is single threaded since that
-         * synchronization mechanism has not yet been put into place. The
-         * obvious way to handle this is to use a memoization pattern for the
-         * [ids] key for the [edgeSamples] map. This will ensure that the
-         * threads that need to resample a given edge will coordinate with the
-         * first such thread doing the resampling and the other thread(s)
-         * blocking until the resampled edge is available.
+         * Note: The paths are re-sampled in parallel. Two paths can share a
+         * common prefix sequence of edges, e.g., [2, 4, 6, 7] and [2, 4, 6, 9]
+         * share the path prefix [2, 4, 6]. The re-sampling of each path
+         * segment is therefore memoized on its PathIds for this round. The
+         * first thread to reach a given segment re-samples it and any other
+         * thread which needs that segment blocks until the sample is
+         * available. The limit for each segment is decided up front as the
+         * maximum of the new limits of the paths which use that segment so
+         * the outcome does not depend on which thread gets there first.
          */
         if (log.isDebugEnabled())
             log.debug("Re-sampling in-use path segments.");
 
-        // #of paths with cardinality estimate underflow.
-        int nunderflow = 0;
+        final Map<PathIds, Integer/* limit */> segmentLimits = new LinkedHashMap<PathIds, Integer>();
+
+        for (Path x : a) {
+
+            final int limit = x.getNewLimit(limitIn);
+
+            for (int segmentLength = 2; segmentLength <= x.vertices.length; segmentLength++) {
+
+                final PathIds ids = new PathIds(BOpUtility.getPredIds(x
+                        .getPathSegment(segmentLength)));
+
+                final Integer theLimit = segmentLimits.get(ids);
+
+                if (theLimit == null || theLimit.intValue() < limit) {
+
+                    segmentLimits.put(ids, limit);
+
+                }
+
+            }
+
+        }
+
+        // The memoized re-sampling of each path segment for this round.
+        final ConcurrentHashMap<PathIds, FutureTask<EdgeSample>> memo = new ConcurrentHashMap<PathIds, FutureTask<EdgeSample>>();
+
+        // Note: written on by parallel threads.
+        final Map<PathIds, EdgeSample> samples = Collections
+                .synchronizedMap(edgeSamples);
+
         final List<Callable<Boolean>> tasks = new LinkedList<Callable<Boolean>>();
         for (Path x : a) {
 
-            tasks.add(new ResamplePathTask(queryEngine, x, limitIn, edgeSamples));
+            tasks.add(new ResamplePathTask(queryEngine, x, segmentLimits,
+                    samples, memo));
 
         } // next Path [x].
 
-        // Execute in the caller's thread.
-        for (Callable<Boolean> task : tasks) {
+        final List<Future<Boolean>> futures;
+        if (joinGraph.isParallelSampling()) {
 
-            if (task.call()) {
+            // Re-sample paths in parallel.
+            futures = queryEngine.getIndexManager().getExecutorService()
+                    .invokeAll(tasks);
+
+        } else {
+
+            // Re-sample paths in this thread.
+            futures = new LinkedList<Future<Boolean>>();
+
+            for (Callable<Boolean> task : tasks) {
+
+                final FutureTask<Boolean> ft = new FutureTask<Boolean>(task);
+
+                ft.run();
+
+                futures.add(ft);
+
+            }
+
+        }
+
+        // #of paths with cardinality estimate underflow.
+        int nunderflow = 0;
+
+        // Check future, counting the paths with cardinality underflow.
+        for (Future<Boolean> f : futures) {
+
+            if (f.get()) {
 
                 nunderflow++;
 
@@ -992,29 +1434,31 @@ public class JGraph {
         
         private final QueryEngine queryEngine;
         private final Path x;
-        private final int limitIn;
+        private final Map<PathIds, Integer> segmentLimits;
         private final Map<PathIds, EdgeSample> edgeSamples;
+        private final ConcurrentHashMap<PathIds, FutureTask<EdgeSample>> memo;
         
+        /**
+         * @param segmentLimits
+         *            The sample limit for each path segment in this round.
+         * @param edgeSamples
+         *            A thread-safe view of the cached edge samples.
+         * @param memo
+         *            The memoized re-sampling tasks for this round.
+         */
         public ResamplePathTask(final QueryEngine queryEngine, final Path x,
-                final int limitIn, final Map<PathIds, EdgeSample> edgeSamples) {
+                final Map<PathIds, Integer> segmentLimits,
+                final Map<PathIds, EdgeSample> edgeSamples,
+                final ConcurrentHashMap<PathIds, FutureTask<EdgeSample>> memo) {
             this.queryEngine = queryEngine;
             this.x = x;
-            this.limitIn = limitIn;
+            this.segmentLimits = segmentLimits;
             this.edgeSamples = edgeSamples;
+            this.memo = memo;
         }
         
         @Override
         public Boolean call() throws Exception {    
-            /*
-             * Get the new sample limit for the path.
-             * 
-             * TODO We only need to increase the sample limit starting at the
-             * vertex where we have a cardinality underflow or variability in
-             * the cardinality estimate. This is increasing the limit in each
-             * round of expansion, which means that we are reading more data
-             * than we really need to read.
-             */
-            final int limit = x.getNewLimit(limitIn);
 
             // The cutoff join sample of the one step shorter path segment.
             EdgeSample priorEdgeSample = null;
@@ -1025,102 +1469,49 @@ public class JGraph {
                 final PathIds ids = new PathIds(BOpUtility.getPredIds(x
                         .getPathSegment(segmentLength)));
 
-                // Look for sample for this path in our cache.
-                EdgeSample edgeSample = edgeSamples.get(ids);
-
-                if (edgeSample != null && edgeSample.limit < limit
-                        && !edgeSample.isExact()) {
-                    if (log.isTraceEnabled())
-                        log.trace("Will resample at higher limit: " + ids);
-                    // Time to resample this edge.
-                    edgeSamples.remove(ids);
-                    edgeSample = null;
-                }
-
-                if (priorEdgeSample == null) {
-
-                    /*
-                     * This is the first edge in the path.
-                     * 
-                     * Test our local table of join path segment estimates to
-                     * see if we have already re-sampled that edge. If not, then
-                     * re-sample it now.
-                     */
-
-                    assert segmentLength == 2;
-
-                    if (edgeSample == null) {
-
-                        /*
-                         * Re-sample the 1st edge in the join path, updating the
-                         * sample on the edge as a side-effect. The cutoff
-                         * sample is based on the vertex sample for the minimum
-                         * cardinality vertex.
-                         */
-
-                        edgeSample = AST2BOpRTO.cutoffJoin(//
-                                queryEngine, //
-                                joinGraph, //
-                                limit,//
-                                x.getPathSegment(2),// 1st edge.
-                                C,// constraints
-                                V.length == 2,// pathIsComplete
-                                x.vertices[0].sample// source sample.
-                                );
-
-                        // Cache the sample.
-                        if (edgeSamples.put(ids, edgeSample) != null)
-                            throw new AssertionError();
+                /*
+                 * Get the new sample limit for the path segment.
+                 * 
+                 * TODO We only need to increase the sample limit starting at
+                 * the vertex where we have a cardinality underflow or
+                 * variability in the cardinality estimate. This is increasing
+                 * the limit in each round of expansion, which means that we
+                 * are reading more data than we really need to read.
+                 */
+                final int limit = segmentLimits.get(ids);
 
-                    }
+                /*
+                 * The source sample is the vertex sample for the 1st edge in
+                 * the path. Otherwise it is the prior edge sample -- that is,
+                 * the sample from the path segment without the target vertex,
+                 * which we just updated when we visited the prior edge of the
+                 * path.
+                 */
+                final SampleBase source = priorEdgeSample == null ? x.vertices[0].sample
+                        : priorEdgeSample;
 
-                    // Save sample. It will be used to re-sample the next edge.
-                    priorEdgeSample = edgeSample;
+                final FutureTask<EdgeSample> ft = new FutureTask<EdgeSample>(
+                        new Callable<EdgeSample>() {
+                            @Override
+                            public EdgeSample call() throws Exception {
+                                return resample(ids, limit, source);
+                            }
+                        });
 
-                } else {
+                FutureTask<EdgeSample> memoized = memo.putIfAbsent(ids, ft);
 
-                    /*
-                     * The path segment is at least 3 vertices long.
-                     */
-                    assert ids.length() >= 3;
-
-                    if (edgeSample == null) {
-
-                        /*
-                         * This is some N-step edge in the path, where N is
-                         * greater than ONE (1). The source vertex is the vertex
-                         * which already appears in the prior edges of this join
-                         * path. The target vertex is the next vertex which is
-                         * visited by the join path. The sample passed in is the
-                         * prior edge sample -- that is, the sample from the
-                         * path segment without the target vertex. This is the
-                         * sample that we just updated when we visited the prior
-                         * edge of the path.
-                         */
-
-                        edgeSample = AST2BOpRTO.cutoffJoin(//
-                                queryEngine,//
-                                joinGraph,//
-                                limit,//
-                                x.getPathSegment(ids.length()),//
-                                C, // constraints
-                                V.length == ids.length(), // pathIsComplete
-                                priorEdgeSample//
-                                );
-
-                        if (log.isTraceEnabled())
-                            log.trace("Resampled: " + ids + " : " + edgeSample);
-
-                        if (edgeSamples.put(ids, edgeSample) != null)
-                            throw new AssertionError();
+                if (memoized == null) {
 
-                    }
+                    // This thread will re-sample the segment.
+                    memoized = ft;
 
-                    // Save sample. It will be used to re-sample the next edge.
-                    priorEdgeSample = edgeSample;
+                    ft.run();
 
                 }
 
+                // Save sample. It will be used to re-sample the next edge.
+                priorEdgeSample = memoized.get();
+
             } // next path prefix in Path [x]
 
             if (priorEdgeSample == null)
@@ -1138,6 +1529,48 @@ public class JGraph {
             // Done.
             return underflow;
         }
+
+        /**
+         * Return the cached sample for the path segment unless it must be
+         * re-sampled at a higher limit, in which case the cutoff join is
+         * re-sampled and the cache is updated.
+         */
+        private EdgeSample resample(final PathIds ids, final int limit,
+                final SampleBase source) throws Exception {
+
+            // Look for sample for this path in our cache.
+            EdgeSample edgeSample = edgeSamples.get(ids);
+
+            if (edgeSample != null
+                    && (edgeSample.limit >= limit || edgeSample.isExact())) {
+
+                // Already sampled at the desired limit.
+                return edgeSample;
+
+            }
+
+            if (log.isTraceEnabled())
+                log.trace("Will resample at higher limit: " + ids);
+
+            edgeSample = AST2BOpRTO.cutoffJoin(//
+                    queryEngine, //
+                    joinGraph, //
+                    limit,//
+                    x.getPathSegment(ids.length()),//
+                    C,// constraints
+                    V.length == ids.length(),// pathIsComplete
+                    source// source sample.
+                    );
+
+            if (log.isTraceEnabled())
+                log.trace("Resampled: " + ids + " : " + edgeSample);
+
+            // Cache the sample.
+            edgeSamples.put(ids, edgeSample);
+
+            return edgeSample;
+
+        }
         
     }
     
@@ -27,11 +27,14 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.bop.joinGraph.rto;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import com.bigdata.bop.BOp;
 import com.bigdata.bop.BOpContext;
@@ -47,8 +50,11 @@ import com.bigdata.bop.ap.SampleIndex;
 import com.bigdata.bop.ap.SampleIndex.SampleType;
 import com.bigdata.bop.controller.AbstractSubqueryOp;
 import com.bigdata.bop.engine.AbstractRunningQuery;
+import com.bigdata.bop.engine.BOpStats;
 import com.bigdata.bop.engine.IRunningQuery;
 import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.join.AccessPathJoinAnnotations;
+import com.bigdata.bop.joinGraph.NoSolutionsException;
 import com.bigdata.rdf.sparql.ast.JoinGroupNode;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
 import com.bigdata.rdf.sparql.ast.eval.AST2BOpRTO;
@@ -78,6 +84,18 @@ import cutthecrap.utils.striterators.ICloseableIterator;
  * output sink of the {@link JoinGraph} operator. Once the query plan has been
  * identified by the first invocation, subsequent invocations of this operator
  * simply push more data into the sub-query using the pre-identified query plan.
+ * <p>
+ * When {@link Annotations#MAX_OPTIMIZER_MILLIS} is specified, the first
+ * invocation only runs the search until that budget is consumed and then
+ * executes a greedy completion of the best join path found so far. The search
+ * is resumed by subsequent invocations and, once it is done, the query plan is
+ * replaced iff the selected join path is much cheaper than the interim one
+ * (see {@link Annotations#REPLAN_RATIO}).
+ * <p>
+ * When {@link Annotations#ADAPTIVE_THRESHOLD} is specified, the vertices are
+ * first executed in the given order and the runtime optimizer is only run if
+ * the observed cardinality of some join diverges from its
+ * {@link Annotations#ESTIMATED_CARDINALITIES estimate}.
  * 
  * TODO This approach amounts to bottom-up evaluation of the {@link JGraph}.
  * Thus, the RTO is not using information from the upstream query when it
@@ -179,6 +197,78 @@ public class JoinGraph extends PipelineOp {
          * the selected join path.
          */
         String NT = JoinGraph.class.getName() + ".nt";
+
+        /**
+         * The time budget in milliseconds for the runtime optimizer for each
+         * invocation of the {@link JoinGraph} operator (default
+         * {@value #DEFAULT_MAX_OPTIMIZER_MILLIS}). When ZERO (0L), the runtime
+         * optimizer runs to completion before any solutions are produced.
+         * Otherwise, if the runtime optimizer has not finished when the budget
+         * is consumed, the best join path found so far is completed greedily
+         * and executed immediately. The search is then resumed by each
+         * subsequent invocation of the operator and the query plan may be
+         * replaced between invocations (see {@link #REPLAN_RATIO}).
+         * 
+         * @see JGraph#optimize(QueryEngine, Map, long)
+         */
+        String MAX_OPTIMIZER_MILLIS = JoinGraph.class.getName()
+                + ".maxOptimizerMillis";
+
+        long DEFAULT_MAX_OPTIMIZER_MILLIS = 0L;
+
+        /**
+         * When the runtime optimizer finishes after an interim query plan was
+         * already executing, the interim plan is replaced iff the estimated
+         * cost of the selected join path is less than this ratio times the
+         * estimated cost of the interim join path (default
+         * {@value #DEFAULT_REPLAN_RATIO}). This must be in (0:1].
+         * 
+         * @see #MAX_OPTIMIZER_MILLIS
+         */
+        String REPLAN_RATIO = JoinGraph.class.getName() + ".replanRatio";
+
+        double DEFAULT_REPLAN_RATIO = .5d;
+
+        /**
+         * When <code>true</code>, the join paths are re-sampled in parallel
+         * in each round of the runtime optimizer (default
+         * {@value #DEFAULT_PARALLEL_SAMPLING}). Otherwise they are re-sampled
+         * one after the other by the thread running the optimizer. The join
+         * path selected does not depend on this choice since each path
+         * segment is re-sampled once per round at a limit which is decided
+         * before any segment is sampled.
+         */
+        String PARALLEL_SAMPLING = JoinGraph.class.getName()
+                + ".parallelSampling";
+
+        boolean DEFAULT_PARALLEL_SAMPLING = true;
+
+        /**
+         * When positive, the vertices are executed in the given order (the
+         * order chosen by the static optimizer) rather than running the
+         * runtime optimizer up front (default
+         * {@value #DEFAULT_ADAPTIVE_THRESHOLD}). After each invocation, the
+         * observed cardinality of each join is compared with the
+         * {@link #ESTIMATED_CARDINALITIES estimate}. If the ratio between the
+         * two exceeds this threshold for any join, then the runtime optimizer
+         * is run and its query plan is used for the remaining invocations.
+         * This must be ZERO (0d) or greater than ONE (1d).
+         */
+        String ADAPTIVE_THRESHOLD = JoinGraph.class.getName()
+                + ".adaptiveThreshold";
+
+        double DEFAULT_ADAPTIVE_THRESHOLD = 0d;
+
+        /**
+         * The estimated cardinality of each prefix of the given vertex order,
+         * expressed as a <code>long[]</code> having one element per vertex
+         * (optional). An element is <code>-1L</code> if there is no estimate
+         * for that prefix.
+         * 
+         * @see #ADAPTIVE_THRESHOLD
+         */
+        String ESTIMATED_CARDINALITIES = JoinGraph.class.getName()
+                + ".estimatedCardinalities";
         
 	}
 
@@ -210,6 +300,16 @@ public class JoinGraph extends PipelineOp {
          */
         String QUERY_PLAN = JoinGraph.class.getName() + ".queryPlan";
 
+        /**
+         * The {@link JGraph} for the runtime optimizer (internal). This
+         * carries the state of the search between invocations of the
+         * {@link JoinGraph} operator and the trace of the decisions made by
+         * the runtime optimizer.
+         * 
+         * @see Annotations#MAX_OPTIMIZER_MILLIS
+         */
+        String JGRAPH = JoinGraph.class.getName() + ".jgraph";
+
 	}
 	
     /*
@@ -271,6 +371,55 @@ public class JoinGraph extends PipelineOp {
 	    
 	}
 
+    /**
+     * @see Annotations#MAX_OPTIMIZER_MILLIS
+     */
+    public long getMaxOptimizerMillis() {
+
+        return getProperty(Annotations.MAX_OPTIMIZER_MILLIS,
+                Annotations.DEFAULT_MAX_OPTIMIZER_MILLIS);
+
+    }
+
+    /**
+     * @see Annotations#REPLAN_RATIO
+     */
+    public double getReplanRatio() {
+
+        return getProperty(Annotations.REPLAN_RATIO,
+                Annotations.DEFAULT_REPLAN_RATIO);
+
+    }
+
+    /**
+     * @see Annotations#PARALLEL_SAMPLING
+     */
+    public boolean isParallelSampling() {
+
+        return getProperty(Annotations.PARALLEL_SAMPLING,
+                Annotations.DEFAULT_PARALLEL_SAMPLING);
+
+    }
+
+    /**
+     * @see Annotations#ADAPTIVE_THRESHOLD
+     */
+    public double getAdaptiveThreshold() {
+
+        return getProperty(Annotations.ADAPTIVE_THRESHOLD,
+                Annotations.DEFAULT_ADAPTIVE_THRESHOLD);
+
+    }
+
+    /**
+     * @see Annotations#ESTIMATED_CARDINALITIES
+     */
+    public long[] getEstimatedCardinalities() {
+
+        return (long[]) getProperty(Annotations.ESTIMATED_CARDINALITIES);
+
+    }
+
     /**
      * Return the set of variables that are known to have already been
      * materialized at the point in the overall query plan where the RTO is
@@ -346,6 +495,33 @@ public class JoinGraph extends PipelineOp {
         
     }
 
+    /**
+     * Return the trace of the decisions and timings of the runtime optimizer
+     * -or- <code>null</code> if the runtime optimizer has not been run.
+     * 
+     * @see Attributes#JGRAPH
+     * @see JGraph#getTrace()
+     */
+    public String getTrace(final IRunningQuery q) {
+
+        final JGraph g = getJGraph(q);
+
+        return g == null ? null : g.getTrace();
+
+    }
+
+    private JGraph getJGraph(final IRunningQuery q) {
+
+        return (JGraph) q.getAttributes().get(getId() + "-" + Attributes.JGRAPH);
+
+    }
+
+    private void setJGraph(final IRunningQuery q, final JGraph g) {
+
+        q.getAttributes().put(getId() + "-" + Attributes.JGRAPH, g);
+
+    }
+
     /**
      * Deep copy constructor.
      * 
@@ -391,6 +567,20 @@ public class JoinGraph extends PipelineOp {
         if (getNEdges() <= 0)
             throw new IllegalArgumentException(Annotations.NEDGES);
 
+        if (getMaxOptimizerMillis() < 0L)
+            throw new IllegalArgumentException(Annotations.MAX_OPTIMIZER_MILLIS);
+
+        if (getReplanRatio() <= 0d || getReplanRatio() > 1d)
+            throw new IllegalArgumentException(Annotations.REPLAN_RATIO);
+
+        if (getAdaptiveThreshold() != 0d && !(getAdaptiveThreshold() > 1d))
+            throw new IllegalArgumentException(Annotations.ADAPTIVE_THRESHOLD);
+
+        if (getEstimatedCardinalities() != null
+                && getEstimatedCardinalities().length != vertices.length)
+            throw new IllegalArgumentException(
+                    Annotations.ESTIMATED_CARDINALITIES);
+
         /*
          * TODO Check DONE_SET, NT, JOIN_NODES. These annotations are required
          * for the new code path. We should check for their presence. However,
@@ -445,98 +635,322 @@ public class JoinGraph extends PipelineOp {
 	    @Override
 	    public Void call() throws Exception {
 	        
-            if (getQueryPlan(context.getRunningQuery()) == null) {
-                
-                /*
-                 * Use the RTO to generate a query plan.
-                 * 
-                 * TODO Make sure that the JoinGraph can not be triggered
-                 * concurrently, e.g., that the CONTROLLER attribute prevents
-                 * concurrent evaluation, just like MAX_PARALLEL.
-                 */
-                
-                // final long begin = System.nanoTime();
+            /*
+             * Use the RTO to generate a query plan.
+             * 
+             * Note: When there is a time budget for the RTO, the search is
+             * resumed by each invocation until it is done. Each invocation is
+             * a checkpoint at which the query plan may be replaced since the
+             * solutions for each invocation are flooded into an independent
+             * subquery.
+             * 
+             * TODO Make sure that the JoinGraph can not be triggered
+             * concurrently, e.g., that the CONTROLLER attribute prevents
+             * concurrent evaluation, just like MAX_PARALLEL.
+             */
+            final IRunningQuery q = context.getRunningQuery();
+
+            JGraph g = getJGraph(q);
+
+            if (g == null) {
 
                 // Create the join graph.
-                final JGraph g = new JGraph(JoinGraph.this);
+                g = new JGraph(JoinGraph.this);
+
+                setJGraph(q, g);
 
                 /*
                  * This map is used to associate join path segments (expressed
                  * as an ordered array of bopIds) with edge sample to avoid
                  * redundant effort.
                  */
-                final Map<PathIds, EdgeSample> edgeSamples = new LinkedHashMap<PathIds, EdgeSample>();
+                setSamples(q, new LinkedHashMap<PathIds, EdgeSample>());
+
+            }
+
+            final boolean adaptive = getAdaptiveThreshold() > 0d;
+
+            if (adaptive && !g.isStarted()) {
+
+                if (getQueryPlan(q) == null) {
+
+                    /*
+                     * Start with the given order (chosen by the static
+                     * optimizer). The RTO is only run if the observed
+                     * cardinalities diverge from the estimates.
+                     */
+                    g.trace("plan: static "
+                            + Arrays.toString(BOpUtility
+                                    .getPredIds(getVertices())));
+
+                    setQueryPlan(q, AST2BOpRTO.compileJoinGraph(
+                            q.getQueryEngine(), JoinGraph.this, getVertices()));
+
+                }
+
+            } else if (!g.isDone()) {
+
+                optimize(q, g);
+
+            }
+	        
+            // The query plan.
+            final PipelineOp queryOp = getQueryPlan(q);
+            
+            // Run the query, blocking until it is done.
+            final IRunningQuery subquery = JoinGraph.runSubquery(context,
+                    queryOp);
+
+            if (adaptive && !g.isStarted() && subquery != null) {
+
+                final String diverged = checkCardinalities(g, queryOp,
+                        subquery.getStats());
+
+                if (diverged != null) {
+
+                    g.trace("diverged: " + diverged);
+
+                    try {
+
+                        /*
+                         * Re-plan using the RTO. The new plan is used for the
+                         * remaining invocations.
+                         */
+                        optimize(q, g);
+
+                    } catch (NoSolutionsException ex) {
+
+                        // The samples are not conclusive for the data.
+                        g.trace("keep: static plan (" + ex + ")");
+
+                    }
+
+                }
+
+            }
+
+	        return null;
+
+	    }
+
+        /**
+         * Compare the observed cardinality of each join in the query plan
+         * which was just executed with the
+         * {@link Annotations#ESTIMATED_CARDINALITIES estimate} for that join.
+         * The observed cardinality is normalized by the #of solutions which
+         * flowed into the first join since the estimates are for a single
+         * source solution.
+         * 
+         * @return A description of the first join whose observed cardinality
+         *         diverges from its estimate by more than the
+         *         {@link Annotations#ADAPTIVE_THRESHOLD} -or- <code>null</code>
+         *         if there is no such join.
+         */
+        private String checkCardinalities(final JGraph g,
+                final PipelineOp queryOp, final Map<Integer, BOpStats> stats) {
+
+            final long[] estimates = getEstimatedCardinalities();
+
+            if (estimates == null)
+                return null;
+
+            final double threshold = getAdaptiveThreshold();
+
+            final IPredicate<?>[] vertices = getVertices();
+
+            // Map the vertices onto the statistics for their joins.
+            final Map<Integer/* predId */, BOpStats> predStats = new LinkedHashMap<Integer, BOpStats>();
+            {
+
+                final Iterator<BOp> itr = BOpUtility.preOrderIterator(queryOp);
+
+                while (itr.hasNext()) {
+
+                    final BOp op = itr.next();
+
+                    final IPredicate<?> pred = (IPredicate<?>) op
+                            .getProperty(AccessPathJoinAnnotations.PREDICATE);
+
+                    if (pred == null)
+                        continue;
+
+                    final BOpStats s = stats.get(op.getId());
+
+                    if (s != null)
+                        predStats.put(pred.getId(), s);
+
+                }
+
+            }
+
+            final BOpStats first = predStats.get(vertices[0].getId());
+
+            if (first == null || first.unitsIn.get() == 0L)
+                return null;
+
+            // The #of source solutions.
+            final double nin = first.unitsIn.get();
+
+            String diverged = null;
+
+            for (int i = 0; i < vertices.length; i++) {
+
+                final long estCard = estimates[i];
+
+                final BOpStats s = predStats.get(vertices[i].getId());
+
+                if (estCard < 0 || s == null)
+                    continue;
+
+                final double card = s.unitsOut.get() / nin;
+
+                final double ratio = (Math.max(card, estCard) + 1d)
+                        / (Math.min(card, estCard) + 1d);
+
+                final String msg = "vertex=" + vertices[i].getId()
+                        + ", estCard=" + estCard + ", card=" + (long) card
+                        + ", ratio=" + (long) ratio;
+
+                g.trace("observed: " + msg);
+
+                if (diverged == null && ratio > threshold)
+                    diverged = msg;
+
+            }
+
+            return diverged;
+
+        }
+
+        /**
+         * Resume the runtime optimizer within its time budget and decide on
+         * the query plan to be executed for this invocation.
+         */
+        private void optimize(final IRunningQuery q, final JGraph g)
+                throws Exception {
+
+            final QueryEngine queryEngine = q.getQueryEngine();
+
+            final Map<PathIds, EdgeSample> edgeSamples = getSamples(q);
+
+            final boolean done = g.optimize(queryEngine, edgeSamples,
+                    TimeUnit.MILLISECONDS.toNanos(getMaxOptimizerMillis()));
+
+            // The join path for the plan which is already executing (if any).
+            final Path current = getPath(q);
+
+            if (done) {
 
                 // Find the best join path.
-                final Path path = g.runtimeOptimizer(context.getRunningQuery()
-                        .getQueryEngine(), edgeSamples);
+                final Path path = g.getSelectedPath(edgeSamples);
+
+                if (current == null) {
+
+                    g.trace("plan: selected "
+                            + Arrays.toString(path.getVertexIds())
+                            + ", sumEstCost=" + path.sumEstCost);
+
+                    setPlan(q, path);
+
+                } else if (path.sumEstCost < current.sumEstCost
+                        * getReplanRatio()
+                        && !Arrays.equals(g.getOrder(path),
+                                g.getOrder(current))) {
+
+                    g.trace("replan: "
+                            + Arrays.toString(current.getVertexIds())
+                            + " => " + Arrays.toString(path.getVertexIds())
+                            + ", sumEstCost=" + current.sumEstCost + " => "
+                            + path.sumEstCost);
+
+                    setPlan(q, path);
+
+                } else {
+
+                    g.trace("keep: " + Arrays.toString(current.getVertexIds())
+                            + ", sumEstCost=" + current.sumEstCost
+                            + ", selected="
+                            + Arrays.toString(path.getVertexIds())
+                            + ", sumEstCost=" + path.sumEstCost);
+
+                }
+
+                g.trace("optimizer: elapsed=" + g.getElapsedMillis() + "ms");
 
                 /*
                  * Release samples.
                  * 
-                 * TODO If we have fully sampled some vertices or edges, then we
-                 * could replace the JOIN with the sample. For this to work, we
-                 * would need to access path that could read the sample and we
-                 * would have to NOT release the samples until the RTO was done
-                 * executing sub-queries against the generated query plan. Since
-                 * we can flow multiple chunks into the sub-query, this amounts
-                 * to having a LAST_PASS annotation.
+                 * TODO If we have fully sampled some vertices or edges, then
+                 * we could replace the JOIN with the sample. For this to work,
+                 * we would need to access path that could read the sample and
+                 * we would have to NOT release the samples until the RTO was
+                 * done executing sub-queries against the generated query
+                 * plan. Since we can flow multiple chunks into the sub-query,
+                 * this amounts to having a LAST_PASS annotation.
                  */
-                
+
                 for (EdgeSample s : edgeSamples.values()) {
 
                     s.releaseSample();
-                    
+
                 }
- 
+
                 for (Vertex v : g.getVertices()) {
 
                     if (v.sample != null) {
                         v.sample.releaseSample();
-                    
+
                     }
-                    
-                }
-                
-                // Set attribute for the join path result.
-                setPath(context.getRunningQuery(), path);
 
-                // Set attribute for the join path samples.
-                setSamples(context.getRunningQuery(), edgeSamples);
+                }
 
-                // final long mark = System.nanoTime();
-                //
-                // final long elapsed_queryOptimizer = mark - begin;
+            } else if (current == null) {
 
                 /*
-                 * Generate the query from the selected join path.
+                 * The time budget was consumed before the search was done.
+                 * Greedily complete the best join path found so far and start
+                 * executing it now. The search will be resumed by the next
+                 * invocation.
                  */
-                final PipelineOp queryOp = AST2BOpRTO.compileJoinGraph(context
-                        .getRunningQuery().getQueryEngine(), JoinGraph.this,
-                        path);
+                final Map<PathIds, EdgeSample> completionSamples = new LinkedHashMap<PathIds, EdgeSample>();
+
+                final Path path = g.getBestPath(queryEngine, completionSamples);
+
+                g.trace("plan: interim " + Arrays.toString(path.getVertexIds())
+                        + ", sumEstCost=" + path.sumEstCost);
 
-                // Set attribute for the join path samples.
-                setQueryPlan(context.getRunningQuery(), queryOp);
+                setPlan(q, path);
+
+                for (EdgeSample s : completionSamples.values()) {
+
+                    s.releaseSample();
+
+                }
 
             }
-	        
-            // The query plan.
-            final PipelineOp queryOp = getQueryPlan(context.getRunningQuery());
-            
-            // Run the query, blocking until it is done.
-	        JoinGraph.runSubquery(context, queryOp);
 
-//	        final long elapsed_queryExecution = System.nanoTime() - mark;
-//	        
-//            if (log.isInfoEnabled())
-//                log.info("RTO: queryOptimizer="
-//                        + TimeUnit.NANOSECONDS.toMillis(elapsed_queryOptimizer)
-//                        + ", queryExecution="
-//                        + TimeUnit.NANOSECONDS.toMillis(elapsed_queryExecution));
+        }
 
-	        return null;
+        /**
+         * Generate the query plan from the join path and set the attributes
+         * for the join path and the query plan.
+         */
+        private void setPlan(final IRunningQuery q, final Path path)
+                throws Exception {
 
-	    }
+            // Set attribute for the join path result.
+            setPath(q, path);
+
+            /*
+             * Generate the query from the selected join path.
+             */
+            final PipelineOp queryOp = AST2BOpRTO.compileJoinGraph(
+                    q.getQueryEngine(), JoinGraph.this, path);
+
+            // Set attribute for the query plan.
+            setQueryPlan(q, queryOp);
+
+        }
 
 	} // class JoinGraphTask
 
@@ -547,8 +961,11 @@ public class JoinGraph extends PipelineOp {
      * subquery. Therefore we have to take appropriate care to ensure that the
      * results are copied out of the subquery and into the parent query. See
      * {@link AbstractSubqueryOp} for how this is done.
+     * 
+     * @return The subquery once it is done -or- <code>null</code> if it was
+     *         terminated by an interrupt.
      */
-    static private void runSubquery(
+    static private IRunningQuery runSubquery(
             final BOpContext<IBindingSet> parentContext,
             final PipelineOp queryOp) throws Exception {
 
@@ -607,12 +1024,14 @@ public class JoinGraph extends PipelineOp {
             // verify no problems.
             runningSubquery.get();
 
+            return runningSubquery;
+
         } catch (Throwable t) {
 
             if (Haltable.isTerminationByInterrupt(t)) {
 
                 // normal termination.
-                return;
+                return null;
 
             }
 
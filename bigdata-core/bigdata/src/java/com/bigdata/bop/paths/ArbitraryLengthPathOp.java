@@ -145,6 +145,33 @@ public class ArbitraryLengthPathOp extends PipelineOp {
          * that should be dropped from the solutions after each round.
          */
         String DROP_VARS = Annotations.class.getName() + ".dropVars";
+
+        /**
+         * When <code>true</code> and both ends of the path are bound for an
+         * incoming solution (by a constant or by the incoming solution
+         * itself), the path is evaluated as a bidirectional breadth-first
+         * search which alternately expands the smaller of the forward and
+         * reverse frontiers until they meet. This only tests reachability, so
+         * it is not used when the {@link #EDGE_VAR} is given.
+         * 
+         * @see #DEFAULT_BIDIRECTIONAL
+         */
+        String BIDIRECTIONAL = Annotations.class.getName() + ".bidirectional";
+
+        boolean DEFAULT_BIDIRECTIONAL = true;
+
+        /**
+         * When <code>true</code> the nodes visited by the bidirectional search
+         * are tracked on the native heap using the memory manager of the
+         * query rather than on the JVM heap.
+         * 
+         * @see #DEFAULT_NATIVE_VISITED_SET
+         * @see VisitedNodeSet
+         */
+        String NATIVE_VISITED_SET = Annotations.class.getName()
+                + ".nativeVisitedSet";
+
+        boolean DEFAULT_NATIVE_VISITED_SET = false;
         
     }
 
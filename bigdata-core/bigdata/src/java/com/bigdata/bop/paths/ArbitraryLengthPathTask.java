@@ -84,6 +84,18 @@ import cutthecrap.utils.striterators.ICloseableIterator;
  * transitivity variable on the output side is re-mapped to input for the next
  * round.
  * <p>
+ * When both ends of the path are bound for an incoming solution, we are only
+ * testing reachability. In that case (unless the edge variable is requested)
+ * the operator runs a bidirectional breadth-first search instead: it keeps a
+ * forward frontier seeded from the left term and a reverse frontier seeded
+ * from the right term, expands the smaller one by a single round of the
+ * subquery (all frontier nodes are flooded into one subquery, so there is one
+ * batch of index reads per level rather than one per node) and stops as soon
+ * as a node reached from one side has already been visited from the other
+ * side. The visited nodes are tracked by {@link VisitedNodeSet}, which may be
+ * backed by the native heap (see
+ * {@link ArbitraryLengthPathOp.Annotations#NATIVE_VISITED_SET}).
+ * <p>
  * This operator does not use internal parallelism, but it is thread-safe and
  * multiple instances of this operator may be run in parallel by the query
  * engine for parallel evaluation of different binding set chunks flowing
@@ -127,6 +139,8 @@ public class ArbitraryLengthPathTask implements Callable<Void> {
     private final IVariable<?> edgeVar;
     private final List<IVariable<?>> dropVars;
     private final String userDefinedGearing;
+    private final boolean bidirectional;
+    private final boolean nativeVisitedSet;
 
     public ArbitraryLengthPathTask(
             final ArbitraryLengthPathOp controllerOp,
@@ -187,6 +201,13 @@ public class ArbitraryLengthPathTask implements Callable<Void> {
         this.userDefinedGearing = 
         	(String)controllerOp.getProperty(QueryHints.GEARING);
 
+        this.bidirectional = controllerOp.getProperty(
+                Annotations.BIDIRECTIONAL, Annotations.DEFAULT_BIDIRECTIONAL);
+
+        this.nativeVisitedSet = controllerOp.getProperty(
+                Annotations.NATIVE_VISITED_SET,
+                Annotations.DEFAULT_NATIVE_VISITED_SET);
+
         if (log.isDebugEnabled()) {
             log.debug("project in vars: " + projectInVars);
         }
@@ -315,7 +336,7 @@ public class ArbitraryLengthPathTask implements Callable<Void> {
         
     }
     
-    private void processChunk(final IBindingSet[] chunkIn) throws Exception {
+    private void processChunk(IBindingSet[] chunkIn) throws Exception {
 
         final Map<SolutionKey, IBindingSet> solutions = 
                 new LinkedHashMap<SolutionKey, IBindingSet>();
@@ -323,6 +344,46 @@ public class ArbitraryLengthPathTask implements Callable<Void> {
         final QueryEngine queryEngine = this.context.getRunningQuery()
                 .getQueryEngine();
 
+        if (bidirectional && edgeVar == null && chunkIn.length > 0) {
+
+            /*
+             * Solutions for which both ends of the path are bound are handled
+             * by a bidirectional search. The rest are handled below.
+             */
+            final List<IBindingSet> rest = new ArrayList<IBindingSet>(
+                    chunkIn.length);
+
+            for (IBindingSet parentSolutionIn : chunkIn) {
+
+                final IConstant<?> left = forwardGearing.inConst != null ? forwardGearing.inConst
+                        : parentSolutionIn.get(forwardGearing.inVar);
+
+                final IConstant<?> right = forwardGearing.outConst != null ? forwardGearing.outConst
+                        : parentSolutionIn.get(forwardGearing.outVar);
+
+                if (left != null && right != null) {
+
+                    searchBidirectional(parentSolutionIn, left, right,
+                            queryEngine);
+
+                } else {
+
+                    rest.add(parentSolutionIn);
+
+                }
+
+            }
+
+            if (rest.isEmpty()) {
+
+                return;
+
+            }
+
+            chunkIn = rest.toArray(new IBindingSet[rest.size()]);
+
+        }
+
         /*
          * The input to each round of transitive chaining.
          */
@@ -415,6 +476,294 @@ public class ArbitraryLengthPathTask implements Callable<Void> {
     } // processChunk method
 
 
+    /**
+     * Decide whether the right term is reachable from the left term using a
+     * bidirectional breadth-first search and, if so, emit the incoming
+     * solution (with the transitivity variables bound to the two ends).
+     * <p>
+     * Each step expands whichever frontier is smaller by one round of the
+     * subquery. The search stops when a node reached from one side has
+     * already been visited from the other side (the path is found), when
+     * either frontier is exhausted (there is no path), or when the combined
+     * depth of the two sides reaches the upper bound.
+     * 
+     * @param parentSolutionIn
+     *            The incoming solution.
+     * @param left
+     *            The binding for the left end of the path.
+     * @param right
+     *            The binding for the right end of the path.
+     * @param queryEngine
+     *            The query engine used to run the subquery.
+     */
+    private void searchBidirectional(final IBindingSet parentSolutionIn,
+            final IConstant<?> left, final IConstant<?> right,
+            final QueryEngine queryEngine) throws Exception {
+
+        if (log.isDebugEnabled())
+            log.debug("bidirectional search: left=" + left + ", right="
+                    + right + ", solution=" + parentSolutionIn);
+
+        boolean found = false;
+
+        if (lowerBound == 0 && left.get().equals(right.get())) {
+
+            // zero length path.
+            found = true;
+
+        }
+
+        if (!found && upperBound > 0) {
+
+            final VisitedNodeSet forwardVisited = newVisitedNodeSet();
+
+            final VisitedNodeSet reverseVisited = newVisitedNodeSet();
+
+            try {
+
+                List<IConstant<?>> forwardFrontier = new ArrayList<IConstant<?>>();
+
+                List<IConstant<?>> reverseFrontier = new ArrayList<IConstant<?>>();
+
+                forwardVisited.add(left);
+                forwardFrontier.add(left);
+
+                reverseVisited.add(right);
+                reverseFrontier.add(right);
+
+                long depth = 0;
+
+                while (!found && depth < upperBound
+                        && !forwardFrontier.isEmpty()
+                        && !reverseFrontier.isEmpty()) {
+
+                    final boolean forward = forwardFrontier.size() <= reverseFrontier
+                            .size();
+
+                    final List<IConstant<?>> nextFrontier = new ArrayList<IConstant<?>>();
+
+                    if (forward) {
+
+                        found = expand(parentSolutionIn, forwardGearing,
+                                forwardFrontier, forwardVisited,
+                                reverseVisited, nextFrontier, queryEngine);
+
+                        forwardFrontier = nextFrontier;
+
+                    } else {
+
+                        found = expand(parentSolutionIn, reverseGearing,
+                                reverseFrontier, reverseVisited,
+                                forwardVisited, nextFrontier, queryEngine);
+
+                        reverseFrontier = nextFrontier;
+
+                    }
+
+                    depth++;
+
+                    if (log.isDebugEnabled())
+                        log.debug("depth=" + depth + ", forward=" + forward
+                                + ", found=" + found + ", forwardVisited="
+                                + forwardVisited.size() + ", reverseVisited="
+                                + reverseVisited.size());
+
+                }
+
+            } finally {
+
+                forwardVisited.release();
+
+                reverseVisited.release();
+
+            }
+
+        }
+
+        if (found) {
+
+            final IBindingSet bs = parentSolutionIn.clone();
+
+            bs.set(forwardGearing.tVarIn, left);
+
+            bs.set(forwardGearing.tVarOut, right);
+
+            emitSolutions(bs, forwardGearing);
+
+        }
+
+    }
+
+    /**
+     * Expand one frontier of the bidirectional search by a single round of
+     * the subquery. All nodes of the frontier are flooded into the same
+     * subquery.
+     * 
+     * @param parentSolutionIn
+     *            The incoming solution.
+     * @param gearing
+     *            The gearing for the side being expanded.
+     * @param frontier
+     *            The frontier for the side being expanded.
+     * @param visited
+     *            The nodes visited by the side being expanded.
+     * @param otherVisited
+     *            The nodes visited by the other side.
+     * @param nextFrontier
+     *            The newly visited nodes are added to this list.
+     * @param queryEngine
+     *            The query engine used to run the subquery.
+     * 
+     * @return <code>true</code> iff a node was reached which had already been
+     *         visited by the other side.
+     */
+    private boolean expand(final IBindingSet parentSolutionIn,
+            final Gearing gearing, final List<IConstant<?>> frontier,
+            final VisitedNodeSet visited, final VisitedNodeSet otherVisited,
+            final List<IConstant<?>> nextFrontier,
+            final QueryEngine queryEngine) throws Exception {
+
+        final IBindingSet[] input = new IBindingSet[frontier.size()];
+
+        {
+
+            int i = 0;
+
+            for (IConstant<?> node : frontier) {
+
+                final IBindingSet bs = parentSolutionIn.clone();
+
+                bs.set(gearing.tVarIn, node);
+
+                input[i++] = bs;
+
+            }
+
+        }
+
+        // The subquery
+        IRunningQuery runningSubquery = null;
+
+        // The iterator draining the subquery
+        ICloseableIterator<IBindingSet[]> subquerySolutionItr = null;
+
+        try {
+
+            runningSubquery = queryEngine.eval(subquery, input);
+
+            long subquerySolutionsOut = 0L; // #of solutions read from subquery
+
+            try {
+
+                // Declare the child query to the parent.
+                ((AbstractRunningQuery) context.getRunningQuery())
+                        .addChild(runningSubquery);
+
+                // Iterator visiting the subquery solutions.
+                subquerySolutionItr = runningSubquery.iterator();
+
+                while (subquerySolutionItr.hasNext()) {
+
+                    final IBindingSet[] chunk = subquerySolutionItr.next();
+
+                    if (Thread.interrupted())
+                        throw new InterruptedException();
+
+                    for (IBindingSet bs : chunk) {
+
+                        if (subquerySolutionsOut++ % 10 == 0
+                                && Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+
+                        final IConstant<?> node = bs.get(gearing.tVarOut);
+
+                        if (node == null)
+                            continue;
+
+                        if (otherVisited.contains(node)) {
+
+                            // The frontiers met. The subquery is cancelled below.
+                            return true;
+
+                        }
+
+                        if (visited.add(node)) {
+
+                            nextFrontier.add(node);
+
+                        }
+
+                    }
+
+                }
+
+                // finished with the iterator
+                subquerySolutionItr.close();
+
+                // wait for the subquery to halt / test for errors.
+                runningSubquery.get();
+
+                return false;
+
+            } catch (InterruptedException ex) {
+
+                // this thread was interrupted, so cancel the subquery.
+                runningSubquery.cancel(true/* mayInterruptIfRunning */);
+
+                // rethrow the exception.
+                throw ex;
+
+            }
+
+        } catch (Throwable t) {
+
+            /*
+             * Propagate the error to the parent and rethrow the first cause
+             * error out of the subquery (see doIterate()).
+             */
+            final Throwable cause = (runningSubquery != null && runningSubquery
+                    .getCause() != null) ? runningSubquery.getCause() : t;
+
+            throw new RuntimeException(ArbitraryLengthPathTask.this.context
+                    .getRunningQuery().halt(cause));
+
+        } finally {
+
+            try {
+
+                // ensure subquery is halted.
+                if (runningSubquery != null)
+                    runningSubquery.cancel(true/* mayInterruptIfRunning */);
+
+            } finally {
+
+                // ensure the subquery solution iterator is closed.
+                if (subquerySolutionItr != null)
+                    subquerySolutionItr.close();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Return a new {@link VisitedNodeSet} for the bidirectional search.
+     */
+    private VisitedNodeSet newVisitedNodeSet() {
+
+        if (nativeVisitedSet) {
+
+            return VisitedNodeSet.newNativeInstance(context
+                    .getMemoryManager(null/* queryId */));
+
+        }
+
+        return VisitedNodeSet.newJVMInstance();
+
+    }
+
     /**
      * Performs up to upperBound iterations (or stops if a fixed point has
      * been reached), to detect new bindings for the property paths.
@@ -0,0 +1,251 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.bop.paths;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import com.bigdata.bop.IConstant;
+import com.bigdata.btree.BTree;
+import com.bigdata.btree.BloomFilterFactory;
+import com.bigdata.btree.DefaultTupleSerializer;
+import com.bigdata.btree.ITupleSerializer;
+import com.bigdata.btree.IndexMetadata;
+import com.bigdata.btree.keys.ASCIIKeyBuilderFactory;
+import com.bigdata.btree.keys.IKeyBuilder;
+import com.bigdata.btree.raba.codec.EmptyRabaValueCoder;
+import com.bigdata.btree.raba.codec.FrontCodedRabaCoder;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.IVUtility;
+import com.bigdata.rwstore.sector.IMemoryManager;
+import com.bigdata.rwstore.sector.MemStore;
+
+/**
+ * The set of nodes visited by one side of the bidirectional search run by the
+ * {@link ArbitraryLengthPathTask}. Nodes are tracked by their {@link IV} rather
+ * than by the {@link IConstant} or the solution in which they were found, so
+ * each visited node costs one entry regardless of how many solutions reached
+ * it.
+ * <p>
+ * There are two implementations. The JVM version uses a {@link HashSet}. The
+ * native version uses a {@link BTree} on a {@link MemStore} allocated from the
+ * memory manager of the query and is used for <code>analytic</code> queries
+ * where the visited set can be too large for the managed object heap.
+ * 
+ * @see ArbitraryLengthPathOp.Annotations#NATIVE_VISITED_SET
+ */
+abstract class VisitedNodeSet {
+
+    /**
+     * Add the node to the set.
+     * 
+     * @return <code>true</code> iff the node was not already in the set.
+     */
+    abstract public boolean add(IConstant<?> node);
+
+    /**
+     * Return <code>true</code> iff the node is in the set.
+     */
+    abstract public boolean contains(IConstant<?> node);
+
+    /**
+     * The #of nodes in the set.
+     */
+    abstract public long size();
+
+    /**
+     * Release the resources associated with the set.
+     */
+    abstract public void release();
+
+    /**
+     * Return a set backed by the JVM heap.
+     */
+    static VisitedNodeSet newJVMInstance() {
+
+        return new JVMVisitedNodeSet();
+
+    }
+
+    /**
+     * Return a set backed by the native heap.
+     * 
+     * @param mmgr
+     *            The memory manager of the query. A child allocation context
+     *            is used for the set and is released by {@link #release()}.
+     */
+    static VisitedNodeSet newNativeInstance(final IMemoryManager mmgr) {
+
+        return new NativeVisitedNodeSet(mmgr);
+
+    }
+
+    /**
+     * {@link VisitedNodeSet} on the JVM heap.
+     */
+    private static class JVMVisitedNodeSet extends VisitedNodeSet {
+
+        private final Set<Object> nodes = new HashSet<Object>();
+
+        @Override
+        public boolean add(final IConstant<?> node) {
+            return nodes.add(node.get());
+        }
+
+        @Override
+        public boolean contains(final IConstant<?> node) {
+            return nodes.contains(node.get());
+        }
+
+        @Override
+        public long size() {
+            return nodes.size();
+        }
+
+        @Override
+        public void release() {
+            nodes.clear();
+        }
+
+    }
+
+    /**
+     * {@link VisitedNodeSet} on the native heap. The keys are the encoded
+     * {@link IV}s. Nodes which are not {@link IV}s are tracked on the JVM heap
+     * (this does not happen for nodes read from the statement indices).
+     */
+    private static class NativeVisitedNodeSet extends VisitedNodeSet {
+
+        /**
+         * The front-coding ratio for the keys. The encoded {@link IV}s share
+         * long prefixes, so a larger ratio than the default of
+         * {@link FrontCodedRabaCoder.DefaultFrontCodedRabaCoder} keeps the
+         * leaves small. The cost is a longer scan within a bucket on lookup.
+         * This is the same ratio as the native DISTINCT filter.
+         */
+        private static final int FRONT_CODING_RATIO = 32;
+
+        private final MemStore store;
+
+        private final BTree index;
+
+        private final IKeyBuilder keyBuilder;
+
+        private final Set<Object> other = new HashSet<Object>();
+
+        NativeVisitedNodeSet(final IMemoryManager mmgr) {
+
+            if (mmgr == null)
+                throw new IllegalArgumentException();
+
+            final IndexMetadata metadata = new IndexMetadata(UUID.randomUUID());
+
+            metadata.setBranchingFactor(256);
+
+            // No values.
+            metadata.setMaxRecLen(0);
+
+            metadata.setBloomFilterFactory(BloomFilterFactory.DEFAULT);
+
+            @SuppressWarnings("rawtypes")
+            final ITupleSerializer<?, ?> tupleSer = new DefaultTupleSerializer(
+                    new ASCIIKeyBuilderFactory(64/* initialCapacity */),//
+                    new FrontCodedRabaCoder(FRONT_CODING_RATIO),// keys
+                    EmptyRabaValueCoder.INSTANCE // vals
+            );
+
+            metadata.setTupleSerializer(tupleSer);
+
+            keyBuilder = tupleSer.getKeyBuilder();
+
+            store = new MemStore(mmgr.createAllocationContext());
+
+            index = BTree.create(store, metadata);
+
+        }
+
+        @SuppressWarnings("rawtypes")
+        private byte[] getKey(final IConstant<?> node) {
+
+            keyBuilder.reset();
+
+            IVUtility.encode(keyBuilder, (IV) node.get());
+
+            return keyBuilder.getKey();
+
+        }
+
+        @Override
+        public boolean add(final IConstant<?> node) {
+
+            if (!(node.get() instanceof IV))
+                return other.add(node.get());
+
+            final byte[] key = getKey(node);
+
+            if (index.contains(key))
+                return false;
+
+            index.insert(key, null/* val */);
+
+            return true;
+
+        }
+
+        @Override
+        public boolean contains(final IConstant<?> node) {
+
+            if (!(node.get() instanceof IV))
+                return other.contains(node.get());
+
+            return index.contains(getKey(node));
+
+        }
+
+        @Override
+        public long size() {
+
+            return index.getEntryCount() + other.size();
+
+        }
+
+        @Override
+        public void release() {
+
+            other.clear();
+
+            index.close();
+
+            store.close();
+
+        }
+
+    }
+
+}
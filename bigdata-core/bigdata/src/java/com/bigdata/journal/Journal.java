@@ -89,6 +89,8 @@ import com.bigdata.journal.JournalTransactionService.ValidateWriteSetTask;
 import com.bigdata.quorum.Quorum;
 import com.bigdata.quorum.QuorumException;
 import com.bigdata.rawstore.IRawStore;
+import com.bigdata.rdf.lexicon.BatchResolveCoalescerCounters;
+import com.bigdata.rdf.spo.SPOIndexWriterCounters;
 import com.bigdata.rdf.task.IApiTask;
 import com.bigdata.relation.locator.DefaultResourceLocator;
 import com.bigdata.relation.locator.ILocatableResource;
@@ -2511,6 +2513,18 @@ public class Journal extends AbstractJournal implements IConcurrencyManager,
          * journal (if any).
          */
         String queryEngine = "Query Engine";
+
+        /**
+         * Performance counters for the statement index writers of the triple
+         * stores on this journal (if any).
+         */
+        String statementIndexWriters = "Statement Index Writers";
+
+        /**
+         * Performance counters for the coalesced term resolution of the
+         * lexicons of the triple stores on this journal (if any).
+         */
+        String termResolution = "Term Resolution";
         
     }
 
@@ -2608,6 +2622,32 @@ public class Journal extends AbstractJournal implements IConcurrencyManager,
             
         }
 
+        {
+
+            final CounterSet tmp = SPOIndexWriterCounters.getCounters(this);
+
+            if (tmp != null) {
+
+                root.makePath(IJournalCounters.statementIndexWriters).attach(
+                        tmp);
+
+            }
+
+        }
+
+        {
+
+            final CounterSet tmp = BatchResolveCoalescerCounters
+                    .getCounters(this);
+
+            if (tmp != null) {
+
+                root.makePath(IJournalCounters.termResolution).attach(tmp);
+
+            }
+
+        }
+
         return root;
         
     }
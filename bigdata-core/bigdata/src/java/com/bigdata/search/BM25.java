@@ -0,0 +1,157 @@
+package com.bigdata.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Okapi BM25 relevance. The weight of a search term for some field is
+ * 
+ * <pre>
+ * idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * dl / avgdl))
+ * </pre>
+ * 
+ * where <code>tf</code> is the frequency of the term in the field,
+ * <code>dl</code> is the #of tokens in the field and <code>avgdl</code> is the
+ * average #of tokens in fields having the same field identifier. The
+ * <code>idf</code> is computed from the #of fields in the index and the #of
+ * postings for the term. The relevance of a {@link Hit} is the sum of the
+ * weights of the search terms.
+ * <p>
+ * Note: The #of postings is obtained from a range count on the text index, so
+ * a prefix match reports the #of postings for all matching tokens.
+ * 
+ * @see FullTextIndex.Options#STATISTICS_ENABLED
+ * @see FullTextIndex.Options#BM25_K1
+ * @see FullTextIndex.Options#BM25_B
+ */
+public class BM25 {
+
+    private final double k1;
+
+    private final double b;
+
+    /** The #of fields across all field identifiers. */
+    private final long nfields;
+
+    /** The average #of tokens per field across all field identifiers. */
+    private final double avgFieldLength;
+
+    /** The average #of tokens per field for each field identifier. */
+    private final Map<Integer, Double> avgFieldLengths;
+
+    /**
+     * @param k1
+     *            Controls the saturation of the term frequency.
+     * @param b
+     *            Controls the normalization by the field length (in [0:1]).
+     * @param stats
+     *            The #of fields and the total #of tokens in those fields for
+     *            each field identifier.
+     */
+    public BM25(final double k1, final double b,
+            final Map<Integer, long[]> stats) {
+
+        if (k1 < 0d)
+            throw new IllegalArgumentException();
+
+        if (b < 0d || b > 1d)
+            throw new IllegalArgumentException();
+
+        if (stats == null)
+            throw new IllegalArgumentException();
+
+        this.k1 = k1;
+
+        this.b = b;
+
+        this.avgFieldLengths = new HashMap<Integer, Double>();
+
+        long nfields = 0, ntokens = 0;
+
+        for (Map.Entry<Integer, long[]> e : stats.entrySet()) {
+
+            final long[] a = e.getValue();
+
+            if (a[0] > 0)
+                avgFieldLengths.put(e.getKey(), a[1] / (double) a[0]);
+
+            nfields += a[0];
+
+            ntokens += a[1];
+
+        }
+
+        this.nfields = nfields;
+
+        this.avgFieldLength = nfields == 0 ? 0d : ntokens / (double) nfields;
+
+    }
+
+    /**
+     * The #of fields in the index.
+     */
+    public long getFieldCount() {
+
+        return nfields;
+
+    }
+
+    /**
+     * The inverse document frequency of a search term. This form is never
+     * negative, even for a term which appears in most fields.
+     * 
+     * @param df
+     *            The #of postings for the search term.
+     */
+    public double idf(final long df) {
+
+        return Math.log(1d + (nfields - df + 0.5d) / (df + 0.5d));
+
+    }
+
+    /**
+     * The BM25 normalized term frequency for a posting (this is multiplied by
+     * the {@link #idf(long)} of the search term).
+     * 
+     * @param rec
+     *            The posting.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the index does not record term statistics.
+     */
+    public double getTermWeight(final ITermDocRecord<?> rec) {
+
+        final int tf = rec.termFreq();
+
+        final int dl = rec.getFieldLength();
+
+        if (tf < 0 || dl < 0)
+            throw new UnsupportedOperationException(
+                    "Term statistics not enabled: "
+                            + FullTextIndex.Options.STATISTICS_ENABLED);
+
+        Double avgdl = null;
+        try {
+            avgdl = avgFieldLengths.get(rec.getFieldId());
+        } catch (UnsupportedOperationException ex) {
+            // The field identifier is not reported.
+        }
+
+        final double avg = avgdl == null ? avgFieldLength : avgdl
+                .doubleValue();
+
+        final double norm = avg == 0d ? 1d : (1d - b + b * dl / avg);
+
+        return tf * (k1 + 1d) / (tf + k1 * norm);
+
+    }
+
+    public String toString() {
+
+        return getClass().getName() + "{k1=" + k1 + ", b=" + b
+                + ", nfields=" + nfields + ", avgFieldLength="
+                + avgFieldLength + "}";
+
+    }
+
+}
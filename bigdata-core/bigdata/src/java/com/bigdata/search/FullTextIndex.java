@@ -28,12 +28,14 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
 
 package com.bigdata.search;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -51,11 +53,14 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 
 import com.bigdata.bop.IBindingSet;
 import com.bigdata.bop.IPredicate;
 import com.bigdata.btree.DefaultTupleSerializer;
 import com.bigdata.btree.IIndex;
+import com.bigdata.btree.ITuple;
+import com.bigdata.btree.ITupleIterator;
 import com.bigdata.btree.IndexMetadata;
 import com.bigdata.btree.IndexTypeEnum;
 import com.bigdata.btree.keys.DefaultKeyBuilderFactory;
@@ -64,7 +69,7 @@ import com.bigdata.btree.keys.IKeyBuilderFactory;
 import com.bigdata.btree.keys.KeyBuilder;
 import com.bigdata.btree.keys.StrengthEnum;
 import com.bigdata.btree.raba.codec.EmptyRabaValueCoder;
-import com.bigdata.cache.ConcurrentWeakValueCacheWithTimeout;
+import com.bigdata.btree.raba.codec.SimpleRabaCoder;
 import com.bigdata.journal.IIndexManager;
 import com.bigdata.journal.IResourceLock;
 import com.bigdata.journal.ITx;
@@ -74,6 +79,7 @@ import com.bigdata.relation.AbstractRelation;
 import com.bigdata.relation.locator.DefaultResourceLocator;
 import com.bigdata.striterator.IChunkedOrderedIterator;
 import com.bigdata.striterator.IKeyOrder;
+import com.bigdata.util.Bytes;
 import com.bigdata.util.concurrent.ExecutionHelper;
 
 /**
@@ -270,6 +276,35 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
         
     }
     
+    /**
+     * The index on which the statistics for each field are maintained.
+     */
+    volatile private IIndex statisticsIndex;
+
+    /**
+     * The index on which the #of fields and the total #of tokens in those
+     * fields are maintained for each field identifier -or- <code>null</code>
+     * if the index does not record term statistics.
+     * 
+     * @see Options#STATISTICS_ENABLED
+     */
+    public IIndex getStatisticsIndex() {
+
+        if (statisticsIndex == null) {
+
+            synchronized (this) {
+
+                statisticsIndex = getIndex(getNamespace() + "."
+                        + NAME_SEARCH_STATISTICS);
+
+            }
+
+        }
+
+        return statisticsIndex;
+
+    }
+
     /**
      * Options understood by the {@link FullTextIndex}.
      * 
@@ -332,6 +367,60 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 
         String DEFAULT_FIELDS_ENABLED = "false";
 
+        /**
+         * When <code>true</code>, the positions of each token within the
+         * field are stored as the value of the tuple for that token (default
+         * {@value #DEFAULT_POSITIONS_ENABLED}). The positions are delta
+         * encoded. This is required to evaluate phrase and NEAR/k queries
+         * against the index (see {@link FullTextQuery#isMatchPhrase()} and
+         * {@link FullTextQuery#getMatchNear()}) rather than by materializing
+         * and scanning the text of each hit.
+         * <p>
+         * Note: This option is fixed when the index is created.
+         */
+        String POSITIONS_ENABLED = FullTextIndex.class.getName()
+                + ".positionsEnabled";
+
+        String DEFAULT_POSITIONS_ENABLED = "false";
+
+        /**
+         * When <code>true</code>, the term frequency and the #of tokens in the
+         * field are stored as the value of the tuple for each token and the
+         * #of fields and total #of tokens for each field identifier are
+         * maintained on a statistics index (default
+         * {@value #DEFAULT_STATISTICS_ENABLED}). This is required to rank
+         * hits using {@link ScoringModelEnum#BM25}.
+         * <p>
+         * Note: This option is fixed when the index is created.
+         * 
+         * @see FullTextIndex#getStatisticsIndex()
+         */
+        String STATISTICS_ENABLED = FullTextIndex.class.getName()
+                + ".statisticsEnabled";
+
+        String DEFAULT_STATISTICS_ENABLED = "false";
+
+        /**
+         * The BM25 <code>k1</code> parameter, which controls the saturation of
+         * the term frequency (default {@value #DEFAULT_BM25_K1}).
+         * 
+         * @see BM25
+         */
+        String BM25_K1 = FullTextIndex.class.getName() + ".bm25.k1";
+
+        String DEFAULT_BM25_K1 = "1.2";
+
+        /**
+         * The BM25 <code>b</code> parameter, which controls the normalization
+         * by the length of the field in [0:1] (default
+         * {@value #DEFAULT_BM25_B}).
+         * 
+         * @see BM25
+         */
+        String BM25_B = FullTextIndex.class.getName() + ".bm25.b";
+
+        String DEFAULT_BM25_B = "0.75";
+
 //        /**
 //         * When <code>true</code>, the <code>localTermWeight</code> is stored
 //         * using double-precision. When <code>false</code>, it is stored using
@@ -358,19 +447,35 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
         String DEFAULT_ANALYZER_FACTORY_CLASS = DefaultAnalyzerFactory.class.getName();
         
         /**
-        * We keep a small hit cache based on search parameters: search string +
-        * prefixMatch + matchAllTerms.  This defines the size of that cache.
-        * The value should remain small.
+        * We keep a hit cache based on search parameters: search string +
+        * prefixMatch + matchAllTerms and the commit time of the view. This
+        * defines the maximum #of entries in that cache. A value of ZERO (0)
+        * disables the cache.
+        * 
+        * @see HitCache
         */
         String HIT_CACHE_SIZE = FullTextIndex.class.getName()
         		+ ".hitCacheSize";
         
-        String DEFAULT_HIT_CACHE_SIZE = "10";
+        String DEFAULT_HIT_CACHE_SIZE = "1000";
+
+        /**
+         * The memory budget for the hit cache, given as the maximum estimated
+         * #of bytes for the cached hits and prefix term postings (default
+         * {@value #DEFAULT_HIT_CACHE_MAX_BYTES}). A single entry may use at
+         * most half of the budget. A value of ZERO (0) disables the cache.
+         * 
+         * @see HitCache
+         */
+        String HIT_CACHE_MAX_BYTES = FullTextIndex.class.getName()
+                + ".hitCacheMaxBytes";
+
+        String DEFAULT_HIT_CACHE_MAX_BYTES = String.valueOf(10 * Bytes.megabyte);
         
        /**
-        * We keep a small hit cache based on search parameters: search string +
-        * prefixMatch + matchAllTerms. This defines the timeout for values in
-        * that cache (in milliseconds). The value should remain small.
+        * We keep a hit cache based on search parameters: search string +
+        * prefixMatch + matchAllTerms and the commit time of the view. This
+        * defines the timeout for values in that cache (in milliseconds).
         */
         String HIT_CACHE_TIMEOUT_MILLIS = FullTextIndex.class.getName()
                 + ".hitCacheTimeoutMillis";
@@ -381,6 +486,36 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
         String DEFAULT_HIT_CACHE_TIMEOUT_MILLIS =
                String.valueOf(TimeUnit.MINUTES.toMillis(1));
         
+        /**
+         * The largest <code>maxRank</code> for which a query will be evaluated
+         * incrementally by a {@link TopKHitIterator} rather than by reading
+         * all postings for all query terms and then sorting the hits (default
+         * {@value #DEFAULT_TOP_K_MAX_RANK}). A value of ZERO (0) disables the
+         * top-K evaluation.
+         * <p>
+         * Note: Top-K evaluation is only used for queries without prefix
+         * match, exact match, regex, or match all terms constraints and with
+         * no <code>maxCosine</code>. Its results are not cached.
+         */
+        String TOP_K_MAX_RANK = FullTextIndex.class.getName()
+                + ".topKMaxRank";
+
+        String DEFAULT_TOP_K_MAX_RANK = "1000";
+
+        /**
+         * The #of tuples for the full text index which are buffered in memory
+         * in bulk load mode before they are sorted and spilled onto a
+         * temporary file (default {@value #DEFAULT_BULK_LOAD_RUN_CAPACITY}).
+         * The temporary files are created in the directory named by
+         * {@link com.bigdata.journal.Options#TMP_DIR}.
+         * 
+         * @see FullTextIndex#beginBulkLoad()
+         */
+        String BULK_LOAD_RUN_CAPACITY = FullTextIndex.class.getName()
+                + ".bulkLoadRunCapacity";
+
+        String DEFAULT_BULK_LOAD_RUN_CAPACITY = "1000000";
+        
     }
     
     /**
@@ -438,9 +573,45 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
     private final long hitCacheTimeoutMillis;
 
     /**
-     * See {@link Options#HIT_CACHE_SIZE}.
+     * See {@link Options#HIT_CACHE_MAX_BYTES}.
      */
-    private final ConcurrentWeakValueCacheWithTimeout<FullTextQuery, Hit<V>[]> cache;
+    private final long hitCacheMaxBytes;
+
+    /**
+     * The hit cache and <code>null</code> if the cache is disabled.
+     * 
+     * @see Options#HIT_CACHE_SIZE
+     * @see Options#HIT_CACHE_MAX_BYTES
+     */
+    private final HitCache cache;
+
+    /**
+     * See {@link Options#TOP_K_MAX_RANK}.
+     */
+    private final int topKMaxRank;
+
+    /**
+     * See {@link Options#BM25_K1}.
+     */
+    private final double bm25k1;
+
+    /**
+     * See {@link Options#BM25_B}.
+     */
+    private final double bm25b;
+
+    /**
+     * See {@link Options#BULK_LOAD_RUN_CAPACITY}.
+     */
+    private final int bulkLoadRunCapacity;
+
+    /**
+     * The buffer for the tuples written on the index while in bulk load mode
+     * and <code>null</code> otherwise.
+     * 
+     * @see #beginBulkLoad()
+     */
+    volatile private TextIndexRunBuffer bulkLoadBuffer;
 
 //    /**
 //     * @see Options#DOCID_FACTORY_CLASS
@@ -467,6 +638,13 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
      */
     public static final transient String NAME_SEARCH = "search";
     
+    /**
+     * The basename of the statistics index for the search index.
+     * 
+     * @see Options#STATISTICS_ENABLED
+     */
+    public static final transient String NAME_SEARCH_STATISTICS = "searchStats";
+    
     /**
      * <code>true</code> unless {{@link #getTimestamp()} is {@link ITx#UNISOLATED}.
      */
@@ -564,9 +742,68 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 
         }
 
-        this.cache =
-               new ConcurrentWeakValueCacheWithTimeout<FullTextQuery, Hit<V>[]>(
-                               hitCacheSize, hitCacheTimeoutMillis);
+        {
+
+            hitCacheMaxBytes = Long.parseLong(properties.getProperty(
+                    Options.HIT_CACHE_MAX_BYTES,
+                    Options.DEFAULT_HIT_CACHE_MAX_BYTES));
+
+            if (log.isInfoEnabled())
+                log.info(Options.HIT_CACHE_MAX_BYTES + "=" + hitCacheMaxBytes);
+
+        }
+
+        if (hitCacheSize > 0 && hitCacheMaxBytes > 0
+                && hitCacheTimeoutMillis > 0) {
+
+            this.cache = HitCache.getInstance(indexManager, hitCacheSize,
+                    hitCacheMaxBytes, hitCacheTimeoutMillis);
+
+        } else {
+
+            this.cache = null;
+
+        }
+
+        {
+
+            topKMaxRank = Integer.parseInt(properties.getProperty(
+                    Options.TOP_K_MAX_RANK, Options.DEFAULT_TOP_K_MAX_RANK));
+
+            if (log.isInfoEnabled())
+                log.info(Options.TOP_K_MAX_RANK + "=" + topKMaxRank);
+
+        }
+
+        {
+
+            bm25k1 = Double.parseDouble(properties.getProperty(
+                    Options.BM25_K1, Options.DEFAULT_BM25_K1));
+
+            bm25b = Double.parseDouble(properties.getProperty(
+                    Options.BM25_B, Options.DEFAULT_BM25_B));
+
+            if (log.isInfoEnabled())
+                log.info(Options.BM25_K1 + "=" + bm25k1 + ", "
+                        + Options.BM25_B + "=" + bm25b);
+
+        }
+
+        {
+
+            bulkLoadRunCapacity = Integer.parseInt(properties.getProperty(
+                    Options.BULK_LOAD_RUN_CAPACITY,
+                    Options.DEFAULT_BULK_LOAD_RUN_CAPACITY));
+
+            if (bulkLoadRunCapacity <= 0)
+                throw new IllegalArgumentException(
+                        Options.BULK_LOAD_RUN_CAPACITY);
+
+            if (log.isInfoEnabled())
+                log.info(Options.BULK_LOAD_RUN_CAPACITY + "="
+                        + bulkLoadRunCapacity);
+
+        }
 
         {
 
@@ -691,11 +928,28 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 //            if (log.isInfoEnabled())
 //                log.info(Options.DOUBLE_PRECISION + "=" + doublePrecision);
 
+            final boolean positionsEnabled = Boolean.parseBoolean(p
+                    .getProperty(Options.POSITIONS_ENABLED,
+                            Options.DEFAULT_POSITIONS_ENABLED));
+    
+            if (log.isInfoEnabled())
+                log.info(Options.POSITIONS_ENABLED + "=" + positionsEnabled);
+
+            final boolean statisticsEnabled = Boolean.parseBoolean(p
+                    .getProperty(Options.STATISTICS_ENABLED,
+                            Options.DEFAULT_STATISTICS_ENABLED));
+    
+            if (log.isInfoEnabled())
+                log.info(Options.STATISTICS_ENABLED + "=" + statisticsEnabled);
+
             indexMetadata.setTupleSerializer(new FullTextIndexTupleSerializer<V>(
                     keyBuilderFactory,//
                     DefaultTupleSerializer.getDefaultLeafKeysCoder(),//
-                    EmptyRabaValueCoder.INSTANCE,//
-                    fieldsEnabled//
+                    positionsEnabled || statisticsEnabled ? SimpleRabaCoder.INSTANCE
+                            : EmptyRabaValueCoder.INSTANCE,//
+                    fieldsEnabled,//
+                    positionsEnabled,//
+                    statisticsEnabled//
             ));
             
             indexManager.registerIndex(indexMetadata);
@@ -703,6 +957,9 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
             if (log.isInfoEnabled())
                 log.info("Registered new text index: name=" + name);
 
+            if (statisticsEnabled)
+                createStatisticsIndex();
+
             /*
              * Note: defer resolution of the index.
              */
@@ -723,6 +980,9 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 
         assertWritable();
 
+        // discard anything buffered for a bulk load.
+        abortBulkLoad();
+
         final IIndexManager indexManager = getIndexManager();
 
         final IResourceLock resourceLock = acquireExclusiveLock();
@@ -731,6 +991,15 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 
             indexManager.dropIndex(getNamespace() +"."+ NAME_SEARCH);
 
+            if (getStatisticsIndex() != null) {
+
+                indexManager.dropIndex(getNamespace() + "."
+                        + NAME_SEARCH_STATISTICS);
+
+                statisticsIndex = null;
+
+            }
+
         } finally {
 
             unlock(resourceLock);
@@ -739,6 +1008,125 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
         
     }
 
+    /**
+     * Enter bulk load mode. Until the bulk load is ended, the tuples generated
+     * when documents are indexed are buffered in sorted runs (spilling onto
+     * temporary files as necessary) rather than being written onto the index
+     * as each {@link TokenBuffer} is flushed. The buffered tuples are merged
+     * and written onto the index in key order by {@link #flushBulkLoad()} and
+     * {@link #endBulkLoad()}, which the application MUST invoke before it
+     * commits. The buffered tuples are not visible to search until then.
+     * <p>
+     * Note: The statistics for each field (if enabled) are buffered as well.
+     * Since nothing is written on the indices until the bulk load is flushed,
+     * concurrent threads may index documents using their own
+     * {@link TokenBuffer}s while in bulk load mode.
+     * 
+     * @throws IllegalStateException
+     *             if already in bulk load mode.
+     * 
+     * @see Options#BULK_LOAD_RUN_CAPACITY
+     */
+    synchronized public void beginBulkLoad() {
+
+        assertWritable();
+
+        if (bulkLoadBuffer != null)
+            throw new IllegalStateException();
+
+        final File tmpDir = new File(getProperty(
+                com.bigdata.journal.Options.TMP_DIR,
+                System.getProperty("java.io.tmpdir")));
+
+        bulkLoadBuffer = new TextIndexRunBuffer(this, bulkLoadRunCapacity,
+                tmpDir);
+
+        if (log.isInfoEnabled())
+            log.info("namespace=" + getNamespace());
+
+    }
+
+    /**
+     * Return <code>true</code> iff in bulk load mode.
+     * 
+     * @see #beginBulkLoad()
+     */
+    public boolean isBulkLoad() {
+
+        return bulkLoadBuffer != null;
+
+    }
+
+    /**
+     * The buffer for the bulk load and <code>null</code> if not in bulk load
+     * mode.
+     */
+    TextIndexRunBuffer getBulkLoadBuffer() {
+
+        return bulkLoadBuffer;
+
+    }
+
+    /**
+     * Merge the tuples buffered since the bulk load began (or since the last
+     * flush) and write them onto the index in key order. This is a NOP if not
+     * in bulk load mode. Bulk load mode is NOT ended.
+     * 
+     * @return The #of tuples written on the index.
+     */
+    public long flushBulkLoad() {
+
+        final TextIndexRunBuffer buffer = bulkLoadBuffer;
+
+        if (buffer == null)
+            return 0L;
+
+        return buffer.flush();
+
+    }
+
+    /**
+     * Merge and write any buffered tuples onto the index and then end bulk
+     * load mode. This is a NOP if not in bulk load mode.
+     * 
+     * @return The #of tuples written on the index.
+     */
+    synchronized public long endBulkLoad() {
+
+        final TextIndexRunBuffer buffer = bulkLoadBuffer;
+
+        if (buffer == null)
+            return 0L;
+
+        try {
+
+            return buffer.flush();
+
+        } finally {
+
+            bulkLoadBuffer = null;
+
+        }
+
+    }
+
+    /**
+     * Discard any buffered tuples and end bulk load mode. This is a NOP if not
+     * in bulk load mode.
+     */
+    synchronized public void abortBulkLoad() {
+
+        final TextIndexRunBuffer buffer = bulkLoadBuffer;
+
+        if (buffer == null)
+            return;
+
+        buffer.clear();
+
+        bulkLoadBuffer = null;
+
+    }
+
     /**
      * Return the token analyzer to be used for the given language code.
      * 
@@ -828,6 +1216,15 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
         
         try {
 
+            final PositionIncrementAttribute posIncr = tokenStream
+                    .addAttribute(PositionIncrementAttribute.class);
+
+            /*
+             * Note: The position increment accounts for the tokens which were
+             * removed by the analyzer (e.g., stopwords).
+             */
+            int position = -1;
+            
             tokenStream.reset();   
 
             while (tokenStream.incrementToken()) {
@@ -835,7 +1232,10 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
                 final CharTermAttribute term = tokenStream
                         .getAttribute(CharTermAttribute.class);
                 
-                buffer.add(docId, fieldId, term.toString());
+                position += posIncr.getPositionIncrement();
+                
+                buffer.add(docId, fieldId, term.toString(),
+                        position < 0 ? 0 : position);
 
                 n++;
 
@@ -956,23 +1356,169 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
      */
     public Hiterator<Hit<V>> search(final FullTextQuery query) {
         
+        if (isTopKQuery(query)) {
+
+            // tokenize the query.
+            final TermFrequencyData<V> qdata = tokenize(query);
+
+            // No terms after stopword extraction
+            if (qdata == null)
+                return new Hiterator<Hit<V>>(new Hit[] {});
+
+            if (log.isInfoEnabled())
+                log.info("Top-K evaluation: maxRank=" + query.getMaxRank());
+
+            return new Hiterator<Hit<V>>(new TopKHitIterator<V>(this, qdata,
+                    query));
+
+        }
+
 		final Hit<V>[] a = _search(query);
     	
         return new Hiterator<Hit<V>>(a);
 
     }
     
+    /**
+     * Return <code>true</code> iff the query will be evaluated incrementally
+     * by a {@link TopKHitIterator}.
+     * 
+     * @see Options#TOP_K_MAX_RANK
+     */
+    protected boolean isTopKQuery(final FullTextQuery query) {
+
+        if (query.getQuery() == null || topKMaxRank <= 0
+                || query.getMaxRank() > topKMaxRank)
+            return false;
+
+        if (query.isPrefixMatch() || query.isMatchExact()
+                || query.isMatchAllTerms() || query.getMatchRegex() != null
+                || query.isProximityQuery()
+                || query.getScoringModel() != ScoringModelEnum.Cosine)
+            return false;
+
+        if (query.getMaxCosine() < 1.0d)
+            return false;
+
+        final Object tupleSer = getIndex().getIndexMetadata()
+                .getTupleSerializer();
+
+        if (tupleSer instanceof FullTextIndexTupleSerializer
+                && ((FullTextIndexTupleSerializer<?>) tupleSer)
+                        .isFieldsEnabled()) {
+
+            // Postings for a term are not unique by docId.
+            return false;
+
+        }
+
+        // The cached hits are cheaper.
+        return !isCached(query);
+
+    }
+
+    /**
+     * Return the hit cache -or- <code>null</code> if the cache is disabled.
+     * 
+     * @see Options#HIT_CACHE_SIZE
+     * @see Options#HIT_CACHE_MAX_BYTES
+     */
+    public HitCache getHitCache() {
+
+        return cache;
+
+    }
+
+    /**
+     * Return the commit time from which this view reads -or- <code>null</code>
+     * if the view does not read from a commit point (the unisolated view, a
+     * read-committed view, or a read/write transaction). Only views reading
+     * from a commit point use the {@link HitCache} since the hits for any
+     * other view could become stale.
+     */
+    protected Long getHitCacheCommitTime() {
+
+        final long timestamp = getTimestamp();
+
+        if (TimestampUtility.isReadCommittedOrUnisolated(timestamp)
+                || TimestampUtility.isReadWriteTx(timestamp))
+            return null;
+
+        final Long commitTime = getCommitTime();
+
+        if (commitTime != null)
+            return commitTime;
+
+        /*
+         * A read-only tx or historical read whose commit time is not known.
+         * The timestamp still identifies an immutable view, but entries will
+         * not be shared with other timestamps reading on the same commit
+         * point.
+         */
+        return timestamp;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the hits for the query are cached.
+     */
+    private boolean isCached(final FullTextQuery query) {
+
+        final Long commitTime = cache == null ? null : getHitCacheCommitTime();
+
+        if (commitTime == null)
+            return false;
+
+        return cache.containsKey(new HitCache.QueryKey(getNamespace(),
+                commitTime, query));
+
+    }
+
+    /**
+     * Return the cached hits for the query -or- <code>null</code> if they are
+     * not cached.
+     */
+    @SuppressWarnings("unchecked")
+    private Hit<V>[] getCachedHits(final FullTextQuery query) {
+
+        final Long commitTime = cache == null ? null : getHitCacheCommitTime();
+
+        if (commitTime == null)
+            return null;
+
+        return (Hit<V>[]) cache.get(new HitCache.QueryKey(getNamespace(),
+                commitTime, query));
+
+    }
+
+    /**
+     * Cache the ranked hits for the query.
+     */
+    private void putCachedHits(final FullTextQuery query, final Hit<V>[] a) {
+
+        final Long commitTime = cache == null ? null : getHitCacheCommitTime();
+
+        if (commitTime == null)
+            return;
+
+        cache.put(new HitCache.QueryKey(getNamespace(), commitTime, query), a,
+                16L + (long) a.length * HitCache.BYTES_PER_HIT);
+
+    }
+    
     /**
      * Perform a range count on a full text query.
      */
     public int count(final FullTextQuery query) {
     	
-    	if (cache.containsKey(query)) {
+    	final Hit<V>[] cached = getCachedHits(query);
+    	
+    	if (cached != null) {
     		
         	if (log.isInfoEnabled())
         		log.info("found hits in cache");
         	
-    		return cache.get(query).length;
+    		return cached.length;
     		
         } else {
         	
@@ -987,7 +1533,7 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
         // No terms after stopword extraction
         if (qdata == null) {
         	
-        	cache.put(query, new Hit[] {});
+        	putCachedHits(query, new Hit[] {});
         	
         	return 0;
         			
@@ -999,7 +1545,8 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
          * not specified a regex.
          */
         if (qdata.distinctTermCount() == 1 &&
-        		!query.isMatchExact() && query.getMatchRegex() == null) {
+        		!query.isMatchExact() && query.getMatchRegex() == null &&
+        		!query.isProximityQuery()) {
         	
         	final boolean prefixMatch = query.isPrefixMatch();
         	
@@ -1131,12 +1678,14 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
         
         Hit<V>[] a;
         
-        if (cache.containsKey(cacheKey)) {
+        final Hit<V>[] cached = getCachedHits(cacheKey);
+        
+        if (cached != null) {
         	
         	if (log.isInfoEnabled())
         		log.info("found hits in cache");
         	
-        	a = cache.get(cacheKey);
+        	a = cached;
         	
         } else {
         	
@@ -1149,20 +1698,23 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
             // No terms after stopword extraction
             if (qdata == null) {
             	
-            	cache.put(cacheKey, a = new Hit[] {});
+            	putCachedHits(cacheKey, a = new Hit[] {});
             	
             	return a;
             			
             }
             
-            a = executeQuery(qdata, prefixMatch, timeout, unit);
+            a = executeQuery(qdata, prefixMatch, timeout, unit,
+                    query.isProximityQuery(),
+                    query.getScoringModel() == ScoringModelEnum.BM25 ? getBM25()
+                            : null);
             
 	        if (a.length == 0) {
 	        	
 	            log.info("No hits: languageCode=[" + languageCode + "], query=["
 	                    + queryStr + "]");
 	            
-	            cache.put(cacheKey, a);
+	            putCachedHits(cacheKey, a);
 	            
 	            return a; 
 	            
@@ -1173,7 +1725,8 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 	         * than the number of search tokens.  It's also an optimization to
 	         * run the pruning if we're going to do matchExact.
 	         */
-	        if ((matchAllTerms || matchExact) && qdata.distinctTermCount() > 1) {
+	        if ((matchAllTerms || matchExact || query.isProximityQuery())
+	                && qdata.distinctTermCount() > 1) {
 	        	
 		        final int nterms = qdata.terms.size();
 		        
@@ -1206,6 +1759,17 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 	        	
 	        }
 	        
+	        /*
+	         * Evaluate the phrase and NEAR/k constraints against the positions
+	         * of the search terms.
+	         */
+	        if (query.isProximityQuery()) {
+	        	
+	        	a = matchProximity(a, qdata, query.isMatchPhrase(),
+	        			query.getMatchNear());
+	        	
+	        }
+	        
 	        /*
 	         * Delegate match exact to subclasses.
 	         */
@@ -1220,7 +1784,7 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 	            log.warn("No hits after matchAllTerms pruning: languageCode=[" + languageCode + "], query=["
 	                    + queryStr + "]");
 	            
-	            cache.put(cacheKey, a);
+	            putCachedHits(cacheKey, a);
 	            
 	            return a; 
 	            
@@ -1250,7 +1814,7 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 	            log.warn("No hits after regex pruning: languageCode=[" + languageCode + "], query=["
 	                    + queryStr + "], regex=[" + regex + "]");
 	            
-	            cache.put(cacheKey, a);
+	            putCachedHits(cacheKey, a);
 	            
 	            return a; 
 	            
@@ -1283,7 +1847,7 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 	        	a[i].setRank(i+1);
 	        }
 	        
-	        cache.put(cacheKey, a);
+	        putCachedHits(cacheKey, a);
         
         }
         
@@ -1438,8 +2002,45 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
     protected Hit<V>[] executeQuery(final TermFrequencyData<V> qdata,
     		final boolean prefixMatch, final long timeout, final TimeUnit unit) {
     	
+        return executeQuery(qdata, prefixMatch, timeout, unit, false/* positions */);
+        
+    }
+    
+    /**
+     * Variant which optionally collects the positions of the search terms on
+     * each {@link Hit}.
+     * 
+     * @param positions
+     *            When <code>true</code> the positions of the search terms are
+     *            reported to each {@link Hit}.
+     */
+    protected Hit<V>[] executeQuery(final TermFrequencyData<V> qdata,
+    		final boolean prefixMatch, final long timeout, final TimeUnit unit,
+    		final boolean positions) {
+    	
+        return executeQuery(qdata, prefixMatch, timeout, unit, positions,
+                null/* bm25 */);
+        
+    }
+    
+    /**
+     * Variant which optionally ranks the hits using {@link BM25}.
+     * 
+     * @param bm25
+     *            When non-<code>null</code> the relevance of each {@link Hit}
+     *            is its BM25 score. The <code>idf</code> of each search term
+     *            is computed from the range count for that term.
+     */
+    protected Hit<V>[] executeQuery(final TermFrequencyData<V> qdata,
+    		final boolean prefixMatch, final long timeout, final TimeUnit unit,
+    		final boolean positions, final BM25 bm25) {
+    	
         final IHitCollector<V> hits;
         
+        // The range count tasks, in the same order as the search terms.
+        final List<CountIndexTask<V>> countTasks = new ArrayList<CountIndexTask<V>>(
+                qdata.distinctTermCount());
+        
         if (qdata.distinctTermCount() == 1) {
         	
         	final Map.Entry<String, ITermMetadata> e = qdata.getSingletonEntry();
@@ -1451,13 +2052,12 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
             final CountIndexTask<V> task1 = new CountIndexTask<V>(termText, 0, 1,
             		prefixMatch, md.getLocalTermWeight(), this);
             
+            countTasks.add(task1);
+            
             hits = new SingleTokenHitCollector<V>(task1);
         	
         } else {
         	
-            final List<CountIndexTask<V>> tasks = new ArrayList<CountIndexTask<V>>(
-                    qdata.distinctTermCount());
-
             int i = 0;
             for (Map.Entry<String, ITermMetadata> e : qdata.terms.entrySet()) {
 
@@ -1465,12 +2065,12 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 
                 final ITermMetadata md = e.getValue();
 
-                tasks.add(new CountIndexTask<V>(termText, i++, qdata.terms.size(), 
+                countTasks.add(new CountIndexTask<V>(termText, i++, qdata.terms.size(), 
                 		prefixMatch, md.getLocalTermWeight(), this));
 
             }
             
-            hits = new MultiTokenHitCollector<V>(tasks);
+            hits = new MultiTokenHitCollector<V>(countTasks);
         	
         }
         
@@ -1480,6 +2080,18 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
             final List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(
                     qdata.distinctTermCount());
 
+            /*
+             * The expansion of a prefix search term is cached as the postings
+             * which were read for that term so it may be reused by queries
+             * which differ in their other search terms.
+             */
+            final Long commitTime = cache != null && prefixMatch
+                    && !positions && bm25 == null ? getHitCacheCommitTime()
+                    : null;
+
+            // The postings being recorded for the prefix search terms.
+            final Map<HitCache.PrefixKey, HitCache.Postings<V>> recorded = new HashMap<HitCache.PrefixKey, HitCache.Postings<V>>();
+
             int i = 0;
             for (Map.Entry<String, ITermMetadata> e : qdata.terms.entrySet()) {
 
@@ -1487,8 +2099,51 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 
                 final ITermMetadata md = e.getValue();
 
-                tasks.add(new ReadIndexTask<V>(termText, i++, qdata.terms.size(),
-                		prefixMatch, md.getLocalTermWeight(), this, hits));
+                final int termNdx = i++;
+
+                final int nterms = qdata.terms.size();
+
+                final double queryTermWeight = bm25 == null ? md
+                        .getLocalTermWeight() : md.termFreq()
+                        * bm25.idf(countTasks.get(termNdx).getRangeCount());
+
+                HitCache.Postings<V> postings = null;
+
+                if (commitTime != null) {
+
+                    final HitCache.PrefixKey key = new HitCache.PrefixKey(
+                            getNamespace(), commitTime, termText);
+
+                    @SuppressWarnings("unchecked")
+                    final HitCache.Postings<V> cached = (HitCache.Postings<V>) cache
+                            .get(key);
+
+                    if (cached != null) {
+
+                        // Replay the cached expansion of the prefix.
+                        tasks.add(new Callable<Object>() {
+                            @Override
+                            public Object call() throws Exception {
+                                return cached.replay(hits, termNdx, nterms,
+                                        queryTermWeight);
+                            }
+                        });
+
+                        continue;
+
+                    }
+
+                    postings = new HitCache.Postings<V>((int) Math.min(
+                            Integer.MAX_VALUE, cache.getMaxEntryBytes()
+                                    / HitCache.BYTES_PER_POSTING));
+
+                    recorded.put(key, postings);
+
+                }
+
+                tasks.add(new ReadIndexTask<V>(termText, termNdx, nterms,
+                		prefixMatch, queryTermWeight, this, hits,
+                		positions, bm25, postings));
 
             }
 
@@ -1506,6 +2161,16 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 	                log.info("read time: " + readTime);
                 }
                 
+                for (Map.Entry<HitCache.PrefixKey, HitCache.Postings<V>> e : recorded
+                        .entrySet()) {
+
+                    // Note: not cached if the scan was truncated.
+                    if (e.getValue().isComplete())
+                        cache.put(e.getKey(), e.getValue(), e.getValue()
+                                .bytes());
+
+                }
+                
             } catch (InterruptedException ex) {
 
             	if (log.isInfoEnabled()) {
@@ -1533,6 +2198,246 @@ public class FullTextIndex<V extends Comparable<V>> extends AbstractRelation {
 
     }
     
+    /**
+     * Retain only those hits which satisfy the phrase and/or NEAR/k
+     * constraints. This uses the positions which were collected on each
+     * {@link Hit} when the index was read, so nothing is materialized. The
+     * positions are released once the constraints have been checked.
+     * 
+     * @param hits
+     *            The hits.
+     * @param qdata
+     *            The search terms, including their positions in the query.
+     * @param matchPhrase
+     *            When <code>true</code> the search terms must occur at the
+     *            same relative positions as in the query.
+     * @param matchNear
+     *            When non-negative, the search terms must all occur within a
+     *            window having at most this many other positions.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the index does not store positions.
+     * 
+     * @see Options#POSITIONS_ENABLED
+     */
+    protected Hit<V>[] matchProximity(final Hit<V>[] hits,
+            final TermFrequencyData<V> qdata, final boolean matchPhrase,
+            final int matchNear) {
+
+        final int nterms = qdata.terms.size();
+
+        // The positions of each search term within the query.
+        final int[][] qpos = new int[nterms][];
+        {
+            int i = 0;
+            for (ITermMetadata md : qdata.terms.values()) {
+                qpos[i++] = md.getPositions();
+            }
+        }
+
+        final Hit<V>[] tmp = new Hit[hits.length];
+
+        final int[][] dpos = new int[nterms][];
+
+        int n = 0;
+
+        for (Hit<V> hit : hits) {
+
+            boolean ok = true;
+
+            for (int i = 0; i < nterms && ok; i++) {
+
+                dpos[i] = hit.getPositions(i);
+
+                if (dpos[i] == null && hit.hasTerm(i))
+                    throw new UnsupportedOperationException(
+                            "Positions are not enabled: "
+                                    + Options.POSITIONS_ENABLED);
+
+                if (dpos[i] == null || dpos[i].length == 0)
+                    ok = false;
+
+            }
+
+            hit.clearPositions();
+
+            if (!ok)
+                continue;
+
+            if (matchPhrase && !isPhrase(qpos, dpos))
+                continue;
+
+            if (matchNear >= 0 && !isNear(dpos, matchNear))
+                continue;
+
+            tmp[n++] = hit;
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info("hits before=" + hits.length + ", after=" + n);
+
+        if (n == hits.length)
+            return hits;
+
+        final Hit<V>[] a = new Hit[n];
+
+        System.arraycopy(tmp, 0, a, 0, n);
+
+        return a;
+
+    }
+
+    /**
+     * Return <code>true</code> iff there is some offset at which each search
+     * term occurs in the document at each of its positions in the query plus
+     * that offset.
+     * 
+     * @param qpos
+     *            The positions of each search term in the query.
+     * @param dpos
+     *            The positions of each search term in the document.
+     */
+    static boolean isPhrase(final int[][] qpos, final int[][] dpos) {
+
+        // Anchor on the first occurrence of the first search term.
+        final int anchor = qpos[0][0];
+
+        for (int p : dpos[0]) {
+
+            final int offset = p - anchor;
+
+            boolean ok = true;
+
+            for (int i = 0; i < qpos.length && ok; i++) {
+
+                for (int q : qpos[i]) {
+
+                    if (Arrays.binarySearch(dpos[i], offset + q) < 0) {
+
+                        ok = false;
+
+                        break;
+
+                    }
+
+                }
+
+            }
+
+            if (ok)
+                return true;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Return <code>true</code> iff some window of the document contains an
+     * occurrence of each search term and has at most <i>k</i> other positions.
+     * The minimum window is found by advancing whichever search term has the
+     * least position.
+     * 
+     * @param dpos
+     *            The positions of each search term in the document.
+     * @param k
+     *            The maximum #of other positions within the window.
+     */
+    static boolean isNear(final int[][] dpos, final int k) {
+
+        final int nterms = dpos.length;
+
+        final int[] ndx = new int[nterms];
+
+        while (true) {
+
+            int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE, argmin = -1;
+
+            for (int i = 0; i < nterms; i++) {
+
+                final int p = dpos[i][ndx[i]];
+
+                if (p < min) {
+                    min = p;
+                    argmin = i;
+                }
+
+                if (p > max)
+                    max = p;
+
+            }
+
+            if ((max - min) - (nterms - 1) <= k)
+                return true;
+
+            if (++ndx[argmin] == dpos[argmin].length)
+                return false;
+
+        }
+
+    }
+
+    /**
+     * Register the statistics index. This is invoked by {@link #create()} when
+     * {@link Options#STATISTICS_ENABLED} is specified.
+     */
+    protected void createStatisticsIndex() {
+
+        final String name = getNamespace() + "." + NAME_SEARCH_STATISTICS;
+
+        final IIndexManager indexManager = getIndexManager();
+
+        final IndexMetadata indexMetadata = new IndexMetadata(indexManager,
+                getProperties(), name, UUID.randomUUID(), IndexTypeEnum.BTree);
+
+        indexManager.registerIndex(indexMetadata);
+
+        if (log.isInfoEnabled())
+            log.info("Registered new statistics index: name=" + name);
+
+    }
+
+    /**
+     * Return the {@link BM25} scorer for the current statistics of the index.
+     * 
+     * @throws UnsupportedOperationException
+     *             if the index does not record term statistics.
+     * 
+     * @see Options#STATISTICS_ENABLED
+     */
+    protected BM25 getBM25() {
+
+        final IIndex ndx = getStatisticsIndex();
+
+        if (ndx == null)
+            throw new UnsupportedOperationException(
+                    "Term statistics not enabled: "
+                            + Options.STATISTICS_ENABLED);
+
+        final Map<Integer, long[]> stats = new HashMap<Integer, long[]>();
+
+        final ITupleIterator<?> itr = ndx.rangeIterator();
+
+        while (itr.hasNext()) {
+
+            final ITuple<?> tuple = itr.next();
+
+            stats.put(TextStatisticsWriteProc.decodeKey(tuple.getKey()),
+                    TextStatisticsWriteProc.decodeVal(tuple.getValue()));
+
+        }
+
+        final BM25 bm25 = new BM25(bm25k1, bm25b, stats);
+
+        if (log.isInfoEnabled())
+            log.info(bm25);
+
+        return bm25;
+
+    }
+
     /**
      * Subclasses can override this method to do exact match processing.  This
      * involves materializing the hits into their original text values and
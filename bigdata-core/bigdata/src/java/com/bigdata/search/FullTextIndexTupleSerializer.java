@@ -42,6 +42,8 @@ import com.bigdata.btree.keys.IKeyBuilderFactory;
 import com.bigdata.btree.keys.KeyBuilder;
 import com.bigdata.btree.raba.codec.IRabaCoder;
 import com.bigdata.io.ByteArrayBuffer;
+import com.bigdata.io.DataInputBuffer;
+import com.bigdata.io.DataOutputBuffer;
 import com.bigdata.util.Bytes;
 import com.bigdata.util.BytesUtil;
 
@@ -68,6 +70,30 @@ public class FullTextIndexTupleSerializer<V extends Comparable<V>> extends
         return fieldsEnabled;
     }
 
+    private boolean positionsEnabled;
+
+    /**
+     * When <code>true</code> the value of each tuple is the delta encoded
+     * positions of the token within the field.
+     * 
+     * @see FullTextIndex.Options#POSITIONS_ENABLED
+     */
+    public boolean isPositionsEnabled() {
+        return positionsEnabled;
+    }
+
+    private boolean statisticsEnabled;
+
+    /**
+     * When <code>true</code> the value of each tuple begins with the term
+     * frequency and the length of the field.
+     * 
+     * @see FullTextIndex.Options#STATISTICS_ENABLED
+     */
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
 //    public boolean isDoublePrecision() {
 //        return doublePrecision;
 //    }
@@ -110,10 +136,64 @@ public class FullTextIndexTupleSerializer<V extends Comparable<V>> extends
 //            final boolean doublePrecision//
             ) {
    
+        this(keyBuilderFactory, leafKeysCoder, leafValsCoder, fieldsEnabled,
+                false/* positionsEnabled */);
+        
+    }
+
+    /**
+     * @param keyBuilderFactory
+     *            This factory governs the Unicode collation order that will be
+     *            imposed on the indexed tokens.
+     * @param leafKeysCoder
+     *            The coder used for the leaf keys (prefix coding is fine).
+     * @param leafValsCoder
+     *            The coder used for the leaf values. This must be able to code
+     *            non-empty values when <i>positionsEnabled</i> is
+     *            <code>true</code>.
+     * @param fieldsEnabled
+     *            When <code>true</code> the <code>fieldId</code> will be
+     *            included as a component in the generated key. When
+     *            <code>false</code> it will not be present in the generated
+     *            key.
+     * @param positionsEnabled
+     *            When <code>true</code> the positions of the token within the
+     *            field will be stored in the value.
+     */
+    public FullTextIndexTupleSerializer(//
+            final IKeyBuilderFactory keyBuilderFactory,//
+            final IRabaCoder leafKeysCoder, //
+            final IRabaCoder leafValsCoder,//
+            final boolean fieldsEnabled,//
+            final boolean positionsEnabled//
+            ) {
+   
+        this(keyBuilderFactory, leafKeysCoder, leafValsCoder, fieldsEnabled,
+                positionsEnabled, false/* statisticsEnabled */);
+        
+    }
+
+    /**
+     * @param statisticsEnabled
+     *            When <code>true</code> the term frequency and the length of
+     *            the field will be stored in the value.
+     */
+    public FullTextIndexTupleSerializer(//
+            final IKeyBuilderFactory keyBuilderFactory,//
+            final IRabaCoder leafKeysCoder, //
+            final IRabaCoder leafValsCoder,//
+            final boolean fieldsEnabled,//
+            final boolean positionsEnabled,//
+            final boolean statisticsEnabled//
+            ) {
+   
         super(keyBuilderFactory, leafKeysCoder, leafValsCoder);
 
         this.fieldsEnabled = fieldsEnabled;
-//        this.doublePrecision = doublePrecision;
+        
+        this.positionsEnabled = positionsEnabled;
+        
+        this.statisticsEnabled = statisticsEnabled;
         
     }
 
@@ -171,6 +251,20 @@ public class FullTextIndexTupleSerializer<V extends Comparable<V>> extends
     @Override
     public byte[] serializeVal(final ITermDocVal obj) {
 
+        if (positionsEnabled || statisticsEnabled) {
+
+            final DataOutputBuffer buf = new DataOutputBuffer(16);
+
+            if (statisticsEnabled)
+                encodeStatistics(buf, obj.termFreq(), obj.getFieldLength());
+
+            if (positionsEnabled)
+                encodePositions(buf, obj.getPositions());
+
+            return buf.toByteArray();
+
+        }
+        
     	return null;
     	
 //        final ITermDocVal val = (ITermDocVal) obj;
@@ -285,8 +379,148 @@ public class FullTextIndexTupleSerializer<V extends Comparable<V>> extends
 //
 //        }
 //
+        int termFreq = -1, fieldLength = -1;
+        int[] positions = null;
+        if ((statisticsEnabled || positionsEnabled) && !tuple.isNull()) {
+
+            final DataInputBuffer vbuf = tuple.getValueStream();
+            
+            if (statisticsEnabled) {
+                final int[] a = decodeStatistics(vbuf);
+                termFreq = a[0];
+                fieldLength = a[1];
+            }
+            
+            if (positionsEnabled)
+                positions = decodePositions(vbuf);
+            
+        }
+
         return new ReadOnlyTermDocRecord<V>(null/* token */, docId, fieldId,
-                /* termFreq, */ termWeight);
+                termFreq, fieldLength, termWeight, positions);
+
+    }
+
+    /**
+     * Write the #of positions followed by the delta from each position to
+     * the previous position (the first delta is from ZERO). Both are packed,
+     * so the common case of a short field or a rare token costs a few bytes.
+     * 
+     * @param buf
+     *            The buffer.
+     * @param positions
+     *            The positions in non-decreasing order (MAY be
+     *            <code>null</code>, which is encoded as no positions).
+     */
+    static public void encodePositions(final ByteArrayBuffer buf,
+            final int[] positions) {
+
+        if (positions == null) {
+
+            buf.packLong(0);
+
+            return;
+
+        }
+
+        buf.packLong(positions.length);
+
+        int last = 0;
+
+        for (int position : positions) {
+
+            if (position < last)
+                throw new IllegalArgumentException("Positions not ordered");
+
+            buf.packLong(position - last);
+
+            last = position;
+
+        }
+
+    }
+
+    /**
+     * Decode the positions written by
+     * {@link #encodePositions(ByteArrayBuffer, int[])}.
+     * 
+     * @param in
+     *            The input stream, positioned on the first byte of the encoded
+     *            positions.
+     * 
+     * @return The positions.
+     */
+    static public int[] decodePositions(final DataInputBuffer in) {
+
+        try {
+
+            final int n = in.unpackInt();
+
+            final int[] positions = new int[n];
+
+            int last = 0;
+
+            for (int i = 0; i < n; i++) {
+
+                positions[i] = last = last + in.unpackInt();
+
+            }
+
+            return positions;
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+    }
+
+    /**
+     * Write the term frequency followed by the #of tokens in the field. Both
+     * are packed.
+     * 
+     * @param buf
+     *            The buffer.
+     * @param termFreq
+     *            The #of occurrences of the token within the field.
+     * @param fieldLength
+     *            The #of tokens in the field.
+     */
+    static public void encodeStatistics(final ByteArrayBuffer buf,
+            final int termFreq, final int fieldLength) {
+
+        if (termFreq < 0 || fieldLength < 0)
+            throw new IllegalArgumentException();
+
+        buf.packLong(termFreq);
+
+        buf.packLong(fieldLength);
+
+    }
+
+    /**
+     * Decode the data written by
+     * {@link #encodeStatistics(ByteArrayBuffer, int, int)}.
+     * 
+     * @param in
+     *            The input stream, positioned on the first byte of the encoded
+     *            statistics.
+     * 
+     * @return An array containing the term frequency and the #of tokens in
+     *         the field.
+     */
+    static public int[] decodeStatistics(final DataInputBuffer in) {
+
+        try {
+
+            return new int[] { in.unpackInt(), in.unpackInt() };
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
 
     }
 
@@ -295,7 +529,17 @@ public class FullTextIndexTupleSerializer<V extends Comparable<V>> extends
      */
     private static final transient byte VERSION0 = 0;
 
-    private static final transient byte VERSION = VERSION0;
+    /**
+     * Adds {@link #positionsEnabled}.
+     */
+    private static final transient byte VERSION1 = 1;
+
+    /**
+     * Adds {@link #statisticsEnabled}.
+     */
+    private static final transient byte VERSION2 = 2;
+
+    private static final transient byte VERSION = VERSION2;
 
     public void readExternal(final ObjectInput in) throws IOException,
             ClassNotFoundException {
@@ -303,11 +547,15 @@ public class FullTextIndexTupleSerializer<V extends Comparable<V>> extends
         final byte version = in.readByte();
         switch (version) {
         case VERSION0:
+        case VERSION1:
+        case VERSION2:
             break;
         default:
             throw new IOException("unknown version=" + version);
         }
         this.fieldsEnabled = in.readBoolean();
+        this.positionsEnabled = version >= VERSION1 ? in.readBoolean() : false;
+        this.statisticsEnabled = version >= VERSION2 ? in.readBoolean() : false;
 //        this.doublePrecision = in.readBoolean();
 
     }
@@ -316,6 +564,8 @@ public class FullTextIndexTupleSerializer<V extends Comparable<V>> extends
         super.writeExternal(out);
         out.writeByte(VERSION);
         out.writeBoolean(fieldsEnabled);
+        out.writeBoolean(positionsEnabled);
+        out.writeBoolean(statisticsEnabled);
 //        out.writeBoolean(doublePrecision);
     }
 
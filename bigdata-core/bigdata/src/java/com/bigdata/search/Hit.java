@@ -1,5 +1,6 @@
 package com.bigdata.search;
 
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
@@ -31,6 +32,12 @@ public class Hit<V extends Comparable<V>> implements IHit<V>,
     /** Rank order for this hit */
     private int rank;
 
+    /**
+     * The positions of each search term within the document -or-
+     * <code>null</code> unless positions were requested for the search.
+     */
+    private int[][] positions;
+
     /**
      * Ctor used in conjunction with a {@link ConcurrentHashMap} to insert
      * objects into the result set.
@@ -85,6 +92,82 @@ public class Hit<V extends Comparable<V>> implements IHit<V>,
         
     }
     
+    /**
+     * Return <code>true</code> iff a component of the cosine has been reported
+     * for the given search term.
+     * 
+     * @param termNdx
+     *            The index of the search term.
+     */
+    synchronized boolean hasTerm(final int termNdx) {
+        
+        return searchTerms[termNdx];
+        
+    }
+
+    /**
+     * Add the positions at which a search term occurs in the document. The
+     * positions are merged with any positions already reported for that term
+     * (a prefix match may report several tokens for the same term).
+     * 
+     * @param termNdx
+     *            The index of the search term.
+     * @param a
+     *            The positions in non-decreasing order (ignored if
+     *            <code>null</code>).
+     */
+    synchronized void addPositions(final int termNdx, final int[] a) {
+
+        if (a == null)
+            return;
+
+        if (positions == null)
+            positions = new int[searchTerms.length][];
+
+        final int[] b = positions[termNdx];
+
+        if (b == null) {
+
+            positions[termNdx] = a;
+
+        } else {
+
+            final int[] c = new int[a.length + b.length];
+
+            System.arraycopy(a, 0, c, 0, a.length);
+
+            System.arraycopy(b, 0, c, a.length, b.length);
+
+            Arrays.sort(c);
+
+            positions[termNdx] = c;
+
+        }
+
+    }
+
+    /**
+     * The positions at which a search term occurs in the document -or-
+     * <code>null</code> if no positions were reported for that term.
+     * 
+     * @param termNdx
+     *            The index of the search term.
+     */
+    synchronized int[] getPositions(final int termNdx) {
+
+        return positions == null ? null : positions[termNdx];
+
+    }
+
+    /**
+     * Release the positions once they are no longer required.
+     */
+    synchronized void clearPositions() {
+
+        positions = null;
+
+    }
+
     synchronized public double getCosine() {
         
         return cosine;
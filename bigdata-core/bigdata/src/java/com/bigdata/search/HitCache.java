@@ -0,0 +1,637 @@
+package com.bigdata.search;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.counters.CAT;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSetAccess;
+import com.bigdata.counters.Instrument;
+import com.bigdata.journal.IIndexManager;
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+
+/**
+ * A cache for full text search results with a memory budget and a timeout.
+ * Entries are keyed by the namespace of the text index, the commit time of the
+ * view which was read, and either the {@link FullTextQuery} (the ranked hits
+ * for that query) or a prefix search term (the postings which were read for
+ * that term). Since a commit point is immutable, an entry can never be stale
+ * and may be reused by any view reading from the same commit point. Views
+ * which are not reading from a commit point do not use the cache.
+ * <p>
+ * The cache is shared by all {@link FullTextIndex} views on the same
+ * {@link IIndexManager} and is configured by the first view which uses it.
+ * The entries are evicted in LRU order when either the estimated #of bytes or
+ * the #of entries would exceed the configured maximum.
+ *
+ * @see FullTextIndex.Options#HIT_CACHE_MAX_BYTES
+ * @see FullTextIndex.Options#HIT_CACHE_SIZE
+ * @see FullTextIndex.Options#HIT_CACHE_TIMEOUT_MILLIS
+ */
+public class HitCache implements ICounterSetAccess {
+
+    final private static transient Logger log = Logger.getLogger(HitCache.class);
+
+    /**
+     * The estimated #of bytes for a cached {@link Hit}.
+     */
+    static final int BYTES_PER_HIT = 96;
+
+    /**
+     * The estimated #of bytes for a cached posting.
+     */
+    static final int BYTES_PER_POSTING = 40;
+
+    /**
+     * The shared instances.
+     */
+    static private final WeakHashMap<IIndexManager, HitCache> caches = new WeakHashMap<IIndexManager, HitCache>();
+
+    /**
+     * Return the instance shared by the views on the index manager, creating
+     * it if necessary.
+     *
+     * @param indexManager
+     *            The index manager.
+     * @param maxEntries
+     *            The maximum #of entries.
+     * @param maxBytes
+     *            The maximum estimated #of bytes for the entries.
+     * @param timeoutMillis
+     *            The time in milliseconds after which an entry will not be
+     *            reused.
+     */
+    static public HitCache getInstance(final IIndexManager indexManager,
+            final int maxEntries, final long maxBytes, final long timeoutMillis) {
+
+        if (indexManager == null)
+            throw new IllegalArgumentException();
+
+        synchronized (caches) {
+
+            HitCache cache = caches.get(indexManager);
+
+            if (cache == null) {
+
+                cache = new HitCache(maxEntries, maxBytes, timeoutMillis);
+
+                caches.put(indexManager, cache);
+
+            }
+
+            return cache;
+
+        }
+
+    }
+
+    /**
+     * A cache entry.
+     */
+    private static class Entry {
+
+        final Object value;
+
+        final long bytes;
+
+        final long expires;
+
+        Entry(final Object value, final long bytes, final long expires) {
+            this.value = value;
+            this.bytes = bytes;
+            this.expires = expires;
+        }
+
+    }
+
+    private final int maxEntries;
+
+    private final long maxBytes;
+
+    private final long timeoutNanos;
+
+    /**
+     * The entries in access order (LRU first).
+     */
+    private final LinkedHashMap<Object, Entry> map = new LinkedHashMap<Object, Entry>(
+            16, .75f, true/* accessOrder */);
+
+    /**
+     * The estimated #of bytes for the entries in the {@link #map}.
+     */
+    private long bytes = 0L;
+
+    private final CAT hitCount = new CAT();
+
+    private final CAT missCount = new CAT();
+
+    private final CAT evictionCount = new CAT();
+
+    private final CAT expiredCount = new CAT();
+
+    private final CAT rejectedCount = new CAT();
+
+    /**
+     * @param maxEntries
+     *            The maximum #of entries.
+     * @param maxBytes
+     *            The maximum estimated #of bytes for the entries.
+     * @param timeoutMillis
+     *            The time in milliseconds after which an entry will not be
+     *            reused.
+     */
+    public HitCache(final int maxEntries, final long maxBytes,
+            final long timeoutMillis) {
+
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException();
+
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException();
+
+        if (timeoutMillis <= 0)
+            throw new IllegalArgumentException();
+
+        this.maxEntries = maxEntries;
+
+        this.maxBytes = maxBytes;
+
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+    }
+
+    /**
+     * The maximum estimated #of bytes for a single entry. Larger entries are
+     * not cached.
+     */
+    public long getMaxEntryBytes() {
+
+        return maxBytes / 2;
+
+    }
+
+    /**
+     * Return <code>true</code> iff there is an unexpired entry for the key.
+     * This does not update the counters.
+     */
+    synchronized public boolean containsKey(final Object key) {
+
+        final Entry e = map.get(key);
+
+        return e != null && System.nanoTime() - e.expires <= 0;
+
+    }
+
+    /**
+     * Return the cached value.
+     *
+     * @param key
+     *            The key.
+     *
+     * @return The value -or- <code>null</code> if there is no entry for the
+     *         key or if the entry has expired.
+     */
+    public Object get(final Object key) {
+
+        final long now = System.nanoTime();
+
+        synchronized (this) {
+
+            final Entry e = map.get(key);
+
+            if (e == null) {
+
+                missCount.increment();
+
+                return null;
+
+            }
+
+            if (now - e.expires > 0) {
+
+                map.remove(key);
+
+                bytes -= e.bytes;
+
+                expiredCount.increment();
+
+                missCount.increment();
+
+                return null;
+
+            }
+
+            hitCount.increment();
+
+            return e.value;
+
+        }
+
+    }
+
+    /**
+     * Cache a value, evicting LRU entries as necessary.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @param nbytes
+     *            The estimated #of bytes for the value.
+     *
+     * @return <code>true</code> iff the value was cached (it is not cached if
+     *         it is larger than {@link #getMaxEntryBytes()}).
+     */
+    public boolean put(final Object key, final Object value, final long nbytes) {
+
+        if (key == null || value == null || nbytes < 0)
+            throw new IllegalArgumentException();
+
+        if (nbytes > getMaxEntryBytes()) {
+
+            rejectedCount.increment();
+
+            return false;
+
+        }
+
+        final Entry e = new Entry(value, nbytes, System.nanoTime()
+                + timeoutNanos);
+
+        synchronized (this) {
+
+            final Entry old = map.put(key, e);
+
+            if (old != null)
+                bytes -= old.bytes;
+
+            bytes += nbytes;
+
+            // evict LRU entries.
+            final Iterator<Map.Entry<Object, Entry>> itr = map.entrySet()
+                    .iterator();
+
+            while ((bytes > maxBytes || map.size() > maxEntries)
+                    && itr.hasNext()) {
+
+                final Map.Entry<Object, Entry> lru = itr.next();
+
+                if (lru.getValue() == e)
+                    continue;
+
+                bytes -= lru.getValue().bytes;
+
+                itr.remove();
+
+                evictionCount.increment();
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Discard all entries.
+     */
+    synchronized public void clear() {
+
+        map.clear();
+
+        bytes = 0L;
+
+    }
+
+    /**
+     * The #of entries.
+     */
+    synchronized public int size() {
+
+        return map.size();
+
+    }
+
+    /**
+     * The estimated #of bytes for the entries.
+     */
+    synchronized public long getBytes() {
+
+        return bytes;
+
+    }
+
+    public long getHitCount() {
+
+        return hitCount.get();
+
+    }
+
+    public long getMissCount() {
+
+        return missCount.get();
+
+    }
+
+    public long getEvictionCount() {
+
+        return evictionCount.get();
+
+    }
+
+    @Override
+    public CounterSet getCounters() {
+
+        final CounterSet root = new CounterSet();
+
+        root.addCounter("hitCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(hitCount.get());
+            }
+        });
+
+        root.addCounter("missCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(missCount.get());
+            }
+        });
+
+        root.addCounter("evictionCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(evictionCount.get());
+            }
+        });
+
+        root.addCounter("expiredCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(expiredCount.get());
+            }
+        });
+
+        root.addCounter("rejectedCount", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(rejectedCount.get());
+            }
+        });
+
+        root.addCounter("size", new Instrument<Integer>() {
+            @Override
+            public void sample() {
+                setValue(size());
+            }
+        });
+
+        root.addCounter("bytes", new Instrument<Long>() {
+            @Override
+            public void sample() {
+                setValue(getBytes());
+            }
+        });
+
+        return root;
+
+    }
+
+    @Override
+    public String toString() {
+
+        return getClass().getSimpleName() + "{size=" + size() + ", bytes="
+                + getBytes() + ", maxBytes=" + maxBytes + ", hitCount="
+                + getHitCount() + ", missCount=" + getMissCount()
+                + ", evictionCount=" + getEvictionCount() + "}";
+
+    }
+
+    /**
+     * The key for the ranked hits for a {@link FullTextQuery}.
+     */
+    static class QueryKey {
+
+        private final String namespace;
+
+        private final long commitTime;
+
+        private final FullTextQuery query;
+
+        QueryKey(final String namespace, final long commitTime,
+                final FullTextQuery query) {
+            this.namespace = namespace;
+            this.commitTime = commitTime;
+            this.query = query;
+        }
+
+        @Override
+        public int hashCode() {
+            return (namespace.hashCode() * 31 + (int) (commitTime ^ (commitTime >>> 32)))
+                    * 31 + query.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof QueryKey))
+                return false;
+            final QueryKey t = (QueryKey) o;
+            return commitTime == t.commitTime
+                    && namespace.equals(t.namespace) && query.equals(t.query);
+        }
+
+    }
+
+    /**
+     * The key for the postings read for a prefix search term.
+     */
+    static class PrefixKey {
+
+        private final String namespace;
+
+        private final long commitTime;
+
+        private final String termText;
+
+        PrefixKey(final String namespace, final long commitTime,
+                final String termText) {
+            this.namespace = namespace;
+            this.commitTime = commitTime;
+            this.termText = termText;
+        }
+
+        @Override
+        public int hashCode() {
+            return (namespace.hashCode() * 31 + (int) (commitTime ^ (commitTime >>> 32)))
+                    * 31 + termText.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof PrefixKey))
+                return false;
+            final PrefixKey t = (PrefixKey) o;
+            return commitTime == t.commitTime
+                    && namespace.equals(t.namespace)
+                    && termText.equals(t.termText);
+        }
+
+    }
+
+    /**
+     * The postings read for a prefix search term. These are recorded by a
+     * {@link ReadIndexTask} and may be replayed onto the {@link Hit}s for
+     * another query having the same prefix search term. This allows queries
+     * which differ in their other search terms to reuse the expansion of a
+     * common prefix.
+     *
+     * @param <V>
+     *            The generic type of the document identifier.
+     */
+    static class Postings<V extends Comparable<V>> {
+
+        /**
+         * The maximum #of postings which will be recorded.
+         */
+        private final int capacity;
+
+        private Object[] docIds = new Object[16];
+
+        private double[] termWeights = new double[16];
+
+        private int size = 0;
+
+        /**
+         * <code>true</code> iff the scan completed without exceeding the
+         * {@link #capacity}.
+         */
+        private volatile boolean complete = false;
+
+        /**
+         * @param capacity
+         *            The maximum #of postings which will be recorded.
+         */
+        Postings(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        /**
+         * Record a posting.
+         *
+         * @return <code>false</code> iff the capacity was exceeded, in which
+         *         case nothing more will be recorded.
+         */
+        boolean add(final V docId, final double termWeight) {
+
+            if (size == capacity) {
+
+                size = capacity + 1;
+
+                docIds = null;
+
+                termWeights = null;
+
+            }
+
+            if (size > capacity)
+                return false;
+
+            if (size == docIds.length) {
+
+                final int n = (int) Math.min(capacity, size * 2L);
+
+                docIds = Arrays.copyOf(docIds, n);
+
+                termWeights = Arrays.copyOf(termWeights, n);
+
+            }
+
+            docIds[size] = docId;
+
+            termWeights[size] = termWeight;
+
+            size++;
+
+            return true;
+
+        }
+
+        /**
+         * Mark the scan as complete.
+         */
+        void done() {
+
+            complete = size <= capacity;
+
+        }
+
+        boolean isComplete() {
+
+            return complete;
+
+        }
+
+        /**
+         * The estimated #of bytes.
+         */
+        long bytes() {
+
+            return 32L + (long) size * BYTES_PER_POSTING;
+
+        }
+
+        /**
+         * Aggregate the postings onto the hits.
+         *
+         * @return The #of postings.
+         */
+        @SuppressWarnings("unchecked")
+        long replay(final IHitCollector<V> hits, final int queryTermNdx,
+                final int numQueryTerms, final double queryTermWeight) {
+
+            if (!complete)
+                throw new IllegalStateException();
+
+            Hit<V> tmp = new Hit<V>(numQueryTerms);
+
+            for (int i = 0; i < size; i++) {
+
+                final V docId = (V) docIds[i];
+
+                final Hit<V> hit;
+                {
+                    final Hit<V> oldValue = hits.putIfAbsent(docId, tmp);
+                    if (oldValue == null) {
+                        hit = tmp;
+                        hit.setDocId(docId);
+                        tmp = new Hit<V>(numQueryTerms);
+                    } else {
+                        hit = oldValue;
+                    }
+                }
+
+                hit.add(queryTermNdx, queryTermWeight * termWeights[i]);
+
+            }
+
+            if (log.isDebugEnabled())
+                log.debug("Replayed " + size + " postings");
+
+            return size;
+
+        }
+
+    }
+
+}
@@ -1,6 +1,8 @@
 package com.bigdata.search;
 
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 /**
  * Visits search results in order of decreasing relevance.
@@ -16,10 +18,23 @@ public class Hiterator<A extends IHit> implements Iterator<A> {
 	private int rank = 0;
 	
 	/**
-	 * The array of hits wrapped by this iterator.
+	 * The array of hits wrapped by this iterator -or- <code>null</code> if
+	 * the hits are being computed incrementally.
 	 */
 	private final A[] hits;
 	
+	/**
+	 * The source from which the hits are pulled when they are computed
+	 * incrementally -or- <code>null</code> if an array of hits was given.
+	 */
+	private final Iterator<A> src;
+	
+	/**
+	 * Hits which were drained from the {@link #src} by {@link #size()} but
+	 * have not yet been visited.
+	 */
+	private final LinkedList<A> buffer;
+	
 	/**
 	 * 
 	 * @param hits
@@ -30,18 +45,57 @@ public class Hiterator<A extends IHit> implements Iterator<A> {
 			throw new IllegalArgumentException();
 
 		this.hits = hits;
+		
+		this.src = null;
+		
+		this.buffer = null;
+
+	}
+	
+	/**
+	 * Variant which pulls the hits from an iterator which computes them
+	 * incrementally in order of decreasing relevance. Hits are only computed
+	 * as they are consumed, unless {@link #size()} is requested, in which case
+	 * the source is drained.
+	 * 
+	 * @param src
+	 *            The source of the hits.
+	 * 
+	 * @see TopKHitIterator
+	 */
+	public Hiterator(final Iterator<A> src) {
+
+		if (src == null)
+			throw new IllegalArgumentException();
+
+		this.hits = null;
+		
+		this.src = src;
+		
+		this.buffer = new LinkedList<A>();
 
 	}
 	
 	public boolean hasNext() {
 		
-		return rank < hits.length;
+		if (hits != null)
+			return rank < hits.length;
+		
+		return !buffer.isEmpty() || src.hasNext();
 		
 	}
 	
 	public A next() {
 		
-		return hits[rank++];
+		if (hits != null)
+			return hits[rank++];
+		
+		if (!hasNext())
+			throw new NoSuchElementException();
+		
+		rank++;
+		
+		return buffer.isEmpty() ? src.next() : buffer.removeFirst();
 		
 	}
 	
@@ -56,14 +110,27 @@ public class Hiterator<A extends IHit> implements Iterator<A> {
 
     public String toString() {
         
+        if (hits == null)
+            return "Hiterator{nvisited=" + rank + "} : " + src;
+        
         return "Hiterator{nhits=" + hits.length + "} : "
                 + hits;
         
     }
     
+    /**
+     * The #of hits. When the hits are computed incrementally, this forces the
+     * remaining hits to be computed.
+     */
     public int size() {
     	
-    	return hits.length;
+    	if (hits != null)
+    		return hits.length;
+    	
+    	while (src.hasNext())
+    		buffer.add(src.next());
+    	
+    	return rank + buffer.size();
     	
     }
 
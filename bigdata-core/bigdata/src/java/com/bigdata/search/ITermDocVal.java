@@ -36,11 +36,31 @@ package com.bigdata.search;
  */
 public interface ITermDocVal {
 
-//    /**
-//     * The term-frequency count for the token and document in the associated
-//     * entry of the full text search index.
-//     */
-//    int termFreq();
+    /**
+     * The positions of the token within the field of the document in
+     * non-decreasing order -or- <code>null</code> if positions are not
+     * recorded by the index.
+     * 
+     * @see FullTextIndex.Options#POSITIONS_ENABLED
+     */
+    int[] getPositions();
+
+    /**
+     * The term-frequency count for the token and document in the associated
+     * entry of the full text search index -or- <code>-1</code> if term
+     * statistics are not recorded by the index.
+     * 
+     * @see FullTextIndex.Options#STATISTICS_ENABLED
+     */
+    int termFreq();
+
+    /**
+     * The #of tokens in the field of the document -or- <code>-1</code> if
+     * term statistics are not recorded by the index.
+     * 
+     * @see FullTextIndex.Options#STATISTICS_ENABLED
+     */
+    int getFieldLength();
 
 //    /**
 //     * The normalized local term weight for the token and document in the
@@ -51,6 +51,22 @@ public interface ITermMetadata { // extends ITermDocVal {
      */
     void add();
 
+    /**
+     * Add an occurrence at the given position.
+     * 
+     * @param position
+     *            The position of the occurrence within the field (origin
+     *            ZERO). Positions must be added in non-decreasing order.
+     */
+    void add(int position);
+
+    /**
+     * The positions of the occurrences which were added with a position in
+     * non-decreasing order -or- <code>null</code> if no positions were
+     * added.
+     */
+    int[] getPositions();
+
     /**
      * The local term weight, which may be computed by a variety of methods.
      */
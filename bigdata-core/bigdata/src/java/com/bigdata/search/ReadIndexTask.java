@@ -38,6 +38,9 @@ public class ReadIndexTask<V extends Comparable<V>> extends AbstractIndexTask<V>
 
     private final IHitCollector<V> hits;
     private final ITupleIterator<?> itr;
+    private final boolean positions;
+    private final BM25 bm25;
+    private final HitCache.Postings<V> postings;
 
     /**
      * This instance is reused until it is consumed by a successful insertion
@@ -74,12 +77,82 @@ public class ReadIndexTask<V extends Comparable<V>> extends AbstractIndexTask<V>
     		final boolean prefixMatch, final double queryTermWeight, 
     		final FullTextIndex<V> searchEngine, final IHitCollector<V> hits) {
 
+        this(termText, termNdx, numTerms, prefixMatch, queryTermWeight,
+                searchEngine, hits, false/* positions */);
+        
+    }
+
+    /**
+     * Variant which optionally collects the positions of the search term on
+     * each {@link Hit}.
+     * 
+     * @param positions
+     *            When <code>true</code>, the positions of the search term
+     *            within each document are reported to the {@link Hit}.
+     * 
+     * @see Hit#addPositions(int, int[])
+     */
+    public ReadIndexTask(final String termText, 
+            final int termNdx, final int numTerms,
+            final boolean prefixMatch, final double queryTermWeight, 
+            final FullTextIndex<V> searchEngine, final IHitCollector<V> hits,
+            final boolean positions) {
+
+        this(termText, termNdx, numTerms, prefixMatch, queryTermWeight,
+                searchEngine, hits, positions, null/* bm25 */);
+
+    }
+
+    /**
+     * Variant which optionally scores each posting using {@link BM25}.
+     * 
+     * @param bm25
+     *            When non-<code>null</code>, the weight of the search term
+     *            for a document is the BM25 normalized term frequency rather
+     *            than the normalized local term weight. The caller is
+     *            expected to pass the <code>idf</code> of the search term as
+     *            the <i>queryTermWeight</i>.
+     */
+    public ReadIndexTask(final String termText, 
+            final int termNdx, final int numTerms,
+            final boolean prefixMatch, final double queryTermWeight, 
+            final FullTextIndex<V> searchEngine, final IHitCollector<V> hits,
+            final boolean positions, final BM25 bm25) {
+
+        this(termText, termNdx, numTerms, prefixMatch, queryTermWeight,
+                searchEngine, hits, positions, bm25, null/* postings */);
+
+    }
+
+    /**
+     * Variant which optionally records the postings which were read so they
+     * may be reused by another query.
+     * 
+     * @param postings
+     *            When non-<code>null</code>, the document identifier and
+     *            weight of each posting are recorded. The postings are
+     *            {@link HitCache.Postings#done() done} iff the scan ran to
+     *            completion.
+     */
+    ReadIndexTask(final String termText, 
+            final int termNdx, final int numTerms,
+            final boolean prefixMatch, final double queryTermWeight, 
+            final FullTextIndex<V> searchEngine, final IHitCollector<V> hits,
+            final boolean positions, final BM25 bm25,
+            final HitCache.Postings<V> postings) {
+
     	super(termText, termNdx, numTerms, prefixMatch, queryTermWeight, searchEngine);
     	
         if (hits == null)
             throw new IllegalArgumentException();
         
         this.hits = hits;
+        
+        this.positions = positions;
+        
+        this.bm25 = bm25;
+        
+        this.postings = postings;
      
         if (log.isDebugEnabled())
             log.debug("termText=[" + termText + "], prefixMatch=" + prefixMatch
@@ -159,7 +232,8 @@ public class ReadIndexTask<V extends Comparable<V>> extends AbstractIndexTask<V>
              */
 //            final ITermMetadata md = recordBuilder.decodeValue(tuple);
 
-            final double termWeight = rec.getLocalTermWeight();
+            final double termWeight = bm25 == null ? rec.getLocalTermWeight()
+                    : bm25.getTermWeight(rec);
             
             // Note: Log test shows up in profiler.
 //            if (log.isDebugEnabled()) {
@@ -188,10 +262,19 @@ public class ReadIndexTask<V extends Comparable<V>> extends AbstractIndexTask<V>
             
             hit.add( queryTermNdx, queryTermWeight * termWeight );
             
+            if (positions)
+                hit.addPositions(queryTermNdx, rec.getPositions());
+            
+            if (postings != null)
+                postings.add(docId, termWeight);
+            
             nhits++;
             
         }
 
+        if (postings != null)
+            postings.done();
+
         return nhits;
         
     }
@@ -1,5 +1,7 @@
 package com.bigdata.search;
 
+import java.util.Arrays;
+
 /**
  * Read-only {@link ITermDocRecord}.
  *  
@@ -14,31 +16,72 @@ public class ReadOnlyTermDocRecord<V extends Comparable<V>>
 
     private final Integer fieldId;
 
-//    private final int termFreq;
+    private final int termFreq;
+
+    private final int fieldLength;
 
     private final double termWeight;
 
+    private final int[] positions;
+
     public ReadOnlyTermDocRecord(final String text, final V docId,
             final int fieldId, 
 //            final int termFreq, 
             final double termWeight) {
 
+        this(text, docId, fieldId, termWeight, null/* positions */);
+
+    }
+
+    /**
+     * @param positions
+     *            The positions of the token within the field -or-
+     *            <code>null</code> if positions are not recorded.
+     */
+    public ReadOnlyTermDocRecord(final String text, final V docId,
+            final int fieldId, final double termWeight, final int[] positions) {
+
+        this(text, docId, fieldId, -1/* termFreq */, -1/* fieldLength */,
+                termWeight, positions);
+
+    }
+
+    /**
+     * @param termFreq
+     *            The #of occurrences of the token within the field -or-
+     *            <code>-1</code> if term statistics are not recorded.
+     * @param fieldLength
+     *            The #of tokens in the field -or- <code>-1</code> if term
+     *            statistics are not recorded.
+     * @param positions
+     *            The positions of the token within the field -or-
+     *            <code>null</code> if positions are not recorded.
+     */
+    public ReadOnlyTermDocRecord(final String text, final V docId,
+            final int fieldId, final int termFreq, final int fieldLength,
+            final double termWeight, final int[] positions) {
+
         if (docId == null)
             throw new IllegalArgumentException();
 
         this.text = text; // MAY be null.
         this.docId = docId;
         this.fieldId = fieldId;
-//        this.termFreq = termFreq;
+        this.termFreq = termFreq;
+        this.fieldLength = fieldLength;
         this.termWeight = termWeight;
+        this.positions = positions; // MAY be null.
 
     }
 
     public String toString(){
 
         return getClass().getName() + "{text=" + text + ", docId=" + docId
-                + ", fieldId=" + fieldId /* + ", termFreq=" + termFreq */
-                + ", termWeight=" + termWeight + "}";
+                + ", fieldId=" + fieldId + ", termFreq=" + termFreq
+                + ", fieldLength=" + fieldLength
+                + ", termWeight=" + termWeight
+                + (positions == null ? "" : ", positions="
+                        + Arrays.toString(positions)) + "}";
         
     }
     
@@ -68,8 +111,16 @@ public class ReadOnlyTermDocRecord<V extends Comparable<V>>
         return termWeight;
     }
 
-//    public int termFreq() {
-//        return termFreq;
-//    }
+    public int[] getPositions() {
+        return positions;
+    }
+
+    public int termFreq() {
+        return termFreq;
+    }
+
+    public int getFieldLength() {
+        return fieldLength;
+    }
     
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.bigdata.search;
+
+/**
+ * The model used to compute the relevance of a {@link Hit}.
+ */
+public enum ScoringModelEnum {
+
+    /**
+     * The cosine between the normalized term-frequency vector of the query
+     * and that of the document. The relevance is in [0:1].
+     */
+    Cosine,
+
+    /**
+     * Okapi BM25, which normalizes the term frequency by the length of the
+     * field and weights each search term by its inverse document frequency.
+     * The relevance is NOT bounded. This requires the index to record term
+     * statistics.
+     * 
+     * @see FullTextIndex.Options#STATISTICS_ENABLED
+     * @see BM25
+     */
+    BM25;
+
+}
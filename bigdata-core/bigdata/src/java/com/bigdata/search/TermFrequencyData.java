@@ -26,6 +26,15 @@ public class TermFrequencyData<V extends Comparable<V>> {
     /** The #of terms added (includes duplicates). */
     private int totalTermCount = 0;
     
+    /** The position of the last term added and -1 if none were added. */
+    private int lastPosition = -1;
+    
+    /**
+     * The offset added to the given positions. This is non-zero if the
+     * tokens for the field were given by more than one tokenization pass.
+     */
+    private int positionOffset = 0;
+    
     /**
      * The set of distinct tokens and their {@link ITermMetadata}.
      */
@@ -34,6 +43,23 @@ public class TermFrequencyData<V extends Comparable<V>> {
     public TermFrequencyData(final V docId, final int fieldId,
             final String token) {
 
+        this(docId, fieldId, token, 0/* position */);
+        
+    }
+
+    /**
+     * @param docId
+     *            The document identifier.
+     * @param fieldId
+     *            The field identifier.
+     * @param token
+     *            The first token.
+     * @param position
+     *            The position of that token within the field.
+     */
+    public TermFrequencyData(final V docId, final int fieldId,
+            final String token, final int position) {
+
         // Note: will be null when indexing a query.
 //        if (docId == null)
 //            throw new IllegalArgumentException();
@@ -42,7 +68,7 @@ public class TermFrequencyData<V extends Comparable<V>> {
         
         this.fieldId = fieldId;
         
-        add( token );
+        add( token, position );
         
     }
 
@@ -57,6 +83,40 @@ public class TermFrequencyData<V extends Comparable<V>> {
      */
     public boolean add(final String token) {
         
+        return add(token, lastPosition + 1 - positionOffset);
+        
+    }
+
+    /**
+     * Add a {@link Token} at the given position.
+     * 
+     * @param token
+     *            The token.
+     * @param position
+     *            The position of the token within the field (origin ZERO).
+     *            Positions should be non-decreasing. They may skip values when
+     *            the analyzer has removed tokens (e.g., stopwords). If the
+     *            position is less than that of the last token then the field
+     *            is assumed to be continued by another tokenization pass and
+     *            the positions are taken relative to the last token.
+     * 
+     * @return true iff the termText did not previously exist for this
+     *         {@link TermFrequencyData}.
+     */
+    public boolean add(final String token, final int position) {
+        
+        if (position < 0)
+            throw new IllegalArgumentException();
+        
+        if (position + positionOffset < lastPosition) {
+            
+            // continuation of the field.
+            positionOffset = lastPosition + 1 - position;
+            
+        }
+        
+        final int pos = position + positionOffset;
+        
         final boolean newTerm;
         
         ITermMetadata termMetadata = terms.get(token);
@@ -75,10 +135,12 @@ public class TermFrequencyData<V extends Comparable<V>> {
             
         }
         
-        termMetadata.add();
+        termMetadata.add(pos);
 
         totalTermCount++;
         
+        lastPosition = pos;
+        
         return newTerm;
         
     }
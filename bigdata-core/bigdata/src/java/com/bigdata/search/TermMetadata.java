@@ -1,5 +1,7 @@
 package com.bigdata.search;
 
+import java.util.Arrays;
+
 /**
  * Mutable metadata for the occurrences of a term within a field of some
  * document.
@@ -20,6 +22,16 @@ public class TermMetadata implements ITermMetadata {
     private double localTermWeight;
     private int noccurrences;
 
+    /**
+     * The positions of the occurrences (lazily allocated).
+     */
+    private int[] positions;
+
+    /**
+     * The #of entries in {@link #positions}.
+     */
+    private int npositions;
+
 //    public TermMetadata(final String token) {
 //        
 //        this.token = token;
@@ -55,6 +67,33 @@ public class TermMetadata implements ITermMetadata {
         
     }
 
+    public void add(final int position) {
+
+        if (positions == null) {
+
+            positions = new int[4];
+
+        } else if (npositions == positions.length) {
+
+            positions = Arrays.copyOf(positions, npositions << 1);
+
+        }
+
+        positions[npositions++] = position;
+
+        noccurrences++;
+
+    }
+
+    public int[] getPositions() {
+
+        if (positions == null)
+            return null;
+
+        return Arrays.copyOf(positions, npositions);
+
+    }
+
     public String toString() {
 
         return "{noccur=" + noccurrences + ",weight=" + localTermWeight + "}";
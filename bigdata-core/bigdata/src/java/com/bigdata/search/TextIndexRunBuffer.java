@@ -0,0 +1,606 @@
+package com.bigdata.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.btree.keys.KV;
+import com.bigdata.btree.proc.LongAggregator;
+import com.bigdata.util.BytesUtil;
+
+/**
+ * Buffers the tuples for the full text index during a bulk load so that they
+ * may be written onto the index in key order rather than as a series of
+ * small, randomly ordered batches. Tuples are accumulated in an in-memory run.
+ * When the run is full it is sorted and spilled onto a temporary file. When
+ * the buffer is {@link #flush()}ed, the runs are merged and the tuples are
+ * written onto the index in chunks using the {@link TextIndexWriteProc}.
+ * <p>
+ * Duplicate keys (the same token, document and field) are resolved according
+ * to the {@link FullTextIndex.Options#OVERWRITE} property: the most recently
+ * buffered tuple is written if overwrite is enabled and the first buffered
+ * tuple is written otherwise.
+ *
+ * @see FullTextIndex#beginBulkLoad()
+ */
+public class TextIndexRunBuffer {
+
+    final private static transient Logger log = Logger
+            .getLogger(TextIndexRunBuffer.class);
+
+    /**
+     * The maximum #of tuples written onto the index by a single
+     * {@link TextIndexWriteProc}.
+     */
+    private static final int MAX_CHUNK_SIZE = 100000;
+
+    /** The index on which the merged runs will be written. */
+    private final FullTextIndex<?> textIndexer;
+
+    /** The #of tuples in an in-memory run before it is spilled. */
+    private final int runCapacity;
+
+    /** The directory in which the spilled runs are written. */
+    private final File tmpDir;
+
+    /** The current in-memory run. */
+    private KV[] run;
+
+    /** The #of tuples in the current in-memory run. */
+    private int count = 0;
+
+    /** The spilled runs in the order in which they were written. */
+    private final List<File> runs = new ArrayList<File>();
+
+    /** The #of tuples buffered since the last {@link #flush()}. */
+    private long size = 0L;
+
+    /**
+     * The #of fields and the #of tokens in those fields for each field
+     * identifier since the last {@link #flush()}.
+     * 
+     * @see FullTextIndex.Options#STATISTICS_ENABLED
+     */
+    private final TreeMap<Integer, long[]> stats = new TreeMap<Integer, long[]>();
+
+    /**
+     * @param textIndexer
+     *            The index on which the tuples will be written.
+     * @param runCapacity
+     *            The #of tuples in an in-memory run before it is sorted and
+     *            spilled onto a temporary file.
+     * @param tmpDir
+     *            The directory in which the spilled runs will be written.
+     */
+    public TextIndexRunBuffer(final FullTextIndex<?> textIndexer,
+            final int runCapacity, final File tmpDir) {
+
+        if (textIndexer == null)
+            throw new IllegalArgumentException();
+
+        if (runCapacity <= 0)
+            throw new IllegalArgumentException();
+
+        if (tmpDir == null)
+            throw new IllegalArgumentException();
+
+        this.textIndexer = textIndexer;
+
+        this.runCapacity = runCapacity;
+
+        this.tmpDir = tmpDir;
+
+        this.run = new KV[Math.min(runCapacity, 1024)];
+
+    }
+
+    /**
+     * The #of tuples buffered since the last {@link #flush()} (including any
+     * duplicates).
+     */
+    synchronized public long size() {
+
+        return size;
+
+    }
+
+    /**
+     * The #of runs which have been spilled onto temporary files since the last
+     * {@link #flush()}.
+     */
+    synchronized public int getRunCount() {
+
+        return runs.size();
+
+    }
+
+    /**
+     * Buffer some tuples.
+     *
+     * @param n
+     *            The #of tuples.
+     * @param keys
+     *            The keys.
+     * @param vals
+     *            The values.
+     */
+    synchronized public void add(final int n, final byte[][] keys,
+            final byte[][] vals) {
+
+        for (int i = 0; i < n; i++) {
+
+            if (count == run.length) {
+
+                if (count == runCapacity) {
+
+                    spill();
+
+                } else {
+
+                    run = Arrays.copyOf(run,
+                            (int) Math.min(runCapacity, run.length * 2L));
+
+                }
+
+            }
+
+            run[count++] = new KV(keys[i], vals == null ? null : vals[i]);
+
+            size++;
+
+        }
+
+    }
+
+    /**
+     * Buffer the statistics for some fields.
+     *
+     * @param delta
+     *            A map from the field identifier to the #of fields and the #
+     *            of tokens in those fields.
+     */
+    synchronized public void addStatistics(final Map<Integer, long[]> delta) {
+
+        for (Map.Entry<Integer, long[]> e : delta.entrySet()) {
+
+            long[] a = stats.get(e.getKey());
+
+            if (a == null)
+                stats.put(e.getKey(), a = new long[2]);
+
+            a[0] += e.getValue()[0];
+
+            a[1] += e.getValue()[1];
+
+        }
+
+    }
+
+    /**
+     * Merge the buffered tuples and write them onto the index in key order.
+     * Any buffered statistics are then written onto the statistics index. The
+     * buffer is empty when this method returns.
+     *
+     * @return The #of tuples written on the index.
+     */
+    synchronized public long flush() {
+
+        if (!stats.isEmpty()) {
+
+            try {
+
+                TokenBuffer.writeStatistics(textIndexer, stats);
+
+            } finally {
+
+                stats.clear();
+
+            }
+
+        }
+
+        if (size == 0L)
+            return 0L;
+
+        final long begin = System.currentTimeMillis();
+
+        final ChunkWriter writer = new ChunkWriter(Math.min(
+                runCapacity, MAX_CHUNK_SIZE));
+
+        try {
+
+            if (runs.isEmpty()) {
+
+                // Everything fits in memory.
+                sortRun();
+
+                for (int i = 0; i < count; i++) {
+
+                    writer.add(run[i]);
+
+                }
+
+            } else {
+
+                spill();
+
+                merge(writer);
+
+            }
+
+            writer.flush();
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        } finally {
+
+            clear();
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info("Wrote " + writer.ntuples + " tuples in "
+                    + (System.currentTimeMillis() - begin) + "ms");
+
+        return writer.ntuples;
+
+    }
+
+    /**
+     * Discard the buffered tuples and statistics and delete any spilled runs.
+     */
+    synchronized public void clear() {
+
+        stats.clear();
+
+        for (File file : runs) {
+
+            if (!file.delete())
+                log.warn("Could not delete: " + file);
+
+        }
+
+        runs.clear();
+
+        run = new KV[Math.min(runCapacity, 1024)];
+
+        count = 0;
+
+        size = 0L;
+
+    }
+
+    /**
+     * Sort the in-memory run, dropping duplicate keys.
+     * <p>
+     * Note: The sort is stable so the relative order of tuples having the
+     * same key is the order in which they were buffered.
+     */
+    private void sortRun() {
+
+        Arrays.sort(run, 0, count);
+
+        final boolean overwrite = textIndexer.isOverwrite();
+
+        int j = 0;
+
+        for (int i = 0; i < count; i++) {
+
+            if (j > 0 && BytesUtil.bytesEqual(run[j - 1].key, run[i].key)) {
+
+                if (overwrite)
+                    run[j - 1] = run[i];
+
+                continue;
+
+            }
+
+            run[j++] = run[i];
+
+        }
+
+        Arrays.fill(run, j, count, null);
+
+        count = j;
+
+    }
+
+    /**
+     * Sort the in-memory run and write it onto a temporary file.
+     */
+    private void spill() {
+
+        sortRun();
+
+        try {
+
+            final File file = File.createTempFile("textIndex", ".run", tmpDir);
+
+            final DataOutputStream os = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(file)));
+
+            try {
+
+                os.writeInt(count);
+
+                for (int i = 0; i < count; i++) {
+
+                    final KV kv = run[i];
+
+                    os.writeInt(kv.key.length);
+
+                    os.write(kv.key);
+
+                    if (kv.val == null) {
+
+                        os.writeInt(-1);
+
+                    } else {
+
+                        os.writeInt(kv.val.length);
+
+                        os.write(kv.val);
+
+                    }
+
+                }
+
+            } finally {
+
+                os.close();
+
+            }
+
+            runs.add(file);
+
+            if (log.isDebugEnabled())
+                log.debug("Spilled " + count + " tuples onto " + file);
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+        Arrays.fill(run, 0, count, null);
+
+        count = 0;
+
+    }
+
+    /**
+     * Merge the spilled runs, writing the tuples onto the index in key order.
+     */
+    private void merge(final ChunkWriter writer) throws IOException {
+
+        final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+                runs.size());
+
+        final boolean overwrite = textIndexer.isOverwrite();
+
+        try {
+
+            for (int i = 0; i < runs.size(); i++) {
+
+                final RunReader r = new RunReader(i, runs.get(i));
+
+                if (r.next())
+                    queue.add(r);
+                else
+                    r.close();
+
+            }
+
+            while (!queue.isEmpty()) {
+
+                RunReader r = queue.poll();
+
+                KV kv = r.current;
+
+                if (r.next())
+                    queue.add(r);
+                else
+                    r.close();
+
+                // Resolve the key across the runs (older runs come first).
+                while (!queue.isEmpty()
+                        && BytesUtil.bytesEqual(queue.peek().current.key,
+                                kv.key)) {
+
+                    r = queue.poll();
+
+                    if (overwrite)
+                        kv = r.current;
+
+                    if (r.next())
+                        queue.add(r);
+                    else
+                        r.close();
+
+                }
+
+                writer.add(kv);
+
+            }
+
+        } finally {
+
+            for (RunReader r : queue) {
+
+                r.close();
+
+            }
+
+        }
+
+    }
+
+    /**
+     * Reads the tuples in a spilled run. The readers are ordered by the key of
+     * their current tuple and then by the order in which their runs were
+     * written.
+     */
+    private static class RunReader implements Comparable<RunReader> {
+
+        private final int ordinal;
+
+        private final DataInputStream is;
+
+        private int remaining;
+
+        private KV current;
+
+        RunReader(final int ordinal, final File file) throws IOException {
+
+            this.ordinal = ordinal;
+
+            this.is = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+
+            this.remaining = is.readInt();
+
+        }
+
+        /**
+         * Advance to the next tuple.
+         *
+         * @return <code>false</code> iff the run is exhausted.
+         */
+        boolean next() throws IOException {
+
+            if (remaining == 0) {
+
+                current = null;
+
+                return false;
+
+            }
+
+            final byte[] key = new byte[is.readInt()];
+
+            is.readFully(key);
+
+            final int vlen = is.readInt();
+
+            final byte[] val;
+
+            if (vlen == -1) {
+
+                val = null;
+
+            } else {
+
+                val = new byte[vlen];
+
+                is.readFully(val);
+
+            }
+
+            current = new KV(key, val);
+
+            remaining--;
+
+            return true;
+
+        }
+
+        void close() throws IOException {
+
+            is.close();
+
+        }
+
+        @Override
+        public int compareTo(final RunReader o) {
+
+            final int ret = current.compareTo(o.current);
+
+            if (ret != 0)
+                return ret;
+
+            return ordinal < o.ordinal ? -1 : ordinal > o.ordinal ? 1 : 0;
+
+        }
+
+    }
+
+    /**
+     * Collects tuples in key order and writes them onto the index in chunks.
+     */
+    private class ChunkWriter {
+
+        private final byte[][] keys;
+
+        private final byte[][] vals;
+
+        private int n = 0;
+
+        private long ntuples = 0L;
+
+        ChunkWriter(final int chunkSize) {
+
+            keys = new byte[chunkSize][];
+
+            vals = new byte[chunkSize][];
+
+        }
+
+        void add(final KV kv) {
+
+            if (n == keys.length)
+                flush();
+
+            keys[n] = kv.key;
+
+            vals[n] = kv.val;
+
+            n++;
+
+        }
+
+        void flush() {
+
+            if (n == 0)
+                return;
+
+            final LongAggregator resultHandler = new LongAggregator();
+
+            textIndexer.getIndex().submit(0, //fromIndex
+                    n, // toIndex
+                    keys,//
+                    vals,//
+                    (textIndexer.isOverwrite() //
+                            ? TextIndexWriteProc.IndexWriteProcConstructor.OVERWRITE
+                            : TextIndexWriteProc.IndexWriteProcConstructor.NO_OVERWRITE//
+                            ),//
+                    resultHandler//
+                    );
+
+            ntuples += n;
+
+            Arrays.fill(keys, 0, n, null);
+
+            Arrays.fill(vals, 0, n, null);
+
+            n = 0;
+
+        }
+
+    }
+
+}
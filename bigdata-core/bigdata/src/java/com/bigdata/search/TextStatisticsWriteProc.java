@@ -0,0 +1,237 @@
+/*
+
+ Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+ Contact:
+ SYSTAP, LLC DBA Blazegraph
+ 2501 Calvert ST NW #106
+ Washington, DC 20008
+ licenses@blazegraph.com
+
+ This program is free software; you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation; version 2 of the License.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ */
+package com.bigdata.search;
+
+import java.io.IOException;
+
+import org.apache.log4j.Logger;
+
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.keys.KeyBuilder;
+import com.bigdata.btree.proc.AbstractKeyArrayIndexProcedure;
+import com.bigdata.btree.proc.AbstractKeyArrayIndexProcedureConstructor;
+import com.bigdata.btree.proc.IParallelizableIndexProcedure;
+import com.bigdata.btree.proc.IResultHandler;
+import com.bigdata.btree.proc.LongAggregator;
+import com.bigdata.btree.raba.IRaba;
+import com.bigdata.btree.raba.codec.IRabaCoder;
+import com.bigdata.io.DataInputBuffer;
+import com.bigdata.io.DataOutputBuffer;
+import com.bigdata.relation.IMutableRelationIndexWriteProcedure;
+import com.bigdata.util.Bytes;
+
+/**
+ * Writes on the statistics index for the text index. There is one tuple per
+ * field. The key is the field identifier and the value is the #of fields
+ * indexed with that identifier followed by the total #of tokens in those
+ * fields. The values given to this procedure are deltas which are added to
+ * the existing values.
+ * <p>
+ * Note: The statistics are written by the {@link TokenBuffer} together with
+ * the batch for the {@link TextIndexWriteProc}. As with that procedure, the
+ * data for a document must be removed before the document is re-indexed or
+ * the statistics will count it twice.
+ * 
+ * @see FullTextIndex.Options#STATISTICS_ENABLED
+ */
+public class TextStatisticsWriteProc extends
+        AbstractKeyArrayIndexProcedure<Long> implements
+        IParallelizableIndexProcedure<Long>,
+        IMutableRelationIndexWriteProcedure<Long> {
+
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -5473000618306913317L;
+
+    private static transient final Logger log = Logger
+            .getLogger(TextStatisticsWriteProc.class);
+
+    public static class StatisticsWriteProcConstructor extends
+            AbstractKeyArrayIndexProcedureConstructor<TextStatisticsWriteProc> {
+
+        public static TextStatisticsWriteProc.StatisticsWriteProcConstructor INSTANCE = new StatisticsWriteProcConstructor();
+
+        /**
+         * Values are required.
+         */
+        @Override
+        public final boolean sendValues() {
+
+            return true;
+
+        }
+
+        private StatisticsWriteProcConstructor() {
+
+        }
+
+        @Override
+        public TextStatisticsWriteProc newInstance(final IRabaCoder keySer,
+                final IRabaCoder valSer, final int fromIndex,
+                final int toIndex, final byte[][] keys, final byte[][] vals) {
+
+            return new TextStatisticsWriteProc(keySer, valSer, fromIndex,
+                    toIndex, keys, vals);
+
+        }
+
+    }
+
+    /**
+     * De-serialization constructor.
+     */
+    public TextStatisticsWriteProc() {
+
+    }
+
+    protected TextStatisticsWriteProc(final IRabaCoder keySer,
+            final IRabaCoder valSer, final int fromIndex, final int toIndex,
+            final byte[][] keys, final byte[][] vals) {
+
+        super(keySer, valSer, fromIndex, toIndex, keys, vals);
+
+        assert vals != null;
+
+    }
+
+    @Override
+    public final boolean isReadOnly() {
+
+        return false;
+
+    }
+
+    /**
+     * @return The #of fields whose statistics were updated.
+     */
+    @Override
+    public Long applyOnce(final IIndex ndx, final IRaba keys, final IRaba vals) {
+
+        final int n = keys.size();
+
+        for (int i = 0; i < n; i++) {
+
+            final byte[] key = keys.get(i);
+
+            final long[] delta = decodeVal(vals.get(i));
+
+            final byte[] old = ndx.lookup(key);
+
+            if (old != null) {
+
+                final long[] tmp = decodeVal(old);
+
+                delta[0] += tmp[0];
+
+                delta[1] += tmp[1];
+
+            }
+
+            ndx.insert(key, encodeVal(delta[0], delta[1]));
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info("updated statistics for " + n + " fields");
+
+        return (long) n;
+
+    }
+
+    /**
+     * Uses {@link LongAggregator} to combine the update counts.
+     */
+    @Override
+    protected IResultHandler<Long, Long> newAggregator() {
+
+        return new LongAggregator();
+
+    }
+
+    /**
+     * Return the key for the statistics of a field.
+     * 
+     * @param fieldId
+     *            The field identifier.
+     */
+    static public byte[] encodeKey(final int fieldId) {
+
+        return new KeyBuilder(Bytes.SIZEOF_INT).append(fieldId).getKey();
+
+    }
+
+    /**
+     * Decode the field identifier from a key.
+     */
+    static public int decodeKey(final byte[] key) {
+
+        return KeyBuilder.decodeInt(key, 0);
+
+    }
+
+    /**
+     * Return the value for the statistics of a field.
+     * 
+     * @param nfields
+     *            The #of fields.
+     * @param ntokens
+     *            The total #of tokens in those fields.
+     */
+    static public byte[] encodeVal(final long nfields, final long ntokens) {
+
+        final DataOutputBuffer buf = new DataOutputBuffer(8);
+
+        buf.packLong(nfields);
+
+        buf.packLong(ntokens);
+
+        return buf.toByteArray();
+
+    }
+
+    /**
+     * Decode a value.
+     * 
+     * @return An array containing the #of fields and the total #of tokens in
+     *         those fields.
+     */
+    static public long[] decodeVal(final byte[] val) {
+
+        final DataInputBuffer in = new DataInputBuffer(val);
+
+        try {
+
+            return new long[] { in.unpackLong(), in.unpackLong() };
+
+        } catch (IOException ex) {
+
+            throw new RuntimeException(ex);
+
+        }
+
+    }
+
+}
@@ -2,6 +2,7 @@ package com.bigdata.search;
 
 import java.util.Arrays;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.log4j.Logger;
 
@@ -156,10 +157,33 @@ public class TokenBuffer<V extends Comparable<V>> {
      */
     public void add(final V docId, final int fieldId, final String token) {
 
+        add(docId, fieldId, token, -1/* position */);
+        
+    }
+
+    /**
+     * Variant which specifies the position of the token within the field.
+     * 
+     * @param docId
+     *            The document identifier.
+     * @param fieldId
+     *            The field identifier.
+     * @param token
+     *            The token.
+     * @param position
+     *            The position of the token within the field (origin ZERO) -or-
+     *            <code>-1</code> to use the position following the previous
+     *            token in the same field.
+     * 
+     * @see FullTextIndex.Options#POSITIONS_ENABLED
+     */
+    public void add(final V docId, final int fieldId, final String token,
+            final int position) {
+
         if (log.isDebugEnabled()) {
 
             log.debug("docId=" + docId + ", fieldId=" + fieldId + ", token="
-                    + token);
+                    + token + ", position=" + position);
             
         }
         
@@ -220,13 +244,15 @@ public class TokenBuffer<V extends Comparable<V>> {
 
         if(newField) {
 
-            buffer[count++] = new TermFrequencyData<V>(docId, fieldId, token);
+            buffer[count++] = new TermFrequencyData<V>(docId, fieldId, token,
+                    position < 0 ? 0 : position);
             
             nterms++;
             
         } else {
             
-            if( buffer[count-1].add(token) ) {
+            if (position < 0 ? buffer[count - 1].add(token) : buffer[count - 1]
+                    .add(token, position)) {
                 
                 nterms++;
                 
@@ -314,8 +340,10 @@ public class TokenBuffer<V extends Comparable<V>> {
                  * into the key/val of the index.
                  */
                 final ITermDocRecord<V> rec = new ReadOnlyTermDocRecord<V>(
-                        termText, docId, fieldId, /* termMetadata.termFreq(), */
-                        termMetadata.getLocalTermWeight());
+                        termText, docId, fieldId, termMetadata.termFreq(),
+                        termFreq.totalTermCount(),
+                        termMetadata.getLocalTermWeight(),
+                        termMetadata.getPositions());
 
                 final byte[] key = tupleSer.serializeKey(rec);
 
@@ -361,6 +389,13 @@ public class TokenBuffer<V extends Comparable<V>> {
         // Batch write on the index.
         writeOnIndex(n, keys, vals);
 
+        if (textIndexer.getStatisticsIndex() != null) {
+
+            // Update the statistics for each field.
+            writeStatistics();
+            
+        }
+
         // Clear the buffer.
         reset();
         
@@ -403,11 +438,29 @@ public class TokenBuffer<V extends Comparable<V>> {
      * @param keys
      * @param vals
      * 
-     * @return The #of pre-existing records that were updated.
+     * @return The #of pre-existing records that were updated (always zero in
+     *         bulk load mode).
+     * 
+     * @see FullTextIndex#beginBulkLoad()
      */
     protected long writeOnIndex(final int n, final byte[][] keys,
             final byte[][] vals) {
 
+        final TextIndexRunBuffer bulkLoadBuffer = textIndexer
+                .getBulkLoadBuffer();
+
+        if (bulkLoadBuffer != null) {
+
+            /*
+             * Bulk load: the tuples are merged and written onto the index in
+             * key order when the bulk load is flushed.
+             */
+            bulkLoadBuffer.add(n, keys, vals);
+
+            return 0L;
+
+        }
+
         final LongAggregator resultHandler = new LongAggregator();
         
         textIndexer.getIndex().submit(0, //fromIndex
@@ -425,6 +478,100 @@ public class TokenBuffer<V extends Comparable<V>> {
         
     }
     
+    /**
+     * Adds the #of fields in the buffer and the #of tokens in those fields to
+     * the statistics for each field identifier.
+     * 
+     * @return The #of field identifiers whose statistics were updated (always
+     *         zero in bulk load mode).
+     * 
+     * @see FullTextIndex.Options#STATISTICS_ENABLED
+     */
+    protected long writeStatistics() {
+
+        // Note: visits the fieldIds in key order.
+        final TreeMap<Integer, long[]> stats = new TreeMap<Integer, long[]>();
+
+        for (int i = 0; i < count; i++) {
+
+            final TermFrequencyData<V> termFreq = buffer[i];
+
+            long[] a = stats.get(termFreq.fieldId);
+
+            if (a == null)
+                stats.put(termFreq.fieldId, a = new long[2]);
+
+            a[0]++;
+
+            a[1] += termFreq.totalTermCount();
+
+        }
+
+        final TextIndexRunBuffer bulkLoadBuffer = textIndexer
+                .getBulkLoadBuffer();
+
+        if (bulkLoadBuffer != null) {
+
+            // Bulk load: written when the bulk load is flushed.
+            bulkLoadBuffer.addStatistics(stats);
+
+            return 0L;
+
+        }
+
+        return writeStatistics(textIndexer, stats);
+
+    }
+
+    /**
+     * Adds the #of fields and the #of tokens in those fields to the statistics
+     * for each field identifier.
+     * 
+     * @param textIndexer
+     *            The text index.
+     * @param stats
+     *            A map from the field identifier to the #of fields and the #
+     *            of tokens. The map MUST visit the field identifiers in key
+     *            order.
+     * 
+     * @return The #of field identifiers whose statistics were updated.
+     */
+    static long writeStatistics(final FullTextIndex<?> textIndexer,
+            final Map<Integer, long[]> stats) {
+
+        final int n = stats.size();
+
+        final byte[][] keys = new byte[n][];
+
+        final byte[][] vals = new byte[n][];
+
+        int i = 0;
+
+        for (Map.Entry<Integer, long[]> e : stats.entrySet()) {
+
+            keys[i] = TextStatisticsWriteProc.encodeKey(e.getKey());
+
+            vals[i] = TextStatisticsWriteProc.encodeVal(e.getValue()[0], e
+                    .getValue()[1]);
+
+            i++;
+
+        }
+
+        final LongAggregator resultHandler = new LongAggregator();
+
+        textIndexer.getStatisticsIndex().submit(0, //fromIndex
+                n, // toIndex
+                keys,//
+                vals,//
+                TextStatisticsWriteProc.StatisticsWriteProcConstructor.INSTANCE,//
+                resultHandler//
+                );
+
+        return resultHandler.getResult();
+
+    }
+    
     /**
      * Writes on the index.
      *  
@@ -0,0 +1,656 @@
+package com.bigdata.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+
+import com.bigdata.btree.IIndex;
+import com.bigdata.btree.IRangeQuery;
+import com.bigdata.btree.ITupleIterator;
+import com.bigdata.btree.ITupleSerializer;
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+
+/**
+ * Computes the top ranked {@link Hit}s for a {@link FullTextQuery}
+ * incrementally, visiting them in the same order as
+ * {@link FullTextIndex#_search(FullTextQuery)} but without reading every
+ * posting for every query term.
+ * <p>
+ * The postings for a term are ordered by the compact local term weight and
+ * then by the document identifier, so a {@link IRangeQuery#REVERSE} scan
+ * visits the postings for a term in order of decreasing weight. The weight of
+ * the posting under each cursor is therefore an upper bound on the
+ * contribution of that term to the cosine of any document not yet seen on
+ * that cursor, and the sum of those bounds is an upper bound on the cosine of
+ * any document not yet seen on any cursor. The cursors are advanced in order
+ * of decreasing bound, accumulating partial cosines for the candidate
+ * documents. A candidate is emitted once its cosine is known exactly (any
+ * terms not yet seen for that document are probed directly on the index) and
+ * exceeds both the threshold and the upper bound of every other candidate.
+ * Once the threshold falls below the cosine which a document would need to
+ * reach the requested rank, no new candidates are admitted and candidates
+ * which can no longer reach that rank are discarded.
+ * <p>
+ * This is the threshold algorithm over impact ordered postings. Since the
+ * postings are not in document order, the document-at-a-time pivoting used by
+ * WAND does not apply, but the per-term upper bounds come for free from the
+ * cursor position.
+ * <p>
+ * Note: Cosines which are equal to the threshold or to the upper bound of
+ * another candidate are never emitted until the tie has been resolved, so
+ * ties are broken by the document identifier exactly as they are by
+ * {@link Hit#compareTo(Hit)}.
+ * <p>
+ * Note: The index is read lazily as the hits are consumed, so the iterator
+ * must be consumed against a view which is not being concurrently modified.
+ * If the timeout expires, the candidates are visited in order of their
+ * partial cosines and only partial results will be returned.
+ *
+ * @param <V>
+ *            The generic type of the document identifier.
+ *
+ * @see FullTextIndex.Options#TOP_K_MAX_RANK
+ */
+public class TopKHitIterator<V extends Comparable<V>> implements
+        Iterator<Hit<V>> {
+
+    final private static Logger log = Logger.getLogger(TopKHitIterator.class);
+
+    /**
+     * The minimum #of postings read before the emission of another hit is
+     * considered.
+     */
+    private static final int MIN_BATCH_SIZE = 64;
+
+    /**
+     * A {@link IRangeQuery#REVERSE} scan of the postings for a single query
+     * term.
+     */
+    private static class PostingCursor<V extends Comparable<V>> extends
+            AbstractIndexTask<V> {
+
+        private final ITupleIterator<?> itr;
+
+        /**
+         * The posting under the cursor -or- <code>null</code> if the cursor is
+         * exhausted.
+         */
+        private ITermDocRecord<V> rec;
+
+        public PostingCursor(final String termText, final int termNdx,
+                final int numTerms, final double queryTermWeight,
+                final FullTextIndex<V> searchEngine) {
+
+            super(termText, termNdx, numTerms, false/* prefixMatch */,
+                    queryTermWeight, searchEngine);
+
+            itr = searchEngine.getIndex().rangeIterator(fromKey, toKey,
+                    0/* capacity */,
+                    IRangeQuery.KEYS | IRangeQuery.VALS | IRangeQuery.REVERSE,
+                    null/* filter */);
+
+            advance();
+
+        }
+
+        @SuppressWarnings("unchecked")
+        void advance() {
+
+            rec = itr.hasNext() ? (ITermDocRecord<V>) itr.next().getObject()
+                    : null;
+
+        }
+
+        /**
+         * The upper bound on the contribution of this term to the cosine of
+         * any document which has not yet been visited by this cursor.
+         */
+        double upperBound() {
+
+            return rec == null ? 0d : queryTermWeight
+                    * rec.getLocalTermWeight();
+
+        }
+
+    }
+
+    private final IIndex ndx;
+
+    private final ITupleSerializer<?, ?> tupleSer;
+
+    private final DefaultSimilarity similarity = new DefaultSimilarity();
+
+    private final PostingCursor<V>[] cursors;
+
+    private final double minCosine;
+
+    private final int minRank;
+
+    private final int maxRank;
+
+    /**
+     * The deadline for reading the index (nanoseconds) -or- ZERO (0L) if
+     * there is no timeout.
+     */
+    private final long deadline;
+
+    /**
+     * The candidates, including those whose cosine is known exactly but which
+     * have not yet been emitted.
+     */
+    private final Map<V, Hit<V>> candidates = new HashMap<V, Hit<V>>();
+
+    /**
+     * The documents whose cosine is known exactly (including those which were
+     * emitted). Postings for these documents are skipped.
+     */
+    private final Set<V> resolved = new HashSet<V>();
+
+    /**
+     * <code>false</code> once the threshold has fallen below the cosine
+     * required to reach {@link #maxRank}.
+     */
+    private boolean admit = true;
+
+    /**
+     * <code>true</code> once the cursors are exhausted (or the timeout has
+     * expired) at which point the remaining candidates are visited in order.
+     */
+    private boolean done = false;
+
+    /**
+     * The remaining candidates in order once {@link #done}.
+     */
+    private Hit<V>[] drain = null;
+
+    private int drainIndex = 0;
+
+    /**
+     * The rank of the last hit which was emitted.
+     */
+    private int rank = 0;
+
+    /**
+     * The #of postings read.
+     */
+    private long nread = 0L;
+
+    /**
+     * The #of postings probed to complete the cosine for a candidate.
+     */
+    private long nprobes = 0L;
+
+    /** set by {@link #hasNext()}. */
+    private Hit<V> nextHit = null;
+
+    /** set by {@link #hasNext()}. */
+    private boolean exhausted = false;
+
+    /**
+     * @param searchEngine
+     *            The search engine.
+     * @param qdata
+     *            The normalized query terms.
+     * @param query
+     *            The query.
+     */
+    @SuppressWarnings("unchecked")
+    public TopKHitIterator(final FullTextIndex<V> searchEngine,
+            final TermFrequencyData<V> qdata, final FullTextQuery query) {
+
+        if (searchEngine == null)
+            throw new IllegalArgumentException();
+
+        if (qdata == null)
+            throw new IllegalArgumentException();
+
+        if (query == null)
+            throw new IllegalArgumentException();
+
+        this.minCosine = query.getMinCosine();
+        this.minRank = query.getMinRank();
+        this.maxRank = query.getMaxRank();
+
+        if (minCosine < 0d || minCosine > 1d)
+            throw new IllegalArgumentException();
+
+        if (minRank <= 0 || maxRank <= 0)
+            throw new IllegalArgumentException();
+
+        if (minRank > maxRank)
+            throw new IllegalArgumentException();
+
+        final long timeout = query.getTimeout();
+
+        if (timeout < 0L)
+            throw new IllegalArgumentException();
+
+        this.deadline = timeout == 0L ? 0L : System.nanoTime()
+                + query.getTimeUnit().toNanos(timeout);
+
+        this.ndx = searchEngine.getIndex();
+
+        this.tupleSer = ndx.getIndexMetadata().getTupleSerializer();
+
+        final int nterms = qdata.terms.size();
+
+        this.cursors = new PostingCursor[nterms];
+
+        int i = 0;
+        for (Map.Entry<String, ITermMetadata> e : qdata.terms.entrySet()) {
+
+            cursors[i] = new PostingCursor<V>(e.getKey(), i, nterms, e
+                    .getValue().getLocalTermWeight(), searchEngine);
+
+            i++;
+
+        }
+
+    }
+
+    public boolean hasNext() {
+
+        if (nextHit != null)
+            return true;
+
+        if (exhausted)
+            return false;
+
+        nextHit = nextInSlice();
+
+        if (nextHit == null) {
+
+            exhausted = true;
+
+            if (log.isInfoEnabled())
+                log.info("Done: nhits=" + rank + ", nread=" + nread
+                        + ", nprobes=" + nprobes);
+
+            return false;
+
+        }
+
+        return true;
+
+    }
+
+    public Hit<V> next() {
+
+        if (!hasNext())
+            throw new NoSuchElementException();
+
+        final Hit<V> tmp = nextHit;
+
+        nextHit = null;
+
+        return tmp;
+
+    }
+
+    /**
+     * @throws UnsupportedOperationException
+     */
+    public void remove() {
+
+        throw new UnsupportedOperationException();
+
+    }
+
+    /**
+     * Return the next hit within the requested slice -or- <code>null</code>
+     * if there are no more such hits.
+     */
+    private Hit<V> nextInSlice() {
+
+        while (rank < maxRank) {
+
+            final Hit<V> hit = nextInOrder();
+
+            if (hit == null || hit.getCosine() < minCosine)
+                return null;
+
+            hit.setRank(++rank);
+
+            if (rank >= minRank)
+                return hit;
+
+        }
+
+        return null;
+
+    }
+
+    /**
+     * Return the next hit in order of decreasing relevance -or-
+     * <code>null</code> if there are no more hits.
+     */
+    @SuppressWarnings("unchecked")
+    private Hit<V> nextInOrder() {
+
+        while (!done) {
+
+            final Hit<V> best = best();
+
+            if (best != null) {
+
+                if (!resolved.contains(best.getDocId()))
+                    complete(best);
+
+                if (isSafe(best)) {
+
+                    candidates.remove(best.getDocId());
+
+                    return best;
+
+                }
+
+            }
+
+            read();
+
+            prune();
+
+        }
+
+        if (drain == null) {
+
+            drain = candidates.values().toArray(new Hit[candidates.size()]);
+
+            Arrays.sort(drain);
+
+            candidates.clear();
+
+        }
+
+        return drainIndex < drain.length ? drain[drainIndex++] : null;
+
+    }
+
+    /**
+     * The candidate with the greatest (partial) cosine.
+     */
+    private Hit<V> best() {
+
+        Hit<V> best = null;
+
+        for (Hit<V> hit : candidates.values()) {
+
+            if (best == null || hit.compareTo(best) < 0)
+                best = hit;
+
+        }
+
+        return best;
+
+    }
+
+    /**
+     * The upper bound on the cosine of any document not yet seen.
+     */
+    private double threshold() {
+
+        double t = 0d;
+
+        for (PostingCursor<V> c : cursors)
+            t += c.upperBound();
+
+        return t;
+
+    }
+
+    /**
+     * The upper bound on the cosine of a candidate.
+     */
+    private double upperBound(final Hit<V> hit) {
+
+        if (resolved.contains(hit.getDocId()))
+            return hit.getCosine();
+
+        double ub = hit.getCosine();
+
+        for (PostingCursor<V> c : cursors) {
+
+            if (!hit.hasTerm(c.queryTermNdx))
+                ub += c.upperBound();
+
+        }
+
+        return ub;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the (exact) cosine of the candidate is
+     * strictly greater than the cosine of any other document which could
+     * still be visited.
+     */
+    private boolean isSafe(final Hit<V> best) {
+
+        final double cosine = best.getCosine();
+
+        if (!(cosine > threshold()))
+            return false;
+
+        for (Hit<V> hit : candidates.values()) {
+
+            if (hit == best || resolved.contains(hit.getDocId())) {
+
+                // exact cosine, already ordered by best().
+                continue;
+
+            }
+
+            if (!(cosine > upperBound(hit)))
+                return false;
+
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Complete the cosine for a candidate by probing the index for each term
+     * which has not been reported for that document. The posting (if any)
+     * must have a weight no greater than the posting under the cursor, so we
+     * probe each compact weight from there down.
+     */
+    private void complete(final Hit<V> hit) {
+
+        final V docId = hit.getDocId();
+
+        for (PostingCursor<V> c : cursors) {
+
+            if (c.rec == null || hit.hasTerm(c.queryTermNdx))
+                continue;
+
+            final long maxWeight = similarity.encodeNormValue((float) c.rec
+                    .getLocalTermWeight());
+
+            for (long b = maxWeight; b >= 0; b--) {
+
+                final double termWeight = similarity.decodeNormValue(b);
+
+                final byte[] key = tupleSer
+                        .serializeKey(new ReadOnlyTermDocRecord<V>(
+                                c.queryTerm, docId, Integer.MIN_VALUE/* fieldId */,
+                                termWeight));
+
+                nprobes++;
+
+                if (ndx.contains(key)) {
+
+                    hit.add(c.queryTermNdx, c.queryTermWeight * termWeight);
+
+                    break;
+
+                }
+
+            }
+
+        }
+
+        resolved.add(docId);
+
+    }
+
+    /**
+     * Read a batch of postings, always advancing the cursor with the greatest
+     * upper bound.
+     */
+    private void read() {
+
+        final int n = Math.max(MIN_BATCH_SIZE, candidates.size());
+
+        for (int i = 0; i < n; i++) {
+
+            if (nread % 1000 == 0) {
+
+                // don't test on each posting -- too much work.
+
+                if (Thread.currentThread().isInterrupted())
+                    throw new RuntimeException(new InterruptedException());
+
+                if (deadline != 0L && System.nanoTime() > deadline) {
+
+                    log.warn("Timeout - only partial results will be returned: nread="
+                            + nread);
+
+                    done = true;
+
+                    return;
+
+                }
+
+            }
+
+            PostingCursor<V> cursor = null;
+
+            for (PostingCursor<V> c : cursors) {
+
+                if (c.rec != null
+                        && (cursor == null || c.upperBound() > cursor
+                                .upperBound()))
+                    cursor = c;
+
+            }
+
+            if (cursor == null) {
+
+                // all cursors are exhausted.
+                done = true;
+
+                return;
+
+            }
+
+            final ITermDocRecord<V> rec = cursor.rec;
+
+            cursor.advance();
+
+            nread++;
+
+            final V docId = rec.getDocId();
+
+            if (resolved.contains(docId))
+                continue;
+
+            Hit<V> hit = candidates.get(docId);
+
+            if (hit == null) {
+
+                if (!admit)
+                    continue;
+
+                hit = new Hit<V>(cursors.length);
+
+                hit.setDocId(docId);
+
+                candidates.put(docId, hit);
+
+            }
+
+            hit.add(cursor.queryTermNdx, cursor.queryTermWeight
+                    * rec.getLocalTermWeight());
+
+        }
+
+    }
+
+    /**
+     * Stop admitting new candidates once no document which has not been seen
+     * could reach the requested rank and discard the candidates which can no
+     * longer reach it.
+     */
+    private void prune() {
+
+        if (done)
+            return;
+
+        /*
+         * The cosine which a document must exceed to be visited. This is the
+         * lower bound on the cosine of the candidate at the last requested
+         * rank (if there are that many candidates).
+         */
+        double floor = minCosine;
+
+        final int remaining = maxRank - rank;
+
+        if (candidates.size() >= remaining) {
+
+            final double[] a = new double[candidates.size()];
+
+            int i = 0;
+            for (Hit<V> hit : candidates.values())
+                a[i++] = hit.getCosine();
+
+            Arrays.sort(a);
+
+            floor = Math.max(floor, a[a.length - remaining]);
+
+        }
+
+        if (admit && threshold() < floor) {
+
+            if (log.isDebugEnabled())
+                log.debug("No longer admitting candidates: floor=" + floor
+                        + ", ncandidates=" + candidates.size() + ", nread="
+                        + nread);
+
+            admit = false;
+
+        }
+
+        if (admit)
+            return;
+
+        final Iterator<Hit<V>> itr = candidates.values().iterator();
+
+        while (itr.hasNext()) {
+
+            if (upperBound(itr.next()) < floor)
+                itr.remove();
+
+        }
+
+        if (candidates.isEmpty())
+            done = true;
+
+    }
+
+    public String toString() {
+
+        return getClass().getSimpleName() + "{nterms=" + cursors.length
+                + ", rank=" + rank + ", ncandidates=" + candidates.size()
+                + ", nread=" + nread + ", nprobes=" + nprobes + "}";
+
+    }
+
+}
@@ -104,6 +104,8 @@ public class TestAll extends TestCase {
         
         // test suite for GeoSpatial utility
         suite.addTestSuite(TestZOrderRangeScanUtility.class);
+        suite.addTestSuite(TestGeoSpatialSearchRings.class);
+        suite.addTestSuite(TestGeoSpatialPolygon.class);
 
         // test suite for encode/decode of xsd:decimal IVs
         suite.addTestSuite(TestEncodeDecodeXSDDecimalIVs.class);
@@ -0,0 +1,139 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.rdf.internal;
+
+import java.util.Random;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.service.geospatial.GeoSpatialPolygon;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.Classification;
+
+/**
+ * Test for the {@link GeoSpatialPolygon} used by polygon search.
+ */
+public class TestGeoSpatialPolygon extends TestCase2 {
+
+   /**
+    * Parsing of WKT polygons, which are given in longitude/latitude order.
+    */
+   public void testParseWKT() {
+
+      final GeoSpatialPolygon polygon =
+         GeoSpatialPolygon.parseWKT("POLYGON((10 20, 30 20, 30 40, 10 40, 10 20))");
+
+      assertEquals(20.0, polygon.getSouthWest()[0]);
+      assertEquals(10.0, polygon.getSouthWest()[1]);
+      assertEquals(40.0, polygon.getNorthEast()[0]);
+      assertEquals(30.0, polygon.getNorthEast()[1]);
+
+      // case, whitespace, a reference system, and a missing closing point are tolerated
+      final GeoSpatialPolygon polygon2 = GeoSpatialPolygon.parseWKT(
+         " <http://www.opengis.net/def/crs/OGC/1.3/CRS84> polygon ( ( 10 20,30 20,  30 40, 10 40 ) ) ");
+      assertEquals(polygon.toString(), polygon2.toString());
+
+      for (String invalid : new String[] {
+            "POINT(10 20)",
+            "POLYGON(10 20, 30 20, 30 40, 10 20)",
+            "POLYGON((10 20, 30 20, 10 20))",
+            "POLYGON((10 20, 30 20, 30 x, 10 20))",
+            "POLYGON((10 20 5, 30 20 5, 30 40 5, 10 20 5))",
+            "POLYGON((10 20, 30 20, 30 95, 10 20))" }) {
+
+         try {
+            GeoSpatialPolygon.parseWKT(invalid);
+            fail("Expected IllegalArgumentException for " + invalid);
+         } catch (IllegalArgumentException e) {
+            // expected
+         }
+      }
+   }
+
+   /**
+    * Point-in-polygon tests for a concave polygon with a hole.
+    */
+   public void testContains() {
+
+      // a U-shaped polygon with a square hole in its left arm
+      final GeoSpatialPolygon polygon = GeoSpatialPolygon.parseWKT(
+         "POLYGON((0 0, 30 0, 30 30, 20 30, 20 10, 10 10, 10 30, 0 30, 0 0),"
+         + "(2 12, 8 12, 8 18, 2 18, 2 12))");
+
+      assertTrue(polygon.contains(5, 5));
+      assertTrue(polygon.contains(25, 25));
+      assertTrue(polygon.contains(25, 5));
+      assertTrue(polygon.contains(20, 1));
+
+      assertFalse(polygon.contains(20, 15)); // between the arms
+      assertFalse(polygon.contains(15, 5));  // in the hole
+      assertFalse(polygon.contains(-1, 5));
+      assertFalse(polygon.contains(35, 5));
+   }
+
+   /**
+    * Rectangles classified as contained (resp. disjoint) must contain only
+    * points inside (resp. outside) the polygon.
+    */
+   public void testClassify() {
+
+      final GeoSpatialPolygon polygon = GeoSpatialPolygon.parseWKT(
+         "POLYGON((0 0, 30 0, 30 30, 20 30, 20 10, 10 10, 10 30, 0 30, 0 0),"
+         + "(2 12, 8 12, 8 18, 2 18, 2 12))");
+
+      assertEquals(Classification.CONTAINED, polygon.classify(1, 1, 9, 9));
+      assertEquals(Classification.CONTAINED, polygon.classify(11, 21, 29, 29));
+      assertEquals(Classification.DISJOINT, polygon.classify(11, 11, 29, 19)); // between the arms
+      assertEquals(Classification.DISJOINT, polygon.classify(13, 3, 17, 7));   // in the hole
+      assertEquals(Classification.DISJOINT, polygon.classify(40, 40, 50, 50));
+      assertEquals(Classification.PARTIAL, polygon.classify(5, 5, 15, 15));
+      assertEquals(Classification.PARTIAL, polygon.classify(-10, -10, 40, 40));
+
+      // rectangles touching an edge are not contained
+      assertEquals(Classification.PARTIAL, polygon.classify(0, 0, 5, 5));
+
+      final Random rnd = new Random(42);
+      for (int i=0; i<1000; i++) {
+
+         final double lat = rnd.nextDouble() * 40 - 5;
+         final double lon = rnd.nextDouble() * 40 - 5;
+         final double height = rnd.nextDouble() * 10;
+         final double width = rnd.nextDouble() * 10;
+
+         final Classification classification = polygon.classify(lat, lon, lat + height, lon + width);
+         if (classification==Classification.PARTIAL)
+            continue;
+
+         for (int j=0; j<20; j++) {
+
+            final boolean contains = polygon.contains(
+               lat + rnd.nextDouble() * height, lon + rnd.nextDouble() * width);
+            assertEquals(classification==Classification.CONTAINED, contains);
+         }
+      }
+   }
+
+}
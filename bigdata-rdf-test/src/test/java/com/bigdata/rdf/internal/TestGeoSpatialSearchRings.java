@@ -0,0 +1,173 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.rdf.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.rdf.internal.gis.CoordinateUtility;
+import com.bigdata.service.geospatial.GeoSpatialSearchRings;
+
+/**
+ * Test for the {@link GeoSpatialSearchRings} used by nearest neighbor search.
+ */
+public class TestGeoSpatialSearchRings extends TestCase2 {
+
+   /**
+    * The first ring is the bounding box of the initial circle, the following
+    * rings double the radius until they cover the whole globe.
+    */
+   public void testRingGrowth() {
+
+      final GeoSpatialSearchRings rings = 
+         new GeoSpatialSearchRings(0.0, 0.0, 1000.0, Double.POSITIVE_INFINITY);
+
+      assertTrue(rings.hasNext());
+
+      final List<double[]> first = rings.next();
+      assertEquals(1, first.size());
+      assertEquals(1000.0, rings.getRadiusInMeters());
+
+      // the box touches the circle on the equator and on the meridian
+      final double delta = 1000.0 / GeoSpatialSearchRings.METERS_PER_DEGREE;
+      assertEquals(-delta, first.get(0)[0], 1E-9);
+      assertEquals(-delta, first.get(0)[1], 1E-9);
+      assertEquals(delta, first.get(0)[2], 1E-9);
+      assertEquals(delta, first.get(0)[3], 1E-9);
+      assertEquals(1000.0, rings.getMinDistanceOutsideInMeters(), 1E-6);
+
+      // the second ring surrounds the first one
+      assertEquals(4, rings.next().size());
+      assertEquals(2000.0, rings.getRadiusInMeters());
+
+      int numRings = 2;
+      while (rings.hasNext()) {
+         rings.next();
+         numRings++;
+      }
+
+      // 1km * 2^14 exceeds a quarter of the circumference of the earth,
+      // so the 15th ring contains both poles
+      assertEquals(15, numRings);
+      assertEquals(Double.POSITIVE_INFINITY, rings.getMinDistanceOutsideInMeters());
+   }
+
+   /**
+    * The rings stop growing at the maximum radius.
+    */
+   public void testMaxRadius() {
+
+      final GeoSpatialSearchRings rings = 
+         new GeoSpatialSearchRings(52.5, 13.4, 1000.0, 3000.0);
+
+      rings.next();
+      rings.next();
+      assertTrue(rings.hasNext());
+      rings.next();
+      assertEquals(3000.0, rings.getRadiusInMeters());
+      assertFalse(rings.hasNext());
+   }
+
+   /**
+    * Rings crossing the date line are split into rectangles that do not
+    * cross the date line.
+    */
+   public void testDateLine() {
+
+      final GeoSpatialSearchRings rings = 
+         new GeoSpatialSearchRings(10.0, 179.99, 10000.0, Double.POSITIVE_INFINITY);
+
+      final List<double[]> first = rings.next();
+      assertEquals(2, first.size());
+      assertEquals(180.0, first.get(0)[3]);
+      assertEquals(-180.0, first.get(1)[1]);
+
+      for (double[] rectangle : first) {
+         assertTrue(rectangle[1] <= rectangle[3]);
+      }
+   }
+
+   /**
+    * Verifies for random center points and rings that (i) all points within
+    * the radius of a ring are covered by the rings and that (ii) no point that
+    * is not covered is closer than the reported minimum distance outside.
+    */
+   public void testCoverage() {
+
+      final Random rnd = new Random(42);
+
+      for (int i=0; i<100; i++) {
+
+         final double centerLat = rnd.nextDouble() * 180 - 90;
+         final double centerLon = rnd.nextDouble() * 360 - 180;
+
+         final GeoSpatialSearchRings rings = new GeoSpatialSearchRings(
+            centerLat, centerLon, Math.pow(10, 1 + rnd.nextDouble() * 5), Double.POSITIVE_INFINITY);
+
+         final List<double[]> points = new ArrayList<double[]>();
+         for (int j=0; j<500; j++) {
+            points.add(new double[] { 
+               Math.max(-90, Math.min(90, centerLat + rnd.nextGaussian())), 
+               ((centerLon + rnd.nextGaussian() + 540) % 360) - 180 });
+            points.add(new double[] { rnd.nextDouble() * 180 - 90, rnd.nextDouble() * 360 - 180 });
+         }
+
+         final List<double[]> covered = new ArrayList<double[]>();
+         while (rings.hasNext()) {
+
+            covered.addAll(rings.next());
+
+            for (double[] point : points) {
+
+               final double distance = 
+                  CoordinateUtility.distanceInMeters(point[0], centerLat, point[1], centerLon);
+
+               if (!isCovered(point, covered)) {
+                  assertTrue(distance > rings.getRadiusInMeters());
+                  assertTrue(distance >= rings.getMinDistanceOutsideInMeters() * (1 - 1E-9));
+               }
+            }
+         }
+      }
+   }
+
+   private static boolean isCovered(final double[] point, final List<double[]> rectangles) {
+
+      for (double[] rectangle : rectangles) {
+         if (rectangle[0] <= point[0] && point[0] <= rectangle[2]
+               && rectangle[1] <= point[1] && point[1] <= rectangle[3]) {
+            return true;
+         }
+      }
+
+      return false;
+   }
+
+}
@@ -26,13 +26,21 @@ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
  */
 package com.bigdata.rdf.internal;
 
+import java.util.List;
+import java.util.Random;
+
 import junit.framework.TestCase2;
 
+import com.bigdata.service.geospatial.GeoSpatialPolygon;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.Classification;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.IRegionClassifier;
+import com.bigdata.service.geospatial.ZOrderRangeDecomposer.ZOrderRange;
 import com.bigdata.service.geospatial.ZOrderRangeScanUtil;
 
 /**
  * Test for utility functionalities required for zOrder index construction,
- * such as {@link ZOrderRangeScanUtil}.
+ * such as {@link ZOrderRangeScanUtil} and {@link ZOrderRangeDecomposer}.
  * 
  * @author <a href="mailto:ms@metaphacts.com">Michael Schmidt</a>
  * @version $Id$
@@ -178,4 +186,196 @@ public class TestZOrderRangeScanUtility extends TestCase2 {
       assertEquals(testByteArray3, exp3);
    }
 
-}
+   /**
+    * Test interleaving and de-interleaving, both for the two-dimensional
+    * (64 bit word based) and the general case.
+    */
+   public void testInterleave() {
+
+      final byte[] zOrder2 = { Byte.valueOf("00101101",2) /* 45 */ };
+      final long[] lanes2 = ZOrderRangeScanUtil.deinterleave(zOrder2, 2, new long[2]);
+      assertEquals(6L /* 0110 */, lanes2[0]);
+      assertEquals(3L /* 0011 */, lanes2[1]);
+      assertEquals(zOrder2, ZOrderRangeScanUtil.interleave(lanes2, 2, new byte[1]));
+
+      final Random r = new Random(17L);
+      for (int i=0; i<1000; i++) {
+
+         final byte[] zOrder = new byte[16];
+         r.nextBytes(zOrder);
+         final long[] lanes = ZOrderRangeScanUtil.deinterleave(zOrder, 2, new long[2]);
+         assertEquals(zOrder, ZOrderRangeScanUtil.interleave(lanes, 2, new byte[16]));
+
+         final byte[] zOrder3 = new byte[24];
+         r.nextBytes(zOrder3);
+         final long[] lanes3 = ZOrderRangeScanUtil.deinterleave(zOrder3, 3, new long[3]);
+         assertEquals(zOrder3, ZOrderRangeScanUtil.interleave(lanes3, 3, new byte[24]));
+      }
+   }
+
+   /**
+    * Test the decomposition of a search range into zOrder ranges in a
+    * two-dimensional setting: the ranges must be ordered and must not
+    * overlap, they must cover all values in the search range, and exact
+    * ranges may only contain values in the search range.
+    */
+   public void testDecomposition2Dim() {
+
+      // 2 <= x <= 12, 3 <= y <= 9 (8 bits per dimension)
+      final byte[] searchMinZOrder = 
+         ZOrderRangeScanUtil.interleave(new long[] { 2, 3 }, 2, new byte[2]);
+      final byte[] searchMaxZOrder = 
+         ZOrderRangeScanUtil.interleave(new long[] { 12, 9 }, 2, new byte[2]);
+
+      for (int maxRanges : new int[] { 1, 2, 5, 16, 1000 }) {
+
+         final List<ZOrderRange> ranges =
+            new ZOrderRangeDecomposer(searchMinZOrder, searchMaxZOrder, 2).decompose(maxRanges);
+
+         assertTrue(ranges.size() <= maxRanges);
+         assertRanges(searchMinZOrder, searchMaxZOrder, 2, ranges);
+      }
+
+      // without cap, the decomposition is exact
+      for (ZOrderRange range : 
+         new ZOrderRangeDecomposer(searchMinZOrder, searchMaxZOrder, 2).decompose(1000)) {
+         assertTrue(range.isExact());
+      }
+      
+      // a cap of one yields the search range itself
+      final List<ZOrderRange> single = 
+         new ZOrderRangeDecomposer(searchMinZOrder, searchMaxZOrder, 2).decompose(1);
+      assertEquals(1, single.size());
+      assertEquals(searchMinZOrder, single.get(0).getFromZOrder());
+      assertEquals(searchMaxZOrder, single.get(0).getToZOrder());
+   }
+
+   /**
+    * Test the decomposition of a search range into zOrder ranges in a
+    * three-dimensional setting.
+    */
+   public void testDecomposition3Dim() {
+
+      final byte[] searchMinZOrder = 
+         ZOrderRangeScanUtil.interleave(new long[] { 1, 6, 0 }, 3, new byte[2]);
+      final byte[] searchMaxZOrder = 
+         ZOrderRangeScanUtil.interleave(new long[] { 18, 7, 30 }, 3, new byte[2]);
+
+      for (int maxRanges : new int[] { 1, 3, 10, 100 }) {
+
+         final List<ZOrderRange> ranges =
+            new ZOrderRangeDecomposer(searchMinZOrder, searchMaxZOrder, 3).decompose(maxRanges);
+
+         assertTrue(ranges.size() <= maxRanges);
+         assertRanges(searchMinZOrder, searchMaxZOrder, 3, ranges);
+      }
+   }
+
+   /**
+    * Test the decomposition of a search range restricted to a region: all
+    * points in the region must be covered, and exact ranges may only contain
+    * points in the region.
+    */
+   public void testDecompositionWithRegion() {
+
+      // a triangle within 2 <= x <= 80, 3 <= y <= 120 (x as latitude, y as longitude)
+      final GeoSpatialPolygon polygon =
+         GeoSpatialPolygon.parseWKT("POLYGON((3 2, 120 40, 10 80, 3 2))");
+
+      final byte[] searchMinZOrder = 
+         ZOrderRangeScanUtil.interleave(new long[] { 2, 3 }, 2, new byte[2]);
+      final byte[] searchMaxZOrder = 
+         ZOrderRangeScanUtil.interleave(new long[] { 80, 120 }, 2, new byte[2]);
+
+      final IRegionClassifier classifier = new IRegionClassifier() {
+         @Override
+         public Classification classify(final byte[] cellMinZOrder, final byte[] cellMaxZOrder) {
+            final long[] min = ZOrderRangeScanUtil.deinterleave(cellMinZOrder, 2, new long[2]);
+            final long[] max = ZOrderRangeScanUtil.deinterleave(cellMaxZOrder, 2, new long[2]);
+            return polygon.classify(min[0], min[1], max[0], max[1]);
+         }
+      };
+
+      for (int maxRanges : new int[] { 1, 4, 16, 100 }) {
+
+         final List<ZOrderRange> ranges = new ZOrderRangeDecomposer(
+            searchMinZOrder, searchMaxZOrder, 2, classifier).decompose(maxRanges);
+
+         assertTrue(ranges.size() <= maxRanges);
+
+         int numExact = 0;
+         for (int z=0; z<(1 << 16); z++) {
+
+            final byte[] zOrder = { (byte)(z >>> 8), (byte)z };
+            final long[] point = ZOrderRangeScanUtil.deinterleave(zOrder, 2, new long[2]);
+            final boolean inRegion = point[0]>=2 && point[0]<=80 && point[1]>=3 && point[1]<=120
+               && polygon.contains(point[0], point[1]);
+
+            ZOrderRange covering = null;
+            for (ZOrderRange range : ranges) {
+               if (toInt(range.getFromZOrder()) <= z && z <= toInt(range.getToZOrder())) {
+                  covering = range;
+               }
+            }
+
+            if (inRegion) {
+               assertNotNull("Not covered: " + z, covering);
+            }
+
+            if (covering != null && covering.isExact()) {
+               assertTrue("Not in region: " + z, inRegion);
+               numExact++;
+            }
+         }
+
+         // with a sufficient number of ranges, the interior is scanned without point-in-polygon tests
+         if (maxRanges>=100) {
+            assertTrue(numExact>0);
+         }
+      }
+   }
+
+   /**
+    * Exhaustively verifies the ranges against the search range over the
+    * (two byte) zOrder space.
+    */
+   private void assertRanges(final byte[] searchMinZOrder, final byte[] searchMaxZOrder,
+      final int numDimensions, final List<ZOrderRange> ranges) {
+
+      int prevTo = -1;
+      for (ZOrderRange range : ranges) {
+         final int from = toInt(range.getFromZOrder());
+         final int to = toInt(range.getToZOrder());
+         assertTrue(from > prevTo);
+         assertTrue(from <= to);
+         prevTo = to;
+      }
+
+      final ZOrderRangeScanUtil rangeScanUtil = 
+         new ZOrderRangeScanUtil(searchMinZOrder, searchMaxZOrder, numDimensions);
+
+      for (int z=0; z<(1 << 16); z++) {
+
+         final byte[] zOrder = { (byte)(z >>> 8), (byte)z };
+         final boolean inRange = rangeScanUtil.isInSearchRange(zOrder);
+
+         ZOrderRange covering = null;
+         for (ZOrderRange range : ranges) {
+            if (toInt(range.getFromZOrder()) <= z && z <= toInt(range.getToZOrder())) {
+               covering = range;
+            }
+         }
+
+         if (inRange) {
+            assertNotNull("Not covered: " + z, covering);
+         } else if (covering != null) {
+            assertFalse("Not in range: " + z, covering.isExact());
+         }
+      }
+   }
+
+   private static int toInt(final byte[] zOrder) {
+      return ((zOrder[0] & 0xff) << 8) | (zOrder[1] & 0xff);
+   }
+
+}
\ No newline at end of file
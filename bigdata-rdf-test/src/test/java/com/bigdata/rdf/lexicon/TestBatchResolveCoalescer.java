@@ -0,0 +1,408 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.lexicon;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.rdf.model.BigdataURI;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.model.BigdataValueFactoryImpl;
+import com.bigdata.util.InnerCause;
+
+/**
+ * Test suite for {@link BatchResolveCoalescer}.
+ */
+public class TestBatchResolveCoalescer extends TestCase2 {
+
+    public TestBatchResolveCoalescer() {
+    }
+
+    public TestBatchResolveCoalescer(final String name) {
+        super(name);
+    }
+
+    /**
+     * A resolver which "reads" the value for each {@link TermId} by creating a
+     * URI whose local name is the term identifier. The termId <code>0</code>
+     * is never resolved.
+     */
+    private static class MockResolver implements
+            BatchResolveCoalescer.IBatchResolver {
+
+        private final BigdataValueFactory f;
+
+        private final long sleepMillis;
+
+        final AtomicInteger nbatches = new AtomicInteger();
+
+        MockResolver(final BigdataValueFactory f, final long sleepMillis) {
+            this.f = f;
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void resolve(final Collection<IV<?, ?>> ivs,
+                final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret)
+                throws Exception {
+
+            nbatches.incrementAndGet();
+
+            if (sleepMillis > 0)
+                Thread.sleep(sleepMillis);
+
+            for (IV<?, ?> iv : ivs) {
+
+                final long tid = ((TermId<?>) iv).getTermId();
+
+                if (tid == 0L)
+                    continue;
+
+                ret.put(iv, f.createURI("http://www.bigdata.com/" + tid));
+
+            }
+
+        }
+
+    }
+
+    private static List<IV<?, ?>> ivs(final long... tids) {
+
+        final List<IV<?, ?>> ivs = new LinkedList<IV<?, ?>>();
+
+        for (long tid : tids) {
+
+            ivs.add(new TermId<BigdataURI>(VTE.URI, tid));
+
+        }
+
+        return ivs;
+
+    }
+
+    public void test_ctor_correctRejection() {
+
+        try {
+            new BatchResolveCoalescer(0/* maxBatchSize */, 1L/* pollMillis */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        try {
+            new BatchResolveCoalescer(10/* maxBatchSize */, 0L/* pollMillis */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * A single caller is resolved by its own resolver. {@link IV}s which can
+     * not be resolved do not appear in the caller's map.
+     */
+    public void test_singleCaller() {
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl
+                .getInstance(getName());
+
+        final BatchResolveCoalescer c = new BatchResolveCoalescer(100, 1L);
+
+        final MockResolver resolver = new MockResolver(f, 0L/* sleepMillis */);
+
+        final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret = new ConcurrentHashMap<IV<?, ?>, BigdataValue>();
+
+        c.resolve(ivs(3, 1, 2, 0), ret, resolver);
+
+        assertEquals(3, ret.size());
+
+        assertEquals(f.createURI("http://www.bigdata.com/2"),
+                ret.get(new TermId<BigdataURI>(VTE.URI, 2L)));
+
+        assertNull(ret.get(new TermId<BigdataURI>(VTE.URI, 0L)));
+
+        assertEquals(1, resolver.nbatches.get());
+
+        assertEquals(1L, c.getBatchCount());
+
+        assertEquals(4L, c.getResolvedCount());
+
+    }
+
+    /**
+     * An error in the resolver is reported to the caller.
+     */
+    public void test_errorPropagation() {
+
+        final BatchResolveCoalescer c = new BatchResolveCoalescer(100, 1L);
+
+        try {
+            c.resolve(ivs(1, 2), new ConcurrentHashMap<IV<?, ?>, BigdataValue>(),
+                    new BatchResolveCoalescer.IBatchResolver() {
+                        @Override
+                        public void resolve(final Collection<IV<?, ?>> ivs,
+                                final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret)
+                                throws Exception {
+                            throw new UnsupportedOperationException();
+                        }
+                    });
+            fail("Expecting: " + RuntimeException.class);
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getCause() instanceof UnsupportedOperationException);
+        }
+
+    }
+
+    /**
+     * Concurrent callers requesting overlapping {@link IV}s are each given all
+     * of their values and the overlap is read fewer times than it was
+     * requested.
+     */
+    public void test_concurrentCallers() throws Exception {
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl
+                .getInstance(getName());
+
+        final BatchResolveCoalescer c = new BatchResolveCoalescer(10000, 1L);
+
+        final MockResolver resolver = new MockResolver(f, 10L/* sleepMillis */);
+
+        final int ncallers = 20;
+
+        final ExecutorService service = Executors.newFixedThreadPool(ncallers);
+
+        try {
+
+            final List<Callable<Void>> tasks = new LinkedList<Callable<Void>>();
+
+            for (int i = 0; i < ncallers; i++) {
+
+                final long first = i;
+
+                tasks.add(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+
+                        final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret = new ConcurrentHashMap<IV<?, ?>, BigdataValue>();
+
+                        // Overlapping requests: [i+1 : i+10].
+                        final List<IV<?, ?>> ivs = ivs(first + 1, first + 2,
+                                first + 3, first + 4, first + 5, first + 6,
+                                first + 7, first + 8, first + 9, first + 10);
+
+                        c.resolve(ivs, ret, resolver);
+
+                        assertEquals(ivs.size(), ret.size());
+
+                        for (IV<?, ?> iv : ivs) {
+
+                            assertEquals(f.createURI("http://www.bigdata.com/"
+                                    + ((TermId<?>) iv).getTermId()), ret.get(iv));
+
+                        }
+
+                        return null;
+
+                    }
+
+                });
+
+            }
+
+            for (Future<Void> ft : service.invokeAll(tasks)) {
+
+                ft.get();
+
+            }
+
+        } finally {
+
+            service.shutdownNow();
+
+        }
+
+        if (log.isInfoEnabled())
+            log.info(c.getCounters().toString());
+
+        // Every batch reads distinct IVs only.
+        assertTrue(c.getResolvedCount() <= ncallers * 10);
+
+        assertEquals(c.getBatchCount(), resolver.nbatches.get());
+
+    }
+
+    /**
+     * If the thread running a batch is interrupted (e.g., its query was
+     * cancelled), then only that thread's request fails. The other requests
+     * which were drained into the same batch are returned to the queue and
+     * resolved by their own threads.
+     */
+    public void test_interruptDoesNotFailCoalescedRequests() throws Exception {
+
+        final BigdataValueFactory f = BigdataValueFactoryImpl
+                .getInstance(getName());
+
+        final BatchResolveCoalescerCounters counters = new BatchResolveCoalescerCounters();
+
+        final BatchResolveCoalescer c = new BatchResolveCoalescer(10000, 1L,
+                counters);
+
+        // Holds the lock until both requests have been queued.
+        final CountDownLatch gateEntered = new CountDownLatch(1);
+
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        final BatchResolveCoalescer.IBatchResolver gateResolver = new BatchResolveCoalescer.IBatchResolver() {
+            @Override
+            public void resolve(final Collection<IV<?, ?>> ivs,
+                    final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret)
+                    throws Exception {
+                gateEntered.countDown();
+                gate.await();
+            }
+        };
+
+        // The first batch blocks until interrupted. Later batches succeed.
+        final AtomicReference<Thread> winner = new AtomicReference<Thread>();
+
+        final CountDownLatch winnerEntered = new CountDownLatch(1);
+
+        final MockResolver mockResolver = new MockResolver(f, 0L/* sleepMillis */);
+
+        final BatchResolveCoalescer.IBatchResolver resolver = new BatchResolveCoalescer.IBatchResolver() {
+            @Override
+            public void resolve(final Collection<IV<?, ?>> ivs,
+                    final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret)
+                    throws Exception {
+                if (winner.compareAndSet(null, Thread.currentThread())) {
+                    winnerEntered.countDown();
+                    assertEquals(4, ivs.size());
+                    Thread.sleep(Long.MAX_VALUE);
+                }
+                mockResolver.resolve(ivs, ret);
+            }
+        };
+
+        final ExecutorService service = Executors.newFixedThreadPool(3);
+
+        try {
+
+            final Future<Void> ft0 = service.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    c.resolve(ivs(100), new ConcurrentHashMap<IV<?, ?>, BigdataValue>(),
+                            gateResolver);
+                    return null;
+                }
+            });
+
+            gateEntered.await();
+
+            final List<Future<Integer>> futures = new LinkedList<Future<Integer>>();
+
+            for (final long first : new long[] { 1, 3 }) {
+
+                futures.add(service.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        final ConcurrentHashMap<IV<?, ?>, BigdataValue> ret = new ConcurrentHashMap<IV<?, ?>, BigdataValue>();
+                        c.resolve(ivs(first, first + 1), ret, resolver);
+                        return ret.size();
+                    }
+                }));
+
+            }
+
+            // Wait until both requests are queued behind the gate.
+            while (counters.requestCount.get() < 3L)
+                Thread.sleep(1L);
+
+            gate.countDown();
+
+            ft0.get();
+
+            // Both requests are drained into the same batch.
+            winnerEntered.await();
+
+            winner.get().interrupt();
+
+            int nfailed = 0;
+
+            for (Future<Integer> ft : futures) {
+
+                try {
+
+                    assertEquals(Integer.valueOf(2), ft.get());
+
+                } catch (ExecutionException ex) {
+
+                    assertTrue(InnerCause.isInnerCause(ex,
+                            InterruptedException.class));
+
+                    nfailed++;
+
+                }
+
+            }
+
+            assertEquals(1, nfailed);
+
+            assertEquals(1L, counters.requeuedCount.get());
+
+            // The gate, the interrupted batch and the re-queued request.
+            assertEquals(3L, c.getBatchCount());
+
+        } finally {
+
+            service.shutdownNow();
+
+        }
+
+    }
+
+}
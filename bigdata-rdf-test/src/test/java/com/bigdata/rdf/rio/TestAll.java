@@ -89,6 +89,9 @@ public class TestAll extends TestCase {
          */
         suite.addTestSuite(TestAsynchronousStatementBufferFactory.class);
 
+        // columnar binary SPARQL result set interchange.
+        suite.addTestSuite(TestColumnarResultsInterchange.class);
+
         return suite;
         
     }
@@ -0,0 +1,364 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.rio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import junit.framework.TestCase2;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.MapBindingSet;
+import org.openrdf.query.impl.TupleQueryResultBuilder;
+import org.openrdf.query.resultio.QueryResultParseException;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
+import org.openrdf.query.resultio.TupleQueryResultParserRegistry;
+
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.rdf.ServiceProviderHook;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.internal.XSD;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.rdf.internal.impl.literal.LiteralExtensionIV;
+import com.bigdata.rdf.internal.impl.literal.XSDBooleanIV;
+import com.bigdata.rdf.internal.impl.literal.XSDNumericIV;
+import com.bigdata.rdf.model.BigdataLiteral;
+import com.bigdata.rdf.model.BigdataURI;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.model.BigdataValueFactoryImpl;
+import com.bigdata.rdf.rio.columnar.ColumnarResultsWriter;
+import com.bigdata.rdf.sail.webapp.client.AcceptHeaderFactory;
+import com.bigdata.rdf.sail.webapp.client.ColumnarResultsParser;
+import com.bigdata.rdf.sail.webapp.client.IMimeTypes;
+
+/**
+ * Test suite for the columnar binary SPARQL result set encoding (round trip
+ * through the {@link ColumnarResultsWriter} and the
+ * {@link ColumnarResultsParser}).
+ */
+public class TestColumnarResultsInterchange extends TestCase2 {
+
+    public TestColumnarResultsInterchange() {
+    }
+
+    public TestColumnarResultsInterchange(final String name) {
+        super(name);
+    }
+
+    private BigdataValueFactory f;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        f = BigdataValueFactoryImpl.getInstance(getName());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (f != null) {
+            f.remove();
+            f = null;
+        }
+        super.tearDown();
+    }
+
+    private static List<BindingSet> parse(final byte[] data) throws Exception {
+
+        final ColumnarResultsParser parser = new ColumnarResultsParser();
+
+        final TupleQueryResultBuilder builder = new TupleQueryResultBuilder();
+
+        parser.setQueryResultHandler(builder);
+
+        parser.parseQueryResult(new ByteArrayInputStream(data));
+
+        final List<BindingSet> ret = new LinkedList<BindingSet>();
+
+        final TupleQueryResult result = builder.getQueryResult();
+
+        try {
+            while (result.hasNext())
+                ret.add(result.next());
+        } finally {
+            result.close();
+        }
+
+        return ret;
+
+    }
+
+    private static BindingSet bs(final String[] names, final Value... values) {
+
+        final MapBindingSet bs = new MapBindingSet();
+
+        for (int i = 0; i < names.length; i++) {
+
+            if (values[i] != null)
+                bs.addBinding(names[i], values[i]);
+
+        }
+
+        return bs;
+
+    }
+
+    private static void assertSameSolutions(final String[] names,
+            final List<BindingSet> expected, final List<BindingSet> actual) {
+
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+
+            for (String name : names) {
+
+                assertEquals("row=" + i + ", var=" + name, expected.get(i)
+                        .getValue(name), actual.get(i).getValue(name));
+
+            }
+
+        }
+
+    }
+
+    /**
+     * The columnar format is opt-in. The default Accept header for solutions
+     * does not include it even though its parser is registered, and BINARY
+     * remains the preferred format.
+     */
+    public void test_notInDefaultAcceptHeader() {
+
+        ServiceProviderHook.forceLoad();
+
+        assertNotNull(TupleQueryResultParserRegistry.getInstance().get(
+                ServiceProviderHook.COLUMNAR_RESULTS));
+
+        final String acceptHeader = AcceptHeaderFactory
+                .getDefaultSolutionsAcceptHeader();
+
+        assertFalse(acceptHeader,
+                acceptHeader.contains(IMimeTypes.MIME_SPARQL_RESULTS_COLUMNAR));
+
+        for (String mimeType : TupleQueryResultFormat.BINARY.getMIMETypes()) {
+
+            // The preferred format has no quality annotation.
+            assertTrue(acceptHeader, Arrays.asList(acceptHeader.split(","))
+                    .contains(mimeType));
+
+        }
+
+    }
+
+    /**
+     * An empty result set.
+     */
+    public void test_empty() throws Exception {
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        final ColumnarResultsWriter w = new ColumnarResultsWriter(baos);
+
+        final TupleQueryResultBuilder builder = new TupleQueryResultBuilder();
+
+        w.startQueryResult(Arrays.asList("x", "y"));
+
+        w.endQueryResult();
+
+        final ColumnarResultsParser parser = new ColumnarResultsParser();
+
+        parser.setQueryResultHandler(builder);
+
+        parser.parseQueryResult(new ByteArrayInputStream(baos.toByteArray()));
+
+        final TupleQueryResult result = builder.getQueryResult();
+
+        assertEquals(Arrays.asList("x", "y"), result.getBindingNames());
+
+        assertFalse(result.hasNext());
+
+    }
+
+    /**
+     * Round trip of openrdf solutions, including unbound variables, repeated
+     * values, all kinds of RDF terms and inline values, using small chunks
+     * and a small dictionary so the chunk boundaries and dictionary resets
+     * are exercised.
+     */
+    public void test_roundTrip_openrdfSolutions() throws Exception {
+
+        final String[] names = new String[] { "s", "o", "n" };
+
+        final BigdataLiteral inlineInt = f.createLiteral(12);
+        inlineInt.setIV(new XSDNumericIV<BigdataLiteral>(12));
+
+        final BigdataLiteral inlineDouble = f.createLiteral(1.5d);
+        inlineDouble.setIV(new XSDNumericIV<BigdataLiteral>(1.5d));
+
+        final BigdataLiteral inlineFloat = f.createLiteral(2.25f);
+        inlineFloat.setIV(new XSDNumericIV<BigdataLiteral>(2.25f));
+
+        final BigdataLiteral inlineBoolean = f.createLiteral(true);
+        inlineBoolean.setIV(XSDBooleanIV.valueOf(true));
+
+        final List<BindingSet> expected = new LinkedList<BindingSet>();
+
+        for (int i = 0; i < 25; i++) {
+
+            expected.add(bs(names, f.createURI("http://www.bigdata.com/s"
+                    + (i / 3)), f.createLiteral("label " + i), inlineInt));
+
+        }
+
+        expected.add(bs(names, f.createBNode("b1"),
+                f.createLiteral("chat", "fr"), inlineDouble));
+
+        expected.add(bs(names, null, f.createLiteral("12.0", XSD.DECIMAL),
+                inlineFloat));
+
+        expected.add(bs(names, f.createURI("http://www.bigdata.com/s0"),
+                null, inlineBoolean));
+
+        expected.add(bs(names, null, null, null));
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        final ColumnarResultsWriter w = new ColumnarResultsWriter(baos,
+                null/* lex */, 4/* chunkSize */, 8/* maxDictionarySize */);
+
+        w.startQueryResult(Arrays.asList(names));
+
+        for (BindingSet bs : expected)
+            w.handleSolution(bs);
+
+        w.endQueryResult();
+
+        assertSameSolutions(names, expected, parse(baos.toByteArray()));
+
+    }
+
+    /**
+     * Round trip of native solutions. Inline {@link IV}s are written without
+     * being materialized.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_roundTrip_nativeSolutions() throws Exception {
+
+        final String[] names = new String[] { "s", "n", "d" };
+
+        final TermId<BigdataURI> s = new TermId<BigdataURI>(VTE.URI, 12L);
+        s.setValue(f.createURI("http://www.bigdata.com/a"));
+
+        final TermId<BigdataURI> dtIV = new TermId<BigdataURI>(VTE.URI, 13L);
+        dtIV.setValue(f.createURI(XSD.DATETIME.stringValue()));
+
+        final long millis = 1792368000000L;
+
+        final LiteralExtensionIV dateTime = new LiteralExtensionIV(
+                new XSDNumericIV(millis), dtIV);
+
+        final IBindingSet b1 = new ListBindingSet();
+        b1.set(Var.var("s"), new Constant<IV>(s));
+        b1.set(Var.var("n"), new Constant<IV>(new XSDNumericIV(7L)));
+        b1.set(Var.var("d"), new Constant<IV>(dateTime));
+
+        final IBindingSet b2 = new ListBindingSet();
+        b2.set(Var.var("s"), new Constant<IV>(s));
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        final ColumnarResultsWriter w = new ColumnarResultsWriter(baos);
+
+        w.startQueryResult(Arrays.asList(names));
+
+        w.handleSolutions(new IBindingSet[] { b1, b2 });
+
+        w.endQueryResult();
+
+        final List<BindingSet> actual = parse(baos.toByteArray());
+
+        assertEquals(2, actual.size());
+
+        assertEquals(f.createURI("http://www.bigdata.com/a"), actual.get(0)
+                .getValue("s"));
+
+        assertEquals(f.createLiteral(7L), actual.get(0).getValue("n"));
+
+        final Literal d = (Literal) actual.get(0).getValue("d");
+
+        assertEquals(XSD.DATETIME, d.getDatatype());
+
+        assertEquals(millis, d.calendarValue().toGregorianCalendar()
+                .getTimeInMillis());
+
+        assertEquals(f.createURI("http://www.bigdata.com/a"), actual.get(1)
+                .getValue("s"));
+
+        assertNull(actual.get(1).getValue("n"));
+
+        assertNull(actual.get(1).getValue("d"));
+
+    }
+
+    /**
+     * A truncated response is reported as a parse error.
+     */
+    public void test_truncated() throws Exception {
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        final ColumnarResultsWriter w = new ColumnarResultsWriter(baos);
+
+        w.startQueryResult(Arrays.asList("x"));
+
+        w.handleSolution(bs(new String[] { "x" },
+                f.createURI("http://www.bigdata.com/x")));
+
+        w.endQueryResult();
+
+        final byte[] b = baos.toByteArray();
+
+        try {
+            parse(Arrays.copyOf(b, b.length - 3));
+            fail("Expecting: " + QueryResultParseException.class);
+        } catch (QueryResultParseException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+}
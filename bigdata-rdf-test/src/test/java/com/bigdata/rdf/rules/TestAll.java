@@ -211,6 +211,9 @@ public class TestAll extends TestCase {
         
         // test suite for basic TM mechanism encapsulated by this class.
         suite.addTestSuite(TestTruthMaintenance.class);
+
+        // streaming (in-memory delta) truth maintenance.
+        suite.addTestSuite(TestStreamingTruthMaintenance.class);
         
         return suite;
         
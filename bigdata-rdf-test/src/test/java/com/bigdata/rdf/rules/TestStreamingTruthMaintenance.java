@@ -0,0 +1,431 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.rules;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.OWL;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.model.vocabulary.RDFS;
+import org.openrdf.rio.RDFFormat;
+
+import com.bigdata.rdf.inf.ClosureStats;
+import com.bigdata.rdf.inf.StreamingTruthMaintenance;
+import com.bigdata.rdf.inf.TruthMaintenance;
+import com.bigdata.rdf.model.BigdataStatement;
+import com.bigdata.rdf.model.BigdataURI;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.rdf.model.BigdataValueFactory;
+import com.bigdata.rdf.model.StatementEnum;
+import com.bigdata.rdf.rio.StatementBuffer;
+import com.bigdata.rdf.spo.ISPO;
+import com.bigdata.rdf.spo.SPO;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.BigdataStatementIterator;
+import com.bigdata.rdf.store.DataLoader;
+import com.bigdata.rdf.store.DataLoader.ClosureEnum;
+import com.bigdata.rdf.store.TempTripleStore;
+
+/**
+ * Test suite for {@link StreamingTruthMaintenance}.
+ */
+public class TestStreamingTruthMaintenance extends
+        AbstractInferenceEngineTestCase {
+
+    public TestStreamingTruthMaintenance() {
+        super();
+    }
+
+    public TestStreamingTruthMaintenance(String name) {
+        super(name);
+    }
+
+    /**
+     * Statements asserted by several small updates are buffered until the
+     * batch is flushed, at which point the closure is computed (rdfs11 and
+     * rdfs9, which requires more than one round) and the per-rule statistics
+     * are reported.
+     */
+    public void test_assertAll_batched() {
+
+        final AbstractTripleStore store = getStore();
+
+        try {
+
+            final BigdataValueFactory f = store.getValueFactory();
+
+            final BigdataURI U = f.createURI("http://www.bigdata.com/U");
+            final BigdataURI V = f.createURI("http://www.bigdata.com/V");
+            final BigdataURI X = f.createURI("http://www.bigdata.com/X");
+            final BigdataURI x = f.createURI("http://www.bigdata.com/x");
+
+            final BigdataURI rdfType = f.asValue(RDF.TYPE);
+            final BigdataURI rdfsSubClassOf = f.asValue(RDFS.SUBCLASSOF);
+
+            store.addTerms(new BigdataValue[] { U, V, X, x, rdfType,
+                    rdfsSubClassOf });
+
+            final StreamingTruthMaintenance tm = new StreamingTruthMaintenance(
+                    store.getInferenceEngine(), 100/* batchSize */);
+
+            // Two updates, neither of which fills the batch.
+            assertNull(tm.assertAll(new ISPO[] {//
+                    new SPO(U.getIV(), rdfsSubClassOf.getIV(), V.getIV(),
+                            StatementEnum.Explicit),//
+                    new SPO(V.getIV(), rdfsSubClassOf.getIV(), X.getIV(),
+                            StatementEnum.Explicit) //
+                    }, 2));
+
+            assertNull(tm.assertAll(new ISPO[] {//
+                    new SPO(x.getIV(), rdfType.getIV(), U.getIV(),
+                            StatementEnum.Explicit) //
+                    }, 1));
+
+            assertEquals(3, tm.getPendingCount());
+
+            // Nothing is written until the batch is flushed.
+            assertFalse(store.hasStatement(U, rdfsSubClassOf, V));
+
+            final ClosureStats stats = tm.flush();
+
+            if (log.isInfoEnabled())
+                log.info(stats);
+
+            assertEquals(0, tm.getPendingCount());
+
+            // explicit.
+            assertTrue(store.hasStatement(U, rdfsSubClassOf, V));
+            assertTrue(store.hasStatement(V, rdfsSubClassOf, X));
+            assertTrue(store.hasStatement(x, rdfType, U));
+            assertEquals(StatementEnum.Explicit, store.getStatement(U,
+                    rdfsSubClassOf, V).getStatementType());
+
+            // inferred.
+            assertTrue(store.hasStatement(U, rdfsSubClassOf, X));
+            assertTrue(store.hasStatement(x, rdfType, V));
+            assertTrue(store.hasStatement(x, rdfType, X));
+            assertEquals(StatementEnum.Inferred, store.getStatement(x,
+                    rdfType, X).getStatementType());
+
+            assertTrue(stats.mutationCount.get() > 0);
+
+            assertTrue(stats.ruleStats.get("rdfs11").entailmentCount.get() > 0);
+
+            assertTrue(stats.ruleStats.get("rdfs09").entailmentCount.get() > 0);
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Verify that the entailments computed by the streaming closure are
+     * justified such that they are removed when their support is retracted.
+     */
+    public void test_retractAll() {
+
+        final AbstractTripleStore store = getStore();
+
+        try {
+
+            if (!store.isJustify()) {
+
+                // Retraction requires justifications.
+                return;
+
+            }
+
+            final BigdataValueFactory f = store.getValueFactory();
+
+            final BigdataURI U = f.createURI("http://www.bigdata.com/U");
+            final BigdataURI V = f.createURI("http://www.bigdata.com/V");
+            final BigdataURI X = f.createURI("http://www.bigdata.com/X");
+
+            final BigdataURI rdfsSubClassOf = f.asValue(RDFS.SUBCLASSOF);
+
+            store.addTerms(new BigdataValue[] { U, V, X, rdfsSubClassOf });
+
+            final StreamingTruthMaintenance tm = new StreamingTruthMaintenance(
+                    store.getInferenceEngine(), 2/* batchSize */);
+
+            final ISPO uv = new SPO(U.getIV(), rdfsSubClassOf.getIV(),
+                    V.getIV(), StatementEnum.Explicit);
+
+            final ISPO vx = new SPO(V.getIV(), rdfsSubClassOf.getIV(),
+                    X.getIV(), StatementEnum.Explicit);
+
+            // Fills the batch, so the closure is computed.
+            assertNotNull(tm.assertAll(new ISPO[] { uv, vx }, 2));
+
+            assertTrue(store.hasStatement(U, rdfsSubClassOf, X));
+
+            tm.retractAll(new ISPO[] { vx }, 1);
+
+            assertTrue(store.hasStatement(U, rdfsSubClassOf, V));
+            assertFalse(store.hasStatement(V, rdfsSubClassOf, X));
+            assertFalse(store.hasStatement(U, rdfsSubClassOf, X));
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Verify that the closure computed by the streaming truth maintenance is
+     * the same as the closure computed by {@link TruthMaintenance} for the
+     * fixtures of {@link TestTruthMaintenance} (a subClassOf chain closed into
+     * a cycle and an owl:sameAs). A small batch size is used so the closure
+     * is computed in several passes.
+     */
+    public void test_sameClosure_cycles() {
+
+        final URI a = new URIImpl("http://www.bigdata.com/a");
+        final URI b = new URIImpl("http://www.bigdata.com/b");
+        final URI c = new URIImpl("http://www.bigdata.com/c");
+        final URI x = new URIImpl("http://www.bigdata.com/x");
+        final URI y = new URIImpl("http://www.bigdata.com/y");
+        final URI entity = new URIImpl("http://www.bigdata.com/Entity");
+
+        final Statement[] stmts = new Statement[] {//
+                new StatementImpl(a, RDFS.SUBCLASSOF, b),//
+                new StatementImpl(b, RDFS.SUBCLASSOF, c),//
+                new StatementImpl(c, RDFS.SUBCLASSOF, a),//
+                new StatementImpl(x, RDF.TYPE, a),//
+                new StatementImpl(x, RDF.TYPE, entity),//
+                new StatementImpl(y, RDF.TYPE, entity),//
+                new StatementImpl(x, OWL.SAMEAS, y),//
+        };
+
+        final AbstractTripleStore expected = getStore();
+
+        try {
+
+            final AbstractTripleStore actual = getStore();
+
+            try {
+
+                {
+
+                    final TruthMaintenance tm = new TruthMaintenance(expected
+                            .getInferenceEngine());
+
+                    tm.assertAll(newTempStore(tm, expected, stmts));
+
+                }
+
+                {
+
+                    final TruthMaintenance tm = new TruthMaintenance(actual
+                            .getInferenceEngine());
+
+                    new StreamingTruthMaintenance(actual.getInferenceEngine(),
+                            2/* batchSize */).assertAll(newTempStore(tm,
+                            actual, stmts));
+
+                }
+
+                assertSameClosure(expected, actual);
+
+            } finally {
+
+                actual.__tearDownUnitTest();
+
+            }
+
+        } finally {
+
+            expected.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Verify that the {@link DataLoader} computes the same closure for an
+     * LUBM university when the closure is maintained by the streaming truth
+     * maintenance.
+     * 
+     * @see DataLoader.Options#STREAMING_TRUTH_MAINTENANCE
+     */
+    public void test_sameClosure_dataLoader() throws IOException {
+
+        final String[] resources = new String[] {
+                "src/test/resources/data/lehigh/univ-bench-modified-no-bnodes.owl",
+                "src/test/resources/data/lehigh/U1/University0_0.owl" };
+
+        final Properties properties = getProperties();
+
+        properties.setProperty(DataLoader.Options.CLOSURE,
+                ClosureEnum.Incremental.toString());
+
+        final AbstractTripleStore expected = getStore(properties);
+
+        try {
+
+            final AbstractTripleStore actual = getStore(properties);
+
+            try {
+
+                load(new DataLoader(properties, expected), resources);
+
+                final Properties p = new Properties(properties);
+
+                p.setProperty(DataLoader.Options.STREAMING_TRUTH_MAINTENANCE,
+                        "true");
+
+                // Compute the closure in several passes.
+                p.setProperty(DataLoader.Options.BUFFER_CAPACITY, "1000");
+
+                load(new DataLoader(p, actual), resources);
+
+                assertSameClosure(expected, actual);
+
+            } finally {
+
+                actual.__tearDownUnitTest();
+
+            }
+
+        } finally {
+
+            expected.__tearDownUnitTest();
+
+        }
+
+    }
+
+    private void load(final DataLoader dataLoader, final String[] resources)
+            throws IOException {
+
+        for (String resource : resources) {
+
+            dataLoader.loadData(resource, new File(resource).toURI()
+                    .toString(), RDFFormat.RDFXML);
+
+        }
+
+    }
+
+    /**
+     * Return a temporary store for the database on which the statements have
+     * been written.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private TempTripleStore newTempStore(final TruthMaintenance tm,
+            final AbstractTripleStore db, final Statement[] stmts) {
+
+        final StatementBuffer buffer = new StatementBuffer(tm
+                .newTempTripleStore(), db, 100/* capacity */, 10/* queueCapacity */);
+
+        for (Statement stmt : stmts) {
+
+            buffer.add(stmt);
+
+        }
+
+        buffer.flush();
+
+        return (TempTripleStore) buffer.getStatementStore();
+
+    }
+
+    /**
+     * Compare the statements (and their types) in the two databases. The
+     * statements are compared as RDF values since the term identifiers are
+     * assigned independently by each database.
+     */
+    private void assertSameClosure(final AbstractTripleStore expected,
+            final AbstractTripleStore actual) {
+
+        final Set<String> e = getStatements(expected);
+
+        final Set<String> a = getStatements(actual);
+
+        if (log.isInfoEnabled())
+            log.info("#statements=" + e.size());
+
+        if (!e.equals(a)) {
+
+            final Set<String> missing = new TreeSet<String>(e);
+            missing.removeAll(a);
+
+            final Set<String> unexpected = new TreeSet<String>(a);
+            unexpected.removeAll(e);
+
+            fail("missing=" + missing + ", unexpected=" + unexpected);
+
+        }
+
+    }
+
+    private Set<String> getStatements(final AbstractTripleStore db) {
+
+        final Set<String> set = new HashSet<String>();
+
+        final BigdataStatementIterator itr = db.getStatements(
+                (Resource) null, (URI) null, (Value) null);
+
+        try {
+
+            while (itr.hasNext()) {
+
+                final BigdataStatement stmt = itr.next();
+
+                set.add(stmt.getSubject() + " " + stmt.getPredicate() + " "
+                        + stmt.getObject() + " " + stmt.getStatementType());
+
+            }
+
+        } finally {
+
+            itr.close();
+
+        }
+
+        return set;
+
+    }
+
+}
@@ -64,6 +64,12 @@ public class TestAll extends TestCase {
             suite.addTestSuite(TestCacheConnectionFactory.class);
 
         }
+
+        // Query plan cache.
+        suite.addTestSuite(TestQueryPlanCache.class);
+
+        // SPARQL result cache.
+        suite.addTestSuite(TestSparqlResultCache.class);
                 
         /*
          * Note: Data-driven unit tests are used for the SPARQL named solution
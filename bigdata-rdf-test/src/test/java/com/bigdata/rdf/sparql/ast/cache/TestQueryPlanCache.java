@@ -0,0 +1,527 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.cache;
+
+import java.util.Properties;
+
+import junit.framework.TestCase2;
+
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.evaluation.QueryBindingSet;
+
+import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.fed.QueryEngineFactory;
+import com.bigdata.journal.BufferMode;
+import com.bigdata.journal.ITx;
+import com.bigdata.journal.Journal;
+import com.bigdata.rdf.axioms.NoAxioms;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+import com.bigdata.rdf.sail.sparql.Bigdata2ASTSPARQLParser;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+import com.bigdata.rdf.sparql.ast.eval.ASTEvalHelper;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTMaterializedViewOptimizer;
+import com.bigdata.rdf.sparql.ast.service.ServiceRegistry;
+import com.bigdata.rdf.sparql.ast.service.storedquery.MaterializedViewService;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.LocalTripleStore;
+
+/**
+ * Test suite for the {@link QueryPlanCache}.
+ */
+public class TestQueryPlanCache extends TestCase2 {
+
+    public TestQueryPlanCache() {
+    }
+
+    public TestQueryPlanCache(final String name) {
+        super(name);
+    }
+
+    public void test_ctor_correctRejection() {
+
+        try {
+            new QueryPlanCache(0/* capacity */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * Whitespace outside of a literal is collapsed and the query is trimmed.
+     */
+    public void test_normalize_whitespace() {
+
+        assertEquals("SELECT * { ?s ?p ?o }",
+                QueryPlanCache.normalize("  SELECT *   {\t?s ?p  ?o }  "));
+
+        // A line break is preserved since it terminates a comment.
+        assertEquals("# comment \nSELECT * { ?s ?p ?o }",
+                QueryPlanCache
+                        .normalize("# comment \r\n  SELECT * { ?s ?p ?o }\n"));
+
+        // A quote within a comment does not start a literal.
+        assertEquals("# don't\nSELECT * { ?s ?p ?o }",
+                QueryPlanCache.normalize("# don't\nSELECT  * { ?s ?p ?o }"));
+
+    }
+
+    /**
+     * Whitespace within a literal is not modified.
+     */
+    public void test_normalize_literals() {
+
+        assertEquals("SELECT * { ?s ?p \"a  b\" }",
+                QueryPlanCache.normalize("SELECT * { ?s ?p \"a  b\" }"));
+
+        assertEquals("SELECT * { ?s ?p 'a \\'  b' }",
+                QueryPlanCache.normalize("SELECT *  { ?s ?p 'a \\'  b' }"));
+
+        assertEquals("SELECT * { ?s ?p \"\"\"a \"  \n b\"\"\" . }",
+                QueryPlanCache
+                        .normalize("SELECT * { ?s ?p \"\"\"a \"  \n b\"\"\"  . }"));
+
+    }
+
+    /**
+     * The key is sensitive to the namespace and the base URI but not to
+     * insignificant whitespace.
+     */
+    public void test_getKey() {
+
+        final String q = "SELECT * { ?s ?p ?o }";
+
+        assertEquals(QueryPlanCache.getKey("kb", null, q),
+                QueryPlanCache.getKey("kb", null, " SELECT *  { ?s ?p ?o }"));
+
+        assertFalse(QueryPlanCache.getKey("kb", null, q).equals(
+                QueryPlanCache.getKey("kb2", null, q)));
+
+        assertFalse(QueryPlanCache.getKey("kb", null, q).equals(
+                QueryPlanCache.getKey("kb", "http://www.bigdata.com/", q)));
+
+    }
+
+    /**
+     * Relative IRIs are resolved against the base URI, so the result cache
+     * key must also be sensitive to the base URI.
+     */
+    public void test_resultCacheKey_baseURI() throws Exception {
+
+        final Journal jnl = newJournal();
+
+        try {
+
+            final AbstractTripleStore kb = newKB(jnl);
+
+            final AbstractTripleStore view = (AbstractTripleStore) jnl
+                    .getResourceLocator().locate(kb.getNamespace(),
+                            ITx.READ_COMMITTED);
+
+            final SparqlResultCache resultCache = new SparqlResultCache(
+                    1024 * 1024/* maxBytes */, 1000/* maxSolutions */);
+
+            try {
+
+                final String queryStr = "SELECT * { <s> ?p ?o }";
+
+                final String k1 = getResultCacheKey(view, resultCache,
+                        queryStr, "http://www.bigdata.com/a/");
+
+                final String k2 = getResultCacheKey(view, resultCache,
+                        queryStr, "http://www.bigdata.com/b/");
+
+                assertEquals(k1, getResultCacheKey(view, resultCache,
+                        queryStr, "http://www.bigdata.com/a/"));
+
+                assertFalse(k1.equals(k2));
+
+            } finally {
+
+                resultCache.clear();
+
+            }
+
+        } finally {
+
+            jnl.destroy();
+
+        }
+
+    }
+
+    /**
+     * A query which was never entered into the cache is a miss.
+     */
+    public void test_get_miss() {
+
+        final QueryPlanCache cache = new QueryPlanCache(10/* capacity */);
+
+        assertNull(cache.get("kb", "SELECT * { ?s ?p ?o }", null/* baseURI */));
+
+        assertEquals(0, cache.size());
+
+        assertNotNull(cache.getCounters().getChild("missCount"));
+
+    }
+
+    /**
+     * A deterministic query is entered into the cache once it was evaluated.
+     */
+    public void test_evaluate_cached() throws Exception {
+
+        final Journal jnl = newJournal();
+
+        try {
+
+            final AbstractTripleStore kb = newKB(jnl);
+
+            final QueryPlanCache cache = newCache(kb);
+
+            final String queryStr = "SELECT * { ?s ?p ?o }";
+
+            evaluate(kb, cache, queryStr);
+
+            assertNotNull(cache.get(kb.getNamespace(), queryStr, null/* baseURI */));
+
+            evaluate(kb, cache, queryStr);
+
+        } finally {
+
+            jnl.destroy();
+
+        }
+
+    }
+
+    /**
+     * The optimizers fold NOW() into a constant, so the optimized AST of a
+     * query using NOW() must not be reused.
+     */
+    public void test_evaluate_nonDeterministic() throws Exception {
+
+        final Journal jnl = newJournal();
+
+        try {
+
+            final AbstractTripleStore kb = newKB(jnl);
+
+            final QueryPlanCache cache = newCache(kb);
+
+            final String queryStr = "SELECT (NOW() AS ?t) {}";
+
+            final String t1 = evaluate(kb, cache, queryStr).getValue("t")
+                    .stringValue();
+
+            Thread.sleep(10/* ms */);
+
+            final String t2 = evaluate(kb, cache, queryStr).getValue("t")
+                    .stringValue();
+
+            assertFalse(t1 + " vs " + t2, t1.equals(t2));
+
+            assertNull(cache.get(kb.getNamespace(), queryStr, null/* baseURI */));
+
+        } finally {
+
+            jnl.destroy();
+
+        }
+
+    }
+
+    /**
+     * A query which is rewritten to read a materialized view is neither
+     * entered into the plan cache nor into the result cache, so it sees the
+     * view as maintained by each commit and no longer reads it once the view
+     * has been dropped.
+     */
+    public void test_evaluate_materializedView() throws Exception {
+
+        final Journal jnl = newJournal();
+
+        final URI serviceURI = new URIImpl("http://example.org/view#"
+                + getName());
+
+        try {
+
+            final Properties properties = new Properties();
+
+            properties.setProperty(BigdataSail.Options.TRUTH_MAINTENANCE,
+                    "false");
+
+            final AbstractTripleStore kb = newKB(jnl, properties);
+
+            final QueryPlanCache cache = newCache(kb);
+
+            final String queryStr = "SELECT ?type (COUNT(?s) AS ?n) "
+                    + "{ ?s a ?type } GROUP BY ?type";
+
+            ServiceRegistry.getInstance().add(
+                    serviceURI,
+                    new MaterializedViewService("typeCounts", queryStr, kb
+                            .getNamespace()));
+
+            final BigdataSailRepository repo = new BigdataSailRepository(
+                    new BigdataSail(kb.getNamespace(), jnl));
+
+            repo.initialize();
+
+            try {
+
+                // The view is materialized by the first commit.
+                add(repo, "a", "b");
+
+                assertCount(jnl, kb, cache, queryStr, 2, true/* rewritten */);
+
+                // The view is maintained by the next commit.
+                add(repo, "c");
+
+                assertCount(jnl, kb, cache, queryStr, 3, true/* rewritten */);
+
+                // The view is dropped and no longer maintained.
+                ServiceRegistry.getInstance().remove(serviceURI);
+
+                add(repo, "d");
+
+                assertCount(jnl, kb, cache, queryStr, 4, false/* rewritten */);
+
+            } finally {
+
+                repo.shutDown();
+
+            }
+
+        } finally {
+
+            ServiceRegistry.getInstance().remove(serviceURI);
+
+            jnl.destroy();
+
+        }
+
+    }
+
+    /**
+     * Commit <code>:name rdf:type :A</code> for each of the names.
+     */
+    private static void add(final BigdataSailRepository repo,
+            final String... names) throws Exception {
+
+        final BigdataSailRepositoryConnection cxn = repo
+                .getUnisolatedConnection();
+
+        try {
+
+            final URI A = new URIImpl("http://example.org/A");
+
+            for (String name : names) {
+
+                cxn.add(new URIImpl("http://example.org/" + name), RDF.TYPE, A);
+
+            }
+
+            cxn.commit();
+
+        } finally {
+
+            cxn.close();
+
+        }
+
+    }
+
+    /**
+     * Evaluate the query as done by the REST API against the last commit
+     * point and verify the count of the single group, whether the query was
+     * rewritten to read the view and that neither its plan nor its solutions
+     * may be cached.
+     */
+    private static void assertCount(final Journal jnl,
+            final AbstractTripleStore kb, final QueryPlanCache cache,
+            final String queryStr, final int expected, final boolean rewritten)
+            throws Exception {
+
+        final AbstractTripleStore view = (AbstractTripleStore) jnl
+                .getResourceLocator().locate(kb.getNamespace(),
+                        ITx.READ_COMMITTED);
+
+        final ASTContainer astContainer = prepare(view, cache, queryStr);
+
+        final BindingSet bset = evaluate(view, astContainer);
+
+        assertEquals(expected,
+                ((Literal) bset.getValue("n")).intValue());
+
+        assertEquals(rewritten, ASTMaterializedViewOptimizer
+                .usesViews(astContainer.getOptimizedAST()));
+
+        if (rewritten) {
+
+            assertNull(cache.get(kb.getNamespace(), queryStr, null/* baseURI */));
+
+            assertNull(new SparqlResultCache(1024 * 1024/* maxBytes */,
+                    1000/* maxSolutions */).getKey(new AST2BOpContext(
+                    astContainer, view), null/* globallyScopedBS */));
+
+        }
+
+    }
+
+    /**
+     * Parse and evaluate the query against the base URI and return its
+     * {@link SparqlResultCache} key.
+     */
+    private static String getResultCacheKey(final AbstractTripleStore view,
+            final SparqlResultCache resultCache, final String queryStr,
+            final String baseURI) throws Exception {
+
+        final ASTContainer astContainer = new Bigdata2ASTSPARQLParser()
+                .parseQuery2(queryStr, baseURI);
+
+        evaluate(view, astContainer);
+
+        final SparqlResultCache.CacheKey key = resultCache.getKey(
+                new AST2BOpContext(astContainer, view), null/* globallyScopedBS */);
+
+        assertNotNull(key);
+
+        return key.toString();
+
+    }
+
+    private static Journal newJournal() {
+
+        final Properties properties = new Properties();
+
+        properties.setProperty(Journal.Options.BUFFER_MODE,
+                BufferMode.Transient.toString());
+
+        return new Journal(properties);
+
+    }
+
+    private static AbstractTripleStore newKB(final Journal jnl) {
+
+        return newKB(jnl, new Properties());
+
+    }
+
+    private static AbstractTripleStore newKB(final Journal jnl,
+            final Properties properties) {
+
+        properties.setProperty(AbstractTripleStore.Options.AXIOMS_CLASS,
+                NoAxioms.class.getName());
+
+        final AbstractTripleStore kb = new LocalTripleStore(jnl, "kb",
+                ITx.UNISOLATED, properties);
+
+        kb.create();
+
+        jnl.commit();
+
+        return kb;
+
+    }
+
+    private static QueryPlanCache newCache(final AbstractTripleStore kb) {
+
+        final QueryEngine queryEngine = QueryEngineFactory.getInstance()
+                .getQueryController(kb.getIndexManager());
+
+        final QueryPlanCache cache = new QueryPlanCache(10/* capacity */);
+
+        QueryPlanCache.setInstance(queryEngine, cache);
+
+        return cache;
+
+    }
+
+    /**
+     * Evaluate the query as done by the REST API and return the first (and
+     * only) solution.
+     */
+    private static BindingSet evaluate(final AbstractTripleStore kb,
+            final QueryPlanCache cache, final String queryStr) throws Exception {
+
+        return evaluate(kb, prepare(kb, cache, queryStr));
+
+    }
+
+    /**
+     * Obtain the query from the cache or parse it and prepare it for the
+     * cache.
+     */
+    private static ASTContainer prepare(final AbstractTripleStore kb,
+            final QueryPlanCache cache, final String queryStr) throws Exception {
+
+        ASTContainer astContainer = cache.get(kb.getNamespace(), queryStr,
+                null/* baseURI */);
+
+        if (astContainer == null) {
+
+            astContainer = new Bigdata2ASTSPARQLParser().parseQuery2(queryStr,
+                    null/* baseURI */);
+
+            cache.prepare(kb.getNamespace(), null/* baseURI */, astContainer);
+
+        }
+
+        return astContainer;
+
+    }
+
+    private static BindingSet evaluate(final AbstractTripleStore kb,
+            final ASTContainer astContainer) throws Exception {
+
+        final TupleQueryResult result = ASTEvalHelper.evaluateTupleQuery(kb,
+                astContainer, new QueryBindingSet(), null/* dataset */);
+
+        try {
+
+            return result.hasNext() ? result.next() : null;
+
+        } finally {
+
+            result.close();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,353 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase2;
+
+import com.bigdata.bop.Constant;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.Var;
+import com.bigdata.bop.bindingSet.ListBindingSet;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.internal.VTE;
+import com.bigdata.rdf.internal.impl.TermId;
+import com.bigdata.rdf.model.BigdataURI;
+
+import cutthecrap.utils.striterators.ICloseableIterator;
+
+/**
+ * Test suite for the {@link SparqlResultCache}.
+ */
+public class TestSparqlResultCache extends TestCase2 {
+
+    public TestSparqlResultCache() {
+    }
+
+    public TestSparqlResultCache(final String name) {
+        super(name);
+    }
+
+    private static final String namespace = "kb";
+
+    /** The caches created by the test (released by {@link #tearDown()}). */
+    private final List<SparqlResultCache> caches = new LinkedList<SparqlResultCache>();
+
+    @Override
+    protected void tearDown() throws Exception {
+
+        for (SparqlResultCache cache : caches) {
+
+            cache.clear();
+
+        }
+
+        caches.clear();
+
+        super.tearDown();
+
+    }
+
+    private SparqlResultCache newCache(final long maxBytes,
+            final int maxSolutions) {
+
+        final SparqlResultCache cache = new SparqlResultCache(maxBytes,
+                maxSolutions);
+
+        caches.add(cache);
+
+        return cache;
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    private final IVariable<IV> x = Var.var("x");
+
+    private static IV<?, ?> iv(final long tid) {
+
+        return new TermId<BigdataURI>(VTE.URI, tid);
+
+    }
+
+    private static Set<IV<?, ?>> predicates(final long... tids) {
+
+        final Set<IV<?, ?>> set = new LinkedHashSet<IV<?, ?>>();
+
+        for (long tid : tids) {
+
+            set.add(iv(tid));
+
+        }
+
+        return set;
+
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private IBindingSet[] solutions(final long... tids) {
+
+        final IBindingSet[] a = new IBindingSet[tids.length];
+
+        for (int i = 0; i < tids.length; i++) {
+
+            a[i] = new ListBindingSet();
+
+            a[i].set(x, new Constant<IV>(iv(tids[i])));
+
+        }
+
+        return a;
+
+    }
+
+    private static SparqlResultCache.CacheKey key(
+            final SparqlResultCache cache, final String namespace,
+            final String query, final long commitTime) {
+
+        return new SparqlResultCache.CacheKey(cache, namespace, namespace
+                + "\n" + query, commitTime, null/* readCommittedView */);
+
+    }
+
+    private static List<IBindingSet> drain(
+            final ICloseableIterator<IBindingSet> itr) {
+
+        final List<IBindingSet> list = new LinkedList<IBindingSet>();
+
+        try {
+
+            while (itr.hasNext()) {
+
+                list.add(itr.next());
+
+            }
+
+        } finally {
+
+            itr.close();
+
+        }
+
+        return list;
+
+    }
+
+    public void test_ctor_correctRejection() {
+
+        try {
+            new SparqlResultCache(0L/* maxBytes */, 10/* maxSolutions */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        try {
+            new SparqlResultCache(1024L/* maxBytes */, 0/* maxSolutions */);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * The solutions are round tripped through the cache and are only visible
+     * for the commit point for which they were entered.
+     */
+    public void test_put_get() {
+
+        final SparqlResultCache cache = newCache(
+                1024 * 1024L/* maxBytes */, 1000/* maxSolutions */);
+
+        assertNull(cache.get(key(cache, namespace, "q1", 10L)));
+
+        final IBindingSet[] expected = solutions(1, 2, 3);
+
+        cache.put(key(cache, namespace, "q1", 10L), predicates(7), expected);
+
+        assertEquals(1, cache.size());
+
+        assertTrue(cache.getBytesInUse() > 0);
+
+        final List<IBindingSet> actual = drain(cache.get(key(cache,
+                namespace, "q1", 10L)));
+
+        assertEquals(expected.length, actual.size());
+
+        for (int i = 0; i < expected.length; i++) {
+
+            assertEquals(expected[i], actual.get(i));
+
+        }
+
+        // Other commit points, query and namespace.
+        assertNull(cache.get(key(cache, namespace, "q1", 9L)));
+        assertNull(cache.get(key(cache, namespace, "q1", 11L)));
+        assertNull(cache.get(key(cache, namespace, "q2", 10L)));
+        assertNull(cache.get(key(cache, "kb2", "q1", 10L)));
+
+        // An empty solution set.
+        cache.put(key(cache, namespace, "q2", 10L), predicates(7),
+                new IBindingSet[0]);
+
+        assertTrue(drain(cache.get(key(cache, namespace, "q2", 10L)))
+                .isEmpty());
+
+    }
+
+    /**
+     * An entry is extended through commits which do not touch its predicates
+     * and remains valid for historical reads once it has been invalidated.
+     */
+    public void test_commit_extendsAndInvalidates() {
+
+        final SparqlResultCache cache = newCache(
+                1024 * 1024L/* maxBytes */, 1000/* maxSolutions */);
+
+        cache.put(key(cache, namespace, "q1", 10L), predicates(7),
+                solutions(1));
+
+        // Wildcard entry (e.g., a variable in the predicate position).
+        cache.put(key(cache, namespace, "q2", 10L), null/* predicates */,
+                solutions(2));
+
+        // Commit on another predicate.
+        cache.commit(namespace, 10L, 20L, predicates(8));
+
+        assertNotNull(cache.get(key(cache, namespace, "q1", 20L)));
+        assertNull(cache.get(key(cache, namespace, "q2", 20L)));
+        assertNotNull(cache.get(key(cache, namespace, "q2", 10L)));
+
+        // Commit on the predicate used by the query.
+        cache.commit(namespace, 20L, 30L, predicates(7, 9));
+
+        assertNull(cache.get(key(cache, namespace, "q1", 30L)));
+        assertNotNull(cache.get(key(cache, namespace, "q1", 20L)));
+        assertNotNull(cache.get(key(cache, namespace, "q1", 10L)));
+
+        // A commit on another namespace extends neither entry now.
+        cache.commit("kb2", 30L, 40L, null/* touched */);
+
+        assertNull(cache.get(key(cache, namespace, "q1", 40L)));
+
+    }
+
+    /**
+     * A commit on another namespace extends the entry, but it is rolled back
+     * if the same commit point is reported for its namespace with a change
+     * that affects it (group commit).
+     */
+    public void test_commit_groupCommit() {
+
+        final SparqlResultCache cache = newCache(
+                1024 * 1024L/* maxBytes */, 1000/* maxSolutions */);
+
+        cache.put(key(cache, namespace, "q1", 10L), predicates(7),
+                solutions(1));
+
+        cache.commit("kb2", 10L, 20L, null/* touched */);
+
+        assertNotNull(cache.get(key(cache, namespace, "q1", 20L)));
+
+        cache.commit(namespace, 10L, 20L, predicates(7));
+
+        assertNull(cache.get(key(cache, namespace, "q1", 20L)));
+
+        assertNotNull(cache.get(key(cache, namespace, "q1", 10L)));
+
+        // Unknown prior commit point : nothing is extended.
+        cache.commit("kb2", -1L, 30L, Collections.<IV<?, ?>> emptySet());
+
+        assertNull(cache.get(key(cache, namespace, "q1", 30L)));
+
+    }
+
+    /**
+     * Entries are evicted in LRU order to respect the byte budget.
+     */
+    public void test_byteBudget() {
+
+        final SparqlResultCache cache = newCache(
+                1024 * 1024L/* maxBytes */, 100000/* maxSolutions */);
+
+        final long[] tids = new long[1000];
+
+        for (int i = 0; i < tids.length; i++) {
+
+            tids[i] = i + 1;
+
+        }
+
+        cache.put(key(cache, namespace, "q1", 10L), predicates(7),
+                solutions(tids));
+
+        final long nbytes = cache.getBytesInUse();
+
+        assertTrue(nbytes > 0);
+
+        final SparqlResultCache cache2 = newCache(
+                nbytes * 2 + 1/* maxBytes */, 100000/* maxSolutions */);
+
+        cache2.put(key(cache2, namespace, "q1", 10L), predicates(7),
+                solutions(tids));
+
+        cache2.put(key(cache2, namespace, "q2", 10L), predicates(7),
+                solutions(tids));
+
+        // Touch q1 so q2 is the LRU entry.
+        assertNotNull(cache2.get(key(cache2, namespace, "q1", 10L)));
+
+        cache2.put(key(cache2, namespace, "q3", 10L), predicates(7),
+                solutions(tids));
+
+        assertEquals(2, cache2.size());
+
+        assertTrue(cache2.getBytesInUse() <= nbytes * 2 + 1);
+
+        assertNotNull(cache2.get(key(cache2, namespace, "q1", 10L)));
+        assertNull(cache2.get(key(cache2, namespace, "q2", 10L)));
+        assertNotNull(cache2.get(key(cache2, namespace, "q3", 10L)));
+
+        // Drop the namespace.
+        cache2.clear(namespace);
+
+        assertEquals(0, cache2.size());
+
+        assertEquals(0L, cache2.getBytesInUse());
+
+    }
+
+}
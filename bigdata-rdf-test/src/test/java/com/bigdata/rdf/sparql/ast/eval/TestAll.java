@@ -180,6 +180,9 @@ public class TestAll extends TestCase {
 
         // Test suite for pipelined hash join
         suite.addTestSuite(TestPipelinedHashJoin.class);
+
+        // Test suite for the late materialization query hint.
+        suite.addTestSuite(TestLateMaterializationQueryHint.class);
         
         
         /*
@@ -191,6 +194,7 @@ public class TestAll extends TestCase {
         
         suite.addTestSuite(TestSubSelectFilterExist725.class);
         suite.addTestSuite(TestTwoPropertyPaths734.class);
+        suite.addTestSuite(TestTransitiveClosureService.class);
         
         // test suite for inline constraints: GT, LT, GTE, LTE
         suite.addTestSuite(TestInlineConstraints.class);
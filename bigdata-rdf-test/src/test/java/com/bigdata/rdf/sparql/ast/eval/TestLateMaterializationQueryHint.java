@@ -0,0 +1,142 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval;
+
+import java.util.List;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.PipelineOp;
+import com.bigdata.bop.rdf.join.ChunkedMaterializationOp;
+import com.bigdata.bop.solutions.ProjectionOp;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+
+/**
+ * Test suite for the {@link QueryHints#LATE_MATERIALIZATION} query hint. When
+ * the hint is given, the projection of the top-level query is materialized by
+ * the consumer rather than by a {@link ChunkedMaterializationOp} at the end of
+ * the query plan.
+ */
+public class TestLateMaterializationQueryHint extends
+        AbstractDataDrivenSPARQLTestCase {
+
+    public TestLateMaterializationQueryHint() {
+    }
+
+    public TestLateMaterializationQueryHint(final String name) {
+        super(name);
+    }
+
+    /**
+     * Without the query hint, the projection is materialized within the query
+     * plan.
+     */
+    public void test_lateMaterialization_none() throws Exception {
+
+        final TestHelper h = new TestHelper(
+                "late-materialization-none",// testURI,
+                "late-materialization-none.rq",// queryFileURL
+                "late-materialization.ttl",// dataFileURL
+                "late-materialization-01.srx"// resultFileURL
+        );
+
+        h.runTest();
+
+        assertProjectionMaterializedInQuery(h.getASTContainer()
+                .getQueryPlan(), true);
+
+    }
+
+    /**
+     * ORDER BY on an inline numeric. The solutions are sorted on the inline
+     * {@link com.bigdata.rdf.internal.IV}s and the projection is materialized
+     * by the consumer.
+     */
+    public void test_lateMaterialization_orderBy() throws Exception {
+
+        final TestHelper h = new TestHelper(
+                "late-materialization-01",// testURI,
+                "late-materialization-01.rq",// queryFileURL
+                "late-materialization.ttl",// dataFileURL
+                "late-materialization-01.srx"// resultFileURL
+        );
+
+        h.runTest();
+
+        assertProjectionMaterializedInQuery(h.getASTContainer()
+                .getQueryPlan(), false);
+
+    }
+
+    /**
+     * DISTINCT + ORDER BY on a variable which must be materialized for the
+     * sort. The results must be correct even though the projection is not
+     * materialized within the query plan.
+     */
+    public void test_lateMaterialization_distinctOrderBy() throws Exception {
+
+        final TestHelper h = new TestHelper(
+                "late-materialization-02",// testURI,
+                "late-materialization-02.rq",// queryFileURL
+                "late-materialization.ttl",// dataFileURL
+                "late-materialization-02.srx"// resultFileURL
+        );
+
+        h.runTest();
+
+        assertProjectionMaterializedInQuery(h.getASTContainer()
+                .getQueryPlan(), false);
+
+    }
+
+    /**
+     * Verify whether or not the operator following the top-level
+     * {@link ProjectionOp} is a {@link ChunkedMaterializationOp}.
+     */
+    private void assertProjectionMaterializedInQuery(
+            final PipelineOp queryPlan, final boolean expected) {
+
+        final List<ChunkedMaterializationOp> ops = BOpUtility.toList(
+                queryPlan, ChunkedMaterializationOp.class);
+
+        boolean found = false;
+
+        for (ChunkedMaterializationOp op : ops) {
+
+            if (op.get(0) instanceof ProjectionOp) {
+
+                found = true;
+
+            }
+
+        }
+
+        assertEquals(expected, found);
+
+    }
+
+}
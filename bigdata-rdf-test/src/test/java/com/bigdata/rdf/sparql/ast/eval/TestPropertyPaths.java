@@ -170,6 +170,50 @@ public class TestPropertyPaths extends AbstractDataDrivenSPARQLTestCase {
              ).runTest();
 
     }
+
+    /**
+     * Both ends of the path are bound by the incoming solutions, so the path
+     * is evaluated by the bidirectional search. The data has a cycle which
+     * does not include the left end of every path.
+     */
+    public void test_inVar_outVar_bothBound_bidirectional() throws Exception {
+
+       new TestHelper(
+             "property-paths10",            // testURI,
+             "property-paths-10.rq",       // queryFileURL
+             "property-paths-10.ttl",       // dataFileURL
+             "property-paths-10.srx"      // resultFileURL,
+             ).runTest();
+
+    }
+
+    /**
+     * Variant of the test above using the native heap for the visited nodes.
+     */
+    public void test_inVar_outVar_bothBound_bidirectional_analytic() throws Exception {
+
+       new TestHelper(
+             "property-paths10-analytic",            // testURI,
+             "property-paths-10-analytic.rq",       // queryFileURL
+             "property-paths-10.ttl",       // dataFileURL
+             "property-paths-10.srx"      // resultFileURL,
+             ).runTest();
+
+    }
+
+    /**
+     * Bidirectional search for a zero length path.
+     */
+    public void test_inVar_outVar_bothBound_bidirectional_zeroLength() throws Exception {
+
+       new TestHelper(
+             "property-paths11",            // testURI,
+             "property-paths-11.rq",       // queryFileURL
+             "property-paths-10.ttl",       // dataFileURL
+             "property-paths-11.srx"      // resultFileURL,
+             ).runTest();
+
+    }
     
     
 }
@@ -0,0 +1,342 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.Binding;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.evaluation.QueryBindingSet;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.rdf.model.BigdataValue;
+import com.bigdata.rdf.sail.sparql.Bigdata2ASTSPARQLParser;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.AbstractASTEvaluationTestCase;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTPropertyPathOptimizer;
+import com.bigdata.rdf.sparql.ast.service.ServiceNode;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.vocab.NoVocabulary;
+
+/**
+ * Test suite for the rewrite of property paths over closure predicates into
+ * the {@link TransitiveClosureServiceFactory} by the
+ * {@link ASTPropertyPathOptimizer}. Each query is evaluated against a
+ * knowledge base which maintains the closure of the predicate and against one
+ * which does not, where the path is evaluated by the arbitrary length path
+ * operator, and both must give the same solutions.
+ */
+public class TestTransitiveClosureService extends AbstractASTEvaluationTestCase {
+
+    public TestTransitiveClosureService() {
+    }
+
+    public TestTransitiveClosureService(final String name) {
+        super(name);
+    }
+
+    private static final String NS = "http://www.bigdata.com/";
+
+    private static final URI a = new URIImpl(NS + "a");
+    private static final URI b = new URIImpl(NS + "b");
+    private static final URI c = new URIImpl(NS + "c");
+    private static final URI d = new URIImpl(NS + "d");
+    private static final URI e = new URIImpl(NS + "e");
+    private static final URI f = new URIImpl(NS + "f");
+    private static final URI g = new URIImpl(NS + "g");
+    private static final URI h = new URIImpl(NS + "h");
+
+    private static final URI p = new URIImpl(NS + "p");
+    private static final URI q = new URIImpl(NS + "q");
+
+    /** The knowledge base which maintains the closure of {@link #p}. */
+    private AbstractTripleStore closureStore = null;
+
+    /** The knowledge base which does not. */
+    private AbstractTripleStore alpStore = null;
+
+    @Override
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        closureStore = getStore(getClosureProperties(p.stringValue()));
+
+        alpStore = getStore(getClosureProperties(""));
+
+        load(closureStore);
+
+        load(alpStore);
+
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+
+        if (closureStore != null) {
+
+            closureStore.__tearDownUnitTest();
+
+            closureStore = null;
+
+        }
+
+        if (alpStore != null) {
+
+            alpStore.__tearDownUnitTest();
+
+            alpStore = null;
+
+        }
+
+        super.tearDown();
+
+    }
+
+    private Properties getClosureProperties(final String predicates) {
+
+        final Properties properties = getProperties();
+
+        properties.setProperty(AbstractTripleStore.Options.QUADS, "false");
+
+        properties.setProperty(AbstractTripleStore.Options.VOCABULARY_CLASS,
+                NoVocabulary.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.CLOSURE_PREDICATES,
+                predicates);
+
+        return properties;
+
+    }
+
+    /**
+     * <pre>
+     * a -> b -> c -> a (a cycle)
+     *           c -> d
+     * e -> f
+     * g -q-> h
+     * </pre>
+     */
+    private static void load(final AbstractTripleStore kb) {
+
+        kb.addStatement(a, p, b);
+        kb.addStatement(b, p, c);
+        kb.addStatement(c, p, a);
+        kb.addStatement(c, p, d);
+        kb.addStatement(e, p, f);
+        kb.addStatement(g, q, h);
+
+        kb.commit();
+
+    }
+
+    public void test_plus_unbound() throws Exception {
+
+        assertSameSolutions("SELECT * { ?x <" + p + ">+ ?y }", 13/* n */);
+
+    }
+
+    public void test_star_unbound() throws Exception {
+
+        assertSameSolutions("SELECT * { ?x <" + p + ">* ?y }", 16/* n */);
+
+    }
+
+    public void test_plus_subjectBound() throws Exception {
+
+        assertSameSolutions("SELECT * { <" + a + "> <" + p + ">+ ?y }", 4/* n */);
+
+    }
+
+    public void test_star_subjectBound() throws Exception {
+
+        assertSameSolutions("SELECT * { <" + a + "> <" + p + ">* ?y }", 4/* n */);
+
+    }
+
+    public void test_plus_objectBound() throws Exception {
+
+        assertSameSolutions("SELECT * { ?x <" + p + ">+ <" + d + "> }", 3/* n */);
+
+    }
+
+    public void test_star_objectBound() throws Exception {
+
+        assertSameSolutions("SELECT * { ?x <" + p + ">* <" + d + "> }", 4/* n */);
+
+    }
+
+    /**
+     * Both ends bound to the same node of a cycle.
+     */
+    public void test_plus_cycle() throws Exception {
+
+        assertSameSolutions("SELECT * { <" + a + "> <" + p + ">+ <" + a
+                + "> }", 1/* n */);
+
+    }
+
+    /**
+     * The node has no successors, so only the zero length path is found.
+     */
+    public void test_plus_star_noSuccessors() throws Exception {
+
+        assertSameSolutions("SELECT * { <" + f + "> <" + p + ">+ ?y }", 0/* n */);
+
+        assertSameSolutions("SELECT * { <" + f + "> <" + p + ">* ?y }", 1/* n */);
+
+    }
+
+    /**
+     * The closure includes the inferred statements, so a query which
+     * excludes them is evaluated using the arbitrary length path operator.
+     */
+    public void test_notRewritten_includeInferred() throws Exception {
+
+        final String queryStr = "SELECT * { ?x <" + p + ">+ ?y }";
+
+        final ASTContainer astContainer = new Bigdata2ASTSPARQLParser()
+                .parseQuery2(queryStr, baseURI);
+
+        astContainer.getOriginalAST().setIncludeInferred(false);
+
+        final Set<String> actual = evaluate(closureStore, astContainer);
+
+        assertFalse(isRewritten(astContainer));
+
+        assertEquals(evaluate(alpStore, queryStr, false/* rewritten */),
+                actual);
+
+    }
+
+    /**
+     * Evaluate the query against both knowledge bases and verify that it was
+     * only rewritten for the one which maintains the closure and that both
+     * give the same solutions.
+     *
+     * @param n
+     *            The expected number of solutions.
+     */
+    private void assertSameSolutions(final String queryStr, final int n)
+            throws Exception {
+
+        final Set<String> expected = evaluate(alpStore, queryStr, false/* rewritten */);
+
+        final Set<String> actual = evaluate(closureStore, queryStr, true/* rewritten */);
+
+        assertEquals(n, expected.size());
+
+        assertEquals(expected, actual);
+
+    }
+
+    private Set<String> evaluate(final AbstractTripleStore kb,
+            final String queryStr, final boolean rewritten) throws Exception {
+
+        final ASTContainer astContainer = new Bigdata2ASTSPARQLParser()
+                .parseQuery2(queryStr, baseURI);
+
+        final Set<String> solutions = evaluate(kb, astContainer);
+
+        assertEquals(rewritten, isRewritten(astContainer));
+
+        return solutions;
+
+    }
+
+    /**
+     * Return the solutions as strings so they can be compared across
+     * knowledge bases.
+     */
+    private static Set<String> evaluate(final AbstractTripleStore kb,
+            final ASTContainer astContainer) throws Exception {
+
+        final TupleQueryResult result = ASTEvalHelper.evaluateTupleQuery(kb,
+                astContainer, new QueryBindingSet(), null/* dataset */);
+
+        final Set<String> solutions = new HashSet<String>();
+
+        try {
+
+            while (result.hasNext()) {
+
+                final BindingSet bset = result.next();
+
+                final TreeMap<String, String> map = new TreeMap<String, String>();
+
+                for (Binding binding : bset)
+                    map.put(binding.getName(), binding.getValue()
+                            .stringValue());
+
+                solutions.add(map.toString());
+
+            }
+
+        } finally {
+
+            result.close();
+
+        }
+
+        return solutions;
+
+    }
+
+    /**
+     * Return <code>true</code> iff the optimized AST uses the
+     * {@link TransitiveClosureServiceFactory}.
+     */
+    private static boolean isRewritten(final ASTContainer astContainer) {
+
+        final Iterator<ServiceNode> itr = BOpUtility.visitAll(
+                astContainer.getOptimizedAST(), ServiceNode.class);
+
+        while (itr.hasNext()) {
+
+            final BigdataValue serviceRef = itr.next().getServiceRef()
+                    .getValue();
+
+            if (serviceRef != null
+                    && TransitiveClosureServiceFactory.SERVICE_KEY
+                            .stringValue().equals(serviceRef.stringValue()))
+                return true;
+
+        }
+
+        return false;
+
+    }
+
+}
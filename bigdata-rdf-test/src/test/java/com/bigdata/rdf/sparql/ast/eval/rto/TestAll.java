@@ -70,6 +70,9 @@ public class TestAll extends TestCase {
         // 'barData' test suite (quads mode).
         suite.addTestSuite(TestRTO_BAR.class);
 
+        // Adaptive re-planning of statically ordered joins.
+        suite.addTestSuite(TestRTO_Adaptive.class);
+
         /*
          * FOAF test suite (quads mode).
          * 
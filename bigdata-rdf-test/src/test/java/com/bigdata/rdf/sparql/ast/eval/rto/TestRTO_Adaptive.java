@@ -0,0 +1,248 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.eval.rto;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.UUID;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.engine.IRunningQuery;
+import com.bigdata.bop.engine.QueryEngine;
+import com.bigdata.bop.fed.QueryEngineFactory;
+import com.bigdata.bop.joinGraph.rto.JoinGraph;
+import com.bigdata.bop.joinGraph.rto.Path;
+import com.bigdata.journal.IBTreeManager;
+import com.bigdata.rdf.axioms.NoAxioms;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sparql.ast.QueryHints;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.optimizers.ASTStaticJoinOptimizer;
+
+/**
+ * Test suite for the adaptive re-planning of joins which were ordered by the
+ * static optimizer (see {@link QueryHints#ADAPTIVE_JOIN_THRESHOLD}).
+ * <p>
+ * The data are skewed. There are 10 <code>ex:p</code> edges which all lead to
+ * <code>ex:b0</code>, which has all 50 <code>ex:q</code> edges, and only
+ * <code>ex:c0</code> has any of the 20 <code>ex:r</code> edges. The static
+ * optimizer starts with <code>ex:p</code> since it has the smallest range
+ * count and expects each join to be no larger than that, but the join with
+ * <code>ex:q</code> produces 500 solutions. Sampling shows that the
+ * <code>ex:r</code> / <code>ex:q</code> edge is much more selective, so the
+ * RTO reverses the join order.
+ */
+public class TestRTO_Adaptive extends AbstractRTOTestCase {
+
+    public TestRTO_Adaptive() {
+    }
+
+    public TestRTO_Adaptive(final String name) {
+        super(name);
+    }
+
+    @Override
+    public Properties getProperties() {
+
+        // Note: clone to avoid modifying!!!
+        final Properties properties = (Properties) super.getProperties().clone();
+
+        properties.setProperty(BigdataSail.Options.TRIPLES_MODE, "true");
+
+        properties.setProperty(BigdataSail.Options.AXIOMS_CLASS,
+                NoAxioms.class.getName());
+
+        return properties;
+
+    }
+
+    /**
+     * The observed cardinality of the second join is far above the static
+     * optimizer's estimate, so the joins are re-planned by the RTO and the
+     * join order changes.
+     */
+    public void test_adaptive_diverged() throws Exception {
+
+        final TestHelper helper = newHelper(5d/* threshold */);
+
+        final IRunningQuery q = runQuery(helper);
+
+        final JoinGraph joinGraph = getJoinGraph(helper);
+
+        assertEstimatesPropagated(helper, joinGraph);
+
+        final String trace = joinGraph.getTrace(q);
+
+        assertTrue(trace, trace.contains("diverged: vertex="));
+
+        // The static order.
+        final int[] staticOrder = BOpUtility.getPredIds(joinGraph
+                .getVertices());
+
+        // The order selected by the RTO for the remaining invocations.
+        final Path path = joinGraph.getPath(q);
+
+        assertNotNull(trace, path);
+
+        assertTrue(trace, trace.contains("plan: selected"));
+
+        assertEquals(
+                trace,
+                Arrays.toString(new int[] { staticOrder[2], staticOrder[1],
+                        staticOrder[0] }), Arrays.toString(path.getVertexIds()));
+
+    }
+
+    /**
+     * The same query with a threshold which the divergence does not exceed.
+     * The static join order is kept and the RTO is never run.
+     */
+    public void test_adaptive_notDiverged() throws Exception {
+
+        final TestHelper helper = newHelper(1000d/* threshold */);
+
+        final IRunningQuery q = runQuery(helper);
+
+        final JoinGraph joinGraph = getJoinGraph(helper);
+
+        assertEstimatesPropagated(helper, joinGraph);
+
+        final String trace = joinGraph.getTrace(q);
+
+        assertTrue(trace, trace.contains("plan: static"));
+
+        assertFalse(trace, trace.contains("diverged"));
+
+        assertNull(trace, joinGraph.getPath(q));
+
+    }
+
+    private TestHelper newHelper(final double threshold) throws Exception {
+
+        final TestHelper helper = new TestHelper(//
+                "rto/ADAPTIVE-skew", // testURI,
+                "rto/ADAPTIVE-skew.rq",// queryFileURL
+                "rto/ADAPTIVE-skew.ttl",// dataFileURL
+                "rto/ADAPTIVE-skew.srx"// resultFileURL
+        );
+
+        helper.getASTContainer().setQueryHint(
+                QueryHints.ADAPTIVE_JOIN_THRESHOLD, Double.toString(threshold));
+
+        return helper;
+
+    }
+
+    /**
+     * Run the query, verifying its solutions, and return the
+     * {@link IRunningQuery} for the query which evaluated the
+     * {@link JoinGraph}.
+     */
+    private IRunningQuery runQuery(final TestHelper helper) throws Exception {
+
+        final UUID queryId = UUID.randomUUID();
+
+        helper.getASTContainer().setQueryHint(QueryHints.QUERYID,
+                queryId.toString());
+
+        final QueryEngine queryEngine = QueryEngineFactory.getInstance()
+                .getExistingQueryController((IBTreeManager) helper
+                        .getTripleStore().getIndexManager());
+
+        final MyQueryListener l = new MyQueryListener(queryId);
+        try {
+            queryEngine.addListener(l);
+            helper.runTest();
+        } finally {
+            queryEngine.removeListener(l);
+        }
+
+        final JoinGraph joinGraph = getJoinGraph(helper);
+
+        for (IRunningQuery q : l.getRunningQueries()) {
+
+            if (joinGraph.getTrace(q) != null)
+                return q;
+
+        }
+
+        fail("JoinGraph was not evaluated.");
+
+        return null;
+
+    }
+
+    private static JoinGraph getJoinGraph(final TestHelper helper) {
+
+        final JoinGraph joinGraph = BOpUtility.getOnly(helper
+                .getASTContainer().getQueryPlan(), JoinGraph.class);
+
+        assertNotNull(joinGraph);
+
+        return joinGraph;
+
+    }
+
+    /**
+     * Verify that the static optimizer annotated each statement pattern with
+     * {@link ASTStaticJoinOptimizer.Annotations#ESTIMATED_JOIN_CARDINALITY}
+     * and that these estimates were propagated, in the same order, to the
+     * {@link JoinGraph}. The static optimizer expects each join to be no
+     * larger than the range count of <code>ex:p</code>.
+     */
+    private static void assertEstimatesPropagated(final TestHelper helper,
+            final JoinGraph joinGraph) {
+
+        final long[] estimates = joinGraph.getEstimatedCardinalities();
+
+        assertNotNull(estimates);
+
+        assertEquals(Arrays.toString(new long[] { 10L, 10L, 10L }),
+                Arrays.toString(estimates));
+
+        final Iterator<StatementPatternNode> itr = BOpUtility.visitAll(helper
+                .getASTContainer().getOptimizedAST(),
+                StatementPatternNode.class);
+
+        int i = 0;
+
+        while (itr.hasNext()) {
+
+            final StatementPatternNode sp = itr.next();
+
+            assertEquals(sp.toString(), Long.valueOf(estimates[i++]),
+                    sp.getProperty(ASTStaticJoinOptimizer.Annotations.ESTIMATED_JOIN_CARDINALITY));
+
+        }
+
+        assertEquals(estimates.length, i);
+
+    }
+
+}
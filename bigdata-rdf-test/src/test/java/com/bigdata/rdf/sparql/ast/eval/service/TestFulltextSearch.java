@@ -100,6 +100,19 @@ public class TestFulltextSearch extends AbstractDataDrivenSPARQLTestCase {
        
     }
     
+    /**
+     * Verify fulltext search for multiple binding sets against the embedded
+     * implementation, which does not require a Solr index.
+     * 
+     * @throws Exception
+     */
+    public void testMultiFulltextSearchEmbedded() throws Exception {
+       
+       new TestHelper("fts-embedded", "fts-embedded.rq",
+             "fts-multiRequest.trig", "fts-embedded.srx").runTest();
+       
+    }
+    
     /**
      * Verify that a subsequent join with a keyword result returns the
      * desired results.
@@ -1061,6 +1061,99 @@ public class TestGeoSpatialServiceEvaluation extends AbstractDataDrivenSPARQLTes
              "geo-realworld-cities.nt",
              "geo-realworld-circlewithdistance02.srx").runTest();
     }
+    
+    /**
+     * Real world test against geo coordinates of few cities, searching
+     * the nearest neighbors including distance calculation. The result
+     * is identical to the one of {@link #testRealWordCircleWithDistance02()}.
+     * 
+     * @throws Exception
+     */
+    public void testRealWordNearest01() throws Exception {
+       
+       new TestHelper(
+             "geo-realworld-nearest01",
+             "geo-realworld-nearest01.rq", 
+             "geo-realworld-cities.nt",
+             "geo-realworld-circlewithdistance02.srx").runTest();
+    }
+    
+    /**
+     * Real world test against geo coordinates of few cities, searching
+     * the nearest neighbors within a maximum radius, which contains less
+     * than the requested number of neighbors.
+     * 
+     * @throws Exception
+     */
+    public void testRealWordNearest02() throws Exception {
+       
+       new TestHelper(
+             "geo-realworld-nearest02",
+             "geo-realworld-nearest02.rq", 
+             "geo-realworld-cities.nt",
+             "geo-realworld-circle01.srx").runTest();
+    }
+    
+    /**
+     * Real world test against geo coordinates of few cities, searching
+     * a polygon whose bounding box contains a city outside the polygon.
+     * 
+     * @throws Exception
+     */
+    public void testRealWordPolygon01() throws Exception {
+       
+       new TestHelper(
+             "geo-realworld-polygon01",
+             "geo-realworld-polygon01.rq", 
+             "geo-realworld-cities.nt",
+             "geo-realworld-circle01.srx").runTest();
+    }
+    
+    /**
+     * Real world test against geo coordinates of few cities, searching
+     * a polygon with a hole.
+     * 
+     * @throws Exception
+     */
+    public void testRealWordPolygon02() throws Exception {
+       
+       new TestHelper(
+             "geo-realworld-polygon02",
+             "geo-realworld-polygon02.rq", 
+             "geo-realworld-cities.nt",
+             "geo-realworld-polygon02.srx").runTest();
+    }
+    
+    /**
+     * Real world test against geo coordinates of few cities, counting
+     * the cities per grid cell.
+     * 
+     * @throws Exception
+     */
+    public void testRealWordAggregation01() throws Exception {
+       
+       new TestHelper(
+             "geo-realworld-aggregation01",
+             "geo-realworld-aggregation01.rq", 
+             "geo-realworld-cities.nt",
+             "geo-realworld-aggregation01.srx").runTest();
+    }
+    
+    /**
+     * Real world test against geo coordinates of few cities, aggregating
+     * the results of a circle query per grid cell, including minimum and
+     * maximum of the time component.
+     * 
+     * @throws Exception
+     */
+    public void testRealWordAggregation02() throws Exception {
+       
+       new TestHelper(
+             "geo-realworld-aggregation02",
+             "geo-realworld-aggregation02.rq", 
+             "geo-realworld-cities.nt",
+             "geo-realworld-aggregation02.srx").runTest();
+    }
 
     /**
      * Real world test against geo coordinates of few cities.
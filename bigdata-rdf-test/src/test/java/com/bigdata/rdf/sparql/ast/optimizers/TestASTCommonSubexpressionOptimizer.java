@@ -0,0 +1,368 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.sparql.ast.optimizers;
+
+import java.util.LinkedList;
+
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.algebra.StatementPattern.Scope;
+
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.ASTContainer;
+import com.bigdata.rdf.sparql.ast.AbstractASTEvaluationTestCase;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
+import com.bigdata.rdf.sparql.ast.FilterNode;
+import com.bigdata.rdf.sparql.ast.IQueryNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.NamedSubqueriesNode;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryInclude;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryRoot;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryNodeWithBindingSet;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.SubqueryRoot;
+import com.bigdata.rdf.sparql.ast.UnionNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.eval.AST2BOpContext;
+
+/**
+ * Test suite for {@link ASTCommonSubexpressionOptimizer}.
+ */
+public class TestASTCommonSubexpressionOptimizer extends
+        AbstractASTEvaluationTestCase {
+
+    public TestASTCommonSubexpressionOptimizer() {
+    }
+
+    public TestASTCommonSubexpressionOptimizer(final String name) {
+        super(name);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private StatementPatternNode sp(final String s, final IV p, final String o) {
+
+        return new StatementPatternNode(new VarNode(s), new ConstantNode(p),
+                new VarNode(o), null/* c */, Scope.DEFAULT_CONTEXTS);
+
+    }
+
+    /**
+     * Return the source AST for
+     * 
+     * <pre>
+     * SELECT * {
+     *   { ?s :a ?x . ?x :b ?y . ?y :c ?z }
+     *   UNION
+     *   { ?x :b ?y . ?s :a ?x . ?y :d ?z }
+     * }
+     * </pre>
+     */
+    @SuppressWarnings("rawtypes")
+    private QueryRoot unionQuery(final IV a, final IV b, final IV c, final IV d) {
+
+        final QueryRoot given = new QueryRoot(QueryType.SELECT);
+
+        final ProjectionNode projection = new ProjectionNode();
+        given.setProjection(projection);
+        projection.addProjectionVar(new VarNode("*"));
+
+        final JoinGroupNode whereClause = new JoinGroupNode();
+        given.setWhereClause(whereClause);
+
+        final UnionNode union = new UnionNode();
+        whereClause.addChild(union);
+
+        final JoinGroupNode left = new JoinGroupNode();
+        union.addChild(left);
+        left.addChild(sp("s", a, "x"));
+        left.addChild(sp("x", b, "y"));
+        left.addChild(sp("y", c, "z"));
+
+        final JoinGroupNode right = new JoinGroupNode();
+        union.addChild(right);
+        right.addChild(sp("x", b, "y"));
+        right.addChild(sp("s", a, "x"));
+        right.addChild(sp("y", d, "z"));
+
+        return given;
+
+    }
+
+    /**
+     * Verify that the query is not modified unless the optimizer was enabled
+     * by a query hint.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_disabledByDefault() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV a = makeIV(new URIImpl("http://example/a"));
+        final IV b = makeIV(new URIImpl("http://example/b"));
+        final IV c = makeIV(new URIImpl("http://example/c"));
+        final IV d = makeIV(new URIImpl("http://example/d"));
+
+        final QueryRoot given = unionQuery(a, b, c, d);
+
+        final QueryRoot expected = unionQuery(a, b, c, d);
+
+        final AST2BOpContext context = new AST2BOpContext(new ASTContainer(
+                given), store);
+
+        final IQueryNode actual = new ASTCommonSubexpressionOptimizer()
+                .optimize(context, new QueryNodeWithBindingSet(given, bsets))
+                .getQueryNode();
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * The statement patterns shared by both branches of the UNION (in a
+     * different order) are lifted into a named subquery which is INCLUDEd by
+     * each branch.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_unionSharedPrefix() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV a = makeIV(new URIImpl("http://example/a"));
+        final IV b = makeIV(new URIImpl("http://example/b"));
+        final IV c = makeIV(new URIImpl("http://example/c"));
+        final IV d = makeIV(new URIImpl("http://example/d"));
+
+        final QueryRoot given = unionQuery(a, b, c, d);
+
+        final QueryRoot expected = new QueryRoot(QueryType.SELECT);
+        {
+
+            final String name = "-cse-1";
+
+            final ProjectionNode projection = new ProjectionNode();
+            expected.setProjection(projection);
+            projection.addProjectionVar(new VarNode("*"));
+
+            final JoinGroupNode whereClause = new JoinGroupNode();
+            expected.setWhereClause(whereClause);
+
+            final UnionNode union = new UnionNode();
+            whereClause.addChild(union);
+
+            final JoinGroupNode left = new JoinGroupNode();
+            union.addChild(left);
+            left.addChild(new NamedSubqueryInclude(name));
+            left.addChild(sp("y", c, "z"));
+
+            final JoinGroupNode right = new JoinGroupNode();
+            union.addChild(right);
+            right.addChild(new NamedSubqueryInclude(name));
+            right.addChild(sp("y", d, "z"));
+
+            final NamedSubqueryRoot nsr = new NamedSubqueryRoot(
+                    QueryType.SELECT, name);
+            final NamedSubqueriesNode namedSubqueries = new NamedSubqueriesNode();
+            expected.setNamedSubqueries(namedSubqueries);
+            namedSubqueries.add(nsr);
+
+            final ProjectionNode projection2 = new ProjectionNode();
+            nsr.setProjection(projection2);
+            projection2.addProjectionVar(new VarNode("s"));
+            projection2.addProjectionVar(new VarNode("x"));
+            projection2.addProjectionVar(new VarNode("y"));
+
+            final JoinGroupNode whereClause2 = new JoinGroupNode();
+            nsr.setWhereClause(whereClause2);
+            whereClause2.addChild(sp("s", a, "x"));
+            whereClause2.addChild(sp("x", b, "y"));
+
+        }
+
+        final AST2BOpContext context = new AST2BOpContext(new ASTContainer(
+                given), store);
+
+        context.commonSubexpressionElimination = true;
+
+        final IQueryNode actual = new ASTCommonSubexpressionOptimizer()
+                .optimize(context, new QueryNodeWithBindingSet(given, bsets))
+                .getQueryNode();
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * A single shared statement pattern is not lifted out of the UNION.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_unionSharedPrefix_tooShort() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV a = makeIV(new URIImpl("http://example/a"));
+        final IV b = makeIV(new URIImpl("http://example/b"));
+        final IV c = makeIV(new URIImpl("http://example/c"));
+        final IV d = makeIV(new URIImpl("http://example/d"));
+
+        // Note: Only ?s :a ?x is shared.
+        final QueryRoot given = unionQuery(a, b, c, d);
+        ((JoinGroupNode) ((UnionNode) given.getWhereClause().get(0)).get(1))
+                .removeChild(sp("x", b, "y"));
+
+        final QueryRoot expected = unionQuery(a, b, c, d);
+        ((JoinGroupNode) ((UnionNode) expected.getWhereClause().get(0)).get(1))
+                .removeChild(sp("x", b, "y"));
+
+        final AST2BOpContext context = new AST2BOpContext(new ASTContainer(
+                given), store);
+
+        context.commonSubexpressionElimination = true;
+
+        final IQueryNode actual = new ASTCommonSubexpressionOptimizer()
+                .optimize(context, new QueryNodeWithBindingSet(given, bsets))
+                .getQueryNode();
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * Two structurally identical sub-selects are replaced by INCLUDEs of a
+     * single named subquery.
+     * 
+     * <pre>
+     * SELECT * {
+     *   { SELECT ?s { ?s :a ?x } }
+     *   ?s :b ?y .
+     *   OPTIONAL { { SELECT ?s { ?s :a ?x } } }
+     * }
+     * </pre>
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_repeatedSubquery() {
+
+        final IBindingSet[] bsets = new IBindingSet[] {};
+
+        final IV a = makeIV(new URIImpl("http://example/a"));
+        final IV b = makeIV(new URIImpl("http://example/b"));
+
+        final QueryRoot given = new QueryRoot(QueryType.SELECT);
+        {
+
+            final ProjectionNode projection = new ProjectionNode();
+            given.setProjection(projection);
+            projection.addProjectionVar(new VarNode("*"));
+
+            final JoinGroupNode whereClause = new JoinGroupNode();
+            given.setWhereClause(whereClause);
+
+            final JoinGroupNode group1 = new JoinGroupNode();
+            whereClause.addChild(group1);
+            group1.addChild(subquery(a));
+
+            whereClause.addChild(sp("s", b, "y"));
+
+            final JoinGroupNode group2 = new JoinGroupNode(true/* optional */);
+            whereClause.addChild(group2);
+            group2.addChild(subquery(a));
+
+        }
+
+        final QueryRoot expected = new QueryRoot(QueryType.SELECT);
+        {
+
+            final String name = "-cse-1";
+
+            final ProjectionNode projection = new ProjectionNode();
+            expected.setProjection(projection);
+            projection.addProjectionVar(new VarNode("*"));
+
+            final JoinGroupNode whereClause = new JoinGroupNode();
+            expected.setWhereClause(whereClause);
+
+            final NamedSubqueryInclude nsi1 = new NamedSubqueryInclude(name);
+            nsi1.setAttachedJoinFilters(new LinkedList<FilterNode>());
+            whereClause.addChild(nsi1);
+
+            whereClause.addChild(sp("s", b, "y"));
+
+            final JoinGroupNode group2 = new JoinGroupNode(true/* optional */);
+            whereClause.addChild(group2);
+            final NamedSubqueryInclude nsi2 = new NamedSubqueryInclude(name);
+            nsi2.setAttachedJoinFilters(new LinkedList<FilterNode>());
+            group2.addChild(nsi2);
+
+            final SubqueryRoot subqueryRoot = subquery(a);
+            final NamedSubqueryRoot nsr = new NamedSubqueryRoot(
+                    QueryType.SELECT, name);
+            nsr.setProjection(subqueryRoot.getProjection());
+            nsr.setWhereClause(subqueryRoot.getWhereClause());
+
+            final NamedSubqueriesNode namedSubqueries = new NamedSubqueriesNode();
+            expected.setNamedSubqueries(namedSubqueries);
+            namedSubqueries.add(nsr);
+
+        }
+
+        final AST2BOpContext context = new AST2BOpContext(new ASTContainer(
+                given), store);
+
+        context.commonSubexpressionElimination = true;
+
+        final IQueryNode actual = new ASTCommonSubexpressionOptimizer()
+                .optimize(context, new QueryNodeWithBindingSet(given, bsets))
+                .getQueryNode();
+
+        assertSameAST(expected, actual);
+
+    }
+
+    /**
+     * <code>SELECT ?s { ?s :a ?x }</code>
+     */
+    @SuppressWarnings("rawtypes")
+    private SubqueryRoot subquery(final IV a) {
+
+        final SubqueryRoot subqueryRoot = new SubqueryRoot(QueryType.SELECT);
+
+        final ProjectionNode projection = new ProjectionNode();
+        subqueryRoot.setProjection(projection);
+        projection.addProjectionVar(new VarNode("s"));
+
+        final JoinGroupNode whereClause = new JoinGroupNode();
+        subqueryRoot.setWhereClause(whereClause);
+        whereClause.addChild(sp("s", a, "x"));
+
+        return subqueryRoot;
+
+    }
+
+}
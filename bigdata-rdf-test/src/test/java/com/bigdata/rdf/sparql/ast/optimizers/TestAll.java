@@ -95,6 +95,9 @@ public class TestAll extends TestCase {
         // Unit tests for flattening of UNIONs.
         suite.addTestSuite(TestASTFlattenUnionsOptimizer.class);
 
+        // Unit tests for common subexpression elimination.
+        suite.addTestSuite(TestASTCommonSubexpressionOptimizer.class);
+
         // Unit tests for pushing down filters into the join groups of a UNION.
         suite.addTestSuite(TestASTUnionFiltersOptimizer.class);
 
@@ -59,6 +59,9 @@ public class TestAll extends TestCase {
         // Stored query evaluation.
         suite.addTestSuite(TestStoredQueryService.class);
 
+        // Materialized views.
+        suite.addTestSuite(TestMaterializedViewService.class);
+
         return suite;
         
     }
@@ -0,0 +1,639 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+package com.bigdata.rdf.sparql.ast.service.storedquery;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDF;
+import org.openrdf.query.Binding;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.algebra.StatementPattern.Scope;
+
+import com.bigdata.bop.BOpUtility;
+import com.bigdata.bop.IBindingSet;
+import com.bigdata.bop.IVariable;
+import com.bigdata.bop.Var;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sail.BigdataSail;
+import com.bigdata.rdf.sail.BigdataSailRepository;
+import com.bigdata.rdf.sail.BigdataSailRepositoryConnection;
+import com.bigdata.rdf.sail.BigdataSailTupleQuery;
+import com.bigdata.rdf.sparql.ast.AbstractASTEvaluationTestCase;
+import com.bigdata.rdf.sparql.ast.AssignmentNode;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
+import com.bigdata.rdf.sparql.ast.FunctionNode;
+import com.bigdata.rdf.sparql.ast.FunctionRegistry;
+import com.bigdata.rdf.sparql.ast.GroupByNode;
+import com.bigdata.rdf.sparql.ast.JoinGroupNode;
+import com.bigdata.rdf.sparql.ast.NamedSubqueryInclude;
+import com.bigdata.rdf.sparql.ast.ProjectionNode;
+import com.bigdata.rdf.sparql.ast.QueryRoot;
+import com.bigdata.rdf.sparql.ast.QueryType;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.ValueExpressionNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.service.ServiceRegistry;
+import com.bigdata.rdf.spo.SPO;
+
+/**
+ * Test suite for the {@link MaterializedViewService}: the incremental
+ * maintenance logic, the maintenance of views by commits on a
+ * {@link BigdataSail} and the rewrite of queries which match a view.
+ */
+public class TestMaterializedViewService extends
+        AbstractASTEvaluationTestCase {
+
+    public TestMaterializedViewService() {
+    }
+
+    public TestMaterializedViewService(final String name) {
+        super(name);
+    }
+
+    /**
+     * <pre>
+     * SELECT ?type (AGG(?s) AS ?n) { ?s rdf:type ?type } GROUP BY ?type
+     * </pre>
+     */
+    @SuppressWarnings("rawtypes")
+    private QueryRoot countByType(final IV rdfType,
+            final URI agg) {
+
+        final QueryRoot queryRoot = new QueryRoot(QueryType.SELECT);
+
+        final ProjectionNode projection = new ProjectionNode();
+        queryRoot.setProjection(projection);
+        projection.addProjectionVar(new VarNode("type"));
+        projection.addProjectionExpression(new AssignmentNode(
+                new VarNode("n"), new FunctionNode(agg,
+                        null/* scalarValues */,
+                        new ValueExpressionNode[] { new VarNode("s") })));
+
+        final JoinGroupNode whereClause = new JoinGroupNode();
+        queryRoot.setWhereClause(whereClause);
+        whereClause.addChild(new StatementPatternNode(new VarNode("s"),
+                new ConstantNode(rdfType), new VarNode("type"),
+                null/* c */, Scope.DEFAULT_CONTEXTS));
+
+        final GroupByNode groupBy = new GroupByNode();
+        queryRoot.setGroupBy(groupBy);
+        groupBy.addGroupByVar(new VarNode("type"));
+
+        return queryRoot;
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    public void test_incremental_count() {
+
+        final IV rdfType = makeIV(RDF.TYPE);
+
+        final IVariable<?>[] groupByVars = MaterializedViewService
+                .getIncrementalGroupByVars(countByType(rdfType,
+                        FunctionRegistry.COUNT));
+
+        assertNotNull(groupByVars);
+
+        assertEquals(1, groupByVars.length);
+
+        assertEquals(Var.var("type"), groupByVars[0]);
+
+    }
+
+    /**
+     * An aggregate other than COUNT or SUM is not maintained incrementally.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_notIncremental_aggregate() {
+
+        final IV rdfType = makeIV(RDF.TYPE);
+
+        assertNull(MaterializedViewService
+                .getIncrementalGroupByVars(countByType(rdfType,
+                        FunctionRegistry.MIN)));
+
+    }
+
+    /**
+     * A WHERE clause which is not a basic graph pattern is not maintained
+     * incrementally.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_notIncremental_optional() {
+
+        final IV rdfType = makeIV(RDF.TYPE);
+        final IV label = makeIV(new URIImpl("http://example/label"));
+
+        final QueryRoot queryRoot = countByType(rdfType, FunctionRegistry.COUNT);
+
+        final StatementPatternNode sp = new StatementPatternNode(new VarNode(
+                "s"), new ConstantNode(label), new VarNode("label"),
+                null/* c */, Scope.DEFAULT_CONTEXTS);
+        sp.setOptional(true);
+        ((JoinGroupNode) queryRoot.getWhereClause()).addChild(sp);
+
+        assertNull(MaterializedViewService.getIncrementalGroupByVars(queryRoot));
+
+    }
+
+    /**
+     * A view without a GROUP BY is not maintained incrementally.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_notIncremental_noGroupBy() {
+
+        final IV rdfType = makeIV(RDF.TYPE);
+
+        final QueryRoot queryRoot = countByType(rdfType, FunctionRegistry.COUNT);
+
+        queryRoot.setGroupBy(null);
+
+        assertNull(MaterializedViewService.getIncrementalGroupByVars(queryRoot));
+
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public void test_unify() {
+
+        final IV rdfType = makeIV(RDF.TYPE);
+        final IV label = makeIV(new URIImpl("http://example/label"));
+        final IV a = makeIV(new URIImpl("http://example/a"));
+        final IV b = makeIV(new URIImpl("http://example/b"));
+
+        final StatementPatternNode sp = new StatementPatternNode(new VarNode(
+                "s"), new ConstantNode(rdfType), new VarNode("type"),
+                null/* c */, Scope.DEFAULT_CONTEXTS);
+
+        // Matches.
+        final IBindingSet bset = MaterializedViewService.unify(sp, new SPO(a,
+                rdfType, b));
+        assertNotNull(bset);
+        assertEquals(2, bset.size());
+        assertEquals(a, bset.get(Var.var("s")).get());
+        assertEquals(b, bset.get(Var.var("type")).get());
+
+        // Different predicate.
+        assertNull(MaterializedViewService.unify(sp, new SPO(a, label, b)));
+
+        // Repeated variable.
+        final StatementPatternNode sp2 = new StatementPatternNode(new VarNode(
+                "x"), new ConstantNode(label), new VarNode("x"), null/* c */,
+                Scope.DEFAULT_CONTEXTS);
+        assertNull(MaterializedViewService.unify(sp2, new SPO(a, label, b)));
+        assertNotNull(MaterializedViewService.unify(sp2, new SPO(a, label, a)));
+
+    }
+
+    /*
+     * End-to-end tests. The views are maintained by the commits on a
+     * BigdataSail and read through read-only connections.
+     */
+
+    private static final String PREFIX = "PREFIX : <http://example.org/> \n";
+
+    /**
+     * A view which is maintained incrementally.
+     */
+    private static final String TYPE_COUNTS = PREFIX
+            + "SELECT ?type (COUNT(?s) AS ?n) { ?s a ?type } GROUP BY ?type";
+
+    /**
+     * A view which is recomputed.
+     */
+    private static final String TYPES = PREFIX
+            + "SELECT DISTINCT ?type { ?s a ?type }";
+
+    private static final URI A = new URIImpl("http://example.org/A");
+    private static final URI B = new URIImpl("http://example.org/B");
+    private static final URI C = new URIImpl("http://example.org/C");
+
+    private static URI uri(final String localName) {
+
+        return new URIImpl("http://example.org/" + localName);
+
+    }
+
+    private BigdataSailRepository newRepository() throws Exception {
+
+        final BigdataSail sail = new BigdataSail(store.getNamespace(),
+                store.getIndexManager());
+
+        final BigdataSailRepository repo = new BigdataSailRepository(sail);
+
+        repo.initialize();
+
+        return repo;
+
+    }
+
+    /**
+     * Register the view, returning the URI under which it was registered.
+     */
+    private URI register(final MaterializedViewService view) {
+
+        final URI serviceURI = new URIImpl("http://example.org/view#"
+                + getName() + "-" + view.getViewName());
+
+        ServiceRegistry.getInstance().add(serviceURI, view);
+
+        return serviceURI;
+
+    }
+
+    private void add(final BigdataSailRepository repo, final URI[][] add,
+            final URI[][] remove) throws Exception {
+
+        final BigdataSailRepositoryConnection cxn = repo
+                .getUnisolatedConnection();
+
+        try {
+
+            for (URI[] t : add) {
+
+                cxn.add(t[0], t[1], t[2]);
+
+            }
+
+            for (URI[] t : remove) {
+
+                cxn.remove(t[0], t[1], t[2]);
+
+            }
+
+            cxn.commit();
+
+        } finally {
+
+            cxn.close();
+
+        }
+
+    }
+
+    /**
+     * Verify that the view is rewritten for the query and that the solutions
+     * read from the view (by the rewritten query and by an explicit INCLUDE)
+     * are the same as the solutions of the query. The query is evaluated
+     * against the unisolated connection to obtain the expected solutions
+     * since the views are never used for an unisolated query.
+     */
+    private void assertView(final BigdataSailRepository repo,
+            final MaterializedViewService view) throws Exception {
+
+        final Set<String> expected = evaluateUnisolated(repo, view);
+
+        final BigdataSailRepositoryConnection cxn = repo
+                .getReadOnlyConnection();
+
+        try {
+
+            final BigdataSailTupleQuery query = cxn.prepareTupleQuery(
+                    QueryLanguage.SPARQL, view.getQuery(), null/* baseURI */);
+
+            assertTrue(isRewritten(query, view));
+
+            assertEquals(expected, toSet(query.evaluate()));
+
+            assertEquals(expected, toSet(cxn.prepareTupleQuery(
+                    QueryLanguage.SPARQL,
+                    "SELECT * { INCLUDE %" + view.getViewName() + " }",
+                    null/* baseURI */).evaluate()));
+
+        } finally {
+
+            cxn.close();
+
+        }
+
+    }
+
+    /**
+     * Verify that the view is not used for the query and that the query
+     * gives the same solutions as against the unisolated connection.
+     */
+    private void assertViewNotUsed(final BigdataSailRepository repo,
+            final MaterializedViewService view) throws Exception {
+
+        final Set<String> expected = evaluateUnisolated(repo, view);
+
+        final BigdataSailRepositoryConnection cxn = repo
+                .getReadOnlyConnection();
+
+        try {
+
+            final BigdataSailTupleQuery query = cxn.prepareTupleQuery(
+                    QueryLanguage.SPARQL, view.getQuery(), null/* baseURI */);
+
+            assertFalse(isRewritten(query, view));
+
+            assertEquals(expected, toSet(query.evaluate()));
+
+        } finally {
+
+            cxn.close();
+
+        }
+
+    }
+
+    /**
+     * Return the solutions of the view definition against the unisolated
+     * connection (the views are never used for an unisolated query).
+     */
+    private Set<String> evaluateUnisolated(final BigdataSailRepository repo,
+            final MaterializedViewService view) throws Exception {
+
+        final BigdataSailRepositoryConnection cxn = repo
+                .getUnisolatedConnection();
+
+        try {
+
+            final BigdataSailTupleQuery query = cxn.prepareTupleQuery(
+                    QueryLanguage.SPARQL, view.getQuery(), null/* baseURI */);
+
+            assertFalse(isRewritten(query, view));
+
+            return toSet(query.evaluate());
+
+        } finally {
+
+            cxn.close();
+
+        }
+
+    }
+
+    /**
+     * Return <code>true</code> iff the optimized query reads the view.
+     */
+    private static boolean isRewritten(final BigdataSailTupleQuery query,
+            final MaterializedViewService view) throws Exception {
+
+        final Iterator<NamedSubqueryInclude> itr = BOpUtility.visitAll(
+                query.optimize(), NamedSubqueryInclude.class);
+
+        while (itr.hasNext()) {
+
+            if (view.getViewName().equals(itr.next().getName()))
+                return true;
+
+        }
+
+        return false;
+
+    }
+
+    /**
+     * The solutions as strings with the bindings in a stable order.
+     */
+    private static Set<String> toSet(final TupleQueryResult result)
+            throws Exception {
+
+        final Set<String> set = new HashSet<String>();
+
+        try {
+
+            while (result.hasNext()) {
+
+                final Map<String, String> m = new TreeMap<String, String>();
+
+                for (Binding b : result.next()) {
+
+                    m.put(b.getName(), b.getValue().stringValue());
+
+                }
+
+                set.add(m.toString());
+
+            }
+
+        } finally {
+
+            result.close();
+
+        }
+
+        return set;
+
+    }
+
+    /**
+     * Commit inserts and deletes and verify that both an incrementally
+     * maintained view and a recomputed view agree with the query after each
+     * commit, including when a group is added and when a group is emptied.
+     */
+    public void test_view_maintained() throws Exception {
+
+        final MaterializedViewService typeCounts = new MaterializedViewService(
+                "typeCounts", TYPE_COUNTS);
+
+        final MaterializedViewService types = new MaterializedViewService(
+                "types", TYPES);
+
+        final URI serviceURI1 = register(typeCounts);
+        final URI serviceURI2 = register(types);
+
+        final BigdataSailRepository repo = newRepository();
+
+        try {
+
+            // The views are materialized by the first commit.
+            add(repo, new URI[][] {//
+                    { uri("a"), RDF.TYPE, A },//
+                    { uri("b"), RDF.TYPE, A },//
+                    { uri("c"), RDF.TYPE, B },//
+                    }, new URI[][] {});
+
+            assertTrue(typeCounts.getDefinition(store).isIncremental());
+
+            assertFalse(types.getDefinition(store).isIncremental());
+
+            assertView(repo, typeCounts);
+            assertView(repo, types);
+
+            // Insert into an existing and a new group and delete.
+            add(repo, new URI[][] {//
+                    { uri("d"), RDF.TYPE, B },//
+                    { uri("e"), RDF.TYPE, C },//
+                    }, new URI[][] {//
+                    { uri("a"), RDF.TYPE, A },//
+                    });
+
+            assertView(repo, typeCounts);
+            assertView(repo, types);
+
+            // Empty a group.
+            add(repo, new URI[][] {}, new URI[][] {//
+                    { uri("e"), RDF.TYPE, C },//
+                    });
+
+            assertView(repo, typeCounts);
+            assertView(repo, types);
+
+        } finally {
+
+            repo.shutDown();
+
+            ServiceRegistry.getInstance().remove(serviceURI1);
+            ServiceRegistry.getInstance().remove(serviceURI2);
+
+        }
+
+    }
+
+    /**
+     * A commit which does not go through a {@link BigdataSail} connection is
+     * not observed by the view, so the view is not used until it has been
+     * recomputed by the next commit on such a connection.
+     */
+    public void test_view_commitNotObserved() throws Exception {
+
+        final MaterializedViewService typeCounts = new MaterializedViewService(
+                "typeCounts", TYPE_COUNTS);
+
+        final URI serviceURI = register(typeCounts);
+
+        final BigdataSailRepository repo = newRepository();
+
+        try {
+
+            add(repo, new URI[][] {//
+                    { uri("a"), RDF.TYPE, A },//
+                    { uri("b"), RDF.TYPE, B },//
+                    }, new URI[][] {});
+
+            assertView(repo, typeCounts);
+
+            // Write and commit directly on the KB.
+            store.addStatement(uri("c"), RDF.TYPE, A, uri("g"));
+
+            store.commit();
+
+            assertViewNotUsed(repo, typeCounts);
+
+            // The view is recomputed by the next commit on the sail.
+            add(repo, new URI[][] {//
+                    { uri("d"), RDF.TYPE, B },//
+                    }, new URI[][] {});
+
+            assertView(repo, typeCounts);
+
+        } finally {
+
+            repo.shutDown();
+
+            ServiceRegistry.getInstance().remove(serviceURI);
+
+        }
+
+    }
+
+    /**
+     * A query which matches the view except that it has a dataset, exogenous
+     * bindings or does not include inferred statements is not rewritten.
+     */
+    public void test_view_notRewritten() throws Exception {
+
+        final MaterializedViewService typeCounts = new MaterializedViewService(
+                "typeCounts", TYPE_COUNTS);
+
+        final URI serviceURI = register(typeCounts);
+
+        final BigdataSailRepository repo = newRepository();
+
+        try {
+
+            add(repo, new URI[][] {//
+                    { uri("a"), RDF.TYPE, A },//
+                    { uri("b"), RDF.TYPE, B },//
+                    }, new URI[][] {});
+
+            final BigdataSailRepositoryConnection cxn = repo
+                    .getReadOnlyConnection();
+
+            try {
+
+                // The view is used for the query.
+                assertTrue(isRewritten(cxn.prepareTupleQuery(
+                        QueryLanguage.SPARQL, TYPE_COUNTS, null/* baseURI */),
+                        typeCounts));
+
+                // Dataset.
+                assertFalse(isRewritten(cxn.prepareTupleQuery(
+                        QueryLanguage.SPARQL, PREFIX
+                                + "SELECT ?type (COUNT(?s) AS ?n) "
+                                + "FROM :g { ?s a ?type } GROUP BY ?type",
+                        null/* baseURI */), typeCounts));
+
+                // Exogenous bindings.
+                {
+
+                    final BigdataSailTupleQuery query = cxn.prepareTupleQuery(
+                            QueryLanguage.SPARQL, TYPE_COUNTS, null/* baseURI */);
+
+                    query.setBinding("type", A);
+
+                    assertFalse(isRewritten(query, typeCounts));
+
+                }
+
+                // Inferred statements are not included.
+                {
+
+                    final BigdataSailTupleQuery query = cxn.prepareTupleQuery(
+                            QueryLanguage.SPARQL, TYPE_COUNTS, null/* baseURI */);
+
+                    query.setIncludeInferred(false);
+
+                    assertFalse(isRewritten(query, typeCounts));
+
+                }
+
+            } finally {
+
+                cxn.close();
+
+            }
+
+        } finally {
+
+            repo.shutDown();
+
+            ServiceRegistry.getInstance().remove(serviceURI);
+
+        }
+
+    }
+
+}
@@ -86,6 +86,15 @@ public class TestAll extends TestCase {
         // test suite for the access path api.
         suite.addTestSuite(TestSPOAccessPath.class);
 
+        // predicate and characteristic set statistics.
+        suite.addTestSuite(TestPredicateStatistics.class);
+
+        // cardinality sketches.
+        suite.addTestSuite(TestCardinalitySketches.class);
+
+        // transitive closure index.
+        suite.addTestSuite(TestTransitiveClosureIndex.class);
+
         // star joins
 //        suite.addTestSuite(TestSPOStarJoin.class);
 
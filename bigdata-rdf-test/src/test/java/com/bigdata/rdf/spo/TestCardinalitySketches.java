@@ -0,0 +1,313 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.Properties;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import com.bigdata.rdf.axioms.NoAxioms;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.AbstractTripleStoreTestCase;
+import com.bigdata.rdf.vocab.NoVocabulary;
+
+/**
+ * Test suite for {@link HyperLogLog} and {@link CardinalitySketches}.
+ */
+public class TestCardinalitySketches extends AbstractTripleStoreTestCase {
+
+    public TestCardinalitySketches() {
+        super();
+    }
+
+    public TestCardinalitySketches(final String name) {
+        super(name);
+    }
+
+    private static final URI a1 = new URIImpl("http://www.bigdata.com/a1");
+    private static final URI a2 = new URIImpl("http://www.bigdata.com/a2");
+    private static final URI a3 = new URIImpl("http://www.bigdata.com/a3");
+
+    private static final URI name = new URIImpl("http://www.bigdata.com/name");
+    private static final URI age = new URIImpl("http://www.bigdata.com/age");
+
+    private Properties getSketchProperties(final boolean sketches) {
+
+        final Properties properties = getProperties();
+
+        properties.setProperty(AbstractTripleStore.Options.QUADS, "false");
+
+        properties.setProperty(AbstractTripleStore.Options.AXIOMS_CLASS,
+                NoAxioms.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.VOCABULARY_CLASS,
+                NoVocabulary.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.CARDINALITY_SKETCHES,
+                Boolean.toString(sketches));
+
+        return properties;
+
+    }
+
+    public void test_hll_ctor_correctRejection() {
+
+        try {
+            new HyperLogLog(HyperLogLog.MIN_PRECISION - 1);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+        try {
+            new HyperLogLog(HyperLogLog.MAX_PRECISION + 1);
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * The estimate is within a few standard errors of the true cardinality,
+     * duplicates do not change the sketch, and the sketch is unchanged by a
+     * round trip through its serialized form.
+     */
+    public void test_hll_cardinality() {
+
+        final HyperLogLog hll = new HyperLogLog(10);
+
+        assertTrue(hll.isEmpty());
+        assertEquals(0L, hll.cardinality());
+
+        final int n = 20000;
+
+        for (int i = 0; i < n; i++) {
+
+            hll.offer(HyperLogLog.hash(bytes(i), 0, 4));
+
+        }
+
+        final long estimate = hll.cardinality();
+
+        if (log.isInfoEnabled())
+            log.info("n=" + n + ", estimate=" + estimate);
+
+        // The standard error is ~3.25% for p=10.
+        assertTrue("estimate=" + estimate,
+                Math.abs(estimate - n) < n * 0.10);
+
+        // Duplicates do not change the sketch.
+        for (int i = 0; i < n; i += 7) {
+
+            assertFalse(hll.offer(HyperLogLog.hash(bytes(i), 0, 4)));
+
+        }
+
+        assertEquals(estimate, hll.cardinality());
+
+        // Dense round trip.
+        assertEquals(hll, HyperLogLog.fromByteArray(hll.toByteArray()));
+
+    }
+
+    /**
+     * A sketch with few distinct elements is exact (linear counting) and uses
+     * the sparse serialization.
+     */
+    public void test_hll_sparse() {
+
+        final HyperLogLog hll = new HyperLogLog(12);
+
+        for (int i = 0; i < 5; i++) {
+
+            hll.offer(bytes(i), 0, 4);
+
+        }
+
+        assertEquals(5L, hll.cardinality());
+
+        final byte[] a = hll.toByteArray();
+
+        assertTrue(a.length < (1 << 12));
+
+        assertEquals(hll, HyperLogLog.fromByteArray(a));
+
+    }
+
+    /**
+     * The merge of the sketches of two multisets estimates the cardinality of
+     * their union.
+     */
+    public void test_hll_merge() {
+
+        final HyperLogLog h1 = new HyperLogLog(10);
+        final HyperLogLog h2 = new HyperLogLog(10);
+        final HyperLogLog h3 = new HyperLogLog(10);
+
+        for (int i = 0; i < 10000; i++) {
+
+            h1.offer(bytes(i), 0, 4);
+            h3.offer(bytes(i), 0, 4);
+
+        }
+
+        for (int i = 5000; i < 15000; i++) {
+
+            h2.offer(bytes(i), 0, 4);
+            h3.offer(bytes(i), 0, 4);
+
+        }
+
+        assertTrue(h1.merge(h2));
+
+        // Same as offering the union.
+        assertEquals(h3, h1);
+
+        // Nothing new.
+        assertFalse(h1.merge(h2));
+
+        try {
+            h1.merge(new HyperLogLog(11));
+            fail("Expecting: " + IllegalArgumentException.class);
+        } catch (IllegalArgumentException ex) {
+            if (log.isInfoEnabled())
+                log.info("Ignoring expected exception: " + ex);
+        }
+
+    }
+
+    /**
+     * The sketches are not available unless they are enabled.
+     */
+    public void test_sketches_notEnabled() {
+
+        final AbstractTripleStore store = getStore(getSketchProperties(false));
+
+        try {
+
+            assertNull(store.getSPORelation().getCardinalitySketches());
+
+            store.addStatement(a1, name, new LiteralImpl("x"));
+
+            assertEquals(-1L, store.getSPORelation().estimateDistinctCount(
+                    null, store.getIV(name), null, null, 2/* o */));
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Verify the distinct counts for the empty prefix and for a prefix of one
+     * key component.
+     */
+    public void test_sketches() {
+
+        final AbstractTripleStore store = getStore(getSketchProperties(true));
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            assertNotNull(rel.getCardinalitySketches());
+
+            store.addStatement(a1, name, new LiteralImpl("x"));
+            store.addStatement(a1, name, new LiteralImpl("y"));
+            store.addStatement(a1, age, new LiteralImpl("1"));
+            store.addStatement(a2, name, new LiteralImpl("z"));
+            store.addStatement(a2, age, new LiteralImpl("1"));
+            store.addStatement(a3, name, new LiteralImpl("z"));
+            store.addStatement(a3, age, new LiteralImpl("2"));
+
+            final IV<?, ?> a1IV = store.getIV(a1);
+            final IV<?, ?> nameIV = store.getIV(name);
+            final IV<?, ?> ageIV = store.getIV(age);
+
+            // empty prefix.
+            assertEquals(3L, rel.estimateDistinctCount(null, null, null, null, 0/* s */));
+            assertEquals(2L, rel.estimateDistinctCount(null, null, null, null, 1/* p */));
+            assertEquals(5L, rel.estimateDistinctCount(null, null, null, null, 2/* o */));
+
+            // distinct objects and subjects for each predicate (POS).
+            assertEquals(3L, rel.estimateDistinctCount(null, nameIV, null, null, 2/* o */));
+            assertEquals(3L, rel.estimateDistinctCount(null, nameIV, null, null, 0/* s */));
+            assertEquals(2L, rel.estimateDistinctCount(null, ageIV, null, null, 2/* o */));
+
+            // distinct predicates and objects for a subject (SPO).
+            assertEquals(2L, rel.estimateDistinctCount(a1IV, null, null, null, 1/* p */));
+            assertEquals(3L, rel.estimateDistinctCount(a1IV, null, null, null, 2/* o */));
+
+            // Not maintained for a prefix of two components.
+            assertEquals(-1L, rel.estimateDistinctCount(a1IV, nameIV, null, null, 2/* o */));
+
+            // Writing the same statements again does not change anything.
+            store.addStatement(a1, name, new LiteralImpl("x"));
+            store.addStatement(a3, age, new LiteralImpl("2"));
+
+            assertEquals(3L, rel.estimateDistinctCount(null, nameIV, null, null, 2/* o */));
+            assertEquals(2L, rel.estimateDistinctCount(null, ageIV, null, null, 2/* o */));
+
+            // A new object for an existing predicate.
+            store.addStatement(a3, age, new LiteralImpl("3"));
+
+            assertEquals(3L, rel.estimateDistinctCount(null, ageIV, null, null, 2/* o */));
+
+            try {
+                // The target position must not be bound.
+                rel.estimateDistinctCount(null, nameIV, null, null, 1/* p */);
+                fail("Expecting: " + IllegalArgumentException.class);
+            } catch (IllegalArgumentException ex) {
+                if (log.isInfoEnabled())
+                    log.info("Ignoring expected exception: " + ex);
+            }
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    private static byte[] bytes(final int i) {
+
+        return new byte[] { (byte) (i >>> 24), (byte) (i >>> 16),
+                (byte) (i >>> 8), (byte) i };
+
+    }
+
+}
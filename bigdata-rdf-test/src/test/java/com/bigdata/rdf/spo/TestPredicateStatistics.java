@@ -0,0 +1,407 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import com.bigdata.rdf.axioms.NoAxioms;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.sparql.ast.ConstantNode;
+import com.bigdata.rdf.sparql.ast.StatementPatternNode;
+import com.bigdata.rdf.sparql.ast.VarNode;
+import com.bigdata.rdf.sparql.ast.optimizers.StaticOptimizer;
+import com.bigdata.rdf.spo.PredicateStatistics.PredicateStat;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.AbstractTripleStoreTestCase;
+import com.bigdata.rdf.vocab.NoVocabulary;
+
+/**
+ * Test suite for {@link PredicateStatistics}.
+ */
+public class TestPredicateStatistics extends AbstractTripleStoreTestCase {
+
+    public TestPredicateStatistics() {
+        super();
+    }
+
+    public TestPredicateStatistics(final String name) {
+        super(name);
+    }
+
+    private static final URI a1 = new URIImpl("http://www.bigdata.com/a1");
+    private static final URI a2 = new URIImpl("http://www.bigdata.com/a2");
+    private static final URI a3 = new URIImpl("http://www.bigdata.com/a3");
+    private static final URI b1 = new URIImpl("http://www.bigdata.com/b1");
+    private static final URI b2 = new URIImpl("http://www.bigdata.com/b2");
+
+    private static final URI name = new URIImpl("http://www.bigdata.com/name");
+    private static final URI age = new URIImpl("http://www.bigdata.com/age");
+    private static final URI email = new URIImpl("http://www.bigdata.com/email");
+
+    private Properties getStatisticsProperties(final boolean statistics) {
+
+        final Properties properties = getProperties();
+
+        properties.setProperty(AbstractTripleStore.Options.QUADS, "false");
+
+        properties.setProperty(AbstractTripleStore.Options.AXIOMS_CLASS,
+                NoAxioms.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.VOCABULARY_CLASS,
+                NoVocabulary.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.STATISTICS,
+                Boolean.toString(statistics));
+
+        return properties;
+
+    }
+
+    /**
+     * Two characteristic sets: <code>{name, age}</code> for the
+     * <code>a</code>s (one of which has two names) and
+     * <code>{name, email}</code> for the <code>b</code>s.
+     */
+    private void loadData(final AbstractTripleStore store) {
+
+        store.addStatement(a1, name, new LiteralImpl("x"));
+        store.addStatement(a1, name, new LiteralImpl("y"));
+        store.addStatement(a1, age, new LiteralImpl("1"));
+        store.addStatement(a2, name, new LiteralImpl("z"));
+        store.addStatement(a2, age, new LiteralImpl("1"));
+        store.addStatement(a3, name, new LiteralImpl("z"));
+        store.addStatement(a3, age, new LiteralImpl("2"));
+        store.addStatement(b1, name, new LiteralImpl("w"));
+        store.addStatement(b1, email, new LiteralImpl("w@x"));
+        store.addStatement(b2, name, new LiteralImpl("v"));
+        store.addStatement(b2, email, new LiteralImpl("v@x"));
+
+    }
+
+    /**
+     * The statistics can not be rebuilt unless they are enabled.
+     */
+    public void test_rebuild_notEnabled() {
+
+        final AbstractTripleStore store = getStore(getStatisticsProperties(false));
+
+        try {
+
+            assertNull(store.getSPORelation().getStatisticsIndex());
+
+            assertNull(store.getSPORelation().getStatistics());
+
+            try {
+                store.getSPORelation().rebuildStatistics();
+                fail("Expecting: " + UnsupportedOperationException.class);
+            } catch (UnsupportedOperationException ex) {
+                if (log.isInfoEnabled())
+                    log.info("Ignoring expected exception: " + ex);
+            }
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Verify the per-predicate statistics and the characteristic sets and
+     * that the statistics are restored from the index.
+     */
+    public void test_rebuild() {
+
+        final AbstractTripleStore store = getStore(getStatisticsProperties(true));
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            // Not built yet.
+            assertNull(rel.getStatistics());
+
+            loadData(store);
+
+            final PredicateStatistics stats = rel.rebuildStatistics();
+
+            assertEquals(11L, stats.getStatementCount());
+            assertEquals(5L, stats.getSubjectCount());
+            assertEquals(3, stats.getPredicateCount());
+            assertEquals(2, stats.getCharacteristicSets().size());
+            assertFalse(stats.isTruncated());
+
+            final IV<?, ?> nameIV = store.getIV(name);
+            final IV<?, ?> ageIV = store.getIV(age);
+            final IV<?, ?> emailIV = store.getIV(email);
+
+            {
+                final PredicateStat stat = stats.getPredicateStat(nameIV);
+                assertEquals(6L, stat.getStatementCount());
+                assertEquals(5L, stat.getDistinctSubjectCount());
+                assertEquals(5L, stat.getDistinctObjectCount());
+            }
+
+            {
+                final PredicateStat stat = stats.getPredicateStat(ageIV);
+                assertEquals(3L, stat.getStatementCount());
+                assertEquals(3L, stat.getDistinctSubjectCount());
+                assertEquals(2L, stat.getDistinctObjectCount());
+            }
+
+            // Most frequent set first.
+            assertEquals(3L, stats.getCharacteristicSets().get(0)
+                    .getDistinctSubjectCount());
+            assertEquals(4L, stats.getCharacteristicSets().get(0)
+                    .getOccurrences(nameIV));
+            assertEquals(0L, stats.getCharacteristicSets().get(0)
+                    .getOccurrences(emailIV));
+
+            // The statistics are the same when read back from the index.
+            final PredicateStatistics stats2 = PredicateStatistics.read(
+                    rel.getStatisticsIndex(), null/* cached */);
+
+            assertNotNull(stats2);
+            assertTrue(stats != stats2);
+            assertEquals(stats.getTimestamp(), stats2.getTimestamp());
+            assertEquals(stats.getStatementCount(), stats2.getStatementCount());
+            assertEquals(stats.getPredicateCount(), stats2.getPredicateCount());
+            assertEquals(stats.getCharacteristicSets().size(), stats2
+                    .getCharacteristicSets().size());
+            assertEquals(4L, stats2.getCharacteristicSets().get(0)
+                    .getOccurrences(nameIV));
+
+            // The cached instance is reused until the next rebuild.
+            assertTrue(stats == rel.getStatistics());
+            assertTrue(stats == PredicateStatistics.read(
+                    rel.getStatisticsIndex(), stats));
+
+            assertTrue(stats != rel.rebuildStatistics());
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * The statistics are rebuilt by the commit once the configured #of
+     * commits have been made since the last rebuild.
+     */
+    public void test_rebuildOnCommit_commits() {
+
+        final Properties properties = getStatisticsProperties(true);
+
+        properties.setProperty(
+                AbstractTripleStore.Options.STATISTICS_REBUILD_COMMITS, "2");
+
+        final AbstractTripleStore store = getStore(properties);
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            // Resets the commit counter.
+            assertEquals(0L, rel.rebuildStatistics().getStatementCount());
+
+            loadData(store);
+
+            store.commit();
+
+            // Not yet due.
+            assertEquals(0L, rel.getStatistics().getStatementCount());
+
+            store.commit();
+
+            // Rebuilt by the 2nd commit.
+            assertEquals(11L, rel.getStatistics().getStatementCount());
+
+            // And restart safe.
+            assertEquals(11L, PredicateStatistics.read(
+                    rel.getStatisticsIndex(), null/* cached */)
+                    .getStatementCount());
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * The statistics are rebuilt by the commit if they were never built or
+     * are older than the configured maximum age.
+     */
+    public void test_rebuildOnCommit_maxAge() throws InterruptedException {
+
+        final Properties properties = getStatisticsProperties(true);
+
+        properties.setProperty(
+                AbstractTripleStore.Options.STATISTICS_REBUILD_MAX_AGE, "1");
+
+        final AbstractTripleStore store = getStore(properties);
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            // Never built, so built by the commit which created the KB.
+            final PredicateStatistics stats = rel.getStatistics();
+
+            assertNotNull(stats);
+            assertEquals(0L, stats.getStatementCount());
+
+            loadData(store);
+
+            Thread.sleep(10/* ms */);
+
+            assertTrue(stats.getAge() > 1L);
+
+            store.commit();
+
+            // Stale, so rebuilt by the commit.
+            final PredicateStatistics stats2 = rel.getStatistics();
+
+            assertTrue(stats != stats2);
+            assertEquals(11L, stats2.getStatementCount());
+            assertTrue(stats2.getTimestamp() > stats.getTimestamp());
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * The statistics are only rebuilt on demand by default.
+     */
+    public void test_rebuildOnCommit_disabled() {
+
+        final AbstractTripleStore store = getStore(getStatisticsProperties(true));
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            loadData(store);
+
+            store.commit();
+
+            assertFalse(rel.rebuildStatisticsIfStale());
+
+            assertNull(rel.getStatistics());
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Verify the star estimates against the true cardinality of the star.
+     */
+    public void test_estimateStarCardinality() {
+
+        final AbstractTripleStore store = getStore(getStatisticsProperties(true));
+
+        try {
+
+            loadData(store);
+
+            final PredicateStatistics stats = store.getSPORelation()
+                    .rebuildStatistics();
+
+            final IV<?, ?> nameIV = store.getIV(name);
+            final IV<?, ?> ageIV = store.getIV(age);
+            final IV<?, ?> emailIV = store.getIV(email);
+
+            // (?s name ?n . ?s age ?a) has 4 solutions.
+            assertEquals(4L, stats.estimateStarCardinality(new IV[] { nameIV,
+                    ageIV }, new double[] { 1d, 1d }));
+
+            // (?s name ?n . ?s email ?e) has 2 solutions.
+            assertEquals(2L, stats.estimateStarCardinality(new IV[] { nameIV,
+                    emailIV }, new double[] { 1d, 1d }));
+
+            // No subject has both an age and an email.
+            assertEquals(-1L, stats.estimateStarCardinality(new IV[] { ageIV,
+                    emailIV }, new double[] { 1d, 1d }));
+
+            // The same star expressed as statement patterns.
+            {
+                final List<StatementPatternNode> sps = new LinkedList<StatementPatternNode>();
+
+                sps.add(new StatementPatternNode(new VarNode("s"),
+                        new ConstantNode(nameIV), new VarNode("n")));
+
+                sps.add(new StatementPatternNode(new VarNode("s"),
+                        new ConstantNode(ageIV), new VarNode("a")));
+
+                assertEquals(4L, StaticOptimizer.estimateStarCardinality(stats,
+                        sps, null/* boundVars */));
+
+            }
+
+            // Not a star: different subjects.
+            {
+                final List<StatementPatternNode> sps = new LinkedList<StatementPatternNode>();
+
+                sps.add(new StatementPatternNode(new VarNode("s"),
+                        new ConstantNode(nameIV), new VarNode("n")));
+
+                sps.add(new StatementPatternNode(new VarNode("t"),
+                        new ConstantNode(ageIV), new VarNode("a")));
+
+                assertEquals(-1L, StaticOptimizer.estimateStarCardinality(
+                        stats, sps, null/* boundVars */));
+
+            }
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+}
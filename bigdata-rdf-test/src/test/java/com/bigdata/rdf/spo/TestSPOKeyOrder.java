@@ -204,6 +204,52 @@ public class TestSPOKeyOrder extends TestCase2 {
 
     }
 
+    /**
+     * Verify that {@link SPOSortKeyBuilder} generates the same keys as the
+     * statement index for a given {@link SPOKeyOrder} and that sorting on those
+     * keys agrees with the {@link SPOKeyOrder#getComparator()}.
+     */
+    public void test_sortKeyBuilder_keyOrder() {
+
+        final KeyBuilder keyBuilder = new KeyBuilder(4 * Bytes.SIZEOF_LONG);
+
+        final IV<?,?> A = tid(1), B = tid(2), C = tid(3);
+
+        final SPO[] a = new SPO[] { new SPO(A, B, C, A), new SPO(C, A, B, B),
+                new SPO(B, C, A, C) };
+
+        for (int i = SPOKeyOrder.FIRST_QUAD_INDEX; i <= SPOKeyOrder.LAST_QUAD_INDEX; i++) {
+
+            final SPOKeyOrder keyOrder = SPOKeyOrder.valueOf(i);
+
+            final SPOSortKeyBuilder sortKeyBuilder = new SPOSortKeyBuilder(
+                    keyOrder);
+
+            for (int j = 0; j < a.length; j++) {
+
+                for (int k = 0; k < a.length; k++) {
+
+                    final byte[] kj = sortKeyBuilder.getSortKey(a[j]);
+
+                    assertEquals(keyOrder.encodeKey(keyBuilder, a[j]), kj);
+
+                    final int ret1 = BytesUtil.compareBytes(kj,
+                            sortKeyBuilder.getSortKey(a[k]));
+
+                    final int ret2 = keyOrder.getComparator().compare(a[j],
+                            a[k]);
+
+                    assertEquals(keyOrder + " : " + a[j] + " vs " + a[k],
+                            Integer.signum(ret2), Integer.signum(ret1));
+
+                }
+
+            }
+
+        }
+
+    }
+
     /**
      * Unit test examines the correct formulation of the from/to keys for the
      * POCS key order.
@@ -46,6 +46,9 @@ import com.bigdata.bop.joinGraph.IEvaluationPlan;
 import com.bigdata.bop.joinGraph.IEvaluationPlanFactory;
 import com.bigdata.bop.joinGraph.fast.DefaultEvaluationPlan2;
 import com.bigdata.bop.joinGraph.fast.DefaultEvaluationPlanFactory2;
+import com.bigdata.counters.CounterSet;
+import com.bigdata.counters.ICounterSet;
+import com.bigdata.journal.Journal;
 import com.bigdata.rdf.axioms.NoAxioms;
 import com.bigdata.rdf.internal.IV;
 import com.bigdata.rdf.internal.VTE;
@@ -835,4 +838,65 @@ public class TestSPORelation extends AbstractTripleStoreTestCase {
 
     }
 
+    /**
+     * Verify that the statement index writer counters are shared by the views
+     * of the relation and reported by the {@link Journal}'s counters.
+     */
+    public void test_indexWriterCounters() {
+
+        final Properties properties = super.getProperties();
+        
+        // override the default axiom model.
+        properties.setProperty(
+                com.bigdata.rdf.store.AbstractTripleStore.Options.AXIOMS_CLASS,
+                NoAxioms.class.getName());
+        
+        final AbstractTripleStore store = getStore(properties);
+
+        try {
+
+            final SPORelation spoRelation = store.getSPORelation();
+
+            final String namespace = spoRelation.getNamespace();
+
+            final SPO[] a = new SPO[] { new SPO(new Constant<IV>(
+                    uriId(11L)), rdfType, new Constant<IV>(uriId(12L)),
+                    StatementEnum.Explicit) };
+
+            assertEquals(1, spoRelation.insert(new ChunkedArrayIterator<ISPO>(
+                    a.length, a, null/* keyOrder */)));
+
+            // The counters are shared by the views of the relation.
+            assertTrue(spoRelation.getIndexWriterCounters() == SPOIndexWriterCounters
+                    .getInstance(store.getIndexManager(), namespace));
+
+            final CounterSet counters = SPOIndexWriterCounters
+                    .getCounters(store.getIndexManager());
+
+            assertNotNull(counters);
+
+            final String path = namespace + ICounterSet.pathSeparator
+                    + spoRelation.getPrimaryKeyOrder().getIndexName()
+                    + ICounterSet.pathSeparator + "batchCount";
+
+            assertNotNull(counters.getPath(path));
+
+            if (store.getIndexManager() instanceof Journal) {
+
+                // Reported by the journal's counters.
+                assertNotNull(((Journal) store.getIndexManager())
+                        .getCounters().getPath(
+                                Journal.IJournalCounters.statementIndexWriters
+                                        + ICounterSet.pathSeparator + path));
+
+            }
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
 }
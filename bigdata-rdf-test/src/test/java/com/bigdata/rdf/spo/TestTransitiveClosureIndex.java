@@ -0,0 +1,434 @@
+/**
+
+Copyright (C) SYSTAP, LLC DBA Blazegraph 2006-2016.  All rights reserved.
+
+Contact:
+     SYSTAP, LLC DBA Blazegraph
+     2501 Calvert ST NW #106
+     Washington, DC 20008
+     licenses@blazegraph.com
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; version 2 of the License.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+*/
+/*
+ * Created on Oct 19, 2026
+ */
+
+package com.bigdata.rdf.spo;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.model.vocabulary.RDFS;
+
+import com.bigdata.rdf.axioms.NoAxioms;
+import com.bigdata.rdf.axioms.RdfsAxioms;
+import com.bigdata.rdf.inf.TruthMaintenance;
+import com.bigdata.rdf.internal.IV;
+import com.bigdata.rdf.rio.StatementBuffer;
+import com.bigdata.rdf.store.AbstractTripleStore;
+import com.bigdata.rdf.store.AbstractTripleStoreTestCase;
+import com.bigdata.rdf.store.TempTripleStore;
+import com.bigdata.rdf.vocab.NoVocabulary;
+import com.bigdata.rdf.vocab.RDFSVocabulary;
+import com.bigdata.striterator.IChunkedOrderedIterator;
+
+/**
+ * Test suite for the {@link TransitiveClosureIndex}.
+ */
+public class TestTransitiveClosureIndex extends AbstractTripleStoreTestCase {
+
+    public TestTransitiveClosureIndex() {
+        super();
+    }
+
+    public TestTransitiveClosureIndex(final String name) {
+        super(name);
+    }
+
+    private static final URI a = new URIImpl("http://www.bigdata.com/a");
+    private static final URI b = new URIImpl("http://www.bigdata.com/b");
+    private static final URI c = new URIImpl("http://www.bigdata.com/c");
+    private static final URI d = new URIImpl("http://www.bigdata.com/d");
+
+    private static final URI broader = new URIImpl(
+            "http://www.bigdata.com/broader");
+    private static final URI related = new URIImpl(
+            "http://www.bigdata.com/related");
+
+    private Properties getClosureProperties(final String predicates) {
+
+        final Properties properties = getProperties();
+
+        properties.setProperty(AbstractTripleStore.Options.QUADS, "false");
+
+        properties.setProperty(AbstractTripleStore.Options.AXIOMS_CLASS,
+                NoAxioms.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.VOCABULARY_CLASS,
+                NoVocabulary.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.CLOSURE_PREDICATES,
+                predicates);
+
+        return properties;
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Set<IV> toSet(final Iterator<IV> itr) {
+
+        final Set<IV> set = new HashSet<IV>();
+
+        while (itr.hasNext())
+            set.add(itr.next());
+
+        return set;
+
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Set<IV> toSet(final AbstractTripleStore store,
+            final URI... uris) {
+
+        final Set<IV> set = new HashSet<IV>();
+
+        for (URI uri : uris)
+            set.add(store.getIV(uri));
+
+        return set;
+
+    }
+
+    /**
+     * The index is not available unless closure predicates are declared.
+     */
+    public void test_closure_notEnabled() {
+
+        final AbstractTripleStore store = getStore(getClosureProperties(""));
+
+        try {
+
+            assertNull(store.getSPORelation().getTransitiveClosureIndex());
+
+            store.addStatement(a, broader, b);
+
+            assertFalse(store.getSPORelation().isClosurePredicate(
+                    store.getIV(broader)));
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * The closure is extended as edges are added, including edges which join
+     * two existing chains, and only the declared predicates are indexed.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_closure_insert() {
+
+        final AbstractTripleStore store = getStore(getClosureProperties(broader
+                .stringValue()));
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            final TransitiveClosureIndex ndx = rel.getTransitiveClosureIndex();
+
+            assertNotNull(ndx);
+
+            store.addStatement(a, broader, b);
+            store.addStatement(c, broader, d);
+            store.addStatement(a, related, d);
+
+            final IV p = store.getIV(broader);
+
+            assertTrue(rel.isClosurePredicate(p));
+            assertFalse(rel.isClosurePredicate(store.getIV(related)));
+
+            assertEquals(toSet(store, b),
+                    toSet(ndx.getSuccessors(p, store.getIV(a))));
+            assertFalse(ndx.contains(p, store.getIV(a), store.getIV(d)));
+
+            // Join the two chains: a -> b -> c -> d.
+            store.addStatement(b, broader, c);
+
+            assertEquals(toSet(store, b, c, d),
+                    toSet(ndx.getSuccessors(p, store.getIV(a))));
+
+            assertEquals(toSet(store, a, b, c),
+                    toSet(ndx.getPredecessors(p, store.getIV(d))));
+
+            assertTrue(ndx.contains(p, store.getIV(a), store.getIV(d)));
+            assertFalse(ndx.contains(p, store.getIV(d), store.getIV(a)));
+
+            // Not indexed.
+            assertTrue(toSet(
+                    ndx.getSuccessors(store.getIV(related), store.getIV(a)))
+                    .isEmpty());
+
+            int n = 0;
+            final Iterator<IV[]> itr = ndx.getPairs(p);
+            while (itr.hasNext()) {
+                itr.next();
+                n++;
+            }
+            assertEquals(6, n);
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * A cycle puts each node on the cycle into its own closure.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_closure_cycle() {
+
+        final AbstractTripleStore store = getStore(getClosureProperties(broader
+                .stringValue()));
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            final TransitiveClosureIndex ndx = rel.getTransitiveClosureIndex();
+
+            store.addStatement(a, broader, b);
+            store.addStatement(b, broader, c);
+            store.addStatement(c, broader, a);
+
+            final IV p = store.getIV(broader);
+
+            for (URI x : Arrays.asList(a, b, c)) {
+
+                assertEquals(toSet(store, a, b, c),
+                        toSet(ndx.getSuccessors(p, store.getIV(x))));
+
+            }
+
+            // Breaking the cycle removes the reflexive pairs.
+            store.removeStatements(c, broader, a);
+
+            assertFalse(ndx.contains(p, store.getIV(a), store.getIV(a)));
+
+            assertEquals(toSet(store, b, c),
+                    toSet(ndx.getSuccessors(p, store.getIV(a))));
+
+            assertTrue(toSet(ndx.getSuccessors(p, store.getIV(c))).isEmpty());
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Removing an edge only removes the pairs which are no longer supported
+     * by another path.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_closure_delete() {
+
+        final AbstractTripleStore store = getStore(getClosureProperties(broader
+                .stringValue()));
+
+        try {
+
+            final SPORelation rel = store.getSPORelation();
+
+            final TransitiveClosureIndex ndx = rel.getTransitiveClosureIndex();
+
+            // A diamond: a -> {b,c} -> d.
+            store.addStatement(a, broader, b);
+            store.addStatement(a, broader, c);
+            store.addStatement(b, broader, d);
+            store.addStatement(c, broader, d);
+
+            final IV p = store.getIV(broader);
+
+            store.removeStatements(b, broader, d);
+
+            // Still reachable through c.
+            assertTrue(ndx.contains(p, store.getIV(a), store.getIV(d)));
+
+            assertFalse(ndx.contains(p, store.getIV(b), store.getIV(d)));
+
+            assertEquals(toSet(store, a, c),
+                    toSet(ndx.getPredecessors(p, store.getIV(d))));
+
+            store.removeStatements(c, broader, d);
+
+            assertEquals(toSet(store, b, c),
+                    toSet(ndx.getSuccessors(p, store.getIV(a))));
+
+            assertTrue(toSet(ndx.getPredecessors(p, store.getIV(d))).isEmpty());
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * The closure is maintained with truth maintenance, where the statements
+     * are first written on temporary stores which do not have a lexicon. The
+     * closure also covers the inferred statements, so it must agree with the
+     * materialized <code>rdfs:subClassOf</code> statements as those are
+     * transitively closed by the RDFS entailments.
+     */
+    @SuppressWarnings("rawtypes")
+    public void test_closure_truthMaintenance() {
+
+        final Properties properties = getClosureProperties(RDFS.SUBCLASSOF
+                .stringValue());
+
+        properties.setProperty(AbstractTripleStore.Options.AXIOMS_CLASS,
+                RdfsAxioms.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.VOCABULARY_CLASS,
+                RDFSVocabulary.class.getName());
+
+        properties.setProperty(AbstractTripleStore.Options.JUSTIFY, "true");
+
+        final AbstractTripleStore store = getStore(properties);
+
+        try {
+
+            final TruthMaintenance tm = new TruthMaintenance(store
+                    .getInferenceEngine());
+
+            // The temporary stores do not maintain the closure.
+            {
+
+                final TempTripleStore tempStore = tm.newTempTripleStore();
+
+                assertNull(tempStore.getSPORelation()
+                        .getTransitiveClosureIndex());
+
+                tempStore.close();
+
+            }
+
+            tm.assertAll(newTempStore(tm, store, new Statement[] {//
+                    new StatementImpl(a, RDFS.SUBCLASSOF, b),//
+                    new StatementImpl(b, RDFS.SUBCLASSOF, c),//
+                    new StatementImpl(c, RDFS.SUBCLASSOF, d),//
+                    }));
+
+            final TransitiveClosureIndex ndx = store.getSPORelation()
+                    .getTransitiveClosureIndex();
+
+            final IV p = store.getIV(RDFS.SUBCLASSOF);
+
+            assertTrue(toSet(ndx.getSuccessors(p, store.getIV(a))).containsAll(
+                    toSet(store, b, c, d)));
+
+            assertSameClosure(store, ndx, a, b, c, d);
+
+            tm.retractAll(newTempStore(tm, store, new Statement[] {//
+                    new StatementImpl(b, RDFS.SUBCLASSOF, c),//
+                    }));
+
+            assertFalse(store.hasStatement(a, RDFS.SUBCLASSOF, d));
+
+            assertFalse(ndx.contains(p, store.getIV(a), store.getIV(d)));
+
+            assertSameClosure(store, ndx, a, b, c, d);
+
+        } finally {
+
+            store.__tearDownUnitTest();
+
+        }
+
+    }
+
+    /**
+     * Return a temporary store on which the statements have been written.
+     */
+    private static TempTripleStore newTempStore(final TruthMaintenance tm,
+            final AbstractTripleStore db, final Statement[] stmts) {
+
+        final StatementBuffer<Statement> buffer = new StatementBuffer<Statement>(
+                tm.newTempTripleStore(), db, 100/* capacity */, 10/* queueCapacity */);
+
+        for (Statement stmt : stmts) {
+
+            buffer.add(stmt);
+
+        }
+
+        buffer.flush();
+
+        return (TempTripleStore) buffer.getStatementStore();
+
+    }
+
+    /**
+     * Verify that the successors of each node in the closure index are the
+     * objects of the <code>rdfs:subClassOf</code> statements for that node.
+     */
+    @SuppressWarnings("rawtypes")
+    private static void assertSameClosure(final AbstractTripleStore store,
+            final TransitiveClosureIndex ndx, final URI... nodes) {
+
+        final IV p = store.getIV(RDFS.SUBCLASSOF);
+
+        for (URI x : nodes) {
+
+            final Set<IV> expected = new HashSet<IV>();
+
+            final IChunkedOrderedIterator<ISPO> itr = store.getAccessPath(x,
+                    RDFS.SUBCLASSOF, null/* o */).iterator();
+
+            try {
+
+                while (itr.hasNext())
+                    expected.add(itr.next().o());
+
+            } finally {
+
+                itr.close();
+
+            }
+
+            assertEquals(x.stringValue(), expected, toSet(ndx.getSuccessors(p,
+                    store.getIV(x))));
+
+        }
+
+    }
+
+}
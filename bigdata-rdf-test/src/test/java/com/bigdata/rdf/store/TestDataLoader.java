@@ -34,8 +34,11 @@ import java.util.Properties;
 import org.openrdf.rio.RDFFormat;
 import org.openrdf.rio.RDFParseException;
 
+import com.bigdata.rdf.lexicon.ITextIndexer.FullTextQuery;
+import com.bigdata.rdf.model.BigdataValueFactory;
 import com.bigdata.rdf.store.DataLoader.ClosureEnum;
 import com.bigdata.rdf.store.DataLoader.CommitEnum;
+import com.bigdata.search.FullTextIndex;
 import com.bigdata.util.InnerCause;
 
 /**
@@ -85,6 +88,56 @@ public class TestDataLoader extends AbstractTripleStoreTestCase {
 
 	}
 
+	/**
+	 * Test that {@link DataLoader.Options#BULK_TEXT_INDEX} ends the bulk load
+	 * of the text index with the load, so literals written afterwards can be
+	 * found before the next commit.
+	 */
+	public void test_DataLoader_bulkTextIndex() throws IOException {
+
+		final AbstractTripleStore store = getStore();
+
+		try {
+
+			if (!store.getLexiconRelation().isTextIndex()) {
+				// Test requires the text index.
+				return;
+			}
+
+			final Properties properties = new Properties(store.getProperties());
+
+			properties.setProperty(DataLoader.Options.BULK_TEXT_INDEX, "true");
+
+			final DataLoader dataLoader = new DataLoader(properties, store);
+
+			final String resource = "com/bigdata/rdf/store/sample-data.ttl";
+
+			final String baseURL = new File(resource).toURI().toString();
+
+			dataLoader.loadData(new String[] { resource }, new String[] { baseURL },
+					new RDFFormat[] { RDFFormat.TURTLE });
+
+			final FullTextIndex<?> textIndex = (FullTextIndex<?>) store.getLexiconRelation().getSearchEngine();
+
+			assertFalse(textIndex.isBulkLoad());
+
+			// index a new literal after the load.
+			final BigdataValueFactory f = store.getValueFactory();
+
+			store.addStatement(f.createURI("http://www.bigdata.com/s"), f.createURI("http://www.bigdata.com/p"),
+					f.createLiteral("quixotic"));
+
+			// found without a commit.
+			assertTrue(textIndex.search(new FullTextQuery("quixotic")).hasNext());
+
+		} finally {
+
+			store.__tearDownUnitTest();
+
+		}
+
+	}
+
 	/**
 	 * Test where an error in a source file SHOULD NOT be ignored because we
 	 * have NOT specified {@link DataLoader.Options#IGNORE_INVALID_FILES}.
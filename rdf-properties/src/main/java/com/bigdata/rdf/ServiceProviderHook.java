@@ -37,6 +37,7 @@ import java.util.ServiceLoader;
 
 import org.apache.log4j.Logger;
 import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.resultio.TupleQueryResultFormat;
 import org.openrdf.query.resultio.TupleQueryResultParserFactory;
 import org.openrdf.query.resultio.TupleQueryResultParserRegistry;
 import org.openrdf.query.resultio.TupleQueryResultWriterFactory;
@@ -97,6 +98,10 @@ public class ServiceProviderHook {
 	
 	public static final String JSON_RESULT_PARSER_FACTORY = "com.bigdata.rdf.rio.json.BigdataSPARQLResultsJSONParserFactory"; 
 	public static final String JSON_CONSTRUCT_PARSER_FACTORY = "com.bigdata.rdf.rio.json.BigdataSPARQLResultsJSONParserForConstructFactory";
+
+	public static final String COLUMNAR_WRITER_FACTORY = "com.bigdata.rdf.rio.columnar.ColumnarResultsWriterFactory";
+
+	public static final String COLUMNAR_PARSER_FACTORY = "com.bigdata.rdf.sail.webapp.client.ColumnarResultsParserFactory";
 	
 	
 	
@@ -121,6 +126,10 @@ public class ServiceProviderHook {
 				Charset.forName("UTF-8"), Arrays.asList("srj", "json"),
 				RDFFormat.NO_NAMESPACES, RDFFormat.SUPPORTS_CONTEXTS);        
 		
+		COLUMNAR_RESULTS = new TupleQueryResultFormat("Blazegraph/Columnar",
+				"application/x-blazegraph-columnar-results",
+				null/* binary */, "bgcr");
+
         forceLoad();
 
     }
@@ -150,6 +159,15 @@ public class ServiceProviderHook {
      * result stes using JSON.
      */
     public static final RDFFormat JSON_RDR;
+
+    /**
+     * The extension MIME type for a compact, chunked, column oriented binary
+     * encoding of SPARQL result sets. Inline values (numbers, booleans and
+     * xsd:dateTime) are sent in their native form rather than as text.
+     * 
+     * @see com.bigdata.rdf.sail.webapp.client.ColumnarResultsParser
+     */
+    public static final TupleQueryResultFormat COLUMNAR_RESULTS;
     
     /**
 	 * This hook may be used to force the load of this class so it can ensure
@@ -211,6 +229,7 @@ public class ServiceProviderHook {
 		RDFFormat.register(TURTLE_RDR);
 		RDFFormat.register(NTRIPLES_RDR);
 		RDFFormat.register(JSON_RDR);
+		TupleQueryResultFormat.register(COLUMNAR_RESULTS);
 		
 		/*
          * Force the class loader to resolve the register, which will cause it
@@ -246,6 +265,9 @@ public class ServiceProviderHook {
 
         	// add our custom RDR-enabled JSON writer for SPARQL result sets.
         	r.add((TupleQueryResultWriterFactory) getInstanceForClass(JSON_WRITER_FACTORY));
+
+        	// add our columnar binary writer for SPARQL result sets.
+        	r.add((TupleQueryResultWriterFactory) getInstanceForClass(COLUMNAR_WRITER_FACTORY));
         	
         }
 
@@ -256,6 +278,9 @@ public class ServiceProviderHook {
             // add our custom RDR-enabled JSON parser for SPARQL result sets.
            
             r.add((TupleQueryResultParserFactory) getInstanceForClass(JSON_RESULT_PARSER_FACTORY));
+
+            // add our columnar binary parser for SPARQL result sets.
+            r.add((TupleQueryResultParserFactory) getInstanceForClass(COLUMNAR_PARSER_FACTORY));
             
         }
 